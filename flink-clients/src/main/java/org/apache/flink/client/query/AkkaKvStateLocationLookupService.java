@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.client.query;
+
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.runtime.instance.ActorGateway;
+import org.apache.flink.runtime.query.KvStateLocation;
+import org.apache.flink.runtime.query.KvStateMessage;
+import scala.concurrent.Future;
+import scala.concurrent.duration.FiniteDuration;
+import scala.reflect.ClassTag$;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Looks up the {@link KvStateLocation}s at the JobManager, which maintains the locations of
+ * the queryable states of its jobs.
+ */
+public class AkkaKvStateLocationLookupService implements KvStateLocationLookupService {
+
+	/** The gateway to the JobManager */
+	private final ActorGateway jobManager;
+
+	/** The timeout of the lookups */
+	private final FiniteDuration askTimeout;
+
+	public AkkaKvStateLocationLookupService(ActorGateway jobManager, FiniteDuration askTimeout) {
+		this.jobManager = checkNotNull(jobManager, "jobManager");
+		this.askTimeout = checkNotNull(askTimeout, "askTimeout");
+	}
+
+	@Override
+	public Future<KvStateLocation> getKvStateLocation(JobID jobId, String registrationName) {
+		return jobManager
+			.ask(new KvStateMessage.LookupKvStateLocation(jobId, registrationName), askTimeout)
+			.mapTo(ClassTag$.MODULE$.<KvStateLocation>apply(KvStateLocation.class));
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.client.query;
+
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.runtime.query.KvStateLocation;
+import scala.concurrent.Future;
+
+/**
+ * Looks up the {@link KvStateLocation} of a queryable state, which tells which query server
+ * holds the state instance of a key group.
+ */
+public interface KvStateLocationLookupService {
+
+	/**
+	 * Looks up the location of a queryable state.
+	 *
+	 * @param jobId The ID of the job that the state belongs to.
+	 * @param registrationName The name under which the state is queryable.
+	 * @return The future of the location.
+	 */
+	Future<KvStateLocation> getKvStateLocation(JobID jobId, String registrationName);
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.client.query;
+
+import akka.dispatch.Futures;
+import akka.dispatch.Mapper;
+import akka.dispatch.OnFailure;
+import akka.dispatch.Recover;
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.configuration.ConfigConstants;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.runtime.akka.AkkaUtils;
+import org.apache.flink.runtime.instance.ActorGateway;
+import org.apache.flink.runtime.query.KvStateID;
+import org.apache.flink.runtime.query.KvStateLocation;
+import org.apache.flink.runtime.query.KvStateServerAddress;
+import org.apache.flink.runtime.query.netty.KvStateClient;
+import org.apache.flink.runtime.query.netty.UnknownKeyOrNamespace;
+import org.apache.flink.runtime.query.netty.UnknownKvStateID;
+import org.apache.flink.runtime.query.netty.message.KvStateRequestSerializer;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+import scala.concurrent.Promise;
+import scala.concurrent.impl.Promise.DefaultPromise;
+
+import java.net.ConnectException;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Client for the queryable states of the running jobs. The client looks up where the state
+ * instance of the key group of a key is held, and requests the value of the key directly from
+ * the query server of that TaskManager. The lookups go to the JobManager and are cached per
+ * queryable state, so that a query usually takes a single round trip to a TaskManager.
+ *
+ * <p>If a cached location is outdated, for example because the job was restarted and its
+ * subtasks were deployed to other TaskManagers, the query fails with {@link UnknownKvStateID}
+ * or a connection failure. The client then drops the cached location and repeats the query
+ * once with a fresh location.
+ *
+ * <p>The keys and namespaces of the queries are serialized with
+ * {@link KvStateRequestSerializer#serializeKeyAndNamespace}, and the results are deserialized
+ * with the matching methods of the {@link KvStateRequestSerializer}.
+ */
+public class QueryableStateClient {
+
+	private static final Logger LOG = LoggerFactory.getLogger(QueryableStateClient.class);
+
+	/** The service that looks up the locations of the queryable states */
+	private final KvStateLocationLookupService lookupService;
+
+	/** The client that requests the values from the query servers */
+	private final KvStateClient networkClient;
+
+	/** The context that executes the callbacks of the queries */
+	private final ExecutionContext executionContext;
+
+	/** The cached lookups by job and registration name, which may still be in progress */
+	private final ConcurrentMap<Tuple2<JobID, String>, Future<KvStateLocation>> lookupCache =
+		new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a client that looks up the queryable states at the given JobManager.
+	 *
+	 * @param config The configuration of the client.
+	 * @param jobManager The gateway to the JobManager of the queried jobs.
+	 */
+	public QueryableStateClient(Configuration config, ActorGateway jobManager) {
+		this(
+			new AkkaKvStateLocationLookupService(jobManager, AkkaUtils.getClientTimeout(config)),
+			new KvStateClient(getNumNetworkThreads(config)),
+			ExecutionContext.Implicits$.MODULE$.global());
+	}
+
+	/**
+	 * Creates a client with the given lookup service and network client.
+	 *
+	 * @param lookupService The service that looks up the locations of the queryable states.
+	 * @param networkClient The client that requests the values from the query servers.
+	 * @param executionContext The context that executes the callbacks of the queries.
+	 */
+	public QueryableStateClient(
+			KvStateLocationLookupService lookupService,
+			KvStateClient networkClient,
+			ExecutionContext executionContext) {
+
+		this.lookupService = checkNotNull(lookupService, "lookupService");
+		this.networkClient = checkNotNull(networkClient, "networkClient");
+		this.executionContext = checkNotNull(executionContext, "executionContext");
+	}
+
+	/**
+	 * Queries the value of a key and namespace of a queryable state.
+	 *
+	 * @param jobId The ID of the job that the state belongs to.
+	 * @param queryableStateName The name under which the state is queryable.
+	 * @param keyHashCode The hash code of the key, which determines its key group.
+	 * @param serializedKeyAndNamespace The key and namespace, serialized with
+	 *                                  {@link KvStateRequestSerializer#serializeKeyAndNamespace}.
+	 * @return The future of the serialized value, which fails with {@link UnknownKeyOrNamespace}
+	 *         if the state has no value for the key and namespace.
+	 */
+	public Future<byte[]> getKvState(
+			final JobID jobId,
+			final String queryableStateName,
+			final int keyHashCode,
+			final byte[] serializedKeyAndNamespace) {
+
+		return getKvState(jobId, queryableStateName, keyHashCode, serializedKeyAndNamespace, false)
+			.recoverWith(new Recover<Future<byte[]>>() {
+				@Override
+				public Future<byte[]> recover(Throwable failure) throws Throwable {
+					if (isOutdatedLocation(failure)) {
+						LOG.debug("Repeating query of {} with a fresh location.", queryableStateName, failure);
+						return getKvState(jobId, queryableStateName, keyHashCode, serializedKeyAndNamespace, true);
+					}
+					throw failure;
+				}
+			}, executionContext);
+	}
+
+	/**
+	 * Shuts down the client and fails the pending queries.
+	 */
+	public void shutDown() {
+		networkClient.shutDown();
+		lookupCache.clear();
+	}
+
+	// ------------------------------------------------------------------------
+
+	private Future<byte[]> getKvState(
+			JobID jobId,
+			final String queryableStateName,
+			final int keyHashCode,
+			final byte[] serializedKeyAndNamespace,
+			boolean forceLookup) {
+
+		return getKvStateLocation(jobId, queryableStateName, forceLookup)
+			.flatMap(new Mapper<KvStateLocation, Future<byte[]>>() {
+				@Override
+				public Future<byte[]> apply(KvStateLocation location) {
+					int keyGroup = KeyGroupRangeAssignment.computeKeyGroupForKeyHash(
+						keyHashCode, location.getNumberOfKeyGroups());
+
+					KvStateID kvStateId = location.getKvStateID(keyGroup);
+					KvStateServerAddress serverAddress = location.getKvStateServerAddress(keyGroup);
+					if (kvStateId == null || serverAddress == null) {
+						return Futures.failed(new UnknownKvStateKeyGroupLocation(queryableStateName, keyGroup));
+					}
+
+					return networkClient.getKvState(serverAddress, kvStateId, serializedKeyAndNamespace);
+				}
+			}, executionContext);
+	}
+
+	/**
+	 * Returns the location of a queryable state, which is looked up once and then cached. Failed
+	 * lookups are not cached.
+	 */
+	private Future<KvStateLocation> getKvStateLocation(JobID jobId, String queryableStateName, boolean forceLookup) {
+		final Tuple2<JobID, String> cacheKey = new Tuple2<>(jobId, queryableStateName);
+
+		if (forceLookup) {
+			lookupCache.remove(cacheKey);
+		} else {
+			Future<KvStateLocation> cached = lookupCache.get(cacheKey);
+			if (cached != null) {
+				return cached;
+			}
+		}
+
+		Promise<KvStateLocation> promise = new DefaultPromise<>();
+		final Future<KvStateLocation> location = promise.future();
+
+		Future<KvStateLocation> previous = lookupCache.putIfAbsent(cacheKey, location);
+		if (previous != null) {
+			// a concurrent query started the lookup
+			return previous;
+		}
+
+		promise.completeWith(lookupService.getKvStateLocation(jobId, queryableStateName));
+
+		location.onFailure(new OnFailure() {
+			@Override
+			public void onFailure(Throwable failure) {
+				lookupCache.remove(cacheKey, location);
+			}
+		}, executionContext);
+
+		return location;
+	}
+
+	/**
+	 * Checks whether a query failed, because the location that it used is outdated.
+	 */
+	private static boolean isOutdatedLocation(Throwable failure) {
+		return failure instanceof UnknownKvStateID ||
+			failure instanceof UnknownKvStateKeyGroupLocation ||
+			failure instanceof ConnectException ||
+			failure instanceof ClosedChannelException;
+	}
+
+	private static int getNumNetworkThreads(Configuration config) {
+		int numNetworkThreads = config.getInteger(
+			ConfigConstants.QUERYABLE_STATE_CLIENT_NETWORK_THREADS,
+			ConfigConstants.DEFAULT_QUERYABLE_STATE_CLIENT_NETWORK_THREADS);
+
+		return numNetworkThreads == 0 ? Runtime.getRuntime().availableProcessors() : numNetworkThreads;
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.client.query;
+
+import akka.dispatch.Futures;
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.query.KvStateID;
+import org.apache.flink.runtime.query.KvStateLocation;
+import org.apache.flink.runtime.query.KvStateRegistry;
+import org.apache.flink.runtime.query.UnknownKvStateLocation;
+import org.apache.flink.runtime.query.netty.KvStateClient;
+import org.apache.flink.runtime.query.netty.KvStateServer;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KvState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scala.concurrent.Await;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the lookups and the retries of the {@link QueryableStateClient}.
+ */
+public class QueryableStateClientTest {
+
+	private static final FiniteDuration TIMEOUT = new FiniteDuration(30, TimeUnit.SECONDS);
+
+	private static final int NUMBER_OF_KEY_GROUPS = 4;
+
+	private static final byte[] VALUE = new byte[] { 1, 2, 3 };
+
+	private final JobID jobId = new JobID();
+
+	private final JobVertexID jobVertexId = new JobVertexID();
+
+	private final KvStateRegistry registry = new KvStateRegistry();
+
+	private KvStateServer server;
+
+	private TestingLookupService lookupService;
+
+	private QueryableStateClient client;
+
+	@Before
+	public void setup() throws Exception {
+		server = new KvStateServer(InetAddress.getLocalHost(), 0, 1, 1, registry);
+		server.start();
+
+		lookupService = new TestingLookupService();
+		client = new QueryableStateClient(lookupService, new KvStateClient(1), ExecutionContext.Implicits$.MODULE$.global());
+	}
+
+	@After
+	public void teardown() {
+		client.shutDown();
+		server.shutDown();
+	}
+
+	@Test
+	public void testLookupIsCached() throws Exception {
+		lookupService.location = register(createKvState());
+
+		for (int i = 0; i < 10; i++) {
+			assertArrayEquals(VALUE, Await.result(client.getKvState(jobId, "state", i, new byte[0]), TIMEOUT));
+		}
+		assertEquals(1, lookupService.numLookups);
+	}
+
+	/**
+	 * Tests that the client looks up the location again if the state instance of the cached
+	 * location was unregistered, for example because the job was restarted.
+	 */
+	@Test
+	public void testOutdatedLocationIsLookedUpAgain() throws Exception {
+		KvState<?, ?, ?, ?, ?> kvState = createKvState();
+		KvStateLocation location = register(kvState);
+		lookupService.location = location;
+
+		assertArrayEquals(VALUE, Await.result(client.getKvState(jobId, "state", 0, new byte[0]), TIMEOUT));
+
+		registry.unregisterKvState(jobId, jobVertexId, new KeyGroupRange(0, NUMBER_OF_KEY_GROUPS - 1),
+			"state", location.getKvStateID(0));
+		lookupService.location = register(kvState);
+
+		assertArrayEquals(VALUE, Await.result(client.getKvState(jobId, "state", 0, new byte[0]), TIMEOUT));
+		assertEquals(2, lookupService.numLookups);
+	}
+
+	@Test
+	public void testFailedLookupIsNotCached() throws Exception {
+		try {
+			Await.result(client.getKvState(jobId, "state", 0, new byte[0]), TIMEOUT);
+			fail("The lookup of an unknown state should fail.");
+		} catch (UnknownKvStateLocation expected) {
+			// expected
+		}
+
+		lookupService.location = register(createKvState());
+
+		assertArrayEquals(VALUE, Await.result(client.getKvState(jobId, "state", 0, new byte[0]), TIMEOUT));
+		assertEquals(2, lookupService.numLookups);
+	}
+
+	// ------------------------------------------------------------------------
+
+	private KvStateLocation register(KvState<?, ?, ?, ?, ?> kvState) {
+		KeyGroupRange keyGroupRange = new KeyGroupRange(0, NUMBER_OF_KEY_GROUPS - 1);
+		KvStateID kvStateId = registry.registerKvState(jobId, jobVertexId, keyGroupRange, "state", kvState);
+
+		KvStateLocation location = new KvStateLocation(jobId, jobVertexId, NUMBER_OF_KEY_GROUPS, "state");
+		location.registerKvState(keyGroupRange, kvStateId, server.getAddress());
+		return location;
+	}
+
+	private static KvState<?, ?, ?, ?, ?> createKvState() throws Exception {
+		KvState<?, ?, ?, ?, ?> kvState = mock(KvState.class);
+		when(kvState.getSerializedValue(any(byte[].class))).thenReturn(VALUE);
+		return kvState;
+	}
+
+	private static class TestingLookupService implements KvStateLocationLookupService {
+
+		private volatile KvStateLocation location;
+
+		private volatile int numLookups;
+
+		@Override
+		public Future<KvStateLocation> getKvStateLocation(JobID jobId, String registrationName) {
+			numLookups++;
+			return location != null
+				? Futures.successful(location.copy())
+				: Futures.<KvStateLocation>failed(new UnknownKvStateLocation(registrationName));
+		}
+	}
+}
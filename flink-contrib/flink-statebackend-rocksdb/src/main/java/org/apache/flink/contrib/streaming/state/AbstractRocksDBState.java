@@ -20,6 +20,7 @@ package org.apache.flink.contrib.streaming.state;
 import org.apache.flink.api.common.state.State;
 import org.apache.flink.api.common.state.StateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
 import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
 
@@ -27,13 +28,19 @@ import org.apache.flink.runtime.state.KvState;
 import org.apache.flink.runtime.state.KvStateSnapshot;
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDBException;
-
+import org.rocksdb.RocksIterator;
 import org.rocksdb.WriteOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Base class for {@link State} implementations that store state in a RocksDB database.
@@ -63,6 +70,9 @@ public abstract class AbstractRocksDBState<K, N, S extends State, SD extends Sta
 	/** The column family of this particular instance of state */
 	protected ColumnFamilyHandle columnFamily;
 
+	/** The lazy migration of the restored values of the state, null if there is none */
+	private final RocksDBStateMigration migration;
+
 	/**
 	 * We disable writes to the write-ahead-log here.
 	 */
@@ -81,6 +91,7 @@ public abstract class AbstractRocksDBState<K, N, S extends State, SD extends Sta
 		this.backend = backend;
 
 		this.columnFamily = columnFamily;
+		this.migration = backend.getStateMigration(columnFamily);
 
 		writeOptions = new WriteOptions();
 		writeOptions.setDisableWAL(true);
@@ -95,18 +106,241 @@ public abstract class AbstractRocksDBState<K, N, S extends State, SD extends Sta
 		try {
 			writeKeyAndNamespace(out);
 			byte[] key = baos.toByteArray();
-			backend.db.remove(columnFamily, writeOptions, key);
+			removeFromDb(key);
 		} catch (IOException|RocksDBException e) {
 			throw new RuntimeException("Error while removing entry from RocksDB", e);
 		}
 	}
 
 	protected void writeKeyAndNamespace(DataOutputView out) throws IOException {
-		backend.keySerializer().serialize(backend.currentKey(), out);
+		writeKeyAndNamespace(backend.currentKey(), out);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected void writeKeyAndNamespace(Object key, DataOutputView out) throws IOException {
+		backend.keySerializer().serialize(key, out);
 		out.writeByte(42);
 		namespaceSerializer.serialize(currentNamespace, out);
 	}
 
+	// ------------------------------------------------------------------------
+	//  Access to the column family, through the write batch of the backend if it has one
+	// ------------------------------------------------------------------------
+
+	protected byte[] getFromDb(byte[] key) throws RocksDBException {
+		return migrateIfNecessary(key, readFromDb(columnFamily, key));
+	}
+
+	/**
+	 * Looks up the values of many keys at once, in the order of the keys. Keys without a value
+	 * have a {@code null} value.
+	 */
+	protected List<byte[]> multiGetFromDb(List<byte[]> keys) throws RocksDBException {
+		RocksDBWriteBatchWrapper writeBatch = backend.writeBatch;
+		List<byte[]> values;
+		if (writeBatch != null) {
+			values = writeBatch.multiGet(columnFamily, keys);
+		} else {
+			values = new ArrayList<>(keys.size());
+			if (!keys.isEmpty()) {
+				// the map of RocksDB holds the given key arrays, so it is looked up by identity
+				Map<byte[], byte[]> dbValues = backend.db.multiGet(Collections.nCopies(keys.size(), columnFamily), keys);
+				for (byte[] key : keys) {
+					values.add(dbValues.get(key));
+				}
+			}
+		}
+
+		if (migration != null) {
+			for (int i = 0; i < values.size(); i++) {
+				values.set(i, migrateIfNecessary(keys.get(i), values.get(i)));
+			}
+		}
+		return values;
+	}
+
+	protected void putToDb(byte[] key, byte[] value) throws RocksDBException {
+		writeToDb(columnFamily, key, value);
+		markMigrated(key);
+	}
+
+	protected void mergeToDb(byte[] key, byte[] value) throws RocksDBException {
+		if (migration != null && !isMigrated(key)) {
+			// the merged value must not mix the formats of the two serializers
+			byte[] restoredValue = readFromDb(columnFamily, key);
+			if (restoredValue != null) {
+				migrate(key, restoredValue);
+			}
+		}
+
+		RocksDBWriteBatchWrapper writeBatch = backend.writeBatch;
+		if (writeBatch == null) {
+			backend.db.merge(columnFamily, writeOptions, key, value);
+		} else {
+			writeBatch.merge(columnFamily, key, value);
+		}
+		markMigrated(key);
+	}
+
+	protected void removeFromDb(byte[] key) throws RocksDBException {
+		removeFromDb(columnFamily, key);
+		if (migration != null) {
+			removeFromDb(migration.getMigratedKeys(), key);
+		}
+	}
+
+	private byte[] readFromDb(ColumnFamilyHandle handle, byte[] key) throws RocksDBException {
+		RocksDBWriteBatchWrapper writeBatch = backend.writeBatch;
+		return writeBatch == null ? backend.db.get(handle, key) : writeBatch.get(handle, key);
+	}
+
+	private void writeToDb(ColumnFamilyHandle handle, byte[] key, byte[] value) throws RocksDBException {
+		RocksDBWriteBatchWrapper writeBatch = backend.writeBatch;
+		if (writeBatch == null) {
+			backend.db.put(handle, writeOptions, key, value);
+		} else {
+			writeBatch.put(handle, key, value);
+		}
+	}
+
+	private void removeFromDb(ColumnFamilyHandle handle, byte[] key) throws RocksDBException {
+		RocksDBWriteBatchWrapper writeBatch = backend.writeBatch;
+		if (writeBatch == null) {
+			backend.db.remove(handle, writeOptions, key);
+		} else {
+			writeBatch.remove(handle, key);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  Lazy migration of restored values
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Migrates the given value of the key to the serializer of the state, if the state is being
+	 * migrated and the key was not migrated yet. The migrated value is written back. States
+	 * that read values without {@link #getFromDb(byte[])}, like iterators, must call this for
+	 * every value.
+	 *
+	 * @return The value in the format of the serializer of the state.
+	 */
+	protected byte[] migrateIfNecessary(byte[] key, byte[] value) throws RocksDBException {
+		if (migration == null || value == null || isMigrated(key)) {
+			return value;
+		}
+		return migrate(key, value);
+	}
+
+	private byte[] migrate(byte[] key, byte[] value) throws RocksDBException {
+		byte[] migratedValue;
+		try {
+			migratedValue = migrateValue(value, migration.getPriorSerializer(), migration.getSerializer());
+		} catch (IOException e) {
+			throw new RuntimeException("Error while migrating a value of the state to the serializer " +
+				migration.getSerializer(), e);
+		}
+		putToDb(key, migratedValue);
+		return migratedValue;
+	}
+
+	/**
+	 * Reads a serialized value with the prior serializer of the state and writes it with the new
+	 * serializer. The serializers are those of the {@link StateDescriptor} of the state. States
+	 * that store their values in a different format must override this.
+	 */
+	protected byte[] migrateValue(byte[] value, TypeSerializer<Object> priorSerializer, TypeSerializer<Object> serializer) throws IOException {
+		Object migrated = priorSerializer.deserialize(new DataInputViewStreamWrapper(new ByteArrayInputStream(value)));
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		serializer.serialize(migrated, new DataOutputViewStreamWrapper(baos));
+		return baos.toByteArray();
+	}
+
+	private boolean isMigrated(byte[] key) throws RocksDBException {
+		return readFromDb(migration.getMigratedKeys(), key) != null;
+	}
+
+	private void markMigrated(byte[] key) throws RocksDBException {
+		if (migration != null) {
+			writeToDb(migration.getMigratedKeys(), key, RocksDBStateMigration.MIGRATED);
+		}
+	}
+
+	/**
+	 * Checks whether the write batch of the backend holds a write of the key, which iterators
+	 * over the column family do not see.
+	 */
+	protected boolean hasBufferedWrite(byte[] key) {
+		RocksDBWriteBatchWrapper writeBatch = backend.writeBatch;
+		return writeBatch != null && writeBatch.contains(columnFamily, key);
+	}
+
+	/**
+	 * Creates an iterator over the column family. Iterators do not see buffered writes, so the
+	 * write batch of the backend is written first.
+	 */
+	protected RocksIterator newIterator() {
+		try {
+			backend.flushWriteBatch();
+		} catch (RocksDBException e) {
+			throw new RuntimeException("Error while writing buffered data to RocksDB", e);
+		}
+		return backend.db.newIterator(columnFamily);
+	}
+
+	// ------------------------------------------------------------------------
+	//  Queries
+	// ------------------------------------------------------------------------
+
+	@Override
+	public byte[] getSerializedValue(byte[] serializedKeyAndNamespace) throws Exception {
+		Lock queryLock = backend.getQueryLock();
+		queryLock.lock();
+		try {
+			if (backend.db == null) {
+				// the backend was disposed after the state was looked up
+				return null;
+			}
+			return getSerializedValueFromDb(serializedKeyAndNamespace);
+		} finally {
+			queryLock.unlock();
+		}
+	}
+
+	/**
+	 * Reads the serialized value of a key and namespace for a query. The serialized key and
+	 * namespace of the query are the RocksDB key of the value. This is called by a query thread,
+	 * while the db cannot be disposed. It reads the db directly, so it does not see the writes
+	 * that are buffered in the write batch of the task. States that store their values in a
+	 * different format than queries expect must override this.
+	 *
+	 * @return The value in the format of queries, or null if there is no value.
+	 */
+	protected byte[] getSerializedValueFromDb(byte[] serializedKeyAndNamespace) throws Exception {
+		return readQueriedValue(serializedKeyAndNamespace);
+	}
+
+	/**
+	 * Reads a value of the column family for a query. Values that were not migrated yet are
+	 * converted, but not written back, because only the task writes to the state.
+	 */
+	protected byte[] readQueriedValue(byte[] key) throws RocksDBException, IOException {
+		return convertQueriedValue(key, backend.db.get(columnFamily, key));
+	}
+
+	/**
+	 * Converts a value, which a query read from the column family, to the serializer of the
+	 * state if the key was not migrated yet.
+	 */
+	protected byte[] convertQueriedValue(byte[] key, byte[] value) throws RocksDBException, IOException {
+		if (migration == null || value == null || backend.db.get(migration.getMigratedKeys(), key) != null) {
+			return value;
+		}
+		return migrateValue(value, migration.getPriorSerializer(), migration.getSerializer());
+	}
+
+	// ------------------------------------------------------------------------
+
 	@Override
 	public void setCurrentNamespace(N namespace) {
 		this.currentNamespace = namespace;
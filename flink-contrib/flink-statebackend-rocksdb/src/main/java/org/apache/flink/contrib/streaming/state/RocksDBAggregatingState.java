@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.functions.AggregateFunction;
+import org.apache.flink.api.common.state.AggregatingState;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.runtime.state.InternalAggregatingState;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDBException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link AggregatingState} implementation that stores the accumulator in RocksDB.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <IN> The type of the values that are aggregated into the state.
+ * @param <ACC> The type of the accumulator.
+ * @param <OUT> The type of the result of the aggregation.
+ */
+public class RocksDBAggregatingState<K, N, IN, ACC, OUT>
+	extends AbstractRocksDBState<K, N, AggregatingState<IN, OUT>, AggregatingStateDescriptor<IN, ACC, OUT>>
+	implements InternalAggregatingState<IN, ACC, OUT> {
+
+	/** Serializer for the accumulators */
+	private final TypeSerializer<ACC> accSerializer;
+
+	/** This holds the name of the state and the aggregate function. */
+	private final AggregatingStateDescriptor<IN, ACC, OUT> stateDesc;
+
+	/** User-specified aggregate function */
+	private final AggregateFunction<IN, ACC, OUT> aggFunction;
+
+	/**
+	 * Creates a new {@code RocksDBAggregatingState}.
+	 *
+	 * @param namespaceSerializer The serializer for the namespace.
+	 * @param stateDesc The state identifier for the state. This contains name
+	 *                     and the aggregate function.
+	 */
+	public RocksDBAggregatingState(ColumnFamilyHandle columnFamily,
+			TypeSerializer<N> namespaceSerializer,
+			AggregatingStateDescriptor<IN, ACC, OUT> stateDesc,
+			RocksDBStateBackend backend) {
+
+		super(columnFamily, namespaceSerializer, backend);
+		this.stateDesc = requireNonNull(stateDesc);
+		this.accSerializer = stateDesc.getSerializer();
+		this.aggFunction = stateDesc.getAggregateFunction();
+	}
+
+	@Override
+	public OUT get() {
+		ACC accumulator = getAccumulator();
+		return accumulator == null ? null : aggFunction.getResult(accumulator);
+	}
+
+	@Override
+	public void add(IN value) throws IOException {
+		ACC accumulator = getAccumulator();
+		if (accumulator == null) {
+			accumulator = aggFunction.createAccumulator();
+		}
+		setAccumulator(aggFunction.add(value, accumulator));
+	}
+
+	@Override
+	public ACC getAccumulator() {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputViewStreamWrapper out = new DataOutputViewStreamWrapper(baos);
+		try {
+			writeKeyAndNamespace(out);
+			byte[] key = baos.toByteArray();
+			byte[] valueBytes = getFromDb(key);
+			if (valueBytes == null) {
+				return null;
+			}
+			return accSerializer.deserialize(new DataInputViewStreamWrapper(new ByteArrayInputStream(valueBytes)));
+		} catch (IOException|RocksDBException e) {
+			throw new RuntimeException("Error while retrieving data from RocksDB", e);
+		}
+	}
+
+	@Override
+	public void setAccumulator(ACC accumulator) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputViewStreamWrapper out = new DataOutputViewStreamWrapper(baos);
+		try {
+			writeKeyAndNamespace(out);
+			byte[] key = baos.toByteArray();
+			baos.reset();
+			accSerializer.serialize(accumulator, out);
+			putToDb(key, baos.toByteArray());
+		} catch (IOException|RocksDBException e) {
+			throw new RuntimeException("Error while adding data to RocksDB", e);
+		}
+	}
+}
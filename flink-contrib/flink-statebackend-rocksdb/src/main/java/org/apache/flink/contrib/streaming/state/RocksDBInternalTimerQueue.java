@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.streaming.api.operators.IndexedHeap;
+import org.apache.flink.streaming.api.operators.InternalTimer;
+import org.apache.flink.streaming.api.operators.InternalTimerQueue;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteOptions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An {@link InternalTimerQueue} that keeps the timers in a column family of a RocksDB instance,
+ * so that the number of timers is not bounded by the JVM heap.
+ *
+ * <p>The key of a timer in RocksDB is its key group, followed by its timestamp and the serialized
+ * key and namespace. The key group and the timestamp are written big-endian, the timestamp with
+ * flipped sign bit, so that the byte-wise order of RocksDB orders the timers of a key group by
+ * their timestamp. The earliest timer of each key group is cached on the heap, and the key groups
+ * are kept in an {@link IndexedHeap} ordered by their earliest timer.
+ *
+ * @param <K> Type of the key of the timers.
+ * @param <N> Type of the namespace of the timers.
+ */
+public class RocksDBInternalTimerQueue<K, N> implements InternalTimerQueue<K, N> {
+
+	private static final byte[] EMPTY_VALUE = new byte[0];
+
+	private static final int KEY_GROUP_PREFIX_BYTES = 2;
+
+	private final RocksDB db;
+
+	private final ColumnFamilyHandle columnFamily;
+
+	private final WriteOptions writeOptions;
+
+	private final TypeSerializer<K> keySerializer;
+
+	private final TypeSerializer<N> namespaceSerializer;
+
+	private final int numberOfKeyGroups;
+
+	private final KeyGroupRange keyGroupRange;
+
+	/** The earliest timer of each key group of the range, indexed by key group minus the start of the range */
+	private final KeyGroupHead<K, N>[] heads;
+
+	/** The key groups ordered by their earliest timer */
+	private final IndexedHeap<KeyGroupHead<K, N>> keyGroupHeap;
+
+	private final ByteArrayOutputStream keyBytes = new ByteArrayOutputStream(64);
+
+	private final DataOutputViewStreamWrapper keyOut = new DataOutputViewStreamWrapper(keyBytes);
+
+	private int size;
+
+	@SuppressWarnings("unchecked")
+	public RocksDBInternalTimerQueue(
+			RocksDB db,
+			ColumnFamilyHandle columnFamily,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			int numberOfKeyGroups,
+			KeyGroupRange keyGroupRange) {
+
+		this.db = requireNonNull(db);
+		this.columnFamily = requireNonNull(columnFamily);
+		this.keySerializer = requireNonNull(keySerializer);
+		this.namespaceSerializer = requireNonNull(namespaceSerializer);
+		this.numberOfKeyGroups = numberOfKeyGroups;
+		this.keyGroupRange = requireNonNull(keyGroupRange);
+
+		this.writeOptions = new WriteOptions();
+		this.writeOptions.setDisableWAL(true);
+
+		this.heads = new KeyGroupHead[keyGroupRange.getNumberOfKeyGroups()];
+		this.keyGroupHeap = new IndexedHeap<>(new Comparator<KeyGroupHead<K, N>>() {
+			@Override
+			public int compare(KeyGroupHead<K, N> o1, KeyGroupHead<K, N> o2) {
+				return Long.compare(o1.getEarliestTimestamp(), o2.getEarliestTimestamp());
+			}
+		});
+
+		for (int i = 0; i < heads.length; i++) {
+			heads[i] = new KeyGroupHead<>(keyGroupRange.getStartKeyGroup() + i);
+			keyGroupHeap.add(heads[i]);
+		}
+	}
+
+	@Override
+	public boolean add(InternalTimer<K, N> timer) throws Exception {
+		KeyGroupHead<K, N> head = getKeyGroupHead(timer.getKey());
+		byte[] key = serializeTimer(head.keyGroup, timer);
+
+		// look up the timer first, to count every timer only once
+		if (db.get(columnFamily, key) != null) {
+			return false;
+		}
+
+		db.put(columnFamily, writeOptions, key, EMPTY_VALUE);
+		size++;
+
+		if (timer.getTimestamp() < head.getEarliestTimestamp()) {
+			head.timer = timer;
+			keyGroupHeap.adjust(head);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean remove(InternalTimer<K, N> timer) throws Exception {
+		KeyGroupHead<K, N> head = getKeyGroupHead(timer.getKey());
+		byte[] key = serializeTimer(head.keyGroup, timer);
+
+		if (db.get(columnFamily, key) == null) {
+			return false;
+		}
+
+		db.remove(columnFamily, writeOptions, key);
+		size--;
+
+		if (timer.equals(head.timer)) {
+			head.timer = readEarliestTimer(head.keyGroup);
+			keyGroupHeap.adjust(head);
+		}
+		return true;
+	}
+
+	@Override
+	public InternalTimer<K, N> peek() {
+		KeyGroupHead<K, N> earliest = keyGroupHeap.peek();
+		return earliest == null ? null : earliest.timer;
+	}
+
+	@Override
+	public InternalTimer<K, N> poll() throws Exception {
+		KeyGroupHead<K, N> earliest = keyGroupHeap.peek();
+		if (earliest == null || earliest.timer == null) {
+			return null;
+		}
+
+		InternalTimer<K, N> timer = earliest.timer;
+
+		db.remove(columnFamily, writeOptions, serializeTimer(earliest.keyGroup, timer));
+		size--;
+
+		earliest.timer = readEarliestTimer(earliest.keyGroup);
+		keyGroupHeap.adjust(earliest);
+
+		return timer;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public List<InternalTimer<K, N>> getTimers(int keyGroup) throws Exception {
+		if (!keyGroupRange.contains(keyGroup)) {
+			throw new IllegalArgumentException("Key group is not in the range of the queue.");
+		}
+
+		List<InternalTimer<K, N>> timers = new ArrayList<>();
+
+		RocksIterator iterator = db.newIterator(columnFamily);
+		try {
+			for (iterator.seek(serializeKeyGroup(keyGroup)); iterator.isValid(); iterator.next()) {
+				byte[] key = iterator.key();
+				if (getKeyGroup(key) != keyGroup) {
+					break;
+				}
+				timers.add(deserializeTimer(key));
+			}
+		} finally {
+			iterator.dispose();
+		}
+		return timers;
+	}
+
+	@Override
+	public void close() {
+		columnFamily.dispose();
+		writeOptions.dispose();
+	}
+
+	// ------------------------------------------------------------------------
+
+	private KeyGroupHead<K, N> getKeyGroupHead(K key) {
+		int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(key, numberOfKeyGroups);
+		if (!keyGroupRange.contains(keyGroup)) {
+			throw new IllegalArgumentException("Key group " + keyGroup + " of key " + key +
+				" is not in the key group range " + keyGroupRange + " of the timer queue.");
+		}
+		return heads[keyGroup - keyGroupRange.getStartKeyGroup()];
+	}
+
+	private InternalTimer<K, N> readEarliestTimer(int keyGroup) throws IOException {
+		RocksIterator iterator = db.newIterator(columnFamily);
+		try {
+			iterator.seek(serializeKeyGroup(keyGroup));
+			if (iterator.isValid()) {
+				byte[] key = iterator.key();
+				if (getKeyGroup(key) == keyGroup) {
+					return deserializeTimer(key);
+				}
+			}
+			return null;
+		} finally {
+			iterator.dispose();
+		}
+	}
+
+	private byte[] serializeKeyGroup(int keyGroup) throws IOException {
+		keyBytes.reset();
+		keyOut.writeShort(keyGroup);
+		return keyBytes.toByteArray();
+	}
+
+	private byte[] serializeTimer(int keyGroup, InternalTimer<K, N> timer) throws IOException {
+		keyBytes.reset();
+		keyOut.writeShort(keyGroup);
+		keyOut.writeLong(timer.getTimestamp() ^ Long.MIN_VALUE);
+		keySerializer.serialize(timer.getKey(), keyOut);
+		namespaceSerializer.serialize(timer.getNamespace(), keyOut);
+		return keyBytes.toByteArray();
+	}
+
+	private InternalTimer<K, N> deserializeTimer(byte[] key) throws IOException {
+		DataInputViewStreamWrapper in = new DataInputViewStreamWrapper(
+			new ByteArrayInputStream(key, KEY_GROUP_PREFIX_BYTES, key.length - KEY_GROUP_PREFIX_BYTES));
+		long timestamp = in.readLong() ^ Long.MIN_VALUE;
+		K timerKey = keySerializer.deserialize(in);
+		N namespace = namespaceSerializer.deserialize(in);
+		return new InternalTimer<>(timestamp, timerKey, namespace);
+	}
+
+	private static int getKeyGroup(byte[] key) {
+		return ((key[0] & 0xff) << 8) | (key[1] & 0xff);
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The cached earliest timer of a key group.
+	 */
+	private static final class KeyGroupHead<K, N> implements IndexedHeap.Element {
+
+		final int keyGroup;
+
+		InternalTimer<K, N> timer;
+
+		private int heapIndex = IndexedHeap.NOT_CONTAINED;
+
+		KeyGroupHead(int keyGroup) {
+			this.keyGroup = keyGroup;
+		}
+
+		long getEarliestTimestamp() {
+			return timer == null ? Long.MAX_VALUE : timer.getTimestamp();
+		}
+
+		@Override
+		public int getHeapIndex() {
+			return heapIndex;
+		}
+
+		@Override
+		public void setHeapIndex(int heapIndex) {
+			this.heapIndex = heapIndex;
+		}
+	}
+}
@@ -26,7 +26,6 @@ import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
 
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDBException;
-import org.rocksdb.WriteOptions;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -58,12 +57,6 @@ public class RocksDBListState<K, N, V>
 	/** This holds the name of the state and can create an initial default value for the state. */
 	private final ListStateDescriptor<V> stateDesc;
 
-	/**
-	 * We disable writes to the write-ahead-log here. We can't have these in the base class
-	 * because JNI segfaults for some reason if they are.
-	 */
-	private final WriteOptions writeOptions;
-
 	/**
 	 * Creates a new {@code RocksDBListState}.
 	 *
@@ -79,9 +72,6 @@ public class RocksDBListState<K, N, V>
 		super(columnFamily, namespaceSerializer, backend);
 		this.stateDesc = requireNonNull(stateDesc);
 		this.valueSerializer = stateDesc.getSerializer();
-
-		writeOptions = new WriteOptions();
-		writeOptions.setDisableWAL(true);
 	}
 
 	@Override
@@ -91,7 +81,7 @@ public class RocksDBListState<K, N, V>
 		try {
 			writeKeyAndNamespace(out);
 			byte[] key = baos.toByteArray();
-			byte[] valueBytes = backend.db.get(columnFamily, key);
+			byte[] valueBytes = getFromDb(key);
 
 			if (valueBytes == null) {
 				return Collections.emptyList();
@@ -124,11 +114,30 @@ public class RocksDBListState<K, N, V>
 			baos.reset();
 
 			valueSerializer.serialize(value, out);
-			backend.db.merge(columnFamily, writeOptions, key, baos.toByteArray());
+			mergeToDb(key, baos.toByteArray());
 
 		} catch (Exception e) {
 			throw new RuntimeException("Error while adding data to RocksDB", e);
 		}
 	}
+
+	/**
+	 * Migrates the elements of the list one by one, keeping the delimiters of the merge operator
+	 * between them.
+	 */
+	@Override
+	protected byte[] migrateValue(byte[] value, TypeSerializer<Object> priorSerializer, TypeSerializer<Object> serializer) throws IOException {
+		DataInputViewStreamWrapper in = new DataInputViewStreamWrapper(new ByteArrayInputStream(value));
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputViewStreamWrapper out = new DataOutputViewStreamWrapper(baos);
+		while (in.available() > 0) {
+			serializer.serialize(priorSerializer.deserialize(in), out);
+			if (in.available() > 0) {
+				out.writeByte(in.readByte());
+			}
+		}
+		return baos.toByteArray();
+	}
 }
 
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The secondary copy of a RocksDB snapshot on the local disk of the TaskManager that took the
+ * snapshot. When the task is restored on the same TaskManager, the copy is restored instead of
+ * downloading the snapshot from the checkpoint file system.
+ *
+ * <p>The copy records the lengths of its files, so that a copy that was changed or partially
+ * deleted in the meantime is not restored. Copies are kept in a directory that is the same for
+ * all attempts of a subtask, and deleted once a later checkpoint completed.
+ */
+final class RocksDBLocalSnapshot implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger LOG = LoggerFactory.getLogger(RocksDBLocalSnapshot.class);
+
+	/** The prefix of the directories of the copies in the local state directory */
+	private static final String CHECKPOINT_DIR_PREFIX = "chk-";
+
+	/** The directory of the copy */
+	private final File directory;
+
+	/** The lengths of the files of the copy, by path relative to the directory */
+	private final HashMap<String, Long> fileLengths;
+
+	private RocksDBLocalSnapshot(File directory, HashMap<String, Long> fileLengths) {
+		this.directory = requireNonNull(directory);
+		this.fileLengths = requireNonNull(fileLengths);
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Moves the given snapshot directory into the local state directory, where it is kept as the
+	 * local copy of the given checkpoint.
+	 */
+	static RocksDBLocalSnapshot create(File snapshotPath, File localStateDirectory, long checkpointId) throws IOException {
+		File directory = new File(localStateDirectory, CHECKPOINT_DIR_PREFIX + checkpointId);
+
+		if (directory.exists()) {
+			FileUtils.deleteDirectory(directory);
+		}
+		// this renames the directory, unless it is on a different file system
+		FileUtils.moveDirectory(snapshotPath, directory);
+
+		HashMap<String, Long> fileLengths = new HashMap<>();
+		listFiles(directory, "", fileLengths);
+		return new RocksDBLocalSnapshot(directory, fileLengths);
+	}
+
+	private static void listFiles(File directory, String prefix, Map<String, Long> fileLengths) throws IOException {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			throw new IOException("Could not list the files of " + directory);
+		}
+
+		for (File file : files) {
+			if (file.isDirectory()) {
+				listFiles(file, prefix + file.getName() + File.separator, fileLengths);
+			} else {
+				fileLengths.put(prefix + file.getName(), file.length());
+			}
+		}
+	}
+
+	/**
+	 * Deletes the copies in the given local state directory, except for the copies of the
+	 * checkpoints in the range {@code [minCheckpointId, maxCheckpointId]}.
+	 */
+	static void deleteCopies(File localStateDirectory, long minCheckpointId, long maxCheckpointId) {
+		File[] directories = localStateDirectory.listFiles();
+		if (directories == null) {
+			return;
+		}
+
+		for (File directory : directories) {
+			String name = directory.getName();
+			if (!name.startsWith(CHECKPOINT_DIR_PREFIX)) {
+				continue;
+			}
+
+			long checkpointId;
+			try {
+				checkpointId = Long.parseLong(name.substring(CHECKPOINT_DIR_PREFIX.length()));
+			} catch (NumberFormatException e) {
+				continue;
+			}
+
+			if (checkpointId < minCheckpointId || checkpointId > maxCheckpointId) {
+				try {
+					FileUtils.deleteDirectory(directory);
+				} catch (IOException e) {
+					LOG.warn("Could not delete the local RocksDB snapshot {}.", directory, e);
+				}
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Gets the lengths of the files of the copy, by path relative to the directory of the copy.
+	 */
+	Map<String, Long> getFileLengths() {
+		return fileLengths;
+	}
+
+	/**
+	 * Checks whether the copy exists on this machine, with all files at their original length.
+	 */
+	boolean isValid() {
+		if (!directory.isDirectory()) {
+			return false;
+		}
+
+		for (Map.Entry<String, Long> file : fileLengths.entrySet()) {
+			File localFile = new File(directory, file.getKey());
+			if (!localFile.isFile() || localFile.length() != file.getValue()) {
+				LOG.info("The local RocksDB snapshot {} is incomplete, {} is missing or was changed.", directory, localFile);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "RocksDBLocalSnapshot{" + directory + ", " + fileLengths.size() + " files}";
+	}
+}
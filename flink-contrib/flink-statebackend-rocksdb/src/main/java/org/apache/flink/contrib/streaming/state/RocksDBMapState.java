@@ -0,0 +1,514 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.MapSerializer;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link MapState} implementation that stores state in RocksDB.
+ *
+ * <p>Every key-value pair of the map is stored as a separate RocksDB entry. The RocksDB key
+ * is composed of the serialized key, namespace and user key, so that all pairs of a
+ * (key, namespace) share a common prefix and are stored next to each other. Reading or
+ * updating a single pair only (de)serializes that pair, independent of the size of the map.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <UK> The type of the keys in the map state.
+ * @param <UV> The type of the values in the map state.
+ */
+public class RocksDBMapState<K, N, UK, UV>
+	extends AbstractRocksDBState<K, N, MapState<UK, UV>, MapStateDescriptor<UK, UV>>
+	implements MapState<UK, UV> {
+
+	/** The maximum number of pairs that an iterator reads from RocksDB at once */
+	private static final int CACHE_SIZE_LIMIT = 128;
+
+	/** Serializer for the keys of the map */
+	private final TypeSerializer<UK> userKeySerializer;
+
+	/** Serializer for the values of the map */
+	private final TypeSerializer<UV> userValueSerializer;
+
+	/** This holds the name of the state and the serializers of the map's keys and values. */
+	private final MapStateDescriptor<UK, UV> stateDesc;
+
+	/**
+	 * Creates a new {@code RocksDBMapState}.
+	 *
+	 * @param namespaceSerializer The serializer for the namespace.
+	 * @param stateDesc The state identifier for the state. This contains name
+	 *                     and the serializers of the map's keys and values.
+	 */
+	public RocksDBMapState(ColumnFamilyHandle columnFamily,
+			TypeSerializer<N> namespaceSerializer,
+			MapStateDescriptor<UK, UV> stateDesc,
+			RocksDBStateBackend backend) {
+
+		super(columnFamily, namespaceSerializer, backend);
+		this.stateDesc = requireNonNull(stateDesc);
+		this.userKeySerializer = stateDesc.getKeySerializer();
+		this.userValueSerializer = stateDesc.getValueSerializer();
+	}
+
+	// ------------------------------------------------------------------------
+
+	@Override
+	public UV get(UK userKey) {
+		try {
+			byte[] valueBytes = getFromDb(serializeUserKeyWithPrefix(userKey));
+			return valueBytes == null ? null : deserializeUserValue(valueBytes);
+		} catch (IOException|RocksDBException e) {
+			throw new RuntimeException("Error while retrieving data from RocksDB.", e);
+		}
+	}
+
+	@Override
+	public void put(UK userKey, UV userValue) {
+		try {
+			putToDb(serializeUserKeyWithPrefix(userKey), serializeUserValue(userValue));
+		} catch (IOException|RocksDBException e) {
+			throw new RuntimeException("Error while adding data to RocksDB", e);
+		}
+	}
+
+	@Override
+	public void putAll(Map<UK, UV> map) {
+		if (map == null) {
+			return;
+		}
+
+		for (Map.Entry<UK, UV> entry : map.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	@Override
+	public void remove(UK userKey) {
+		try {
+			removeFromDb(serializeUserKeyWithPrefix(userKey));
+		} catch (IOException|RocksDBException e) {
+			throw new RuntimeException("Error while removing data from RocksDB.", e);
+		}
+	}
+
+	@Override
+	public boolean contains(UK userKey) {
+		try {
+			return getFromDb(serializeUserKeyWithPrefix(userKey)) != null;
+		} catch (IOException|RocksDBException e) {
+			throw new RuntimeException("Error while retrieving data from RocksDB.", e);
+		}
+	}
+
+	@Override
+	public Iterable<Map.Entry<UK, UV>> entries() {
+		final byte[] prefixBytes = serializeCurrentKeyAndNamespace();
+
+		return new Iterable<Map.Entry<UK, UV>>() {
+			@Override
+			public Iterator<Map.Entry<UK, UV>> iterator() {
+				return new RocksDBMapIterator(prefixBytes);
+			}
+		};
+	}
+
+	@Override
+	public Iterable<UK> keys() {
+		final byte[] prefixBytes = serializeCurrentKeyAndNamespace();
+
+		return new Iterable<UK>() {
+			@Override
+			public Iterator<UK> iterator() {
+				final RocksDBMapIterator entries = new RocksDBMapIterator(prefixBytes);
+				return new Iterator<UK>() {
+					@Override
+					public boolean hasNext() {
+						return entries.hasNext();
+					}
+
+					@Override
+					public UK next() {
+						return entries.next().getKey();
+					}
+
+					@Override
+					public void remove() {
+						entries.remove();
+					}
+				};
+			}
+		};
+	}
+
+	@Override
+	public Iterable<UV> values() {
+		final byte[] prefixBytes = serializeCurrentKeyAndNamespace();
+
+		return new Iterable<UV>() {
+			@Override
+			public Iterator<UV> iterator() {
+				final RocksDBMapIterator entries = new RocksDBMapIterator(prefixBytes);
+				return new Iterator<UV>() {
+					@Override
+					public boolean hasNext() {
+						return entries.hasNext();
+					}
+
+					@Override
+					public UV next() {
+						return entries.next().getValue();
+					}
+
+					@Override
+					public void remove() {
+						entries.remove();
+					}
+				};
+			}
+		};
+	}
+
+	@Override
+	public Iterator<Map.Entry<UK, UV>> iterator() {
+		return new RocksDBMapIterator(serializeCurrentKeyAndNamespace());
+	}
+
+	@Override
+	public void clear() {
+		final byte[] prefixBytes = serializeCurrentKeyAndNamespace();
+
+		RocksIterator iterator = newIterator();
+		try {
+			for (iterator.seek(prefixBytes); iterator.isValid(); iterator.next()) {
+				byte[] keyBytes = iterator.key();
+				if (!startsWith(keyBytes, prefixBytes)) {
+					break;
+				}
+				removeFromDb(keyBytes);
+			}
+		} catch (RocksDBException e) {
+			throw new RuntimeException("Error while removing entry from RocksDB", e);
+		} finally {
+			iterator.dispose();
+		}
+	}
+
+	/**
+	 * Queries see the pairs of the map in the format of
+	 * {@link org.apache.flink.runtime.query.netty.message.KvStateRequestSerializer#serializeMap},
+	 * which is the user key behind the prefix of the RocksDB key, followed by the stored value.
+	 * The iterator is created without writing the write batch of the backend, which belongs to
+	 * the task.
+	 */
+	@Override
+	protected byte[] getSerializedValueFromDb(byte[] serializedKeyAndNamespace) throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+		RocksIterator iterator = backend.db.newIterator(columnFamily);
+		try {
+			for (iterator.seek(serializedKeyAndNamespace); iterator.isValid(); iterator.next()) {
+				byte[] keyBytes = iterator.key();
+				if (!startsWith(keyBytes, serializedKeyAndNamespace)) {
+					break;
+				}
+				baos.write(keyBytes, serializedKeyAndNamespace.length, keyBytes.length - serializedKeyAndNamespace.length);
+				baos.write(convertQueriedValue(keyBytes, iterator.value()));
+			}
+		} finally {
+			iterator.dispose();
+		}
+		return baos.size() == 0 ? null : baos.toByteArray();
+	}
+
+	// ------------------------------------------------------------------------
+	//  Serialization
+	// ------------------------------------------------------------------------
+
+	private byte[] serializeCurrentKeyAndNamespace() {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputViewStreamWrapper out = new DataOutputViewStreamWrapper(baos);
+		try {
+			writeKeyAndNamespace(out);
+			return baos.toByteArray();
+		} catch (IOException e) {
+			throw new RuntimeException("Error while serializing the current key and namespace.", e);
+		}
+	}
+
+	private byte[] serializeUserKeyWithPrefix(UK userKey) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputViewStreamWrapper out = new DataOutputViewStreamWrapper(baos);
+		writeKeyAndNamespace(out);
+		userKeySerializer.serialize(userKey, out);
+		return baos.toByteArray();
+	}
+
+	private byte[] serializeUserValue(UV userValue) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputViewStreamWrapper out = new DataOutputViewStreamWrapper(baos);
+
+		// values may be null, which RocksDB cannot tell apart from a missing entry
+		if (userValue == null) {
+			out.writeBoolean(true);
+		} else {
+			out.writeBoolean(false);
+			userValueSerializer.serialize(userValue, out);
+		}
+		return baos.toByteArray();
+	}
+
+	private UK deserializeUserKey(byte[] keyBytes, int prefixLength) throws IOException {
+		ByteArrayInputStream bais = new ByteArrayInputStream(keyBytes, prefixLength, keyBytes.length - prefixLength);
+		return userKeySerializer.deserialize(new DataInputViewStreamWrapper(bais));
+	}
+
+	private UV deserializeUserValue(byte[] valueBytes) throws IOException {
+		DataInputViewStreamWrapper in = new DataInputViewStreamWrapper(new ByteArrayInputStream(valueBytes));
+		boolean isNull = in.readBoolean();
+		return isNull ? null : userValueSerializer.deserialize(in);
+	}
+
+	/**
+	 * Migrates the values of the map, which are stored behind a flag for null values. The keys
+	 * of the map are part of the RocksDB keys and are not migrated.
+	 */
+	@Override
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	protected byte[] migrateValue(byte[] value, TypeSerializer<Object> priorSerializer, TypeSerializer<Object> serializer) throws IOException {
+		TypeSerializer<Object> priorValueSerializer = ((MapSerializer<Object, Object>) (TypeSerializer) priorSerializer).getValueSerializer();
+		TypeSerializer<Object> valueSerializer = ((MapSerializer<Object, Object>) (TypeSerializer) serializer).getValueSerializer();
+
+		DataInputViewStreamWrapper in = new DataInputViewStreamWrapper(new ByteArrayInputStream(value));
+		boolean isNull = in.readBoolean();
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputViewStreamWrapper out = new DataOutputViewStreamWrapper(baos);
+		out.writeBoolean(isNull);
+		if (!isNull) {
+			valueSerializer.serialize(priorValueSerializer.deserialize(in), out);
+		}
+		return baos.toByteArray();
+	}
+
+	private static boolean startsWith(byte[] bytes, byte[] prefixBytes) {
+		if (bytes.length < prefixBytes.length) {
+			return false;
+		}
+		for (int i = prefixBytes.length - 1; i >= 0; --i) {
+			if (bytes[i] != prefixBytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A key-value pair of the map, which was read from RocksDB. The user key and value are
+	 * deserialized lazily. Setting the value writes it to RocksDB.
+	 */
+	private class RocksDBMapEntry implements Map.Entry<UK, UV> {
+
+		/** The RocksDB key of the pair, including the key and namespace prefix */
+		private final byte[] rawKeyBytes;
+
+		/** The length of the key and namespace prefix of the RocksDB key */
+		private final int prefixLength;
+
+		/** The serialized value of the pair */
+		private byte[] rawValueBytes;
+
+		private UK userKey;
+
+		private UV userValue;
+
+		private boolean deleted;
+
+		RocksDBMapEntry(byte[] rawKeyBytes, int prefixLength, byte[] rawValueBytes) {
+			this.rawKeyBytes = rawKeyBytes;
+			this.prefixLength = prefixLength;
+			this.rawValueBytes = rawValueBytes;
+		}
+
+		void remove() {
+			deleted = true;
+			rawValueBytes = null;
+
+			try {
+				removeFromDb(rawKeyBytes);
+			} catch (RocksDBException e) {
+				throw new RuntimeException("Error while removing data from RocksDB.", e);
+			}
+		}
+
+		@Override
+		public UK getKey() {
+			if (userKey == null) {
+				try {
+					userKey = deserializeUserKey(rawKeyBytes, prefixLength);
+				} catch (IOException e) {
+					throw new RuntimeException("Error while deserializing the user key.", e);
+				}
+			}
+			return userKey;
+		}
+
+		@Override
+		public UV getValue() {
+			if (deleted) {
+				return null;
+			}
+			if (userValue == null && rawValueBytes != null) {
+				try {
+					userValue = deserializeUserValue(rawValueBytes);
+				} catch (IOException e) {
+					throw new RuntimeException("Error while deserializing the user value.", e);
+				}
+			}
+			return userValue;
+		}
+
+		@Override
+		public UV setValue(UV value) {
+			if (deleted) {
+				throw new IllegalStateException("The value has already been deleted.");
+			}
+
+			UV oldValue = getValue();
+			try {
+				rawValueBytes = serializeUserValue(value);
+				userValue = value;
+				putToDb(rawKeyBytes, rawValueBytes);
+			} catch (IOException|RocksDBException e) {
+				throw new RuntimeException("Error while putting data into RocksDB.", e);
+			}
+			return oldValue;
+		}
+	}
+
+	/**
+	 * Iterator over the key-value pairs of the current key and namespace. The pairs are read
+	 * from RocksDB in batches, so that no RocksDB iterator stays open between calls.
+	 */
+	private class RocksDBMapIterator implements Iterator<Map.Entry<UK, UV>> {
+
+		/** The key and namespace prefix of the pairs to iterate over */
+		private final byte[] prefixBytes;
+
+		/** The pairs of the current batch */
+		private final List<RocksDBMapEntry> cacheEntries = new ArrayList<>();
+
+		/** The index of the next pair in the current batch */
+		private int cacheIndex;
+
+		/** True, if there are no more pairs in RocksDB after the current batch */
+		private boolean expired;
+
+		/** The pair that was returned last, which can be removed */
+		private RocksDBMapEntry currentEntry;
+
+		RocksDBMapIterator(byte[] prefixBytes) {
+			this.prefixBytes = prefixBytes;
+		}
+
+		@Override
+		public boolean hasNext() {
+			loadCacheIfNeeded();
+			return cacheIndex < cacheEntries.size();
+		}
+
+		@Override
+		public Map.Entry<UK, UV> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			currentEntry = cacheEntries.get(cacheIndex++);
+			return currentEntry;
+		}
+
+		@Override
+		public void remove() {
+			if (currentEntry == null || currentEntry.deleted) {
+				throw new IllegalStateException("The remove operation must be called after a valid next operation.");
+			}
+			currentEntry.remove();
+		}
+
+		private void loadCacheIfNeeded() {
+			if (cacheIndex < cacheEntries.size() || expired) {
+				return;
+			}
+
+			// continue after the last pair of the previous batch
+			RocksDBMapEntry lastEntry = cacheEntries.isEmpty() ? null : cacheEntries.get(cacheEntries.size() - 1);
+			byte[] startBytes = lastEntry == null ? prefixBytes : lastEntry.rawKeyBytes;
+
+			cacheEntries.clear();
+			cacheIndex = 0;
+
+			RocksIterator iterator = newIterator();
+			try {
+				iterator.seek(startBytes);
+
+				// the last pair of the previous batch may still be there
+				if (lastEntry != null && iterator.isValid() && Arrays.equals(iterator.key(), startBytes)) {
+					iterator.next();
+				}
+
+				while (iterator.isValid() && cacheEntries.size() < CACHE_SIZE_LIMIT) {
+					byte[] keyBytes = iterator.key();
+					if (!startsWith(keyBytes, prefixBytes)) {
+						break;
+					}
+					cacheEntries.add(new RocksDBMapEntry(keyBytes, prefixBytes.length, migrateIfNecessary(keyBytes, iterator.value())));
+					iterator.next();
+				}
+
+				expired = cacheEntries.size() < CACHE_SIZE_LIMIT;
+			} catch (RocksDBException e) {
+				throw new RuntimeException("Error while migrating data in RocksDB.", e);
+			} finally {
+				iterator.dispose();
+			}
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.runtime.memory.MemoryAllocationException;
+import org.apache.flink.runtime.memory.MemoryManager;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.ColumnFamilyOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+
+import static java.util.Objects.requireNonNull;
+import static org.apache.flink.util.Preconditions.checkArgument;
+
+/**
+ * The memory budget that all RocksDB instances of a TaskManager share. The budget is reserved
+ * from the {@link MemoryManager} of the TaskManager when the first instance acquires it, and
+ * released when the last instance releases it.
+ *
+ * <p>The bundled RocksDB version has no block cache and write buffer manager that instances
+ * can share, every column family has its own memtables and block cache. The budget therefore
+ * hands out a part of its memory to every column family when it is created: half of the
+ * remaining memory, but at most the share of a slot. The column family uses a quarter of its
+ * memory for each of its two memtables and half of it for its block cache, which also holds
+ * the index and filter blocks of its tables. The default column family of every instance holds
+ * no state, but gets a small amount of memory, because RocksDB allocates its memtables and block
+ * cache as well.
+ *
+ * <p>The memory of a column family cannot be changed once it is created. Creating a column
+ * family therefore fails, if the budget does not have at least the minimum memory of a column
+ * family left.
+ */
+final class RocksDBMemoryBudget {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RocksDBMemoryBudget.class);
+
+	/** The least memory that a column family gets (8 MiBytes) */
+	static final long MIN_COLUMN_FAMILY_MEMORY = 8 * 1024 * 1024;
+
+	/** The memory of the default column family of every instance (1 MiByte) */
+	static final long DEFAULT_COLUMN_FAMILY_MEMORY = 1024 * 1024;
+
+	/** The budgets of the TaskManagers in this JVM, by their memory manager */
+	private static final HashMap<MemoryManager, RocksDBMemoryBudget> BUDGETS = new HashMap<>();
+
+	private final MemoryManager memoryManager;
+
+	/** The memory of the budget */
+	private final long totalMemory;
+
+	/** The most memory that a single column family gets */
+	private final long maxColumnFamilyMemory;
+
+	/** The memory handed out to the column families */
+	private long usedMemory;
+
+	/** The number of RocksDB instances that use the budget */
+	private int numUsers;
+
+	private RocksDBMemoryBudget(MemoryManager memoryManager, long totalMemory, long maxColumnFamilyMemory) {
+		this.memoryManager = requireNonNull(memoryManager);
+		this.totalMemory = totalMemory;
+		this.maxColumnFamilyMemory = Math.max(maxColumnFamilyMemory, MIN_COLUMN_FAMILY_MEMORY);
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Acquires the budget of the TaskManager with the given memory manager. The budget is created
+	 * with the given fraction of the managed memory, if it does not exist yet. Every call must be
+	 * matched by a call to {@link #release()}.
+	 *
+	 * @throws MemoryAllocationException Thrown, if the memory manager does not have the memory of
+	 *                                   the budget available.
+	 */
+	static RocksDBMemoryBudget acquire(MemoryManager memoryManager, double fraction) throws MemoryAllocationException {
+		checkArgument(fraction > 0 && fraction <= 1, "The fraction of the managed memory must be within (0, 1].");
+
+		synchronized (BUDGETS) {
+			RocksDBMemoryBudget budget = BUDGETS.get(memoryManager);
+			if (budget == null) {
+				long totalMemory = memoryManager.roundDownToPageSizeMultiple((long) (memoryManager.getMemorySize() * fraction));
+				budget = new RocksDBMemoryBudget(memoryManager, totalMemory, memoryManager.computeMemorySize(fraction));
+				memoryManager.reserveMemory(budget, totalMemory);
+
+				LOG.info("Reserved {} bytes of managed memory for RocksDB.", totalMemory);
+				BUDGETS.put(memoryManager, budget);
+			}
+			budget.numUsers++;
+			return budget;
+		}
+	}
+
+	/**
+	 * Releases the budget. The memory of the budget is returned to the memory manager, when the
+	 * last user releases the budget.
+	 */
+	void release() {
+		synchronized (BUDGETS) {
+			if (--numUsers == 0) {
+				BUDGETS.remove(memoryManager);
+				memoryManager.releaseReservedMemory(this);
+			}
+		}
+	}
+
+	/**
+	 * Hands out the memory for a new column family.
+	 *
+	 * @return The number of bytes that the column family may use.
+	 * @throws MemoryAllocationException Thrown, if the budget does not have the minimum memory
+	 *                                   of a column family left.
+	 */
+	synchronized long reserveColumnFamilyMemory() throws MemoryAllocationException {
+		long remainingMemory = totalMemory - usedMemory;
+		long memory = Math.min(maxColumnFamilyMemory, Math.max(remainingMemory / 2, MIN_COLUMN_FAMILY_MEMORY));
+
+		return reserve(memory);
+	}
+
+	/**
+	 * Hands out the memory for the default column family of a new RocksDB instance.
+	 *
+	 * @return The number of bytes that the column family may use.
+	 * @throws MemoryAllocationException Thrown, if the budget does not have the memory left.
+	 */
+	synchronized long reserveDefaultColumnFamilyMemory() throws MemoryAllocationException {
+		return reserve(DEFAULT_COLUMN_FAMILY_MEMORY);
+	}
+
+	private long reserve(long memory) throws MemoryAllocationException {
+		if (memory > totalMemory - usedMemory) {
+			throw new MemoryAllocationException("The RocksDB memory budget of " + totalMemory +
+					" bytes is exhausted, " + usedMemory + " bytes are used and a new column family needs " +
+					memory + " bytes. Increase the fraction of the managed memory for RocksDB or the " +
+					"managed memory of the TaskManager.");
+		}
+
+		usedMemory += memory;
+		return memory;
+	}
+
+	/**
+	 * Returns the memory of column families to the budget.
+	 */
+	synchronized void releaseColumnFamilyMemory(long memory) {
+		usedMemory -= memory;
+	}
+
+	long getTotalMemory() {
+		return totalMemory;
+	}
+
+	synchronized long getUsedMemory() {
+		return usedMemory;
+	}
+
+	/**
+	 * Sizes the memtables and the block cache of a column family, so that they use at most the
+	 * given memory. This replaces the block based table configuration of the options. The
+	 * index and filter blocks are kept in the block cache, so that they count against it.
+	 */
+	static ColumnFamilyOptions configureColumnFamily(ColumnFamilyOptions options, long memory) {
+		return options
+				.setWriteBufferSize(memory / 4)
+				.setMaxWriteBufferNumber(2)
+				.setMinWriteBufferNumberToMerge(1)
+				.setTableFormatConfig(new BlockBasedTableConfig()
+						.setBlockCacheSize(memory / 2)
+						.setCacheIndexAndFilterBlocks(true));
+	}
+}
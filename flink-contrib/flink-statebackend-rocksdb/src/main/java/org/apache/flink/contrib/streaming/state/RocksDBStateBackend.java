@@ -17,52 +17,86 @@
 
 package org.apache.flink.contrib.streaming.state;
 
+import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.net.URI;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.flink.api.common.JobID;
+import org.apache.flink.api.common.state.AggregatingState;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
 import org.apache.flink.api.common.state.FoldingState;
 import org.apache.flink.api.common.state.FoldingStateDescriptor;
 import org.apache.flink.api.common.state.ListState;
 import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
 import org.apache.flink.api.common.state.ReducingState;
 import org.apache.flink.api.common.state.ReducingStateDescriptor;
 import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.state.StateTtlConfig;
 import org.apache.flink.api.common.state.ValueState;
 import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.CompatibilityResult;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.MapSerializer;
 import org.apache.flink.api.common.typeutils.base.array.BytePrimitiveArraySerializer;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.api.java.typeutils.runtime.DataInputViewStream;
 import org.apache.flink.core.fs.Path;
 import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.runtime.execution.Environment;
 import org.apache.flink.runtime.fs.hdfs.HadoopFileSystem;
+import org.apache.flink.runtime.memory.MemoryAllocationException;
 import org.apache.flink.runtime.state.AbstractStateBackend;
 import org.apache.flink.runtime.state.AsynchronousKvStateSnapshot;
+import org.apache.flink.runtime.state.CompositeStateHandle;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 import org.apache.flink.runtime.state.KvState;
 import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.SharedStateHandle;
 import org.apache.flink.runtime.state.StateHandle;
+import org.apache.flink.runtime.state.StateMigrationException;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.TtlValueSerializer;
 import org.apache.flink.api.common.state.StateBackend;
 
 import org.apache.flink.runtime.state.filesystem.FsStateBackend;
+import org.apache.flink.streaming.api.operators.HeapInternalTimerQueue;
+import org.apache.flink.streaming.api.operators.InternalTimerQueue;
+import org.apache.flink.streaming.api.operators.InternalTimerQueueFactory;
 import org.apache.flink.streaming.util.HDFSCopyFromLocal;
 import org.apache.flink.streaming.util.HDFSCopyToLocal;
+import org.apache.flink.util.IOUtils;
 import org.apache.hadoop.fs.FileSystem;
 import org.rocksdb.BackupEngine;
 import org.rocksdb.BackupableDBOptions;
+import org.rocksdb.Checkpoint;
 import org.rocksdb.ColumnFamilyDescriptor;
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.ColumnFamilyOptions;
@@ -73,10 +107,13 @@ import org.rocksdb.RestoreOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.Statistics;
+import org.rocksdb.TickerType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static java.util.Objects.requireNonNull;
+import static org.apache.flink.util.Preconditions.checkArgument;
 
 /**
  * A {@link StateBackend} that stores its state in {@code RocksDB}. This state backend can
@@ -87,15 +124,28 @@ import static java.util.Objects.requireNonNull;
  * RocksDB database, and persist that snapshot in a file system (by default) or
  * another configurable state backend.
  * 
+ * <p>With {@link #enableIncrementalCheckpointing() incremental checkpointing}, a checkpoint only
+ * uploads the SST files of RocksDB that were not part of the previous completed checkpoint.
+ * The other SST files are shared with the previous checkpoints and are deleted by the
+ * {@link org.apache.flink.runtime.state.SharedStateRegistry} when no retained checkpoint
+ * references them any more.
+ * 
+ * <p>With {@link #enableLocalRecovery() local recovery}, semi-asynchronous and incremental
+ * snapshots are also kept on the local disk of the TaskManager. A task that is restored on the
+ * same TaskManager restores from the local copy instead of the checkpoint file system.
+ * 
  * <p>The behavior of the RocksDB instances can be parametrized by setting RocksDB Options
  * using the methods {@link #setPredefinedOptions(PredefinedOptions)} and
  * {@link #setOptions(OptionsFactory)}.
  */
-public class RocksDBStateBackend extends AbstractStateBackend {
+public class RocksDBStateBackend extends AbstractStateBackend implements InternalTimerQueueFactory {
 	private static final long serialVersionUID = 1L;
 
 	private static final Logger LOG = LoggerFactory.getLogger(RocksDBStateBackend.class);
 
+	/** The file name suffix of the SST files of RocksDB */
+	private static final String SST_FILE_SUFFIX = ".sst";
+
 	// ------------------------------------------------------------------------
 	//  Static configuration values
 	// ------------------------------------------------------------------------
@@ -109,6 +159,24 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 	/** Whether we do snapshots fully asynchronous */
 	private boolean fullyAsyncBackup = false;
 
+	/** Whether we only upload the SST files that changed since the last completed checkpoint */
+	private boolean incrementalCheckpointing = false;
+
+	/** Whether the timers of the operators are kept in RocksDB instead of the JVM heap */
+	private boolean timersInRocksDB = false;
+
+	/** The number of writes that the states buffer before writing them to RocksDB, 0 to not buffer writes */
+	private int writeBatchSize = 0;
+
+	/** The fraction of the managed memory that the RocksDB instances of a TaskManager share, 0 for no budget */
+	private double memoryBudgetFraction = 0.0;
+
+	/** Whether the memory usage and the block cache hit rate of RocksDB are reported as metrics */
+	private boolean nativeMetrics = false;
+
+	/** Whether a copy of the snapshots is kept on local disk to restore from */
+	private boolean localRecovery = false;
+
 	/** Operator identifier that is used to uniqueify the RocksDB storage path. */
 	private String operatorIdentifier;
 
@@ -137,6 +205,9 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 	private transient DBOptions dbOptions;
 	private transient ColumnFamilyOptions columnOptions;
 
+	/** The statistics of the RocksDB instances, if {@link #enableNativeMetrics() enabled} */
+	private transient Statistics statistics;
+
 	// ------------------------------------------------------------------------
 	//  Per operator values that are set in initializerForJob
 	// ------------------------------------------------------------------------
@@ -150,6 +221,12 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 	/** Base path where this configured instance stores checkpoints */
 	private transient String instanceCheckpointPath;
 
+	/**
+	 * Path where the local copies of the snapshots are kept, null if local recovery is disabled.
+	 * Unlike the other paths, this is the same for all attempts of the subtask.
+	 */
+	private transient File localStateDirectory;
+
 	/**
 	 * Our RocksDB data base, this is used by the actual subclasses of {@link AbstractRocksDBState}
 	 * to store state. The different k/v states that we have don't each have their own RocksDB
@@ -157,6 +234,18 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 	 */
 	protected volatile transient RocksDB db;
 
+	/** The batch that buffers the writes of the states to {@link #db}, null if writes are not buffered */
+	transient RocksDBWriteBatchWrapper writeBatch;
+
+	/** The memory budget of the TaskManager, null if the memory of RocksDB is not bounded */
+	private transient RocksDBMemoryBudget memoryBudget;
+
+	/** The options of the column families that got memory from the budget, and their memory */
+	private transient Map<ColumnFamilyOptions, Long> budgetedColumnOptions;
+
+	/** The options of the default column family of {@link #db}, null without a memory budget */
+	private transient ColumnFamilyOptions dbDefaultColumnOptions;
+
 	/**
 	 * Lock for protecting cleanup of the RocksDB db. We acquire this when doing asynchronous
 	 * checkpoints and when disposing the db. Otherwise, the asynchronous snapshot might try
@@ -164,12 +253,44 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 	 */
 	private Object dbCleanupLock;
 
+	/**
+	 * Lock for protecting the db against its disposal while queries of queryable states read
+	 * it. Queries hold the read lock, so that they neither block each other nor wait for
+	 * asynchronous checkpoints, which hold the {@link #dbCleanupLock}.
+	 */
+	private transient ReentrantReadWriteLock queryLock;
+
 	/**
 	 * Information about the k/v states as we create them. This is used to retrieve the
 	 * column family that is used for a state and also for sanity checks when restoring.
 	 */
 	private Map<String, Tuple2<ColumnFamilyHandle, StateDescriptor>> kvStateInformation;
 
+	/**
+	 * The migrations of the restored states whose values are migrated lazily to a new
+	 * serializer, by the column family of the state.
+	 */
+	private transient Map<ColumnFamilyHandle, RocksDBStateMigration> stateMigrations;
+
+	/**
+	 * The RocksDB data base for the timers, created with the first timer queue. The timers are
+	 * not part of {@link #db}, because they are checkpointed by the timer services and not with
+	 * the k/v states. Every timer queue has its own column family.
+	 */
+	private transient RocksDB timerDb;
+
+	/**
+	 * The SST files uploaded by the incremental checkpoints that are not yet confirmed as
+	 * completed, by checkpoint ID. Also used as the lock for {@link #baseSstFiles}.
+	 */
+	private transient TreeMap<Long, Map<String, SharedStateHandle>> materializedSstFiles;
+
+	/**
+	 * The SST files of the last completed incremental checkpoint, by file name. An incremental
+	 * checkpoint references these files instead of uploading them again.
+	 */
+	private transient Map<String, SharedStateHandle> baseSstFiles;
+
 	// ------------------------------------------------------------------------
 
 	/**
@@ -271,6 +392,18 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 		instanceCheckpointPath = getCheckpointPath("dummy_state");
 		instanceRocksDBPath = new File(instanceBasePath, "db");
 
+		if (localRecovery) {
+			int subtaskIndex = env.getTaskInfo().getIndexOfThisSubtask();
+			File basePath = initializedDbBasePaths[subtaskIndex % initializedDbBasePaths.length];
+
+			localStateDirectory = new File(new File(new File(basePath, jobId.toString()), operatorIdentifier), "local-state-" + subtaskIndex);
+			if (!localStateDirectory.exists() && !localStateDirectory.mkdirs()) {
+				throw new RuntimeException("Could not create the local state directory " + localStateDirectory);
+			}
+		} else {
+			localStateDirectory = null;
+		}
+
 		RocksDB.loadLibrary();
 
 		if (!instanceBasePath.exists()) {
@@ -290,10 +423,22 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 		}
 
 		dbCleanupLock = new Object();
+		queryLock = new ReentrantReadWriteLock();
+
+		releaseMemoryBudget();
+		if (memoryBudgetFraction > 0) {
+			if (env.getMemoryManager() == null) {
+				LOG.warn("The environment has no memory manager, the memory of RocksDB is not bounded.");
+			} else {
+				memoryBudget = RocksDBMemoryBudget.acquire(env.getMemoryManager(), memoryBudgetFraction);
+				budgetedColumnOptions = new IdentityHashMap<>();
+			}
+		}
 
 		List<ColumnFamilyDescriptor> columnFamilyDescriptors = new ArrayList<>(1);
 		// RocksDB seems to need this...
-		columnFamilyDescriptors.add(new ColumnFamilyDescriptor("default".getBytes()));
+		columnFamilyDescriptors.add(createDefaultColumnFamilyDescriptor());
+		dbDefaultColumnOptions = columnFamilyDescriptors.get(columnFamilyDescriptors.size() - 1).columnFamilyOptions();
 		List<ColumnFamilyHandle> columnFamilyHandles = new ArrayList<>(1);
 		try {
 			db = RocksDB.open(getDbOptions(), instanceRocksDBPath.getAbsolutePath(), columnFamilyDescriptors, columnFamilyHandles);
@@ -301,7 +446,21 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 			throw new RuntimeException("Error while opening RocksDB instance.", e);
 		}
 
-		kvStateInformation = new HashMap<>();
+		if (writeBatch != null) {
+			writeBatch.dispose();
+		}
+		writeBatch = writeBatchSize > 0 ? new RocksDBWriteBatchWrapper(this, writeBatchSize) : null;
+
+		// the states are read concurrently by the metrics
+		kvStateInformation = new ConcurrentHashMap<>();
+		stateMigrations = new HashMap<>();
+
+		materializedSstFiles = new TreeMap<>();
+		baseSstFiles = new HashMap<>();
+
+		if (nativeMetrics) {
+			registerNativeMetrics(env.getMetricGroup().addGroup("rocksdb"));
+		}
 	}
 
 	@Override
@@ -316,19 +475,35 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 
 		// we have to lock because we might have an asynchronous checkpoint going on
 		synchronized (dbCleanupLock) {
+			disposeTimerDb();
+
+			if (writeBatch != null) {
+				writeBatch.dispose();
+				writeBatch = null;
+			}
+
 			if (db != null) {
-				if (this.dbOptions != null) {
-					this.dbOptions.dispose();
-					this.dbOptions = null;
-				}
+				// wait for the queries that are reading the db
+				queryLock.writeLock().lock();
+				try {
+					if (this.dbOptions != null) {
+						this.dbOptions.dispose();
+						this.dbOptions = null;
+						this.statistics = null;
+					}
 
-				for (Tuple2<ColumnFamilyHandle, StateDescriptor> column : kvStateInformation.values()) {
-					column.f0.dispose();
-				}
+					for (Tuple2<ColumnFamilyHandle, StateDescriptor> column : kvStateInformation.values()) {
+						column.f0.dispose();
+					}
 
-				db.dispose();
-				db = null;
+					db.dispose();
+					db = null;
+				} finally {
+					queryLock.writeLock().unlock();
+				}
 			}
+
+			releaseMemoryBudget();
 		}
 	}
 
@@ -338,19 +513,158 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 
 		// we have to lock because we might have an asynchronous checkpoint going on
 		synchronized (dbCleanupLock) {
+			disposeTimerDb();
+
+			if (writeBatch != null) {
+				writeBatch.dispose();
+				writeBatch = null;
+			}
+
 			if (db != null) {
-				if (this.dbOptions != null) {
-					this.dbOptions.dispose();
-					this.dbOptions = null;
+				// wait for the queries that are reading the db
+				queryLock.writeLock().lock();
+				try {
+					if (this.dbOptions != null) {
+						this.dbOptions.dispose();
+						this.dbOptions = null;
+						this.statistics = null;
+					}
+
+					for (Tuple2<ColumnFamilyHandle, StateDescriptor> column : kvStateInformation.values()) {
+						column.f0.dispose();
+					}
+
+					db.dispose();
+					db = null;
+				} finally {
+					queryLock.writeLock().unlock();
 				}
+			}
+
+			releaseMemoryBudget();
+		}
+	}
+
+	private void disposeTimerDb() {
+		if (timerDb != null) {
+			timerDb.dispose();
+			timerDb = null;
+
+			try {
+				FileUtils.deleteDirectory(new File(instanceBasePath, "timers"));
+			} catch (IOException e) {
+				LOG.warn("Could not delete the RocksDB timer directory.", e);
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  Metrics
+	// ------------------------------------------------------------------------
+
+	private void registerNativeMetrics(MetricGroup metrics) {
+		metrics.gauge("memTableSize", new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return getLongProperty("rocksdb.cur-size-all-mem-tables");
+			}
+		});
+		metrics.gauge("estimatePendingCompactionBytes", new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return getLongProperty("rocksdb.estimate-pending-compaction-bytes");
+			}
+		});
+		metrics.gauge("blockCacheHitRate", new Gauge<Double>() {
+			@Override
+			public Double getValue() {
+				return getBlockCacheHitRate();
+			}
+		});
+		metrics.gauge("memoryBudgetUsed", new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				RocksDBMemoryBudget budget = memoryBudget;
+				return budget == null ? 0L : budget.getUsedMemory();
+			}
+		});
+	}
+
+	/**
+	 * Gets the lock that queries of the k/v states hold while they read the db. The db is not
+	 * disposed while the lock is held, but it may have been disposed before.
+	 */
+	Lock getQueryLock() {
+		return queryLock.readLock();
+	}
 
+	/**
+	 * Gets the sum of the given numeric property of RocksDB over the column families of the k/v
+	 * states, or -1 if RocksDB does not provide the property.
+	 */
+	long getLongProperty(String property) {
+		// the metrics are read concurrently to the disposal of the db
+		synchronized (dbCleanupLock) {
+			if (db == null) {
+				return 0L;
+			}
+
+			long sum = 0L;
+			try {
 				for (Tuple2<ColumnFamilyHandle, StateDescriptor> column : kvStateInformation.values()) {
-					column.f0.dispose();
+					sum += db.getLongProperty(column.f0, property);
 				}
+			} catch (RocksDBException e) {
+				LOG.debug("Could not read the RocksDB property {}.", property, e);
+				return -1L;
+			}
+			return sum;
+		}
+	}
+
+	/**
+	 * Gets the fraction of the reads of the block cache that were hits, or 0 if there were no
+	 * reads yet or the {@link #enableNativeMetrics() statistics} are disabled.
+	 */
+	double getBlockCacheHitRate() {
+		synchronized (dbCleanupLock) {
+			if (db == null || statistics == null) {
+				return 0.0;
+			}
+
+			long hits = statistics.getTickerCount(TickerType.BLOCK_CACHE_HIT);
+			long misses = statistics.getTickerCount(TickerType.BLOCK_CACHE_MISS);
+			return hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+		}
+	}
 
-				db.dispose();
-				db = null;
+	/**
+	 * Disposes the options of the column families that got memory from the budget, and releases
+	 * the budget. Must be called after the column families have been disposed.
+	 */
+	private void releaseMemoryBudget() {
+		if (memoryBudget != null) {
+			long budgetedMemory = 0;
+			for (Map.Entry<ColumnFamilyOptions, Long> entry : budgetedColumnOptions.entrySet()) {
+				entry.getKey().dispose();
+				budgetedMemory += entry.getValue();
 			}
+			budgetedColumnOptions = null;
+			dbDefaultColumnOptions = null;
+
+			memoryBudget.releaseColumnFamilyMemory(budgetedMemory);
+
+			memoryBudget.release();
+			memoryBudget = null;
+		}
+	}
+
+	/**
+	 * Writes the buffered writes of the states to RocksDB, if writes are buffered.
+	 */
+	void flushWriteBatch() throws RocksDBException {
+		if (writeBatch != null) {
+			writeBatch.flush();
 		}
 	}
 
@@ -387,13 +701,60 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 			return new HashMap<>();
 		}
 
-		if (fullyAsyncBackup) {
+		// the snapshots only see what has been written to RocksDB
+		flushWriteBatch();
+
+		if (incrementalCheckpointing) {
+			return performIncrementalSnapshot(checkpointId, timestamp);
+		} else if (fullyAsyncBackup) {
 			return performFullyAsyncSnapshot(checkpointId, timestamp);
 		} else {
 			return performSemiAsyncSnapshot(checkpointId, timestamp);
 		}
 	}
 
+	@Override
+	public void notifyOfCompletedCheckpoint(long checkpointId) throws Exception {
+		super.notifyOfCompletedCheckpoint(checkpointId);
+
+		if (materializedSstFiles != null) {
+			synchronized (materializedSstFiles) {
+				Map<String, SharedStateHandle> sstFiles = materializedSstFiles.get(checkpointId);
+
+				if (sstFiles != null) {
+					baseSstFiles = sstFiles;
+				}
+
+				// the files of older checkpoints are also referenced by the completed checkpoint,
+				// if they are still in use
+				materializedSstFiles.headMap(checkpointId, true).clear();
+			}
+		}
+
+		if (localStateDirectory != null) {
+			// we restore from the latest completed checkpoint, or from a later one
+			RocksDBLocalSnapshot.deleteCopies(localStateDirectory, checkpointId, Long.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Keeps the given snapshot directory as the local copy of the checkpoint, if local recovery
+	 * is enabled. The local copy is only an optimization, so this returns null instead of
+	 * failing the checkpoint, if the copy could not be created.
+	 */
+	private static RocksDBLocalSnapshot createLocalSnapshot(File snapshotPath, File localStateDirectory, long checkpointId) {
+		if (localStateDirectory == null) {
+			return null;
+		}
+
+		try {
+			return RocksDBLocalSnapshot.create(snapshotPath, localStateDirectory, checkpointId);
+		} catch (Exception e) {
+			LOG.warn("Could not keep a local copy of RocksDB snapshot " + snapshotPath + ".", e);
+			return null;
+		}
+	}
+
 	/**
 	 * Performs a checkpoint by using the RocksDB backup feature to backup to a directory.
 	 * This backup is the asynchronously copied to the final checkpoint location.
@@ -436,7 +797,9 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 		SemiAsyncSnapshot dummySnapshot = new SemiAsyncSnapshot(localBackupPath,
 				backupUri,
 				kvStateInformationCopy,
-				checkpointId);
+				getKeyGroupRange(),
+				checkpointId,
+				localStateDirectory);
 
 
 		HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> result = new HashMap<>();
@@ -470,8 +833,61 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 				this,
 				backupUri,
 				columnFamiliesCopy,
-				checkpointId);
+				getKeyGroupRange(),
+				checkpointId,
+				getTtlTimeProvider().currentTimestamp());
+
+
+		HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> result = new HashMap<>();
+		result.put("dummy_state", dummySnapshot);
+		return result;
+	}
+
+	/**
+	 * Performs an incremental checkpoint by creating a RocksDB checkpoint, which hard links the
+	 * current SST files into a local directory. The asynchronous part uploads the SST files that
+	 * are not contained in the last completed checkpoint, as well as the meta data files.
+	 */
+	private HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> performIncrementalSnapshot(long checkpointId, long timestamp) throws Exception {
+		final File localCheckpointPath = new File(instanceBasePath, "local-chk-" + checkpointId);
+
+		// RocksDB creates the checkpoint directory and fails if it exists
+		if (localCheckpointPath.exists()) {
+			LOG.warn("Deleting already existing local checkpoint directory {}.", localCheckpointPath);
+			FileUtils.deleteDirectory(localCheckpointPath);
+		}
+
+		long startTime = System.currentTimeMillis();
+
+		Checkpoint checkpoint = Checkpoint.create(db);
+		try {
+			// this flushes the memtables, so that all state is contained in the SST files
+			checkpoint.createCheckpoint(localCheckpointPath.getAbsolutePath());
+		} finally {
+			checkpoint.dispose();
+		}
+
+		long endTime = System.currentTimeMillis();
+		LOG.info("Incremental RocksDB (" + instanceRocksDBPath + ") checkpoint (synchronous part) took " + (endTime - startTime) + " ms.");
+
+		// draw a copy in case it get's changed while performing the async snapshot
+		List<StateDescriptor> kvStateInformationCopy = new ArrayList<>();
+		for (Tuple2<ColumnFamilyHandle, StateDescriptor> state: kvStateInformation.values()) {
+			kvStateInformationCopy.add(state.f1);
+		}
+
+		Map<String, SharedStateHandle> baseSstFilesCopy;
+		synchronized (materializedSstFiles) {
+			baseSstFilesCopy = baseSstFiles;
+		}
 
+		IncrementalSnapshot dummySnapshot = new IncrementalSnapshot(localCheckpointPath,
+				baseSstFilesCopy,
+				kvStateInformationCopy,
+				getKeyGroupRange(),
+				checkpointId,
+				timestamp,
+				localStateDirectory);
 
 		HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> result = new HashMap<>();
 		result.put("dummy_state", dummySnapshot);
@@ -480,20 +896,78 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 
 	@Override
 	public final void injectKeyValueStateSnapshots(HashMap<String, KvStateSnapshot> keyValueStateSnapshots, long recoveryTimestamp) throws Exception {
-		if (keyValueStateSnapshots.size() == 0) {
+		if (keyValueStateSnapshots == null || keyValueStateSnapshots.size() == 0) {
 			return;
 		}
 
 		KvStateSnapshot dummyState = keyValueStateSnapshots.get("dummy_state");
 		if (dummyState instanceof FinalSemiAsyncSnapshot) {
 			restoreFromSemiAsyncSnapshot((FinalSemiAsyncSnapshot) dummyState);
+		} else if (dummyState instanceof FinalIncrementalSnapshot) {
+			restoreFromIncrementalSnapshot((FinalIncrementalSnapshot) dummyState);
 		} else if (dummyState instanceof FinalFullyAsyncSnapshot) {
+			// the snapshot is inserted into the current data base, which must not hold older state
+			discardStateBeforeRestore(false);
 			restoreFromFullyAsyncSnapshot((FinalFullyAsyncSnapshot) dummyState);
 		} else {
 			throw new RuntimeException("Unknown RocksDB snapshot: " + dummyState);
 		}
 	}
 
+	/**
+	 * Restores the key groups of this backend from the snapshots of several RocksDB instances.
+	 * This is only possible for fully asynchronous and incremental snapshots, because the
+	 * backups of the semi-asynchronous snapshots replace the whole data base of this backend.
+	 */
+	@Override
+	public final void injectKeyGroupsStateSnapshots(List<HashMap<String, KvStateSnapshot>> keyGroupsStateSnapshots, long recoveryTimestamp) throws Exception {
+		List<FinalFullyAsyncSnapshot> snapshots = new ArrayList<>(keyGroupsStateSnapshots.size());
+		List<FinalIncrementalSnapshot> incrementalSnapshots = new ArrayList<>(keyGroupsStateSnapshots.size());
+
+		for (HashMap<String, KvStateSnapshot> keyValueStateSnapshots : keyGroupsStateSnapshots) {
+			if (keyValueStateSnapshots == null || keyValueStateSnapshots.size() == 0) {
+				continue;
+			}
+
+			KvStateSnapshot dummyState = keyValueStateSnapshots.get("dummy_state");
+			if (dummyState instanceof FinalFullyAsyncSnapshot) {
+				snapshots.add((FinalFullyAsyncSnapshot) dummyState);
+			} else if (dummyState instanceof FinalIncrementalSnapshot) {
+				incrementalSnapshots.add((FinalIncrementalSnapshot) dummyState);
+			} else if (dummyState instanceof FinalSemiAsyncSnapshot) {
+				FinalSemiAsyncSnapshot semiAsyncSnapshot = (FinalSemiAsyncSnapshot) dummyState;
+
+				if (keyGroupsStateSnapshots.size() > 1 ||
+						(semiAsyncSnapshot.keyGroupRange != null && !semiAsyncSnapshot.keyGroupRange.equals(getKeyGroupRange()))) {
+					throw new UnsupportedOperationException("Semi-asynchronous RocksDB snapshots cannot " +
+						"be restored with a different parallelism. Enable fully asynchronous snapshots " +
+						"to be able to rescale the keyed state.");
+				}
+
+				restoreFromSemiAsyncSnapshot(semiAsyncSnapshot);
+			} else {
+				throw new RuntimeException("Unknown RocksDB snapshot: " + dummyState);
+			}
+		}
+
+		if (incrementalSnapshots.size() == 1 && snapshots.isEmpty() &&
+				getKeyGroupRange().equals(incrementalSnapshots.get(0).keyGroupRange)) {
+			// the parallelism did not change, we can use the files of the snapshot as they are
+			restoreFromIncrementalSnapshot(incrementalSnapshots.get(0));
+		} else if (!snapshots.isEmpty() || !incrementalSnapshots.isEmpty()) {
+			// the snapshots are inserted into the current data base, which must not hold older state
+			discardStateBeforeRestore(false);
+
+			for (FinalFullyAsyncSnapshot snapshot : snapshots) {
+				restoreFromFullyAsyncSnapshot(snapshot);
+			}
+
+			for (FinalIncrementalSnapshot snapshot : incrementalSnapshots) {
+				restoreFromIncrementalSnapshotWithRescaling(snapshot);
+			}
+		}
+	}
+
 	private void restoreFromSemiAsyncSnapshot(FinalSemiAsyncSnapshot snapshot) throws Exception {
 		// This does mostly the same work as initializeForJob, we remove the existing RocksDB
 		// directory and create a new one from the backup.
@@ -506,7 +980,7 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 			}
 		}
 
-		db.dispose();
+		discardStateBeforeRestore(true);
 
 		// clean it, this will remove the last part of the path but RocksDB will recreate it
 		try {
@@ -518,46 +992,108 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 			throw new RuntimeException("Error cleaning RocksDB data directory.", e);
 		}
 
-		final File localBackupPath = new File(instanceBasePath, "chk-" + snapshot.checkpointId);
+		// restore from the local copy of the backup, if the snapshot was taken on this machine
+		final boolean fromLocalCopy = snapshot.localSnapshot != null && snapshot.localSnapshot.isValid();
+		final File localBackupPath;
 
-		if (localBackupPath.exists()) {
-			try {
-				LOG.warn("Deleting already existing local backup directory {}.", localBackupPath);
-				FileUtils.deleteDirectory(localBackupPath);
-			} catch (IOException e) {
-				throw new RuntimeException("Error cleaning RocksDB local backup directory.", e);
+		if (fromLocalCopy) {
+			localBackupPath = snapshot.localSnapshot.getDirectory();
+			LOG.info("Restoring RocksDB backup of checkpoint {} from the local copy {}.", snapshot.checkpointId, localBackupPath);
+		} else {
+			localBackupPath = new File(instanceBasePath, "chk-" + snapshot.checkpointId);
+
+			if (localBackupPath.exists()) {
+				try {
+					LOG.warn("Deleting already existing local backup directory {}.", localBackupPath);
+					FileUtils.deleteDirectory(localBackupPath);
+				} catch (IOException e) {
+					throw new RuntimeException("Error cleaning RocksDB local backup directory.", e);
+				}
 			}
-		}
 
-		HDFSCopyToLocal.copyToLocal(snapshot.backupUri, instanceBasePath);
+			HDFSCopyToLocal.copyToLocal(snapshot.backupUri, instanceBasePath);
+		}
 
 		try (BackupEngine backupEngine = BackupEngine.open(Env.getDefault(), new BackupableDBOptions(localBackupPath.getAbsolutePath()))) {
 			backupEngine.restoreDbFromLatestBackup(instanceRocksDBPath.getAbsolutePath(), instanceRocksDBPath.getAbsolutePath(), new RestoreOptions(true));
 		} catch (RocksDBException|IllegalArgumentException e) {
 			throw new RuntimeException("Error while restoring RocksDB state from " + localBackupPath, e);
 		} finally {
-			try {
-				FileUtils.deleteDirectory(localBackupPath);
-			} catch (IOException e) {
-				LOG.error("Error cleaning up local restore directory " + localBackupPath, e);
+			// the local copy is kept until a later checkpoint completes
+			if (!fromLocalCopy) {
+				try {
+					FileUtils.deleteDirectory(localBackupPath);
+				} catch (IOException e) {
+					LOG.error("Error cleaning up local restore directory " + localBackupPath, e);
+				}
 			}
 		}
 
+		openRestoredDb(snapshot.stateDescriptors);
+	}
+
+	/**
+	 * Drops the states that were created before the restore. The cached state objects and the
+	 * column family handles would otherwise keep pointing to the data that the restore replaces,
+	 * so that the backend does not have to be initialized again before restoring.
+	 *
+	 * @param disposeDb True, if the restore replaces the data base, which is disposed here.
+	 *                  Otherwise the column families are dropped from the data base, which
+	 *                  the restore fills again.
+	 */
+	private void discardStateBeforeRestore(boolean disposeDb) throws RocksDBException {
+		discardPartitionedStates();
+
+		if (writeBatch != null) {
+			writeBatch.clear();
+		}
+
+		synchronized (dbCleanupLock) {
+			queryLock.writeLock().lock();
+			try {
+				for (Tuple2<ColumnFamilyHandle, StateDescriptor> column : kvStateInformation.values()) {
+					if (!disposeDb) {
+						db.dropColumnFamily(column.f0);
+					}
+					column.f0.dispose();
+				}
+				kvStateInformation.clear();
+				stateMigrations.clear();
+
+				if (disposeDb) {
+					db.dispose();
+					db = null;
 
-		List<ColumnFamilyDescriptor> columnFamilyDescriptors = new ArrayList<>(snapshot.stateDescriptors.size());
-		for (StateDescriptor stateDescriptor: snapshot.stateDescriptors) {
-			columnFamilyDescriptors.add(new ColumnFamilyDescriptor(stateDescriptor.getName().getBytes(), getColumnOptions()));
+					releaseColumnFamilyOptions(dbDefaultColumnOptions);
+					dbDefaultColumnOptions = null;
+				}
+			} finally {
+				queryLock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Opens the restored data base in the RocksDB directory of this backend, with one column
+	 * family for each of the given states.
+	 */
+	private void openRestoredDb(List<StateDescriptor> stateDescriptors) {
+		List<ColumnFamilyDescriptor> columnFamilyDescriptors = new ArrayList<>(stateDescriptors.size());
+		for (StateDescriptor stateDescriptor: stateDescriptors) {
+			columnFamilyDescriptors.add(new ColumnFamilyDescriptor(stateDescriptor.getName().getBytes(), createColumnFamilyOptions()));
 		}
 
 		// RocksDB seems to need this...
-		columnFamilyDescriptors.add(new ColumnFamilyDescriptor("default".getBytes()));
-		List<ColumnFamilyHandle> columnFamilyHandles = new ArrayList<>(snapshot.stateDescriptors.size());
+		columnFamilyDescriptors.add(createDefaultColumnFamilyDescriptor());
+		dbDefaultColumnOptions = columnFamilyDescriptors.get(columnFamilyDescriptors.size() - 1).columnFamilyOptions();
+		List<ColumnFamilyHandle> columnFamilyHandles = new ArrayList<>(stateDescriptors.size());
 		try {
 
 			db = RocksDB.open(getDbOptions(), instanceRocksDBPath.getAbsolutePath(), columnFamilyDescriptors, columnFamilyHandles);
-			this.kvStateInformation = new HashMap<>();
-			for (int i = 0; i < snapshot.stateDescriptors.size(); i++) {
-				this.kvStateInformation.put(snapshot.stateDescriptors.get(i).getName(), new Tuple2<>(columnFamilyHandles.get(i), snapshot.stateDescriptors.get(i)));
+			this.kvStateInformation = new ConcurrentHashMap<>();
+			this.stateMigrations.clear();
+			for (int i = 0; i < stateDescriptors.size(); i++) {
+				this.kvStateInformation.put(stateDescriptors.get(i).getName(), new Tuple2<>(columnFamilyHandles.get(i), stateDescriptors.get(i)));
 			}
 
 		} catch (RocksDBException e) {
@@ -565,44 +1101,144 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 		}
 	}
 
-	private void restoreFromFullyAsyncSnapshot(FinalFullyAsyncSnapshot snapshot) throws Exception {
-
-		DataInputView inputView = snapshot.stateHandle.getState(userCodeClassLoader);
-
-		// clear k/v state information before filling it
-		kvStateInformation.clear();
+	/**
+	 * Restores the data base from an incremental snapshot that was taken for the same key groups.
+	 * The SST files of the snapshot become the base of the next incremental checkpoint.
+	 */
+	private void restoreFromIncrementalSnapshot(FinalIncrementalSnapshot snapshot) throws Exception {
+		discardStateBeforeRestore(true);
 
-		// first get the column family mapping
-		int numColumns = inputView.readInt();
-		Map<Byte, StateDescriptor> columnFamilyMapping = new HashMap<>(numColumns);
-		for (int i = 0; i < numColumns; i++) {
-			byte mappingByte = inputView.readByte();
+		// clean it, the files of the snapshot are downloaded into the directory
+		try {
+			if (instanceRocksDBPath.exists()) {
+				LOG.warn("Deleting already existing db directory {}.", instanceRocksDBPath);
+				FileUtils.deleteDirectory(instanceRocksDBPath);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Error cleaning RocksDB data directory.", e);
+		}
 
-			ObjectInputStream ooIn = new ObjectInputStream(new DataInputViewStream(inputView));
-			StateDescriptor stateDescriptor = (StateDescriptor) ooIn.readObject();
+		snapshot.restoreFiles(instanceRocksDBPath, userCodeClassLoader);
 
-			columnFamilyMapping.put(mappingByte, stateDescriptor);
+		openRestoredDb(snapshot.stateDescriptors);
 
-			// this will fill in the k/v state information
-			getColumnFamily(stateDescriptor);
+		synchronized (materializedSstFiles) {
+			materializedSstFiles.clear();
+			baseSstFiles = new HashMap<>(snapshot.sstFiles);
 		}
+	}
+
+	/**
+	 * Restores the key groups of this backend from an incremental snapshot that was taken for
+	 * different key groups. The snapshot is opened as a separate data base, from which the
+	 * key/value pairs of our key groups are inserted.
+	 */
+	private void restoreFromIncrementalSnapshotWithRescaling(FinalIncrementalSnapshot snapshot) throws Exception {
+		final File restorePath = new File(instanceBasePath, "restore-chk-" + snapshot.checkpointId + "-" + UUID.randomUUID());
 
-		// try and read until EOF
 		try {
-			// the EOFException will get us out of this...
-			while (true) {
-				byte mappingByte = inputView.readByte();
-				ColumnFamilyHandle handle = getColumnFamily(columnFamilyMapping.get(mappingByte));
-				byte[] key = BytePrimitiveArraySerializer.INSTANCE.deserialize(inputView);
-				byte[] value = BytePrimitiveArraySerializer.INSTANCE.deserialize(inputView);
-				db.put(handle, key, value);
+			snapshot.restoreFiles(restorePath, userCodeClassLoader);
+
+			List<ColumnFamilyDescriptor> columnFamilyDescriptors = new ArrayList<>(snapshot.stateDescriptors.size());
+			for (StateDescriptor stateDescriptor: snapshot.stateDescriptors) {
+				columnFamilyDescriptors.add(new ColumnFamilyDescriptor(stateDescriptor.getName().getBytes(), createColumnFamilyOptions()));
 			}
-		} catch (EOFException e) {
-			// expected
-		}
-	}
+			columnFamilyDescriptors.add(createDefaultColumnFamilyDescriptor());
+			List<ColumnFamilyHandle> columnFamilyHandles = new ArrayList<>(snapshot.stateDescriptors.size());
 
-	// ------------------------------------------------------------------------
+			RocksDB restoreDb = RocksDB.open(getDbOptions(), restorePath.getAbsolutePath(), columnFamilyDescriptors, columnFamilyHandles);
+			try {
+				for (int i = 0; i < snapshot.stateDescriptors.size(); i++) {
+					ColumnFamilyHandle handle = restoreColumnFamily(snapshot.stateDescriptors.get(i));
+
+					RocksIterator iterator = restoreDb.newIterator(columnFamilyHandles.get(i));
+					try {
+						iterator.seekToFirst();
+						while (iterator.isValid()) {
+							byte[] key = iterator.key();
+							if (isInKeyGroupRange(key)) {
+								db.put(handle, key, iterator.value());
+							}
+							iterator.next();
+						}
+					} finally {
+						iterator.dispose();
+					}
+				}
+			} finally {
+				for (ColumnFamilyHandle columnFamilyHandle : columnFamilyHandles) {
+					columnFamilyHandle.dispose();
+				}
+				restoreDb.dispose();
+
+				for (ColumnFamilyDescriptor columnFamilyDescriptor : columnFamilyDescriptors) {
+					releaseColumnFamilyOptions(columnFamilyDescriptor.columnFamilyOptions());
+				}
+			}
+		} finally {
+			FileUtils.deleteQuietly(restorePath);
+		}
+	}
+
+	/**
+	 * Checks whether the key of the given serialized key/value state key belongs to the key
+	 * groups of this backend.
+	 */
+	private boolean isInKeyGroupRange(byte[] key) throws IOException {
+		// the key bytes start with the serialized key, followed by the namespace
+		Object userKey = keySerializer.deserialize(
+			new DataInputViewStreamWrapper(new ByteArrayInputStream(key)));
+		int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(userKey, getNumberOfKeyGroups());
+
+		return getKeyGroupRange().contains(keyGroup);
+	}
+
+	private void restoreFromFullyAsyncSnapshot(FinalFullyAsyncSnapshot snapshot) throws Exception {
+
+		DataInputView inputView = snapshot.stateHandle.getState(userCodeClassLoader);
+
+		// the snapshot may contain key groups that are not assigned to this backend, if
+		// it was taken with a different parallelism
+		final KeyGroupRange keyGroupRange = getKeyGroupRange();
+		final boolean filterKeyGroups = snapshot.keyGroupRange != null &&
+			!keyGroupRange.getIntersection(snapshot.keyGroupRange).equals(snapshot.keyGroupRange);
+
+		// first get the column family mapping
+		int numColumns = inputView.readInt();
+		Map<Byte, StateDescriptor> columnFamilyMapping = new HashMap<>(numColumns);
+		for (int i = 0; i < numColumns; i++) {
+			byte mappingByte = inputView.readByte();
+
+			ObjectInputStream ooIn = new ObjectInputStream(new DataInputViewStream(inputView));
+			StateDescriptor stateDescriptor = (StateDescriptor) ooIn.readObject();
+
+			columnFamilyMapping.put(mappingByte, stateDescriptor);
+
+			// this will fill in the k/v state information
+			restoreColumnFamily(stateDescriptor);
+		}
+
+		// try and read until EOF
+		try {
+			// the EOFException will get us out of this...
+			while (true) {
+				byte mappingByte = inputView.readByte();
+				ColumnFamilyHandle handle = restoreColumnFamily(columnFamilyMapping.get(mappingByte));
+				byte[] key = BytePrimitiveArraySerializer.INSTANCE.deserialize(inputView);
+				byte[] value = BytePrimitiveArraySerializer.INSTANCE.deserialize(inputView);
+
+				if (filterKeyGroups && !isInKeyGroupRange(key)) {
+					continue;
+				}
+
+				db.put(handle, key, value);
+			}
+		} catch (EOFException e) {
+			// expected
+		}
+	}
+
+	// ------------------------------------------------------------------------
 	//  Semi-asynchronous Backup Classes
 	// ------------------------------------------------------------------------
 
@@ -615,16 +1251,22 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 		private final File localBackupPath;
 		private final URI backupUri;
 		private final List<StateDescriptor> stateDescriptors;
+		private final KeyGroupRange keyGroupRange;
 		private final long checkpointId;
+		private final File localStateDirectory;
 
 		private SemiAsyncSnapshot(File localBackupPath,
 				URI backupUri,
 				List<StateDescriptor> columnFamilies,
-				long checkpointId) {
+				KeyGroupRange keyGroupRange,
+				long checkpointId,
+				File localStateDirectory) {
 			this.localBackupPath = localBackupPath;
 			this.backupUri = backupUri;
 			this.stateDescriptors = columnFamilies;
+			this.keyGroupRange = keyGroupRange;
 			this.checkpointId = checkpointId;
+			this.localStateDirectory = localStateDirectory;
 		}
 
 		@Override
@@ -634,15 +1276,21 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 				HDFSCopyFromLocal.copyFromLocal(localBackupPath, backupUri);
 				long endTime = System.currentTimeMillis();
 				LOG.info("RocksDB materialization from " + localBackupPath + " to " + backupUri + " (asynchronous part) took " + (endTime - startTime) + " ms.");
-				return new FinalSemiAsyncSnapshot(backupUri, checkpointId, stateDescriptors);
+				RocksDBLocalSnapshot localSnapshot = createLocalSnapshot(localBackupPath, localStateDirectory, checkpointId);
+				return new FinalSemiAsyncSnapshot(backupUri, checkpointId, stateDescriptors, keyGroupRange, localSnapshot);
 			} catch (Exception e) {
 				FileSystem fs = FileSystem.get(backupUri, HadoopFileSystem.getHadoopConfiguration());
 				fs.delete(new org.apache.hadoop.fs.Path(backupUri), true);
 				throw e;
 			} finally {
-				FileUtils.deleteQuietly(localBackupPath);
+				release();
 			}
 		}
+
+		@Override
+		protected void release() {
+			FileUtils.deleteQuietly(localBackupPath);
+		}
 	}
 
 	/**
@@ -657,13 +1305,26 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 		final long checkpointId;
 		private final List<StateDescriptor> stateDescriptors;
 
+		/** The key groups of the backend that took the snapshot, null for older snapshots */
+		final KeyGroupRange keyGroupRange;
+
+		/** The copy of the backup on the machine that took the snapshot, null if there is none */
+		final RocksDBLocalSnapshot localSnapshot;
+
 		/**
 		 * Creates a new snapshot from the given state parameters.
 		 */
-		private FinalSemiAsyncSnapshot(URI backupUri, long checkpointId, List<StateDescriptor> stateDescriptors) {
+		private FinalSemiAsyncSnapshot(
+				URI backupUri,
+				long checkpointId,
+				List<StateDescriptor> stateDescriptors,
+				KeyGroupRange keyGroupRange,
+				RocksDBLocalSnapshot localSnapshot) {
 			this.backupUri = backupUri;
 			this.checkpointId = checkpointId;
 			this.stateDescriptors = stateDescriptors;
+			this.keyGroupRange = keyGroupRange;
+			this.localSnapshot = localSnapshot;
 		}
 
 		@Override
@@ -704,18 +1365,26 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 
 		private final URI backupUri;
 		private final Map<String, Tuple2<ColumnFamilyHandle, StateDescriptor>> columnFamilies;
+		private final KeyGroupRange keyGroupRange;
 		private final long checkpointId;
 
+		/** The time at which values with time-to-live are checked for expiration */
+		private final long ttlTimestamp;
+
 		private FullyAsyncSnapshot(org.rocksdb.Snapshot snapshot,
 				AbstractStateBackend backend,
 				URI backupUri,
 				Map<String, Tuple2<ColumnFamilyHandle, StateDescriptor>> columnFamilies,
-				long checkpointId) {
+				KeyGroupRange keyGroupRange,
+				long checkpointId,
+				long ttlTimestamp) {
 			this.snapshot = snapshot;
 			this.backend = backend;
 			this.backupUri = backupUri;
 			this.columnFamilies = columnFamilies;
+			this.keyGroupRange = keyGroupRange;
 			this.checkpointId = checkpointId;
+			this.ttlTimestamp = ttlTimestamp;
 		}
 
 		@Override
@@ -749,20 +1418,30 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 
 				for (Map.Entry<String, Tuple2<ColumnFamilyHandle, StateDescriptor>> column: columnFamilies.entrySet()) {
 					byte columnByte = columnFamilyMapping.get(column.getKey());
+					StateTtlConfig ttlConfig = column.getValue().f1.getTtlConfig();
 
 					synchronized (dbCleanupLock) {
 						if (db == null) {
 							throw new RuntimeException("RocksDB instance was disposed. This happens " +
 									"when we are in the middle of a checkpoint and the job fails.");
 						}
+						if (snapshot == null) {
+							throw new IOException("The snapshot was released, because the checkpoint was discarded.");
+						}
 						RocksIterator iterator = db.newIterator(column.getValue().f0, readOptions);
 						iterator.seekToFirst();
 						while (iterator.isValid()) {
-							outputView.writeByte(columnByte);
-							BytePrimitiveArraySerializer.INSTANCE.serialize(iterator.key(),
-									outputView);
-							BytePrimitiveArraySerializer.INSTANCE.serialize(iterator.value(),
-									outputView);
+							byte[] value = iterator.value();
+
+							// expired values are not written to the checkpoint
+							if (ttlConfig == null || !ttlConfig.isExpired(
+									TtlValueSerializer.readLastAccessTimestamp(value), ttlTimestamp)) {
+								outputView.writeByte(columnByte);
+								BytePrimitiveArraySerializer.INSTANCE.serialize(iterator.key(),
+										outputView);
+								BytePrimitiveArraySerializer.INSTANCE.serialize(value,
+										outputView);
+							}
 							iterator.next();
 						}
 					}
@@ -772,12 +1451,17 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 
 				long endTime = System.currentTimeMillis();
 				LOG.info("Fully asynchronous RocksDB materialization to " + backupUri + " (asynchronous part) took " + (endTime - startTime) + " ms.");
-				return new FinalFullyAsyncSnapshot(stateHandle, checkpointId);
+				return new FinalFullyAsyncSnapshot(stateHandle, checkpointId, keyGroupRange);
 			} finally {
-				synchronized (dbCleanupLock) {
-					if (db != null) {
-						db.releaseSnapshot(snapshot);
-					}
+				release();
+			}
+		}
+
+		@Override
+		protected void release() {
+			synchronized (dbCleanupLock) {
+				if (db != null && snapshot != null) {
+					db.releaseSnapshot(snapshot);
 				}
 				snapshot = null;
 			}
@@ -795,12 +1479,16 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 		final StateHandle<DataInputView> stateHandle;
 		final long checkpointId;
 
+		/** The key groups of the backend that took the snapshot, null for older snapshots */
+		final KeyGroupRange keyGroupRange;
+
 		/**
 		 * Creates a new snapshot from the given state parameters.
 		 */
-		private FinalFullyAsyncSnapshot(StateHandle<DataInputView> stateHandle, long checkpointId) {
+		private FinalFullyAsyncSnapshot(StateHandle<DataInputView> stateHandle, long checkpointId, KeyGroupRange keyGroupRange) {
 			this.stateHandle = stateHandle;
 			this.checkpointId = checkpointId;
+			this.keyGroupRange = keyGroupRange;
 		}
 
 		@Override
@@ -823,6 +1511,281 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 		}
 	}
 
+	// ------------------------------------------------------------------------
+	//  Incremental Backup Classes
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Upon snapshotting a RocksDB checkpoint is created synchronously, which hard links the
+	 * SST files. The asynchronous part uploads the files that are not yet part of the last
+	 * completed checkpoint. This is done in {@link #materialize()}.
+	 */
+	private class IncrementalSnapshot extends AsynchronousKvStateSnapshot<Object, Object, ValueState<Object>, ValueStateDescriptor<Object>, RocksDBStateBackend> {
+		private static final long serialVersionUID = 1L;
+
+		private final File localCheckpointPath;
+		private final Map<String, SharedStateHandle> baseSstFiles;
+		private final List<StateDescriptor> stateDescriptors;
+		private final KeyGroupRange keyGroupRange;
+		private final long checkpointId;
+		private final long timestamp;
+		private final File localStateDirectory;
+
+		private IncrementalSnapshot(File localCheckpointPath,
+				Map<String, SharedStateHandle> baseSstFiles,
+				List<StateDescriptor> stateDescriptors,
+				KeyGroupRange keyGroupRange,
+				long checkpointId,
+				long timestamp,
+				File localStateDirectory) {
+			this.localCheckpointPath = localCheckpointPath;
+			this.baseSstFiles = baseSstFiles;
+			this.stateDescriptors = stateDescriptors;
+			this.keyGroupRange = keyGroupRange;
+			this.checkpointId = checkpointId;
+			this.timestamp = timestamp;
+			this.localStateDirectory = localStateDirectory;
+		}
+
+		@Override
+		public KvStateSnapshot<Object, Object, ValueState<Object>, ValueStateDescriptor<Object>, RocksDBStateBackend> materialize() throws Exception {
+			Map<String, SharedStateHandle> sstFiles = new HashMap<>();
+			Map<String, StreamStateHandle> miscFiles = new HashMap<>();
+			boolean success = false;
+
+			try {
+				long startTime = System.currentTimeMillis();
+				long numUploadedBytes = 0;
+
+				File[] files = localCheckpointPath.listFiles();
+				if (files == null) {
+					throw new IOException("Could not list the files of the local checkpoint " + localCheckpointPath);
+				}
+
+				for (File file : files) {
+					String fileName = file.getName();
+
+					if (fileName.endsWith(SST_FILE_SUFFIX)) {
+						// SST files are immutable, so a file of the same name has the same contents
+						SharedStateHandle sstFile = baseSstFiles.get(fileName);
+
+						if (sstFile == null) {
+							sstFile = new SharedStateHandle(uploadFile(file), UUID.randomUUID().toString(), checkpointId);
+							numUploadedBytes += file.length();
+						}
+
+						sstFiles.put(fileName, sstFile);
+					} else {
+						miscFiles.put(fileName, uploadFile(file));
+						numUploadedBytes += file.length();
+					}
+				}
+
+				synchronized (materializedSstFiles) {
+					materializedSstFiles.put(checkpointId, sstFiles);
+				}
+
+				long endTime = System.currentTimeMillis();
+				LOG.info("Incremental RocksDB materialization from " + localCheckpointPath + " (asynchronous part) took " +
+					(endTime - startTime) + " ms and uploaded " + numUploadedBytes + " bytes.");
+
+				// the SST files of the local copy stay hard links to the files of the data base
+				RocksDBLocalSnapshot localSnapshot = createLocalSnapshot(localCheckpointPath, localStateDirectory, checkpointId);
+
+				success = true;
+				return new FinalIncrementalSnapshot(checkpointId, keyGroupRange, stateDescriptors, sstFiles, miscFiles, localSnapshot);
+			} finally {
+				if (!success) {
+					// discard the files uploaded by this checkpoint
+					for (SharedStateHandle sstFile : sstFiles.values()) {
+						if (sstFile.getCheckpointId() == checkpointId) {
+							discardQuietly(sstFile);
+						}
+					}
+					for (StreamStateHandle miscFile : miscFiles.values()) {
+						discardQuietly(miscFile);
+					}
+				}
+
+				release();
+			}
+		}
+
+		@Override
+		protected void release() {
+			FileUtils.deleteQuietly(localCheckpointPath);
+		}
+
+		private StreamStateHandle uploadFile(File file) throws Exception {
+			CheckpointStateOutputStream out = nonPartitionedStateBackend.createCheckpointStateOutputStream(checkpointId, timestamp);
+
+			try (InputStream in = new FileInputStream(file)) {
+				IOUtils.copyBytes(in, out, false);
+				return out.closeAndGetHandle();
+			} catch (Exception e) {
+				// closing the stream without getting the handle discards the written data
+				out.close();
+				throw e;
+			}
+		}
+
+		private void discardQuietly(StateHandle<?> stateHandle) {
+			try {
+				stateHandle.discardState();
+			} catch (Exception e) {
+				LOG.warn("Failed to discard " + stateHandle + " of failed checkpoint " + checkpointId, e);
+			}
+		}
+	}
+
+	/**
+	 * Dummy {@link KvStateSnapshot} that holds the files of an incremental checkpoint of our
+	 * RocksDB data base. The SST files are {@link SharedStateHandle shared} with other
+	 * checkpoints. They are not discarded together with the snapshot, but by the shared
+	 * state registry. This results from {@link IncrementalSnapshot}.
+	 */
+	private static class FinalIncrementalSnapshot implements KvStateSnapshot<Object, Object, ValueState<Object>, ValueStateDescriptor<Object>, RocksDBStateBackend>, CompositeStateHandle {
+		private static final long serialVersionUID = 1L;
+
+		final long checkpointId;
+
+		/** The key groups of the backend that took the snapshot */
+		final KeyGroupRange keyGroupRange;
+
+		final List<StateDescriptor> stateDescriptors;
+
+		/** The SST files of the data base, by file name */
+		final Map<String, SharedStateHandle> sstFiles;
+
+		/** The other files of the data base (manifest, options), by file name */
+		final Map<String, StreamStateHandle> miscFiles;
+
+		/** The copy of the files on the machine that took the snapshot, null if there is none */
+		final RocksDBLocalSnapshot localSnapshot;
+
+		private FinalIncrementalSnapshot(
+				long checkpointId,
+				KeyGroupRange keyGroupRange,
+				List<StateDescriptor> stateDescriptors,
+				Map<String, SharedStateHandle> sstFiles,
+				Map<String, StreamStateHandle> miscFiles,
+				RocksDBLocalSnapshot localSnapshot) {
+			this.checkpointId = checkpointId;
+			this.keyGroupRange = keyGroupRange;
+			this.stateDescriptors = stateDescriptors;
+			this.sstFiles = sstFiles;
+			this.miscFiles = miscFiles;
+			this.localSnapshot = localSnapshot;
+		}
+
+		/**
+		 * Puts all files of the snapshot into the given directory. The files are taken from the
+		 * local copy, if the snapshot was taken on this machine, and downloaded otherwise.
+		 */
+		void restoreFiles(File directory, ClassLoader classLoader) throws Exception {
+			if (localSnapshot != null && localSnapshot.isValid()) {
+				LOG.info("Restoring incremental RocksDB checkpoint {} from the local copy {}.", checkpointId, localSnapshot.getDirectory());
+				copyLocalFiles(directory);
+			} else {
+				downloadFiles(directory, classLoader);
+			}
+		}
+
+		/**
+		 * Copies the files of the local copy into the given directory. The SST files are
+		 * immutable, so they are hard linked instead, if the file system supports it.
+		 */
+		private void copyLocalFiles(File directory) throws IOException {
+			if (!directory.mkdirs()) {
+				throw new IOException("Could not create directory " + directory);
+			}
+
+			for (String fileName : localSnapshot.getFileLengths().keySet()) {
+				File source = new File(localSnapshot.getDirectory(), fileName);
+				File target = new File(directory, fileName);
+
+				if (fileName.endsWith(SST_FILE_SUFFIX)) {
+					try {
+						Files.createLink(target.toPath(), source.toPath());
+						continue;
+					} catch (IOException | UnsupportedOperationException e) {
+						LOG.debug("Could not link {}, copying it instead.", source, e);
+					}
+				}
+				Files.copy(source.toPath(), target.toPath());
+			}
+		}
+
+		/**
+		 * Downloads all files of the snapshot into the given directory.
+		 */
+		void downloadFiles(File directory, ClassLoader classLoader) throws Exception {
+			if (!directory.mkdirs()) {
+				throw new IOException("Could not create directory " + directory);
+			}
+
+			for (Map.Entry<String, SharedStateHandle> sstFile : sstFiles.entrySet()) {
+				downloadFile(sstFile.getValue(), new File(directory, sstFile.getKey()), classLoader);
+			}
+
+			for (Map.Entry<String, StreamStateHandle> miscFile : miscFiles.entrySet()) {
+				downloadFile(miscFile.getValue(), new File(directory, miscFile.getKey()), classLoader);
+			}
+		}
+
+		private static void downloadFile(StreamStateHandle stateHandle, File file, ClassLoader classLoader) throws Exception {
+			try (InputStream in = stateHandle.getState(classLoader)) {
+				IOUtils.copyBytes(in, new FileOutputStream(file), true);
+			}
+		}
+
+		@Override
+		public final KvState<Object, Object, ValueState<Object>, ValueStateDescriptor<Object>, RocksDBStateBackend> restoreState(
+				RocksDBStateBackend stateBackend,
+				TypeSerializer<Object> keySerializer,
+				ClassLoader classLoader,
+				long recoveryTimestamp) throws Exception {
+			throw new RuntimeException("Should never happen.");
+		}
+
+		@Override
+		public Collection<SharedStateHandle> getSharedStates() {
+			return sstFiles.values();
+		}
+
+		/**
+		 * Discards the files that are private to this snapshot. The SST files are discarded
+		 * by the shared state registry.
+		 */
+		@Override
+		public final void discardState() throws Exception {
+			for (StreamStateHandle miscFile : miscFiles.values()) {
+				miscFile.discardState();
+			}
+		}
+
+		/**
+		 * Returns the size of the files that were uploaded for this snapshot, i.e. without
+		 * the SST files that are shared with a previous checkpoint.
+		 */
+		@Override
+		public final long getStateSize() throws Exception {
+			long stateSize = 0;
+
+			for (SharedStateHandle sstFile : sstFiles.values()) {
+				if (sstFile.getCheckpointId() == checkpointId) {
+					stateSize += sstFile.getStateSize();
+				}
+			}
+
+			for (StreamStateHandle miscFile : miscFiles.values()) {
+				stateSize += miscFile.getStateSize();
+			}
+
+			return stateSize;
+		}
+	}
+
 	// ------------------------------------------------------------------------
 	//  State factories
 	// ------------------------------------------------------------------------
@@ -833,21 +1796,95 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 	 * list of column families. When a k/v state is first requested we check here whether we
 	 * already have a column family for that and return it or create a new one if it doesn't exist.
 	 *
-	 * <p>This also checks whether the {@link StateDescriptor} for a state matches the one
-	 * that we checkpointed, i.e. is already in the map of column families.
+	 * <p>This also checks whether the serializer of the {@link StateDescriptor} for a state can
+	 * read the values that the serializer of the checkpointed descriptor wrote. If the values
+	 * have to be migrated, a {@link RocksDBStateMigration} is set up, which migrates every value
+	 * when its key is first accessed.
 	 */
-	protected ColumnFamilyHandle getColumnFamily(StateDescriptor descriptor)  {
+	protected ColumnFamilyHandle getColumnFamily(StateDescriptor descriptor) throws Exception {
 
 		Tuple2<ColumnFamilyHandle, StateDescriptor> stateInfo = kvStateInformation.get(descriptor.getName());
 
-		if (stateInfo != null) {
-			if (!stateInfo.f1.equals(descriptor)) {
-				throw new RuntimeException("Trying to access state using wrong StateDescriptor, was " + stateInfo.f1 + " trying access with " + descriptor);
+		if (stateInfo == null) {
+			return createColumnFamily(descriptor);
+		}
+
+		Tuple2<ColumnFamilyHandle, StateDescriptor> migratedKeysInfo =
+			kvStateInformation.get(descriptor.getName() + RocksDBStateMigration.MIGRATED_KEYS_SUFFIX);
+
+		if (migratedKeysInfo == null) {
+			if (stateInfo.f1.equals(descriptor)) {
+				return stateInfo.f0;
+			}
+
+			CompatibilityResult<?> compatibility = checkStateCompatibility(stateInfo.f1, descriptor);
+			if (compatibility.isRequiresMigration()) {
+				RocksDBStateMigration.MigratedKeysDescriptor migratedKeysDescriptor =
+					new RocksDBStateMigration.MigratedKeysDescriptor(stateInfo.f1);
+
+				startStateMigration(stateInfo.f0, createColumnFamily(migratedKeysDescriptor), descriptor, compatibility);
+			}
+		} else {
+			// the state was restored while its values were migrated to the serializer of the
+			// checkpointed descriptor, the values that were not migrated yet have the prior format
+			StateDescriptor priorDescriptor =
+				((RocksDBStateMigration.MigratedKeysDescriptor) migratedKeysInfo.f1).getPriorDescriptor();
+
+			if (!stateInfo.f1.equals(descriptor) && checkStateCompatibility(stateInfo.f1, descriptor).isRequiresMigration()) {
+				throw new StateMigrationException("The state " + descriptor.getName() + " cannot be migrated " +
+					"to the serializer " + descriptor.getSerializer() + ", because it is still being migrated " +
+					"to the serializer " + stateInfo.f1.getSerializer() + ".");
+			}
+
+			CompatibilityResult<?> compatibility = checkStateCompatibility(priorDescriptor, descriptor);
+			if (compatibility.isRequiresMigration() && !stateMigrations.containsKey(stateInfo.f0)) {
+				startStateMigration(stateInfo.f0, migratedKeysInfo.f0, descriptor, compatibility);
 			}
-			return stateInfo.f0;
 		}
 
-		ColumnFamilyDescriptor columnDescriptor = new ColumnFamilyDescriptor(descriptor.getName().getBytes(), getColumnOptions());
+		// the next checkpoints hold the configuration snapshot of the new serializer
+		kvStateInformation.put(descriptor.getName(), new Tuple2<>(stateInfo.f0, descriptor));
+		return stateInfo.f0;
+	}
+
+	private void startStateMigration(
+			ColumnFamilyHandle columnFamily,
+			ColumnFamilyHandle migratedKeys,
+			StateDescriptor descriptor,
+			CompatibilityResult<?> compatibility) throws StateMigrationException {
+
+		TypeSerializer<?> priorSerializer = compatibility.getConvertDeserializer();
+
+		// the keys of a map are part of the RocksDB keys, only its values can be migrated
+		if (descriptor instanceof MapStateDescriptor && !((MapSerializer<?, ?>) priorSerializer).getKeySerializer().equals(
+				((MapStateDescriptor<?, ?>) descriptor).getKeySerializer())) {
+			throw new StateMigrationException("The keys of the map state " + descriptor.getName() +
+				" cannot be migrated to the serializer " + ((MapStateDescriptor<?, ?>) descriptor).getKeySerializer() + ".");
+		}
+
+		LOG.info("Migrating the values of the state {} lazily to the serializer {}.", descriptor.getName(), descriptor.getSerializer());
+		stateMigrations.put(columnFamily, new RocksDBStateMigration(migratedKeys, priorSerializer, descriptor.getSerializer()));
+	}
+
+	/**
+	 * Returns the migration of the values of the state with the given column family, or null
+	 * if the values of the state have the format of its serializer.
+	 */
+	RocksDBStateMigration getStateMigration(ColumnFamilyHandle columnFamily) {
+		return stateMigrations.get(columnFamily);
+	}
+
+	/**
+	 * Returns the column family for a checkpointed state while restoring, without checking the
+	 * descriptor. The first restored descriptor of a state is kept until the state is accessed.
+	 */
+	private ColumnFamilyHandle restoreColumnFamily(StateDescriptor descriptor) {
+		Tuple2<ColumnFamilyHandle, StateDescriptor> stateInfo = kvStateInformation.get(descriptor.getName());
+		return stateInfo != null ? stateInfo.f0 : createColumnFamily(descriptor);
+	}
+
+	private ColumnFamilyHandle createColumnFamily(StateDescriptor descriptor) {
+		ColumnFamilyDescriptor columnDescriptor = new ColumnFamilyDescriptor(descriptor.getName().getBytes(), createColumnFamilyOptions());
 
 		try {
 			ColumnFamilyHandle columnFamily = db.createColumnFamily(columnDescriptor);
@@ -858,6 +1895,42 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 		}
 	}
 
+	/**
+	 * Creates a timer queue in RocksDB, if {@link #enableTimersInRocksDB() enabled}, and a
+	 * {@link HeapInternalTimerQueue} otherwise.
+	 */
+	@Override
+	public <K, N> InternalTimerQueue<K, N> createTimerQueue(
+			String name,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			int numberOfKeyGroups,
+			KeyGroupRange keyGroupRange) throws Exception {
+
+		if (!timersInRocksDB) {
+			return new HeapInternalTimerQueue<>(numberOfKeyGroups, keyGroupRange);
+		}
+
+		if (timerDb == null) {
+			File timerDbPath = new File(instanceBasePath, "timers");
+			if (timerDbPath.exists()) {
+				LOG.warn("Deleting already existing timer db directory {}.", timerDbPath);
+				FileUtils.deleteDirectory(timerDbPath);
+			}
+
+			List<ColumnFamilyDescriptor> columnFamilyDescriptors = new ArrayList<>(1);
+			columnFamilyDescriptors.add(createDefaultColumnFamilyDescriptor());
+			List<ColumnFamilyHandle> columnFamilyHandles = new ArrayList<>(1);
+			timerDb = RocksDB.open(getDbOptions(), timerDbPath.getAbsolutePath(), columnFamilyDescriptors, columnFamilyHandles);
+		}
+
+		ColumnFamilyHandle columnFamily = timerDb.createColumnFamily(
+			new ColumnFamilyDescriptor(name.getBytes(), createColumnFamilyOptions()));
+
+		return new RocksDBInternalTimerQueue<>(timerDb, columnFamily, keySerializer, namespaceSerializer,
+			numberOfKeyGroups, keyGroupRange);
+	}
+
 	/**
 	 * Used by k/v states to access the current key.
 	 */
@@ -878,6 +1951,9 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 
 		ColumnFamilyHandle columnFamily = getColumnFamily(stateDesc);
 
+		if (stateDesc.isTtlEnabled()) {
+			return new RocksDBTtlValueState<>(columnFamily, namespaceSerializer, stateDesc, this);
+		}
 		return new RocksDBValueState<>(columnFamily, namespaceSerializer,  stateDesc, this);
 	}
 
@@ -908,6 +1984,24 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 		return new RocksDBFoldingState<>(columnFamily, namespaceSerializer, stateDesc, this);
 	}
 
+	@Override
+	protected <N, UK, UV> MapState<UK, UV> createMapState(TypeSerializer<N> namespaceSerializer,
+			MapStateDescriptor<UK, UV> stateDesc) throws Exception {
+
+		ColumnFamilyHandle columnFamily = getColumnFamily(stateDesc);
+
+		return new RocksDBMapState<>(columnFamily, namespaceSerializer, stateDesc, this);
+	}
+
+	@Override
+	protected <N, IN, ACC, OUT> AggregatingState<IN, OUT> createAggregatingState(TypeSerializer<N> namespaceSerializer,
+			AggregatingStateDescriptor<IN, ACC, OUT> stateDesc) throws Exception {
+
+		ColumnFamilyHandle columnFamily = getColumnFamily(stateDesc);
+
+		return new RocksDBAggregatingState<>(columnFamily, namespaceSerializer, stateDesc, this);
+	}
+
 	// ------------------------------------------------------------------------
 	//  Non-partitioned state
 	// ------------------------------------------------------------------------
@@ -952,6 +2046,175 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 		this.fullyAsyncBackup = false;
 	}
 
+	/**
+	 * Enables incremental checkpointing of the partitioned state held in RocksDB. This takes
+	 * precedence over {@link #enableFullyAsyncSnapshots() fully asynchronous snapshots}.
+	 *
+	 * <p>A checkpoint hard links the current SST files of RocksDB in a synchronous step, which
+	 * flushes the in-memory data. The asynchronous step uploads only the SST files that were not
+	 * part of the last completed checkpoint, the other files are referenced by both checkpoints.
+	 * The JobManager deletes a file when the last retained checkpoint referencing it is discarded.
+	 *
+	 * <p>Files that are referenced by a savepoint are never deleted by the JobManager, also not
+	 * when the savepoint is disposed. Likewise, the files of checkpoints that were recovered after
+	 * a JobManager failure, and the files of checkpoints kept in ZooKeeper in high-availability
+	 * mode, are not deleted when these checkpoints are discarded.
+	 *
+	 * <p>By default, this is disabled.
+	 */
+	public void enableIncrementalCheckpointing() {
+		this.incrementalCheckpointing = true;
+	}
+
+	/**
+	 * Disables incremental checkpointing of the partitioned state held in RocksDB.
+	 *
+	 * <p>By default, this is disabled.
+	 */
+	public void disableIncrementalCheckpointing() {
+		this.incrementalCheckpointing = false;
+	}
+
+	/**
+	 * Keeps the timers of the operators, for example the timers of window triggers, in RocksDB
+	 * instead of the JVM heap. This allows many more timers, at the cost of a RocksDB access for
+	 * every registered, deleted, and fired timer.
+	 *
+	 * <p>The timers are kept in a separate RocksDB instance and are checkpointed synchronously,
+	 * with the key groups of the operator.
+	 *
+	 * <p>By default, this is disabled.
+	 */
+	public void enableTimersInRocksDB() {
+		this.timersInRocksDB = true;
+	}
+
+	/**
+	 * Keeps the timers of the operators on the JVM heap.
+	 *
+	 * <p>By default, the timers are kept on the heap.
+	 */
+	public void disableTimersInRocksDB() {
+		this.timersInRocksDB = false;
+	}
+
+	/**
+	 * Sets the number of writes that the states buffer in a {@link org.rocksdb.WriteBatch}
+	 * before writing them to RocksDB with a single call. The buffered writes are also written
+	 * before every checkpoint. Reads of the states see the buffered writes.
+	 *
+	 * <p>Buffering reduces the number of JNI calls for operators that update many keys, for
+	 * example for every record of a large batch that a source emits at once. A read of a key with
+	 * buffered {@link org.apache.flink.api.common.state.ListState#add(Object) list additions},
+	 * and the iteration over a map state, write the buffered writes first.
+	 *
+	 * <p>By default, writes are not buffered.
+	 *
+	 * @param writeBatchSize The number of buffered writes, or 0 to not buffer writes.
+	 */
+	public void setWriteBatchSize(int writeBatchSize) {
+		checkArgument(writeBatchSize >= 0, "The write batch size must not be negative.");
+		this.writeBatchSize = writeBatchSize;
+	}
+
+	/**
+	 * Gets the number of writes that the states buffer before writing them to RocksDB, 0 if
+	 * writes are not buffered.
+	 */
+	public int getWriteBatchSize() {
+		return writeBatchSize;
+	}
+
+	/**
+	 * Bounds the memory of the memtables and block caches of all RocksDB instances of a
+	 * TaskManager by the given fraction of the TaskManager's managed memory. The memory is
+	 * reserved from the memory manager when the first RocksDB instance starts, and is no longer
+	 * available to other operators, for example the sorters of batch programs.
+	 *
+	 * <p>Every column family of the k/v states and timers gets a part of the budget when it is
+	 * created, at most the share of a slot. Its write buffer size, number of write buffers, and
+	 * block cache size are derived from that part, and replace the values of the predefined
+	 * options and the options factory. The index and filter blocks are kept in the block cache.
+	 * The default column family of every RocksDB instance, including the instance of the timers
+	 * and the temporary instance of a rescaling restore, gets a small part of the budget as well.
+	 * Once the budget is exhausted, creating a column family fails. The fraction of the first
+	 * RocksDB instance of a TaskManager defines the budget that all its instances share.
+	 *
+	 * <p>By default, the memory of RocksDB is not bounded.
+	 *
+	 * @param fraction The fraction of the managed memory within (0, 1], or 0 for no budget.
+	 */
+	public void setMemoryBudgetFraction(double fraction) {
+		checkArgument(fraction >= 0 && fraction <= 1, "The fraction of the managed memory must be within [0, 1].");
+		this.memoryBudgetFraction = fraction;
+	}
+
+	/**
+	 * Gets the fraction of the managed memory that the RocksDB instances of a TaskManager share,
+	 * 0 if the memory of RocksDB is not bounded.
+	 */
+	public double getMemoryBudgetFraction() {
+		return memoryBudgetFraction;
+	}
+
+	/**
+	 * Reports the size of the memtables, the estimated number of bytes that pending compactions
+	 * need to rewrite, the hit rate of the block cache, and the memory taken from the
+	 * {@link #setMemoryBudgetFraction(double) memory budget} as metrics of the tasks, in the
+	 * group {@code rocksdb}.
+	 *
+	 * <p>The hit rate needs the statistics of RocksDB, which slow down every access a bit.
+	 *
+	 * <p>By default, this is disabled.
+	 */
+	public void enableNativeMetrics() {
+		this.nativeMetrics = true;
+	}
+
+	/**
+	 * Disables the metrics of RocksDB.
+	 *
+	 * <p>By default, this is disabled.
+	 */
+	public void disableNativeMetrics() {
+		this.nativeMetrics = false;
+	}
+
+	/**
+	 * Keeps a copy of every semi-asynchronous and incremental snapshot on the local disk of the
+	 * TaskManager, in addition to the copy in the checkpoint file system. When a task is restored
+	 * on the TaskManager that took the snapshot, and the local copy is still complete, the task
+	 * restores from the local copy instead of downloading the snapshot. The JobManager prefers
+	 * the previous TaskManager of a task when it restarts the task.
+	 *
+	 * <p>The local copies need as much disk space as a snapshot, and are deleted when a later
+	 * checkpoint completed. The SST files of the local copies of incremental snapshots are hard
+	 * links to the files of the data base, and take no additional space while they are in use.
+	 * Fully asynchronous snapshots have no local copy.
+	 *
+	 * <p>By default, this is disabled.
+	 */
+	public void enableLocalRecovery() {
+		this.localRecovery = true;
+	}
+
+	/**
+	 * Disables the local copies of the snapshots. Tasks always restore from the checkpoint file
+	 * system.
+	 *
+	 * <p>By default, this is disabled.
+	 */
+	public void disableLocalRecovery() {
+		this.localRecovery = false;
+	}
+
+	/**
+	 * Gets whether a copy of the snapshots is kept on the local disk to restore from.
+	 */
+	public boolean isLocalRecoveryEnabled() {
+		return localRecovery;
+	}
+
 	/**
 	 * Sets the path where the RocksDB local database files should be stored on the local
 	 * file system. Setting this path overrides the default behavior, where the
@@ -1094,6 +2357,11 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 			// add necessary default options
 			opt = opt.setCreateIfMissing(true);
 
+			if (nativeMetrics) {
+				opt = opt.createStatistics();
+				statistics = opt.statisticsPtr();
+			}
+
 			dbOptions = opt;
 		}
 		return dbOptions;
@@ -1104,16 +2372,74 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 	 */
 	public ColumnFamilyOptions getColumnOptions() {
 		if (columnOptions == null) {
-			// initial options from pre-defined profile
-			ColumnFamilyOptions opt = predefinedOptions.createColumnOptions();
+			columnOptions = createColumnOptions();
+		}
+		return columnOptions;
+	}
 
-			// add user-defined options, if specified
-			if (optionsFactory != null) {
-				opt = optionsFactory.createColumnOptions(opt);
-			}
+	private ColumnFamilyOptions createColumnOptions() {
+		// initial options from pre-defined profile
+		ColumnFamilyOptions opt = predefinedOptions.createColumnOptions();
 
-			columnOptions = opt;
+		// add user-defined options, if specified
+		if (optionsFactory != null) {
+			opt = optionsFactory.createColumnOptions(opt);
+		}
+		return opt;
+	}
+
+	/**
+	 * Gets the options for a new column family of the k/v states or the timers. With a memory
+	 * budget, every column family gets its own options, sized by the memory it gets from the
+	 * budget.
+	 */
+	private ColumnFamilyOptions createColumnFamilyOptions() {
+		if (memoryBudget == null) {
+			return getColumnOptions();
+		}
+
+		try {
+			return createBudgetedColumnOptions(memoryBudget.reserveColumnFamilyMemory());
+		} catch (MemoryAllocationException e) {
+			throw new RuntimeException("Could not create a RocksDB column family.", e);
+		}
+	}
+
+	/**
+	 * Gets the descriptor of the default column family of a new RocksDB instance. With a memory
+	 * budget, the default column family gets its own options, sized by the memory it gets from
+	 * the budget.
+	 */
+	private ColumnFamilyDescriptor createDefaultColumnFamilyDescriptor() {
+		if (memoryBudget == null) {
+			return new ColumnFamilyDescriptor("default".getBytes());
+		}
+
+		try {
+			return new ColumnFamilyDescriptor("default".getBytes(),
+				createBudgetedColumnOptions(memoryBudget.reserveDefaultColumnFamilyMemory()));
+		} catch (MemoryAllocationException e) {
+			throw new RuntimeException("Could not create a RocksDB instance.", e);
+		}
+	}
+
+	private ColumnFamilyOptions createBudgetedColumnOptions(long memory) {
+		ColumnFamilyOptions options = RocksDBMemoryBudget.configureColumnFamily(createColumnOptions(), memory);
+		budgetedColumnOptions.put(options, memory);
+		return options;
+	}
+
+	/**
+	 * Disposes the options of a column family that got memory from the budget, and returns its
+	 * memory to the budget. Must be called after the column family has been disposed.
+	 */
+	private void releaseColumnFamilyOptions(ColumnFamilyOptions options) {
+		if (memoryBudget != null) {
+			Long memory = budgetedColumnOptions.remove(options);
+			if (memory != null) {
+				options.dispose();
+				memoryBudget.releaseColumnFamilyMemory(memory);
+			}
 		}
-		return columnOptions;
 	}
 }
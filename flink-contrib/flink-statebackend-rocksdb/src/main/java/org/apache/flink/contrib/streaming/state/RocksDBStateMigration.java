@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.state.StateBackend;
+import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.array.BytePrimitiveArraySerializer;
+import org.rocksdb.ColumnFamilyHandle;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The lazy migration of the values of a restored state to the serializer of the state. The
+ * values are not rewritten when the state is restored. Instead, every value is read with the
+ * convert deserializer of the prior serializer and written with the new serializer when its
+ * key is first accessed.
+ *
+ * <p>The keys whose values were migrated, or written with the new serializer, are marked in a
+ * separate column family, the migrated keys column family of the state. It is checkpointed and
+ * restored together with the column family of the state, so that a migration continues after a
+ * restore, also with a different parallelism. The column family is kept for the lifetime of the
+ * state, because it is not known when all keys have been accessed.
+ */
+class RocksDBStateMigration {
+
+	/** The suffix of the name of the migrated keys column family of a state */
+	static final String MIGRATED_KEYS_SUFFIX = "$migrated";
+
+	/** The value of the keys in the migrated keys column family */
+	static final byte[] MIGRATED = new byte[0];
+
+	/** The column family that marks the migrated keys */
+	private final ColumnFamilyHandle migratedKeys;
+
+	/** The serializer that reads the values that were not migrated yet */
+	private final TypeSerializer<Object> priorSerializer;
+
+	/** The serializer of the state, which writes the migrated values */
+	private final TypeSerializer<Object> serializer;
+
+	@SuppressWarnings("unchecked")
+	RocksDBStateMigration(ColumnFamilyHandle migratedKeys, TypeSerializer<?> priorSerializer, TypeSerializer<?> serializer) {
+		this.migratedKeys = requireNonNull(migratedKeys);
+		this.priorSerializer = (TypeSerializer<Object>) requireNonNull(priorSerializer);
+		this.serializer = (TypeSerializer<Object>) requireNonNull(serializer);
+	}
+
+	ColumnFamilyHandle getMigratedKeys() {
+		return migratedKeys;
+	}
+
+	TypeSerializer<Object> getPriorSerializer() {
+		return priorSerializer;
+	}
+
+	TypeSerializer<Object> getSerializer() {
+		return serializer;
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The descriptor of a migrated keys column family, which is stored with the descriptors of
+	 * the states. It holds the descriptor of the state before the migration, whose serializer
+	 * wrote the values that were not migrated yet. It cannot be bound to a state.
+	 */
+	static final class MigratedKeysDescriptor extends StateDescriptor<ValueState<byte[]>, byte[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The descriptor of the state before the migration */
+		private final StateDescriptor<?, ?> priorDescriptor;
+
+		MigratedKeysDescriptor(StateDescriptor<?, ?> priorDescriptor) {
+			super(priorDescriptor.getName() + MIGRATED_KEYS_SUFFIX, BytePrimitiveArraySerializer.INSTANCE, null);
+			this.priorDescriptor = priorDescriptor;
+		}
+
+		StateDescriptor<?, ?> getPriorDescriptor() {
+			return priorDescriptor;
+		}
+
+		@Override
+		public ValueState<byte[]> bind(StateBackend stateBackend) throws Exception {
+			throw new UnsupportedOperationException("The migrated keys of a state cannot be accessed as a state.");
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return this == o || (o != null && getClass() == o.getClass() &&
+				name.equals(((MigratedKeysDescriptor) o).name));
+		}
+
+		@Override
+		public int hashCode() {
+			return name.hashCode() + 31 * getClass().hashCode();
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.state.StateTtlConfig;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.runtime.state.TtlTimeProvider;
+import org.apache.flink.runtime.state.TtlValue;
+import org.apache.flink.runtime.state.TtlValueSerializer;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link ValueState} implementation with time-to-live that stores state in RocksDB. Every value
+ * is stored together with the time of its last access, which precedes the serialized value.
+ *
+ * <p>Expired values are never returned. They are removed when they are accessed, and by an
+ * incremental cleanup, which continues where the previous one stopped. Opening a RocksDB
+ * iterator is expensive compared to a point lookup, so the cleanup runs only every
+ * {@value #CLEANUP_INTERVAL} accesses and then checks as many entries as the configured cleanup
+ * size for each of these accesses. Fully asynchronous snapshots do not contain expired values.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <V> The type of value that the state state stores.
+ */
+public class RocksDBTtlValueState<K, N, V>
+	extends AbstractRocksDBState<K, N, ValueState<V>, ValueStateDescriptor<V>>
+	implements ValueState<V> {
+
+	/** The number of state accesses after which the incremental cleanup runs */
+	static final int CLEANUP_INTERVAL = 64;
+
+	/** Serializer for the values together with the time of their last access */
+	private final TtlValueSerializer<V> valueSerializer;
+
+	/** This holds the name of the state and can create an initial default value for the state. */
+	private final ValueStateDescriptor<V> stateDesc;
+
+	/** The time-to-live configuration of the state */
+	private final StateTtlConfig ttlConfig;
+
+	/** The clock for the time-to-live */
+	private final TtlTimeProvider timeProvider;
+
+	/** The key at which the next incremental cleanup continues, null to start at the first key */
+	private byte[] cleanupCursor;
+
+	/** The number of state accesses since the last incremental cleanup */
+	private int accessesSinceCleanup;
+
+	/**
+	 * Creates a new {@code RocksDBTtlValueState}.
+	 *
+	 * @param namespaceSerializer The serializer for the namespace.
+	 * @param stateDesc The state identifier for the state. This contains name, time-to-live
+	 *                           and can create a default state value.
+	 */
+	public RocksDBTtlValueState(ColumnFamilyHandle columnFamily,
+			TypeSerializer<N> namespaceSerializer,
+			ValueStateDescriptor<V> stateDesc,
+			RocksDBStateBackend backend) {
+
+		super(columnFamily, namespaceSerializer, backend);
+		this.stateDesc = requireNonNull(stateDesc);
+		this.valueSerializer = new TtlValueSerializer<>(stateDesc.getSerializer());
+		this.ttlConfig = requireNonNull(stateDesc.getTtlConfig());
+		this.timeProvider = backend.getTtlTimeProvider();
+	}
+
+	@Override
+	public V value() {
+		final long now = timeProvider.currentTimestamp();
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputViewStreamWrapper out = new DataOutputViewStreamWrapper(baos);
+		try {
+			cleanupIncrementally(now);
+
+			writeKeyAndNamespace(out);
+			byte[] key = baos.toByteArray();
+			byte[] valueBytes = getFromDb(key);
+			if (valueBytes == null) {
+				return stateDesc.getDefaultValue();
+			}
+
+			if (ttlConfig.isExpired(TtlValueSerializer.readLastAccessTimestamp(valueBytes), now)) {
+				removeFromDb(key);
+				return stateDesc.getDefaultValue();
+			}
+
+			TtlValue<V> ttlValue = valueSerializer.deserialize(new DataInputViewStreamWrapper(new ByteArrayInputStream(valueBytes)));
+
+			if (ttlConfig.getUpdateType() == StateTtlConfig.UpdateType.OnReadAndWrite) {
+				baos.reset();
+				valueSerializer.serialize(new TtlValue<>(ttlValue.getValue(), now), out);
+				putToDb(key, baos.toByteArray());
+			}
+			return ttlValue.getValue();
+		} catch (IOException|RocksDBException e) {
+			throw new RuntimeException("Error while retrieving data from RocksDB.", e);
+		}
+	}
+
+	@Override
+	public void update(V value) throws IOException {
+		final long now = timeProvider.currentTimestamp();
+
+		if (value == null) {
+			clear();
+			return;
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputViewStreamWrapper out = new DataOutputViewStreamWrapper(baos);
+		try {
+			cleanupIncrementally(now);
+
+			writeKeyAndNamespace(out);
+			byte[] key = baos.toByteArray();
+			baos.reset();
+			valueSerializer.serialize(new TtlValue<>(value, now), out);
+			putToDb(key, baos.toByteArray());
+		} catch (Exception e) {
+			throw new RuntimeException("Error while adding data to RocksDB", e);
+		}
+	}
+
+	/**
+	 * Migrates the value behind the time of its last access, which is kept.
+	 */
+	@Override
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	protected byte[] migrateValue(byte[] value, TypeSerializer<Object> priorSerializer, TypeSerializer<Object> serializer) throws IOException {
+		return super.migrateValue(value, (TypeSerializer) new TtlValueSerializer<>(priorSerializer),
+			(TypeSerializer) new TtlValueSerializer<>(serializer));
+	}
+
+	/**
+	 * Queries see the value without the time of its last access, and no value if it expired.
+	 * A query does not count as an access of the value.
+	 */
+	@Override
+	protected byte[] getSerializedValueFromDb(byte[] serializedKeyAndNamespace) throws Exception {
+		byte[] valueBytes = readQueriedValue(serializedKeyAndNamespace);
+		if (valueBytes == null ||
+				ttlConfig.isExpired(TtlValueSerializer.readLastAccessTimestamp(valueBytes), timeProvider.currentTimestamp())) {
+			return null;
+		}
+		return Arrays.copyOfRange(valueBytes, TtlValueSerializer.TIMESTAMP_LENGTH, valueBytes.length);
+	}
+
+	/**
+	 * Removes the expired values among the next entries of the column family. The bundled
+	 * RocksDB version does not support compaction filters that are implemented in Java, so the
+	 * expired values are removed by this sweep, which eventually visits all entries.
+	 */
+	private void cleanupIncrementally(long now) throws RocksDBException {
+		final int cleanupSize = ttlConfig.getCleanupSize();
+		if (cleanupSize <= 0 || ++accessesSinceCleanup < CLEANUP_INTERVAL) {
+			return;
+		}
+		accessesSinceCleanup = 0;
+
+		final int numEntriesToCheck = cleanupSize * CLEANUP_INTERVAL;
+
+		RocksIterator iterator = backend.db.newIterator(columnFamily);
+		try {
+			if (cleanupCursor == null) {
+				iterator.seekToFirst();
+			} else {
+				iterator.seek(cleanupCursor);
+			}
+
+			for (int i = 0; i < numEntriesToCheck && iterator.isValid(); i++) {
+				// the iterator does not see buffered writes, which may have renewed the value
+				if (ttlConfig.isExpired(TtlValueSerializer.readLastAccessTimestamp(iterator.value()), now)
+						&& !hasBufferedWrite(iterator.key())) {
+					removeFromDb(iterator.key());
+				}
+				iterator.next();
+			}
+
+			cleanupCursor = iterator.isValid() ? iterator.key() : null;
+		} finally {
+			iterator.dispose();
+		}
+	}
+}
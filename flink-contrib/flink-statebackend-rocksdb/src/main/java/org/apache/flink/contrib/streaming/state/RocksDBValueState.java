@@ -26,11 +26,15 @@ import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
 
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDBException;
-import org.rocksdb.WriteOptions;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static java.util.Objects.requireNonNull;
 
@@ -51,12 +55,6 @@ public class RocksDBValueState<K, N, V>
 	/** This holds the name of the state and can create an initial default value for the state. */
 	private final ValueStateDescriptor<V> stateDesc;
 
-	/**
-	 * We disable writes to the write-ahead-log here. We can't have these in the base class
-	 * because JNI segfaults for some reason if they are.
-	 */
-	private final WriteOptions writeOptions;
-
 	/**
 	 * Creates a new {@code RocksDBValueState}.
 	 *
@@ -72,9 +70,6 @@ public class RocksDBValueState<K, N, V>
 		super(columnFamily, namespaceSerializer, backend);
 		this.stateDesc = requireNonNull(stateDesc);
 		this.valueSerializer = stateDesc.getSerializer();
-
-		writeOptions = new WriteOptions();
-		writeOptions.setDisableWAL(true);
 	}
 
 	@Override
@@ -84,7 +79,7 @@ public class RocksDBValueState<K, N, V>
 		try {
 			writeKeyAndNamespace(out);
 			byte[] key = baos.toByteArray();
-			byte[] valueBytes = backend.db.get(columnFamily, key);
+			byte[] valueBytes = getFromDb(key);
 			if (valueBytes == null) {
 				return stateDesc.getDefaultValue();
 			}
@@ -94,6 +89,43 @@ public class RocksDBValueState<K, N, V>
 		}
 	}
 
+	/**
+	 * Returns the values of the given keys in the current namespace, looking them up in RocksDB
+	 * with a single call. Keys without a value are mapped to the default value.
+	 *
+	 * <p>Operators that access many keys at once, for example the keys of a batch of records,
+	 * can use this method instead of setting the current key and calling {@link #value()} for
+	 * every key.
+	 *
+	 * @param keys The keys to look up.
+	 * @return The values of the keys.
+	 */
+	public Map<K, V> multiGet(Collection<K> keys) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputViewStreamWrapper out = new DataOutputViewStreamWrapper(baos);
+		try {
+			List<byte[]> keyBytes = new ArrayList<>(keys.size());
+			for (K key : keys) {
+				baos.reset();
+				writeKeyAndNamespace(key, out);
+				keyBytes.add(baos.toByteArray());
+			}
+
+			List<byte[]> valueBytes = multiGetFromDb(keyBytes);
+
+			Map<K, V> result = new HashMap<>(keys.size());
+			int i = 0;
+			for (K key : keys) {
+				byte[] bytes = valueBytes.get(i++);
+				result.put(key, bytes == null ? stateDesc.getDefaultValue() :
+						valueSerializer.deserialize(new DataInputViewStreamWrapper(new ByteArrayInputStream(bytes))));
+			}
+			return result;
+		} catch (IOException|RocksDBException e) {
+			throw new RuntimeException("Error while retrieving data from RocksDB.", e);
+		}
+	}
+
 	@Override
 	public void update(V value) throws IOException {
 		if (value == null) {
@@ -107,7 +139,7 @@ public class RocksDBValueState<K, N, V>
 			byte[] key = baos.toByteArray();
 			baos.reset();
 			valueSerializer.serialize(value, out);
-			backend.db.put(columnFamily, writeOptions, key, baos.toByteArray());
+			putToDb(key, baos.toByteArray());
 		} catch (Exception e) {
 			throw new RuntimeException("Error while adding data to RocksDB", e);
 		}
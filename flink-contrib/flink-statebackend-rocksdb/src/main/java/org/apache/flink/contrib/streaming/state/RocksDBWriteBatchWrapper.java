@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+import static org.apache.flink.util.Preconditions.checkArgument;
+
+/**
+ * Buffers the writes of the states of a {@link RocksDBStateBackend} in a {@link WriteBatch}, so
+ * that many puts, merges, and removes are written to RocksDB with a single JNI call. The batch is
+ * written when it holds the configured number of writes, and before every checkpoint.
+ *
+ * <p>The wrapper keeps an index of the keys in the batch, so that reads see the buffered writes.
+ * A key that was last put or removed is answered from the index. The value of a key with buffered
+ * merges is only known to the merge operator of RocksDB, so reading such a key writes the batch
+ * first.
+ *
+ * <p>Iterators of RocksDB do not see the buffered writes. States have to {@link #flush()} the
+ * batch before they create an iterator.
+ */
+class RocksDBWriteBatchWrapper {
+
+	/** Marks keys whose last buffered write is a remove */
+	private static final byte[] REMOVED = new byte[0];
+
+	/** Marks keys with buffered merges */
+	private static final byte[] MERGED = new byte[0];
+
+	/** The backend that holds the RocksDB instance, which changes when the backend restores */
+	private final RocksDBStateBackend backend;
+
+	/** The number of writes after which the batch is written */
+	private final int capacity;
+
+	private final WriteBatch batch;
+
+	/** We disable writes to the write-ahead-log here, like the states do */
+	private final WriteOptions writeOptions;
+
+	/** The last buffered write of every key, by column family */
+	private final Map<ColumnFamilyHandle, Map<Key, byte[]>> pendingWrites = new HashMap<>();
+
+	RocksDBWriteBatchWrapper(RocksDBStateBackend backend, int capacity) {
+		checkArgument(capacity > 0, "The capacity of the write batch must be positive.");
+
+		this.backend = requireNonNull(backend);
+		this.capacity = capacity;
+		this.batch = new WriteBatch();
+
+		this.writeOptions = new WriteOptions();
+		this.writeOptions.setDisableWAL(true);
+	}
+
+	// ------------------------------------------------------------------------
+	//  Reads
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns the value of the key, including the buffered writes, or {@code null} if the key
+	 * has no value.
+	 */
+	byte[] get(ColumnFamilyHandle columnFamily, byte[] key) throws RocksDBException {
+		byte[] pending = getPending(columnFamily, key);
+
+		if (pending == MERGED) {
+			flush();
+		} else if (pending == REMOVED) {
+			return null;
+		} else if (pending != null) {
+			return pending;
+		}
+		return backend.db.get(columnFamily, key);
+	}
+
+	/**
+	 * Returns the values of the keys, including the buffered writes, in the order of the keys.
+	 * Keys without a value have a {@code null} value. The keys that are not in the batch are
+	 * looked up in RocksDB with a single call.
+	 */
+	List<byte[]> multiGet(ColumnFamilyHandle columnFamily, List<byte[]> keys) throws RocksDBException {
+		for (byte[] key : keys) {
+			if (getPending(columnFamily, key) == MERGED) {
+				flush();
+				break;
+			}
+		}
+
+		List<byte[]> values = new ArrayList<>(keys.size());
+		List<byte[]> dbKeys = new ArrayList<>(keys.size());
+		List<Integer> dbKeyPositions = new ArrayList<>(keys.size());
+
+		for (byte[] key : keys) {
+			byte[] pending = getPending(columnFamily, key);
+			if (pending == null) {
+				dbKeys.add(key);
+				dbKeyPositions.add(values.size());
+			}
+			values.add(pending == REMOVED ? null : pending);
+		}
+
+		if (dbKeys.isEmpty()) {
+			return values;
+		}
+
+		// the map of RocksDB holds the given key arrays, so it is looked up by identity
+		Map<byte[], byte[]> dbValues = backend.db.multiGet(
+				Collections.nCopies(dbKeys.size(), columnFamily), dbKeys);
+
+		for (int i = 0; i < dbKeys.size(); i++) {
+			values.set(dbKeyPositions.get(i), dbValues.get(dbKeys.get(i)));
+		}
+		return values;
+	}
+
+	/**
+	 * Checks whether the batch holds a write of the key.
+	 */
+	boolean contains(ColumnFamilyHandle columnFamily, byte[] key) {
+		return getPending(columnFamily, key) != null;
+	}
+
+	// ------------------------------------------------------------------------
+	//  Writes
+	// ------------------------------------------------------------------------
+
+	void put(ColumnFamilyHandle columnFamily, byte[] key, byte[] value) throws RocksDBException {
+		batch.put(columnFamily, key, value);
+		setPending(columnFamily, key, value);
+		flushIfFull();
+	}
+
+	void merge(ColumnFamilyHandle columnFamily, byte[] key, byte[] value) throws RocksDBException {
+		batch.merge(columnFamily, key, value);
+		setPending(columnFamily, key, MERGED);
+		flushIfFull();
+	}
+
+	void remove(ColumnFamilyHandle columnFamily, byte[] key) throws RocksDBException {
+		batch.remove(columnFamily, key);
+		setPending(columnFamily, key, REMOVED);
+		flushIfFull();
+	}
+
+	/**
+	 * Writes the buffered writes to RocksDB.
+	 */
+	void flush() throws RocksDBException {
+		if (batch.count() > 0) {
+			backend.db.write(writeOptions, batch);
+			batch.clear();
+		}
+		pendingWrites.clear();
+	}
+
+	/**
+	 * Discards the buffered writes, for example because the backend restores its state.
+	 */
+	void clear() {
+		batch.clear();
+		pendingWrites.clear();
+	}
+
+	/**
+	 * Releases the native resources of the batch. Buffered writes are discarded.
+	 */
+	void dispose() {
+		batch.dispose();
+		writeOptions.dispose();
+		pendingWrites.clear();
+	}
+
+	private void flushIfFull() throws RocksDBException {
+		if (batch.count() >= capacity) {
+			flush();
+		}
+	}
+
+	private byte[] getPending(ColumnFamilyHandle columnFamily, byte[] key) {
+		Map<Key, byte[]> pending = pendingWrites.get(columnFamily);
+		return pending == null ? null : pending.get(new Key(key));
+	}
+
+	private void setPending(ColumnFamilyHandle columnFamily, byte[] key, byte[] value) {
+		Map<Key, byte[]> pending = pendingWrites.get(columnFamily);
+		if (pending == null) {
+			pending = new HashMap<>();
+			pendingWrites.put(columnFamily, pending);
+		}
+		pending.put(new Key(key), value);
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A key of RocksDB that can be used in hash maps.
+	 */
+	private static final class Key {
+
+		private final byte[] bytes;
+
+		private final int hashCode;
+
+		Key(byte[] bytes) {
+			this.bytes = bytes;
+			this.hashCode = Arrays.hashCode(bytes);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj == this || (obj instanceof Key && Arrays.equals(bytes, ((Key) obj).bytes));
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.VoidSerializer;
+import org.apache.flink.configuration.ConfigConstants;
+import org.apache.flink.runtime.operators.testutils.DummyEnvironment;
+import org.apache.flink.runtime.state.AsynchronousKvStateSnapshot;
+import org.apache.flink.runtime.state.CompositeStateHandle;
+import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.SharedStateHandle;
+import org.apache.flink.runtime.state.SharedStateRegistry;
+import org.apache.flink.runtime.state.StateBackendTestBase;
+import org.apache.flink.runtime.state.filesystem.FsStateBackend;
+import org.apache.flink.runtime.state.memory.MemoryStateBackend;
+import org.apache.flink.util.OperatingSystem;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the partitioned state part of {@link RocksDBStateBackend} with incremental
+ * checkpointing enabled.
+ */
+public class IncrementalRocksDBStateBackendTest extends StateBackendTestBase<RocksDBStateBackend> {
+
+	private File dbDir;
+	private File chkDir;
+
+	@Before
+	public void checkOperatingSystem() {
+		Assume.assumeTrue("This test can't run successfully on Windows.", !OperatingSystem.isWindows());
+	}
+
+	@Override
+	protected RocksDBStateBackend getStateBackend() throws IOException {
+		dbDir = new File(new File(ConfigConstants.DEFAULT_TASK_MANAGER_TMP_PATH, UUID.randomUUID().toString()), "state");
+		chkDir = new File(new File(ConfigConstants.DEFAULT_TASK_MANAGER_TMP_PATH, UUID.randomUUID().toString()), "snapshots");
+
+		RocksDBStateBackend backend = new RocksDBStateBackend(chkDir.getAbsoluteFile().toURI(), new MemoryStateBackend());
+		backend.setDbStoragePath(dbDir.getAbsolutePath());
+		backend.enableIncrementalCheckpointing();
+		return backend;
+	}
+
+	@Override
+	protected void cleanup() {
+		try {
+			FileUtils.deleteDirectory(dbDir);
+			FileUtils.deleteDirectory(chkDir);
+		} catch (IOException ignore) {}
+	}
+
+	/**
+	 * Tests that a checkpoint references the unchanged SST files of the last completed
+	 * checkpoint instead of uploading them again, and that it can be restored.
+	 */
+	@Test
+	public void testIncrementalCheckpointReusesSstFiles() throws Exception {
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		ValueStateDescriptor<String> kvId = new ValueStateDescriptor<>("id", String.class, null);
+		kvId.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		ValueState<String> state = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+		backend.setCurrentKey(1);
+		state.update("1");
+		backend.setCurrentKey(2);
+		state.update("2");
+
+		CompositeStateHandle snapshot1 = snapshot(backend, 1L);
+		backend.notifyOfCompletedCheckpoint(1L);
+
+		backend.setCurrentKey(3);
+		state.update("3");
+
+		CompositeStateHandle snapshot2 = snapshot(backend, 2L);
+
+		Set<SharedStateHandle> previousSstFiles = new HashSet<>(snapshot1.getSharedStates());
+		assertFalse(previousSstFiles.isEmpty());
+
+		int numReusedFiles = 0;
+		int numNewFiles = 0;
+		for (SharedStateHandle sstFile : snapshot2.getSharedStates()) {
+			if (previousSstFiles.contains(sstFile)) {
+				assertEquals(1L, sstFile.getCheckpointId());
+				numReusedFiles++;
+			} else {
+				assertEquals(2L, sstFile.getCheckpointId());
+				numNewFiles++;
+			}
+		}
+
+		assertEquals(previousSstFiles.size(), numReusedFiles);
+		assertTrue(numNewFiles > 0);
+
+		// this modification is not part of the checkpoint
+		backend.setCurrentKey(4);
+		state.update("4");
+
+		backend.dispose();
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		HashMap<String, KvStateSnapshot> snapshots = new HashMap<>();
+		snapshots.put("dummy_state", (KvStateSnapshot) snapshot2);
+		backend.injectKeyValueStateSnapshots(snapshots, 100);
+
+		ValueState<String> restored = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+		for (int key = 1; key <= 3; key++) {
+			backend.setCurrentKey(key);
+			assertEquals(String.valueOf(key), restored.value());
+		}
+
+		backend.setCurrentKey(4);
+		assertNull(restored.value());
+	}
+
+	/**
+	 * Tests that a snapshot can be restored into a backend whose states were already
+	 * accessed, without initializing the backend again.
+	 */
+	@Test
+	public void testRestoreIntoInitializedBackend() throws Exception {
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		ValueStateDescriptor<String> kvId = new ValueStateDescriptor<>("id", String.class, null);
+		kvId.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		ValueState<String> state = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+		backend.setCurrentKey(1);
+		state.update("1");
+
+		CompositeStateHandle snapshot = snapshot(backend, 1L);
+		backend.notifyOfCompletedCheckpoint(1L);
+
+		// this modification is not part of the checkpoint
+		backend.setCurrentKey(1);
+		state.update("2");
+		backend.setCurrentKey(2);
+		state.update("2");
+
+		HashMap<String, KvStateSnapshot> snapshots = new HashMap<>();
+		snapshots.put("dummy_state", (KvStateSnapshot) snapshot);
+		backend.injectKeyValueStateSnapshots(snapshots, 100);
+
+		ValueState<String> restored = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+		backend.setCurrentKey(1);
+		assertEquals("1", restored.value());
+		backend.setCurrentKey(2);
+		assertNull(restored.value());
+
+		backend.dispose();
+	}
+
+	/**
+	 * Tests that a backend with local recovery restores the SST files of an incremental
+	 * checkpoint by linking the files of the local copy.
+	 */
+	@Test
+	public void testRestoreFromLocalCopy() throws Exception {
+		backend.enableLocalRecovery();
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		ValueStateDescriptor<String> kvId = new ValueStateDescriptor<>("id", String.class, null);
+		kvId.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		ValueState<String> state = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+		backend.setCurrentKey(1);
+		state.update("1");
+
+		CompositeStateHandle snapshot = snapshot(backend, 1L);
+		backend.notifyOfCompletedCheckpoint(1L);
+		backend.dispose();
+
+		File localCopy = LocalRecoveryRocksDBStateBackendTest.findLocalCopy(dbDir, 1L);
+		assertNotNull(localCopy);
+
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		HashMap<String, KvStateSnapshot> snapshots = new HashMap<>();
+		snapshots.put("dummy_state", (KvStateSnapshot) snapshot);
+		backend.injectKeyValueStateSnapshots(snapshots, 100);
+
+		ValueState<String> restored = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+		backend.setCurrentKey(1);
+		assertEquals("1", restored.value());
+
+		int numLinkedFiles = 0;
+		for (File file : FileUtils.listFiles(dbDir, new String[] {"sst"}, true)) {
+			File localFile = new File(localCopy, file.getName());
+			if (!file.getParentFile().equals(localCopy) && localFile.exists() &&
+					Files.isSameFile(file.toPath(), localFile.toPath())) {
+				numLinkedFiles++;
+			}
+		}
+		assertTrue(numLinkedFiles > 0);
+
+		backend.dispose();
+	}
+
+	/**
+	 * Tests that discarding a checkpoint deletes its files when the checkpoint streams merge
+	 * small states into shared files, and that the next checkpoint can be restored afterwards.
+	 */
+	@Test
+	public void testDiscardAndRestoreWithFileMerging() throws Exception {
+		File fsChkDir = new File(ConfigConstants.DEFAULT_TASK_MANAGER_TMP_PATH, UUID.randomUUID().toString());
+
+		// all states up to 64 KB would be appended to shared files
+		backend = new RocksDBStateBackend(
+			chkDir.getAbsoluteFile().toURI(), new FsStateBackend(fsChkDir.toURI(), 0, 64 * 1024));
+		backend.setDbStoragePath(dbDir.getAbsolutePath());
+		backend.enableIncrementalCheckpointing();
+
+		try {
+			backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+			ValueStateDescriptor<String> kvId = new ValueStateDescriptor<>("id", String.class, null);
+			kvId.initializeSerializerUnlessSet(new ExecutionConfig());
+
+			ValueState<String> state = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+			backend.setCurrentKey(1);
+			state.update("1");
+
+			CompositeStateHandle snapshot1 = snapshot(backend, 1L);
+			backend.notifyOfCompletedCheckpoint(1L);
+
+			backend.setCurrentKey(2);
+			state.update("2");
+
+			CompositeStateHandle snapshot2 = snapshot(backend, 2L);
+			backend.notifyOfCompletedCheckpoint(2L);
+
+			SharedStateRegistry registry = new SharedStateRegistry();
+			registry.registerAll(snapshot1.getSharedStates(), 1L);
+			registry.registerAll(snapshot2.getSharedStates(), 2L);
+
+			// the first checkpoint is subsumed by the second one
+			registry.unregisterAll(snapshot1.getSharedStates());
+			((KvStateSnapshot<?, ?, ?, ?, ?>) snapshot1).discardState();
+
+			backend.dispose();
+			backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+			HashMap<String, KvStateSnapshot> snapshots = new HashMap<>();
+			snapshots.put("dummy_state", (KvStateSnapshot) snapshot2);
+			backend.injectKeyValueStateSnapshots(snapshots, 100);
+
+			ValueState<String> restored = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+			for (int key = 1; key <= 2; key++) {
+				backend.setCurrentKey(key);
+				assertEquals(String.valueOf(key), restored.value());
+			}
+
+			backend.dispose();
+
+			registry.unregisterAll(snapshot2.getSharedStates());
+			((KvStateSnapshot<?, ?, ?, ?, ?>) snapshot2).discardState();
+
+			// no file of the discarded checkpoints is left behind
+			assertTrue(FileUtils.listFiles(fsChkDir, null, true).isEmpty());
+		}
+		finally {
+			FileUtils.deleteQuietly(fsChkDir);
+		}
+	}
+
+	private static CompositeStateHandle snapshot(RocksDBStateBackend backend, long checkpointId) throws Exception {
+		HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> snapshot = backend.snapshotPartitionedState(checkpointId, checkpointId);
+		KvStateSnapshot<?, ?, ?, ?, ?> dummyState = snapshot.get("dummy_state");
+
+		if (dummyState instanceof AsynchronousKvStateSnapshot) {
+			dummyState = ((AsynchronousKvStateSnapshot<?, ?, ?, ?, ?>) dummyState).materialize();
+		}
+
+		return (CompositeStateHandle) dummyState;
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.VoidSerializer;
+import org.apache.flink.configuration.ConfigConstants;
+import org.apache.flink.runtime.operators.testutils.DummyEnvironment;
+import org.apache.flink.runtime.state.AsynchronousKvStateSnapshot;
+import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.StateBackendTestBase;
+import org.apache.flink.runtime.state.memory.MemoryStateBackend;
+import org.apache.flink.util.OperatingSystem;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the partitioned state part of {@link RocksDBStateBackend} with local copies of the
+ * semi-asynchronous snapshots.
+ */
+public class LocalRecoveryRocksDBStateBackendTest extends StateBackendTestBase<RocksDBStateBackend> {
+
+	private File dbDir;
+	private File chkDir;
+
+	@Before
+	public void checkOperatingSystem() {
+		Assume.assumeTrue("This test can't run successfully on Windows.", !OperatingSystem.isWindows());
+	}
+
+	@Override
+	protected RocksDBStateBackend getStateBackend() throws IOException {
+		dbDir = new File(new File(ConfigConstants.DEFAULT_TASK_MANAGER_TMP_PATH, UUID.randomUUID().toString()), "state");
+		chkDir = new File(new File(ConfigConstants.DEFAULT_TASK_MANAGER_TMP_PATH, UUID.randomUUID().toString()), "snapshots");
+
+		RocksDBStateBackend backend = new RocksDBStateBackend(chkDir.getAbsoluteFile().toURI(), new MemoryStateBackend());
+		backend.setDbStoragePath(dbDir.getAbsolutePath());
+		backend.enableLocalRecovery();
+		return backend;
+	}
+
+	@Override
+	protected boolean supportsKeyGroupRescaling() {
+		// the semi-asynchronous snapshots are full database backups
+		return false;
+	}
+
+	@Override
+	protected void cleanup() {
+		try {
+			FileUtils.deleteDirectory(dbDir);
+			FileUtils.deleteDirectory(chkDir);
+		} catch (IOException ignore) {}
+	}
+
+	/**
+	 * Tests that the backend restores from the local copy, without the checkpoint directory.
+	 */
+	@Test
+	public void testRestoreFromLocalCopy() throws Exception {
+		HashMap<String, KvStateSnapshot> snapshot = writeAndSnapshot(1L);
+		assertNotNull(findLocalCopy(dbDir, 1L));
+
+		FileUtils.deleteDirectory(chkDir);
+
+		assertRestored(snapshot);
+	}
+
+	/**
+	 * Tests that the backend restores from the checkpoint directory, if the local copy lost a file.
+	 */
+	@Test
+	public void testRestoreFromCheckpointIfLocalCopyIsIncomplete() throws Exception {
+		HashMap<String, KvStateSnapshot> snapshot = writeAndSnapshot(1L);
+
+		File localCopy = findLocalCopy(dbDir, 1L);
+		assertNotNull(localCopy);
+
+		File[] files = FileUtils.listFiles(localCopy, null, true).toArray(new File[0]);
+		assertTrue(files.length > 0);
+		assertTrue(files[0].delete());
+
+		assertRestored(snapshot);
+	}
+
+	/**
+	 * Tests that the local copies of older checkpoints are deleted when a checkpoint completes.
+	 */
+	@Test
+	public void testLocalCopiesAreDeletedWhenLaterCheckpointCompletes() throws Exception {
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		ValueStateDescriptor<String> kvId = new ValueStateDescriptor<>("id", String.class, null);
+		kvId.initializeSerializerUnlessSet(new ExecutionConfig());
+		ValueState<String> state = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+		backend.setCurrentKey(1);
+		state.update("1");
+
+		for (long checkpointId = 1L; checkpointId <= 3L; checkpointId++) {
+			materialize(backend.snapshotPartitionedState(checkpointId, checkpointId));
+			assertNotNull(findLocalCopy(dbDir, checkpointId));
+		}
+
+		backend.notifyOfCompletedCheckpoint(2L);
+
+		assertNull(findLocalCopy(dbDir, 1L));
+		assertNotNull(findLocalCopy(dbDir, 2L));
+		assertNotNull(findLocalCopy(dbDir, 3L));
+
+		backend.notifyOfCompletedCheckpoint(3L);
+
+		assertNull(findLocalCopy(dbDir, 2L));
+		assertNotNull(findLocalCopy(dbDir, 3L));
+
+		backend.dispose();
+	}
+
+	// ------------------------------------------------------------------------
+
+	private HashMap<String, KvStateSnapshot> writeAndSnapshot(long checkpointId) throws Exception {
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		ValueStateDescriptor<String> kvId = new ValueStateDescriptor<>("id", String.class, null);
+		kvId.initializeSerializerUnlessSet(new ExecutionConfig());
+		ValueState<String> state = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+		for (int key = 1; key <= 3; key++) {
+			backend.setCurrentKey(key);
+			state.update(String.valueOf(key));
+		}
+
+		HashMap<String, KvStateSnapshot> snapshot = materialize(backend.snapshotPartitionedState(checkpointId, checkpointId));
+		backend.notifyOfCompletedCheckpoint(checkpointId);
+
+		// this modification is not part of the checkpoint
+		backend.setCurrentKey(4);
+		state.update("4");
+
+		backend.dispose();
+		return snapshot;
+	}
+
+	private void assertRestored(HashMap<String, KvStateSnapshot> snapshot) throws Exception {
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+		backend.injectKeyValueStateSnapshots(snapshot, 100);
+
+		ValueStateDescriptor<String> kvId = new ValueStateDescriptor<>("id", String.class, null);
+		kvId.initializeSerializerUnlessSet(new ExecutionConfig());
+		ValueState<String> restored = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+		for (int key = 1; key <= 3; key++) {
+			backend.setCurrentKey(key);
+			assertEquals(String.valueOf(key), restored.value());
+		}
+
+		backend.setCurrentKey(4);
+		assertNull(restored.value());
+
+		backend.dispose();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static HashMap<String, KvStateSnapshot> materialize(HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> snapshot) throws Exception {
+		HashMap<String, KvStateSnapshot> result = new HashMap<>();
+
+		for (String name : snapshot.keySet()) {
+			KvStateSnapshot<?, ?, ?, ?, ?> state = snapshot.get(name);
+			if (state instanceof AsynchronousKvStateSnapshot) {
+				state = ((AsynchronousKvStateSnapshot<?, ?, ?, ?, ?>) state).materialize();
+			}
+			result.put(name, state);
+		}
+
+		assertFalse(result.isEmpty());
+		return result;
+	}
+
+	/**
+	 * Finds the local copy of the given checkpoint below the given directory, or returns null.
+	 */
+	static File findLocalCopy(File directory, long checkpointId) {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return null;
+		}
+
+		for (File file : files) {
+			if (file.isDirectory()) {
+				if (file.getName().equals("chk-" + checkpointId) && file.getParentFile().getName().startsWith("local-state-")) {
+					return file;
+				}
+
+				File localCopy = findLocalCopy(file, checkpointId);
+				if (localCopy != null) {
+					return localCopy;
+				}
+			}
+		}
+		return null;
+	}
+}
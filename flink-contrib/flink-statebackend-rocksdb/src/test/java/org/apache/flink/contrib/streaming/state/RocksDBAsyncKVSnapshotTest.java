@@ -129,8 +129,8 @@ public class RocksDBAsyncKVSnapshotTest {
 			}
 
 			@Override
-			public void acknowledgeCheckpoint(long checkpointId, StateHandle<?> state) {
-				super.acknowledgeCheckpoint(checkpointId, state);
+			public void acknowledgeCheckpoint(long checkpointId, StateHandle<?> state, StateHandle<?> keyGroupsState) {
+				super.acknowledgeCheckpoint(checkpointId, state, keyGroupsState);
 
 				// block on the latch, to verify that triggerCheckpoint returns below,
 				// even though the async checkpoint would not finish
@@ -140,8 +140,8 @@ public class RocksDBAsyncKVSnapshotTest {
 					e.printStackTrace();
 				}
 
-				assertTrue(state instanceof StreamTaskStateList);
-				StreamTaskStateList stateList = (StreamTaskStateList) state;
+				assertTrue(keyGroupsState instanceof StreamTaskStateList);
+				StreamTaskStateList stateList = (StreamTaskStateList) keyGroupsState;
 
 				// should be only one k/v state
 				StreamTaskState taskState = stateList.getState(this.getUserClassLoader())[0];
@@ -232,8 +232,8 @@ public class RocksDBAsyncKVSnapshotTest {
 			}
 
 			@Override
-			public void acknowledgeCheckpoint(long checkpointId, StateHandle<?> state) {
-				super.acknowledgeCheckpoint(checkpointId, state);
+			public void acknowledgeCheckpoint(long checkpointId, StateHandle<?> state, StateHandle<?> keyGroupsState) {
+				super.acknowledgeCheckpoint(checkpointId, state, keyGroupsState);
 
 				// block on the latch, to verify that triggerCheckpoint returns below,
 				// even though the async checkpoint would not finish
@@ -243,8 +243,8 @@ public class RocksDBAsyncKVSnapshotTest {
 					e.printStackTrace();
 				}
 
-				assertTrue(state instanceof StreamTaskStateList);
-				StreamTaskStateList stateList = (StreamTaskStateList) state;
+				assertTrue(keyGroupsState instanceof StreamTaskStateList);
+				StreamTaskStateList stateList = (StreamTaskStateList) keyGroupsState;
 
 				// should be only one k/v state
 				StreamTaskState taskState = stateList.getState(this.getUserClassLoader())[0];
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.runtime.execution.Environment;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.streaming.api.operators.HeapInternalTimerQueue;
+import org.apache.flink.streaming.api.operators.InternalTimer;
+import org.apache.flink.streaming.api.operators.InternalTimerQueue;
+import org.apache.flink.util.OperatingSystem;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link RocksDBInternalTimerQueue}.
+ */
+public class RocksDBInternalTimerQueueTest {
+
+	private static final int NUM_KEY_GROUPS = 16;
+
+	@Rule
+	public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Before
+	public void checkOperatingSystem() {
+		Assume.assumeTrue("This test can't run successfully on Windows.", !OperatingSystem.isWindows());
+	}
+
+	@Test
+	public void testHeapQueueIsDefault() throws Exception {
+		RocksDBStateBackend backend = createBackend();
+		try {
+			InternalTimerQueue<Integer, String> queue = backend.createTimerQueue("timers",
+				IntSerializer.INSTANCE, StringSerializer.INSTANCE, NUM_KEY_GROUPS, allKeyGroups());
+			assertTrue(queue instanceof HeapInternalTimerQueue);
+		} finally {
+			backend.close();
+		}
+	}
+
+	@Test
+	public void testTimersArePolledInTimestampOrder() throws Exception {
+		RocksDBStateBackend backend = createBackend();
+		backend.enableTimersInRocksDB();
+
+		try {
+			InternalTimerQueue<Integer, String> queue = backend.createTimerQueue("timers",
+				IntSerializer.INSTANCE, StringSerializer.INSTANCE, NUM_KEY_GROUPS, allKeyGroups());
+			assertTrue(queue instanceof RocksDBInternalTimerQueue);
+
+			PriorityQueue<InternalTimer<Integer, String>> expected = new PriorityQueue<>();
+			Set<InternalTimer<Integer, String>> contained = new HashSet<>();
+
+			Random random = new Random(42);
+			for (int i = 0; i < 2000; i++) {
+				// negative timestamps must be ordered correctly, too
+				InternalTimer<Integer, String> timer = new InternalTimer<>(
+					random.nextInt(1000) - 500, random.nextInt(50), random.nextBoolean() ? "a" : "b");
+
+				if (random.nextInt(4) == 0) {
+					assertEquals(contained.remove(timer), queue.remove(timer));
+					expected.remove(timer);
+				} else if (contained.add(timer)) {
+					assertTrue(queue.add(timer));
+					expected.add(timer);
+				} else {
+					assertFalse(queue.add(timer));
+				}
+			}
+
+			assertEquals(expected.size(), queue.size());
+
+			while (!expected.isEmpty()) {
+				InternalTimer<Integer, String> timer = queue.poll();
+				assertEquals(expected.poll().getTimestamp(), timer.getTimestamp());
+				assertTrue(contained.remove(timer));
+			}
+
+			assertNull(queue.peek());
+			assertNull(queue.poll());
+			assertEquals(0, queue.size());
+
+			queue.close();
+		} finally {
+			backend.close();
+		}
+	}
+
+	@Test
+	public void testTimersOfKeyGroups() throws Exception {
+		RocksDBStateBackend backend = createBackend();
+		backend.enableTimersInRocksDB();
+
+		try {
+			KeyGroupRange keyGroupRange = new KeyGroupRange(4, 11);
+			InternalTimerQueue<Integer, String> queue = backend.createTimerQueue("timers",
+				IntSerializer.INSTANCE, StringSerializer.INSTANCE, NUM_KEY_GROUPS, keyGroupRange);
+
+			int numTimers = 0;
+			for (int key = 0; key < 200; key++) {
+				if (keyGroupRange.contains(KeyGroupRangeAssignment.assignToKeyGroup(key, NUM_KEY_GROUPS))) {
+					queue.add(new InternalTimer<>(key, key, "a"));
+					queue.add(new InternalTimer<>(key + 1, key, "a"));
+					numTimers += 2;
+				}
+			}
+
+			int numTimersOfKeyGroups = 0;
+			for (int keyGroup : keyGroupRange) {
+				List<InternalTimer<Integer, String>> timers = queue.getTimers(keyGroup);
+				for (InternalTimer<Integer, String> timer : timers) {
+					assertEquals(keyGroup, KeyGroupRangeAssignment.assignToKeyGroup(timer.getKey(), NUM_KEY_GROUPS));
+					assertEquals("a", timer.getNamespace());
+				}
+				numTimersOfKeyGroups += timers.size();
+			}
+
+			assertEquals(numTimers, numTimersOfKeyGroups);
+			assertEquals(numTimers, queue.size());
+
+			queue.close();
+		} finally {
+			backend.close();
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	private RocksDBStateBackend createBackend() throws Exception {
+		File dir = tempFolder.newFolder();
+
+		IOManager ioMan = mock(IOManager.class);
+		when(ioMan.getSpillingDirectories()).thenReturn(new File[] { dir });
+
+		Environment env = mock(Environment.class);
+		when(env.getJobID()).thenReturn(new JobID());
+		when(env.getUserClassLoader()).thenReturn(getClass().getClassLoader());
+		when(env.getIOManager()).thenReturn(ioMan);
+
+		RocksDBStateBackend backend = new RocksDBStateBackend(tempFolder.newFolder().toURI().toString());
+		backend.initializeForJob(env, "test_op", IntSerializer.INSTANCE);
+		return backend;
+	}
+
+	private static KeyGroupRange allKeyGroups() {
+		return new KeyGroupRange(0, NUM_KEY_GROUPS - 1);
+	}
+}
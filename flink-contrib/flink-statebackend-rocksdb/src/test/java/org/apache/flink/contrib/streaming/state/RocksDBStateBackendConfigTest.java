@@ -20,18 +20,26 @@ package org.apache.flink.contrib.streaming.state;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.flink.api.common.JobID;
+import org.apache.flink.api.common.state.ValueState;
 import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.common.typeutils.base.IntSerializer;
 import org.apache.flink.api.common.typeutils.base.VoidSerializer;
+import org.apache.flink.core.memory.MemoryType;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.metrics.groups.TaskMetricGroup;
 import org.apache.flink.runtime.execution.Environment;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.memory.MemoryAllocationException;
+import org.apache.flink.runtime.memory.MemoryManager;
 import org.apache.flink.runtime.state.AbstractStateBackend;
 
 import org.apache.flink.util.OperatingSystem;
 import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import org.rocksdb.ColumnFamilyOptions;
 import org.rocksdb.CompactionStyle;
@@ -291,6 +299,140 @@ public class RocksDBStateBackendConfigTest {
 		verify(nonPartBackend, times(1)).close();
 	}
 	
+	// ------------------------------------------------------------------------
+	//  Memory budget and metrics
+	// ------------------------------------------------------------------------
+
+	@Test
+	public void testMemoryBudgetForColumnFamilies() throws Exception {
+		final long mb = 1024 * 1024;
+		MemoryManager memoryManager = new MemoryManager(128 * mb, 2, MemoryManager.DEFAULT_PAGE_SIZE, MemoryType.HEAP, false);
+
+		RocksDBMemoryBudget budget = RocksDBMemoryBudget.acquire(memoryManager, 0.5);
+		assertSame(budget, RocksDBMemoryBudget.acquire(memoryManager, 0.25));
+		assertEquals(64 * mb, budget.getTotalMemory());
+
+		// the budget is no longer available as managed memory
+		try {
+			memoryManager.allocatePages(this, memoryManager.getTotalNumPages() / 2 + 1);
+			fail("Expected MemoryAllocationException.");
+		} catch (MemoryAllocationException e) {
+			// expected
+		}
+
+		// at most the share of a slot, then half of the remaining memory, then the minimum
+		assertEquals(32 * mb, budget.reserveColumnFamilyMemory());
+		assertEquals(16 * mb, budget.reserveColumnFamilyMemory());
+		assertEquals(8 * mb, budget.reserveColumnFamilyMemory());
+		assertEquals(RocksDBMemoryBudget.MIN_COLUMN_FAMILY_MEMORY, budget.reserveColumnFamilyMemory());
+		assertEquals(64 * mb, budget.getUsedMemory());
+
+		// the budget is exhausted
+		try {
+			budget.reserveColumnFamilyMemory();
+			fail("Expected MemoryAllocationException.");
+		} catch (MemoryAllocationException e) {
+			// expected
+		}
+		try {
+			budget.reserveDefaultColumnFamilyMemory();
+			fail("Expected MemoryAllocationException.");
+		} catch (MemoryAllocationException e) {
+			// expected
+		}
+		assertEquals(64 * mb, budget.getUsedMemory());
+
+		budget.releaseColumnFamilyMemory(RocksDBMemoryBudget.MIN_COLUMN_FAMILY_MEMORY);
+		assertEquals(RocksDBMemoryBudget.DEFAULT_COLUMN_FAMILY_MEMORY, budget.reserveDefaultColumnFamilyMemory());
+
+		budget.releaseColumnFamilyMemory(56 * mb + RocksDBMemoryBudget.DEFAULT_COLUMN_FAMILY_MEMORY);
+		budget.release();
+		assertFalse(memoryManager.verifyEmpty());
+		budget.release();
+		assertTrue(memoryManager.verifyEmpty());
+
+		memoryManager.shutdown();
+	}
+
+	@Test
+	public void testMemoryBudgetAndNativeMetrics() throws Exception {
+		MemoryManager memoryManager = new MemoryManager(64 * 1024 * 1024, 1, MemoryManager.DEFAULT_PAGE_SIZE, MemoryType.HEAP, false);
+		MetricGroup rocksDbMetrics = mock(MetricGroup.class);
+		TaskMetricGroup taskMetrics = mock(TaskMetricGroup.class);
+		when(taskMetrics.addGroup("rocksdb")).thenReturn(rocksDbMetrics);
+
+		Environment env = getMockEnvironment();
+		when(env.getMemoryManager()).thenReturn(memoryManager);
+		when(env.getMetricGroup()).thenReturn(taskMetrics);
+
+		RocksDBStateBackend rocksDbBackend = new RocksDBStateBackend(TEMP_URI);
+		rocksDbBackend.setMemoryBudgetFraction(0.5);
+		rocksDbBackend.enableNativeMetrics();
+
+		rocksDbBackend.initializeForJob(env, "foobar", IntSerializer.INSTANCE);
+		assertFalse(memoryManager.verifyEmpty());
+
+		// the default column family of the instance gets memory from the budget
+		final ArgumentCaptor<Gauge> budgetUsed = ArgumentCaptor.forClass(Gauge.class);
+		verify(rocksDbMetrics).gauge(eq("memoryBudgetUsed"), budgetUsed.capture());
+		assertEquals(RocksDBMemoryBudget.DEFAULT_COLUMN_FAMILY_MEMORY, budgetUsed.getValue().getValue());
+
+		verify(rocksDbMetrics).gauge(eq("memTableSize"), any(Gauge.class));
+		verify(rocksDbMetrics).gauge(eq("estimatePendingCompactionBytes"), any(Gauge.class));
+		verify(rocksDbMetrics).gauge(eq("blockCacheHitRate"), any(Gauge.class));
+		verify(rocksDbMetrics).gauge(eq("memoryBudgetUsed"), any(Gauge.class));
+
+		ValueStateDescriptor<Integer> kvId = new ValueStateDescriptor<>("id", IntSerializer.INSTANCE, null);
+		ValueState<Integer> state = rocksDbBackend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+		for (int i = 0; i < 100; i++) {
+			rocksDbBackend.setCurrentKey(i);
+			state.update(i);
+		}
+
+		assertTrue(rocksDbBackend.getLongProperty("rocksdb.cur-size-all-mem-tables") > 0);
+		assertTrue(rocksDbBackend.getLongProperty("rocksdb.estimate-pending-compaction-bytes") >= 0);
+
+		double hitRate = rocksDbBackend.getBlockCacheHitRate();
+		assertTrue(hitRate >= 0.0 && hitRate <= 1.0);
+
+		rocksDbBackend.dispose();
+		assertTrue(memoryManager.verifyEmpty());
+		assertEquals(0L, rocksDbBackend.getLongProperty("rocksdb.cur-size-all-mem-tables"));
+
+		memoryManager.shutdown();
+	}
+
+	@Test
+	public void testFailWhenMemoryBudgetIsExhausted() throws Exception {
+		MemoryManager memoryManager = new MemoryManager(64 * 1024 * 1024, 1, MemoryManager.DEFAULT_PAGE_SIZE, MemoryType.HEAP, false);
+
+		Environment env = getMockEnvironment();
+		when(env.getMemoryManager()).thenReturn(memoryManager);
+
+		RocksDBStateBackend rocksDbBackend = new RocksDBStateBackend(TEMP_URI);
+		rocksDbBackend.setMemoryBudgetFraction(0.5);
+		rocksDbBackend.initializeForJob(env, "foobar", IntSerializer.INSTANCE);
+
+		// 1 MiByte for the default column family, then 15.5 and 8 MiBytes
+		rocksDbBackend.getPartitionedState(null, VoidSerializer.INSTANCE,
+			new ValueStateDescriptor<>("first", IntSerializer.INSTANCE, null));
+		rocksDbBackend.getPartitionedState(null, VoidSerializer.INSTANCE,
+			new ValueStateDescriptor<>("second", IntSerializer.INSTANCE, null));
+
+		try {
+			rocksDbBackend.getPartitionedState(null, VoidSerializer.INSTANCE,
+				new ValueStateDescriptor<>("third", IntSerializer.INSTANCE, null));
+			fail("Expected an exception, the memory budget is exhausted.");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof MemoryAllocationException);
+		}
+
+		rocksDbBackend.dispose();
+		assertTrue(memoryManager.verifyEmpty());
+
+		memoryManager.shutdown();
+	}
+
 	// ------------------------------------------------------------------------
 	//  Utilities
 	// ------------------------------------------------------------------------
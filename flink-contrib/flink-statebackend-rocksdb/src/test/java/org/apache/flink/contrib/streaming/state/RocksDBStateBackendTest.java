@@ -19,16 +19,31 @@
 package org.apache.flink.contrib.streaming.state;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.StateTtlConfig;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.VoidSerializer;
 import org.apache.flink.configuration.ConfigConstants;
+import org.apache.flink.runtime.operators.testutils.DummyEnvironment;
 import org.apache.flink.runtime.state.StateBackendTestBase;
+import org.apache.flink.runtime.state.TtlTimeProvider;
 import org.apache.flink.runtime.state.memory.MemoryStateBackend;
 import org.apache.flink.util.OperatingSystem;
 import org.junit.Assume;
 import org.junit.Before;
+import org.junit.Test;
+import org.rocksdb.RocksIterator;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  * Tests for the partitioned state part of {@link RocksDBStateBackend}.
@@ -53,6 +68,66 @@ public class RocksDBStateBackendTest extends StateBackendTestBase<RocksDBStateBa
 		return backend;
 	}
 
+	/**
+	 * Tests that the incremental cleanup of state with time-to-live only runs every few accesses
+	 * and then removes the expired values of as many entries as it would have checked on each
+	 * of these accesses.
+	 */
+	@Test
+	public void testTtlIncrementalCleanup() throws Exception {
+		final AtomicLong time = new AtomicLong();
+		backend.setTtlTimeProvider(new TtlTimeProvider() {
+			@Override
+			public long currentTimestamp() {
+				return time.get();
+			}
+		});
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		ValueStateDescriptor<String> kvId = new ValueStateDescriptor<>("id", String.class, null);
+		kvId.enableTimeToLive(StateTtlConfig.newBuilder(100, TimeUnit.MILLISECONDS).cleanupIncrementally(1).build());
+		kvId.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		RocksDBTtlValueState<?, ?, ?> state = (RocksDBTtlValueState<?, ?, ?>)
+			backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+		ValueState<String> valueState = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+		final int numExpiredKeys = RocksDBTtlValueState.CLEANUP_INTERVAL - 2;
+		for (int i = 0; i < numExpiredKeys; i++) {
+			backend.setCurrentKey(i);
+			valueState.update("expired");
+		}
+
+		// this access is counted, but does not clean up yet
+		time.set(200);
+		backend.setCurrentKey(-1);
+		assertNull(valueState.value());
+		assertEquals(numExpiredKeys, countEntries(state));
+
+		// the next access checks the entries of all the counted accesses at once
+		valueState.update("live");
+		assertEquals(1, countEntries(state));
+	}
+
+	private int countEntries(AbstractRocksDBState<?, ?, ?, ?> state) {
+		int count = 0;
+		RocksIterator iterator = backend.db.newIterator(state.columnFamily);
+		try {
+			for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+				count++;
+			}
+		} finally {
+			iterator.dispose();
+		}
+		return count;
+	}
+
+	@Override
+	protected boolean supportsKeyGroupRescaling() {
+		// the semi-asynchronous snapshots are full database backups
+		return false;
+	}
+
 	@Override
 	protected void cleanup() {
 		try {
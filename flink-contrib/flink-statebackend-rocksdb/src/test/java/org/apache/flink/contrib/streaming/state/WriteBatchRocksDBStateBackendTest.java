@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.VoidSerializer;
+import org.apache.flink.configuration.ConfigConstants;
+import org.apache.flink.runtime.operators.testutils.DummyEnvironment;
+import org.apache.flink.runtime.state.StateBackendTestBase;
+import org.apache.flink.runtime.state.memory.MemoryStateBackend;
+import org.apache.flink.util.OperatingSystem;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the partitioned state part of {@link RocksDBStateBackend} with writes buffered in a
+ * write batch and fully asynchronous checkpointing enabled.
+ */
+public class WriteBatchRocksDBStateBackendTest extends StateBackendTestBase<RocksDBStateBackend> {
+
+	private File dbDir;
+	private File chkDir;
+
+	@Before
+	public void checkOperatingSystem() {
+		Assume.assumeTrue("This test can't run successfully on Windows.", !OperatingSystem.isWindows());
+	}
+
+	@Override
+	protected RocksDBStateBackend getStateBackend() throws IOException {
+		dbDir = new File(new File(ConfigConstants.DEFAULT_TASK_MANAGER_TMP_PATH, UUID.randomUUID().toString()), "state");
+		chkDir = new File(new File(ConfigConstants.DEFAULT_TASK_MANAGER_TMP_PATH, UUID.randomUUID().toString()), "snapshots");
+
+		RocksDBStateBackend backend = new RocksDBStateBackend(chkDir.getAbsoluteFile().toURI(), new MemoryStateBackend());
+		backend.setDbStoragePath(dbDir.getAbsolutePath());
+		backend.enableFullyAsyncSnapshots();
+		// small enough that the tests write full batches as well as partial batches
+		backend.setWriteBatchSize(7);
+		return backend;
+	}
+
+	@Override
+	protected void cleanup() {
+		try {
+			FileUtils.deleteDirectory(dbDir);
+			FileUtils.deleteDirectory(chkDir);
+		} catch (IOException ignore) {}
+	}
+
+	@Test
+	public void testReadYourWrites() throws Exception {
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		ValueStateDescriptor<String> valueId = new ValueStateDescriptor<>("value", String.class, null);
+		valueId.initializeSerializerUnlessSet(new ExecutionConfig());
+		ListStateDescriptor<String> listId = new ListStateDescriptor<>("list", String.class);
+		listId.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		ValueState<String> valueState = backend.getPartitionedState(null, VoidSerializer.INSTANCE, valueId);
+		ListState<String> listState = backend.getPartitionedState(null, VoidSerializer.INSTANCE, listId);
+
+		backend.setCurrentKey(1);
+		valueState.update("a");
+		assertEquals("a", valueState.value());
+		valueState.update("b");
+		assertEquals("b", valueState.value());
+		valueState.clear();
+		assertNull(valueState.value());
+
+		listState.add("x");
+		listState.add("y");
+		assertEquals(Arrays.asList("x", "y"), listState.get());
+		listState.add("z");
+		assertEquals(Arrays.asList("x", "y", "z"), listState.get());
+		listState.clear();
+		assertTrue(!listState.get().iterator().hasNext());
+		listState.add("w");
+		assertEquals(Arrays.asList("w"), listState.get());
+
+		backend.dispose();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testMultiGet() throws Exception {
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		ValueStateDescriptor<String> kvId = new ValueStateDescriptor<>("id", String.class, "default");
+		kvId.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		RocksDBValueState<Integer, Void, String> state =
+				(RocksDBValueState<Integer, Void, String>) backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+		for (int i = 0; i < 20; i++) {
+			backend.setCurrentKey(i);
+			state.update(String.valueOf(i));
+		}
+
+		// some of the keys are still in the batch
+		backend.setCurrentKey(3);
+		state.clear();
+		backend.setCurrentKey(19);
+		state.update("u19");
+
+		Map<Integer, String> values = state.multiGet(Arrays.asList(0, 3, 10, 19, 42));
+
+		assertEquals(5, values.size());
+		assertEquals("0", values.get(0));
+		assertEquals("default", values.get(3));
+		assertEquals("10", values.get(10));
+		assertEquals("u19", values.get(19));
+		assertEquals("default", values.get(42));
+
+		backend.dispose();
+	}
+}
@@ -85,6 +85,13 @@ public class ExecutionConfig implements Serializable {
 
 	private int parallelism = PARALLELISM_DEFAULT;
 
+	/**
+	 * The upper limit for the parallelism of the keyed operators of a program. It determines the
+	 * number of key groups into which the keyed state is split, and thus the parallelism up to
+	 * which a program can be rescaled without losing its keyed state.
+	 */
+	private int maxParallelism = PARALLELISM_DEFAULT;
+
 	/**
 	 * @deprecated Should no longer be used because it is subsumed by RestartStrategyConfiguration
 	 */
@@ -227,6 +234,37 @@ public class ExecutionConfig implements Serializable {
 		return this;
 	}
 
+	/**
+	 * Gets the maximum degree of parallelism defined for the program. The maximum parallelism
+	 * determines the number of key groups of the keyed state and therefore the upper bound
+	 * for the parallelism to which a program can be rescaled.
+	 *
+	 * @return The maximum parallelism, or {@link #PARALLELISM_DEFAULT} if the system should
+	 *         derive it from the parallelism of the program.
+	 */
+	@PublicEvolving
+	public int getMaxParallelism() {
+		return maxParallelism;
+	}
+
+	/**
+	 * Sets the maximum degree of parallelism defined for the program. The maximum parallelism
+	 * determines the number of key groups of the keyed state and therefore the upper bound
+	 * for the parallelism to which a program can be rescaled. It must stay the same when a
+	 * program is restored from a checkpoint or savepoint with a different parallelism.
+	 *
+	 * @param maxParallelism The maximum parallelism to use, must be at least 1.
+	 */
+	@PublicEvolving
+	public ExecutionConfig setMaxParallelism(int maxParallelism) {
+		Preconditions.checkArgument(maxParallelism > 0 || maxParallelism == PARALLELISM_DEFAULT,
+			"The maximum parallelism must be at least 1.");
+
+		this.maxParallelism = maxParallelism;
+
+		return this;
+	}
+
 	/**
 	 * Gets the interval (in milliseconds) between consecutive attempts to cancel a running task.
 	 */
@@ -676,6 +714,7 @@ public class ExecutionConfig implements Serializable {
 				Objects.equals(executionMode, other.executionMode) &&
 				useClosureCleaner == other.useClosureCleaner &&
 				parallelism == other.parallelism &&
+				maxParallelism == other.maxParallelism &&
 				((restartStrategyConfiguration == null && other.restartStrategyConfiguration == null) ||
 					(null != restartStrategyConfiguration && restartStrategyConfiguration.equals(other.restartStrategyConfiguration))) &&
 				forceKryo == other.forceKryo &&
@@ -703,6 +742,7 @@ public class ExecutionConfig implements Serializable {
 			executionMode,
 			useClosureCleaner,
 			parallelism,
+			maxParallelism,
 			restartStrategyConfiguration,
 			forceKryo,
 			objectReuse,
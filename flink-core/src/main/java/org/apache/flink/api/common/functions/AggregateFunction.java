@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.flink.api.common.functions;
+
+import org.apache.flink.annotation.PublicEvolving;
+
+import java.io.Serializable;
+
+/**
+ * Base interface for aggregation functions. An aggregation function incrementally aggregates
+ * values into an accumulator, which is usually much smaller than the aggregated values, and
+ * computes the result of the aggregation from the accumulator. In contrast to a
+ * {@link ReduceFunction}, the types of the input values, the accumulator and the result can
+ * be different.
+ * <p>
+ * Accumulators can be merged, so that partial aggregates, for example of merged session
+ * windows, can be combined into one.
+ * <p>
+ * The basic syntax for using an AggregateFunction, which computes an average, is as follows:
+ * <pre>{@code
+ * public class Average implements AggregateFunction<Long, Tuple2<Long, Long>, Double> {
+ *
+ *     public Tuple2<Long, Long> createAccumulator() {
+ *         return new Tuple2<>(0L, 0L);
+ *     }
+ *
+ *     public Tuple2<Long, Long> add(Long value, Tuple2<Long, Long> acc) {
+ *         return new Tuple2<>(acc.f0 + value, acc.f1 + 1L);
+ *     }
+ *
+ *     public Tuple2<Long, Long> merge(Tuple2<Long, Long> a, Tuple2<Long, Long> b) {
+ *         return new Tuple2<>(a.f0 + b.f0, a.f1 + b.f1);
+ *     }
+ *
+ *     public Double getResult(Tuple2<Long, Long> acc) {
+ *         return ((double) acc.f0) / acc.f1;
+ *     }
+ * }
+ * }</pre>
+ * <p>
+ * Like all functions, the AggregateFunction needs to be serializable, as defined in {@link java.io.Serializable}.
+ *
+ * @param <IN> The type of the values that are aggregated.
+ * @param <ACC> The type of the accumulator, i.e. the intermediate aggregate.
+ * @param <OUT> The type of the aggregation result.
+ */
+@PublicEvolving
+public interface AggregateFunction<IN, ACC, OUT> extends Function, Serializable {
+
+	/**
+	 * Creates a new accumulator, which represents an empty aggregate.
+	 *
+	 * @return A new accumulator.
+	 */
+	ACC createAccumulator();
+
+	/**
+	 * Adds the given value to the given accumulator. The accumulator may be modified and
+	 * returned, or a new accumulator may be returned.
+	 *
+	 * @param value The value to add.
+	 * @param accumulator The accumulator to add the value to.
+	 * @return The accumulator with the added value.
+	 */
+	ACC add(IN value, ACC accumulator);
+
+	/**
+	 * Merges two accumulators. The given accumulators may be modified and returned, or a new
+	 * accumulator may be returned.
+	 *
+	 * @param a An accumulator to merge.
+	 * @param b Another accumulator to merge.
+	 * @return The accumulator with the merged aggregate.
+	 */
+	ACC merge(ACC a, ACC b);
+
+	/**
+	 * Computes the result of the aggregation from the accumulator.
+	 *
+	 * @param accumulator The accumulator of the aggregation.
+	 * @return The result of the aggregation.
+	 */
+	OUT getResult(ACC accumulator);
+}
@@ -45,6 +45,8 @@ public abstract class Operator<OUT> implements Visitable<Operator<?>> {
 		
 	private int parallelism = ExecutionConfig.PARALLELISM_DEFAULT;  // the number of parallel instances to use
 
+	private boolean cached;								// whether the result is kept after the job finished
+
 	/**
 	 * The return type of the user function.
 	 */
@@ -184,6 +186,29 @@ public abstract class Operator<OUT> implements Visitable<Operator<?>> {
 	public void setParallelism(int parallelism) {
 		this.parallelism = parallelism;
 	}
+
+	/**
+	 * Checks whether the result of this operator is cached. A cached result is kept by the
+	 * TaskManagers after the job has finished.
+	 *
+	 * @return True, if the result of this operator is cached, false otherwise.
+	 */
+	public boolean isCached() {
+		return this.cached;
+	}
+
+	/**
+	 * Sets whether the result of this operator is cached. A cached result is kept by the
+	 * TaskManagers after the job has finished.
+	 *
+	 * <p>Note: Later executions do not read cached results yet, they compute them again. The
+	 * APIs therefore do not expose caching.
+	 *
+	 * @param cached True, if the result of this operator should be cached.
+	 */
+	public void setCached(boolean cached) {
+		this.cached = cached;
+	}
 	
 	
 	/**
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.flink.api.common.state;
+
+import org.apache.flink.annotation.PublicEvolving;
+import org.apache.flink.api.common.functions.AggregateFunction;
+import org.apache.flink.api.common.functions.RichFunction;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link StateDescriptor} for {@link AggregatingState}. This can be used to create partitioned
+ * aggregating state. The state keeps the accumulator of the {@link AggregateFunction}, so the
+ * serializer of the descriptor is the serializer of the accumulator.
+ *
+ * @param <IN> Type of the values aggregated into the state
+ * @param <ACC> Type of the accumulator in the state
+ * @param <OUT> Type of the result of the aggregation
+ */
+@PublicEvolving
+public class AggregatingStateDescriptor<IN, ACC, OUT> extends StateDescriptor<AggregatingState<IN, OUT>, ACC> {
+	private static final long serialVersionUID = 1L;
+
+	private final AggregateFunction<IN, ACC, OUT> aggFunction;
+
+	/**
+	 * Creates a new {@code AggregatingStateDescriptor} with the given name and accumulator type.
+	 *
+	 * <p>If this constructor fails (because it is not possible to describe the type via a class),
+	 * consider using the {@link #AggregatingStateDescriptor(String, AggregateFunction, TypeInformation)} constructor.
+	 *
+	 * @param name The (unique) name for the state.
+	 * @param aggFunction The {@code AggregateFunction} used to aggregate the state.
+	 * @param accClass The type of the accumulator in the state.
+	 */
+	public AggregatingStateDescriptor(String name, AggregateFunction<IN, ACC, OUT> aggFunction, Class<ACC> accClass) {
+		super(name, accClass, null);
+		this.aggFunction = checkAggregateFunction(aggFunction);
+	}
+
+	/**
+	 * Creates a new {@code AggregatingStateDescriptor} with the given name and accumulator type.
+	 *
+	 * @param name The (unique) name for the state.
+	 * @param aggFunction The {@code AggregateFunction} used to aggregate the state.
+	 * @param accTypeInfo The type of the accumulator in the state.
+	 */
+	public AggregatingStateDescriptor(String name, AggregateFunction<IN, ACC, OUT> aggFunction, TypeInformation<ACC> accTypeInfo) {
+		super(name, accTypeInfo, null);
+		this.aggFunction = checkAggregateFunction(aggFunction);
+	}
+
+	/**
+	 * Creates a new {@code AggregatingStateDescriptor} with the given name and accumulator serializer.
+	 *
+	 * @param name The (unique) name for the state.
+	 * @param aggFunction The {@code AggregateFunction} used to aggregate the state.
+	 * @param accSerializer The serializer of the accumulator in the state.
+	 */
+	public AggregatingStateDescriptor(String name, AggregateFunction<IN, ACC, OUT> aggFunction, TypeSerializer<ACC> accSerializer) {
+		super(name, accSerializer, null);
+		this.aggFunction = checkAggregateFunction(aggFunction);
+	}
+
+	private static <IN, ACC, OUT> AggregateFunction<IN, ACC, OUT> checkAggregateFunction(AggregateFunction<IN, ACC, OUT> aggFunction) {
+		requireNonNull(aggFunction);
+
+		if (aggFunction instanceof RichFunction) {
+			throw new UnsupportedOperationException("AggregateFunction of AggregatingState can not be a RichFunction.");
+		}
+		return aggFunction;
+	}
+
+	// ------------------------------------------------------------------------
+
+	@Override
+	public AggregatingState<IN, OUT> bind(StateBackend stateBackend) throws Exception {
+		return stateBackend.createAggregatingState(this);
+	}
+
+	/**
+	 * Returns the aggregate function to be used for the aggregating state.
+	 */
+	public AggregateFunction<IN, ACC, OUT> getAggregateFunction() {
+		return aggFunction;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+
+		AggregatingStateDescriptor<?, ?, ?> that = (AggregatingStateDescriptor<?, ?, ?>) o;
+
+		return serializer.equals(that.serializer) && name.equals(that.name);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = serializer.hashCode();
+		result = 31 * result + name.hashCode();
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "AggregatingStateDescriptor{" +
+				"serializer=" + serializer +
+				", aggFunction=" + aggFunction +
+				'}';
+	}
+}
@@ -22,6 +22,7 @@ import org.apache.flink.annotation.PublicEvolving;
 import org.apache.flink.api.common.ExecutionConfig;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.TypeSerializerConfigSnapshot;
 import org.apache.flink.api.java.typeutils.TypeExtractor;
 import org.apache.flink.core.memory.DataInputViewStreamWrapper;
 import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
@@ -31,6 +32,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OptionalDataException;
 import java.io.Serializable;
 
 import static java.util.Objects.requireNonNull;
@@ -62,6 +64,16 @@ public abstract class StateDescriptor<S extends State, T> implements Serializabl
 	 * and dropped during serialization */
 	private transient TypeInformation<T> typeInfo;
 
+	/** The time-to-live of the values in the state, null if the values never expire */
+	private StateTtlConfig ttlConfig;
+
+	/** The name under which the state can be queried from outside the job, null if it cannot */
+	private String queryableStateName;
+
+	/** The configuration snapshot of the serializer that wrote the values of the state, if this
+	 * descriptor was restored from a snapshot of the state. Written after the default value. */
+	private transient TypeSerializerConfigSnapshot serializerConfigSnapshot;
+
 	// ------------------------------------------------------------------------
 
 	/**
@@ -153,6 +165,73 @@ public abstract class StateDescriptor<S extends State, T> implements Serializabl
 		}
 	}
 
+	/**
+	 * Returns the configuration snapshot of the serializer that wrote the values of the state,
+	 * if this descriptor was restored together with a snapshot of the state. State backends
+	 * check with {@link TypeSerializer#ensureCompatibility(TypeSerializerConfigSnapshot)}
+	 * whether the serializer of a new descriptor for the state can read the restored values.
+	 *
+	 * @return The configuration snapshot, or null if this descriptor was not restored, or was
+	 *         written before configuration snapshots were written.
+	 */
+	public TypeSerializerConfigSnapshot getSerializerConfigSnapshot() {
+		return serializerConfigSnapshot;
+	}
+
+	/**
+	 * Enables the time-to-live of the values in the state. Values, which have not been accessed
+	 * within the configured time, are treated as if they did not exist.
+	 *
+	 * <p>The time-to-live is currently only supported for {@link ValueState}.
+	 *
+	 * @param ttlConfig The time-to-live configuration.
+	 */
+	public void enableTimeToLive(StateTtlConfig ttlConfig) {
+		this.ttlConfig = requireNonNull(ttlConfig, "ttlConfig must not be null");
+	}
+
+	/**
+	 * Returns the time-to-live configuration of the state, or null if the values never expire.
+	 */
+	public StateTtlConfig getTtlConfig() {
+		return ttlConfig;
+	}
+
+	/**
+	 * Checks whether the values of the state expire.
+	 */
+	public boolean isTtlEnabled() {
+		return ttlConfig != null;
+	}
+
+	/**
+	 * Makes the state queryable from outside the job under the given name. The TaskManagers
+	 * serve the values of the state to external clients, which look the state up by the ID of
+	 * the job, the queryable state name and the key.
+	 *
+	 * <p>Queries read the state concurrently to the task that updates it. They see the values
+	 * that the task has written, but not necessarily the latest updates.
+	 *
+	 * @param queryableStateName The name under which the state can be queried.
+	 */
+	public void setQueryable(String queryableStateName) {
+		this.queryableStateName = requireNonNull(queryableStateName, "queryableStateName must not be null");
+	}
+
+	/**
+	 * Returns the name under which the state can be queried, or null if it is not queryable.
+	 */
+	public String getQueryableStateName() {
+		return queryableStateName;
+	}
+
+	/**
+	 * Checks whether the state can be queried from outside the job.
+	 */
+	public boolean isQueryable() {
+		return queryableStateName != null;
+	}
+
 	/**
 	 * Creates a new {@link State} on the given {@link StateBackend}.
 	 *
@@ -261,6 +340,10 @@ public abstract class StateDescriptor<S extends State, T> implements Serializabl
 			out.writeInt(serializedDefaultValue.length);
 			out.write(serializedDefaultValue);
 		}
+
+		// a restored descriptor passes on the snapshot of the serializer that wrote the values,
+		// because its serializer may not be able to describe the prior format any more
+		out.writeObject(serializerConfigSnapshot != null ? serializerConfigSnapshot : serializer.snapshotConfiguration());
 	}
 
 	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
@@ -287,5 +370,16 @@ public abstract class StateDescriptor<S extends State, T> implements Serializabl
 		} else {
 			defaultValue = null;
 		}
+
+		try {
+			serializerConfigSnapshot = (TypeSerializerConfigSnapshot) in.readObject();
+		} catch (OptionalDataException e) {
+			if (e.eof) {
+				// written before the configuration snapshots of serializers were added
+				serializerConfigSnapshot = null;
+			} else {
+				throw e;
+			}
+		}
 	}
 }
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.flink.api.common.state;
+
+import org.apache.flink.annotation.PublicEvolving;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Configuration of the time-to-live of partitioned state. The state backends store the time of
+ * the last access next to every value. Values, which have not been accessed for longer than the
+ * time-to-live, are treated as if they did not exist and are eventually removed by the backends.
+ *
+ * <p>The time-to-live is based on processing time.
+ *
+ * <p>A configuration is created via {@link #newBuilder(long, TimeUnit)} and enabled on a state
+ * via {@link StateDescriptor#enableTimeToLive(StateTtlConfig)}.
+ */
+@PublicEvolving
+public class StateTtlConfig implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The default number of entries that are checked for expiration on every state access */
+	public static final int DEFAULT_CLEANUP_SIZE = 5;
+
+	/**
+	 * The accesses which renew the time-to-live of a value.
+	 */
+	public enum UpdateType {
+
+		/** The time-to-live is renewed when the value is created or updated */
+		OnCreateAndWrite,
+
+		/** The time-to-live is renewed when the value is created, updated or read */
+		OnReadAndWrite
+	}
+
+	/** The time-to-live in milliseconds */
+	private final long ttl;
+
+	/** The accesses which renew the time-to-live */
+	private final UpdateType updateType;
+
+	/** The number of entries that are checked for expiration on every state access */
+	private final int cleanupSize;
+
+	private StateTtlConfig(long ttl, UpdateType updateType, int cleanupSize) {
+		this.ttl = ttl;
+		this.updateType = updateType;
+		this.cleanupSize = cleanupSize;
+	}
+
+	/**
+	 * Returns the time-to-live in milliseconds.
+	 */
+	public long getTtl() {
+		return ttl;
+	}
+
+	/**
+	 * Returns the accesses which renew the time-to-live of a value.
+	 */
+	public UpdateType getUpdateType() {
+		return updateType;
+	}
+
+	/**
+	 * Returns the number of entries that the backends check for expiration on every state access.
+	 * Zero means that expired values are only removed when they are accessed or checkpointed.
+	 */
+	public int getCleanupSize() {
+		return cleanupSize;
+	}
+
+	/**
+	 * Checks whether a value with the given time of the last access is expired.
+	 *
+	 * @param lastAccessTimestamp The time of the last access of the value, in milliseconds.
+	 * @param currentTimestamp The current time, in milliseconds.
+	 * @return True, if the value is expired.
+	 */
+	public boolean isExpired(long lastAccessTimestamp, long currentTimestamp) {
+		// compare the age, because the expiration time overflows for very long time-to-live values
+		return currentTimestamp - lastAccessTimestamp >= ttl;
+	}
+
+	// ------------------------------------------------------------------------
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+
+		StateTtlConfig that = (StateTtlConfig) o;
+		return ttl == that.ttl && cleanupSize == that.cleanupSize && updateType == that.updateType;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = (int) (ttl ^ (ttl >>> 32));
+		result = 31 * result + updateType.hashCode();
+		result = 31 * result + cleanupSize;
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "StateTtlConfig{" +
+				"ttl=" + ttl +
+				", updateType=" + updateType +
+				", cleanupSize=" + cleanupSize +
+				'}';
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Creates a builder for a time-to-live configuration.
+	 *
+	 * @param ttl The time-to-live of the values.
+	 * @param unit The time unit of the time-to-live.
+	 */
+	public static Builder newBuilder(long ttl, TimeUnit unit) {
+		return new Builder(ttl, unit);
+	}
+
+	/**
+	 * Builder for a {@link StateTtlConfig}.
+	 */
+	public static class Builder {
+
+		private final long ttl;
+
+		private UpdateType updateType = UpdateType.OnCreateAndWrite;
+
+		private int cleanupSize = DEFAULT_CLEANUP_SIZE;
+
+		private Builder(long ttl, TimeUnit unit) {
+			checkArgument(ttl > 0, "The time-to-live must be positive.");
+			this.ttl = checkNotNull(unit).toMillis(ttl);
+		}
+
+		/**
+		 * Sets the accesses which renew the time-to-live of a value. The default is
+		 * {@link UpdateType#OnCreateAndWrite}.
+		 */
+		public Builder setUpdateType(UpdateType updateType) {
+			this.updateType = checkNotNull(updateType);
+			return this;
+		}
+
+		/**
+		 * Sets the number of entries that the backends check for expiration on every state
+		 * access. The default is {@value #DEFAULT_CLEANUP_SIZE}, zero disables the incremental
+		 * cleanup. Backends for which a check is expensive to start, such as RocksDB, check the
+		 * entries of several accesses at once.
+		 */
+		public Builder cleanupIncrementally(int cleanupSize) {
+			checkArgument(cleanupSize >= 0, "The cleanup size must not be negative.");
+			this.cleanupSize = cleanupSize;
+			return this;
+		}
+
+		public StateTtlConfig build() {
+			return new StateTtlConfig(ttl, updateType, cleanupSize);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.api.common.typeutils;
+
+import org.apache.flink.annotation.PublicEvolving;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The result of checking whether a {@link TypeSerializer} can read data that was written with
+ * a serializer of a prior configuration. The data is either
+ * <ul>
+ *     <li>compatible: the serializer reads and writes the data as it is,</li>
+ *     <li>migratable: the data has to be read with the given convert deserializer, and
+ *     written again with the new serializer, or</li>
+ *     <li>incompatible: the serializer cannot read the data.</li>
+ * </ul>
+ *
+ * @param <T> The type of the data.
+ */
+@PublicEvolving
+public final class CompatibilityResult<T> {
+
+	/** Whether the data has to be rewritten with the new serializer */
+	private final boolean requiresMigration;
+
+	/** The serializer that reads the prior data, null if the data is incompatible */
+	private final TypeSerializer<T> convertDeserializer;
+
+	private CompatibilityResult(boolean requiresMigration, TypeSerializer<T> convertDeserializer) {
+		this.requiresMigration = requiresMigration;
+		this.convertDeserializer = convertDeserializer;
+	}
+
+	/**
+	 * Returns a result that indicates that the new serializer can read the prior data.
+	 */
+	public static <T> CompatibilityResult<T> compatible() {
+		return new CompatibilityResult<>(false, null);
+	}
+
+	/**
+	 * Returns a result that indicates that the prior data has to be read with the given
+	 * deserializer and written again with the new serializer.
+	 *
+	 * @param convertDeserializer The serializer that reads the prior data into the new type.
+	 */
+	public static <T> CompatibilityResult<T> requiresMigration(TypeSerializer<T> convertDeserializer) {
+		return new CompatibilityResult<>(true, checkNotNull(convertDeserializer, "convertDeserializer must not be null"));
+	}
+
+	/**
+	 * Returns a result that indicates that the new serializer cannot read the prior data.
+	 */
+	public static <T> CompatibilityResult<T> requiresMigration() {
+		return new CompatibilityResult<>(true, null);
+	}
+
+	// ------------------------------------------------------------------------
+
+	public boolean isRequiresMigration() {
+		return requiresMigration;
+	}
+
+	/**
+	 * Returns the serializer that reads the prior data, or null if the prior data is compatible
+	 * or cannot be read.
+	 */
+	public TypeSerializer<T> getConvertDeserializer() {
+		return convertDeserializer;
+	}
+
+	/**
+	 * Checks whether the prior data has to be migrated, but cannot be read.
+	 */
+	public boolean isIncompatible() {
+		return requiresMigration && convertDeserializer == null;
+	}
+
+	@Override
+	public String toString() {
+		return "CompatibilityResult{" +
+				"requiresMigration=" + requiresMigration +
+				", convertDeserializer=" + convertDeserializer +
+				'}';
+	}
+}
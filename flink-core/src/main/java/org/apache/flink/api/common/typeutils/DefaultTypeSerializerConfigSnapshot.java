@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.api.common.typeutils;
+
+import org.apache.flink.annotation.PublicEvolving;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The configuration snapshot of serializers that do not describe their format themselves. The
+ * snapshot holds the serializer, which is compatible with the serializers that are equal to it.
+ *
+ * @param <T> The type of the data.
+ */
+@PublicEvolving
+public final class DefaultTypeSerializerConfigSnapshot<T> extends TypeSerializerConfigSnapshot {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int VERSION = 1;
+
+	private final TypeSerializer<T> serializer;
+
+	public DefaultTypeSerializerConfigSnapshot(TypeSerializer<T> serializer) {
+		this.serializer = checkNotNull(serializer);
+	}
+
+	@Override
+	public int getVersion() {
+		return VERSION;
+	}
+
+	/**
+	 * Returns the serializer that wrote the data.
+	 */
+	public TypeSerializer<T> getSerializer() {
+		return serializer;
+	}
+
+	@Override
+	public String toString() {
+		return "DefaultTypeSerializerConfigSnapshot{" + serializer + '}';
+	}
+}
@@ -149,6 +149,47 @@ public abstract class TypeSerializer<T> implements Serializable {
 	 */
 	public abstract void copy(DataInputView source, DataOutputView target) throws IOException;
 
+	// --------------------------------------------------------------------------------------------
+	// Compatibility with the data of prior serializers
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Creates a snapshot of the configuration of this serializer, which is written together with
+	 * the serialized data. The snapshot is later passed to
+	 * {@link #ensureCompatibility(TypeSerializerConfigSnapshot)} of the serializer that reads the
+	 * data, which may have a different configuration.
+	 *
+	 * <p>The default snapshot holds this serializer. Serializers whose format changes with the
+	 * serialized type, for example when fields are added, should describe their format instead.
+	 *
+	 * @return The snapshot of the configuration of this serializer.
+	 */
+	public TypeSerializerConfigSnapshot snapshotConfiguration() {
+		return new DefaultTypeSerializerConfigSnapshot<>(duplicate());
+	}
+
+	/**
+	 * Checks whether this serializer can read data that was written by a serializer with the
+	 * given configuration. If it cannot, the result may hold a serializer that reads the data,
+	 * so that it can be written again with this serializer.
+	 *
+	 * <p>The default implementation considers the data compatible, if the snapshot holds a
+	 * serializer that is equal to this serializer, and incompatible otherwise.
+	 *
+	 * @param configSnapshot The configuration snapshot of the serializer that wrote the data.
+	 * @return The result of the compatibility check.
+	 */
+	public CompatibilityResult<T> ensureCompatibility(TypeSerializerConfigSnapshot configSnapshot) {
+		if (configSnapshot instanceof DefaultTypeSerializerConfigSnapshot &&
+				equals(((DefaultTypeSerializerConfigSnapshot<?>) configSnapshot).getSerializer())) {
+			return CompatibilityResult.compatible();
+		} else {
+			return CompatibilityResult.requiresMigration();
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
 	public abstract boolean equals(Object obj);
 
 	/**
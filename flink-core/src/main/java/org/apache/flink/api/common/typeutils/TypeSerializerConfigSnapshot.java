@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.api.common.typeutils;
+
+import org.apache.flink.annotation.PublicEvolving;
+
+import java.io.Serializable;
+
+/**
+ * A snapshot of the configuration of a {@link TypeSerializer}, which describes the format of
+ * the data that the serializer writes. Snapshots are written together with the serialized data,
+ * for example into the snapshots of keyed state, so that a new serializer can check in
+ * {@link TypeSerializer#ensureCompatibility(TypeSerializerConfigSnapshot)} whether it can read
+ * the data.
+ *
+ * <p>Snapshots must be readable by later versions of the serializer. Every snapshot class has
+ * a version, which it increments when its content changes.
+ */
+@PublicEvolving
+public abstract class TypeSerializerConfigSnapshot implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Returns the version of the snapshot format.
+	 */
+	public abstract int getVersion();
+}
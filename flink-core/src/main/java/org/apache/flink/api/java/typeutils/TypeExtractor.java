@@ -35,6 +35,7 @@ import org.apache.commons.lang3.ClassUtils;
 import org.apache.flink.annotation.PublicEvolving;
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.annotation.Public;
+import org.apache.flink.api.common.functions.AggregateFunction;
 import org.apache.flink.api.common.functions.CoGroupFunction;
 import org.apache.flink.api.common.functions.CrossFunction;
 import org.apache.flink.api.common.functions.FlatJoinFunction;
@@ -145,6 +146,37 @@ public class TypeExtractor {
 		return getUnaryOperatorReturnType((Function) foldInterface, FoldFunction.class, false, false, inType, functionName, allowMissing);
 	}
 
+	@PublicEvolving
+	public static <IN, ACC> TypeInformation<ACC> getAggregateFunctionAccumulatorType(
+			AggregateFunction<IN, ACC, ?> function, TypeInformation<IN> inType, String functionName, boolean allowMissing)
+	{
+		return getAggregateFunctionType(function, 1, inType, functionName, allowMissing);
+	}
+
+	@PublicEvolving
+	public static <IN, OUT> TypeInformation<OUT> getAggregateFunctionReturnType(
+			AggregateFunction<IN, ?, OUT> function, TypeInformation<IN> inType, String functionName, boolean allowMissing)
+	{
+		return getAggregateFunctionType(function, 2, inType, functionName, allowMissing);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <IN, OUT> TypeInformation<OUT> getAggregateFunctionType(
+			AggregateFunction<IN, ?, ?> function, int typeParamPos, TypeInformation<IN> inType, String functionName, boolean allowMissing)
+	{
+		try {
+			validateInputType(AggregateFunction.class, function.getClass(), 0, inType);
+			return new TypeExtractor().privateCreateTypeInfo(AggregateFunction.class, function.getClass(), typeParamPos, inType, null);
+		}
+		catch (InvalidTypesException e) {
+			if (allowMissing) {
+				return (TypeInformation<OUT>) new MissingTypeInfo(functionName != null ? functionName : function.toString(), e);
+			} else {
+				throw e;
+			}
+		}
+	}
+
 	@PublicEvolving
 	public static <IN, OUT> TypeInformation<OUT> getMapPartitionReturnTypes(MapPartitionFunction<IN, OUT> mapPartitionInterface, TypeInformation<IN> inType) {
 		return getMapPartitionReturnTypes(mapPartitionInterface, inType, null, false);
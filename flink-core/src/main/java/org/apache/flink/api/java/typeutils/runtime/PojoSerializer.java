@@ -34,7 +34,9 @@ import java.util.Objects;
 
 import org.apache.flink.api.common.ExecutionConfig;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeutils.CompatibilityResult;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.TypeSerializerConfigSnapshot;
 import org.apache.flink.api.java.typeutils.TypeExtractor;
 import org.apache.flink.core.memory.DataInputView;
 import org.apache.flink.core.memory.DataOutputView;
@@ -84,7 +86,10 @@ public final class PojoSerializer<T> extends TypeSerializer<T> {
 		LinkedHashSet<Class<?>> registeredPojoTypes = executionConfig.getRegisteredPojoTypes();
 
 		for (int i = 0; i < numFields; i++) {
-			this.fields[i].setAccessible(true);
+			// the serializers that read prior versions of the class have no field for removed fields
+			if (this.fields[i] != null) {
+				this.fields[i].setAccessible(true);
+			}
 		}
 
 		cl = Thread.currentThread().getContextClassLoader();
@@ -121,8 +126,14 @@ public final class PojoSerializer<T> extends TypeSerializer<T> {
 		out.defaultWriteObject();
 		out.writeInt(fields.length);
 		for (Field field: fields) {
-			out.writeObject(field.getDeclaringClass());
-			out.writeUTF(field.getName());
+			if (field == null) {
+				// a removed field of a restored serializer
+				out.writeObject(null);
+				out.writeUTF("");
+			} else {
+				out.writeObject(field.getDeclaringClass());
+				out.writeUTF(field.getName());
+			}
 		}
 	}
 
@@ -145,10 +156,8 @@ public final class PojoSerializer<T> extends TypeSerializer<T> {
 					clazz = clazz.getSuperclass();
 				}
 			}
-			if (fields[i] == null) {
-				throw new RuntimeException("Class resolved at TaskManager is not compatible with class read during Plan setup."
-						+ " (" + fieldName + ")");
-			}
+			// a field that was removed from the class is skipped, which makes it possible to
+			// restore the serializer of a prior version of the class for migrating its data
 		}
 
 		cl = Thread.currentThread().getContextClassLoader();
@@ -230,6 +239,9 @@ public final class PojoSerializer<T> extends TypeSerializer<T> {
 
 	protected void initializeFields(T t) {
 		for (int i = 0; i < numFields; i++) {
+			if (fields[i] == null) {
+				continue;
+			}
 			try {
 				fields[i].set(t, fieldSerializers[i].createInstance());
 			} catch (IllegalAccessException e) {
@@ -257,6 +269,9 @@ public final class PojoSerializer<T> extends TypeSerializer<T> {
 			// no subclass
 			try {
 				for (int i = 0; i < numFields; i++) {
+					if (fields[i] == null) {
+						continue;
+					}
 					Object value = fields[i].get(from);
 					if (value != null) {
 						Object copy = fieldSerializers[i].copy(value);
@@ -294,6 +309,9 @@ public final class PojoSerializer<T> extends TypeSerializer<T> {
 		if (actualType == clazz) {
 			try {
 				for (int i = 0; i < numFields; i++) {
+					if (fields[i] == null) {
+						continue;
+					}
 					Object value = fields[i].get(from);
 					if (value != null) {
 						Object reuseValue = fields[i].get(reuse);
@@ -366,7 +384,7 @@ public final class PojoSerializer<T> extends TypeSerializer<T> {
 		if ((flags & NO_SUBCLASS) != 0) {
 			try {
 				for (int i = 0; i < numFields; i++) {
-					Object o = fields[i].get(value);
+					Object o = fields[i] == null ? null : fields[i].get(value);
 					if (o == null) {
 						target.writeBoolean(true); // null field handling
 					} else {
@@ -425,7 +443,12 @@ public final class PojoSerializer<T> extends TypeSerializer<T> {
 			try {
 				for (int i = 0; i < numFields; i++) {
 					boolean isNull = source.readBoolean();
-					if (isNull) {
+					if (fields[i] == null) {
+						// the value of a removed field is read and dropped
+						if (!isNull) {
+							fieldSerializers[i].deserialize(source);
+						}
+					} else if (isNull) {
 						fields[i].set(target, null);
 					} else {
 						Object field = fieldSerializers[i].deserialize(source);
@@ -491,7 +514,12 @@ public final class PojoSerializer<T> extends TypeSerializer<T> {
 			try {
 				for (int i = 0; i < numFields; i++) {
 					boolean isNull = source.readBoolean();
-					if (isNull) {
+					if (fields[i] == null) {
+						// the value of a removed field is read and dropped
+						if (!isNull) {
+							fieldSerializers[i].deserialize(source);
+						}
+					} else if (isNull) {
 						fields[i].set(reuse, null);
 					} else {
 						Object field;
@@ -563,6 +591,192 @@ public final class PojoSerializer<T> extends TypeSerializer<T> {
 		}
 	}
 	
+	// --------------------------------------------------------------------------------------------
+	// Compatibility with the data of prior versions of the class
+	// --------------------------------------------------------------------------------------------
+
+	@Override
+	public PojoSerializerConfigSnapshot snapshotConfiguration() {
+		String[] fieldNames = new String[numFields];
+		TypeSerializerConfigSnapshot[] fieldConfigSnapshots = new TypeSerializerConfigSnapshot[numFields];
+
+		for (int i = 0; i < numFields; i++) {
+			fieldNames[i] = fields[i] == null ? null : fields[i].getName();
+			fieldConfigSnapshots[i] = fieldSerializers[i].snapshotConfiguration();
+		}
+
+		return new PojoSerializerConfigSnapshot(
+			clazz.getName(), fieldNames, fieldSerializers, fieldConfigSnapshots, getRegisteredClassNames());
+	}
+
+	/**
+	 * Checks whether this serializer can read the data of a prior version of the POJO class.
+	 * The fields of the prior version are matched with the fields of this version by name:
+	 * <ul>
+	 *     <li>The data is compatible, if the fields, their order, and the registered subclasses
+	 *     did not change, and all fields are compatible.</li>
+	 *     <li>The data has to be migrated, if fields were added, removed, or reordered, or a
+	 *     field has to be migrated itself. The convert deserializer reads the fields of the prior
+	 *     version into the fields of the same name. Values of removed fields are dropped, added
+	 *     fields keep the value that the constructor of the class assigns.</li>
+	 *     <li>The data is incompatible, if the class was renamed, a field cannot be read, or the
+	 *     registered subclasses were changed other than by appending subclasses.</li>
+	 * </ul>
+	 *
+	 * <p>The values of subclasses are always read with the serializers of the subclasses of this
+	 * version, so subclasses must not change their fields.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public CompatibilityResult<T> ensureCompatibility(TypeSerializerConfigSnapshot configSnapshot) {
+		if (!(configSnapshot instanceof PojoSerializerConfigSnapshot)) {
+			return super.ensureCompatibility(configSnapshot);
+		}
+
+		PojoSerializerConfigSnapshot pojoConfigSnapshot = (PojoSerializerConfigSnapshot) configSnapshot;
+		if (!clazz.getName().equals(pojoConfigSnapshot.getClassName())) {
+			return CompatibilityResult.requiresMigration();
+		}
+
+		// the tags of the registered subclasses are their positions
+		List<String> registeredClassNames = getRegisteredClassNames();
+		List<String> priorRegisteredClassNames = pojoConfigSnapshot.getRegisteredClassNames();
+		if (registeredClassNames.size() < priorRegisteredClassNames.size() ||
+				!registeredClassNames.subList(0, priorRegisteredClassNames.size()).equals(priorRegisteredClassNames)) {
+			return CompatibilityResult.requiresMigration();
+		}
+
+		String[] priorFieldNames = pojoConfigSnapshot.getFieldNames();
+		Field[] convertFields = new Field[priorFieldNames.length];
+		TypeSerializer<?>[] convertFieldSerializers = new TypeSerializer<?>[priorFieldNames.length];
+		boolean requiresMigration = priorFieldNames.length != numFields;
+
+		for (int i = 0; i < priorFieldNames.length; i++) {
+			int fieldIndex = findField(priorFieldNames[i]);
+
+			if (fieldIndex < 0) {
+				// the field was removed, its values are read with the prior serializer
+				convertFieldSerializers[i] = pojoConfigSnapshot.getFieldSerializers()[i];
+				requiresMigration = true;
+				continue;
+			}
+
+			CompatibilityResult<Object> fieldCompatibility =
+				fieldSerializers[fieldIndex].ensureCompatibility(pojoConfigSnapshot.getFieldConfigSnapshots()[i]);
+
+			if (fieldCompatibility.isIncompatible()) {
+				return CompatibilityResult.requiresMigration();
+			} else if (fieldCompatibility.isRequiresMigration()) {
+				convertFieldSerializers[i] = fieldCompatibility.getConvertDeserializer();
+				requiresMigration = true;
+			} else {
+				convertFieldSerializers[i] = fieldSerializers[fieldIndex];
+			}
+
+			convertFields[i] = fields[fieldIndex];
+			requiresMigration |= fieldIndex != i;
+		}
+
+		if (requiresMigration) {
+			return CompatibilityResult.<T>requiresMigration(
+				new PojoSerializer<>(clazz, convertFieldSerializers, convertFields, executionConfig));
+		} else {
+			return CompatibilityResult.compatible();
+		}
+	}
+
+	private int findField(String fieldName) {
+		if (fieldName != null) {
+			for (int i = 0; i < numFields; i++) {
+				if (fields[i] != null && fields[i].getName().equals(fieldName)) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private List<String> getRegisteredClassNames() {
+		List<String> registeredClassNames = new ArrayList<>(registeredClasses.size());
+		for (Class<?> registeredClass : registeredClasses.keySet()) {
+			registeredClassNames.add(registeredClass.getName());
+		}
+		return registeredClassNames;
+	}
+
+	/**
+	 * The configuration snapshot of a {@link PojoSerializer}. It holds the names, serializers,
+	 * and configuration snapshots of the fields in the order in which they are serialized, and
+	 * the names of the registered subclasses in the order of their tags.
+	 */
+	public static final class PojoSerializerConfigSnapshot extends TypeSerializerConfigSnapshot {
+
+		private static final long serialVersionUID = 1L;
+
+		public static final int VERSION = 1;
+
+		private final String className;
+
+		/** The names of the fields, null for fields that a restored serializer did not find */
+		private final String[] fieldNames;
+
+		private final TypeSerializer<?>[] fieldSerializers;
+
+		private final TypeSerializerConfigSnapshot[] fieldConfigSnapshots;
+
+		private final List<String> registeredClassNames;
+
+		public PojoSerializerConfigSnapshot(
+				String className,
+				String[] fieldNames,
+				TypeSerializer<?>[] fieldSerializers,
+				TypeSerializerConfigSnapshot[] fieldConfigSnapshots,
+				List<String> registeredClassNames) {
+
+			this.className = checkNotNull(className);
+			this.fieldNames = checkNotNull(fieldNames);
+			this.fieldSerializers = checkNotNull(fieldSerializers);
+			this.fieldConfigSnapshots = checkNotNull(fieldConfigSnapshots);
+			this.registeredClassNames = checkNotNull(registeredClassNames);
+		}
+
+		@Override
+		public int getVersion() {
+			return VERSION;
+		}
+
+		public String getClassName() {
+			return className;
+		}
+
+		public String[] getFieldNames() {
+			return fieldNames;
+		}
+
+		public TypeSerializer<?>[] getFieldSerializers() {
+			return fieldSerializers;
+		}
+
+		public TypeSerializerConfigSnapshot[] getFieldConfigSnapshots() {
+			return fieldConfigSnapshots;
+		}
+
+		public List<String> getRegisteredClassNames() {
+			return registeredClassNames;
+		}
+
+		@Override
+		public String toString() {
+			return "PojoSerializerConfigSnapshot{" +
+				"className=" + className +
+				", fieldNames=" + Arrays.toString(fieldNames) +
+				", registeredClassNames=" + registeredClassNames +
+				'}';
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
 	@Override
 	public int hashCode() {
 		return 31 * (31 * Arrays.hashCode(fieldSerializers) + Arrays.hashCode(registeredSerializers)) +
@@ -576,6 +790,7 @@ public final class PojoSerializer<T> extends TypeSerializer<T> {
 
 			return other.canEqual(this) &&
 				clazz == other.clazz &&
+				Arrays.equals(fields, other.fields) &&
 				Arrays.equals(fieldSerializers, other.fieldSerializers) &&
 				Arrays.equals(registeredSerializers, other.registeredSerializers) &&
 				numFields == other.numFields &&
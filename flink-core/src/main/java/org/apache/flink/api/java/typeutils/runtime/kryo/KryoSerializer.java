@@ -29,7 +29,9 @@ import com.esotericsoftware.kryo.serializers.JavaSerializer;
 import org.apache.avro.generic.GenericData;
 
 import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeutils.CompatibilityResult;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.TypeSerializerConfigSnapshot;
 import org.apache.flink.api.java.typeutils.runtime.DataInputViewStream;
 import org.apache.flink.api.java.typeutils.runtime.DataOutputViewStream;
 import org.apache.flink.api.java.typeutils.runtime.NoFetchingInput;
@@ -49,8 +51,11 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -257,6 +262,148 @@ public class KryoSerializer<T> extends TypeSerializer<T> {
 		serialize(tmp, target);
 	}
 	
+	// --------------------------------------------------------------------------------------------
+
+	@Override
+	public KryoSerializerConfigSnapshot<T> snapshotConfiguration() {
+		return new KryoSerializerConfigSnapshot<>(
+			type.getName(),
+			getRegistrationNames(),
+			getSerializerClassNames(registeredTypesWithSerializers, registeredTypesWithSerializerClasses),
+			getSerializerClassNames(defaultSerializers, defaultSerializerClasses),
+			duplicate());
+	}
+
+	/**
+	 * Kryo writes the IDs of registered classes instead of their names. The data is compatible,
+	 * if the classes were registered in the same order and with the same serializers. Otherwise,
+	 * the data is migrated by reading it with the prior serializer.
+	 */
+	@Override
+	public CompatibilityResult<T> ensureCompatibility(TypeSerializerConfigSnapshot configSnapshot) {
+		if (!(configSnapshot instanceof KryoSerializerConfigSnapshot)) {
+			return super.ensureCompatibility(configSnapshot);
+		}
+
+		@SuppressWarnings("unchecked")
+		KryoSerializerConfigSnapshot<T> kryoConfigSnapshot = (KryoSerializerConfigSnapshot<T>) configSnapshot;
+
+		if (!type.getName().equals(kryoConfigSnapshot.getTypeName())) {
+			return CompatibilityResult.requiresMigration();
+		} else if (getRegistrationNames().equals(kryoConfigSnapshot.getRegistrationNames()) &&
+				getSerializerClassNames(registeredTypesWithSerializers, registeredTypesWithSerializerClasses)
+					.equals(kryoConfigSnapshot.getRegisteredSerializerClassNames()) &&
+				getSerializerClassNames(defaultSerializers, defaultSerializerClasses)
+					.equals(kryoConfigSnapshot.getDefaultSerializerClassNames())) {
+			return CompatibilityResult.compatible();
+		} else {
+			return CompatibilityResult.requiresMigration(kryoConfigSnapshot.getSerializer());
+		}
+	}
+
+	/**
+	 * Returns the names of the registered classes in the order of their registration IDs, in
+	 * the same order as {@link #checkKryoInitialized()} registers them.
+	 */
+	private List<String> getRegistrationNames() {
+		LinkedHashSet<String> registrationNames = new LinkedHashSet<>();
+		registrationNames.add(type.getName());
+		for (Class<?> registeredType : registeredTypes) {
+			registrationNames.add(registeredType.getName());
+		}
+		for (Class<?> registeredType : registeredTypesWithSerializerClasses.keySet()) {
+			registrationNames.add(registeredType.getName());
+		}
+		for (Class<?> registeredType : registeredTypesWithSerializers.keySet()) {
+			registrationNames.add(registeredType.getName());
+		}
+		registrationNames.add(GenericData.Array.class.getName());
+		return new ArrayList<>(registrationNames);
+	}
+
+	private static Map<String, String> getSerializerClassNames(
+			Map<Class<?>, ExecutionConfig.SerializableSerializer<?>> serializers,
+			Map<Class<?>, Class<? extends Serializer<?>>> serializerClasses) {
+
+		Map<String, String> serializerClassNames = new HashMap<>();
+		for (Map.Entry<Class<?>, Class<? extends Serializer<?>>> entry : serializerClasses.entrySet()) {
+			serializerClassNames.put(entry.getKey().getName(), entry.getValue().getName());
+		}
+		for (Map.Entry<Class<?>, ExecutionConfig.SerializableSerializer<?>> entry : serializers.entrySet()) {
+			serializerClassNames.put(entry.getKey().getName(), entry.getValue().getSerializer().getClass().getName());
+		}
+		return serializerClassNames;
+	}
+
+	/**
+	 * The configuration snapshot of a {@link KryoSerializer}. It holds the names of the registered
+	 * classes in the order of their IDs, the classes of their serializers, and the serializer
+	 * itself, which reads the data if the registrations changed.
+	 */
+	public static final class KryoSerializerConfigSnapshot<T> extends TypeSerializerConfigSnapshot {
+
+		private static final long serialVersionUID = 1L;
+
+		public static final int VERSION = 1;
+
+		private final String typeName;
+
+		private final List<String> registrationNames;
+
+		private final Map<String, String> registeredSerializerClassNames;
+
+		private final Map<String, String> defaultSerializerClassNames;
+
+		private final KryoSerializer<T> serializer;
+
+		public KryoSerializerConfigSnapshot(
+				String typeName,
+				List<String> registrationNames,
+				Map<String, String> registeredSerializerClassNames,
+				Map<String, String> defaultSerializerClassNames,
+				KryoSerializer<T> serializer) {
+
+			this.typeName = checkNotNull(typeName);
+			this.registrationNames = checkNotNull(registrationNames);
+			this.registeredSerializerClassNames = checkNotNull(registeredSerializerClassNames);
+			this.defaultSerializerClassNames = checkNotNull(defaultSerializerClassNames);
+			this.serializer = checkNotNull(serializer);
+		}
+
+		@Override
+		public int getVersion() {
+			return VERSION;
+		}
+
+		public String getTypeName() {
+			return typeName;
+		}
+
+		public List<String> getRegistrationNames() {
+			return registrationNames;
+		}
+
+		public Map<String, String> getRegisteredSerializerClassNames() {
+			return registeredSerializerClassNames;
+		}
+
+		public Map<String, String> getDefaultSerializerClassNames() {
+			return defaultSerializerClassNames;
+		}
+
+		public KryoSerializer<T> getSerializer() {
+			return serializer;
+		}
+
+		@Override
+		public String toString() {
+			return "KryoSerializerConfigSnapshot{" +
+				"typeName=" + typeName +
+				", registrationNames=" + registrationNames +
+				'}';
+		}
+	}
+
 	// --------------------------------------------------------------------------------------------
 	
 	@Override
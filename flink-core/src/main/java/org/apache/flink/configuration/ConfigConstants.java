@@ -205,6 +205,12 @@ public final class ConfigConstants {
 	 */
 	public static final String TASK_MANAGER_NETWORK_DEFAULT_IO_MODE = "taskmanager.network.defaultIOMode";
 
+	/**
+	 * Flag indicating whether the data buffers of blocking intermediate results are compressed
+	 * before they are spilled or sent over the network.
+	 */
+	public static final String TASK_MANAGER_NETWORK_COMPRESSION_ENABLED = "taskmanager.network.compression.enabled";
+
 	/**
 	 * The config parameter defining the number of task slots of a task manager.
 	 */
@@ -231,6 +237,31 @@ public final class ConfigConstants {
 	@PublicEvolving
 	public static final String TASK_CANCELLATION_INTERVAL_MILLIS = "task.cancellation-interval";
 
+	/**
+	 * Flag indicating whether the TaskManager starts a server for queries of the queryable states.
+	 */
+	public static final String QUERYABLE_STATE_SERVER_ENABLE = "query.server.enable";
+
+	/**
+	 * The port of the server for queries of the queryable states, 0 for a random port.
+	 */
+	public static final String QUERYABLE_STATE_SERVER_PORT = "query.server.port";
+
+	/**
+	 * The number of network threads of the server for queries, 0 for the number of slots.
+	 */
+	public static final String QUERYABLE_STATE_SERVER_NETWORK_THREADS = "query.server.network-threads";
+
+	/**
+	 * The number of threads of the server, which read the queried states, 0 for the number of slots.
+	 */
+	public static final String QUERYABLE_STATE_SERVER_QUERY_THREADS = "query.server.query-threads";
+
+	/**
+	 * The number of network threads of the client for queries, 0 for the number of cores.
+	 */
+	public static final String QUERYABLE_STATE_CLIENT_NETWORK_THREADS = "query.client.network-threads";
+
 	// --------------------------- Runtime Algorithms -------------------------------
 	
 	/**
@@ -716,6 +747,11 @@ public final class ConfigConstants {
 	 */
 	public static final String DEFAULT_TASK_MANAGER_NETWORK_DEFAULT_IO_MODE = "sync";
 
+	/**
+	 * The default setting for the compression of blocking intermediate results.
+	 */
+	public static final boolean DEFAULT_TASK_MANAGER_NETWORK_COMPRESSION_ENABLED = false;
+
 	/**
 	 * Flag indicating whether to start a thread, which repeatedly logs the memory usage of the JVM.
 	 */
@@ -741,6 +777,31 @@ public final class ConfigConstants {
 	 * */
 	public static final long DEFAULT_TASK_CANCELLATION_INTERVAL_MILLIS = 30000;
 
+	/**
+	 * The default setting for the server for queries of the queryable states.
+	 */
+	public static final boolean DEFAULT_QUERYABLE_STATE_SERVER_ENABLE = true;
+
+	/**
+	 * The default port of the server for queries, which is a random port.
+	 */
+	public static final int DEFAULT_QUERYABLE_STATE_SERVER_PORT = 0;
+
+	/**
+	 * The default number of network threads of the server for queries.
+	 */
+	public static final int DEFAULT_QUERYABLE_STATE_SERVER_NETWORK_THREADS = 0;
+
+	/**
+	 * The default number of query threads of the server for queries.
+	 */
+	public static final int DEFAULT_QUERYABLE_STATE_SERVER_QUERY_THREADS = 0;
+
+	/**
+	 * The default number of network threads of the client for queries.
+	 */
+	public static final int DEFAULT_QUERYABLE_STATE_CLIENT_NETWORK_THREADS = 0;
+
 	// ------------------------ Runtime Algorithms ------------------------
 	
 	/**
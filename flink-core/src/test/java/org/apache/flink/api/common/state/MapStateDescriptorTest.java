@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.api.common.state;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.TaskInfo;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.MapSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.api.java.typeutils.runtime.kryo.KryoSerializer;
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.core.testutils.CommonTestUtils;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MapStateDescriptorTest {
+
+	@Test
+	public void testMapStateDescriptorEagerSerializer() throws Exception {
+
+		TypeSerializer<Integer> keySerializer = IntSerializer.INSTANCE;
+		TypeSerializer<String> valueSerializer = new KryoSerializer<>(String.class, new ExecutionConfig());
+
+		MapStateDescriptor<Integer, String> descr =
+				new MapStateDescriptor<>("testName", keySerializer, valueSerializer);
+
+		assertEquals("testName", descr.getName());
+		assertNotNull(descr.getSerializer());
+		assertTrue(descr.getSerializer() instanceof MapSerializer);
+		assertEquals(keySerializer, descr.getKeySerializer());
+		assertEquals(valueSerializer, descr.getValueSerializer());
+
+		MapStateDescriptor<Integer, String> copy = CommonTestUtils.createCopySerializable(descr);
+
+		assertEquals("testName", copy.getName());
+		assertNotNull(copy.getSerializer());
+		assertEquals(descr.getSerializer(), copy.getSerializer());
+		assertEquals(keySerializer, copy.getKeySerializer());
+		assertEquals(valueSerializer, copy.getValueSerializer());
+	}
+
+	@Test
+	public void testMapStateDescriptorLazySerializer() throws Exception {
+		// some different registered value
+		ExecutionConfig cfg = new ExecutionConfig();
+		cfg.registerKryoType(TaskInfo.class);
+
+		MapStateDescriptor<Path, String> descr =
+				new MapStateDescriptor<>("testName", Path.class, String.class);
+
+		try {
+			descr.getSerializer();
+			fail("should cause an exception");
+		} catch (IllegalStateException ignored) {}
+
+		descr.initializeSerializerUnlessSet(cfg);
+
+		TypeSerializer<Map<Path, String>> serializer = descr.getSerializer();
+		assertTrue(serializer instanceof MapSerializer);
+		assertTrue(descr.getKeySerializer() instanceof KryoSerializer);
+		assertEquals(StringSerializer.INSTANCE, descr.getValueSerializer());
+
+		assertTrue(((KryoSerializer<?>) descr.getKeySerializer()).getKryo().getRegistration(TaskInfo.class).getId() > 0);
+	}
+
+	@Test
+	public void testMapStateDescriptorAutoSerializer() throws Exception {
+
+		MapStateDescriptor<String, Integer> descr =
+				new MapStateDescriptor<>("testName", String.class, Integer.class);
+
+		MapStateDescriptor<String, Integer> copy = CommonTestUtils.createCopySerializable(descr);
+
+		assertEquals("testName", copy.getName());
+		assertNotNull(copy.getSerializer());
+		assertEquals(StringSerializer.INSTANCE, copy.getKeySerializer());
+		assertEquals(IntSerializer.INSTANCE, copy.getValueSerializer());
+	}
+}
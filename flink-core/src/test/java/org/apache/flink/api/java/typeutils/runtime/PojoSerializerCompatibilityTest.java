@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.api.java.typeutils.runtime;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.CompatibilityResult;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.TypeSerializerConfigSnapshot;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.api.java.typeutils.TypeExtractor;
+import org.apache.flink.api.java.typeutils.runtime.PojoSerializer.PojoSerializerConfigSnapshot;
+import org.apache.flink.api.java.typeutils.runtime.kryo.KryoSerializer;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.util.InstantiationUtil;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the compatibility checks of the {@link PojoSerializer} and the {@link KryoSerializer}
+ * with the data of prior versions of the serialized classes.
+ */
+public class PojoSerializerCompatibilityTest {
+
+	@Test
+	public void testCompatibleWithSameClass() throws Exception {
+		PojoSerializer<TestPojo> serializer = createSerializer();
+
+		TypeSerializerConfigSnapshot configSnapshot = InstantiationUtil.clone(serializer.snapshotConfiguration());
+
+		assertFalse(serializer.ensureCompatibility(configSnapshot).isRequiresMigration());
+	}
+
+	/**
+	 * Tests that the data of a prior version without the field "count" and with a different field
+	 * order is read into the fields of the same name.
+	 */
+	@Test
+	public void testMigrateAddedAndReorderedFields() throws Exception {
+		PojoSerializer<TestPojo> priorSerializer = new PojoSerializer<>(
+			TestPojo.class,
+			new TypeSerializer<?>[] { StringSerializer.INSTANCE, IntSerializer.INSTANCE },
+			new Field[] { TestPojo.class.getField("name"), TestPojo.class.getField("id") },
+			new ExecutionConfig());
+
+		byte[] priorData = serialize(priorSerializer, new TestPojo(42, "hello", 0));
+
+		CompatibilityResult<TestPojo> compatibility =
+			createSerializer().ensureCompatibility(InstantiationUtil.clone(priorSerializer.snapshotConfiguration()));
+
+		assertTrue(compatibility.isRequiresMigration());
+		assertNotNull(compatibility.getConvertDeserializer());
+
+		TestPojo migrated = deserialize(compatibility.getConvertDeserializer(), priorData);
+		assertEquals(new TestPojo(42, "hello", 7), migrated);
+	}
+
+	/**
+	 * Tests that the values of a field that the class does not have any more are dropped.
+	 */
+	@Test
+	public void testMigrateRemovedField() throws Exception {
+		PojoSerializer<PriorTestPojo> priorSerializer = createSerializer(PriorTestPojo.class);
+
+		PriorTestPojo prior = new PriorTestPojo();
+		prior.id = 42;
+		prior.name = "hello";
+		prior.removed = "removed";
+		byte[] priorData = serialize(priorSerializer, prior);
+
+		// the prior version of the class had the same name
+		PojoSerializerConfigSnapshot priorConfigSnapshot = priorSerializer.snapshotConfiguration();
+		PojoSerializerConfigSnapshot configSnapshot = new PojoSerializerConfigSnapshot(
+			TestPojo.class.getName(),
+			priorConfigSnapshot.getFieldNames(),
+			priorConfigSnapshot.getFieldSerializers(),
+			priorConfigSnapshot.getFieldConfigSnapshots(),
+			priorConfigSnapshot.getRegisteredClassNames());
+
+		CompatibilityResult<TestPojo> compatibility = createSerializer().ensureCompatibility(InstantiationUtil.clone(configSnapshot));
+
+		assertTrue(compatibility.isRequiresMigration());
+		assertNotNull(compatibility.getConvertDeserializer());
+
+		TestPojo migrated = deserialize(compatibility.getConvertDeserializer(), priorData);
+		assertEquals(new TestPojo(42, "hello", 7), migrated);
+	}
+
+	/**
+	 * Tests that a field whose type changed makes the data incompatible.
+	 */
+	@Test
+	public void testIncompatibleFieldType() throws Exception {
+		PojoSerializerConfigSnapshot configSnapshot = createSerializer().snapshotConfiguration();
+
+		TypeSerializerConfigSnapshot[] fieldConfigSnapshots = configSnapshot.getFieldConfigSnapshots().clone();
+		for (int i = 0; i < fieldConfigSnapshots.length; i++) {
+			if (configSnapshot.getFieldNames()[i].equals("id")) {
+				fieldConfigSnapshots[i] = StringSerializer.INSTANCE.snapshotConfiguration();
+			}
+		}
+
+		CompatibilityResult<TestPojo> compatibility = createSerializer().ensureCompatibility(new PojoSerializerConfigSnapshot(
+			TestPojo.class.getName(),
+			configSnapshot.getFieldNames(),
+			configSnapshot.getFieldSerializers(),
+			fieldConfigSnapshots,
+			configSnapshot.getRegisteredClassNames()));
+
+		assertTrue(compatibility.isIncompatible());
+	}
+
+	@Test
+	public void testIncompatibleClass() throws Exception {
+		PojoSerializer<PriorTestPojo> priorSerializer = createSerializer(PriorTestPojo.class);
+
+		assertTrue(createSerializer().ensureCompatibility(priorSerializer.snapshotConfiguration()).isIncompatible());
+	}
+
+	/**
+	 * Tests that a restored state descriptor keeps the configuration snapshot of the serializer
+	 * that wrote the state, also if it is written again.
+	 */
+	@Test
+	public void testStateDescriptorKeepsConfigSnapshot() throws Exception {
+		ValueStateDescriptor<TestPojo> descriptor = new ValueStateDescriptor<>("test", TestPojo.class, null);
+		descriptor.initializeSerializerUnlessSet(new ExecutionConfig());
+		assertNull(descriptor.getSerializerConfigSnapshot());
+
+		ValueStateDescriptor<TestPojo> restored = InstantiationUtil.clone(InstantiationUtil.clone(descriptor));
+
+		assertTrue(restored.getSerializerConfigSnapshot() instanceof PojoSerializerConfigSnapshot);
+		assertFalse(descriptor.getSerializer().ensureCompatibility(restored.getSerializerConfigSnapshot()).isRequiresMigration());
+	}
+
+	/**
+	 * Tests that the data of a Kryo serializer with other registrations is read with the prior
+	 * serializer.
+	 */
+	@Test
+	public void testKryoMigrateChangedRegistrations() throws Exception {
+		ExecutionConfig priorConfig = new ExecutionConfig();
+		priorConfig.registerKryoType(PriorTestPojo.class);
+		KryoSerializer<Object> priorSerializer = new KryoSerializer<>(Object.class, priorConfig);
+
+		byte[] priorData = serialize(priorSerializer, new TestPojo(1, "one", 1));
+
+		ExecutionConfig config = new ExecutionConfig();
+		config.registerKryoType(TestPojo.class);
+		KryoSerializer<Object> serializer = new KryoSerializer<>(Object.class, config);
+
+		assertFalse(serializer.ensureCompatibility(InstantiationUtil.clone(serializer.snapshotConfiguration())).isRequiresMigration());
+
+		CompatibilityResult<Object> compatibility = serializer.ensureCompatibility(InstantiationUtil.clone(priorSerializer.snapshotConfiguration()));
+		assertTrue(compatibility.isRequiresMigration());
+		assertNotNull(compatibility.getConvertDeserializer());
+
+		assertEquals(new TestPojo(1, "one", 1), deserialize(compatibility.getConvertDeserializer(), priorData));
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static PojoSerializer<TestPojo> createSerializer() {
+		return createSerializer(TestPojo.class);
+	}
+
+	private static <T> PojoSerializer<T> createSerializer(Class<T> clazz) {
+		TypeSerializer<T> serializer = TypeExtractor.getForClass(clazz).createSerializer(new ExecutionConfig());
+		assertTrue(serializer instanceof PojoSerializer);
+		return (PojoSerializer<T>) serializer;
+	}
+
+	private static <T> byte[] serialize(TypeSerializer<T> serializer, T value) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		serializer.serialize(value, new DataOutputViewStreamWrapper(baos));
+		return baos.toByteArray();
+	}
+
+	private static <T> T deserialize(TypeSerializer<T> serializer, byte[] data) throws IOException {
+		return serializer.deserialize(new DataInputViewStreamWrapper(new ByteArrayInputStream(data)));
+	}
+
+	// ------------------------------------------------------------------------
+
+	public static class TestPojo {
+
+		public int id;
+
+		public String name;
+
+		public int count = 7;
+
+		public TestPojo() {}
+
+		public TestPojo(int id, String name, int count) {
+			this.id = id;
+			this.name = name;
+			this.count = count;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof TestPojo)) {
+				return false;
+			}
+			TestPojo other = (TestPojo) obj;
+			return id == other.id && count == other.count &&
+				(name == null ? other.name == null : name.equals(other.name));
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * id + count;
+		}
+
+		@Override
+		public String toString() {
+			return "TestPojo{" + id + ", " + name + ", " + count + '}';
+		}
+	}
+
+	public static class PriorTestPojo {
+
+		public int id;
+
+		public String name;
+
+		public String removed;
+	}
+}
@@ -717,7 +717,8 @@ public class JobGraphGenerator implements Visitor<PlanNode> {
 				sourceVertexConfig = new TaskConfig(sourceVertex.getConfiguration());
 			}
 			DistributionPattern pattern = connectJobVertices(
-				inConn, inputIndex, sourceVertex, sourceVertexConfig, targetVertex, targetVertexConfig, isBroadcast);
+				inConn, inputIndex, sourceVertex, sourceVertexConfig, targetVertex, targetVertexConfig, isBroadcast,
+				isCachedResult(inConn));
 			
 			// accounting on channels and senders
 			numChannelsTotal++;
@@ -789,6 +790,7 @@ public class JobGraphGenerator implements Visitor<PlanNode> {
 					!(pred instanceof BulkPartialSolutionPlanNode) &&	// partial solution merges anyways
 					!(pred instanceof WorksetPlanNode) &&	// workset merges anyways
 					!(pred instanceof IterationPlanNode) && // cannot chain with iteration heads currently
+					!pred.getProgramOperator().isCached() &&	// cached results are produced as partitions
 					inConn.getShipStrategy() == ShipStrategyType.FORWARD &&
 					inConn.getLocalStrategy() == LocalStrategy.NONE &&
 					pred.getOutgoingChannels().size() == 1 &&
@@ -1066,6 +1068,15 @@ public class JobGraphGenerator implements Visitor<PlanNode> {
 	// Connecting Vertices
 	// ------------------------------------------------------------------------
 
+	/**
+	 * Checks whether the channel carries a cached result. The inputs of a cached union, which is
+	 * merged into its target, are cached as well.
+	 */
+	private static boolean isCachedResult(Channel channel) {
+		return channel.getSource().getProgramOperator().isCached() ||
+				(channel.getTarget() instanceof NAryUnionPlanNode && channel.getTarget().getProgramOperator().isCached());
+	}
+
 	/**
 	 * NOTE: The channel for global and local strategies are different if we connect a union. The global strategy
 	 * channel is then the channel into the union node, the local strategy channel the one from the union to the
@@ -1075,7 +1086,7 @@ public class JobGraphGenerator implements Visitor<PlanNode> {
 	 */
 	private DistributionPattern connectJobVertices(Channel channel, int inputNumber,
 			final JobVertex sourceVertex, final TaskConfig sourceConfig,
-			final JobVertex targetVertex, final TaskConfig targetConfig, boolean isBroadcast)
+			final JobVertex targetVertex, final TaskConfig targetConfig, boolean isBroadcast, boolean isCached)
 	throws CompilerException
 	{
 		// ------------ connect the vertices to the job graph --------------
@@ -1097,7 +1108,7 @@ public class JobGraphGenerator implements Visitor<PlanNode> {
 				throw new RuntimeException("Unknown runtime ship strategy: " + channel.getShipStrategy());
 		}
 
-		final ResultPartitionType resultType;
+		ResultPartitionType resultType;
 
 		switch (channel.getDataExchangeMode()) {
 
@@ -1123,6 +1134,14 @@ public class JobGraphGenerator implements Visitor<PlanNode> {
 
 		}
 
+		if (isCached) {
+			if (channel.getSource().isOnDynamicPath()) {
+				throw new CompilerException("Data sets inside an iteration cannot be cached.");
+			}
+			// the task managers keep cached results after the job has finished
+			resultType = ResultPartitionType.BLOCKING_PERSISTENT;
+		}
+
 		JobEdge edge = targetVertex.connectNewDataSetAsInput(sourceVertex, distributionPattern, resultType);
 
 		// -------------- configure the source task's ship strategy strategies in task config --------------
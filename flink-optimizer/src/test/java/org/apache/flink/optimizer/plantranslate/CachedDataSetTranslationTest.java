@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.optimizer.plantranslate;
+
+import org.apache.flink.api.common.Plan;
+import org.apache.flink.api.common.operators.Operator;
+import org.apache.flink.api.common.operators.SingleInputOperator;
+import org.apache.flink.api.common.operators.base.BulkIterationBase;
+import org.apache.flink.api.java.DataSet;
+import org.apache.flink.api.java.ExecutionEnvironment;
+import org.apache.flink.api.java.io.DiscardingOutputFormat;
+import org.apache.flink.api.java.operators.IterativeDataSet;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.optimizer.CompilerException;
+import org.apache.flink.optimizer.Optimizer;
+import org.apache.flink.optimizer.plan.OptimizedPlan;
+import org.apache.flink.optimizer.testfunctions.IdentityMapper;
+import org.apache.flink.runtime.io.network.partition.ResultPartitionType;
+import org.apache.flink.runtime.jobgraph.IntermediateDataSet;
+import org.apache.flink.runtime.jobgraph.JobGraph;
+import org.apache.flink.runtime.jobgraph.JobVertex;
+import org.apache.flink.util.Visitor;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+public class CachedDataSetTranslationTest {
+
+	/*
+	 * Tests that a cached data set produces persistent results and is not chained to its consumer
+	 */
+	@Test
+	public void testCachedDataSetProducesPersistentResult() {
+		ExecutionEnvironment env = ExecutionEnvironment.getExecutionEnvironment();
+		env.setParallelism(4);
+
+		DataSet<Long> cached = env.generateSequence(1, 10)
+				.map(new IdentityMapper<Long>()).name("cached");
+
+		cached.map(new IdentityMapper<Long>()).name("consumer")
+				.output(new DiscardingOutputFormat<Long>());
+		cached.output(new DiscardingOutputFormat<Long>());
+
+		JobGraph jobGraph = compileJobGraph(createPlan(env, "cached"));
+
+		JobVertex cachedVertex = null;
+		JobVertex consumerVertex = null;
+		for (JobVertex vertex : jobGraph.getVertices()) {
+			if (vertex.getName().contains("cached")) {
+				cachedVertex = vertex;
+			}
+			if (vertex.getName().contains("consumer")) {
+				consumerVertex = vertex;
+			}
+		}
+
+		assertNotNull(cachedVertex);
+		assertNotNull(consumerVertex);
+		assertNotSame(cachedVertex, consumerVertex);
+
+		assertEquals(2, cachedVertex.getProducedDataSets().size());
+		for (IntermediateDataSet result : cachedVertex.getProducedDataSets()) {
+			assertEquals(ResultPartitionType.BLOCKING_PERSISTENT, result.getResultType());
+		}
+
+		// the results of the consumer are not cached
+		for (IntermediateDataSet result : consumerVertex.getProducedDataSets()) {
+			assertEquals(ResultPartitionType.PIPELINED, result.getResultType());
+		}
+	}
+
+	/*
+	 * Tests that the inputs of a cached union produce persistent results
+	 */
+	@Test
+	public void testCachedUnion() {
+		ExecutionEnvironment env = ExecutionEnvironment.getExecutionEnvironment();
+		env.setParallelism(4);
+
+		DataSet<Long> input1 = env.generateSequence(1, 10).map(new IdentityMapper<Long>()).name("input");
+		DataSet<Long> input2 = env.generateSequence(11, 20).map(new IdentityMapper<Long>()).name("input");
+
+		input1.union(input2)
+				.map(new IdentityMapper<Long>())
+				.output(new DiscardingOutputFormat<Long>());
+
+		// the union has no name of its own, it is the input of the mapper before the sink
+		Plan plan = env.createProgramPlan();
+		Operator<?> mapper = plan.getDataSinks().iterator().next().getInput();
+		((SingleInputOperator<?, ?, ?>) mapper).getInput().setCached(true);
+
+		JobGraph jobGraph = compileJobGraph(plan);
+
+		int numInputs = 0;
+		for (JobVertex vertex : jobGraph.getVertices()) {
+			if (vertex.getName().contains("input")) {
+				numInputs++;
+				for (IntermediateDataSet result : vertex.getProducedDataSets()) {
+					assertEquals(ResultPartitionType.BLOCKING_PERSISTENT, result.getResultType());
+				}
+			}
+		}
+		assertEquals(2, numInputs);
+	}
+
+	/*
+	 * Tests that data sets inside an iteration cannot be cached
+	 */
+	@Test
+	public void testCachedDataSetInIteration() {
+		ExecutionEnvironment env = ExecutionEnvironment.getExecutionEnvironment();
+
+		IterativeDataSet<Long> iteration = env.generateSequence(1, 10).iterate(10);
+
+		DataSet<Long> step = iteration
+				.map(new IdentityMapper<Long>())
+				.map(new IdentityMapper<Long>()).name("cached")
+				.map(new IdentityMapper<Long>());
+
+		iteration.closeWith(step).output(new DiscardingOutputFormat<Long>());
+
+		try {
+			compileJobGraph(createPlan(env, "cached"));
+			fail("Caching a data set inside an iteration should fail.");
+		}
+		catch (CompilerException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Creates the plan of the program, with the results of the operators with the given name cached.
+	 */
+	private static Plan createPlan(ExecutionEnvironment env, final String cachedName) {
+		Plan plan = env.createProgramPlan();
+		plan.accept(new Visitor<Operator<?>>() {
+			@Override
+			public boolean preVisit(Operator<?> visitable) {
+				if (cachedName.equals(visitable.getName())) {
+					visitable.setCached(true);
+				}
+				if (visitable instanceof BulkIterationBase) {
+					((BulkIterationBase<?>) visitable).getNextPartialSolution().accept(this);
+				}
+				return true;
+			}
+
+			@Override
+			public void postVisit(Operator<?> visitable) {}
+		});
+		return plan;
+	}
+
+	private static JobGraph compileJobGraph(Plan plan) {
+		OptimizedPlan oPlan = new Optimizer(new Configuration()).compile(plan);
+		return new JobGraphGenerator().compileJobGraph(oPlan);
+	}
+}
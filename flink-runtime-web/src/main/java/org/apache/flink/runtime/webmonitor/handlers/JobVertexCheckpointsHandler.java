@@ -19,6 +19,7 @@
 package org.apache.flink.runtime.webmonitor.handlers;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
 import org.apache.flink.runtime.checkpoint.stats.CheckpointStatsTracker;
 import org.apache.flink.runtime.checkpoint.stats.OperatorCheckpointStats;
 import org.apache.flink.runtime.executiongraph.ExecutionJobVertex;
@@ -64,6 +65,15 @@ public class JobVertexCheckpointsHandler extends AbstractJobVertexRequestHandler
 					gen.writeNumberField("subtask", i);
 					gen.writeNumberField("duration", stats.getSubTaskDuration(i));
 					gen.writeNumberField("size", stats.getSubTaskStateSize(i));
+
+					CheckpointMetrics metrics = stats.getSubTaskMetrics(i);
+					if (metrics != null) {
+						gen.writeNumberField("sync-duration", metrics.getSyncDurationMillis());
+						gen.writeNumberField("async-duration", metrics.getAsyncDurationMillis());
+						gen.writeNumberField("alignment-duration", metrics.getAlignmentDurationNanos() / 1_000_000);
+						gen.writeNumberField("alignment-buffered", metrics.getBytesBufferedInAlignment());
+						gen.writeNumberField("slowest-channel", metrics.getSlowestChannel());
+					}
 					gen.writeEndObject();
 				}
 				gen.writeEndArray();
@@ -37,6 +37,10 @@ import org.apache.flink.runtime.messages.checkpoint.AcknowledgeCheckpoint;
 import org.apache.flink.runtime.messages.checkpoint.DeclineCheckpoint;
 import org.apache.flink.runtime.messages.checkpoint.NotifyCheckpointComplete;
 import org.apache.flink.runtime.messages.checkpoint.TriggerCheckpoint;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.SharedStateHandle;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.runtime.state.StateHandle;
 import org.apache.flink.util.SerializedValue;
 import org.slf4j.Logger;
@@ -44,13 +48,12 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.UUID;
@@ -115,7 +118,8 @@ public class CheckpointCoordinator {
 	private final long checkpointTimeout;
 
 	/** The min time(in ms) to delay after a checkpoint could be triggered. Allows to
-	 * enforce minimum processing time between checkpoint attempts */
+	 * enforce minimum processing time between checkpoint attempts. The pause counts from
+	 * the trigger of the latest checkpoint, and again from the completion of the latest checkpoint */
 	private final long minPauseBetweenCheckpoints;
 
 	/** The maximum number of checkpoints that may be in progress at the same time */
@@ -132,7 +136,13 @@ public class CheckpointCoordinator {
 
 	private ScheduledTrigger currentPeriodicTrigger;
 
-	private long lastTriggeredCheckpoint;
+	/** The time (from {@link System#nanoTime()}) at which the latest checkpoint was triggered
+	 * or completed, whichever happened later. Only valid if a checkpoint was triggered before */
+	private long minPauseStartNanos;
+
+	/** Flag whether any checkpoint was triggered yet. Non-volatile, because only accessed in
+	 * synchronized scope */
+	private boolean checkpointTriggeredBefore;
 
 	/** Flag whether a triggered checkpoint should immediately schedule the next checkpoint.
 	 * Non-volatile, because only accessed in synchronized scope */
@@ -151,7 +161,9 @@ public class CheckpointCoordinator {
 	/** Helper for tracking checkpoint statistics  */
 	private final CheckpointStatsTracker statsTracker;
 
-	protected final int numberKeyGroups;
+	/** Registry counting the references of the checkpoints to shared state, e.g. the files
+	 * of incremental snapshots */
+	private final SharedStateRegistry sharedStateRegistry;
 
 	// --------------------------------------------------------------------------------------------
 
@@ -159,7 +171,6 @@ public class CheckpointCoordinator {
 			JobID job,
 			long baseInterval,
 			long checkpointTimeout,
-			int numberKeyGroups,
 			ExecutionVertex[] tasksToTrigger,
 			ExecutionVertex[] tasksToWaitFor,
 			ExecutionVertex[] tasksToCommitTo,
@@ -168,7 +179,7 @@ public class CheckpointCoordinator {
 			CompletedCheckpointStore completedCheckpointStore,
 			RecoveryMode recoveryMode) throws Exception {
 
-		this(job, baseInterval, checkpointTimeout, 0L, Integer.MAX_VALUE, numberKeyGroups,
+		this(job, baseInterval, checkpointTimeout, 0L, Integer.MAX_VALUE,
 				tasksToTrigger, tasksToWaitFor, tasksToCommitTo,
 				userClassLoader, checkpointIDCounter, completedCheckpointStore, recoveryMode,
 				new DisabledCheckpointStatsTracker());
@@ -180,7 +191,6 @@ public class CheckpointCoordinator {
 			long checkpointTimeout,
 			long minPauseBetweenCheckpoints,
 			int maxConcurrentCheckpointAttempts,
-			int numberKeyGroups,
 			ExecutionVertex[] tasksToTrigger,
 			ExecutionVertex[] tasksToWaitFor,
 			ExecutionVertex[] tasksToCommitTo,
@@ -190,6 +200,28 @@ public class CheckpointCoordinator {
 			RecoveryMode recoveryMode,
 			CheckpointStatsTracker statsTracker) throws Exception {
 
+		this(job, baseInterval, checkpointTimeout, minPauseBetweenCheckpoints, maxConcurrentCheckpointAttempts,
+				tasksToTrigger, tasksToWaitFor, tasksToCommitTo,
+				userClassLoader, checkpointIDCounter, completedCheckpointStore, recoveryMode,
+				statsTracker, new SharedStateRegistry());
+	}
+
+	public CheckpointCoordinator(
+			JobID job,
+			long baseInterval,
+			long checkpointTimeout,
+			long minPauseBetweenCheckpoints,
+			int maxConcurrentCheckpointAttempts,
+			ExecutionVertex[] tasksToTrigger,
+			ExecutionVertex[] tasksToWaitFor,
+			ExecutionVertex[] tasksToCommitTo,
+			ClassLoader userClassLoader,
+			CheckpointIDCounter checkpointIDCounter,
+			CompletedCheckpointStore completedCheckpointStore,
+			RecoveryMode recoveryMode,
+			CheckpointStatsTracker statsTracker,
+			SharedStateRegistry sharedStateRegistry) throws Exception {
+
 		// Sanity check
 		checkArgument(baseInterval > 0, "Checkpoint timeout must be larger than zero");
 		checkArgument(checkpointTimeout >= 1, "Checkpoint timeout must be larger than zero");
@@ -216,6 +248,8 @@ public class CheckpointCoordinator {
 
 		this.statsTracker = checkNotNull(statsTracker);
 
+		this.sharedStateRegistry = checkNotNull(sharedStateRegistry);
+
 		if (recoveryMode == RecoveryMode.STANDALONE) {
 			// Add shutdown hook to clean up state handles when no checkpoint recovery is
 			// possible. In case of another configured recovery mode, the checkpoints need to be
@@ -247,8 +281,6 @@ public class CheckpointCoordinator {
 		else {
 			this.shutdownHook = null;
 		}
-
-		this.numberKeyGroups = numberKeyGroups;
 	}
 
 	// --------------------------------------------------------------------------------------------
@@ -384,14 +416,17 @@ public class CheckpointCoordinator {
 				return false;
 			}
 
-			//make sure the minimum interval between checkpoints has passed
-			if (lastTriggeredCheckpoint + minPauseBetweenCheckpoints > timestamp) {
+			// make sure the minimum pause since the trigger and the completion of the latest checkpoint has passed
+			final long millisUntilMinPauseElapsed = getMillisUntilMinPauseElapsed();
+			if (millisUntilMinPauseElapsed > 0) {
 				if (currentPeriodicTrigger != null) {
 					currentPeriodicTrigger.cancel();
 					currentPeriodicTrigger = null;
 				}
-				ScheduledTrigger trigger = new ScheduledTrigger();
-				timer.scheduleAtFixedRate(trigger, minPauseBetweenCheckpoints, baseInterval);
+				if (periodicScheduling) {
+					currentPeriodicTrigger = new ScheduledTrigger();
+					timer.scheduleAtFixedRate(currentPeriodicTrigger, millisUntilMinPauseElapsed, baseInterval);
+				}
 				return false;
 			}
 		}
@@ -427,7 +462,6 @@ public class CheckpointCoordinator {
 
 		// we will actually trigger this checkpoint!
 
-		lastTriggeredCheckpoint = timestamp;
 		final long checkpointID;
 		if (nextCheckpointId < 0) {
 			try {
@@ -447,7 +481,7 @@ public class CheckpointCoordinator {
 
 		LOG.info("Triggering checkpoint " + checkpointID + " @ " + timestamp);
 
-		final PendingCheckpoint checkpoint = new PendingCheckpoint(job, checkpointID, timestamp, ackTasks);
+		final PendingCheckpoint checkpoint = new PendingCheckpoint(job, checkpointID, timestamp, ackTasks, sharedStateRegistry);
 
 		// schedule the timer that will clean up the expired checkpoints
 		TimerTask canceller = new TimerTask() {
@@ -502,6 +536,9 @@ public class CheckpointCoordinator {
 
 				pendingCheckpoints.put(checkpointID, checkpoint);
 				timer.schedule(canceller, checkpointTimeout);
+
+				minPauseStartNanos = System.nanoTime();
+				checkpointTriggeredBefore = true;
 			}
 			// end of lock scope
 
@@ -650,11 +687,36 @@ public class CheckpointCoordinator {
 			if (checkpoint != null && !checkpoint.isDiscarded()) {
 				isPendingCheckpoint = true;
 
+				// register the shared state before the checkpoint can complete. This fails if
+				// the task references shared state which has already been discarded.
+				Collection<SharedStateHandle> sharedStates;
+				try {
+					sharedStates = getSharedStates(message);
+					sharedStateRegistry.registerAll(sharedStates, checkpointId);
+				}
+				catch (Exception e) {
+					LOG.warn("Discarding checkpoint " + checkpointId + " because the shared state " +
+						"acknowledged by task " + message.getTaskExecutionId() + " could not be registered.", e);
+
+					pendingCheckpoints.remove(checkpointId);
+					checkpoint.discard(userClassLoader);
+					rememberRecentCheckpointId(checkpointId);
+
+					// the state of the failing message is not part of the pending checkpoint
+					discardAcknowledgedState(message);
+
+					onCancelCheckpoint(checkpointId);
+
+					return true;
+				}
+
 				if (checkpoint.acknowledgeTask(
 					message.getTaskExecutionId(),
 					message.getState(),
 					message.getStateSize(),
-					null)) { // TODO: Give KV-state to the acknowledgeTask method
+					message.getKeyGroupsState(),
+					message.getKeyGroupsStateSize(),
+					message.getCheckpointMetrics())) {
 					if (checkpoint.isFullyAcknowledged()) {
 						completed = checkpoint.toCompletedCheckpoint();
 
@@ -675,6 +737,9 @@ public class CheckpointCoordinator {
 						pendingCheckpoints.remove(checkpointId);
 						rememberRecentCheckpointId(checkpointId);
 
+						// slowly completing checkpoints must not eat up the pause to the next one
+						minPauseStartNanos = System.nanoTime();
+
 						dropSubsumedCheckpoints(completed.getTimestamp());
 
 						onFullyAcknowledgedCheckpoint(completed);
@@ -684,6 +749,8 @@ public class CheckpointCoordinator {
 				}
 				else {
 					// checkpoint did not accept message
+					sharedStateRegistry.unregisterAll(sharedStates);
+
 					LOG.error("Received duplicate or invalid acknowledge message for checkpoint " + checkpointId
 							+ " , task " + message.getTaskExecutionId());
 				}
@@ -698,6 +765,8 @@ public class CheckpointCoordinator {
 				if (recentPendingCheckpoints.contains(checkpointId)) {
 					isPendingCheckpoint = true;
 					LOG.warn("Received late message for now expired checkpoint attempt " + checkpointId);
+
+					discardAcknowledgedState(message);
 				}
 				else {
 					isPendingCheckpoint = false;
@@ -725,6 +794,68 @@ public class CheckpointCoordinator {
 		return isPendingCheckpoint;
 	}
 
+	/**
+	 * Registers the shared state of a checkpoint or savepoint which has not been completed by
+	 * this coordinator, so that subsequent checkpoints can reference it.
+	 */
+	protected void registerRecoveredSharedStates(CompletedCheckpoint checkpoint) throws Exception {
+		for (TaskState taskState : checkpoint.getTaskStates().values()) {
+			taskState.registerRecoveredSharedStates(userClassLoader, sharedStateRegistry);
+		}
+	}
+
+	private Collection<SharedStateHandle> getSharedStates(AcknowledgeCheckpoint message) throws Exception {
+		List<SharedStateHandle> sharedStates = new ArrayList<>();
+
+		if (message.getState() != null) {
+			sharedStates.addAll(SharedStateRegistry.getSharedStates(
+				message.getState().deserializeValue(userClassLoader)));
+		}
+
+		if (message.getKeyGroupsState() != null) {
+			sharedStates.addAll(SharedStateRegistry.getSharedStates(
+				message.getKeyGroupsState().deserializeValue(userClassLoader)));
+		}
+
+		return sharedStates;
+	}
+
+	/**
+	 * Discards the state of an acknowledge message which is not added to a pending checkpoint.
+	 * Of the shared state, only the handles which were written for the acknowledged checkpoint
+	 * and are not registered are discarded. The other handles are still referenced by earlier
+	 * checkpoints.
+	 */
+	private void discardAcknowledgedState(AcknowledgeCheckpoint message) {
+		List<SerializedValue<StateHandle<?>>> serializedStates = new ArrayList<>(2);
+
+		if (message.getState() != null) {
+			serializedStates.add(message.getState());
+		}
+
+		if (message.getKeyGroupsState() != null) {
+			serializedStates.add(message.getKeyGroupsState());
+		}
+
+		for (SerializedValue<StateHandle<?>> serializedState : serializedStates) {
+			try {
+				StateHandle<?> stateHandle = serializedState.deserializeValue(userClassLoader);
+
+				for (SharedStateHandle sharedState : SharedStateRegistry.getSharedStates(stateHandle)) {
+					if (sharedState.getCheckpointId() == message.getCheckpointId() &&
+							sharedStateRegistry.getReferenceCount(sharedState.getRegistrationKey()) == 0) {
+						sharedState.discardState();
+					}
+				}
+
+				stateHandle.discardState();
+			}
+			catch (Exception e) {
+				LOG.warn("Failed to discard the state of " + message + ".", e);
+			}
+		}
+	}
+
 	private void rememberRecentCheckpointId(long id) {
 		if (recentPendingCheckpoints.size() >= NUM_GHOST_CHECKPOINT_IDS) {
 			recentPendingCheckpoints.removeFirst();
@@ -748,6 +879,23 @@ public class CheckpointCoordinator {
 		}
 	}
 
+	/**
+	 * Gets the time until the minimum pause after the trigger and the completion of the latest
+	 * checkpoint has passed.
+	 *
+	 * <p>NOTE: The caller of this method must hold the lock when invoking the method!
+	 *
+	 * @return The remaining pause in milliseconds, or zero if the next checkpoint may be triggered.
+	 */
+	private long getMillisUntilMinPauseElapsed() {
+		if (minPauseBetweenCheckpoints == 0 || !checkpointTriggeredBefore) {
+			return 0L;
+		}
+
+		long millisSincePauseStart = (System.nanoTime() - minPauseStartNanos) / 1_000_000;
+		return Math.max(0L, minPauseBetweenCheckpoints - millisSincePauseStart);
+	}
+
 	/**
 	 * Triggers the queued request, if there is one.
 	 *
@@ -758,17 +906,19 @@ public class CheckpointCoordinator {
 			triggerRequestQueued = false;
 
 			// trigger the checkpoint from the trigger timer, to finish the work of this thread before
-			// starting with the next checkpoint
+			// starting with the next checkpoint. the minimum pause after the latest checkpoint
+			// delays the trigger
+			final long delay = getMillisUntilMinPauseElapsed();
 			ScheduledTrigger trigger = new ScheduledTrigger();
 			if (periodicScheduling) {
 				if (currentPeriodicTrigger != null) {
 					currentPeriodicTrigger.cancel();
 				}
 				currentPeriodicTrigger = trigger;
-				timer.scheduleAtFixedRate(trigger, 0L, baseInterval);
+				timer.scheduleAtFixedRate(trigger, delay, baseInterval);
 			}
 			else {
-				timer.schedule(trigger, 0L);
+				timer.schedule(trigger, delay);
 			}
 		}
 	}
@@ -801,6 +951,11 @@ public class CheckpointCoordinator {
 				}
 			}
 
+			if (latest.getSharedStateRegistry() == null) {
+				// the checkpoint has been recovered, its shared state is not yet registered
+				registerRecoveredSharedStates(latest);
+			}
+
 			long recoveryTimestamp = System.currentTimeMillis();
 
 			for (Map.Entry<JobVertexID, TaskState> taskGroupStateEntry: latest.getTaskStates().entrySet()) {
@@ -808,34 +963,27 @@ public class CheckpointCoordinator {
 				ExecutionJobVertex executionJobVertex = tasks.get(taskGroupStateEntry.getKey());
 
 				if (executionJobVertex != null) {
-					// check that we only restore the state if the parallelism has not been changed
-					if (taskState.getParallelism() != executionJobVertex.getParallelism()) {
+					// check that we only restore the state if the parallelism has not been changed,
+					// or if the state consists only of key groups which can be redistributed
+					if (taskState.getParallelism() != executionJobVertex.getParallelism() &&
+							taskState.hasNonKeyedState()) {
 						throw new RuntimeException("Cannot restore the latest checkpoint because " +
-							"the parallelism changed. The operator" + executionJobVertex.getJobVertexId() +
-							" has parallelism " + executionJobVertex.getParallelism() + " whereas the corresponding" +
-							"state object has a parallelism of " + taskState.getParallelism());
+							"the parallelism changed. The operator " + executionJobVertex.getJobVertexId() +
+							" has parallelism " + executionJobVertex.getParallelism() + " whereas the corresponding " +
+							"state object has a parallelism of " + taskState.getParallelism() + " and " +
+							"contains non-keyed state which cannot be redistributed.");
 					}
 
-					int counter = 0;
-
-					List<Set<Integer>> keyGroupPartitions = createKeyGroupPartitions(numberKeyGroups, executionJobVertex.getParallelism());
-
-					for (int i = 0; i < executionJobVertex.getParallelism(); i++) {
-						SubtaskState subtaskState = taskState.getState(i);
-						SerializedValue<StateHandle<?>> state = null;
-
-						if (subtaskState != null) {
-							// count the number of executions for which we set a state
-							counter++;
-							state = subtaskState.getState();
-						}
-
-						Map<Integer, SerializedValue<StateHandle<?>>> kvStateForTaskMap = taskState.getUnwrappedKvStates(keyGroupPartitions.get(i));
-
-						Execution currentExecutionAttempt = executionJobVertex.getTaskVertices()[i].getCurrentExecutionAttempt();
-						currentExecutionAttempt.setInitialState(state, kvStateForTaskMap, recoveryTimestamp);
+					if (taskState.getNumberOfKeyGroups() != executionJobVertex.getNumberOfKeyGroups() &&
+							taskState.getNumberCollectedKvStates() > 0) {
+						throw new RuntimeException("Cannot restore the latest checkpoint because " +
+							"the number of key groups changed. The operator " + executionJobVertex.getJobVertexId() +
+							" has " + executionJobVertex.getNumberOfKeyGroups() + " key groups whereas the " +
+							"corresponding state object has " + taskState.getNumberOfKeyGroups() + " key groups.");
 					}
 
+					int counter = assignStateToSubtasks(taskState, executionJobVertex, recoveryTimestamp);
+
 					if (allOrNothingState && counter > 0 && counter < executionJobVertex.getParallelism()) {
 						throw new IllegalStateException("The checkpoint contained state only for " +
 							"a subset of tasks for vertex " + executionJobVertex);
@@ -851,28 +999,45 @@ public class CheckpointCoordinator {
 	}
 
 	/**
-	 * Groups the available set of key groups into key group partitions. A key group partition is
-	 * the set of key groups which is assigned to the same task. Each set of the returned list
-	 * constitutes a key group partition.
+	 * Sets the initial state of the subtasks of the given execution job vertex. Every subtask
+	 * receives its own non-keyed state and the state of all checkpointed key group ranges that
+	 * overlap with the key groups assigned to the subtask under the current parallelism.
 	 *
-	 * @param numberKeyGroups Number of available key groups (indexed from 0 to numberKeyGroups - 1)
-	 * @param parallelism Parallelism to generate the key group partitioning for
-	 * @return List of key group partitions
+	 * @param taskState State of the job vertex to restore
+	 * @param executionJobVertex Execution job vertex whose subtasks receive the state
+	 * @param recoveryTimestamp Timestamp of the recovery
+	 * @return Number of subtasks for which a non-keyed state was set
 	 */
-	protected List<Set<Integer>> createKeyGroupPartitions(int numberKeyGroups, int parallelism) {
-		ArrayList<Set<Integer>> result = new ArrayList<>(parallelism);
+	protected int assignStateToSubtasks(
+			TaskState taskState,
+			ExecutionJobVertex executionJobVertex,
+			long recoveryTimestamp) throws Exception {
+
+		int parallelism = executionJobVertex.getParallelism();
+		int counter = 0;
+
+		for (int i = 0; i < parallelism; i++) {
+			SubtaskState subtaskState = i < taskState.getParallelism() ? taskState.getState(i) : null;
+			SerializedValue<StateHandle<?>> state = null;
+
+			if (subtaskState != null) {
+				// count the number of executions for which we set a state
+				counter++;
+				state = subtaskState.getState();
+			}
 
-		for (int p = 0; p < parallelism; p++) {
-			HashSet<Integer> keyGroupPartition = new HashSet<>();
+			KeyGroupRange keyGroupRange = KeyGroupRangeAssignment.computeKeyGroupRangeForOperatorIndex(
+				executionJobVertex.getNumberOfKeyGroups(),
+				parallelism,
+				i);
 
-			for (int k = p; k < numberKeyGroups; k += parallelism) {
-				keyGroupPartition.add(k);
-			}
+			Map<Integer, SerializedValue<StateHandle<?>>> kvStateForTaskMap = taskState.getUnwrappedKvStates(keyGroupRange);
 
-			result.add(keyGroupPartition);
+			Execution currentExecutionAttempt = executionJobVertex.getTaskVertices()[i].getCurrentExecutionAttempt();
+			currentExecutionAttempt.setInitialState(state, kvStateForTaskMap, recoveryTimestamp);
 		}
 
-		return result;
+		return counter;
 	}
 
 	// --------------------------------------------------------------------------------------------
@@ -901,6 +1066,10 @@ public class CheckpointCoordinator {
 		}
 	}
 
+	public SharedStateRegistry getSharedStateRegistry() {
+		return sharedStateRegistry;
+	}
+
 	protected long getAndIncrementCheckpointId() {
 		try {
 			// this must happen outside the locked scope, because it communicates
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.checkpoint;
+
+import java.io.Serializable;
+
+/**
+ * Metrics of a checkpoint of a single subtask, which the task reports together with its
+ * acknowledgement of the checkpoint.
+ *
+ * <p>The alignment metrics are only set for tasks with inputs, the slowest channel is -1 if
+ * the task did not receive any barrier for the checkpoint.
+ */
+public class CheckpointMetrics implements Serializable {
+
+	private static final long serialVersionUID = 6214367584815398743L;
+
+	/** The time (in nanoseconds) from the first to the last barrier of the checkpoint */
+	private long alignmentDurationNanos;
+
+	/** The number of bytes that were buffered (spilled) while aligning the barriers */
+	private long bytesBufferedInAlignment;
+
+	/** The index of the input channel that delivered the barrier last */
+	private int slowestChannel = -1;
+
+	/** The duration (in milliseconds) of the synchronous part of the snapshot */
+	private long syncDurationMillis;
+
+	/** The duration (in milliseconds) of the asynchronous part of the snapshot */
+	private long asyncDurationMillis;
+
+	public long getAlignmentDurationNanos() {
+		return alignmentDurationNanos;
+	}
+
+	public CheckpointMetrics setAlignmentDurationNanos(long alignmentDurationNanos) {
+		this.alignmentDurationNanos = alignmentDurationNanos;
+		return this;
+	}
+
+	public long getBytesBufferedInAlignment() {
+		return bytesBufferedInAlignment;
+	}
+
+	public CheckpointMetrics setBytesBufferedInAlignment(long bytesBufferedInAlignment) {
+		this.bytesBufferedInAlignment = bytesBufferedInAlignment;
+		return this;
+	}
+
+	public int getSlowestChannel() {
+		return slowestChannel;
+	}
+
+	public CheckpointMetrics setSlowestChannel(int slowestChannel) {
+		this.slowestChannel = slowestChannel;
+		return this;
+	}
+
+	public long getSyncDurationMillis() {
+		return syncDurationMillis;
+	}
+
+	public CheckpointMetrics setSyncDurationMillis(long syncDurationMillis) {
+		this.syncDurationMillis = syncDurationMillis;
+		return this;
+	}
+
+	public long getAsyncDurationMillis() {
+		return asyncDurationMillis;
+	}
+
+	public CheckpointMetrics setAsyncDurationMillis(long asyncDurationMillis) {
+		this.asyncDurationMillis = asyncDurationMillis;
+		return this;
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+
+		CheckpointMetrics that = (CheckpointMetrics) o;
+
+		return alignmentDurationNanos == that.alignmentDurationNanos &&
+				bytesBufferedInAlignment == that.bytesBufferedInAlignment &&
+				slowestChannel == that.slowestChannel &&
+				syncDurationMillis == that.syncDurationMillis &&
+				asyncDurationMillis == that.asyncDurationMillis;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = (int) (alignmentDurationNanos ^ (alignmentDurationNanos >>> 32));
+		result = 31 * result + (int) (bytesBufferedInAlignment ^ (bytesBufferedInAlignment >>> 32));
+		result = 31 * result + slowestChannel;
+		result = 31 * result + (int) (syncDurationMillis ^ (syncDurationMillis >>> 32));
+		result = 31 * result + (int) (asyncDurationMillis ^ (asyncDurationMillis >>> 32));
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "CheckpointMetrics{" +
+				"alignmentDurationNanos=" + alignmentDurationNanos +
+				", bytesBufferedInAlignment=" + bytesBufferedInAlignment +
+				", slowestChannel=" + slowestChannel +
+				", syncDurationMillis=" + syncDurationMillis +
+				", asyncDurationMillis=" + asyncDurationMillis +
+				'}';
+	}
+}
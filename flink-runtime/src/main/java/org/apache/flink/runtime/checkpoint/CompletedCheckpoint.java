@@ -20,6 +20,7 @@ package org.apache.flink.runtime.checkpoint;
 
 import org.apache.flink.api.common.JobID;
 import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.util.Preconditions;
 
 import java.io.Serializable;
@@ -47,6 +48,20 @@ public class CompletedCheckpoint implements Serializable {
 	/** States of the different task groups belonging to this checkpoint */
 	private final Map<JobVertexID, TaskState> taskStates;
 
+	/**
+	 * The registry holding the references of this checkpoint to shared state. This is null
+	 * if the checkpoint has been recovered or deserialized, in which case the shared state
+	 * is not discarded together with the checkpoint.
+	 */
+	private transient SharedStateRegistry sharedStateRegistry;
+
+	/**
+	 * The metrics reported by the subtasks, by job vertex and subtask index. This is only
+	 * gathered for the checkpoint statistics and is null if the checkpoint has been
+	 * recovered or deserialized.
+	 */
+	private transient Map<JobVertexID, CheckpointMetrics[]> taskMetrics;
+
 	public CompletedCheckpoint(
 		JobID job,
 		long checkpointID,
@@ -95,11 +110,27 @@ public class CompletedCheckpoint implements Serializable {
 		return taskStates.get(jobVertexID);
 	}
 
+	public SharedStateRegistry getSharedStateRegistry() {
+		return sharedStateRegistry;
+	}
+
+	public void setSharedStateRegistry(SharedStateRegistry sharedStateRegistry) {
+		this.sharedStateRegistry = sharedStateRegistry;
+	}
+
+	public Map<JobVertexID, CheckpointMetrics[]> getTaskMetrics() {
+		return taskMetrics;
+	}
+
+	public void setTaskMetrics(Map<JobVertexID, CheckpointMetrics[]> taskMetrics) {
+		this.taskMetrics = taskMetrics;
+	}
+
 	// --------------------------------------------------------------------------------------------
 	
 	public void discard(ClassLoader userClassLoader) {
 		for (TaskState state: taskStates.values()) {
-			state.discard(userClassLoader);
+			state.discard(userClassLoader, sharedStateRegistry);
 		}
 
 		taskStates.clear();
@@ -18,6 +18,8 @@
 
 package org.apache.flink.runtime.checkpoint;
 
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.runtime.state.StateHandle;
 import org.apache.flink.util.SerializedValue;
 import org.slf4j.Logger;
@@ -26,7 +28,7 @@ import org.slf4j.LoggerFactory;
 import java.io.Serializable;
 
 /**
- * Simple container class which contains the serialized state handle for a key group.
+ * Simple container class which contains the serialized state handle for a range of key groups.
  *
  * The key group state handle is kept in serialized form because it can contain user code classes
  * which might not be available on the JobManager.
@@ -36,13 +38,23 @@ public class KeyGroupState implements Serializable {
 
 	private static final Logger LOG = LoggerFactory.getLogger(KeyGroupState.class);
 
+	/** The key groups whose state is contained in the state handle */
+	private final KeyGroupRange keyGroupRange;
+
 	private final SerializedValue<StateHandle<?>> keyGroupState;
 
 	private final long stateSize;
 
 	private final long duration;
 
-	public KeyGroupState(SerializedValue<StateHandle<?>> keyGroupState, long stateSize, long duration) {
+	public KeyGroupState(
+			KeyGroupRange keyGroupRange,
+			SerializedValue<StateHandle<?>> keyGroupState,
+			long stateSize,
+			long duration) {
+
+		this.keyGroupRange = keyGroupRange;
+
 		this.keyGroupState = keyGroupState;
 
 		this.stateSize = stateSize;
@@ -50,6 +62,10 @@ public class KeyGroupState implements Serializable {
 		this.duration = duration;
 	}
 
+	public KeyGroupRange getKeyGroupRange() {
+		return keyGroupRange;
+	}
+
 	public SerializedValue<StateHandle<?>> getKeyGroupState() {
 		return keyGroupState;
 	}
@@ -63,8 +79,25 @@ public class KeyGroupState implements Serializable {
 	}
 
 	public void discard(ClassLoader classLoader) {
+		discard(classLoader, null);
+	}
+
+	/**
+	 * Discards the state. If a shared state registry is given, the references to the shared
+	 * state are released first.
+	 *
+	 * @param classLoader Class loader to deserialize the state handle
+	 * @param sharedStateRegistry The registry of the shared state, may be null
+	 */
+	public void discard(ClassLoader classLoader, SharedStateRegistry sharedStateRegistry) {
 		try {
-			keyGroupState.deserializeValue(classLoader).discardState();
+			StateHandle<?> stateHandle = keyGroupState.deserializeValue(classLoader);
+
+			if (sharedStateRegistry != null) {
+				sharedStateRegistry.unregisterAll(SharedStateRegistry.getSharedStates(stateHandle));
+			}
+
+			stateHandle.discardState();
 		} catch (Exception e) {
 			LOG.warn("Failed to discard checkpoint state: " + this, e);
 		}
@@ -75,7 +108,8 @@ public class KeyGroupState implements Serializable {
 		if (obj instanceof KeyGroupState) {
 			KeyGroupState other = (KeyGroupState) obj;
 
-			return keyGroupState.equals(other.keyGroupState) && stateSize == other.stateSize &&
+			return keyGroupRange.equals(other.keyGroupRange) &&
+				keyGroupState.equals(other.keyGroupState) && stateSize == other.stateSize &&
 				duration == other.duration;
 		} else {
 			return false;
@@ -86,6 +120,6 @@ public class KeyGroupState implements Serializable {
 	public int hashCode() {
 		return (int) (this.stateSize ^ this.stateSize >>> 32) +
 			31 * ((int) (this.duration ^ this.duration >>> 32) +
-				31 * keyGroupState.hashCode());
+				31 * (keyGroupState.hashCode() + 31 * keyGroupRange.hashCode()));
 	}
 }
@@ -25,6 +25,9 @@ import org.apache.flink.api.common.JobID;
 import org.apache.flink.runtime.executiongraph.ExecutionAttemptID;
 import org.apache.flink.runtime.executiongraph.ExecutionVertex;
 import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.runtime.state.StateHandle;
 import org.apache.flink.util.SerializedValue;
 
@@ -48,7 +51,13 @@ public class PendingCheckpoint {
 
 	private final Map<JobVertexID, TaskState> taskStates;
 
+	/** The metrics reported by the acknowledging subtasks, by job vertex and subtask index */
+	private final Map<JobVertexID, CheckpointMetrics[]> taskMetrics;
+
 	private final Map<ExecutionAttemptID, ExecutionVertex> notYetAcknowledgedTasks;
+
+	/** The registry of the shared state acknowledged for this checkpoint, may be null */
+	private final SharedStateRegistry sharedStateRegistry;
 	
 	private int numAcknowledgedTasks;
 	
@@ -58,6 +67,13 @@ public class PendingCheckpoint {
 	
 	public PendingCheckpoint(JobID jobId, long checkpointId, long checkpointTimestamp,
 							Map<ExecutionAttemptID, ExecutionVertex> verticesToConfirm)
+	{
+		this(jobId, checkpointId, checkpointTimestamp, verticesToConfirm, null);
+	}
+
+	public PendingCheckpoint(JobID jobId, long checkpointId, long checkpointTimestamp,
+							Map<ExecutionAttemptID, ExecutionVertex> verticesToConfirm,
+							SharedStateRegistry sharedStateRegistry)
 	{
 		if (jobId == null || verticesToConfirm == null) {
 			throw new NullPointerException();
@@ -71,7 +87,9 @@ public class PendingCheckpoint {
 		this.checkpointTimestamp = checkpointTimestamp;
 		
 		this.notYetAcknowledgedTasks = verticesToConfirm;
+		this.sharedStateRegistry = sharedStateRegistry;
 		this.taskStates = new HashMap<>();
+		this.taskMetrics = new HashMap<>();
 	}
 	
 	// --------------------------------------------------------------------------------------------
@@ -101,6 +119,10 @@ public class PendingCheckpoint {
 		return taskStates;
 	}
 
+	public Map<JobVertexID, CheckpointMetrics[]> getTaskMetrics() {
+		return taskMetrics;
+	}
+
 	public boolean isFullyAcknowledged() {
 		return this.notYetAcknowledgedTasks.isEmpty() && !discarded;
 	}
@@ -121,6 +143,8 @@ public class PendingCheckpoint {
 					checkpointTimestamp,
 					System.currentTimeMillis(),
 					new HashMap<>(taskStates));
+				completed.setSharedStateRegistry(sharedStateRegistry);
+				completed.setTaskMetrics(new HashMap<>(taskMetrics));
 				dispose(null, false);
 				
 				return completed;
@@ -135,7 +159,19 @@ public class PendingCheckpoint {
 			ExecutionAttemptID attemptID,
 			SerializedValue<StateHandle<?>> state,
 			long stateSize,
-			Map<Integer, SerializedValue<StateHandle<?>>> kvState) {
+			SerializedValue<StateHandle<?>> keyGroupsState,
+			long keyGroupsStateSize) {
+
+		return acknowledgeTask(attemptID, state, stateSize, keyGroupsState, keyGroupsStateSize, null);
+	}
+
+	public boolean acknowledgeTask(
+			ExecutionAttemptID attemptID,
+			SerializedValue<StateHandle<?>> state,
+			long stateSize,
+			SerializedValue<StateHandle<?>> keyGroupsState,
+			long keyGroupsStateSize,
+			CheckpointMetrics checkpointMetrics) {
 
 		synchronized (lock) {
 			if (discarded) {
@@ -144,7 +180,16 @@ public class PendingCheckpoint {
 			
 			ExecutionVertex vertex = notYetAcknowledgedTasks.remove(attemptID);
 			if (vertex != null) {
-				if (state != null || kvState != null) {
+				if (checkpointMetrics != null) {
+					CheckpointMetrics[] metrics = taskMetrics.get(vertex.getJobvertexId());
+					if (metrics == null) {
+						metrics = new CheckpointMetrics[vertex.getTotalNumberOfParallelSubtasks()];
+						taskMetrics.put(vertex.getJobvertexId(), metrics);
+					}
+					metrics[vertex.getParallelSubtaskIndex()] = checkpointMetrics;
+				}
+
+				if (state != null || keyGroupsState != null) {
 
 					JobVertexID jobVertexID = vertex.getJobvertexId();
 
@@ -153,7 +198,10 @@ public class PendingCheckpoint {
 					if (taskStates.containsKey(jobVertexID)) {
 						taskState = taskStates.get(jobVertexID);
 					} else {
-						taskState = new TaskState(jobVertexID, vertex.getTotalNumberOfParallelSubtasks());
+						taskState = new TaskState(
+							jobVertexID,
+							vertex.getTotalNumberOfParallelSubtasks(),
+							vertex.getNumberOfKeyGroups());
 						taskStates.put(jobVertexID, taskState);
 					}
 
@@ -170,16 +218,20 @@ public class PendingCheckpoint {
 						);
 					}
 
-					if (kvState != null) {
-						for (Map.Entry<Integer, SerializedValue<StateHandle<?>>> entry : kvState.entrySet()) {
-							taskState.putKvState(
-								entry.getKey(),
-								new KeyGroupState(
-									entry.getValue(),
-									0L,
-									timestamp
-								));
-						}
+					if (keyGroupsState != null) {
+						KeyGroupRange keyGroupRange = KeyGroupRangeAssignment.computeKeyGroupRangeForOperatorIndex(
+							taskState.getNumberOfKeyGroups(),
+							taskState.getParallelism(),
+							vertex.getParallelSubtaskIndex());
+
+						taskState.putKvState(
+							keyGroupRange.getStartKeyGroup(),
+							new KeyGroupState(
+								keyGroupRange,
+								keyGroupsState,
+								keyGroupsStateSize,
+								timestamp
+							));
 					}
 				}
 				numAcknowledgedTasks++;
@@ -204,10 +256,11 @@ public class PendingCheckpoint {
 			numAcknowledgedTasks = -1;
 			if (releaseState) {
 				for (TaskState taskState : taskStates.values()) {
-					taskState.discard(userClassLoader);
+					taskState.discard(userClassLoader, sharedStateRegistry);
 				}
 			}
 			taskStates.clear();
+			taskMetrics.clear();
 			notYetAcknowledgedTasks.clear();
 		}
 	}
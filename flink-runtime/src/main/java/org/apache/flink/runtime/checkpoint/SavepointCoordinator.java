@@ -30,8 +30,7 @@ import org.apache.flink.runtime.instance.ActorGateway;
 import org.apache.flink.runtime.instance.AkkaActorGateway;
 import org.apache.flink.runtime.jobgraph.JobVertexID;
 import org.apache.flink.runtime.jobmanager.RecoveryMode;
-import org.apache.flink.runtime.state.StateHandle;
-import org.apache.flink.util.SerializedValue;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import scala.concurrent.Future;
@@ -40,7 +39,6 @@ import scala.concurrent.Promise;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -83,7 +81,6 @@ public class SavepointCoordinator extends CheckpointCoordinator {
 			JobID jobId,
 			long baseInterval,
 			long checkpointTimeout,
-			int numberKeyGroups,
 			ExecutionVertex[] tasksToTrigger,
 			ExecutionVertex[] tasksToWaitFor,
 			ExecutionVertex[] tasksToCommitTo,
@@ -92,12 +89,33 @@ public class SavepointCoordinator extends CheckpointCoordinator {
 			StateStore<CompletedCheckpoint> savepointStore,
 			CheckpointStatsTracker statsTracker) throws Exception {
 
+		this(jobId, baseInterval, checkpointTimeout, tasksToTrigger, tasksToWaitFor, tasksToCommitTo,
+				userClassLoader, checkpointIDCounter, savepointStore, statsTracker, new SharedStateRegistry());
+	}
+
+	/**
+	 * Creates a savepoint coordinator which registers the shared state of the savepoints with
+	 * the given registry. Since savepoints never release their references, shared state that
+	 * is referenced by a savepoint is retained when the periodic checkpoints are discarded.
+	 */
+	public SavepointCoordinator(
+			JobID jobId,
+			long baseInterval,
+			long checkpointTimeout,
+			ExecutionVertex[] tasksToTrigger,
+			ExecutionVertex[] tasksToWaitFor,
+			ExecutionVertex[] tasksToCommitTo,
+			ClassLoader userClassLoader,
+			CheckpointIDCounter checkpointIDCounter,
+			StateStore<CompletedCheckpoint> savepointStore,
+			CheckpointStatsTracker statsTracker,
+			SharedStateRegistry sharedStateRegistry) throws Exception {
+
 		super(jobId,
 				baseInterval,
 				checkpointTimeout,
 				0L,
 				Integer.MAX_VALUE,
-				numberKeyGroups,
 				tasksToTrigger,
 				tasksToWaitFor,
 				tasksToCommitTo,
@@ -105,7 +123,8 @@ public class SavepointCoordinator extends CheckpointCoordinator {
 				checkpointIDCounter,
 				IgnoreCompletedCheckpointsStore.INSTANCE,
 				RecoveryMode.STANDALONE,
-				statsTracker);
+				statsTracker,
+				sharedStateRegistry);
 
 		this.savepointStore = checkNotNull(savepointStore);
 		this.savepointPromises = new ConcurrentHashMap<>();
@@ -196,6 +215,8 @@ public class SavepointCoordinator extends CheckpointCoordinator {
 
 			LOG.info("Savepoint: {}@{}", checkpoint.getCheckpointID(), checkpoint.getTimestamp());
 
+			registerRecoveredSharedStates(checkpoint);
+
 			// Set the initial state of all tasks
 			LOG.debug("Rolling back individual operators.");
 
@@ -204,12 +225,14 @@ public class SavepointCoordinator extends CheckpointCoordinator {
 				ExecutionJobVertex executionJobVertex = tasks.get(taskStateEntry.getKey());
 
 				if (executionJobVertex != null) {
-					if (executionJobVertex.getParallelism() != taskState.getParallelism()) {
+					if (executionJobVertex.getParallelism() != taskState.getParallelism() &&
+							taskState.hasNonKeyedState()) {
 						String msg = String.format("Failed to rollback to savepoint %s. " +
 								"Parallelism mismatch between savepoint state and new program. " +
 								"Cannot map operator %s with parallelism %d to new program with " +
-								"parallelism %d. This indicates that the program has been changed " +
-								"in a non-compatible way after the savepoint.",
+								"parallelism %d, because the operator has non-keyed state. This " +
+								"indicates that the program has been changed in a non-compatible " +
+								"way after the savepoint.",
 							checkpoint,
 							taskStateEntry.getKey(),
 							taskState.getParallelism(),
@@ -218,27 +241,22 @@ public class SavepointCoordinator extends CheckpointCoordinator {
 						throw new IllegalStateException(msg);
 					}
 
-					List<Set<Integer>> keyGroupPartitions = createKeyGroupPartitions(
-						numberKeyGroups,
-						executionJobVertex.getParallelism());
-
-					for (int i = 0; i < executionJobVertex.getTaskVertices().length; i++) {
-						SubtaskState subtaskState = taskState.getState(i);
-						SerializedValue<StateHandle<?>> state = null;
-
-						if (subtaskState != null) {
-							state = subtaskState.getState();
-						}
-
-						Map<Integer, SerializedValue<StateHandle<?>>> kvStateForTaskMap = taskState
-							.getUnwrappedKvStates(keyGroupPartitions.get(i));
-
-						Execution currentExecutionAttempt = executionJobVertex
-							.getTaskVertices()[i]
-							.getCurrentExecutionAttempt();
+					if (executionJobVertex.getNumberOfKeyGroups() != taskState.getNumberOfKeyGroups() &&
+							taskState.getNumberCollectedKvStates() > 0) {
+						String msg = String.format("Failed to rollback to savepoint %s. " +
+								"Key group mismatch between savepoint state and new program. " +
+								"Cannot map operator %s with %d key groups to new program with " +
+								"%d key groups. The maximum parallelism of a program must not " +
+								"change after the savepoint.",
+							checkpoint,
+							taskStateEntry.getKey(),
+							taskState.getNumberOfKeyGroups(),
+							executionJobVertex.getNumberOfKeyGroups());
 
-						currentExecutionAttempt.setInitialState(state, kvStateForTaskMap, recoveryTimestamp);
+						throw new IllegalStateException(msg);
 					}
+
+					assignStateToSubtasks(taskState, executionJobVertex, recoveryTimestamp);
 				} else {
 					String msg = String.format("Failed to rollback to savepoint %s. " +
 							"Cannot map old state for task %s to the new program. " +
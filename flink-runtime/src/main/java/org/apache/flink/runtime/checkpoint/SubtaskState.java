@@ -18,6 +18,7 @@
 
 package org.apache.flink.runtime.checkpoint;
 
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.runtime.state.StateHandle;
 import org.apache.flink.util.SerializedValue;
 import org.slf4j.Logger;
@@ -82,8 +83,25 @@ public class SubtaskState implements Serializable {
 	}
 
 	public void discard(ClassLoader userClassLoader) {
+		discard(userClassLoader, null);
+	}
+
+	/**
+	 * Discards the state. If a shared state registry is given, the references to the shared
+	 * state are released first.
+	 *
+	 * @param userClassLoader Class loader to deserialize the state handle
+	 * @param sharedStateRegistry The registry of the shared state, may be null
+	 */
+	public void discard(ClassLoader userClassLoader, SharedStateRegistry sharedStateRegistry) {
 		try {
-			state.deserializeValue(userClassLoader).discardState();
+			StateHandle<?> stateHandle = state.deserializeValue(userClassLoader);
+
+			if (sharedStateRegistry != null) {
+				sharedStateRegistry.unregisterAll(SharedStateRegistry.getSharedStates(stateHandle));
+			}
+
+			stateHandle.discardState();
 		} catch (Exception e) {
 			LOG.warn("Failed to discard checkpoint state: " + this, e);
 		}
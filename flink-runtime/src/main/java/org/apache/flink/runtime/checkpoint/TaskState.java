@@ -19,6 +19,8 @@
 package org.apache.flink.runtime.checkpoint;
 
 import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.runtime.state.StateHandle;
 import org.apache.flink.util.SerializedValue;
 
@@ -27,7 +29,6 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 
 /**
  * Simple container class which contains the task state and key-value state handles for the sub
@@ -44,13 +45,20 @@ public class TaskState implements Serializable {
 	/** Map of task states which can be accessed by their sub task index */
 	private final Map<Integer, SubtaskState> subtaskStates;
 
-	/** Map of key-value states which can be accessed by their key group index */
+	/** Map of key-value states which can be accessed by the first key group of their range */
 	private final Map<Integer, KeyGroupState> kvStates;
 
 	/** Parallelism of the operator when it was checkpointed */
 	private final int parallelism;
 
+	/** Number of key groups of the operator when it was checkpointed */
+	private final int numberOfKeyGroups;
+
 	public TaskState(JobVertexID jobVertexID, int parallelism) {
+		this(jobVertexID, parallelism, parallelism);
+	}
+
+	public TaskState(JobVertexID jobVertexID, int parallelism, int numberOfKeyGroups) {
 		this.jobVertexID = jobVertexID;
 
 		this.subtaskStates = new HashMap<>(parallelism);
@@ -58,6 +66,8 @@ public class TaskState implements Serializable {
 		this.kvStates = new HashMap<>();
 
 		this.parallelism = parallelism;
+
+		this.numberOfKeyGroups = numberOfKeyGroups;
 	}
 
 	public JobVertexID getJobVertexID() {
@@ -108,6 +118,21 @@ public class TaskState implements Serializable {
 		return parallelism;
 	}
 
+	public int getNumberOfKeyGroups() {
+		// task states of older versions do not contain the number of key groups
+		return numberOfKeyGroups > 0 ? numberOfKeyGroups : parallelism;
+	}
+
+	/**
+	 * Returns true if the task state contains non-keyed state of individual sub tasks. This
+	 * state cannot be redistributed when the parallelism of the task changes.
+	 *
+	 * @return True if there is non-keyed sub task state, false otherwise.
+	 */
+	public boolean hasNonKeyedState() {
+		return !subtaskStates.isEmpty();
+	}
+
 	public void putKvState(int keyGroupId, KeyGroupState keyGroupState) {
 		kvStates.put(keyGroupId, keyGroupState);
 	}
@@ -117,21 +142,22 @@ public class TaskState implements Serializable {
 	}
 
 	/**
-	 * Retrieve the set of key-value state key groups specified by the given key group partition set.
-	 * The key groups are returned as a map where the key group index maps to the serialized state
-	 * handle of the key group.
+	 * Retrieve the key-value states which contain state of the given key group range. The key
+	 * group states are returned as a map where the first key group of each checkpointed range
+	 * maps to the serialized state handle of that range. The returned handles may contain
+	 * state of key groups outside of the given range, which has to be skipped upon restore.
 	 *
-	 * @param keyGroupPartition Set of key group indices
-	 * @return Map of serialized key group state handles indexed by their key group index.
+	 * @param keyGroupRange Range of key groups for which to retrieve the state
+	 * @return Map of serialized key group state handles indexed by their first key group.
 	 */
-	public Map<Integer, SerializedValue<StateHandle<?>>> getUnwrappedKvStates(Set<Integer> keyGroupPartition) {
-		HashMap<Integer, SerializedValue<StateHandle<?>>> result = new HashMap<>(keyGroupPartition.size());
+	public Map<Integer, SerializedValue<StateHandle<?>>> getUnwrappedKvStates(KeyGroupRange keyGroupRange) {
+		HashMap<Integer, SerializedValue<StateHandle<?>>> result = new HashMap<>();
 
-		for (Integer keyGroupId : keyGroupPartition) {
-			KeyGroupState keyGroupState = kvStates.get(keyGroupId);
+		for (Map.Entry<Integer, KeyGroupState> entry : kvStates.entrySet()) {
+			KeyGroupRange stateRange = entry.getValue().getKeyGroupRange();
 
-			if (keyGroupState != null) {
-				result.put(keyGroupId, kvStates.get(keyGroupId).getKeyGroupState());
+			if (stateRange.getIntersection(keyGroupRange).getNumberOfKeyGroups() > 0) {
+				result.put(entry.getKey(), entry.getValue().getKeyGroupState());
 			}
 		}
 
@@ -143,12 +169,43 @@ public class TaskState implements Serializable {
 	}
 
 	public void discard(ClassLoader classLoader) {
+		discard(classLoader, null);
+	}
+
+	/**
+	 * Discards the state of all sub tasks and key groups. If a shared state registry is given,
+	 * the references to the shared state are released as well.
+	 *
+	 * @param classLoader Class loader to deserialize the state handles
+	 * @param sharedStateRegistry The registry of the shared state, may be null
+	 */
+	public void discard(ClassLoader classLoader, SharedStateRegistry sharedStateRegistry) {
+		for (SubtaskState subtaskState : subtaskStates.values()) {
+			subtaskState.discard(classLoader, sharedStateRegistry);
+		}
+
+		for (KeyGroupState keyGroupState : kvStates.values()) {
+			keyGroupState.discard(classLoader, sharedStateRegistry);
+		}
+	}
+
+	/**
+	 * Registers the shared state of a restored task state, see
+	 * {@link SharedStateRegistry#registerAllRecovered(java.util.Collection)}.
+	 *
+	 * @param classLoader Class loader to deserialize the state handles
+	 * @param sharedStateRegistry The registry of the shared state
+	 * @throws Exception If a state handle cannot be deserialized
+	 */
+	public void registerRecoveredSharedStates(ClassLoader classLoader, SharedStateRegistry sharedStateRegistry) throws Exception {
 		for (SubtaskState subtaskState : subtaskStates.values()) {
-			subtaskState.discard(classLoader);
+			sharedStateRegistry.registerAllRecovered(
+				SharedStateRegistry.getSharedStates(subtaskState.getState().deserializeValue(classLoader)));
 		}
 
 		for (KeyGroupState keyGroupState : kvStates.values()) {
-			keyGroupState.discard(classLoader);
+			sharedStateRegistry.registerAllRecovered(
+				SharedStateRegistry.getSharedStates(keyGroupState.getKeyGroupState().deserializeValue(classLoader)));
 		}
 	}
 
@@ -158,6 +215,7 @@ public class TaskState implements Serializable {
 			TaskState other = (TaskState) obj;
 
 			return jobVertexID.equals(other.jobVertexID) && parallelism == other.parallelism &&
+				getNumberOfKeyGroups() == other.getNumberOfKeyGroups() &&
 				subtaskStates.equals(other.subtaskStates) && kvStates.equals(other.kvStates);
 		} else {
 			return false;
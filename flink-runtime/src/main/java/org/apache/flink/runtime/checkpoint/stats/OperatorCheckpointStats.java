@@ -18,6 +18,8 @@
 
 package org.apache.flink.runtime.checkpoint.stats;
 
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
+
 import java.util.Arrays;
 
 import static org.apache.flink.util.Preconditions.checkNotNull;
@@ -30,6 +32,9 @@ public class OperatorCheckpointStats extends CheckpointStats {
 	/** Duration in milliseconds and state sizes in bytes per sub task. */
 	private final long[][] subTaskStats;
 
+	/** The metrics reported by the sub tasks, null for sub tasks that did not report any. */
+	private final CheckpointMetrics[] subTaskMetrics;
+
 	/**
 	 * Creates a checkpoint statistic for an operator.
 	 *
@@ -47,9 +52,34 @@ public class OperatorCheckpointStats extends CheckpointStats {
 			long stateSize,
 			long[][] subTaskStats) {
 
+		this(checkpointId, triggerTimestamp, duration, stateSize, subTaskStats, new CheckpointMetrics[subTaskStats.length]);
+	}
+
+	/**
+	 * Creates a checkpoint statistic for an operator, including the checkpoint metrics
+	 * reported by its sub tasks.
+	 *
+	 * @param checkpointId     Checkpoint ID this statistic belongs to
+	 * @param triggerTimestamp Timestamp when the corresponding checkpoint was triggered
+	 * @param duration         Duration (in milliseconds) to complete this statistic
+	 * @param stateSize        State size (in bytes)
+	 * @param subTaskStats     Stats per subtask ([i][0] and [i][1] encode the duration and state
+	 *                         size for sub task i respectively).
+	 * @param subTaskMetrics   Checkpoint metrics per sub task, with null entries for sub tasks
+	 *                         which did not report any.
+	 */
+	public OperatorCheckpointStats(
+			long checkpointId,
+			long triggerTimestamp,
+			long duration,
+			long stateSize,
+			long[][] subTaskStats,
+			CheckpointMetrics[] subTaskMetrics) {
+
 		super(checkpointId, triggerTimestamp, duration, stateSize);
 
 		this.subTaskStats = checkNotNull(subTaskStats);
+		this.subTaskMetrics = checkNotNull(subTaskMetrics);
 	}
 
 	/**
@@ -79,11 +109,23 @@ public class OperatorCheckpointStats extends CheckpointStats {
 		return subTaskStats[index][1];
 	}
 
+	/**
+	 * Returns the checkpoint metrics of a specific sub task, such as the duration of the
+	 * barrier alignment and of the synchronous and asynchronous snapshot.
+	 *
+	 * @return The checkpoint metrics of the sub task, or <code>null</code> if the sub task
+	 * did not report any.
+	 */
+	public CheckpointMetrics getSubTaskMetrics(int index) {
+		return index < subTaskMetrics.length ? subTaskMetrics[index] : null;
+	}
+
 	@Override
 	public String toString() {
 		return "OperatorCheckpointStats{" +
 				"checkpointId=" + getCheckpointId() +
 				", subTaskStats=" + Arrays.deepToString(subTaskStats) +
+				", subTaskMetrics=" + Arrays.toString(subTaskMetrics) +
 				'}';
 	}
 
@@ -18,6 +18,7 @@
 
 package org.apache.flink.runtime.checkpoint.stats;
 
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
 import org.apache.flink.runtime.checkpoint.CompletedCheckpoint;
 import org.apache.flink.runtime.checkpoint.SubtaskState;
 import org.apache.flink.runtime.executiongraph.ExecutionJobVertex;
@@ -59,6 +60,12 @@ public class SimpleCheckpointStatsTracker implements CheckpointStatsTracker {
 	 */
 	private Map<JobVertexID, long[][]> subTaskStats;
 
+	/**
+	 * Checkpoint metrics reported by the sub tasks of each operator, such as the
+	 * alignment duration and the synchronous and asynchronous snapshot durations.
+	 */
+	private Map<JobVertexID, CheckpointMetrics[]> subTaskMetrics;
+
 	/**
 	 * Last computed job-specific statistic. Cleared on every completed
 	 * checkpoint. And computed only on call to {@link #getJobStats()}.
@@ -158,6 +165,30 @@ public class SimpleCheckpointStatsTracker implements CheckpointStatsTracker {
 				}
 			}
 
+			// Metrics reported by the sub tasks, including those without state
+			Map<JobVertexID, CheckpointMetrics[]> metricsForSubTasks = new HashMap<>();
+
+			if (checkpoint.getTaskMetrics() != null) {
+				for (Map.Entry<JobVertexID, CheckpointMetrics[]> taskMetricsEntry : checkpoint.getTaskMetrics().entrySet()) {
+					JobVertexID jobVertexID = taskMetricsEntry.getKey();
+					Integer parallelism = taskParallelism.get(jobVertexID);
+
+					if (parallelism == null) {
+						continue;
+					}
+
+					CheckpointMetrics[] metricsPerSubtask = new CheckpointMetrics[parallelism];
+					System.arraycopy(taskMetricsEntry.getValue(), 0, metricsPerSubtask, 0,
+							Math.min(taskMetricsEntry.getValue().length, parallelism));
+
+					metricsForSubTasks.put(jobVertexID, metricsPerSubtask);
+
+					if (!statsForSubTasks.containsKey(jobVertexID)) {
+						statsForSubTasks.put(jobVertexID, new long[parallelism][2]);
+					}
+				}
+			}
+
 			// It is possible that completed checkpoints are added out of
 			// order. Make sure that in this case the last completed
 			// checkpoint is not updated.
@@ -175,6 +206,7 @@ public class SimpleCheckpointStatsTracker implements CheckpointStatsTracker {
 
 				// Update the stats per sub task
 				subTaskStats = statsForSubTasks;
+				subTaskMetrics = metricsForSubTasks;
 			}
 
 			long checkpointId = checkpoint.getCheckpointID();
@@ -309,12 +341,15 @@ public class SimpleCheckpointStatsTracker implements CheckpointStatsTracker {
 						stateSize += subTaskStat[1];
 					}
 
+					CheckpointMetrics[] subTaskMetrics = this.subTaskMetrics.get(operatorId);
+
 					stats = new OperatorCheckpointStats(
 							latestCompletedCheckpoint.getCheckpointID(),
 							latestCompletedCheckpoint.getTimestamp(),
 							maxDuration,
 							stateSize,
-							subTaskStats);
+							subTaskStats,
+							subTaskMetrics != null ? subTaskMetrics : new CheckpointMetrics[subTaskStats.length]);
 
 					// Remember this and don't recompute if requested again
 					operatorStatsCache.put(operatorId, stats);
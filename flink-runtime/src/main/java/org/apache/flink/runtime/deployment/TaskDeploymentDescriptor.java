@@ -31,6 +31,7 @@ import org.apache.flink.util.SerializedValue;
 import java.io.Serializable;
 import java.net.URL;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import static org.apache.flink.util.Preconditions.checkArgument;
@@ -90,6 +91,9 @@ public final class TaskDeploymentDescriptor implements Serializable {
 
 	private final SerializedValue<StateHandle<?>> operatorState;
 
+	/** The handles to the key group states which overlap with the key groups of this task. */
+	private final List<SerializedValue<StateHandle<?>>> keyGroupsStates;
+
 	/** The execution configuration (see {@link ExecutionConfig}) related to the specific job. */
 	private final SerializedValue<ExecutionConfig> serializedExecutionConfig;
 
@@ -119,6 +123,54 @@ public final class TaskDeploymentDescriptor implements Serializable {
 			SerializedValue<StateHandle<?>> operatorState,
 			long recoveryTimestamp) {
 
+		this(
+			jobID,
+			jobName,
+			vertexID,
+			executionId,
+			serializedExecutionConfig,
+			taskName,
+			indexInSubtaskGroup,
+			numberOfSubtasks,
+			attemptNumber,
+			jobConfiguration,
+			taskConfiguration,
+			invokableClassName,
+			producedPartitions,
+			inputGates,
+			requiredJarFiles,
+			requiredClasspaths,
+			targetSlotNumber,
+			operatorState,
+			Collections.<SerializedValue<StateHandle<?>>>emptyList(),
+			recoveryTimestamp);
+	}
+
+	/**
+	 * Constructs a task deployment descriptor which carries the state of the task's key groups.
+	 */
+	public TaskDeploymentDescriptor(
+			JobID jobID,
+			String jobName,
+			JobVertexID vertexID,
+			ExecutionAttemptID executionId,
+			SerializedValue<ExecutionConfig> serializedExecutionConfig,
+			String taskName,
+			int indexInSubtaskGroup,
+			int numberOfSubtasks,
+			int attemptNumber,
+			Configuration jobConfiguration,
+			Configuration taskConfiguration,
+			String invokableClassName,
+			List<ResultPartitionDeploymentDescriptor> producedPartitions,
+			List<InputGateDeploymentDescriptor> inputGates,
+			List<BlobKey> requiredJarFiles,
+			List<URL> requiredClasspaths,
+			int targetSlotNumber,
+			SerializedValue<StateHandle<?>> operatorState,
+			List<SerializedValue<StateHandle<?>>> keyGroupsStates,
+			long recoveryTimestamp) {
+
 		checkArgument(indexInSubtaskGroup >= 0);
 		checkArgument(numberOfSubtasks > indexInSubtaskGroup);
 		checkArgument(targetSlotNumber >= 0);
@@ -142,6 +194,7 @@ public final class TaskDeploymentDescriptor implements Serializable {
 		this.requiredClasspaths = checkNotNull(requiredClasspaths);
 		this.targetSlotNumber = targetSlotNumber;
 		this.operatorState = operatorState;
+		this.keyGroupsStates = checkNotNull(keyGroupsStates);
 		this.recoveryTimestamp = recoveryTimestamp;
 	}
 
@@ -324,6 +377,10 @@ public final class TaskDeploymentDescriptor implements Serializable {
 	public SerializedValue<StateHandle<?>> getOperatorState() {
 		return operatorState;
 	}
+
+	public List<SerializedValue<StateHandle<?>>> getKeyGroupsStates() {
+		return keyGroupsStates;
+	}
 	
 	public long getRecoveryTimestamp() {
 		return recoveryTimestamp;
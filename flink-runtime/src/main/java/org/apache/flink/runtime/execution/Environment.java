@@ -25,6 +25,7 @@ import org.apache.flink.core.fs.Path;
 import org.apache.flink.metrics.groups.TaskMetricGroup;
 import org.apache.flink.runtime.accumulators.AccumulatorRegistry;
 import org.apache.flink.runtime.broadcast.BroadcastVariableManager;
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
 import org.apache.flink.runtime.executiongraph.ExecutionAttemptID;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
 import org.apache.flink.runtime.io.network.api.writer.ResultPartitionWriter;
@@ -33,6 +34,7 @@ import org.apache.flink.api.common.JobID;
 import org.apache.flink.runtime.jobgraph.JobVertexID;
 import org.apache.flink.runtime.jobgraph.tasks.InputSplitProvider;
 import org.apache.flink.runtime.memory.MemoryManager;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.StateHandle;
 import org.apache.flink.runtime.taskmanager.TaskManagerRuntimeInfo;
 
@@ -147,6 +149,13 @@ public interface Environment {
 	 */
 	AccumulatorRegistry getAccumulatorRegistry();
 
+	/**
+	 * Returns the registry for the queryable states of the task.
+	 *
+	 * @return The registry, or {@code null} if the states of the task cannot be queried.
+	 */
+	TaskKvStateRegistry getTaskKvStateRegistry();
+
 	/**
 	 * Confirms that the invokable has successfully completed all steps it needed to
 	 * to for the checkpoint with the give checkpoint-ID. This method does not include
@@ -166,6 +175,34 @@ public interface Environment {
 	 */
 	void acknowledgeCheckpoint(long checkpointId, StateHandle<?> state);
 
+	/**
+	 * Confirms that the invokable has successfully completed all steps it needed to
+	 * to for the checkpoint with the give checkpoint-ID. This method includes the given
+	 * non-keyed state and the keyed state of the task's key groups in the checkpoint.
+	 *
+	 * @param checkpointId The ID of the checkpoint.
+	 * @param state A handle to the non-keyed state to be included in the checkpoint.
+	 * @param keyGroupsState A handle to the keyed state of the task's key groups.
+	 */
+	void acknowledgeCheckpoint(long checkpointId, StateHandle<?> state, StateHandle<?> keyGroupsState);
+
+	/**
+	 * Confirms that the invokable has successfully completed all steps it needed to
+	 * to for the checkpoint with the give checkpoint-ID. This method includes the given
+	 * non-keyed state and the keyed state of the task's key groups in the checkpoint, and
+	 * reports the metrics of the task's checkpoint.
+	 *
+	 * @param checkpointId The ID of the checkpoint.
+	 * @param state A handle to the non-keyed state to be included in the checkpoint, may be null.
+	 * @param keyGroupsState A handle to the keyed state of the task's key groups, may be null.
+	 * @param checkpointMetrics The metrics of the task's checkpoint.
+	 */
+	void acknowledgeCheckpoint(
+			long checkpointId,
+			StateHandle<?> state,
+			StateHandle<?> keyGroupsState,
+			CheckpointMetrics checkpointMetrics);
+
 	/**
 	 * Marks task execution failed for an external reason (a reason other than the task code itself
 	 * throwing an exception). If the task is already in a terminal state
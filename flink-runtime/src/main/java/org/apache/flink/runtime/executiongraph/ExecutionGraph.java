@@ -51,6 +51,8 @@ import org.apache.flink.runtime.jobmanager.RecoveryMode;
 import org.apache.flink.runtime.jobmanager.scheduler.CoLocationGroup;
 import org.apache.flink.runtime.jobmanager.scheduler.Scheduler;
 import org.apache.flink.runtime.messages.ExecutionGraphMessages;
+import org.apache.flink.runtime.query.KvStateLocationRegistry;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.runtime.taskmanager.TaskExecutionState;
 import org.apache.flink.runtime.util.SerializableObject;
 import org.apache.flink.runtime.util.SerializedThrowable;
@@ -222,6 +224,9 @@ public class ExecutionGraph implements Serializable {
 	/** The coordinator for savepoints, if snapshot checkpoints are enabled */
 	private transient SavepointCoordinator savepointCoordinator;
 
+	/** The locations of the queryable states of the job */
+	private transient KvStateLocationRegistry kvStateLocationRegistry;
+
 	/** Checkpoint stats tracker seperate from the coordinator in order to be
 	 * available after archiving. */
 	private CheckpointStatsTracker checkpointStatsTracker;
@@ -292,6 +297,8 @@ public class ExecutionGraph implements Serializable {
 		this.verticesInCreationOrder = new ArrayList<ExecutionJobVertex>();
 		this.currentExecutions = new ConcurrentHashMap<ExecutionAttemptID, Execution>();
 
+		this.kvStateLocationRegistry = new KvStateLocationRegistry(jobId, getAllVertices());
+
 		this.jobStatusListenerActors  = new CopyOnWriteArrayList<ActorGateway>();
 		this.executionListenerActors = new CopyOnWriteArrayList<ActorGateway>();
 
@@ -345,7 +352,6 @@ public class ExecutionGraph implements Serializable {
 			long checkpointTimeout,
 			long minPauseBetweenCheckpoints,
 			int maxConcurrentCheckpoints,
-			int numberKeyGroups,
 			List<ExecutionJobVertex> verticesToTrigger,
 			List<ExecutionJobVertex> verticesToWaitFor,
 			List<ExecutionJobVertex> verticesToCommitTo,
@@ -374,6 +380,9 @@ public class ExecutionGraph implements Serializable {
 
 		checkpointStatsTracker = Objects.requireNonNull(statsTracker, "Checkpoint stats tracker");
 
+		// the checkpoints and savepoints may reference the same shared state
+		SharedStateRegistry sharedStateRegistry = new SharedStateRegistry();
+
 		// create the coordinator that triggers and commits checkpoints and holds the state
 		checkpointCoordinator = new CheckpointCoordinator(
 				jobID,
@@ -381,7 +390,6 @@ public class ExecutionGraph implements Serializable {
 				checkpointTimeout,
 				minPauseBetweenCheckpoints,
 				maxConcurrentCheckpoints,
-				numberKeyGroups,
 				tasksToTrigger,
 				tasksToWaitFor,
 				tasksToCommitTo,
@@ -389,7 +397,8 @@ public class ExecutionGraph implements Serializable {
 				checkpointIDCounter,
 				completedCheckpointStore,
 				recoveryMode,
-				checkpointStatsTracker);
+				checkpointStatsTracker,
+				sharedStateRegistry);
 
 		// the periodic checkpoint scheduler is activated and deactivated as a result of
 		// job status changes (running -> on, all other states -> off)
@@ -401,7 +410,6 @@ public class ExecutionGraph implements Serializable {
 				jobID,
 				interval,
 				checkpointTimeout,
-				numberKeyGroups,
 				tasksToTrigger,
 				tasksToWaitFor,
 				tasksToCommitTo,
@@ -410,7 +418,8 @@ public class ExecutionGraph implements Serializable {
 				// checkpoint coordinator.
 				checkpointIDCounter,
 				savepointStore,
-				checkpointStatsTracker);
+				checkpointStatsTracker,
+				sharedStateRegistry);
 
 		registerJobStatusListener(savepointCoordinator
 				.createActivatorDeactivator(actorSystem, leaderSessionID));
@@ -545,6 +554,15 @@ public class ExecutionGraph implements Serializable {
 		return Collections.unmodifiableMap(this.tasks);
 	}
 
+	/**
+	 * Gets the locations of the queryable states of the job.
+	 *
+	 * @return The registry of the locations, or null if the graph is archived.
+	 */
+	public KvStateLocationRegistry getKvStateLocationRegistry() {
+		return kvStateLocationRegistry;
+	}
+
 	public Iterable<ExecutionJobVertex> getVerticesTopologically() {
 		// we return a specific iterator that does not fail with concurrent modifications
 		// the list is append only, so it is safe for that
@@ -990,6 +1008,7 @@ public class ExecutionGraph implements Serializable {
 		scheduler = null;
 		checkpointCoordinator = null;
 		executionContext = null;
+		kvStateLocationRegistry = null;
 
 		for (ExecutionJobVertex vertex : verticesInCreationOrder) {
 			vertex.prepareForArchiving();
@@ -72,6 +72,8 @@ public class ExecutionJobVertex implements Serializable {
 	private final List<IntermediateResult> inputs;
 	
 	private final int parallelism;
+
+	private final int numberOfKeyGroups;
 	
 	private final boolean[] finishedSubtasks;
 			
@@ -108,6 +110,13 @@ public class ExecutionJobVertex implements Serializable {
 		
 		this.parallelism = numTaskVertices;
 		this.taskVertices = new ExecutionVertex[numTaskVertices];
+
+		int vertexNumberOfKeyGroups = jobVertex.getNumberOfKeyGroups();
+		if (vertexNumberOfKeyGroups > 0 && vertexNumberOfKeyGroups < numTaskVertices) {
+			throw new JobException(String.format("The parallelism (%d) of vertex %s exceeds its " +
+				"number of key groups (%d).", numTaskVertices, jobVertex.getName(), vertexNumberOfKeyGroups));
+		}
+		this.numberOfKeyGroups = vertexNumberOfKeyGroups > 0 ? vertexNumberOfKeyGroups : numTaskVertices;
 		
 		this.inputs = new ArrayList<IntermediateResult>(jobVertex.getInputs().size());
 		
@@ -187,6 +196,10 @@ public class ExecutionJobVertex implements Serializable {
 		return parallelism;
 	}
 
+	public int getNumberOfKeyGroups() {
+		return numberOfKeyGroups;
+	}
+
 	public JobID getJobId() {
 		return graph.getJobID();
 	}
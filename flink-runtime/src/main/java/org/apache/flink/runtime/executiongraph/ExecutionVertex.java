@@ -183,6 +183,10 @@ public class ExecutionVertex implements Serializable {
 		return this.jobVertex.getParallelism();
 	}
 
+	public int getNumberOfKeyGroups() {
+		return this.jobVertex.getNumberOfKeyGroups();
+	}
+
 	public int getParallelSubtaskIndex() {
 		return this.subTaskIndex;
 	}
@@ -368,6 +372,10 @@ public class ExecutionVertex implements Serializable {
 	 * If there are more than MAX_DISTINCT_LOCATIONS_TO_CONSIDER different locations of source data, this
 	 * method returns {@code null} to indicate no location preference.
 	 *
+	 * <p>A task that is restarted prefers the instance of its prior execution, because the state backend
+	 * of the task may have kept a local copy of its state there, which is faster to restore than the
+	 * checkpoint.
+	 *
 	 * @return The preferred locations for this vertex execution, or null, if there is no preference.
 	 */
 	public Iterable<Instance> getPreferredLocations() {
@@ -377,6 +385,12 @@ public class ExecutionVertex implements Serializable {
 			return constraintInstances;
 		}
 
+		// then the location of the prior execution, which may hold a local copy of the state
+		Instance priorLocation = getPriorExecutionLocation();
+		if (priorLocation != null) {
+			return Collections.singleton(priorLocation);
+		}
+
 		// otherwise, base the preferred locations on the input connections
 		if (inputEdges == null) {
 			return Collections.emptySet();
@@ -418,6 +432,24 @@ public class ExecutionVertex implements Serializable {
 		}
 	}
 
+	/**
+	 * Gets the instance that the last prior execution of this vertex ran on, if that instance
+	 * is still alive.
+	 *
+	 * @return The instance of the prior execution, or null, if there is none.
+	 */
+	private Instance getPriorExecutionLocation() {
+		if (priorExecutions.isEmpty()) {
+			return null;
+		}
+
+		SimpleSlot priorSlot = priorExecutions.get(priorExecutions.size() - 1).getAssignedResource();
+		if (priorSlot == null || !priorSlot.getInstance().isAlive()) {
+			return null;
+		}
+		return priorSlot.getInstance();
+	}
+
 	// --------------------------------------------------------------------------------------------
 	//   Actions
 	// --------------------------------------------------------------------------------------------
@@ -671,6 +703,10 @@ public class ExecutionVertex implements Serializable {
 		List<BlobKey> jarFiles = getExecutionGraph().getRequiredJarFiles();
 		List<URL> classpaths = getExecutionGraph().getRequiredClasspaths();
 
+		List<SerializedValue<StateHandle<?>>> keyGroupsStates = operatorKvState == null ?
+			Collections.<SerializedValue<StateHandle<?>>>emptyList() :
+			new ArrayList<SerializedValue<StateHandle<?>>>(operatorKvState.values());
+
 		return new TaskDeploymentDescriptor(
 			getJobId(),
 			getExecutionGraph().getJobName(),
@@ -690,6 +726,7 @@ public class ExecutionVertex implements Serializable {
 			classpaths,
 			targetSlot.getRoot().getSlotNumber(),
 			operatorState,
+			keyGroupsStates,
 			recoveryTimestamp);
 	}
 
@@ -369,7 +369,7 @@ final class BufferWriteRequest implements WriteRequest {
 	public void write() throws IOException {
 		final ByteBuffer header = ByteBuffer.allocateDirect(8);
 
-		header.putInt(buffer.isBuffer() ? 1 : 0);
+		header.putInt(BufferFileHeader.getFlags(buffer));
 		header.putInt(buffer.getSize());
 		header.flip();
 
@@ -408,7 +408,7 @@ final class BufferReadRequest implements ReadRequest {
 			fileChannel.read(header);
 			header.flip();
 
-			final boolean isBuffer = header.getInt() == 1;
+			final int flags = header.getInt();
 			final int size = header.getInt();
 
 			if (size > buffer.getMemorySegment().size()) {
@@ -419,9 +419,7 @@ final class BufferReadRequest implements ReadRequest {
 
 			fileChannel.read(buffer.getNioBuffer());
 
-			if (!isBuffer) {
-				buffer.tagAsEvent();
-			}
+			BufferFileHeader.applyFlags(flags, buffer);
 
 			hasReachedEndOfFile.set(fileChannel.size() - fileChannel.position() == 0);
 		}
@@ -462,7 +460,7 @@ final class FileSegmentReadRequest implements ReadRequest {
 
 			final long position = fileChannel.position();
 
-			final boolean isBuffer = header.getInt() == 1;
+			final boolean isBuffer = BufferFileHeader.isBuffer(header.getInt());
 			final int length = header.getInt();
 
 			fileSegment = new FileSegment(fileChannel, position, length, isBuffer);
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.disk.iomanager;
+
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+
+/**
+ * The flags of the header, which precedes every buffer in a buffer file. The header consists of
+ * the flags and the size of the buffer (both int).
+ */
+final class BufferFileHeader {
+
+	/** Flag of data buffers. Buffers without this flag are events. */
+	private static final int IS_BUFFER = 1;
+
+	/** Flag of buffers with compressed data */
+	private static final int IS_COMPRESSED = 2;
+
+	/** Cannot instantiate */
+	private BufferFileHeader() {}
+
+	static int getFlags(Buffer buffer) {
+		int flags = buffer.isBuffer() ? IS_BUFFER : 0;
+
+		if (buffer.isCompressed()) {
+			flags |= IS_COMPRESSED;
+		}
+
+		return flags;
+	}
+
+	static boolean isBuffer(int flags) {
+		return (flags & IS_BUFFER) != 0;
+	}
+
+	static void applyFlags(int flags, Buffer buffer) {
+		if (!isBuffer(flags)) {
+			buffer.tagAsEvent();
+		}
+
+		buffer.setCompressed((flags & IS_COMPRESSED) != 0);
+	}
+}
@@ -51,7 +51,7 @@ public class SynchronousBufferFileReader extends SynchronousFileIOChannel implem
 			fileChannel.read(header);
 			header.flip();
 
-			final boolean isBuffer = header.getInt() == 1;
+			final int flags = header.getInt();
 			final int size = header.getInt();
 
 			if (size > buffer.getMemorySegment().size()) {
@@ -62,9 +62,7 @@ public class SynchronousBufferFileReader extends SynchronousFileIOChannel implem
 
 			fileChannel.read(buffer.getNioBuffer());
 
-			if (!isBuffer) {
-				buffer.tagAsEvent();
-			}
+			BufferFileHeader.applyFlags(flags, buffer);
 
 			hasReachedEndOfFile = fileChannel.size() - fileChannel.position() == 0;
 		}
@@ -24,6 +24,9 @@ import org.apache.flink.runtime.executiongraph.ExecutionAttemptID;
 import org.apache.flink.runtime.instance.ActorGateway;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager.IOMode;
 import org.apache.flink.runtime.io.network.api.writer.ResultPartitionWriter;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressionStatistics;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
+import org.apache.flink.runtime.io.network.buffer.BufferDecompressor;
 import org.apache.flink.runtime.io.network.buffer.BufferPool;
 import org.apache.flink.runtime.io.network.buffer.NetworkBufferPool;
 import org.apache.flink.runtime.io.network.netty.NettyConfig;
@@ -35,8 +38,15 @@ import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionManager;
 import org.apache.flink.runtime.io.network.partition.consumer.SingleInputGate;
 import org.apache.flink.runtime.jobgraph.IntermediateDataSetID;
+import org.apache.flink.runtime.jobgraph.JobVertexID;
 import org.apache.flink.runtime.messages.JobManagerMessages.RequestPartitionState;
 import org.apache.flink.runtime.messages.TaskMessages.FailTask;
+import org.apache.flink.runtime.query.ActorGatewayKvStateRegistryListener;
+import org.apache.flink.runtime.query.KvStateRegistry;
+import org.apache.flink.runtime.query.KvStateServerAddress;
+import org.apache.flink.runtime.query.KvStateServerConfig;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.query.netty.KvStateServer;
 import org.apache.flink.runtime.taskmanager.NetworkEnvironmentConfiguration;
 import org.apache.flink.runtime.taskmanager.Task;
 import org.apache.flink.runtime.taskmanager.TaskManager;
@@ -74,6 +84,13 @@ public class NetworkEnvironment {
 
 	private final NetworkBufferPool networkBufferPool;
 
+	private final BufferCompressionStatistics bufferCompressionStatistics;
+
+	/** Compressor for blocking results, or null if compression is disabled. */
+	private final BufferCompressor bufferCompressor;
+
+	private final BufferDecompressor bufferDecompressor;
+
 	private ConnectionManager connectionManager;
 
 	private ResultPartitionManager partitionManager;
@@ -84,6 +101,12 @@ public class NetworkEnvironment {
 
 	private PartitionStateChecker partitionStateChecker;
 
+	/** The registry of the queryable states of the tasks */
+	private final KvStateRegistry kvStateRegistry;
+
+	/** The server for queries of the queryable states, null if it is not started */
+	private KvStateServer kvStateServer;
+
 	private boolean isShutdown;
 
 	/**
@@ -113,6 +136,14 @@ public class NetworkEnvironment {
 		catch (Throwable t) {
 			throw new IOException("Cannot allocate network buffer pool: " + t.getMessage(), t);
 		}
+
+		// compressed buffers are always decompressed, even if the compression is disabled,
+		// because the producers might run with a different configuration
+		bufferCompressionStatistics = new BufferCompressionStatistics();
+		bufferCompressor = config.compressionEnabled() ? new BufferCompressor(bufferCompressionStatistics) : null;
+		bufferDecompressor = new BufferDecompressor(bufferCompressionStatistics);
+
+		kvStateRegistry = new KvStateRegistry();
 	}
 
 	// --------------------------------------------------------------------------------------------
@@ -135,6 +166,14 @@ public class NetworkEnvironment {
 		return networkBufferPool;
 	}
 
+	public BufferCompressionStatistics getBufferCompressionStatistics() {
+		return bufferCompressionStatistics;
+	}
+
+	public BufferDecompressor getBufferDecompressor() {
+		return bufferDecompressor;
+	}
+
 	public IOMode getDefaultIOMode() {
 		return configuration.ioMode();
 	}
@@ -151,6 +190,28 @@ public class NetworkEnvironment {
 		return configuration.partitionRequestInitialAndMaxBackoff();
 	}
 
+	public KvStateRegistry getKvStateRegistry() {
+		return kvStateRegistry;
+	}
+
+	/**
+	 * Returns the address of the server for queries of the queryable states.
+	 *
+	 * @return The address of the server, or null if the server is not started.
+	 */
+	public KvStateServerAddress getKvStateServerAddress() {
+		synchronized (lock) {
+			return kvStateServer != null ? kvStateServer.getAddress() : null;
+		}
+	}
+
+	/**
+	 * Creates the registry of a task for its queryable states.
+	 */
+	public TaskKvStateRegistry createKvStateTaskRegistry(JobID jobId, JobVertexID jobVertexId) {
+		return kvStateRegistry.createTaskRegistry(jobId, jobVertexId);
+	}
+
 	// --------------------------------------------------------------------------------------------
 	//  Association / Disassociation with JobManager / TaskManager
 	// --------------------------------------------------------------------------------------------
@@ -211,6 +272,33 @@ public class NetworkEnvironment {
 				catch (Throwable t) {
 					throw new IOException("Failed to instantiate network connection manager: " + t.getMessage(), t);
 				}
+
+				// -----  Queryable state  -----
+				final Option<KvStateServerConfig> queryServerConfig = configuration.queryServerConfig();
+				if (queryServerConfig.isDefined()) {
+					KvStateServerConfig serverConfig = queryServerConfig.get();
+
+					LOG.debug("Starting query server");
+					kvStateServer = new KvStateServer(
+						serverConfig.getServerAddress(),
+						serverConfig.getServerPort(),
+						serverConfig.getNumServerThreads(),
+						serverConfig.getNumQueryThreads(),
+						kvStateRegistry);
+
+					try {
+						kvStateServer.start();
+					}
+					catch (Throwable t) {
+						kvStateServer.shutDown();
+						kvStateServer = null;
+						throw new IOException("Failed to start query server: " + t.getMessage(), t);
+					}
+
+					// the JobManager learns where the states of the tasks can be queried
+					kvStateRegistry.registerListener(new ActorGatewayKvStateRegistryListener(
+						jobManagerGateway, kvStateServer.getAddress()));
+				}
 			}
 			else {
 				throw new IllegalStateException(
@@ -227,6 +315,14 @@ public class NetworkEnvironment {
 
 			LOG.debug("Disassociating NetworkEnvironment from TaskManager. Cleaning all intermediate results.");
 
+			// stop serving queries, the JobManager is not notified about registrations any more
+			kvStateRegistry.unregisterListener();
+			if (kvStateServer != null) {
+				LOG.debug("Shutting down query server");
+				kvStateServer.shutDown();
+				kvStateServer = null;
+			}
+
 			// terminate all network connections
 			if (connectionManager != null) {
 				try {
@@ -298,6 +394,10 @@ public class NetworkEnvironment {
 					bufferPool = networkBufferPool.createBufferPool(partition.getNumberOfSubpartitions(), false);
 					partition.registerBufferPool(bufferPool);
 
+					if (bufferCompressor != null) {
+						partition.setBufferCompressor(bufferCompressor);
+					}
+
 					partitionManager.registerResultPartition(partition);
 				}
 				catch (Throwable t) {
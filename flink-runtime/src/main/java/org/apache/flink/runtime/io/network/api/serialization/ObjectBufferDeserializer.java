@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.api.serialization;
+
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.accumulators.AccumulatorRegistry;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.ObjectBuffer;
+import org.apache.flink.runtime.plugable.DeserializationDelegate;
+
+import java.io.IOException;
+
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * Record deserializer for {@link ObjectBuffer} instances. The records are handed to the
+ * {@link DeserializationDelegate} as they are, without any copying.
+ *
+ * <p> Object buffers only contain complete records, so there is never any unfinished data left
+ * after a buffer has been consumed.
+ *
+ * @param <T> The type of the records in the object buffers.
+ */
+public class ObjectBufferDeserializer<T> implements RecordDeserializer<DeserializationDelegate<T>> {
+
+	private ObjectBuffer currentBuffer;
+
+	private int position;
+
+	private AccumulatorRegistry.Reporter reporter;
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public DeserializationResult getNextRecord(DeserializationDelegate<T> target) throws IOException {
+		checkState(currentBuffer != null, "No buffer set.");
+
+		int numberOfRecords = currentBuffer.getNumberOfRecords();
+
+		if (position >= numberOfRecords) {
+			return DeserializationResult.PARTIAL_RECORD;
+		}
+
+		target.setInstance((T) currentBuffer.getRecord(position++));
+
+		if (reporter != null) {
+			reporter.reportNumRecordsIn(1);
+		}
+
+		return position == numberOfRecords
+				? DeserializationResult.LAST_RECORD_FROM_BUFFER
+				: DeserializationResult.INTERMEDIATE_RECORD_FROM_BUFFER;
+	}
+
+	@Override
+	public void setNextMemorySegment(MemorySegment segment, int numBytes) throws IOException {
+		throw new UnsupportedOperationException("Object buffers are not backed by serialized data.");
+	}
+
+	@Override
+	public void setNextBuffer(Buffer buffer) throws IOException {
+		if (!(buffer instanceof ObjectBuffer)) {
+			throw new IllegalArgumentException("Unexpected buffer type: " + buffer);
+		}
+
+		currentBuffer = (ObjectBuffer) buffer;
+		position = 0;
+	}
+
+	@Override
+	public Buffer getCurrentBuffer() {
+		Buffer tmp = currentBuffer;
+		currentBuffer = null;
+		return tmp;
+	}
+
+	@Override
+	public void clear() {
+		currentBuffer = null;
+		position = 0;
+	}
+
+	@Override
+	public boolean hasUnfinishedData() {
+		return false;
+	}
+
+	@Override
+	public void setReporter(AccumulatorRegistry.Reporter reporter) {
+		this.reporter = reporter;
+	}
+}
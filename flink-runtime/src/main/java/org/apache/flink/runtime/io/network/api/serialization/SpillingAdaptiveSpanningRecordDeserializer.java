@@ -188,6 +188,28 @@ public class SpillingAdaptiveSpanningRecordDeserializer<T extends IOReadableWrit
 		this.spanningWrapper.setReporter(reporter);
 	}
 
+	/**
+	 * Returns a copy of the data, which has been added to this deserializer but has not been
+	 * deserialized yet, i.e. the beginning of a spanning record and the remaining bytes of the
+	 * current memory segment. Adding the returned data to a new deserializer restores the state
+	 * of this deserializer.
+	 *
+	 * <p> This must not be called while a complete spanning record can be read.
+	 */
+	public byte[] getUnconsumedData() throws IOException {
+		byte[] spanningData = this.spanningWrapper.getUnconsumedData();
+
+		int nonSpanningRemaining = this.nonSpanningWrapper.remaining();
+		if (nonSpanningRemaining == 0) {
+			return spanningData;
+		}
+
+		byte[] data = new byte[spanningData.length + nonSpanningRemaining];
+		System.arraycopy(spanningData, 0, data, 0, spanningData.length);
+		this.nonSpanningWrapper.segment.get(this.nonSpanningWrapper.position, data, spanningData.length, nonSpanningRemaining);
+		return data;
+	}
+
 
 	// -----------------------------------------------------------------------------------------------------------------
 	
@@ -597,6 +619,40 @@ public class SpillingAdaptiveSpanningRecordDeserializer<T extends IOReadableWrit
 			}
 		}
 		
+		private byte[] getUnconsumedData() throws IOException {
+			if (hasFullRecord()) {
+				throw new IllegalStateException("The deserializer holds a complete record, which has not been read.");
+			}
+
+			if (this.recordLength < 0) {
+				// we only have a part of the length
+				byte[] data = new byte[this.lengthBuffer.position()];
+				System.arraycopy(this.lengthBuffer.array(), 0, data, 0, data.length);
+				return data;
+			}
+
+			byte[] data = new byte[4 + this.accumulatedRecordBytes];
+			ByteBuffer.wrap(data).order(ByteOrder.BIG_ENDIAN).putInt(this.recordLength);
+
+			if (this.spillingChannel != null) {
+				// read the partial record back from the spilling file
+				ByteBuffer target = ByteBuffer.wrap(data, 4, this.accumulatedRecordBytes);
+				long position = 0;
+				while (target.hasRemaining()) {
+					int read = this.spillingChannel.read(target, position);
+					if (read < 0) {
+						throw new EOFException("The spilled partial record is incomplete.");
+					}
+					position += read;
+				}
+			}
+			else {
+				System.arraycopy(this.buffer, 0, data, 4, this.accumulatedRecordBytes);
+			}
+
+			return data;
+		}
+
 		private boolean hasFullRecord() {
 			return this.recordLength >= 0 && this.accumulatedRecordBytes >= this.recordLength;
 		}
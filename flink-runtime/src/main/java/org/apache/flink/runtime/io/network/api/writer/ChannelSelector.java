@@ -38,4 +38,12 @@ public interface ChannelSelector<T extends IOReadableWritable> {
 	 * which the record shall be forwarded
 	 */
 	int[] selectChannels(T record, int numChannels);
+
+	/**
+	 * Returns whether the channel selector always selects all output channels. The records of a
+	 * broadcast channel selector are serialized once for all channels.
+	 *
+	 * @return true if the selector is for broadcast mode.
+	 */
+	boolean isBroadcast();
 }
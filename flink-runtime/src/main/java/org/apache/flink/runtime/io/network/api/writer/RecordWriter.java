@@ -25,6 +25,8 @@ import org.apache.flink.runtime.event.AbstractEvent;
 import org.apache.flink.runtime.io.network.api.serialization.RecordSerializer;
 import org.apache.flink.runtime.io.network.api.serialization.SpanningRecordSerializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.ObjectBuffer;
+import org.apache.flink.runtime.plugable.SerializationDelegate;
 
 import java.io.IOException;
 
@@ -40,11 +42,23 @@ import static org.apache.flink.runtime.io.network.api.serialization.RecordSerial
  * all records have been written with {@link #emit(IOReadableWritable)}. This
  * ensures that all produced records are written to the output stream (incl.
  * partially filled ones).
+ * <p>
+ * If the {@link ChannelSelector} is a broadcast selector, records are serialized
+ * only once into a shared buffer, which is handed to every channel with its
+ * reference count increased.
+ * <p>
+ * If a consumer in the same JVM enabled the object handoff for a channel, records
+ * that are wrapped in a {@link SerializationDelegate} are not serialized for this
+ * channel. Instead, copies of the records are collected in {@link ObjectBuffer}
+ * instances, which are handed to the consumer as they are.
  *
  * @param <T> the type of the record that can be emitted with this record writer
  */
 public class RecordWriter<T extends IOReadableWritable> {
 
+	/** The maximum number of records of an {@link ObjectBuffer} */
+	static final int OBJECT_BUFFER_CAPACITY = 256;
+
 	protected final ResultPartitionWriter writer;
 
 	private final ChannelSelector<T> channelSelector;
@@ -54,6 +68,14 @@ public class RecordWriter<T extends IOReadableWritable> {
 	/** {@link RecordSerializer} per outgoing channel */
 	private final RecordSerializer<T>[] serializers;
 
+	/** {@link RecordSerializer} for all channels of a broadcast {@link ChannelSelector} */
+	private final RecordSerializer<T> broadcastSerializer;
+
+	/** Current {@link ObjectBuffer} per outgoing channel, guarded by the channel's serializer */
+	private final ObjectBuffer[] objectBuffers;
+
+	private AccumulatorRegistry.Reporter reporter;
+
 	public RecordWriter(ResultPartitionWriter writer) {
 		this(writer, new RoundRobinChannelSelector<T>());
 	}
@@ -74,26 +96,20 @@ public class RecordWriter<T extends IOReadableWritable> {
 		for (int i = 0; i < numChannels; i++) {
 			serializers[i] = new SpanningRecordSerializer<T>();
 		}
-	}
 
-	public void emit(T record) throws IOException, InterruptedException {
-		for (int targetChannel : channelSelector.selectChannels(record, numChannels)) {
-			// serialize with corresponding serializer and send full buffer
-			RecordSerializer<T> serializer = serializers[targetChannel];
+		this.broadcastSerializer = new SpanningRecordSerializer<T>();
 
-			synchronized (serializer) {
-				SerializationResult result = serializer.addRecord(record);
-				while (result.isFullBuffer()) {
-					Buffer buffer = serializer.getCurrentBuffer();
+		this.objectBuffers = new ObjectBuffer[numChannels];
+	}
 
-					if (buffer != null) {
-						writeBuffer(buffer, targetChannel, serializer);
-					}
+	public void emit(T record) throws IOException, InterruptedException {
+		if (channelSelector.isBroadcast()) {
+			emitToAllChannels(record);
+			return;
+		}
 
-					buffer = writer.getBufferProvider().requestBufferBlocking();
-					result = serializer.setNextBuffer(buffer);
-				}
-			}
+		for (int targetChannel : channelSelector.selectChannels(record, numChannels)) {
+			emitToChannel(record, targetChannel);
 		}
 	}
 
@@ -102,31 +118,61 @@ public class RecordWriter<T extends IOReadableWritable> {
 	 * the {@link ChannelSelector}.
 	 */
 	public void broadcastEmit(T record) throws IOException, InterruptedException {
+		if (channelSelector.isBroadcast()) {
+			emitToAllChannels(record);
+			return;
+		}
+
+		for (int targetChannel = 0; targetChannel < numChannels; targetChannel++) {
+			emitToChannel(record, targetChannel);
+		}
+	}
+
+	public void broadcastEvent(AbstractEvent event) throws IOException, InterruptedException {
+		flushBroadcastSerializer();
+
 		for (int targetChannel = 0; targetChannel < numChannels; targetChannel++) {
-			// serialize with corresponding serializer and send full buffer
 			RecordSerializer<T> serializer = serializers[targetChannel];
 
 			synchronized (serializer) {
-				SerializationResult result = serializer.addRecord(record);
-				while (result.isFullBuffer()) {
-					Buffer buffer = serializer.getCurrentBuffer();
+				writeObjectBuffer(targetChannel);
 
-					if (buffer != null) {
-						writeBuffer(buffer, targetChannel, serializer);
+				if (serializer.hasData()) {
+					Buffer buffer = serializer.getCurrentBuffer();
+					if (buffer == null) {
+						throw new IllegalStateException("Serializer has data but no buffer.");
 					}
 
+					writeBuffer(buffer, targetChannel, serializer);
+
+					writer.writeEvent(event, targetChannel);
+
 					buffer = writer.getBufferProvider().requestBufferBlocking();
-					result = serializer.setNextBuffer(buffer);
+					serializer.setNextBuffer(buffer);
+				}
+				else {
+					writer.writeEvent(event, targetChannel);
 				}
 			}
 		}
 	}
 
-	public void broadcastEvent(AbstractEvent event) throws IOException, InterruptedException {
+	/**
+	 * Broadcasts the event in front of the data, which is queued in the channels, and returns
+	 * copies of the overtaken data by channel. The partially filled buffers are written before,
+	 * so that the data of every channel ends with a complete record. The data of finished
+	 * channels is <code>null</code>.
+	 */
+	public byte[][] broadcastPriorityEvent(AbstractEvent event) throws IOException, InterruptedException {
+		flushBroadcastSerializer();
+
+		byte[][] overtakenData = new byte[numChannels][];
+
 		for (int targetChannel = 0; targetChannel < numChannels; targetChannel++) {
 			RecordSerializer<T> serializer = serializers[targetChannel];
 
 			synchronized (serializer) {
+				writeObjectBuffer(targetChannel);
 
 				if (serializer.hasData()) {
 					Buffer buffer = serializer.getCurrentBuffer();
@@ -136,23 +182,61 @@ public class RecordWriter<T extends IOReadableWritable> {
 
 					writeBuffer(buffer, targetChannel, serializer);
 
-					writer.writeEvent(event, targetChannel);
+					overtakenData[targetChannel] = writer.writePriorityEvent(event, targetChannel);
 
 					buffer = writer.getBufferProvider().requestBufferBlocking();
 					serializer.setNextBuffer(buffer);
 				}
 				else {
-					writer.writeEvent(event, targetChannel);
+					overtakenData[targetChannel] = writer.writePriorityEvent(event, targetChannel);
+				}
+			}
+		}
+
+		return overtakenData;
+	}
+
+	/**
+	 * Writes the data, which {@link #broadcastPriorityEvent(AbstractEvent)} returned for the
+	 * channels, to the channels again. This must be done before any records are emitted.
+	 */
+	public void replayChannelData(byte[][] channelData) throws IOException, InterruptedException {
+		if (channelData.length != numChannels) {
+			throw new IllegalStateException("The data of " + channelData.length + " channels cannot be " +
+					"written to " + numChannels + " channels.");
+		}
+
+		for (int targetChannel = 0; targetChannel < numChannels; targetChannel++) {
+			byte[] data = channelData[targetChannel];
+			if (data == null) {
+				continue;
+			}
+
+			synchronized (serializers[targetChannel]) {
+				int position = 0;
+				while (position < data.length) {
+					Buffer buffer = writer.getBufferProvider().requestBufferBlocking();
+
+					int numBytes = Math.min(buffer.getMemorySegment().size(), data.length - position);
+					buffer.getMemorySegment().put(0, data, position, numBytes);
+					buffer.setSize(numBytes);
+					position += numBytes;
+
+					writer.writeBuffer(buffer, targetChannel);
 				}
 			}
 		}
 	}
 
 	public void sendEndOfSuperstep() throws IOException, InterruptedException {
+		flushBroadcastSerializer();
+
 		for (int targetChannel = 0; targetChannel < numChannels; targetChannel++) {
 			RecordSerializer<T> serializer = serializers[targetChannel];
 
 			synchronized (serializer) {
+				writeObjectBuffer(targetChannel);
+
 				Buffer buffer = serializer.getCurrentBuffer();
 				if (buffer != null) {
 					writeBuffer(buffer, targetChannel, serializer);
@@ -172,6 +256,8 @@ public class RecordWriter<T extends IOReadableWritable> {
 
 			synchronized (serializer) {
 				try {
+					writeObjectBuffer(targetChannel);
+
 					Buffer buffer = serializer.getCurrentBuffer();
 
 					if (buffer != null) {
@@ -182,10 +268,27 @@ public class RecordWriter<T extends IOReadableWritable> {
 				}
 			}
 		}
+
+		flushBroadcastSerializer();
 	}
 
 	public void clearBuffers() {
-		for (RecordSerializer<?> serializer : serializers) {
+		synchronized (broadcastSerializer) {
+			try {
+				Buffer buffer = broadcastSerializer.getCurrentBuffer();
+
+				if (buffer != null) {
+					buffer.recycle();
+				}
+			}
+			finally {
+				broadcastSerializer.clear();
+			}
+		}
+
+		for (int targetChannel = 0; targetChannel < numChannels; targetChannel++) {
+			RecordSerializer<?> serializer = serializers[targetChannel];
+
 			synchronized (serializer) {
 				try {
 					Buffer buffer = serializer.getCurrentBuffer();
@@ -193,9 +296,14 @@ public class RecordWriter<T extends IOReadableWritable> {
 					if (buffer != null) {
 						buffer.recycle();
 					}
+
+					if (objectBuffers[targetChannel] != null) {
+						objectBuffers[targetChannel].recycle();
+					}
 				}
 				finally {
 					serializer.clear();
+					objectBuffers[targetChannel] = null;
 				}
 			}
 		}
@@ -208,6 +316,10 @@ public class RecordWriter<T extends IOReadableWritable> {
 		for(RecordSerializer<?> serializer : serializers) {
 			serializer.setReporter(reporter);
 		}
+
+		broadcastSerializer.setReporter(reporter);
+
+		this.reporter = reporter;
 	}
 
 	/**
@@ -218,6 +330,8 @@ public class RecordWriter<T extends IOReadableWritable> {
 		for(RecordSerializer<?> serializer : serializers) {
 			serializer.instantiateMetrics(metrics);
 		}
+
+		broadcastSerializer.instantiateMetrics(metrics);
 	}
 
 	/**
@@ -238,4 +352,164 @@ public class RecordWriter<T extends IOReadableWritable> {
 		}
 	}
 
+	/**
+	 * Serializes the record with the serializer of the target channel and writes full buffers
+	 * to the channel. If the object handoff is enabled for the channel, a copy of the record is
+	 * added to the channel's {@link ObjectBuffer} instead.
+	 */
+	private void emitToChannel(T record, int targetChannel) throws IOException, InterruptedException {
+		RecordSerializer<T> serializer = serializers[targetChannel];
+
+		synchronized (serializer) {
+			if (record instanceof SerializationDelegate && writer.isObjectHandoffEnabled(targetChannel)) {
+				handOffToChannel((SerializationDelegate<?>) record, targetChannel, serializer);
+				return;
+			}
+
+			// records must not overtake the records, which have been handed off before
+			writeObjectBuffer(targetChannel);
+
+			SerializationResult result = serializer.addRecord(record);
+			while (result.isFullBuffer()) {
+				Buffer buffer = serializer.getCurrentBuffer();
+
+				if (buffer != null) {
+					writeBuffer(buffer, targetChannel, serializer);
+				}
+
+				buffer = writer.getBufferProvider().requestBufferBlocking();
+				result = serializer.setNextBuffer(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Adds a copy of the record to the {@link ObjectBuffer} of the target channel and writes the
+	 * object buffer to the channel when it is full. Must be called from the scope synchronized
+	 * on the channel's serializer.
+	 */
+	private void handOffToChannel(
+			SerializationDelegate<?> record,
+			int targetChannel,
+			RecordSerializer<T> serializer) throws IOException, InterruptedException {
+
+		// the records, which have been serialized before the object handoff was enabled, go first.
+		// the serializer only holds complete records between calls to emit.
+		if (serializer.hasData()) {
+			try {
+				Buffer buffer = serializer.getCurrentBuffer();
+
+				if (buffer != null) {
+					writeBuffer(buffer, targetChannel, serializer);
+				}
+			}
+			finally {
+				serializer.clear();
+			}
+		}
+
+		ObjectBuffer objectBuffer = objectBuffers[targetChannel];
+
+		if (objectBuffer == null) {
+			Buffer buffer = writer.getBufferProvider().requestBufferBlocking();
+			objectBuffer = new ObjectBuffer(buffer.getMemorySegment(), buffer.getRecycler(), OBJECT_BUFFER_CAPACITY);
+			objectBuffers[targetChannel] = objectBuffer;
+		}
+
+		objectBuffer.add(record.copyInstance());
+
+		if (reporter != null) {
+			reporter.reportNumRecordsOut(1);
+		}
+
+		if (objectBuffer.isFull()) {
+			writeObjectBuffer(targetChannel);
+		}
+	}
+
+	/**
+	 * Writes the {@link ObjectBuffer} of the target channel, if there is one. Must be called from
+	 * the scope synchronized on the channel's serializer.
+	 */
+	private void writeObjectBuffer(int targetChannel) throws IOException {
+		ObjectBuffer objectBuffer = objectBuffers[targetChannel];
+
+		if (objectBuffer != null) {
+			objectBuffers[targetChannel] = null;
+			writer.writeBuffer(objectBuffer, targetChannel);
+		}
+	}
+
+	/**
+	 * Serializes the record once with the broadcast serializer and writes full buffers to all
+	 * channels.
+	 */
+	private void emitToAllChannels(T record) throws IOException, InterruptedException {
+		synchronized (broadcastSerializer) {
+			SerializationResult result = broadcastSerializer.addRecord(record);
+			while (result.isFullBuffer()) {
+				Buffer buffer = broadcastSerializer.getCurrentBuffer();
+
+				if (buffer != null) {
+					writeBufferToAllChannels(buffer);
+				}
+
+				buffer = writer.getBufferProvider().requestBufferBlocking();
+				result = broadcastSerializer.setNextBuffer(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Writes the buffer of the broadcast serializer to all channels. Every channel gets its own
+	 * reference to the buffer, which is recycled after the last channel released it.
+	 *
+	 * <p> The buffer is cleared from the serializer state after a call to this method.
+	 */
+	private void writeBufferToAllChannels(Buffer buffer) throws IOException {
+		for (int i = 1; i < numChannels; i++) {
+			buffer.retain();
+		}
+
+		int targetChannel = 0;
+
+		try {
+			while (targetChannel < numChannels) {
+				// the writer takes over the reference, even if it fails to add the buffer
+				writer.writeBuffer(buffer, targetChannel++);
+			}
+		}
+		finally {
+			broadcastSerializer.clearCurrentBuffer();
+
+			// release the references of the channels, which have not been written to
+			for (; targetChannel < numChannels; targetChannel++) {
+				buffer.recycle();
+			}
+		}
+	}
+
+	/**
+	 * Writes the partially filled buffer of the broadcast serializer to all channels. This has to
+	 * be done before events are written to the channels.
+	 */
+	private void flushBroadcastSerializer() throws IOException {
+		synchronized (broadcastSerializer) {
+			if (!broadcastSerializer.hasData()) {
+				return;
+			}
+
+			try {
+				Buffer buffer = broadcastSerializer.getCurrentBuffer();
+
+				if (buffer != null) {
+					writeBufferToAllChannels(buffer);
+				}
+			}
+			finally {
+				broadcastSerializer.clear();
+			}
+		}
+	}
+
 }
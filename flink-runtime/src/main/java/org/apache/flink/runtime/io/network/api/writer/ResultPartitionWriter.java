@@ -63,6 +63,14 @@ public final class ResultPartitionWriter implements EventListener<TaskEvent> {
 		return partition.getNumberOfSubpartitions();
 	}
 
+	/**
+	 * Returns whether records may be written to the target channel as
+	 * {@link org.apache.flink.runtime.io.network.buffer.ObjectBuffer} instances.
+	 */
+	public boolean isObjectHandoffEnabled(int targetChannel) {
+		return partition.isObjectHandoffEnabled(targetChannel);
+	}
+
 	// ------------------------------------------------------------------------
 	// Data processing
 	// ------------------------------------------------------------------------
@@ -75,6 +83,14 @@ public final class ResultPartitionWriter implements EventListener<TaskEvent> {
 		partition.add(EventSerializer.toBuffer(event), targetChannel);
 	}
 
+	/**
+	 * Writes the event in front of the data, which is queued for the target channel, and
+	 * returns a copy of the overtaken data, or <code>null</code>, if the channel is finished.
+	 */
+	public byte[] writePriorityEvent(AbstractEvent event, int targetChannel) throws IOException {
+		return partition.addPriorityEvent(EventSerializer.toBuffer(event), targetChannel);
+	}
+
 	public void writeEventToAllChannels(AbstractEvent event) throws IOException {
 		for (int i = 0; i < partition.getNumberOfSubpartitions(); i++) {
 			Buffer buffer = EventSerializer.toBuffer(event);
@@ -50,4 +50,9 @@ public class RoundRobinChannelSelector<T extends IOReadableWritable> implements
 
 		return this.nextChannelToSendTo;
 	}
+
+	@Override
+	public boolean isBroadcast() {
+		return false;
+	}
 }
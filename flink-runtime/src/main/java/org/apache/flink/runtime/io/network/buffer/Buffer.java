@@ -40,6 +40,15 @@ public class Buffer {
 
 	private boolean isBuffer;
 
+	/** Flag indicating whether the data of the buffer is compressed (see {@link BufferCompressor}) */
+	private boolean isCompressed;
+
+	/**
+	 * Flag indicating whether the {@link BufferCompressor} already tried to compress the buffer.
+	 * Buffers, which are shared by multiple subpartitions, are only compressed once.
+	 */
+	private boolean isCompressionAttempted;
+
 	/** The current number of references to this buffer */
 	private int referenceCount = 1;
 
@@ -73,6 +82,22 @@ public class Buffer {
 		isBuffer = false;
 	}
 
+	public boolean isCompressed() {
+		return isCompressed;
+	}
+
+	public void setCompressed(boolean isCompressed) {
+		this.isCompressed = isCompressed;
+	}
+
+	public boolean isCompressionAttempted() {
+		return isCompressionAttempted;
+	}
+
+	public void setCompressionAttempted(boolean isCompressionAttempted) {
+		this.isCompressionAttempted = isCompressionAttempted;
+	}
+
 	public MemorySegment getMemorySegment() {
 		synchronized (recycleLock) {
 			ensureNotRecycled();
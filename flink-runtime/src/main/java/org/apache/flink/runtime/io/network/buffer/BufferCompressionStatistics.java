@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.buffer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of the {@link BufferCompressor} and {@link BufferDecompressor} of a task manager.
+ * The statistics are updated concurrently by the task and network I/O threads.
+ */
+public class BufferCompressionStatistics {
+
+	/** The number of bytes of the buffers before compression */
+	private final AtomicLong numBytesBeforeCompression = new AtomicLong();
+
+	/** The number of bytes of the buffers after compression */
+	private final AtomicLong numBytesAfterCompression = new AtomicLong();
+
+	/** The time spent compressing buffers in nanoseconds */
+	private final AtomicLong compressionNanos = new AtomicLong();
+
+	/** The time spent decompressing buffers in nanoseconds */
+	private final AtomicLong decompressionNanos = new AtomicLong();
+
+	void reportCompression(int numBytesBefore, int numBytesAfter, long nanos) {
+		numBytesBeforeCompression.addAndGet(numBytesBefore);
+		numBytesAfterCompression.addAndGet(numBytesAfter);
+		compressionNanos.addAndGet(nanos);
+	}
+
+	void reportDecompression(long nanos) {
+		decompressionNanos.addAndGet(nanos);
+	}
+
+	public long getNumBytesBeforeCompression() {
+		return numBytesBeforeCompression.get();
+	}
+
+	public long getNumBytesAfterCompression() {
+		return numBytesAfterCompression.get();
+	}
+
+	/**
+	 * Returns the ratio of the number of bytes before and after compression, or 1.0 if nothing
+	 * has been compressed yet. Buffers, which were not smaller after compression, are counted
+	 * with their original size.
+	 */
+	public double getCompressionRatio() {
+		long after = numBytesAfterCompression.get();
+		return after == 0 ? 1.0 : (double) numBytesBeforeCompression.get() / after;
+	}
+
+	public long getCompressionTimeMillis() {
+		return compressionNanos.get() / 1_000_000;
+	}
+
+	public long getDecompressionTimeMillis() {
+		return decompressionNanos.get() / 1_000_000;
+	}
+}
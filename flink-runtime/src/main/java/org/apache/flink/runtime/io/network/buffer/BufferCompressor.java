@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.buffer;
+
+import org.apache.flink.core.memory.MemorySegment;
+
+import java.util.zip.Deflater;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Compresses the data of {@link Buffer} instances in place with the deflate codec at its fastest
+ * level. A buffer is only marked as compressed, if the compressed data is smaller than the
+ * original data. Otherwise, the buffer is left unchanged.
+ *
+ * <p>The compressor can be used concurrently by multiple threads. Every thread uses its own
+ * {@link Deflater} and scratch memory.
+ */
+public class BufferCompressor {
+
+	private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+		@Override
+		protected Deflater initialValue() {
+			return new Deflater(Deflater.BEST_SPEED);
+		}
+	};
+
+	private static final ThreadLocal<ScratchBuffers> SCRATCH_BUFFERS = new ThreadLocal<ScratchBuffers>() {
+		@Override
+		protected ScratchBuffers initialValue() {
+			return new ScratchBuffers();
+		}
+	};
+
+	private final BufferCompressionStatistics statistics;
+
+	public BufferCompressor(BufferCompressionStatistics statistics) {
+		this.statistics = checkNotNull(statistics);
+	}
+
+	/**
+	 * Compresses the data of the buffer in place, if the buffer is a non-empty data buffer, which
+	 * has not been compressed before. A buffer, which is added to multiple subpartitions, is
+	 * only compressed (and counted in the statistics) once, even if its data is incompressible.
+	 *
+	 * @return Whether the buffer is compressed after the call.
+	 */
+	public boolean compress(Buffer buffer) {
+		if (!buffer.isBuffer() || buffer.isCompressed() || buffer.isCompressionAttempted() || buffer.getSize() == 0) {
+			return buffer.isCompressed();
+		}
+
+		buffer.setCompressionAttempted(true);
+
+		final long start = System.nanoTime();
+
+		final MemorySegment segment = buffer.getMemorySegment();
+		final int size = buffer.getSize();
+
+		final ScratchBuffers scratch = SCRATCH_BUFFERS.get();
+		final byte[] input = scratch.getInput(size);
+		final byte[] output = scratch.getOutput(size);
+
+		segment.get(0, input, 0, size);
+
+		final Deflater deflater = DEFLATER.get();
+		final int compressedSize;
+
+		try {
+			deflater.setInput(input, 0, size);
+			deflater.finish();
+
+			int length = deflater.deflate(output, 0, size);
+			compressedSize = deflater.finished() && length < size ? length : -1;
+		}
+		finally {
+			deflater.reset();
+		}
+
+		if (compressedSize > 0) {
+			segment.put(0, output, 0, compressedSize);
+			buffer.setSize(compressedSize);
+			buffer.setCompressed(true);
+		}
+
+		statistics.reportCompression(size, compressedSize > 0 ? compressedSize : size, System.nanoTime() - start);
+
+		return compressedSize > 0;
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Per thread scratch memory, which grows with the size of the buffers.
+	 */
+	static final class ScratchBuffers {
+
+		private byte[] input = new byte[0];
+
+		private byte[] output = new byte[0];
+
+		byte[] getInput(int size) {
+			if (input.length < size) {
+				input = new byte[size];
+			}
+			return input;
+		}
+
+		byte[] getOutput(int size) {
+			if (output.length < size) {
+				output = new byte[size];
+			}
+			return output;
+		}
+	}
+
+	static ScratchBuffers getScratchBuffers() {
+		return SCRATCH_BUFFERS.get();
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.buffer;
+
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor.ScratchBuffers;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Decompresses the data of {@link Buffer} instances, which have been compressed by a
+ * {@link BufferCompressor}.
+ *
+ * <p>The decompressor can be used concurrently by multiple threads. Every thread uses its own
+ * {@link Inflater} and scratch memory.
+ */
+public class BufferDecompressor {
+
+	private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>() {
+		@Override
+		protected Inflater initialValue() {
+			return new Inflater();
+		}
+	};
+
+	private final BufferCompressionStatistics statistics;
+
+	public BufferDecompressor(BufferCompressionStatistics statistics) {
+		this.statistics = checkNotNull(statistics);
+	}
+
+	/**
+	 * Decompresses the data of the compressed source buffer into the target buffer. The source
+	 * and target buffer may be the same buffer.
+	 *
+	 * @throws IOException Thrown, if the data is corrupt or does not fit into the target buffer.
+	 */
+	public void decompress(Buffer source, Buffer target) throws IOException {
+		checkArgument(source.isCompressed(), "Buffer is not compressed.");
+
+		final long start = System.nanoTime();
+
+		final int compressedSize = source.getSize();
+		final int capacity = target.getMemorySegment().size();
+
+		final ScratchBuffers scratch = BufferCompressor.getScratchBuffers();
+		final byte[] input = scratch.getInput(compressedSize);
+		final byte[] output = scratch.getOutput(capacity);
+
+		source.getMemorySegment().get(0, input, 0, compressedSize);
+
+		final Inflater inflater = INFLATER.get();
+		final int size;
+
+		try {
+			inflater.setInput(input, 0, compressedSize);
+			size = inflater.inflate(output, 0, capacity);
+
+			if (!inflater.finished()) {
+				throw new IOException("Decompressed data does not fit into a buffer of " + capacity + " bytes.");
+			}
+		}
+		catch (DataFormatException e) {
+			throw new IOException("Corrupt compressed buffer.", e);
+		}
+		finally {
+			inflater.reset();
+		}
+
+		target.getMemorySegment().put(0, output, 0, size);
+		target.setSize(size);
+		target.setCompressed(false);
+
+		statistics.reportDecompression(System.nanoTime() - start);
+	}
+}
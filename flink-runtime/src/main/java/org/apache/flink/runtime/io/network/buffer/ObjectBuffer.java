@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.buffer;
+
+import org.apache.flink.core.memory.MemorySegment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * A buffer, which carries records as objects instead of their serialized bytes. Object buffers
+ * are only exchanged between a producer and a consumer in the same JVM, which agreed on the
+ * object handoff for a pipelined subpartition.
+ *
+ * <p> The buffer still holds a pooled {@link MemorySegment}, which is not written to, but
+ * returned to the producer's buffer pool when the consumer recycles the buffer. This way, the
+ * number of records in flight is bounded and slow consumers back pressure the producer in the
+ * same way as with serialized buffers.
+ */
+public class ObjectBuffer extends Buffer {
+
+	/** The records of the buffer */
+	private final List<Object> records;
+
+	/** The maximum number of records of the buffer */
+	private final int capacity;
+
+	public ObjectBuffer(MemorySegment memorySegment, BufferRecycler recycler, int capacity) {
+		super(memorySegment, recycler);
+
+		checkArgument(capacity > 0, "Capacity must be positive.");
+
+		this.records = new ArrayList<>(capacity);
+		this.capacity = capacity;
+
+		setSize(0);
+	}
+
+	/**
+	 * Adds a record to the buffer. The record must not be modified afterwards.
+	 */
+	public void add(Object record) {
+		checkState(records.size() < capacity, "Object buffer is full.");
+		records.add(record);
+	}
+
+	public boolean isFull() {
+		return records.size() >= capacity;
+	}
+
+	public boolean isEmpty() {
+		return records.isEmpty();
+	}
+
+	public int getNumberOfRecords() {
+		return records.size();
+	}
+
+	public Object getRecord(int index) {
+		return records.get(index);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ObjectBuffer %s [records: %d]", hashCode(), records.size());
+	}
+}
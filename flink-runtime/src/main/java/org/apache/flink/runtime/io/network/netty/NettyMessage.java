@@ -47,6 +47,8 @@ import java.io.ObjectOutputStream;
 import java.nio.ByteBuffer;
 import java.util.List;
 
+import static org.apache.flink.util.Preconditions.checkArgument;
+
 /**
  * A simple and generic interface to serialize messages to Netty's buffer space.
  */
@@ -153,6 +155,9 @@ abstract class NettyMessage {
 			else if (msgId == CloseRequest.ID) {
 				decodedMsg = new CloseRequest();
 			}
+			else if (msgId == AddCredit.ID) {
+				decodedMsg = new AddCredit();
+			}
 			else {
 				throw new IllegalStateException("Received unknown message from producer: " + msg);
 			}
@@ -182,6 +187,8 @@ abstract class NettyMessage {
 
 		boolean isBuffer;
 
+		boolean isCompressed;
+
 		int size;
 
 		ByteBuf retainedSlice;
@@ -202,6 +209,10 @@ abstract class NettyMessage {
 			return isBuffer;
 		}
 
+		boolean isCompressed() {
+			return isCompressed;
+		}
+
 		int getSize() {
 			return size;
 		}
@@ -223,7 +234,7 @@ abstract class NettyMessage {
 
 		@Override
 		ByteBuf write(ByteBufAllocator allocator) throws IOException {
-			int length = 16 + 4 + 1 + 4 + buffer.getSize();
+			int length = 16 + 4 + 1 + 1 + 4 + buffer.getSize();
 
 			ByteBuf result = null;
 			try {
@@ -232,6 +243,7 @@ abstract class NettyMessage {
 				receiverId.writeTo(result);
 				result.writeInt(sequenceNumber);
 				result.writeBoolean(buffer.isBuffer());
+				result.writeBoolean(buffer.isCompressed());
 				result.writeInt(buffer.getSize());
 				result.writeBytes(buffer.getNioBuffer());
 
@@ -256,6 +268,7 @@ abstract class NettyMessage {
 			receiverId = InputChannelID.fromByteBuf(buffer);
 			sequenceNumber = buffer.readInt();
 			isBuffer = buffer.readBoolean();
+			isCompressed = buffer.readBoolean();
 			size = buffer.readInt();
 
 			retainedSlice = buffer.readSlice(size);
@@ -369,13 +382,17 @@ abstract class NettyMessage {
 
 		InputChannelID receiverId;
 
+		/** The number of buffers the receiver has initially reserved for the subpartition. */
+		int credit;
+
 		public PartitionRequest() {
 		}
 
-		PartitionRequest(ResultPartitionID partitionId, int queueIndex, InputChannelID receiverId) {
+		PartitionRequest(ResultPartitionID partitionId, int queueIndex, InputChannelID receiverId, int credit) {
 			this.partitionId = partitionId;
 			this.queueIndex = queueIndex;
 			this.receiverId = receiverId;
+			this.credit = credit;
 		}
 
 		@Override
@@ -383,12 +400,13 @@ abstract class NettyMessage {
 			ByteBuf result = null;
 
 			try {
-				result = allocateBuffer(allocator, ID, 16 + 16 + 4 + 16);
+				result = allocateBuffer(allocator, ID, 16 + 16 + 4 + 16 + 4);
 
 				partitionId.getPartitionId().writeTo(result);
 				partitionId.getProducerId().writeTo(result);
 				result.writeInt(queueIndex);
 				receiverId.writeTo(result);
+				result.writeInt(credit);
 
 				return result;
 			}
@@ -406,11 +424,12 @@ abstract class NettyMessage {
 			partitionId = new ResultPartitionID(IntermediateResultPartitionID.fromByteBuf(buffer), ExecutionAttemptID.fromByteBuf(buffer));
 			queueIndex = buffer.readInt();
 			receiverId = InputChannelID.fromByteBuf(buffer);
+			credit = buffer.readInt();
 		}
 
 		@Override
 		public String toString() {
-			return String.format("PartitionRequest(%s:%d)", partitionId, queueIndex);
+			return String.format("PartitionRequest(%s:%d, credit: %d)", partitionId, queueIndex, credit);
 		}
 	}
 
@@ -541,6 +560,60 @@ abstract class NettyMessage {
 		}
 	}
 
+	/**
+	 * Announces additional credit of a receiver to the producer. Every unit of credit corresponds
+	 * to a buffer, which the receiver has reserved for the data of the subpartition.
+	 */
+	static class AddCredit extends NettyMessage {
+
+		private static final byte ID = 6;
+
+		int credit;
+
+		InputChannelID receiverId;
+
+		public AddCredit() {
+		}
+
+		AddCredit(int credit, InputChannelID receiverId) {
+			checkArgument(credit > 0, "The announced credit should be greater than 0.");
+
+			this.credit = credit;
+			this.receiverId = receiverId;
+		}
+
+		@Override
+		ByteBuf write(ByteBufAllocator allocator) throws Exception {
+			ByteBuf result = null;
+
+			try {
+				result = allocateBuffer(allocator, ID, 4 + 16);
+				result.writeInt(credit);
+				receiverId.writeTo(result);
+
+				return result;
+			}
+			catch (Throwable t) {
+				if (result != null) {
+					result.release();
+				}
+
+				throw new IOException(t);
+			}
+		}
+
+		@Override
+		void readFrom(ByteBuf buffer) throws Exception {
+			credit = buffer.readInt();
+			receiverId = InputChannelID.fromByteBuf(buffer);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("AddCredit(%s : %d)", receiverId, credit);
+		}
+	}
+
 	// ------------------------------------------------------------------------
 
 	private static class ByteBufDataInputView implements DataInputView {
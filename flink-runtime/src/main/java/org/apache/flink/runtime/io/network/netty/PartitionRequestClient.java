@@ -21,6 +21,7 @@ package org.apache.flink.runtime.io.network.netty;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelPromise;
 import org.apache.flink.runtime.event.TaskEvent;
 import org.apache.flink.runtime.io.network.ConnectionID;
 import org.apache.flink.runtime.io.network.netty.exception.LocalTransportException;
@@ -88,7 +89,9 @@ public class PartitionRequestClient {
 	 * Requests a remote intermediate result partition queue.
 	 * <p>
 	 * The request goes to the remote producer, for which this partition
-	 * request client instance has been created.
+	 * request client instance has been created. The request is written by
+	 * the channel's event loop, which announces the initial credit of the
+	 * input channel before any further credit of the channel.
 	 */
 	public ChannelFuture requestSubpartition(
 			final ResultPartitionID partitionId,
@@ -103,10 +106,9 @@ public class PartitionRequestClient {
 
 		partitionRequestHandler.addInputChannel(inputChannel);
 
-		final PartitionRequest request = new PartitionRequest(
-				partitionId, subpartitionIndex, inputChannel.getInputChannelId());
+		final ChannelPromise promise = tcpChannel.newPromise();
 
-		final ChannelFutureListener listener = new ChannelFutureListener() {
+		promise.addListener(new ChannelFutureListener() {
 			@Override
 			public void operationComplete(ChannelFuture future) throws Exception {
 				if (!future.isSuccess()) {
@@ -118,25 +120,35 @@ public class PartitionRequestClient {
 							));
 				}
 			}
+		});
+
+		final Runnable writeRequest = new Runnable() {
+			@Override
+			public void run() {
+				final PartitionRequest request = new PartitionRequest(
+						partitionId, subpartitionIndex, inputChannel.getInputChannelId(),
+						inputChannel.getInitialCredit());
+
+				tcpChannel.writeAndFlush(request, promise);
+			}
 		};
 
 		if (delayMs == 0) {
-			ChannelFuture f = tcpChannel.writeAndFlush(request);
-			f.addListener(listener);
-			return f;
+			tcpChannel.eventLoop().execute(writeRequest);
 		}
 		else {
-			final ChannelFuture[] f = new ChannelFuture[1];
-			tcpChannel.eventLoop().schedule(new Runnable() {
-				@Override
-				public void run() {
-					f[0] = tcpChannel.writeAndFlush(request);
-					f[0].addListener(listener);
-				}
-			}, delayMs, TimeUnit.MILLISECONDS);
-
-			return f[0];
+			tcpChannel.eventLoop().schedule(writeRequest, delayMs, TimeUnit.MILLISECONDS);
 		}
+
+		return promise;
+	}
+
+	/**
+	 * Announces the unannounced credit of the given input channel to the
+	 * remote producer.
+	 */
+	public void notifyCreditAvailable(RemoteInputChannel inputChannel) {
+		partitionRequestHandler.notifyCreditAvailable(inputChannel);
 	}
 
 	/**
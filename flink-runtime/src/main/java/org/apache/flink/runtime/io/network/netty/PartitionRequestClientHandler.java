@@ -19,6 +19,7 @@
 package org.apache.flink.runtime.io.network.netty;
 
 import com.google.common.collect.Maps;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 
@@ -96,6 +97,37 @@ class PartitionRequestClientHandler extends ChannelInboundHandlerAdapter {
 		}
 	}
 
+	/**
+	 * Announces the unannounced credit of the given input channel to the producer.
+	 *
+	 * <p> The credit is read and sent by a task of the channel's event loop. This ensures that
+	 * credit is always announced after the partition request of the input channel, which carries
+	 * the initial credit.
+	 */
+	void notifyCreditAvailable(final RemoteInputChannel inputChannel) {
+		final ChannelHandlerContext ctx = this.ctx;
+
+		if (ctx == null) {
+			return;
+		}
+
+		ctx.channel().eventLoop().execute(new Runnable() {
+			@Override
+			public void run() {
+				if (channelError.get() || !inputChannels.containsKey(inputChannel.getInputChannelId())) {
+					return;
+				}
+
+				int credit = inputChannel.getAndResetUnannouncedCredit();
+
+				if (credit > 0) {
+					ctx.writeAndFlush(new NettyMessage.AddCredit(credit, inputChannel.getInputChannelId()))
+							.addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+				}
+			}
+		});
+	}
+
 	// ------------------------------------------------------------------------
 	// Network events
 	// ------------------------------------------------------------------------
@@ -275,11 +307,16 @@ class PartitionRequestClientHandler extends ChannelInboundHandlerAdapter {
 					return false; // receiver has been cancelled/failed
 				}
 
+				// Data buffers are announced by the producer only if a buffer has been reserved
+				// as credit for them. The buffer provider is only asked as a fallback.
+				Buffer creditBuffer = inputChannel.requestBuffer();
+
 				while (true) {
-					Buffer buffer = bufferProvider.requestBuffer();
+					Buffer buffer = creditBuffer != null ? creditBuffer : bufferProvider.requestBuffer();
 
 					if (buffer != null) {
 						buffer.setSize(bufferOrEvent.getSize());
+						buffer.setCompressed(bufferOrEvent.isCompressed());
 						bufferOrEvent.getNettyBuffer().readBytes(buffer.getNioBuffer());
 
 						inputChannel.onBuffer(buffer, bufferOrEvent.sequenceNumber);
@@ -429,6 +466,7 @@ class PartitionRequestClientHandler extends ChannelInboundHandlerAdapter {
 				}
 
 				buffer.setSize(stagedBufferResponse.getSize());
+				buffer.setCompressed(stagedBufferResponse.isCompressed());
 
 				stagedBufferResponse.getNettyBuffer().readBytes(buffer.getNioBuffer());
 				stagedBufferResponse.releaseBuffer();
@@ -36,15 +36,24 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
 import static org.apache.flink.util.Preconditions.checkNotNull;
+import static org.apache.flink.runtime.io.network.netty.NettyMessage.AddCredit;
 import static org.apache.flink.runtime.io.network.netty.NettyMessage.BufferResponse;
 
 /**
  * A queue of partition queues, which listens for channel writability changed
  * events before writing and flushing {@link Buffer} instances.
+ *
+ * <p> Data buffers are only written to receivers with credit, i.e. receivers
+ * which have reserved a buffer for them. Partition queues without credit are
+ * parked until the receiver announces new credit, so that a slow receiver does
+ * not block the other receivers of the TCP connection. Events and empty buffers
+ * need no buffer at the receiver and are written regardless of credit.
  */
 class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 
@@ -56,6 +65,10 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 
 	private final Set<InputChannelID> released = Sets.newHashSet();
 
+	/** All partition queues, which have not been released, by receiver ID. */
+	private final Map<InputChannelID, SequenceNumberingSubpartitionView> allPartitionQueues =
+			new HashMap<InputChannelID, SequenceNumberingSubpartitionView>();
+
 	private SequenceNumberingSubpartitionView currentPartitionQueue;
 
 	private boolean fatalError;
@@ -71,8 +84,12 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 		super.channelRegistered(ctx);
 	}
 
-	public void enqueue(ResultSubpartitionView partitionQueue, InputChannelID receiverId) throws Exception {
-		ctx.pipeline().fireUserEventTriggered(new SequenceNumberingSubpartitionView(partitionQueue, receiverId));
+	public void enqueue(ResultSubpartitionView partitionQueue, InputChannelID receiverId, int credit) throws Exception {
+		ctx.pipeline().fireUserEventTriggered(new SequenceNumberingSubpartitionView(partitionQueue, receiverId, credit));
+	}
+
+	public void addCredit(InputChannelID receiverId, int credit) {
+		ctx.pipeline().fireUserEventTriggered(new AddCredit(credit, receiverId));
 	}
 
 	public void cancel(InputChannelID receiverId) {
@@ -88,12 +105,33 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 	@Override
 	public void userEventTriggered(ChannelHandlerContext ctx, Object msg) throws Exception {
 		if (msg.getClass() == SequenceNumberingSubpartitionView.class) {
-			boolean triggerWrite = queue.isEmpty();
+			SequenceNumberingSubpartitionView partitionQueue = (SequenceNumberingSubpartitionView) msg;
+
+			if (released.contains(partitionQueue.getReceiverId())) {
+				return;
+			}
+
+			if (!allPartitionQueues.containsKey(partitionQueue.getReceiverId())) {
+				allPartitionQueues.put(partitionQueue.getReceiverId(), partitionQueue);
+			}
+
+			enqueueAndTriggerWrite(ctx, partitionQueue);
+		}
+		else if (msg.getClass() == AddCredit.class) {
+			AddCredit addCredit = (AddCredit) msg;
+
+			SequenceNumberingSubpartitionView partitionQueue = allPartitionQueues.get(addCredit.receiverId);
 
-			queue.add((SequenceNumberingSubpartitionView) msg);
+			// Credit of released or not yet requested queues is ignored. The receiver announces
+			// all of its credit with a (repeated) partition request.
+			if (partitionQueue != null) {
+				partitionQueue.addCredit(addCredit.credit);
 
-			if (triggerWrite) {
-				writeAndFlushNextMessageIfPossible(ctx.channel());
+				if (partitionQueue.isWaitingForCredit) {
+					partitionQueue.isWaitingForCredit = false;
+
+					enqueueAndTriggerWrite(ctx, partitionQueue);
+				}
 			}
 		}
 		else if (msg.getClass() == InputChannelID.class) {
@@ -124,12 +162,30 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 					}
 				}
 			}
+
+			// Cancel the request of a queue, which waits for data or credit
+			SequenceNumberingSubpartitionView waiting = allPartitionQueues.get(toCancel);
+
+			if (waiting != null) {
+				waiting.releaseAllResources();
+				markAsReleased(toCancel);
+			}
 		}
 		else {
 			ctx.fireUserEventTriggered(msg);
 		}
 	}
 
+	private void enqueueAndTriggerWrite(ChannelHandlerContext ctx, SequenceNumberingSubpartitionView partitionQueue) throws IOException {
+		boolean triggerWrite = queue.isEmpty();
+
+		queue.add(partitionQueue);
+
+		if (triggerWrite) {
+			writeAndFlushNextMessageIfPossible(ctx.channel());
+		}
+	}
+
 	@Override
 	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
 		writeAndFlushNextMessageIfPossible(ctx.channel());
@@ -169,7 +225,19 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 							currentPartitionQueue = null;
 						}
 					}
+					else if (requiresCredit(buffer) && !currentPartitionQueue.hasCredit()) {
+						// Keep the buffer until the receiver announces new credit
+						currentPartitionQueue.stashBuffer(buffer);
+						currentPartitionQueue.isWaitingForCredit = true;
+						currentPartitionQueue = null;
+
+						buffer = null;
+					}
 					else {
+						if (requiresCredit(buffer)) {
+							currentPartitionQueue.decrementCredit();
+						}
+
 						BufferResponse resp = new BufferResponse(buffer, currentPartitionQueue.getSequenceNumber(), currentPartitionQueue.getReceiverId());
 
 						if (!buffer.isBuffer() &&
@@ -198,6 +266,14 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 		}
 	}
 
+	/**
+	 * Returns whether the receiver needs a buffer of its buffer pool for the given buffer. Events
+	 * and empty buffers are handled without a buffer of the receiver.
+	 */
+	private static boolean requiresCredit(Buffer buffer) {
+		return buffer.isBuffer() && buffer.getSize() > 0;
+	}
+
 	@Override
 	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
 		releaseAllResources();
@@ -232,6 +308,14 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 
 			markAsReleased(currentPartitionQueue.getReceiverId());
 		}
+
+		// Release the queues, which wait for data or credit
+		for (SequenceNumberingSubpartitionView partitionQueue : allPartitionQueues.values()) {
+			partitionQueue.releaseAllResources();
+			released.add(partitionQueue.getReceiverId());
+		}
+
+		allPartitionQueues.clear();
 	}
 
 	/**
@@ -239,6 +323,7 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 	 */
 	private void markAsReleased(InputChannelID receiverId) {
 		released.add(receiverId);
+		allPartitionQueues.remove(receiverId);
 	}
 
 	// This listener is called after an element of the current queue has been
@@ -267,7 +352,8 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 
 	/**
 	 * Simple wrapper for the partition queue iterator, which increments a
-	 * sequence number for each returned buffer and remembers the receiver ID.
+	 * sequence number for each returned buffer and remembers the receiver ID
+	 * and its credit.
 	 */
 	private class SequenceNumberingSubpartitionView implements ResultSubpartitionView, NotificationListener {
 
@@ -277,9 +363,19 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 
 		private int sequenceNumber = -1;
 
-		private SequenceNumberingSubpartitionView(ResultSubpartitionView queueIterator, InputChannelID receiverId) {
+		/** The number of data buffers the receiver can currently accept. */
+		private int credit;
+
+		/** A data buffer, which has been taken from the queue, but not sent for lack of credit. */
+		private Buffer stashedBuffer;
+
+		/** Flag indicating whether this queue is parked until the receiver announces credit. */
+		private boolean isWaitingForCredit;
+
+		private SequenceNumberingSubpartitionView(ResultSubpartitionView queueIterator, InputChannelID receiverId, int credit) {
 			this.queueIterator = checkNotNull(queueIterator);
 			this.receiverId = checkNotNull(receiverId);
+			this.credit = credit;
 		}
 
 		private InputChannelID getReceiverId() {
@@ -290,8 +386,31 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 			return sequenceNumber;
 		}
 
+		private boolean hasCredit() {
+			return credit > 0;
+		}
+
+		private void addCredit(int additionalCredit) {
+			credit += additionalCredit;
+		}
+
+		private void decrementCredit() {
+			credit--;
+		}
+
+		private void stashBuffer(Buffer buffer) {
+			stashedBuffer = buffer;
+		}
+
 		@Override
 		public Buffer getNextBuffer() throws IOException, InterruptedException {
+			if (stashedBuffer != null) {
+				// The sequence number has already been assigned
+				Buffer buffer = stashedBuffer;
+				stashedBuffer = null;
+				return buffer;
+			}
+
 			Buffer buffer = queueIterator.getNextBuffer();
 
 			if (buffer != null) {
@@ -323,6 +442,11 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 
 		@Override
 		public void releaseAllResources() throws IOException {
+			if (stashedBuffer != null) {
+				stashedBuffer.recycle();
+				stashedBuffer = null;
+			}
+
 			queueIterator.releaseAllResources();
 		}
 
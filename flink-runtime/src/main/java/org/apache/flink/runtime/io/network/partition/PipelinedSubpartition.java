@@ -22,12 +22,15 @@ import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
 import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
+import org.apache.flink.runtime.io.network.buffer.ObjectBuffer;
 import org.apache.flink.runtime.util.event.NotificationListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.ArrayDeque;
 
+import static org.apache.flink.util.Preconditions.checkArgument;
 import static org.apache.flink.util.Preconditions.checkNotNull;
 
 /**
@@ -87,6 +90,55 @@ class PipelinedSubpartition extends ResultSubpartition {
 		return true;
 	}
 
+	@Override
+	public byte[] addPriorityEvent(Buffer event) throws IOException {
+		checkNotNull(event);
+		checkArgument(!event.isBuffer(), "Only events can be priority events.");
+
+		final NotificationListener listener;
+		final byte[] overtakenData;
+
+		synchronized (buffers) {
+			if (isReleased || isFinished) {
+				return null;
+			}
+
+			int numBytes = 0;
+			for (Buffer buffer : buffers) {
+				if (buffer instanceof ObjectBuffer) {
+					throw new IOException("The records of an object buffer cannot be copied.");
+				}
+				else if (buffer.isBuffer()) {
+					numBytes += buffer.getSize();
+				}
+			}
+
+			// Copy the data of the overtaken buffers, which are still sent after the event
+			overtakenData = new byte[numBytes];
+			int position = 0;
+			for (Buffer buffer : buffers) {
+				if (buffer.isBuffer()) {
+					buffer.getMemorySegment().get(0, overtakenData, position, buffer.getSize());
+					position += buffer.getSize();
+				}
+			}
+
+			buffers.addFirst(event);
+			updateStatistics(event);
+
+			// Get the listener...
+			listener = registeredListener;
+			registeredListener = null;
+		}
+
+		// Notify the listener outside of the synchronized block
+		if (listener != null) {
+			listener.onNotification();
+		}
+
+		return overtakenData;
+	}
+
 	@Override
 	public void finish() {
 		final NotificationListener listener;
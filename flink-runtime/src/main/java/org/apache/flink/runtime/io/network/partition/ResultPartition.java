@@ -22,6 +22,7 @@ import org.apache.flink.runtime.executiongraph.IntermediateResultPartition;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager.IOMode;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.buffer.BufferPool;
 import org.apache.flink.runtime.io.network.buffer.BufferPoolOwner;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
@@ -114,6 +115,9 @@ public class ResultPartition implements BufferPoolOwner {
 
 	private BufferPool bufferPool;
 
+	/** Compressor for the data buffers of blocking results, or null if disabled. */
+	private BufferCompressor bufferCompressor;
+
 	private boolean hasNotifiedPipelinedConsumers;
 
 	private boolean isFinished;
@@ -152,6 +156,7 @@ public class ResultPartition implements BufferPoolOwner {
 		// Create the subpartitions.
 		switch (partitionType) {
 			case BLOCKING:
+			case BLOCKING_PERSISTENT:
 				for (int i = 0; i < subpartitions.length; i++) {
 					subpartitions[i] = new SpillableSubpartition(
 							i, this, ioManager, defaultIoMode);
@@ -199,6 +204,17 @@ public class ResultPartition implements BufferPoolOwner {
 		}
 	}
 
+	/**
+	 * Enables the compression of the data buffers, if this is a blocking result. The buffers are
+	 * compressed when they are added, so that they are kept, spilled and sent compressed.
+	 * Pipelined results are not compressed in favour of latency.
+	 */
+	public void setBufferCompressor(BufferCompressor bufferCompressor) {
+		if (!partitionType.isPipelined()) {
+			this.bufferCompressor = checkNotNull(bufferCompressor);
+		}
+	}
+
 	public JobID getJobId() {
 		return jobId;
 	}
@@ -211,6 +227,10 @@ public class ResultPartition implements BufferPoolOwner {
 		return subpartitions.length;
 	}
 
+	public ResultPartitionType getPartitionType() {
+		return partitionType;
+	}
+
 	/**
 	 * Returns whether consumers should be deployed eagerly (as soon as they
 	 * are registered at the result manager of the task manager).
@@ -249,6 +269,12 @@ public class ResultPartition implements BufferPoolOwner {
 
 			final ResultSubpartition subpartition = subpartitions[subpartitionIndex];
 
+			// A buffer, which is added to multiple subpartitions, is compressed when it is added
+			// to the first one. The compressor skips it for the other subpartitions.
+			if (bufferCompressor != null) {
+				bufferCompressor.compress(buffer);
+			}
+
 			synchronized (subpartition) {
 				success = subpartition.add(buffer);
 
@@ -267,6 +293,41 @@ public class ResultPartition implements BufferPoolOwner {
 		}
 	}
 
+	/**
+	 * Adds an event in front of the buffers, which are queued in the subpartition with the given
+	 * index, and returns a copy of the data it overtook.
+	 *
+	 * <p> This is used for the checkpoint barriers of unaligned checkpoints, which must not wait
+	 * for the queued data to be consumed.
+	 */
+	public byte[] addPriorityEvent(Buffer event, int subpartitionIndex) throws IOException {
+		byte[] overtakenData = null;
+
+		try {
+			checkInProduceState();
+
+			final ResultSubpartition subpartition = subpartitions[subpartitionIndex];
+
+			synchronized (subpartition) {
+				overtakenData = subpartition.addPriorityEvent(event);
+
+				// Update statistics
+				totalNumberOfBuffers++;
+				totalNumberOfBytes += event.getSize();
+			}
+		}
+		finally {
+			if (overtakenData != null) {
+				notifyPipelinedConsumers();
+			}
+			else {
+				event.recycle();
+			}
+		}
+
+		return overtakenData;
+	}
+
 	/**
 	 * Finishes the result partition.
 	 *
@@ -348,6 +409,27 @@ public class ResultPartition implements BufferPoolOwner {
 		return subpartitions[index].createReadView(bufferProvider);
 	}
 
+	/**
+	 * Enables the object handoff for the requested subpartition, if the subpartition is
+	 * pipelined. This must only be called for a consumer, which runs in the same JVM.
+	 *
+	 * @return Whether the object handoff has been enabled.
+	 */
+	public boolean enableObjectHandoff(int index) {
+		checkElementIndex(index, subpartitions.length, "Subpartition not found.");
+
+		if (!partitionType.isPipelined()) {
+			return false;
+		}
+
+		subpartitions[index].enableObjectHandoff();
+		return true;
+	}
+
+	public boolean isObjectHandoffEnabled(int index) {
+		return subpartitions[index].isObjectHandoffEnabled();
+	}
+
 	public Throwable getFailureCause() {
 		return cause;
 	}
@@ -411,6 +493,14 @@ public class ResultPartition implements BufferPoolOwner {
 			return;
 		}
 
+		// Persistent results are kept until they are explicitly released
+		if (!partitionType.isReleasedOnConsumption()) {
+			LOG.debug("{}: Received release notification for subpartition {} of persistent result.",
+					this, subpartitionIndex);
+
+			return;
+		}
+
 		int refCnt = pendingReferences.decrementAndGet();
 
 		if (refCnt == 0) {
@@ -21,6 +21,7 @@ package org.apache.flink.runtime.io.network.partition;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Table;
+import org.apache.flink.api.common.JobID;
 import org.apache.flink.runtime.executiongraph.ExecutionAttemptID;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
 import org.apache.flink.runtime.jobgraph.IntermediateResultPartitionID;
@@ -28,6 +29,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static org.apache.flink.util.Preconditions.checkState;
@@ -35,6 +38,10 @@ import static org.apache.flink.util.Preconditions.checkState;
 /**
  * The result partition manager keeps track of all currently produced/consumed partitions of a
  * task manager.
+ *
+ * <p> Partitions of persistent results ({@link ResultPartitionType#BLOCKING_PERSISTENT}) are not
+ * released after they have been consumed, but are kept until the job is removed from the job
+ * manager, see {@link #releasePersistentPartitions(JobID)}.
  */
 public class ResultPartitionManager implements ResultPartitionProvider {
 
@@ -82,6 +89,27 @@ public class ResultPartitionManager implements ResultPartitionProvider {
 		}
 	}
 
+	/**
+	 * Enables the object handoff for a subpartition, which is consumed by a task of this task
+	 * manager.
+	 *
+	 * @return Whether the object handoff has been enabled.
+	 */
+	public boolean enableObjectHandoff(ResultPartitionID partitionId, int subpartitionIndex) {
+		synchronized (registeredPartitions) {
+			final ResultPartition partition = registeredPartitions.get(partitionId.getProducerId(),
+					partitionId.getPartitionId());
+
+			if (partition == null) {
+				return false;
+			}
+
+			LOG.debug("Enabling object handoff for subpartition {} of {}.", subpartitionIndex, partition);
+
+			return partition.enableObjectHandoff(subpartitionIndex);
+		}
+	}
+
 	public void releasePartitionsProducedBy(ExecutionAttemptID executionId) {
 		releasePartitionsProducedBy(executionId, null);
 	}
@@ -105,6 +133,32 @@ public class ResultPartitionManager implements ResultPartitionProvider {
 		}
 	}
 
+	/**
+	 * Releases all partitions of persistent results of the given job.
+	 */
+	public void releasePersistentPartitions(JobID jobId) {
+		synchronized (registeredPartitions) {
+			final List<ResultPartition> toRelease = new ArrayList<>();
+
+			for (ResultPartition partition : registeredPartitions.values()) {
+				if (partition.getJobId().equals(jobId)
+						&& !partition.getPartitionType().isReleasedOnConsumption()) {
+
+					toRelease.add(partition);
+				}
+			}
+
+			for (ResultPartition partition : toRelease) {
+				ResultPartitionID partitionId = partition.getPartitionId();
+
+				registeredPartitions.remove(partitionId.getProducerId(), partitionId.getPartitionId());
+				partition.release();
+			}
+
+			LOG.debug("Released {} persistent partitions of job {}.", toRelease.size(), jobId);
+		}
+	}
+
 	public void shutdown() {
 		synchronized (registeredPartitions) {
 
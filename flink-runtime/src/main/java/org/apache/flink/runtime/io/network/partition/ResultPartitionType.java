@@ -20,11 +20,18 @@ package org.apache.flink.runtime.io.network.partition;
 
 public enum ResultPartitionType {
 
-	BLOCKING(true, false, false),
+	BLOCKING(true, false, false, true),
 
-	PIPELINED(false, true, true),
+	/**
+	 * Blocking result, which is kept by the task manager after it has been consumed and after
+	 * the producing job has finished. The result can be consumed multiple times and is kept on
+	 * local disk until the job is removed from the job manager.
+	 */
+	BLOCKING_PERSISTENT(true, false, false, false),
+
+	PIPELINED(false, true, true, true),
 
-	PIPELINED_PERSISTENT(true, true, true);
+	PIPELINED_PERSISTENT(true, true, true, true);
 
 	/** Does the partition live longer than the consuming task? */
 	private final boolean isPersistent;
@@ -35,13 +42,17 @@ public enum ResultPartitionType {
 	/** Does the partition produce back pressure when not consumed? */
 	private final boolean hasBackPressure;
 
+	/** Is the partition released after it has been consumed? */
+	private final boolean isReleasedOnConsumption;
+
 	/**
 	 * Specifies the behaviour of an intermediate result partition at runtime.
 	 */
-	ResultPartitionType(boolean isPersistent, boolean isPipelined, boolean hasBackPressure) {
+	ResultPartitionType(boolean isPersistent, boolean isPipelined, boolean hasBackPressure, boolean isReleasedOnConsumption) {
 		this.isPersistent = isPersistent;
 		this.isPipelined = isPipelined;
 		this.hasBackPressure = hasBackPressure;
+		this.isReleasedOnConsumption = isReleasedOnConsumption;
 	}
 
 	public boolean hasBackPressure() {
@@ -59,4 +70,8 @@ public enum ResultPartitionType {
 	public boolean isPersistent() {
 		return isPersistent;
 	}
+
+	public boolean isReleasedOnConsumption() {
+		return isReleasedOnConsumption;
+	}
 }
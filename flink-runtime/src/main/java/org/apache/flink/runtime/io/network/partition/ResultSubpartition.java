@@ -42,6 +42,9 @@ public abstract class ResultSubpartition {
 	/** The total number of bytes (both data and event buffers) */
 	private long totalNumberOfBytes;
 
+	/** Flag indicating whether the records may be handed to the consumer as objects */
+	private volatile boolean isObjectHandoffEnabled;
+
 	public ResultSubpartition(int index, ResultPartition parent) {
 		this.index = index;
 		this.parent = parent;
@@ -71,8 +74,35 @@ public abstract class ResultSubpartition {
 		return parent.getFailureCause();
 	}
 
+	/**
+	 * Allows the producer to add {@link org.apache.flink.runtime.io.network.buffer.ObjectBuffer}
+	 * instances to this subpartition. This must only be enabled by a consumer in the same JVM.
+	 */
+	void enableObjectHandoff() {
+		isObjectHandoffEnabled = true;
+	}
+
+	public boolean isObjectHandoffEnabled() {
+		return isObjectHandoffEnabled;
+	}
+
 	abstract public boolean add(Buffer buffer) throws IOException;
 
+	/**
+	 * Adds the event in front of all buffers, which are queued in this subpartition, and returns
+	 * a copy of the data of the overtaken data buffers in their order. Events in the queue are
+	 * overtaken, but not copied.
+	 *
+	 * <p> This is only supported by pipelined subpartitions, whose buffers must not be
+	 * {@link org.apache.flink.runtime.io.network.buffer.ObjectBuffer} instances.
+	 *
+	 * @return The overtaken data, or <code>null</code>, if the event has not been added because
+	 *         the subpartition has been finished or released.
+	 */
+	public byte[] addPriorityEvent(Buffer event) throws IOException {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support priority events.");
+	}
+
 	abstract public void finish() throws IOException;
 
 	abstract public void release() throws IOException;
@@ -38,6 +38,10 @@ import static org.apache.flink.util.Preconditions.checkNotNull;
  *
  * <p> Buffers are kept in-memory as long as possible. If not possible anymore, all buffers are
  * spilled to disk.
+ *
+ * <p> Subpartitions of persistent results, which outlive the producing task, are always spilled
+ * when they are finished, so that they do not occupy network buffers after the producer is done.
+ * They can be consumed multiple times.
  */
 class SpillableSubpartition extends ResultSubpartition {
 
@@ -61,7 +65,7 @@ class SpillableSubpartition extends ResultSubpartition {
 	/** Flag indicating whether the subpartition has been released. */
 	private volatile boolean isReleased;
 
-	/** The read view to consume this subpartition. */
+	/** The (latest) read view to consume this subpartition. */
 	private ResultSubpartitionView readView;
 
 	SpillableSubpartition(int index, ResultPartition parent, IOManager ioManager, IOMode ioMode) {
@@ -97,6 +101,10 @@ class SpillableSubpartition extends ResultSubpartition {
 	@Override
 	public void finish() throws IOException {
 		synchronized (buffers) {
+			if (!isReleasedOnConsumption()) {
+				releaseMemory();
+			}
+
 			if (add(EventSerializer.toBuffer(EndOfPartitionEvent.INSTANCE))) {
 				isFinished = true;
 			}
@@ -181,7 +189,7 @@ class SpillableSubpartition extends ResultSubpartition {
 						"been finished.");
 			}
 
-			if (readView != null) {
+			if (readView != null && isReleasedOnConsumption()) {
 				throw new IllegalStateException("Subpartition is being or already has been " +
 						"consumed, but we currently allow subpartitions to only be consumed once.");
 			}
@@ -216,6 +224,10 @@ class SpillableSubpartition extends ResultSubpartition {
 		}
 	}
 
+	private boolean isReleasedOnConsumption() {
+		return parent.getPartitionType().isReleasedOnConsumption();
+	}
+
 	@Override
 	public String toString() {
 		return String.format("SpillableSubpartition [%d number of buffers (%d bytes)," +
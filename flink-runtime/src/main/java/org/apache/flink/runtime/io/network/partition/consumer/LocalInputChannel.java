@@ -120,6 +120,10 @@ public class LocalInputChannel extends InputChannel implements NotificationListe
 					throw new IOException("Error requesting subpartition.");
 				}
 
+				if (inputGate.isObjectHandoffEnabled()) {
+					partitionManager.enableObjectHandoff(partitionId, subpartitionIndex);
+				}
+
 				getNextLookAhead();
 			}
 		}
@@ -169,9 +173,37 @@ public class LocalInputChannel extends InputChannel implements NotificationListe
 		getNextLookAhead();
 
 		numBytesIn.inc(next.getSize());
+
+		if (next.isCompressed()) {
+			return decompress(next);
+		}
+
 		return next;
 	}
 
+	/**
+	 * Decompresses the buffer of the producer into a buffer of the input gate. The producer's
+	 * buffer may be shared by multiple subpartitions and must not be modified.
+	 */
+	private Buffer decompress(Buffer compressed) throws IOException, InterruptedException {
+		try {
+			Buffer buffer = inputGate.getBufferProvider().requestBufferBlocking();
+
+			try {
+				inputGate.getBufferDecompressor().decompress(compressed, buffer);
+			}
+			catch (IOException e) {
+				buffer.recycle();
+				throw e;
+			}
+
+			return buffer;
+		}
+		finally {
+			compressed.recycle();
+		}
+	}
+
 	// ------------------------------------------------------------------------
 	// Task events
 	// ------------------------------------------------------------------------
@@ -27,12 +27,15 @@ import org.apache.flink.runtime.io.network.buffer.BufferProvider;
 import org.apache.flink.runtime.io.network.netty.PartitionRequestClient;
 import org.apache.flink.runtime.io.network.partition.PartitionNotFoundException;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
+import org.apache.flink.runtime.util.event.EventListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import scala.Tuple2;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -41,11 +44,23 @@ import static org.apache.flink.util.Preconditions.checkState;
 
 /**
  * An input channel, which requests a remote partition queue.
+ *
+ * <p> The channel uses credit-based flow control: it reserves up to {@link #MAX_CREDIT} buffers
+ * of the input gate's buffer pool for the data of the remote subpartition and announces each
+ * reserved buffer as credit to the producer. The producer only sends buffers to channels with
+ * credit, so that a slow channel does not block the TCP connection shared with other channels.
+ *
+ * <p> The first reserved buffer is exclusive to the channel, because the pool guarantees one
+ * buffer per input channel. Further (floating) buffers are only reserved if the input gate grants
+ * them from the spare buffers of the pool.
  */
 public class RemoteInputChannel extends InputChannel {
 
 	private static final Logger LOG = LoggerFactory.getLogger(RemoteInputChannel.class);
 
+	/** The maximum number of buffers reserved for (and announced as credit to) the producer. */
+	static final int MAX_CREDIT = 2;
+
 	/** ID to distinguish this channel from other channels sharing the same TCP connection. */
 	private final InputChannelID id = new InputChannelID();
 
@@ -61,6 +76,30 @@ public class RemoteInputChannel extends InputChannel {
 	 */
 	private final Queue<Buffer> receivedBuffers = new ArrayDeque<Buffer>();
 
+	/**
+	 * The buffers reserved for data of the producer, which have been (or will be) announced as
+	 * credit. A reserved buffer is handed out to the network I/O thread for every received buffer.
+	 */
+	private final Queue<Buffer> creditBuffers = new ArrayDeque<Buffer>();
+
+	/** Listener for buffers of the buffer pool, which are reserved as credit when available. */
+	private final CreditBufferListener creditBufferListener = new CreditBufferListener();
+
+	/** The number of reserved buffers, which have not been announced to the producer yet. */
+	private int unannouncedCredit;
+
+	/** The number of reserved buffers beyond the exclusive one, granted by the input gate. */
+	private int numberOfFloatingCreditBuffers;
+
+	/**
+	 * The number of announced credits, whose buffers have been revoked. Reserved buffers are
+	 * not announced again until the producer has used up this credit.
+	 */
+	private int revokedCredit;
+
+	/** Flag indicating whether the credit buffer listener is registered at the buffer pool. */
+	private boolean isWaitingForCreditBuffer;
+
 	/**
 	 * Flag indicating whether this channel has been released. Either called by the receiving task
 	 * thread or the task manager actor.
@@ -117,6 +156,8 @@ public class RemoteInputChannel extends InputChannel {
 			partitionRequestClient = connectionManager
 					.createPartitionRequestClient(connectionId);
 
+			requestCreditBuffers();
+
 			partitionRequestClient.requestSubpartition(partitionId, subpartitionIndex, this, 0);
 		}
 	}
@@ -143,17 +184,31 @@ public class RemoteInputChannel extends InputChannel {
 
 		checkError();
 
+		final Buffer buffer;
+
 		synchronized (receivedBuffers) {
-			Buffer buffer = receivedBuffers.poll();
+			buffer = receivedBuffers.poll();
 
 			// Sanity check that channel is only queried after a notification
 			if (buffer == null) {
 				throw new IOException("Queried input channel for data although non is available.");
 			}
+		}
 
-			numBytesIn.inc(buffer.getSize());
-			return buffer;
+		numBytesIn.inc(buffer.getSize());
+
+		// The buffer has been copied from the network and belongs to this channel
+		if (buffer.isCompressed()) {
+			try {
+				inputGate.getBufferDecompressor().decompress(buffer, buffer);
+			}
+			catch (IOException e) {
+				buffer.recycle();
+				throw e;
+			}
 		}
+
+		return buffer;
 	}
 
 	// ------------------------------------------------------------------------
@@ -197,6 +252,28 @@ public class RemoteInputChannel extends InputChannel {
 				}
 			}
 
+			// Recycle the reserved buffers outside of the lock, because the buffer pool might
+			// notify the credit buffer listener concurrently while holding its own lock.
+			final List<Buffer> reservedBuffers;
+			final int numberOfFloatingBuffers;
+			synchronized (creditBuffers) {
+				reservedBuffers = new ArrayList<Buffer>(creditBuffers);
+				creditBuffers.clear();
+				unannouncedCredit = 0;
+				revokedCredit = 0;
+
+				numberOfFloatingBuffers = numberOfFloatingCreditBuffers;
+				numberOfFloatingCreditBuffers = 0;
+			}
+
+			for (int i = 0; i < numberOfFloatingBuffers; i++) {
+				inputGate.releaseFloatingCreditBuffer(this);
+			}
+
+			for (Buffer buffer : reservedBuffers) {
+				buffer.recycle();
+			}
+
 			// The released flag has to be set before closing the connection to ensure that
 			// buffers received concurrently with closing are properly recycled.
 			if (partitionRequestClient != null) {
@@ -239,6 +316,100 @@ public class RemoteInputChannel extends InputChannel {
 		return inputGate.getBufferProvider();
 	}
 
+	/**
+	 * Returns one of the buffers, which have been reserved for received data and announced as
+	 * credit to the producer, or <code>null</code> if no reserved buffer is available. A new
+	 * buffer is reserved in exchange for the returned one.
+	 */
+	public Buffer requestBuffer() throws IOException {
+		final Buffer buffer;
+		boolean isFloatingBuffer = false;
+
+		synchronized (creditBuffers) {
+			buffer = creditBuffers.poll();
+
+			if (buffer == null) {
+				// The producer used a credit, whose buffer has been revoked
+				if (revokedCredit > 0) {
+					revokedCredit--;
+				}
+			}
+			else if (numberOfFloatingCreditBuffers > 0) {
+				numberOfFloatingCreditBuffers--;
+				isFloatingBuffer = true;
+			}
+		}
+
+		if (isFloatingBuffer) {
+			inputGate.releaseFloatingCreditBuffer(this);
+		}
+
+		if (buffer != null) {
+			requestCreditBuffers();
+		}
+
+		return buffer;
+	}
+
+	/**
+	 * Returns the credit for the initial partition request, which is the number of currently
+	 * reserved buffers. This resets the unannounced credit.
+	 */
+	public int getInitialCredit() {
+		synchronized (creditBuffers) {
+			unannouncedCredit = 0;
+			return creditBuffers.size();
+		}
+	}
+
+	/**
+	 * Returns the credit, which has not been announced to the producer yet, and resets it.
+	 */
+	public int getAndResetUnannouncedCredit() {
+		synchronized (creditBuffers) {
+			int credit = unannouncedCredit;
+			unannouncedCredit = 0;
+			return credit;
+		}
+	}
+
+	/**
+	 * Recycles one of the floating buffers, if the channel holds any. The credit of the buffer has
+	 * been announced to the producer already. If the producer uses it, the received data is
+	 * copied to a buffer of the pool like without credit.
+	 */
+	void revokeFloatingCreditBuffer() {
+		Buffer buffer = null;
+
+		synchronized (creditBuffers) {
+			if (numberOfFloatingCreditBuffers > 0) {
+				buffer = creditBuffers.poll();
+				numberOfFloatingCreditBuffers--;
+
+				if (unannouncedCredit > 0) {
+					unannouncedCredit--;
+				}
+				else {
+					revokedCredit++;
+				}
+			}
+		}
+
+		if (buffer != null) {
+			inputGate.releaseFloatingCreditBuffer(this);
+			buffer.recycle();
+		}
+	}
+
+	/**
+	 * Returns the number of reserved buffers.
+	 */
+	public int getNumberOfCreditBuffers() {
+		synchronized (creditBuffers) {
+			return creditBuffers.size();
+		}
+	}
+
 	public void onBuffer(Buffer buffer, int sequenceNumber) {
 		boolean success = false;
 
@@ -287,6 +458,163 @@ public class RemoteInputChannel extends InputChannel {
 		setError(cause);
 	}
 
+	// ------------------------------------------------------------------------
+	// Credit
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Reserves buffers of the input gate's buffer pool until {@link #MAX_CREDIT} buffers are
+	 * reserved. The first buffer is exclusive to this channel. If the pool has no buffer
+	 * available for it, a listener is registered, which reserves the next recycled buffer of the
+	 * pool. Further buffers are only requested, if the input gate grants them as floating buffers.
+	 *
+	 * <p> The buffer pool is never called while holding the lock of the reserved buffers, because
+	 * the pool notifies the listener while holding its own lock.
+	 */
+	private void requestCreditBuffers() throws IOException {
+		final BufferProvider bufferProvider = getBufferProvider();
+
+		if (bufferProvider == null) {
+			return;
+		}
+
+		while (true) {
+			final boolean isFloatingBuffer;
+
+			synchronized (creditBuffers) {
+				if (isWaitingForCreditBuffer || creditBuffers.size() >= MAX_CREDIT || isReleased.get()) {
+					return;
+				}
+
+				isFloatingBuffer = !creditBuffers.isEmpty();
+			}
+
+			if (isFloatingBuffer && !inputGate.tryReserveFloatingCreditBuffer(this)) {
+				return;
+			}
+
+			Buffer buffer = bufferProvider.requestBuffer();
+
+			if (buffer != null) {
+				if (!addCreditBuffer(buffer, isFloatingBuffer)) {
+					return;
+				}
+			}
+			else if (isFloatingBuffer) {
+				// Only the exclusive buffer is worth waiting for
+				inputGate.releaseFloatingCreditBuffer(this);
+				return;
+			}
+			else {
+				synchronized (creditBuffers) {
+					isWaitingForCreditBuffer = true;
+				}
+
+				if (bufferProvider.addListener(creditBufferListener)) {
+					// The pool might have shrunk below the floating buffers reserved before
+					inputGate.revokeExcessFloatingCreditBuffers();
+					return;
+				}
+
+				synchronized (creditBuffers) {
+					isWaitingForCreditBuffer = false;
+				}
+
+				if (bufferProvider.isDestroyed()) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds a reserved buffer and notifies the producer about the new credit. A floating buffer
+	 * is only kept in addition to the exclusive buffer, otherwise its reservation at the input
+	 * gate is released.
+	 *
+	 * @return Whether more buffers may be reserved, which is not the case if the channel has
+	 * been released or enough buffers are reserved.
+	 */
+	private boolean addCreditBuffer(Buffer buffer, boolean isFloatingBuffer) {
+		final PartitionRequestClient client;
+		final boolean canReserveMore;
+		boolean releaseFloatingBuffer = isFloatingBuffer;
+
+		synchronized (creditBuffers) {
+			if (isReleased.get() || creditBuffers.size() >= MAX_CREDIT) {
+				client = null;
+				canReserveMore = false;
+			}
+			else if (!isFloatingBuffer && !creditBuffers.isEmpty()) {
+				// The exclusive buffer has been reserved concurrently
+				client = null;
+				canReserveMore = true;
+			}
+			else {
+				// A floating buffer becomes the exclusive one, if the channel has no buffer left
+				if (!creditBuffers.isEmpty()) {
+					numberOfFloatingCreditBuffers++;
+					releaseFloatingBuffer = false;
+				}
+
+				creditBuffers.add(buffer);
+				buffer = null;
+				canReserveMore = true;
+
+				if (revokedCredit > 0) {
+					// The producer still has the credit of a revoked buffer
+					revokedCredit--;
+					client = null;
+				}
+				else {
+					unannouncedCredit++;
+					client = partitionRequestClient;
+				}
+			}
+		}
+
+		if (releaseFloatingBuffer) {
+			inputGate.releaseFloatingCreditBuffer(this);
+		}
+
+		if (buffer != null) {
+			buffer.recycle();
+		}
+
+		if (client != null) {
+			client.notifyCreditAvailable(this);
+		}
+
+		return canReserveMore;
+	}
+
+	/**
+	 * Reserves buffers, which become available in the buffer pool after a previous request failed.
+	 */
+	private class CreditBufferListener implements EventListener<Buffer> {
+
+		@Override
+		public void onEvent(Buffer buffer) {
+			synchronized (creditBuffers) {
+				isWaitingForCreditBuffer = false;
+			}
+
+			// The buffer pool has been destroyed
+			if (buffer == null) {
+				return;
+			}
+
+			try {
+				if (addCreditBuffer(buffer, false)) {
+					requestCreditBuffers();
+				}
+			}
+			catch (Throwable t) {
+				setError(t);
+			}
+		}
+	}
+
 	public static class BufferReorderingException extends IOException {
 
 		private static final long serialVersionUID = -888282210356266816L;
@@ -31,6 +31,8 @@ import org.apache.flink.runtime.io.network.NetworkEnvironment;
 import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
 import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressionStatistics;
+import org.apache.flink.runtime.io.network.buffer.BufferDecompressor;
 import org.apache.flink.runtime.io.network.buffer.BufferPool;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
 import org.apache.flink.runtime.io.network.netty.PartitionStateChecker;
@@ -149,11 +151,23 @@ public class SingleInputGate implements InputGate {
 	 */
 	private BufferPool bufferPool;
 
+	/**
+	 * The remote input channels holding floating credit buffers, once for each floating buffer.
+	 * Guarded by itself and never held while calling the buffer pool or the channels.
+	 */
+	private final List<RemoteInputChannel> floatingCreditBufferHolders = new ArrayList<RemoteInputChannel>();
+
+	/** Decompressor for buffers with compressed data. Only initialized if actually needed. */
+	private BufferDecompressor bufferDecompressor;
+
 	private boolean hasReceivedAllEndOfPartitionEvents;
 
 	/** Flag indicating whether partitions have been requested. */
 	private boolean requestedPartitionsFlag;
 
+	/** Flag indicating whether local channels may receive records as objects. */
+	private volatile boolean isObjectHandoffEnabled;
+
 	/** Flag indicating whether all resources have been released. */
 	private volatile boolean isReleased;
 
@@ -212,6 +226,37 @@ public class SingleInputGate implements InputGate {
 		return bufferPool;
 	}
 
+	boolean isObjectHandoffEnabled() {
+		return isObjectHandoffEnabled;
+	}
+
+	/**
+	 * Returns the decompressor for the compressed buffers of the input channels. Must only be
+	 * called by the consuming task.
+	 */
+	BufferDecompressor getBufferDecompressor() {
+		if (bufferDecompressor == null) {
+			bufferDecompressor = new BufferDecompressor(new BufferCompressionStatistics());
+		}
+		return bufferDecompressor;
+	}
+
+	public void setBufferDecompressor(BufferDecompressor bufferDecompressor) {
+		this.bufferDecompressor = checkNotNull(bufferDecompressor);
+	}
+
+	/**
+	 * Allows the local input channels of this gate to receive records as objects instead of
+	 * serialized buffers (see {@link org.apache.flink.runtime.io.network.buffer.ObjectBuffer}).
+	 *
+	 * <p> The consumer has to be able to read object buffers and must not spill the buffers of
+	 * this gate. This has to be enabled before the partitions are requested.
+	 */
+	public void enableObjectHandoff() {
+		checkState(!requestedPartitionsFlag, "Partitions have already been requested.");
+		isObjectHandoffEnabled = true;
+	}
+
 	@Override
 	public int getPageSize() {
 		if (bufferPool != null) {
@@ -222,6 +267,77 @@ public class SingleInputGate implements InputGate {
 		}
 	}
 
+	// ------------------------------------------------------------------------
+	// Credit buffers
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Reserves a floating credit buffer for a remote input channel. The buffer pool only
+	 * guarantees one buffer per input channel, which every remote channel may reserve as its
+	 * exclusive credit buffer. Further credit buffers are only granted from the spare buffers of
+	 * the pool beyond these, so that idle channels cannot take the buffers, which a channel with
+	 * data needs for its first credit.
+	 *
+	 * @return Whether the channel may request a floating buffer from the pool. The reservation
+	 * has to be released via {@link #releaseFloatingCreditBuffer(RemoteInputChannel)}.
+	 */
+	boolean tryReserveFloatingCreditBuffer(RemoteInputChannel channel) {
+		final int numberOfSpareBuffers = getNumberOfSpareBuffers();
+
+		synchronized (floatingCreditBufferHolders) {
+			if (floatingCreditBufferHolders.size() < numberOfSpareBuffers) {
+				floatingCreditBufferHolders.add(channel);
+				return true;
+			}
+			return false;
+		}
+	}
+
+	void releaseFloatingCreditBuffer(RemoteInputChannel channel) {
+		synchronized (floatingCreditBufferHolders) {
+			floatingCreditBufferHolders.remove(channel);
+		}
+	}
+
+	/**
+	 * Revokes floating credit buffers, if more of them are reserved than the pool has spare
+	 * buffers. This happens when the pool shrinks after the buffers have been reserved. It is
+	 * called by channels, which wait for their exclusive buffer.
+	 */
+	void revokeExcessFloatingCreditBuffers() {
+		final int numberOfSpareBuffers = getNumberOfSpareBuffers();
+		final List<RemoteInputChannel> channelsToRevoke;
+
+		synchronized (floatingCreditBufferHolders) {
+			int numberOfExcessBuffers = floatingCreditBufferHolders.size() - numberOfSpareBuffers;
+			if (numberOfExcessBuffers <= 0) {
+				return;
+			}
+
+			channelsToRevoke = new ArrayList<RemoteInputChannel>(
+					floatingCreditBufferHolders.subList(0, numberOfExcessBuffers));
+		}
+
+		// The channels recycle the revoked buffers to the pool, which must not happen while
+		// holding the lock of the holders.
+		for (RemoteInputChannel channel : channelsToRevoke) {
+			channel.revokeFloatingCreditBuffer();
+		}
+	}
+
+	int getNumberOfFloatingCreditBuffers() {
+		synchronized (floatingCreditBufferHolders) {
+			return floatingCreditBufferHolders.size();
+		}
+	}
+
+	private int getNumberOfSpareBuffers() {
+		// The pool is not called while holding the lock of the holders, because it notifies
+		// the buffer listeners of the channels while holding its own lock.
+		final BufferPool pool = bufferPool;
+		return pool != null ? pool.getNumBuffers() - numberOfInputChannels : 0;
+	}
+
 	// ------------------------------------------------------------------------
 	// Setup/Life-cycle
 	// ------------------------------------------------------------------------
@@ -518,6 +634,10 @@ public class SingleInputGate implements InputGate {
 				owningTaskName, jobId, executionId, consumedResultId, consumedSubpartitionIndex,
 				icdd.length, networkEnvironment.getPartitionStateChecker(), metrics);
 
+		if (networkEnvironment.getBufferDecompressor() != null) {
+			inputGate.setBufferDecompressor(networkEnvironment.getBufferDecompressor());
+		}
+
 		// Create the input channels. There is one input channel for each consumed partition.
 		final InputChannel[] inputChannels = new InputChannel[icdd.length];
 
@@ -57,6 +57,9 @@ public class JobVertex implements java.io.Serializable {
 	/** Number of subtasks to split this task into at runtime.*/
 	private int parallelism = ExecutionConfig.PARALLELISM_DEFAULT;
 
+	/** Number of key groups into which the keyed state of this task is split.*/
+	private int numberOfKeyGroups = ExecutionConfig.PARALLELISM_DEFAULT;
+
 	/** Custom configuration passed to the assigned task at runtime. */
 	private Configuration configuration;
 
@@ -234,6 +237,29 @@ public class JobVertex implements java.io.Serializable {
 		this.parallelism = parallelism;
 	}
 
+	/**
+	 * Gets the number of key groups of the task, which is the maximum parallelism to which
+	 * the keyed state of the task can be scaled.
+	 *
+	 * @return The number of key groups, or {@link ExecutionConfig#PARALLELISM_DEFAULT} if the
+	 *         task uses one key group per parallel subtask.
+	 */
+	public int getNumberOfKeyGroups() {
+		return numberOfKeyGroups;
+	}
+
+	/**
+	 * Sets the number of key groups of the task.
+	 *
+	 * @param numberOfKeyGroups The number of key groups of the task.
+	 */
+	public void setNumberOfKeyGroups(int numberOfKeyGroups) {
+		if (numberOfKeyGroups < 1) {
+			throw new IllegalArgumentException("The number of key groups must be at least one.");
+		}
+		this.numberOfKeyGroups = numberOfKeyGroups;
+	}
+
 	public InputSplitSource<?> getInputSplitSource() {
 		return inputSplitSource;
 	}
@@ -20,6 +20,8 @@ package org.apache.flink.runtime.jobgraph.tasks;
 
 import org.apache.flink.runtime.state.StateHandle;
 
+import java.util.List;
+
 /**
  * This interface must be implemented by any invokable that has recoverable state and participates
  * in checkpointing.
@@ -29,11 +31,17 @@ public interface StatefulTask<T extends StateHandle<?>> {
 	/**
 	 * Sets the initial state of the operator, upon recovery. The initial state is typically
 	 * a snapshot of the state from a previous execution.
+	 *
+	 * <p>The keyed state is given as the list of key group snapshots that overlap with the key
+	 * groups assigned to this task. If the parallelism changed since the snapshots were taken,
+	 * a snapshot may contain state for key groups that belong to other tasks, which must be
+	 * skipped upon restore.
 	 * 
-	 * @param stateHandle The handle to the state.
+	 * @param stateHandle The handle to the non-keyed state, may be null.
+	 * @param keyGroupsStateHandles The handles to the keyed state, may be empty.
 	 * @param recoveryTimestamp Global recovery timestamp.
 	 */
-	void setInitialState(T stateHandle, long recoveryTimestamp) throws Exception;
+	void setInitialState(T stateHandle, List<T> keyGroupsStateHandles, long recoveryTimestamp) throws Exception;
 
 	/**
 	 * This method is either called directly and asynchronously by the checkpoint
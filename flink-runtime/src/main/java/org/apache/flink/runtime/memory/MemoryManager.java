@@ -70,6 +70,9 @@ public class MemoryManager {
 	/** Memory segments allocated per memory owner */
 	private final HashMap<Object, Set<MemorySegment>> allocatedSegments;
 
+	/** Number of pages reserved per memory owner, for memory that is used outside of memory segments */
+	private final HashMap<Object, Integer> reservedPages;
+
 	/** The type of memory governed by this memory manager */
 	private final MemoryType memoryType;
 	
@@ -153,6 +156,7 @@ public class MemoryManager {
 		}
 
 		this.allocatedSegments = new HashMap<Object, Set<MemorySegment>>();
+		this.reservedPages = new HashMap<Object, Integer>();
 		this.isPreAllocated = preAllocateMemory;
 
 		this.numNonAllocatedPages = preAllocateMemory ? 0 : this.totalNumPages;
@@ -494,6 +498,92 @@ public class MemoryManager {
 		// -------------------- END CRITICAL SECTION -------------------
 	}
 
+	// ------------------------------------------------------------------------
+	//  Memory reservation
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Reserves memory for an owner that uses the memory outside of memory segments, for example
+	 * in native libraries. The reserved memory is no longer available for allocation as memory
+	 * segments. If the memory manager pre-allocated the segments, the segments of the reserved
+	 * memory are dropped, so that their memory can be reclaimed.
+	 *
+	 * @param owner The owner to associate with the reserved memory.
+	 * @param size The number of bytes to reserve, rounded up to a multiple of the page size.
+	 * @throws MemoryAllocationException Thrown, if this memory manager does not have the requested
+	 *                                   amount of memory any more.
+	 */
+	public void reserveMemory(Object owner, long size) throws MemoryAllocationException {
+		if (owner == null) {
+			throw new IllegalArgumentException("The memory owner must not be null.");
+		}
+		if (size < 0) {
+			throw new IllegalArgumentException("The size of the reserved memory must not be negative.");
+		}
+
+		final long numPagesLong = (size + pageSize - 1) / pageSize;
+
+		// -------------------- BEGIN CRITICAL SECTION -------------------
+		synchronized (lock)
+		{
+			if (isShutDown) {
+				throw new IllegalStateException("Memory manager has been shut down.");
+			}
+
+			final int numAvailablePages = memoryPool.getNumberOfAvailableMemorySegments() + numNonAllocatedPages;
+			if (numPagesLong > numAvailablePages) {
+				throw new MemoryAllocationException("Could not reserve " + numPagesLong + " pages. Only " +
+						numAvailablePages + " pages are remaining.");
+			}
+
+			final int numPages = (int) numPagesLong;
+			if (isPreAllocated) {
+				for (int i = numPages; i > 0; i--) {
+					memoryPool.requestSegmentFromPool(owner).free();
+				}
+			}
+			else {
+				numNonAllocatedPages -= numPages;
+			}
+
+			Integer reservedForOwner = reservedPages.get(owner);
+			reservedPages.put(owner, reservedForOwner == null ? numPages : reservedForOwner + numPages);
+		}
+		// -------------------- END CRITICAL SECTION -------------------
+	}
+
+	/**
+	 * Releases all memory that the given owner reserved through {@link #reserveMemory(Object, long)}.
+	 * Releasing memory of a memory manager that has been shut down has no effect.
+	 *
+	 * @param owner The owner of the reserved memory.
+	 */
+	public void releaseReservedMemory(Object owner) {
+		if (owner == null) {
+			return;
+		}
+
+		// -------------------- BEGIN CRITICAL SECTION -------------------
+		synchronized (lock)
+		{
+			final Integer numPages = reservedPages.remove(owner);
+			if (numPages == null || isShutDown) {
+				return;
+			}
+
+			if (isPreAllocated) {
+				// replace the segments that were dropped when the memory was reserved
+				for (int i = numPages; i > 0; i--) {
+					memoryPool.returnSegmentToPool(memoryPool.allocateNewSegment(owner));
+				}
+			}
+			else {
+				numNonAllocatedPages += numPages;
+			}
+		}
+		// -------------------- END CRITICAL SECTION -------------------
+	}
+
 	// ------------------------------------------------------------------------
 	//  Properties, sizes and size conversions
 	// ------------------------------------------------------------------------
@@ -19,6 +19,7 @@
 package org.apache.flink.runtime.messages.checkpoint;
 
 import org.apache.flink.api.common.JobID;
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
 import org.apache.flink.runtime.executiongraph.ExecutionAttemptID;
 import org.apache.flink.runtime.state.StateHandle;
 import org.apache.flink.util.SerializedValue;
@@ -43,6 +44,14 @@ public class AcknowledgeCheckpoint extends AbstractCheckpointMessage implements
 	 */
 	private final long stateSize;
 
+	/** The handle to the keyed state of the task, sharded into the task's key groups */
+	private final SerializedValue<StateHandle<?>> keyGroupsState;
+
+	private final long keyGroupsStateSize;
+
+	/** The metrics of the task's checkpoint, may be null */
+	private final CheckpointMetrics checkpointMetrics;
+
 	public AcknowledgeCheckpoint(JobID job, ExecutionAttemptID taskExecutionId, long checkpointId) {
 		this(job, taskExecutionId, checkpointId, null, 0);
 	}
@@ -54,9 +63,37 @@ public class AcknowledgeCheckpoint extends AbstractCheckpointMessage implements
 			SerializedValue<StateHandle<?>> state,
 			long stateSize) {
 
+		this(job, taskExecutionId, checkpointId, state, stateSize, null, 0);
+	}
+
+	public AcknowledgeCheckpoint(
+			JobID job,
+			ExecutionAttemptID taskExecutionId,
+			long checkpointId,
+			SerializedValue<StateHandle<?>> state,
+			long stateSize,
+			SerializedValue<StateHandle<?>> keyGroupsState,
+			long keyGroupsStateSize) {
+
+		this(job, taskExecutionId, checkpointId, state, stateSize, keyGroupsState, keyGroupsStateSize, null);
+	}
+
+	public AcknowledgeCheckpoint(
+			JobID job,
+			ExecutionAttemptID taskExecutionId,
+			long checkpointId,
+			SerializedValue<StateHandle<?>> state,
+			long stateSize,
+			SerializedValue<StateHandle<?>> keyGroupsState,
+			long keyGroupsStateSize,
+			CheckpointMetrics checkpointMetrics) {
+
 		super(job, taskExecutionId, checkpointId);
 		this.state = state;
 		this.stateSize = stateSize;
+		this.keyGroupsState = keyGroupsState;
+		this.keyGroupsStateSize = keyGroupsStateSize;
+		this.checkpointMetrics = checkpointMetrics;
 	}
 
 	public SerializedValue<StateHandle<?>> getState() {
@@ -67,6 +104,18 @@ public class AcknowledgeCheckpoint extends AbstractCheckpointMessage implements
 		return stateSize;
 	}
 
+	public SerializedValue<StateHandle<?>> getKeyGroupsState() {
+		return keyGroupsState;
+	}
+
+	public long getKeyGroupsStateSize() {
+		return keyGroupsStateSize;
+	}
+
+	public CheckpointMetrics getCheckpointMetrics() {
+		return checkpointMetrics;
+	}
+
 	// --------------------------------------------------------------------------------------------
 	
 	@Override
@@ -77,7 +126,9 @@ public class AcknowledgeCheckpoint extends AbstractCheckpointMessage implements
 		else if (o instanceof AcknowledgeCheckpoint) {
 			AcknowledgeCheckpoint that = (AcknowledgeCheckpoint) o;
 			return super.equals(o) && (this.state == null ? that.state == null :
-					(that.state != null && this.state.equals(that.state)));
+					(that.state != null && this.state.equals(that.state))) &&
+					(this.keyGroupsState == null ? that.keyGroupsState == null :
+					(that.keyGroupsState != null && this.keyGroupsState.equals(that.keyGroupsState)));
 		}
 		else {
 			return false;
@@ -86,7 +137,7 @@ public class AcknowledgeCheckpoint extends AbstractCheckpointMessage implements
 
 	@Override
 	public String toString() {
-		return String.format("Confirm Task Checkpoint %d for (%s/%s) - state=%s",
-				getCheckpointId(), getJob(), getTaskExecutionId(), state);
+		return String.format("Confirm Task Checkpoint %d for (%s/%s) - state=%s, keyGroupsState=%s, metrics=%s",
+				getCheckpointId(), getJob(), getTaskExecutionId(), state, keyGroupsState, checkpointMetrics);
 	}
 }
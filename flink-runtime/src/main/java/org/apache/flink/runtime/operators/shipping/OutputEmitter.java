@@ -150,6 +150,11 @@ public class OutputEmitter<T> implements ChannelSelector<SerializationDelegate<T
 			throw new UnsupportedOperationException("Unsupported distribution strategy: " + strategy.name());
 		}
 	}
+
+	@Override
+	public boolean isBroadcast() {
+		return strategy == ShipStrategyType.BROADCAST;
+	}
 	
 	// --------------------------------------------------------------------------------------------
 
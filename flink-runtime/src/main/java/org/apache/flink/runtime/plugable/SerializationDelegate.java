@@ -50,6 +50,14 @@ public class SerializationDelegate<T> implements IOReadableWritable {
 	public T getInstance() {
 		return this.instance;
 	}
+
+	/**
+	 * Returns a copy of the current instance, which is not affected by later modifications of
+	 * the instance.
+	 */
+	public T copyInstance() {
+		return this.serializer.copy(this.instance);
+	}
 	
 	@Override
 	public void write(DataOutputView out) throws IOException {
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query;
+
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.runtime.instance.ActorGateway;
+import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.state.KeyGroupRange;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * A {@link KvStateRegistryListener} that reports the registrations of a TaskManager to the
+ * JobManager, together with the address of the query server of the TaskManager.
+ */
+public class ActorGatewayKvStateRegistryListener implements KvStateRegistryListener {
+
+	/** The gateway of the JobManager */
+	private final ActorGateway jobManager;
+
+	/** The address of the query server of the TaskManager */
+	private final KvStateServerAddress kvStateServerAddress;
+
+	public ActorGatewayKvStateRegistryListener(ActorGateway jobManager, KvStateServerAddress kvStateServerAddress) {
+		this.jobManager = checkNotNull(jobManager, "jobManager");
+		this.kvStateServerAddress = checkNotNull(kvStateServerAddress, "kvStateServerAddress");
+	}
+
+	@Override
+	public void notifyKvStateRegistered(
+			JobID jobId,
+			JobVertexID jobVertexId,
+			KeyGroupRange keyGroupRange,
+			String registrationName,
+			KvStateID kvStateId) {
+
+		jobManager.tell(new KvStateMessage.NotifyKvStateRegistered(
+			jobId, jobVertexId, keyGroupRange, registrationName, kvStateId, kvStateServerAddress));
+	}
+
+	@Override
+	public void notifyKvStateUnregistered(
+			JobID jobId,
+			JobVertexID jobVertexId,
+			KeyGroupRange keyGroupRange,
+			String registrationName,
+			KvStateID kvStateId) {
+
+		jobManager.tell(new KvStateMessage.NotifyKvStateUnregistered(
+			jobId, jobVertexId, keyGroupRange, registrationName, kvStateId));
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query;
+
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.state.KeyGroupRange;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The location of a queryable state in a running job. The state is partitioned by key groups
+ * across the parallel subtasks of a job vertex. For every key group, the location holds the
+ * {@link KvStateID} of the state instance that holds the key group and the address of the
+ * query server of its TaskManager.
+ *
+ * <p>The JobManager maintains the locations and sends copies of them to clients, which cache
+ * them to look up keys without asking the JobManager again.
+ */
+public class KvStateLocation implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The ID of the job that the state belongs to */
+	private final JobID jobId;
+
+	/** The ID of the job vertex that the state belongs to */
+	private final JobVertexID jobVertexId;
+
+	/** The total number of key groups of the job vertex */
+	private final int numberOfKeyGroups;
+
+	/** The name under which the state is queryable */
+	private final String registrationName;
+
+	/** The IDs of the state instances by key group, null for key groups without a registration */
+	private final KvStateID[] kvStateIds;
+
+	/** The query server addresses by key group, null for key groups without a registration */
+	private final KvStateServerAddress[] kvStateAddresses;
+
+	/** The number of key groups that have a registration */
+	private int numberOfRegisteredKeyGroups;
+
+	public KvStateLocation(JobID jobId, JobVertexID jobVertexId, int numberOfKeyGroups, String registrationName) {
+		checkArgument(numberOfKeyGroups > 0, "The number of key groups must be positive.");
+		this.jobId = checkNotNull(jobId, "jobId");
+		this.jobVertexId = checkNotNull(jobVertexId, "jobVertexId");
+		this.numberOfKeyGroups = numberOfKeyGroups;
+		this.registrationName = checkNotNull(registrationName, "registrationName");
+		this.kvStateIds = new KvStateID[numberOfKeyGroups];
+		this.kvStateAddresses = new KvStateServerAddress[numberOfKeyGroups];
+	}
+
+	private KvStateLocation(KvStateLocation other) {
+		this.jobId = other.jobId;
+		this.jobVertexId = other.jobVertexId;
+		this.numberOfKeyGroups = other.numberOfKeyGroups;
+		this.registrationName = other.registrationName;
+		this.kvStateIds = other.kvStateIds.clone();
+		this.kvStateAddresses = other.kvStateAddresses.clone();
+		this.numberOfRegisteredKeyGroups = other.numberOfRegisteredKeyGroups;
+	}
+
+	// ------------------------------------------------------------------------
+
+	public JobID getJobId() {
+		return jobId;
+	}
+
+	public JobVertexID getJobVertexId() {
+		return jobVertexId;
+	}
+
+	public int getNumberOfKeyGroups() {
+		return numberOfKeyGroups;
+	}
+
+	public String getRegistrationName() {
+		return registrationName;
+	}
+
+	/**
+	 * Returns the number of key groups that have a registered state instance.
+	 */
+	public int getNumberOfRegisteredKeyGroups() {
+		return numberOfRegisteredKeyGroups;
+	}
+
+	/**
+	 * Returns the ID of the state instance that holds the given key group.
+	 *
+	 * @param keyGroup The index of the key group.
+	 * @return The ID of the state instance, or null if no instance is registered for the key group.
+	 */
+	public KvStateID getKvStateID(int keyGroup) {
+		checkKeyGroup(keyGroup);
+		return kvStateIds[keyGroup];
+	}
+
+	/**
+	 * Returns the address of the query server that serves the given key group.
+	 *
+	 * @param keyGroup The index of the key group.
+	 * @return The address of the server, or null if no instance is registered for the key group.
+	 */
+	public KvStateServerAddress getKvStateServerAddress(int keyGroup) {
+		checkKeyGroup(keyGroup);
+		return kvStateAddresses[keyGroup];
+	}
+
+	/**
+	 * Registers the state instance that holds the given key groups. Earlier registrations of
+	 * the key groups are replaced.
+	 *
+	 * @param keyGroupRange The key groups that the state instance holds.
+	 * @param kvStateId The ID of the state instance.
+	 * @param kvStateAddress The address of the query server of the state instance.
+	 */
+	public void registerKvState(KeyGroupRange keyGroupRange, KvStateID kvStateId, KvStateServerAddress kvStateAddress) {
+		checkKeyGroupRange(keyGroupRange);
+		checkNotNull(kvStateId, "kvStateId");
+		checkNotNull(kvStateAddress, "kvStateAddress");
+
+		for (int keyGroup = keyGroupRange.getStartKeyGroup(); keyGroup <= keyGroupRange.getEndKeyGroup(); keyGroup++) {
+			if (kvStateIds[keyGroup] == null) {
+				numberOfRegisteredKeyGroups++;
+			}
+			kvStateIds[keyGroup] = kvStateId;
+			kvStateAddresses[keyGroup] = kvStateAddress;
+		}
+	}
+
+	/**
+	 * Unregisters the state instance with the given ID from the given key groups. Key groups
+	 * that were registered again by another instance in the meantime keep the other instance.
+	 *
+	 * @param keyGroupRange The key groups that the state instance holds.
+	 * @param kvStateId The ID of the state instance.
+	 */
+	public void unregisterKvState(KeyGroupRange keyGroupRange, KvStateID kvStateId) {
+		checkKeyGroupRange(keyGroupRange);
+
+		for (int keyGroup = keyGroupRange.getStartKeyGroup(); keyGroup <= keyGroupRange.getEndKeyGroup(); keyGroup++) {
+			if (kvStateId.equals(kvStateIds[keyGroup])) {
+				kvStateIds[keyGroup] = null;
+				kvStateAddresses[keyGroup] = null;
+				numberOfRegisteredKeyGroups--;
+			}
+		}
+	}
+
+	/**
+	 * Creates a copy of this location, which is not affected by later registrations.
+	 */
+	public KvStateLocation copy() {
+		return new KvStateLocation(this);
+	}
+
+	private void checkKeyGroup(int keyGroup) {
+		if (keyGroup < 0 || keyGroup >= numberOfKeyGroups) {
+			throw new IndexOutOfBoundsException("Key group " + keyGroup + " is out of bounds for " +
+				numberOfKeyGroups + " key groups.");
+		}
+	}
+
+	private void checkKeyGroupRange(KeyGroupRange keyGroupRange) {
+		checkNotNull(keyGroupRange, "keyGroupRange");
+		if (keyGroupRange.getEndKeyGroup() >= numberOfKeyGroups) {
+			throw new IndexOutOfBoundsException("The key group range " + keyGroupRange +
+				" exceeds the number of key groups " + numberOfKeyGroups + ".");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "KvStateLocation{" +
+			"jobId=" + jobId +
+			", jobVertexId=" + jobVertexId +
+			", numberOfKeyGroups=" + numberOfKeyGroups +
+			", registrationName='" + registrationName + '\'' +
+			", kvStateIds=" + Arrays.toString(kvStateIds) +
+			", kvStateAddresses=" + Arrays.toString(kvStateAddresses) +
+			'}';
+	}
+}
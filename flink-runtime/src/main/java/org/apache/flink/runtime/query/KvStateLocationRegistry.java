@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query;
+
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.runtime.executiongraph.ExecutionJobVertex;
+import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The locations of the queryable states of a job, which the JobManager maintains from the
+ * registrations that the TaskManagers report.
+ *
+ * <p>The registry is not thread-safe. It is accessed by the JobManager actor only.
+ */
+public class KvStateLocationRegistry {
+
+	private static final Logger LOG = LoggerFactory.getLogger(KvStateLocationRegistry.class);
+
+	/** The ID of the job */
+	private final JobID jobId;
+
+	/** The job vertices of the job, which define the number of key groups of the states */
+	private final Map<JobVertexID, ExecutionJobVertex> jobVertices;
+
+	/** The locations of the queryable states by their registration name */
+	private final Map<String, KvStateLocation> lookupTable = new HashMap<>();
+
+	/**
+	 * Creates the registry of a job.
+	 *
+	 * @param jobId The ID of the job.
+	 * @param jobVertices The job vertices of the job. The map may grow while the job is attached.
+	 */
+	public KvStateLocationRegistry(JobID jobId, Map<JobVertexID, ExecutionJobVertex> jobVertices) {
+		this.jobId = checkNotNull(jobId, "jobId");
+		this.jobVertices = checkNotNull(jobVertices, "jobVertices");
+	}
+
+	/**
+	 * Returns the location of the queryable state with the given name.
+	 *
+	 * @param registrationName The name under which the state is queryable.
+	 * @return The location, or null if no instance of the state is registered.
+	 */
+	public KvStateLocation getKvStateLocation(String registrationName) {
+		return lookupTable.get(registrationName);
+	}
+
+	/**
+	 * Registers a state instance that a subtask of the job registered at its TaskManager.
+	 *
+	 * @param jobVertexId The ID of the job vertex of the subtask.
+	 * @param keyGroupRange The key groups that the state instance holds.
+	 * @param registrationName The name under which the state is queryable.
+	 * @param kvStateId The ID of the state instance.
+	 * @param kvStateServerAddress The address of the query server of the TaskManager.
+	 * @throws IllegalArgumentException If the job vertex is unknown.
+	 * @throws IllegalStateException If another job vertex registered a state of the same name.
+	 */
+	public void notifyKvStateRegistered(
+			JobVertexID jobVertexId,
+			KeyGroupRange keyGroupRange,
+			String registrationName,
+			KvStateID kvStateId,
+			KvStateServerAddress kvStateServerAddress) {
+
+		KvStateLocation location = lookupTable.get(registrationName);
+
+		if (location == null) {
+			ExecutionJobVertex vertex = jobVertices.get(jobVertexId);
+			if (vertex == null) {
+				throw new IllegalArgumentException("Unknown JobVertexID " + jobVertexId + " of job " + jobId + ".");
+			}
+
+			location = new KvStateLocation(jobId, jobVertexId, vertex.getNumberOfKeyGroups(), registrationName);
+			lookupTable.put(registrationName, location);
+		} else if (!location.getJobVertexId().equals(jobVertexId)) {
+			IllegalStateException duplicate = new IllegalStateException("Registration name clash. " +
+				"The queryable state '" + registrationName + "' is registered by the job vertices " +
+				location.getJobVertexId() + " and " + jobVertexId + " of job " + jobId + ".");
+			LOG.error("Cannot register queryable state.", duplicate);
+			throw duplicate;
+		}
+
+		location.registerKvState(keyGroupRange, kvStateId, kvStateServerAddress);
+	}
+
+	/**
+	 * Unregisters a state instance that a subtask of the job unregistered at its TaskManager.
+	 *
+	 * @param jobVertexId The ID of the job vertex of the subtask.
+	 * @param keyGroupRange The key groups that the state instance holds.
+	 * @param registrationName The name under which the state was queryable.
+	 * @param kvStateId The ID of the state instance.
+	 */
+	public void notifyKvStateUnregistered(
+			JobVertexID jobVertexId,
+			KeyGroupRange keyGroupRange,
+			String registrationName,
+			KvStateID kvStateId) {
+
+		KvStateLocation location = lookupTable.get(registrationName);
+		if (location == null || !location.getJobVertexId().equals(jobVertexId)) {
+			// the registration was rejected or the job was reset
+			return;
+		}
+
+		location.unregisterKvState(keyGroupRange, kvStateId);
+		if (location.getNumberOfRegisteredKeyGroups() == 0) {
+			lookupTable.remove(registrationName);
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query;
+
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.state.KeyGroupRange;
+
+import java.io.Serializable;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Messages of the JobManager that maintain and look up the locations of queryable states.
+ */
+public interface KvStateMessage extends Serializable {
+
+	/**
+	 * Requests the {@link KvStateLocation} of a queryable state. The JobManager replies with the
+	 * location, or with a failure if the job or the state is unknown.
+	 */
+	class LookupKvStateLocation implements KvStateMessage {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The ID of the job */
+		private final JobID jobId;
+
+		/** The name under which the state is queryable */
+		private final String registrationName;
+
+		public LookupKvStateLocation(JobID jobId, String registrationName) {
+			this.jobId = checkNotNull(jobId, "jobId");
+			this.registrationName = checkNotNull(registrationName, "registrationName");
+		}
+
+		public JobID getJobId() {
+			return jobId;
+		}
+
+		public String getRegistrationName() {
+			return registrationName;
+		}
+
+		@Override
+		public String toString() {
+			return "LookupKvStateLocation{jobId=" + jobId + ", registrationName='" + registrationName + "'}";
+		}
+	}
+
+	/**
+	 * Reports a state instance that a subtask registered at the registry of its TaskManager.
+	 */
+	class NotifyKvStateRegistered implements KvStateMessage {
+
+		private static final long serialVersionUID = 1L;
+
+		private final JobID jobId;
+
+		private final JobVertexID jobVertexId;
+
+		private final KeyGroupRange keyGroupRange;
+
+		private final String registrationName;
+
+		private final KvStateID kvStateId;
+
+		/** The address of the query server of the TaskManager */
+		private final KvStateServerAddress kvStateServerAddress;
+
+		public NotifyKvStateRegistered(
+				JobID jobId,
+				JobVertexID jobVertexId,
+				KeyGroupRange keyGroupRange,
+				String registrationName,
+				KvStateID kvStateId,
+				KvStateServerAddress kvStateServerAddress) {
+
+			this.jobId = checkNotNull(jobId, "jobId");
+			this.jobVertexId = checkNotNull(jobVertexId, "jobVertexId");
+			this.keyGroupRange = checkNotNull(keyGroupRange, "keyGroupRange");
+			this.registrationName = checkNotNull(registrationName, "registrationName");
+			this.kvStateId = checkNotNull(kvStateId, "kvStateId");
+			this.kvStateServerAddress = checkNotNull(kvStateServerAddress, "kvStateServerAddress");
+		}
+
+		public JobID getJobId() {
+			return jobId;
+		}
+
+		public JobVertexID getJobVertexId() {
+			return jobVertexId;
+		}
+
+		public KeyGroupRange getKeyGroupRange() {
+			return keyGroupRange;
+		}
+
+		public String getRegistrationName() {
+			return registrationName;
+		}
+
+		public KvStateID getKvStateId() {
+			return kvStateId;
+		}
+
+		public KvStateServerAddress getKvStateServerAddress() {
+			return kvStateServerAddress;
+		}
+
+		@Override
+		public String toString() {
+			return "NotifyKvStateRegistered{" +
+				"jobId=" + jobId +
+				", jobVertexId=" + jobVertexId +
+				", keyGroupRange=" + keyGroupRange +
+				", registrationName='" + registrationName + '\'' +
+				", kvStateId=" + kvStateId +
+				", kvStateServerAddress=" + kvStateServerAddress +
+				'}';
+		}
+	}
+
+	/**
+	 * Reports a state instance that a subtask unregistered at the registry of its TaskManager.
+	 */
+	class NotifyKvStateUnregistered implements KvStateMessage {
+
+		private static final long serialVersionUID = 1L;
+
+		private final JobID jobId;
+
+		private final JobVertexID jobVertexId;
+
+		private final KeyGroupRange keyGroupRange;
+
+		private final String registrationName;
+
+		private final KvStateID kvStateId;
+
+		public NotifyKvStateUnregistered(
+				JobID jobId,
+				JobVertexID jobVertexId,
+				KeyGroupRange keyGroupRange,
+				String registrationName,
+				KvStateID kvStateId) {
+
+			this.jobId = checkNotNull(jobId, "jobId");
+			this.jobVertexId = checkNotNull(jobVertexId, "jobVertexId");
+			this.keyGroupRange = checkNotNull(keyGroupRange, "keyGroupRange");
+			this.registrationName = checkNotNull(registrationName, "registrationName");
+			this.kvStateId = checkNotNull(kvStateId, "kvStateId");
+		}
+
+		public JobID getJobId() {
+			return jobId;
+		}
+
+		public JobVertexID getJobVertexId() {
+			return jobVertexId;
+		}
+
+		public KeyGroupRange getKeyGroupRange() {
+			return keyGroupRange;
+		}
+
+		public String getRegistrationName() {
+			return registrationName;
+		}
+
+		public KvStateID getKvStateId() {
+			return kvStateId;
+		}
+
+		@Override
+		public String toString() {
+			return "NotifyKvStateUnregistered{" +
+				"jobId=" + jobId +
+				", jobVertexId=" + jobVertexId +
+				", keyGroupRange=" + keyGroupRange +
+				", registrationName='" + registrationName + '\'' +
+				", kvStateId=" + kvStateId +
+				'}';
+		}
+	}
+}
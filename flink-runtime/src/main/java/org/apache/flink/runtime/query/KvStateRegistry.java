@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query;
+
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KvState;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The registry of the queryable {@link KvState} instances of a TaskManager. The query server of
+ * the TaskManager looks the states up by their {@link KvStateID}, which the JobManager hands
+ * out to the clients.
+ *
+ * <p>The registry is accessed concurrently by the tasks, which register their states, and by
+ * the threads of the query server.
+ */
+public class KvStateRegistry {
+
+	/** The registered states by their ID */
+	private final ConcurrentMap<KvStateID, KvState<?, ?, ?, ?, ?>> registeredKvStates = new ConcurrentHashMap<>();
+
+	/** The listener that forwards the registrations, null if there is none */
+	private final AtomicReference<KvStateRegistryListener> listener = new AtomicReference<>();
+
+	/**
+	 * Registers a listener for the registrations. There can only be a single listener.
+	 *
+	 * @param listener The listener for the registrations.
+	 * @throws IllegalStateException If another listener is registered.
+	 */
+	public void registerListener(KvStateRegistryListener listener) {
+		checkNotNull(listener, "listener");
+		if (!this.listener.compareAndSet(null, listener)) {
+			throw new IllegalStateException("The KvStateRegistry already has a listener.");
+		}
+	}
+
+	/**
+	 * Unregisters the listener. The states stay registered.
+	 */
+	public void unregisterListener() {
+		listener.set(null);
+	}
+
+	/**
+	 * Registers a queryable state and notifies the listener.
+	 *
+	 * @param jobId The ID of the job that the state belongs to.
+	 * @param jobVertexId The ID of the job vertex that the state belongs to.
+	 * @param keyGroupRange The key groups that the state holds.
+	 * @param registrationName The name under which the state is queryable.
+	 * @param kvState The state.
+	 * @return The ID under which the state is registered.
+	 */
+	public KvStateID registerKvState(
+			JobID jobId,
+			JobVertexID jobVertexId,
+			KeyGroupRange keyGroupRange,
+			String registrationName,
+			KvState<?, ?, ?, ?, ?> kvState) {
+
+		KvStateID kvStateId = new KvStateID();
+		registeredKvStates.put(kvStateId, checkNotNull(kvState, "kvState"));
+
+		KvStateRegistryListener listener = this.listener.get();
+		if (listener != null) {
+			listener.notifyKvStateRegistered(jobId, jobVertexId, keyGroupRange, registrationName, kvStateId);
+		}
+		return kvStateId;
+	}
+
+	/**
+	 * Unregisters a queryable state and notifies the listener.
+	 *
+	 * @param jobId The ID of the job that the state belongs to.
+	 * @param jobVertexId The ID of the job vertex that the state belongs to.
+	 * @param keyGroupRange The key groups that the state holds.
+	 * @param registrationName The name under which the state was queryable.
+	 * @param kvStateId The ID under which the state is registered.
+	 */
+	public void unregisterKvState(
+			JobID jobId,
+			JobVertexID jobVertexId,
+			KeyGroupRange keyGroupRange,
+			String registrationName,
+			KvStateID kvStateId) {
+
+		if (registeredKvStates.remove(kvStateId) != null) {
+			KvStateRegistryListener listener = this.listener.get();
+			if (listener != null) {
+				listener.notifyKvStateUnregistered(jobId, jobVertexId, keyGroupRange, registrationName, kvStateId);
+			}
+		}
+	}
+
+	/**
+	 * Returns the state registered under the given ID.
+	 *
+	 * @param kvStateId The ID of the state.
+	 * @return The state, or null if no state is registered under the ID.
+	 */
+	public KvState<?, ?, ?, ?, ?> getKvState(KvStateID kvStateId) {
+		return registeredKvStates.get(kvStateId);
+	}
+
+	/**
+	 * Creates the registry of a task, which registers the states of the task with the IDs of
+	 * its job and job vertex.
+	 *
+	 * @param jobId The ID of the job of the task.
+	 * @param jobVertexId The ID of the job vertex of the task.
+	 * @return The registry of the task.
+	 */
+	public TaskKvStateRegistry createTaskRegistry(JobID jobId, JobVertexID jobVertexId) {
+		return new TaskKvStateRegistry(this, jobId, jobVertexId);
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query;
+
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.state.KeyGroupRange;
+
+/**
+ * A listener for the registrations at a {@link KvStateRegistry}. The TaskManager forwards the
+ * registrations to the JobManager, which resolves the locations of the queryable states.
+ */
+public interface KvStateRegistryListener {
+
+	/**
+	 * Notifies the listener about a registered KvState instance.
+	 *
+	 * @param jobId The ID of the job that the state belongs to.
+	 * @param jobVertexId The ID of the job vertex that the state belongs to.
+	 * @param keyGroupRange The key groups that the state holds.
+	 * @param registrationName The name under which the state is queryable.
+	 * @param kvStateId The ID of the registered state.
+	 */
+	void notifyKvStateRegistered(
+			JobID jobId,
+			JobVertexID jobVertexId,
+			KeyGroupRange keyGroupRange,
+			String registrationName,
+			KvStateID kvStateId);
+
+	/**
+	 * Notifies the listener about an unregistered KvState instance.
+	 *
+	 * @param jobId The ID of the job that the state belongs to.
+	 * @param jobVertexId The ID of the job vertex that the state belongs to.
+	 * @param keyGroupRange The key groups that the state holds.
+	 * @param registrationName The name under which the state was queryable.
+	 * @param kvStateId The ID of the unregistered state.
+	 */
+	void notifyKvStateUnregistered(
+			JobID jobId,
+			JobVertexID jobVertexId,
+			KeyGroupRange keyGroupRange,
+			String registrationName,
+			KvStateID kvStateId);
+}
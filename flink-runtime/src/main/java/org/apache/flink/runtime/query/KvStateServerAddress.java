@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query;
+
+import java.io.Serializable;
+import java.net.InetAddress;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The network address of the query server of a TaskManager, which serves the registered
+ * {@link org.apache.flink.runtime.state.KvState} instances of the TaskManager.
+ */
+public class KvStateServerAddress implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The address of the server */
+	private final InetAddress hostAddress;
+
+	/** The port of the server */
+	private final int port;
+
+	public KvStateServerAddress(InetAddress hostAddress, int port) {
+		checkArgument(port > 0 && port <= 65535, "Port " + port + " is out of range 1-65535.");
+		this.hostAddress = checkNotNull(hostAddress, "hostAddress");
+		this.port = port;
+	}
+
+	public InetAddress getHost() {
+		return hostAddress;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+
+		KvStateServerAddress that = (KvStateServerAddress) o;
+		return port == that.port && hostAddress.equals(that.hostAddress);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * hostAddress.hashCode() + port;
+	}
+
+	@Override
+	public String toString() {
+		return hostAddress.getHostAddress() + ':' + port;
+	}
+}
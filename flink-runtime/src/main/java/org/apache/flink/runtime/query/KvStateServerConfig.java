@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query;
+
+import java.net.InetAddress;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The configuration of the query server of a TaskManager, which serves the queryable states of
+ * its tasks.
+ */
+public class KvStateServerConfig {
+
+	/** The address to bind the server to */
+	private final InetAddress serverAddress;
+
+	/** The port to bind the server to, 0 for a random port */
+	private final int serverPort;
+
+	/** The number of network threads of the server */
+	private final int numServerThreads;
+
+	/** The number of threads that read the queried states */
+	private final int numQueryThreads;
+
+	public KvStateServerConfig(InetAddress serverAddress, int serverPort, int numServerThreads, int numQueryThreads) {
+		this.serverAddress = checkNotNull(serverAddress);
+
+		checkArgument(serverPort >= 0 && serverPort <= 65535, "Invalid port number.");
+		this.serverPort = serverPort;
+
+		checkArgument(numServerThreads > 0, "Number of server threads must be positive.");
+		this.numServerThreads = numServerThreads;
+
+		checkArgument(numQueryThreads > 0, "Number of query threads must be positive.");
+		this.numQueryThreads = numQueryThreads;
+	}
+
+	public InetAddress getServerAddress() {
+		return serverAddress;
+	}
+
+	public int getServerPort() {
+		return serverPort;
+	}
+
+	public int getNumServerThreads() {
+		return numServerThreads;
+	}
+
+	public int getNumQueryThreads() {
+		return numQueryThreads;
+	}
+
+	@Override
+	public String toString() {
+		return "KvStateServerConfig{" +
+				"serverAddress=" + serverAddress +
+				", serverPort=" + serverPort +
+				", numServerThreads=" + numServerThreads +
+				", numQueryThreads=" + numQueryThreads +
+				'}';
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query;
+
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KvState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The view of a task on the {@link KvStateRegistry} of its TaskManager. It registers the
+ * queryable states of the task and unregisters all of them when the task terminates.
+ */
+public class TaskKvStateRegistry {
+
+	/** The registry of the TaskManager */
+	private final KvStateRegistry registry;
+
+	/** The ID of the job of the task */
+	private final JobID jobId;
+
+	/** The ID of the job vertex of the task */
+	private final JobVertexID jobVertexId;
+
+	/** The states that the task registered, guarded by the list */
+	private final List<Registration> registrations = new ArrayList<>();
+
+	TaskKvStateRegistry(KvStateRegistry registry, JobID jobId, JobVertexID jobVertexId) {
+		this.registry = checkNotNull(registry, "registry");
+		this.jobId = checkNotNull(jobId, "jobId");
+		this.jobVertexId = checkNotNull(jobVertexId, "jobVertexId");
+	}
+
+	/**
+	 * Registers a queryable state of the task.
+	 *
+	 * @param keyGroupRange The key groups that the state holds.
+	 * @param registrationName The name under which the state is queryable.
+	 * @param kvState The state.
+	 * @return The ID under which the state is registered.
+	 */
+	public KvStateID registerKvState(KeyGroupRange keyGroupRange, String registrationName, KvState<?, ?, ?, ?, ?> kvState) {
+		KvStateID kvStateId = registry.registerKvState(jobId, jobVertexId, keyGroupRange, registrationName, kvState);
+		synchronized (registrations) {
+			registrations.add(new Registration(keyGroupRange, registrationName, kvStateId));
+		}
+		return kvStateId;
+	}
+
+	/**
+	 * Unregisters a queryable state of the task.
+	 *
+	 * @param keyGroupRange The key groups that the state holds.
+	 * @param registrationName The name under which the state was queryable.
+	 * @param kvStateId The ID under which the state is registered.
+	 */
+	public void unregisterKvState(KeyGroupRange keyGroupRange, String registrationName, KvStateID kvStateId) {
+		synchronized (registrations) {
+			for (int i = 0; i < registrations.size(); i++) {
+				if (registrations.get(i).kvStateId.equals(kvStateId)) {
+					registrations.remove(i);
+					break;
+				}
+			}
+		}
+		registry.unregisterKvState(jobId, jobVertexId, keyGroupRange, registrationName, kvStateId);
+	}
+
+	/**
+	 * Unregisters all states that the task registered and did not unregister yet.
+	 */
+	public void unregisterAll() {
+		List<Registration> remaining;
+		synchronized (registrations) {
+			remaining = new ArrayList<>(registrations);
+			registrations.clear();
+		}
+
+		for (Registration registration : remaining) {
+			registry.unregisterKvState(jobId, jobVertexId, registration.keyGroupRange,
+				registration.registrationName, registration.kvStateId);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static final class Registration {
+
+		private final KeyGroupRange keyGroupRange;
+
+		private final String registrationName;
+
+		private final KvStateID kvStateId;
+
+		Registration(KeyGroupRange keyGroupRange, String registrationName, KvStateID kvStateId) {
+			this.keyGroupRange = keyGroupRange;
+			this.registrationName = registrationName;
+			this.kvStateId = kvStateId;
+		}
+	}
+}
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query.netty;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.apache.flink.runtime.query.KvStateID;
+import org.apache.flink.runtime.query.KvStateServerAddress;
+import org.apache.flink.runtime.query.netty.message.KvStateRequestSerializer;
+import scala.concurrent.Future;
+import scala.concurrent.Promise;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The network client of the {@link KvStateServer}s of the TaskManagers.
+ *
+ * <p>The client keeps a single connection to every server, over which all requests to the
+ * server are sent without waiting for the results of earlier requests. A connection that
+ * fails fails all its pending requests and is re-established by the next request.
+ */
+public class KvStateClient {
+
+	/** The bootstrap of the connections, which is cloned for every connection */
+	private final Bootstrap bootstrap;
+
+	/** The connections by the address of their server */
+	private final ConcurrentMap<KvStateServerAddress, ServerConnection> connections = new ConcurrentHashMap<>();
+
+	/** The source of the request IDs, which are unique across all connections */
+	private final AtomicLong requestIds = new AtomicLong();
+
+	private volatile boolean shutDown;
+
+	/**
+	 * Creates a client.
+	 *
+	 * @param numEventLoopThreads The number of network threads of the client.
+	 */
+	public KvStateClient(int numEventLoopThreads) {
+		checkArgument(numEventLoopThreads >= 1, "The number of network threads must be positive.");
+
+		NioEventLoopGroup eventLoopGroup = new NioEventLoopGroup(numEventLoopThreads, new ThreadFactoryBuilder()
+			.setDaemon(true)
+			.setNameFormat("Flink KvStateClient EventLoop Thread %d")
+			.build());
+
+		this.bootstrap = new Bootstrap()
+			.group(eventLoopGroup)
+			.channel(NioSocketChannel.class)
+			.option(ChannelOption.TCP_NODELAY, true);
+	}
+
+	/**
+	 * Requests the serialized value of a key and namespace from a state instance.
+	 *
+	 * @param serverAddress The address of the query server that holds the state instance.
+	 * @param kvStateId The ID of the state instance.
+	 * @param serializedKeyAndNamespace The serialized key and namespace.
+	 * @return The future of the serialized value, which fails with {@link UnknownKvStateID} if
+	 *         the server does not hold the state instance, and with {@link UnknownKeyOrNamespace}
+	 *         if the state has no value for the key and namespace.
+	 */
+	public Future<byte[]> getKvState(
+			KvStateServerAddress serverAddress,
+			KvStateID kvStateId,
+			byte[] serializedKeyAndNamespace) {
+
+		checkNotNull(serverAddress, "serverAddress");
+		checkNotNull(kvStateId, "kvStateId");
+		checkNotNull(serializedKeyAndNamespace, "serializedKeyAndNamespace");
+
+		if (shutDown) {
+			Promise<byte[]> promise = new scala.concurrent.impl.Promise.DefaultPromise<>();
+			return promise.failure(new IllegalStateException("The KvStateClient is shut down.")).future();
+		}
+
+		ServerConnection connection = connections.get(serverAddress);
+		if (connection == null) {
+			ServerConnection newConnection = new ServerConnection(serverAddress);
+			connection = connections.putIfAbsent(serverAddress, newConnection);
+			if (connection == null) {
+				connection = newConnection;
+
+				if (shutDown) {
+					// the connection may have been added after the shut down closed all connections
+					connection.close();
+				}
+			} else {
+				// another request connected to the server concurrently
+				newConnection.close();
+			}
+		}
+
+		return connection.sendRequest(requestIds.incrementAndGet(), kvStateId, serializedKeyAndNamespace);
+	}
+
+	/**
+	 * Closes all connections, which fails their pending requests, and shuts the network
+	 * threads down.
+	 */
+	public void shutDown() {
+		shutDown = true;
+
+		for (ServerConnection connection : connections.values()) {
+			connection.close();
+		}
+
+		if (bootstrap.group() != null) {
+			bootstrap.group().shutdownGracefully();
+		}
+	}
+
+	/**
+	 * Returns the number of connections to servers, for testing.
+	 */
+	int getNumberOfConnections() {
+		return connections.size();
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A connection to a server, which holds the requests that wait for their results.
+	 */
+	private class ServerConnection implements KvStateClientHandler.KvStateClientHandlerCallback {
+
+		private final KvStateServerAddress serverAddress;
+
+		/** The pending requests by their ID */
+		private final ConcurrentMap<Long, Promise<byte[]>> pendingRequests = new ConcurrentHashMap<>();
+
+		/** The future of the connection, which is completed when it is established */
+		private final ChannelFuture connectFuture;
+
+		/** The cause of the failure of the connection, null while the connection is alive */
+		private volatile Throwable failureCause;
+
+		ServerConnection(KvStateServerAddress serverAddress) {
+			this.serverAddress = serverAddress;
+
+			this.connectFuture = bootstrap.clone()
+				.handler(new ChannelInitializer<SocketChannel>() {
+					@Override
+					protected void initChannel(SocketChannel channel) throws Exception {
+						channel.pipeline()
+							.addLast(KvStateRequestSerializer.createFrameDecoder())
+							.addLast(new KvStateClientHandler(ServerConnection.this));
+					}
+				})
+				.connect(serverAddress.getHost(), serverAddress.getPort());
+
+			connectFuture.addListener(new ChannelFutureListener() {
+				@Override
+				public void operationComplete(ChannelFuture future) throws Exception {
+					if (!future.isSuccess()) {
+						onFailure(future.cause());
+					}
+				}
+			});
+		}
+
+		Future<byte[]> sendRequest(final long requestId, final KvStateID kvStateId, final byte[] serializedKeyAndNamespace) {
+			final Promise<byte[]> promise = new scala.concurrent.impl.Promise.DefaultPromise<>();
+			pendingRequests.put(requestId, promise);
+
+			// the connection may have failed before the request was added
+			Throwable cause = failureCause;
+			if (cause != null) {
+				// the connection may have failed before it was added to the connections
+				connections.remove(serverAddress, this);
+				failRequest(requestId, cause);
+				return promise.future();
+			}
+
+			connectFuture.addListener(new ChannelFutureListener() {
+				@Override
+				public void operationComplete(ChannelFuture future) throws Exception {
+					if (!future.isSuccess()) {
+						failRequest(requestId, future.cause());
+						return;
+					}
+
+					Channel channel = future.channel();
+					channel.writeAndFlush(KvStateRequestSerializer.serializeKvStateRequest(
+							channel.alloc(), requestId, kvStateId, serializedKeyAndNamespace))
+						.addListener(new ChannelFutureListener() {
+							@Override
+							public void operationComplete(ChannelFuture future) throws Exception {
+								if (!future.isSuccess()) {
+									// the channel is broken, which also fails the other pending requests
+									failRequest(requestId, future.cause());
+									onFailure(future.cause());
+								}
+							}
+						});
+				}
+			});
+
+			return promise.future();
+		}
+
+		void close() {
+			onFailure(new IllegalStateException("The KvStateClient is shut down."));
+		}
+
+		@Override
+		public void onRequestResult(long requestId, byte[] serializedValue) {
+			Promise<byte[]> promise = pendingRequests.remove(requestId);
+			if (promise != null) {
+				promise.trySuccess(serializedValue);
+			}
+		}
+
+		@Override
+		public void onRequestFailure(long requestId, Throwable cause) {
+			failRequest(requestId, cause);
+		}
+
+		@Override
+		public void onFailure(Throwable cause) {
+			if (failureCause == null) {
+				failureCause = cause;
+			}
+
+			// later requests go over a new connection
+			connections.remove(serverAddress, this);
+
+			connectFuture.channel().close();
+
+			List<Long> requestIds = new ArrayList<>(pendingRequests.keySet());
+			for (Long requestId : requestIds) {
+				failRequest(requestId, cause);
+			}
+		}
+
+		private void failRequest(long requestId, Throwable cause) {
+			Promise<byte[]> promise = pendingRequests.remove(requestId);
+			if (promise != null) {
+				promise.tryFailure(cause);
+			}
+		}
+	}
+}
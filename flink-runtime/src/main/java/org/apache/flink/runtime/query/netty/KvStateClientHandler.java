@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.apache.flink.runtime.query.netty.message.KvStateRequestFailure;
+import org.apache.flink.runtime.query.netty.message.KvStateRequestResult;
+import org.apache.flink.runtime.query.netty.message.KvStateRequestSerializer;
+import org.apache.flink.runtime.query.netty.message.KvStateRequestType;
+
+import java.nio.channels.ClosedChannelException;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The handler of a connection of the {@link KvStateClient}, which decodes the responses of the
+ * server and passes them to the callback of the connection.
+ */
+class KvStateClientHandler extends ChannelInboundHandlerAdapter {
+
+	/** The callback of the connection */
+	private final KvStateClientHandlerCallback callback;
+
+	KvStateClientHandler(KvStateClientHandlerCallback callback) {
+		this.callback = checkNotNull(callback, "callback");
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		ByteBuf buf = (ByteBuf) msg;
+		try {
+			KvStateRequestType type = KvStateRequestSerializer.deserializeHeader(buf);
+
+			if (type == KvStateRequestType.REQUEST_RESULT) {
+				KvStateRequestResult result = KvStateRequestSerializer.deserializeKvStateRequestResult(buf);
+				callback.onRequestResult(result.getRequestId(), result.getSerializedResult());
+			} else if (type == KvStateRequestType.REQUEST_FAILURE) {
+				KvStateRequestFailure failure = KvStateRequestSerializer.deserializeKvStateRequestFailure(buf);
+				callback.onRequestFailure(failure.getRequestId(), failure.getCause());
+			} else if (type == KvStateRequestType.SERVER_FAILURE) {
+				throw KvStateRequestSerializer.deserializeServerFailure(buf);
+			} else {
+				throw new IllegalStateException("Unexpected response type " + type + ".");
+			}
+		} catch (Throwable t) {
+			callback.onFailure(t);
+		} finally {
+			buf.release();
+		}
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+		callback.onFailure(cause);
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		callback.onFailure(new ClosedChannelException());
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The callback of a connection for the decoded responses.
+	 */
+	interface KvStateClientHandlerCallback {
+
+		/** Called with the serialized value of a successful request. */
+		void onRequestResult(long requestId, byte[] serializedValue);
+
+		/** Called with the cause of a failed request. */
+		void onRequestFailure(long requestId, Throwable cause);
+
+		/** Called if the connection failed, which fails all pending requests. */
+		void onFailure(Throwable cause);
+	}
+}
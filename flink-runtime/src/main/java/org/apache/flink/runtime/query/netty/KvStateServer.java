@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query.netty;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.apache.flink.runtime.query.KvStateRegistry;
+import org.apache.flink.runtime.query.KvStateServerAddress;
+import org.apache.flink.runtime.query.netty.message.KvStateRequestSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * The query server of a TaskManager, which serves the values of the queryable states that are
+ * registered at the {@link KvStateRegistry} of the TaskManager to the {@link KvStateClient}s.
+ *
+ * <p>The server runs independent of the data exchange of the tasks. Its network threads decode
+ * the requests, and its query threads read the requested values from the state instances.
+ */
+public class KvStateServer {
+
+	private static final Logger LOG = LoggerFactory.getLogger(KvStateServer.class);
+
+	/** The address to bind the server to */
+	private final InetAddress bindAddress;
+
+	/** The port to bind the server to, 0 for a random port */
+	private final int bindPort;
+
+	/** The number of network threads */
+	private final int numEventLoopThreads;
+
+	/** The number of query threads */
+	private final int numQueryThreads;
+
+	/** The registry of the state instances */
+	private final KvStateRegistry registry;
+
+	private ServerBootstrap bootstrap;
+
+	private ChannelFuture bindFuture;
+
+	private ExecutorService queryExecutor;
+
+	/** The address of the started server */
+	private KvStateServerAddress serverAddress;
+
+	/**
+	 * Creates the query server of a TaskManager.
+	 *
+	 * @param bindAddress The address to bind the server to.
+	 * @param bindPort The port to bind the server to, 0 for a random port.
+	 * @param numEventLoopThreads The number of network threads.
+	 * @param numQueryThreads The number of threads that read the states.
+	 * @param registry The registry of the state instances.
+	 */
+	public KvStateServer(
+			InetAddress bindAddress,
+			int bindPort,
+			int numEventLoopThreads,
+			int numQueryThreads,
+			KvStateRegistry registry) {
+
+		checkArgument(bindPort >= 0 && bindPort <= 65535, "Port " + bindPort + " is out of range 0-65535.");
+		checkArgument(numEventLoopThreads >= 1, "The number of network threads must be positive.");
+		checkArgument(numQueryThreads >= 1, "The number of query threads must be positive.");
+
+		this.bindAddress = checkNotNull(bindAddress, "bindAddress");
+		this.bindPort = bindPort;
+		this.numEventLoopThreads = numEventLoopThreads;
+		this.numQueryThreads = numQueryThreads;
+		this.registry = checkNotNull(registry, "registry");
+	}
+
+	/**
+	 * Starts the server.
+	 *
+	 * @throws IOException If the server cannot bind to its address.
+	 */
+	public void start() throws IOException {
+		checkState(bootstrap == null, "The query server has already been started.");
+
+		queryExecutor = Executors.newFixedThreadPool(numQueryThreads, new ThreadFactoryBuilder()
+			.setDaemon(true)
+			.setNameFormat("Flink KvStateServer Query Thread %d")
+			.build());
+
+		NioEventLoopGroup eventLoopGroup = new NioEventLoopGroup(numEventLoopThreads, new ThreadFactoryBuilder()
+			.setDaemon(true)
+			.setNameFormat("Flink KvStateServer EventLoop Thread %d")
+			.build());
+
+		final KvStateServerHandler serverHandler = new KvStateServerHandler(registry, queryExecutor);
+
+		bootstrap = new ServerBootstrap()
+			.localAddress(bindAddress, bindPort)
+			.group(eventLoopGroup)
+			.channel(NioServerSocketChannel.class)
+			.childHandler(new ChannelInitializer<SocketChannel>() {
+				@Override
+				protected void initChannel(SocketChannel channel) throws Exception {
+					channel.pipeline()
+						.addLast(KvStateRequestSerializer.createFrameDecoder())
+						.addLast(serverHandler);
+				}
+			});
+
+		bindFuture = bootstrap.bind().awaitUninterruptibly();
+		if (!bindFuture.isSuccess()) {
+			Throwable cause = bindFuture.cause();
+			shutDown();
+			throw new IOException("Failed to bind the query server to " + bindAddress + ':' + bindPort + '.', cause);
+		}
+
+		InetSocketAddress localAddress = (InetSocketAddress) bindFuture.channel().localAddress();
+		serverAddress = new KvStateServerAddress(bindAddress, localAddress.getPort());
+
+		LOG.info("Started the query server @ {}.", serverAddress);
+	}
+
+	/**
+	 * Returns the address of the started server, which the clients connect to.
+	 */
+	public KvStateServerAddress getAddress() {
+		checkState(serverAddress != null, "The query server has not been started.");
+		return serverAddress;
+	}
+
+	/**
+	 * Shuts the server down. Requests that are being answered are dropped.
+	 */
+	public void shutDown() {
+		if (bindFuture != null) {
+			bindFuture.channel().close().awaitUninterruptibly();
+			bindFuture = null;
+		}
+
+		if (bootstrap != null) {
+			if (bootstrap.group() != null) {
+				bootstrap.group().shutdownGracefully();
+			}
+			bootstrap = null;
+		}
+
+		if (queryExecutor != null) {
+			queryExecutor.shutdownNow();
+			queryExecutor = null;
+		}
+
+		if (serverAddress != null) {
+			LOG.info("Shut down the query server @ {}.", serverAddress);
+			serverAddress = null;
+		}
+	}
+}
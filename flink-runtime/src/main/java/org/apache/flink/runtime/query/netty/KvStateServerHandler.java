@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.apache.flink.runtime.query.KvStateRegistry;
+import org.apache.flink.runtime.query.netty.message.KvStateRequest;
+import org.apache.flink.runtime.query.netty.message.KvStateRequestSerializer;
+import org.apache.flink.runtime.query.netty.message.KvStateRequestType;
+import org.apache.flink.runtime.state.KvState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The handler of the {@link KvStateServer}, which answers the requests of the clients.
+ *
+ * <p>The requests are decoded in the network threads and executed by the query threads of the
+ * server, so that slow lookups do not block the network. The state instances are read directly
+ * by the query threads, not by the tasks that own them.
+ */
+@ChannelHandler.Sharable
+class KvStateServerHandler extends ChannelInboundHandlerAdapter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(KvStateServerHandler.class);
+
+	/** The registry of the state instances of the TaskManager */
+	private final KvStateRegistry registry;
+
+	/** The executor of the lookups */
+	private final ExecutorService queryExecutor;
+
+	KvStateServerHandler(KvStateRegistry registry, ExecutorService queryExecutor) {
+		this.registry = checkNotNull(registry, "registry");
+		this.queryExecutor = checkNotNull(queryExecutor, "queryExecutor");
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		ByteBuf buf = (ByteBuf) msg;
+		KvStateRequest request = null;
+
+		try {
+			KvStateRequestType type = KvStateRequestSerializer.deserializeHeader(buf);
+			if (type != KvStateRequestType.REQUEST) {
+				throw new IllegalArgumentException("Unexpected message type " + type + ", expected " +
+					KvStateRequestType.REQUEST + ".");
+			}
+
+			request = KvStateRequestSerializer.deserializeKvStateRequest(buf);
+			queryExecutor.submit(new KvStateQuery(ctx, request));
+		} catch (RejectedExecutionException e) {
+			writeFailure(ctx, request.getRequestId(), new IllegalStateException("The query server is shut down.", e));
+		} catch (Throwable t) {
+			LOG.debug("Failed to handle incoming request.", t);
+
+			if (request == null) {
+				ctx.writeAndFlush(KvStateRequestSerializer.serializeServerFailure(ctx.alloc(), t));
+			} else {
+				writeFailure(ctx, request.getRequestId(), t);
+			}
+		} finally {
+			buf.release();
+		}
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+		LOG.debug("Exception in query server channel, closing the connection.", cause);
+
+		ctx.writeAndFlush(KvStateRequestSerializer.serializeServerFailure(ctx.alloc(), cause))
+			.addListener(ChannelFutureListener.CLOSE);
+	}
+
+	private static void writeFailure(ChannelHandlerContext ctx, long requestId, Throwable cause) throws Exception {
+		ctx.writeAndFlush(KvStateRequestSerializer.serializeKvStateRequestFailure(ctx.alloc(), requestId, cause));
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The lookup of a request, which is executed by a query thread.
+	 */
+	private class KvStateQuery implements Runnable {
+
+		private final ChannelHandlerContext ctx;
+
+		private final KvStateRequest request;
+
+		KvStateQuery(ChannelHandlerContext ctx, KvStateRequest request) {
+			this.ctx = ctx;
+			this.request = request;
+		}
+
+		@Override
+		public void run() {
+			try {
+				KvState<?, ?, ?, ?, ?> kvState = registry.getKvState(request.getKvStateId());
+				ByteBuf response;
+
+				if (kvState == null) {
+					response = KvStateRequestSerializer.serializeKvStateRequestFailure(
+						ctx.alloc(), request.getRequestId(), new UnknownKvStateID(request.getKvStateId()));
+				} else {
+					byte[] serializedResult = kvState.getSerializedValue(request.getSerializedKeyAndNamespace());
+
+					if (serializedResult == null) {
+						response = KvStateRequestSerializer.serializeKvStateRequestFailure(
+							ctx.alloc(), request.getRequestId(), new UnknownKeyOrNamespace());
+					} else {
+						response = KvStateRequestSerializer.serializeKvStateRequestResult(
+							ctx.alloc(), request.getRequestId(), serializedResult);
+					}
+				}
+
+				ctx.writeAndFlush(response).addListener(new ChannelFutureListener() {
+					@Override
+					public void operationComplete(ChannelFuture future) throws Exception {
+						if (!future.isSuccess()) {
+							LOG.debug("Failed to write the response of request {}.", request, future.cause());
+						}
+					}
+				});
+			} catch (Throwable t) {
+				try {
+					writeFailure(ctx, request.getRequestId(), t);
+				} catch (Throwable t2) {
+					LOG.error("Failed to write the failure of request {}.", request, t2);
+				}
+			}
+		}
+	}
+}
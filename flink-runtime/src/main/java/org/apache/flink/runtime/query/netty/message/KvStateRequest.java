@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query.netty.message;
+
+import org.apache.flink.runtime.query.KvStateID;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * A request for the value of a key and namespace in a registered state instance.
+ */
+public final class KvStateRequest {
+
+	/** The ID of the request, which the result or failure refers to */
+	private final long requestId;
+
+	/** The ID of the state instance */
+	private final KvStateID kvStateId;
+
+	/** The serialized key and namespace */
+	private final byte[] serializedKeyAndNamespace;
+
+	public KvStateRequest(long requestId, KvStateID kvStateId, byte[] serializedKeyAndNamespace) {
+		this.requestId = requestId;
+		this.kvStateId = checkNotNull(kvStateId, "kvStateId");
+		this.serializedKeyAndNamespace = checkNotNull(serializedKeyAndNamespace, "serializedKeyAndNamespace");
+	}
+
+	public long getRequestId() {
+		return requestId;
+	}
+
+	public KvStateID getKvStateId() {
+		return kvStateId;
+	}
+
+	public byte[] getSerializedKeyAndNamespace() {
+		return serializedKeyAndNamespace;
+	}
+
+	@Override
+	public String toString() {
+		return "KvStateRequest{requestId=" + requestId + ", kvStateId=" + kvStateId +
+			", serializedKeyAndNamespace.length=" + serializedKeyAndNamespace.length + '}';
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query.netty.message;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The failure of a {@link KvStateRequest}.
+ */
+public final class KvStateRequestFailure {
+
+	/** The ID of the request */
+	private final long requestId;
+
+	/** The cause of the failure */
+	private final Throwable cause;
+
+	public KvStateRequestFailure(long requestId, Throwable cause) {
+		this.requestId = requestId;
+		this.cause = checkNotNull(cause, "cause");
+	}
+
+	public long getRequestId() {
+		return requestId;
+	}
+
+	public Throwable getCause() {
+		return cause;
+	}
+
+	@Override
+	public String toString() {
+		return "KvStateRequestFailure{requestId=" + requestId + ", cause=" + cause + '}';
+	}
+}
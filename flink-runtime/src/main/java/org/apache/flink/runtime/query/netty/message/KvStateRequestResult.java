@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query.netty.message;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The successful result of a {@link KvStateRequest}, which holds the serialized value.
+ */
+public final class KvStateRequestResult {
+
+	/** The ID of the request */
+	private final long requestId;
+
+	/** The serialized value of the key and namespace */
+	private final byte[] serializedResult;
+
+	public KvStateRequestResult(long requestId, byte[] serializedResult) {
+		this.requestId = requestId;
+		this.serializedResult = checkNotNull(serializedResult, "serializedResult");
+	}
+
+	public long getRequestId() {
+		return requestId;
+	}
+
+	public byte[] getSerializedResult() {
+		return serializedResult;
+	}
+
+	@Override
+	public String toString() {
+		return "KvStateRequestResult{requestId=" + requestId +
+			", serializedResult.length=" + serializedResult.length + '}';
+	}
+}
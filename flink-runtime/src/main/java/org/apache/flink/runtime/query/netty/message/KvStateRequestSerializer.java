@@ -0,0 +1,395 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query.netty.message;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.runtime.query.KvStateID;
+import org.apache.flink.runtime.util.SerializedThrowable;
+import org.apache.flink.util.InstantiationUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serialization of the messages of the query protocol and of the keys and values of queried
+ * states.
+ *
+ * <p>Every message is a frame that starts with its length, followed by the version of the
+ * protocol and the {@link KvStateRequestType}. Clients and servers decode the frames with the
+ * decoder of {@link #createFrameDecoder()}, which strips the length.
+ *
+ * <p>The key and namespace of a request are serialized with the serializers of the state,
+ * separated by a magic byte. The values of the results are serialized independent of the
+ * state backend:
+ * <ul>
+ *     <li>values, reducing, folding and aggregating states: the value, or the accumulator,
+ *     serialized with the serializer of the state descriptor,</li>
+ *     <li>list states: the elements, separated by {@code ','},</li>
+ *     <li>map states: the pairs of the map, each as the key, a flag whether the value is
+ *     null, and the non-null value.</li>
+ * </ul>
+ */
+public final class KvStateRequestSerializer {
+
+	/** The version of the protocol */
+	private static final int VERSION = 1;
+
+	/** The length of the frame length field */
+	private static final int FRAME_LENGTH_LENGTH = 4;
+
+	/** The byte between the serialized key and namespace, as in the keys of the RocksDB backend */
+	private static final int MAGIC_NUMBER = 42;
+
+	/** The byte between the elements of a serialized list */
+	private static final int LIST_DELIMITER = ',';
+
+	// ------------------------------------------------------------------------
+	//  Messages
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Creates the decoder that splits the received bytes into the frames of the messages.
+	 */
+	public static LengthFieldBasedFrameDecoder createFrameDecoder() {
+		return new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, FRAME_LENGTH_LENGTH, 0, FRAME_LENGTH_LENGTH);
+	}
+
+	/**
+	 * Serializes a request for the value of a key and namespace.
+	 *
+	 * @param alloc The allocator of the buffer.
+	 * @param requestId The ID of the request.
+	 * @param kvStateId The ID of the queried state instance.
+	 * @param serializedKeyAndNamespace The serialized key and namespace.
+	 * @return The frame of the request.
+	 */
+	public static ByteBuf serializeKvStateRequest(
+			ByteBufAllocator alloc,
+			long requestId,
+			KvStateID kvStateId,
+			byte[] serializedKeyAndNamespace) {
+
+		ByteBuf buf = writeHeader(alloc, KvStateRequestType.REQUEST);
+		buf.writeLong(requestId);
+		buf.writeLong(kvStateId.getLowerPart());
+		buf.writeLong(kvStateId.getUpperPart());
+		buf.writeInt(serializedKeyAndNamespace.length);
+		buf.writeBytes(serializedKeyAndNamespace);
+		return finishFrame(buf);
+	}
+
+	/**
+	 * Serializes the successful result of a request.
+	 *
+	 * @param alloc The allocator of the buffer.
+	 * @param requestId The ID of the request.
+	 * @param serializedResult The serialized value.
+	 * @return The frame of the result.
+	 */
+	public static ByteBuf serializeKvStateRequestResult(ByteBufAllocator alloc, long requestId, byte[] serializedResult) {
+		ByteBuf buf = writeHeader(alloc, KvStateRequestType.REQUEST_RESULT);
+		buf.writeLong(requestId);
+		buf.writeInt(serializedResult.length);
+		buf.writeBytes(serializedResult);
+		return finishFrame(buf);
+	}
+
+	/**
+	 * Serializes the failure of a request.
+	 *
+	 * @param alloc The allocator of the buffer.
+	 * @param requestId The ID of the request.
+	 * @param cause The cause of the failure.
+	 * @return The frame of the failure.
+	 */
+	public static ByteBuf serializeKvStateRequestFailure(ByteBufAllocator alloc, long requestId, Throwable cause) throws IOException {
+		ByteBuf buf = writeHeader(alloc, KvStateRequestType.REQUEST_FAILURE);
+		buf.writeLong(requestId);
+		writeThrowable(buf, cause);
+		return finishFrame(buf);
+	}
+
+	/**
+	 * Serializes a failure of the server, which fails all requests of the connection.
+	 *
+	 * @param alloc The allocator of the buffer.
+	 * @param cause The cause of the failure.
+	 * @return The frame of the failure.
+	 */
+	public static ByteBuf serializeServerFailure(ByteBufAllocator alloc, Throwable cause) throws IOException {
+		ByteBuf buf = writeHeader(alloc, KvStateRequestType.SERVER_FAILURE);
+		writeThrowable(buf, cause);
+		return finishFrame(buf);
+	}
+
+	/**
+	 * Reads the header of a frame, which was split by the decoder of {@link #createFrameDecoder()}.
+	 *
+	 * @param buf The frame.
+	 * @return The type of the message.
+	 * @throws IllegalArgumentException If the frame has an unknown version or type.
+	 */
+	public static KvStateRequestType deserializeHeader(ByteBuf buf) {
+		int version = buf.readInt();
+		if (version != VERSION) {
+			throw new IllegalArgumentException("Unexpected query protocol version " + version +
+				", expected " + VERSION + ".");
+		}
+
+		int type = buf.readInt();
+		KvStateRequestType[] types = KvStateRequestType.values();
+		if (type < 0 || type >= types.length) {
+			throw new IllegalArgumentException("Unknown message type " + type + ".");
+		}
+		return types[type];
+	}
+
+	public static KvStateRequest deserializeKvStateRequest(ByteBuf buf) {
+		long requestId = buf.readLong();
+		KvStateID kvStateId = new KvStateID(buf.readLong(), buf.readLong());
+		byte[] serializedKeyAndNamespace = readBytes(buf);
+		return new KvStateRequest(requestId, kvStateId, serializedKeyAndNamespace);
+	}
+
+	public static KvStateRequestResult deserializeKvStateRequestResult(ByteBuf buf) {
+		long requestId = buf.readLong();
+		byte[] serializedResult = readBytes(buf);
+		return new KvStateRequestResult(requestId, serializedResult);
+	}
+
+	public static KvStateRequestFailure deserializeKvStateRequestFailure(ByteBuf buf) throws IOException, ClassNotFoundException {
+		long requestId = buf.readLong();
+		return new KvStateRequestFailure(requestId, readThrowable(buf));
+	}
+
+	public static Throwable deserializeServerFailure(ByteBuf buf) throws IOException, ClassNotFoundException {
+		return readThrowable(buf);
+	}
+
+	private static ByteBuf writeHeader(ByteBufAllocator alloc, KvStateRequestType type) {
+		ByteBuf buf = alloc.ioBuffer();
+		// the frame length is set when the frame is finished
+		buf.writeInt(0);
+		buf.writeInt(VERSION);
+		buf.writeInt(type.ordinal());
+		return buf;
+	}
+
+	private static ByteBuf finishFrame(ByteBuf buf) {
+		buf.setInt(0, buf.readableBytes() - FRAME_LENGTH_LENGTH);
+		return buf;
+	}
+
+	private static byte[] readBytes(ByteBuf buf) {
+		int length = buf.readInt();
+		if (length < 0 || length > buf.readableBytes()) {
+			throw new IllegalArgumentException("Invalid length " + length + " of the serialized data.");
+		}
+		byte[] bytes = new byte[length];
+		buf.readBytes(bytes);
+		return bytes;
+	}
+
+	private static void writeThrowable(ByteBuf buf, Throwable cause) throws IOException {
+		// the class of the cause may not be available to the receiver
+		try (ObjectOutputStream out = new ObjectOutputStream(new ByteBufOutputStream(buf))) {
+			out.writeObject(new SerializedThrowable(cause));
+		}
+	}
+
+	private static Throwable readThrowable(ByteBuf buf) throws IOException, ClassNotFoundException {
+		ClassLoader classLoader = KvStateRequestSerializer.class.getClassLoader();
+		try (InstantiationUtil.ClassLoaderObjectInputStream in =
+				new InstantiationUtil.ClassLoaderObjectInputStream(new ByteBufInputStream(buf), classLoader)) {
+			return SerializedThrowable.get((Throwable) in.readObject(), classLoader);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  Keys and values
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Serializes the key and namespace of a request for the value of a queried state.
+	 *
+	 * @param key The key.
+	 * @param keySerializer The serializer for the keys of the state.
+	 * @param namespace The namespace.
+	 * @param namespaceSerializer The serializer for the namespaces of the state.
+	 * @return The serialized key and namespace.
+	 */
+	public static <K, N> byte[] serializeKeyAndNamespace(
+			K key,
+			TypeSerializer<K> keySerializer,
+			N namespace,
+			TypeSerializer<N> namespaceSerializer) throws IOException {
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputViewStreamWrapper out = new DataOutputViewStreamWrapper(baos);
+		keySerializer.serialize(key, out);
+		out.writeByte(MAGIC_NUMBER);
+		namespaceSerializer.serialize(namespace, out);
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Deserializes the key and namespace of a request.
+	 *
+	 * @param serializedKeyAndNamespace The serialized key and namespace.
+	 * @param keySerializer The serializer for the keys of the state.
+	 * @param namespaceSerializer The serializer for the namespaces of the state.
+	 * @return The key and namespace.
+	 * @throws IOException If the data is not a key and namespace of the serializers.
+	 */
+	public static <K, N> Tuple2<K, N> deserializeKeyAndNamespace(
+			byte[] serializedKeyAndNamespace,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer) throws IOException {
+
+		DataInputViewStreamWrapper in = new DataInputViewStreamWrapper(new ByteArrayInputStream(serializedKeyAndNamespace));
+		try {
+			K key = keySerializer.deserialize(in);
+			if (in.readByte() != MAGIC_NUMBER) {
+				throw new IOException("Unexpected magic number after the key.");
+			}
+			N namespace = namespaceSerializer.deserialize(in);
+			if (in.available() > 0) {
+				throw new IOException("Unconsumed bytes after the namespace.");
+			}
+			return new Tuple2<>(key, namespace);
+		} catch (IOException e) {
+			throw new IOException("Unable to deserialize the key and namespace. This indicates a " +
+				"mismatch of the serializers of the request and of the queried state.", e);
+		}
+	}
+
+	/**
+	 * Serializes the value of a value, reducing, folding or aggregating state.
+	 */
+	public static <T> byte[] serializeValue(T value, TypeSerializer<T> serializer) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		serializer.serialize(value, new DataOutputViewStreamWrapper(baos));
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Deserializes the value of a value, reducing, folding or aggregating state.
+	 */
+	public static <T> T deserializeValue(byte[] serializedValue, TypeSerializer<T> serializer) throws IOException {
+		return serializer.deserialize(new DataInputViewStreamWrapper(new ByteArrayInputStream(serializedValue)));
+	}
+
+	/**
+	 * Serializes the elements of a list state.
+	 */
+	public static <T> byte[] serializeList(Iterable<T> list, TypeSerializer<T> serializer) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputViewStreamWrapper out = new DataOutputViewStreamWrapper(baos);
+
+		boolean first = true;
+		for (T element : list) {
+			if (first) {
+				first = false;
+			} else {
+				out.writeByte(LIST_DELIMITER);
+			}
+			serializer.serialize(element, out);
+		}
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Deserializes the elements of a list state.
+	 */
+	public static <T> List<T> deserializeList(byte[] serializedList, TypeSerializer<T> serializer) throws IOException {
+		DataInputViewStreamWrapper in = new DataInputViewStreamWrapper(new ByteArrayInputStream(serializedList));
+
+		List<T> list = new ArrayList<>();
+		while (in.available() > 0) {
+			list.add(serializer.deserialize(in));
+			if (in.available() > 0 && in.readByte() != LIST_DELIMITER) {
+				throw new IOException("Unexpected delimiter between the elements of the list.");
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Serializes the pairs of a map state.
+	 */
+	public static <UK, UV> byte[] serializeMap(
+			Iterable<Map.Entry<UK, UV>> entries,
+			TypeSerializer<UK> keySerializer,
+			TypeSerializer<UV> valueSerializer) throws IOException {
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputViewStreamWrapper out = new DataOutputViewStreamWrapper(baos);
+
+		for (Map.Entry<UK, UV> entry : entries) {
+			keySerializer.serialize(entry.getKey(), out);
+			if (entry.getValue() == null) {
+				out.writeBoolean(true);
+			} else {
+				out.writeBoolean(false);
+				valueSerializer.serialize(entry.getValue(), out);
+			}
+		}
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Deserializes the pairs of a map state.
+	 */
+	public static <UK, UV> Map<UK, UV> deserializeMap(
+			byte[] serializedMap,
+			TypeSerializer<UK> keySerializer,
+			TypeSerializer<UV> valueSerializer) throws IOException {
+
+		DataInputViewStreamWrapper in = new DataInputViewStreamWrapper(new ByteArrayInputStream(serializedMap));
+
+		Map<UK, UV> map = new HashMap<>();
+		while (in.available() > 0) {
+			UK key = keySerializer.deserialize(in);
+			boolean isNull = in.readBoolean();
+			map.put(key, isNull ? null : valueSerializer.deserialize(in));
+		}
+		return map;
+	}
+
+	// ------------------------------------------------------------------------
+
+	/** Do not instantiate */
+	private KvStateRequestSerializer() {
+		throw new AssertionError();
+	}
+}
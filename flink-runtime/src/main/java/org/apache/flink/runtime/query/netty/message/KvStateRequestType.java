@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query.netty.message;
+
+/**
+ * The types of the messages of the query protocol between the
+ * {@link org.apache.flink.runtime.query.netty.KvStateClient} and the
+ * {@link org.apache.flink.runtime.query.netty.KvStateServer}.
+ */
+public enum KvStateRequestType {
+
+	/** The request for the value of a key */
+	REQUEST,
+
+	/** The successful result of a request */
+	REQUEST_RESULT,
+
+	/** The failure of a request */
+	REQUEST_FAILURE,
+
+	/** A failure of the server, which is not related to a single request */
+	SERVER_FAILURE
+}
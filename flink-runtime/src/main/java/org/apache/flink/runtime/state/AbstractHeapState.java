@@ -19,11 +19,15 @@
 package org.apache.flink.runtime.state;
 
 import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.MapStateDescriptor;
 import org.apache.flink.api.common.state.State;
 import org.apache.flink.api.common.state.StateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.runtime.query.netty.message.KvStateRequestSerializer;
 
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static java.util.Objects.requireNonNull;
@@ -31,6 +35,9 @@ import static java.util.Objects.requireNonNull;
 /**
  * Base class for partitioned {@link ListState} implementations that are backed by a regular
  * heap hash map. The concrete implementations define how the state is checkpointed.
+ *
+ * <p>The key/value pairs are held in a copy-on-write {@link StateTable}, which allows the
+ * concrete implementations to snapshot the state asynchronously.
  * 
  * @param <K> The type of the key.
  * @param <N> The type of the namespace.
@@ -42,8 +49,8 @@ import static java.util.Objects.requireNonNull;
 public abstract class AbstractHeapState<K, N, SV, S extends State, SD extends StateDescriptor<S, ?>, Backend extends AbstractStateBackend>
 		implements KvState<K, N, S, SD, Backend>, State {
 
-	/** Map containing the actual key/value pairs */
-	protected final HashMap<N, Map<K, SV>> state;
+	/** The key/value pairs of all key groups and namespaces of this state */
+	protected final StateTable<K, N, SV> stateTable;
 
 	/** Serializer for the state value. The state value could be a List<V>, for example. */
 	protected final TypeSerializer<SV> stateSerializer;
@@ -63,9 +70,6 @@ public abstract class AbstractHeapState<K, N, SV, S extends State, SD extends St
 	/** The current namespace, which the access methods will refer to. */
 	protected N currentNamespace = null;
 
-	/** Cache the state map for the current key. */
-	protected Map<K, SV> currentNSState;
-
 	/**
 	 * Creates a new empty key/value state.
 	 *
@@ -73,28 +77,33 @@ public abstract class AbstractHeapState<K, N, SV, S extends State, SD extends St
 	 * @param namespaceSerializer The serializer for the namespace.
 	 * @param stateDesc The state identifier for the state. This contains name
 	 *                           and can create a default state value.
+	 * @param numberOfKeyGroups The total number of key groups of the job.
+	 * @param keyGroupRange The key groups that this state holds the key/value pairs for.
 	 */
 	protected AbstractHeapState(TypeSerializer<K> keySerializer,
 		TypeSerializer<N> namespaceSerializer,
 		TypeSerializer<SV> stateSerializer,
-		SD stateDesc) {
-		this(keySerializer, namespaceSerializer, stateSerializer, stateDesc, new HashMap<N, Map<K, SV>>());
+		SD stateDesc,
+		int numberOfKeyGroups,
+		KeyGroupRange keyGroupRange) {
+		this(keySerializer, namespaceSerializer, stateSerializer, stateDesc,
+			new StateTable<K, N, SV>(stateSerializer, numberOfKeyGroups, keyGroupRange));
 	}
 
 	/**
-	 * Creates a new key/value state for the given hash map of key/value pairs.
+	 * Creates a new key/value state for the given table of key/value pairs.
 	 *
 	 * @param keySerializer The serializer for the keys.
 	 * @param stateDesc The state identifier for the state. This contains name
 	 *                           and can create a default state value.
-	 * @param state The state map to use in this kev/value state. May contain initial state.
+	 * @param stateTable The state table to use in this kev/value state. May contain initial state.
 	 */
 	protected AbstractHeapState(TypeSerializer<K> keySerializer,
 		TypeSerializer<N> namespaceSerializer,
 		TypeSerializer<SV> stateSerializer,
 		SD stateDesc,
-		HashMap<N, Map<K, SV>> state) {
-		this.state = requireNonNull(state);
+		StateTable<K, N, SV> stateTable) {
+		this.stateTable = requireNonNull(stateTable);
 		this.keySerializer = requireNonNull(keySerializer);
 		this.namespaceSerializer = requireNonNull(namespaceSerializer);
 		this.stateSerializer = stateSerializer;
@@ -105,43 +114,96 @@ public abstract class AbstractHeapState<K, N, SV, S extends State, SD extends St
 
 	@Override
 	public final void clear() {
-		if (currentNSState != null) {
-			currentNSState.remove(currentKey);
-			if (currentNSState.isEmpty()) {
-				state.remove(currentNamespace);
-				currentNSState = null;
-			}
-		}
+		stateTable.remove(currentKey, currentNamespace);
 	}
 
 	@Override
 	public final void setCurrentKey(K currentKey) {
 		this.currentKey = currentKey;
+
+		// no key means that nothing can be written, and reads see no state
+		if (currentKey != null) {
+			stateTable.checkKeyGroup(
+				KeyGroupRangeAssignment.assignToKeyGroup(currentKey, stateTable.getNumberOfKeyGroups()));
+		}
 	}
 
 	@Override
 	public final void setCurrentNamespace(N namespace) {
-		if (namespace != null && namespace.equals(this.currentNamespace)) {
-			return;
-		}
 		this.currentNamespace = namespace;
-		this.currentNSState = state.get(currentNamespace);
+	}
+
+	@Override
+	public byte[] getSerializedValue(byte[] serializedKeyAndNamespace) throws Exception {
+		Tuple2<K, N> keyAndNamespace = KvStateRequestSerializer.deserializeKeyAndNamespace(
+			serializedKeyAndNamespace, keySerializer, namespaceSerializer);
+
+		SV value = stateTable.getConcurrently(keyAndNamespace.f0, keyAndNamespace.f1);
+		return value == null ? null : serializeQueriedValue(value);
+	}
+
+	/**
+	 * Serializes a value of the state for a query, in the format of {@link KvStateRequestSerializer}.
+	 * This is called by a query thread. The task may modify the value concurrently, in which
+	 * case the serialization may fail or see a partial update.
+	 *
+	 * @param value The value of the queried key and namespace.
+	 * @return The serialized value, or null if the value is not visible to the task any more.
+	 */
+	@SuppressWarnings("unchecked")
+	protected byte[] serializeQueriedValue(SV value) throws Exception {
+		if (stateDesc instanceof ListStateDescriptor) {
+			return KvStateRequestSerializer.serializeList((List<Object>) value,
+				((ListStateDescriptor<Object>) stateDesc).getSerializer());
+		} else if (stateDesc instanceof MapStateDescriptor) {
+			MapStateDescriptor<Object, Object> mapStateDesc = (MapStateDescriptor<Object, Object>) stateDesc;
+			return KvStateRequestSerializer.serializeMap(((Map<Object, Object>) value).entrySet(),
+				mapStateDesc.getKeySerializer(), mapStateDesc.getValueSerializer());
+		} else {
+			return KvStateRequestSerializer.serializeValue(value, stateSerializer);
+		}
 	}
 
 	/**
 	 * Returns the number of all state pairs in this state, across namespaces.
 	 */
 	protected final int size() {
-		int size = 0;
-		for (Map<K, SV> namespace: state.values()) {
-			size += namespace.size();
-		}
-		return size;
+		return stateTable.size();
+	}
+
+	/**
+	 * Creates the filter for the values that are written to a snapshot of this state. This is
+	 * called when a snapshot is taken, before it is written asynchronously.
+	 *
+	 * @return The filter for the values, or null if all values are written.
+	 */
+	protected StateTable.ValueFilter<SV> createSnapshotFilter() {
+		return null;
+	}
+
+	/**
+	 * Adds the key/value pairs of all key groups of the given state that belong to the key
+	 * group range of this state. This is used to combine the state of several snapshots when
+	 * the state is restored with a different parallelism than it was checkpointed with.
+	 *
+	 * @param other The state to take the key/value pairs from.
+	 */
+	public void mergeKeyGroupsFrom(AbstractHeapState<K, N, SV, S, SD, Backend> other) {
+		stateTable.putAll(other.stateTable);
+	}
+
+	/**
+	 * Gets the table that holds the key/value pairs of all key groups of this state.
+	 *
+	 * @return The state table.
+	 */
+	public final StateTable<K, N, SV> getStateTable() {
+		return stateTable;
 	}
 
 	@Override
 	public void dispose() {
-		state.clear();
+		stateTable.clear();
 	}
 
 	/**
@@ -19,11 +19,16 @@
 package org.apache.flink.runtime.state;
 
 import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.functions.AggregateFunction;
 import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.state.AggregatingState;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
 import org.apache.flink.api.common.state.FoldingState;
 import org.apache.flink.api.common.state.FoldingStateDescriptor;
 import org.apache.flink.api.common.state.ListState;
 import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
 import org.apache.flink.api.common.state.MergingState;
 import org.apache.flink.api.common.state.ReducingState;
 import org.apache.flink.api.common.state.ReducingStateDescriptor;
@@ -32,12 +37,16 @@ import org.apache.flink.api.common.state.StateBackend;
 import org.apache.flink.api.common.state.StateDescriptor;
 import org.apache.flink.api.common.state.ValueState;
 import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.CompatibilityResult;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.TypeSerializerConfigSnapshot;
 import org.apache.flink.core.memory.DataInputView;
 import org.apache.flink.core.memory.DataInputViewStreamWrapper;
 import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
 import org.apache.flink.runtime.execution.Environment;
+import org.apache.flink.runtime.query.KvStateID;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -45,9 +54,12 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * A state backend defines how state is stored and snapshotted during checkpoints.
  */
@@ -61,18 +73,37 @@ public abstract class AbstractStateBackend implements java.io.Serializable {
 
 	protected transient Object currentKey;
 
+	/** The total number of key groups of the job, 0 if not initialized with key groups */
+	private transient int numberOfKeyGroups;
+
+	/** The key groups that this backend holds the partitioned state for */
+	private transient KeyGroupRange keyGroupRange;
+
 	/** For efficient access in setCurrentKey() */
 	private transient KvState<?, ?, ?, ?, ?>[] keyValueStates;
 
 	/** So that we can give out state when the user uses the same key. */
 	protected transient HashMap<String, KvState<?, ?, ?, ?, ?>> keyValueStatesByName;
 
+	/** The names of the restored states that were not accessed yet. Their first access checks
+	 * whether the serializer of the state can read the restored values. */
+	private transient HashSet<String> uncheckedRestoredStates;
+
 	/** For caching the last accessed partitioned state */
 	private transient String lastName;
 
 	@SuppressWarnings("rawtypes")
 	private transient KvState lastState;
 
+	/** The clock for the time-to-live of the partitioned state */
+	private transient TtlTimeProvider ttlTimeProvider;
+
+	/** The registry of the task for the queryable states, null if the task has none */
+	private transient TaskKvStateRegistry kvStateRegistry;
+
+	/** The IDs of the queryable states of this backend by their registration names */
+	private transient HashMap<String, KvStateID> queryableStates;
+
 	// ------------------------------------------------------------------------
 	//  initialization and cleanup
 	// ------------------------------------------------------------------------
@@ -92,6 +123,41 @@ public abstract class AbstractStateBackend implements java.io.Serializable {
 		TypeSerializer<?> keySerializer) throws Exception {
 		this.userCodeClassLoader = env.getUserClassLoader();
 		this.keySerializer = keySerializer;
+		this.kvStateRegistry = env.getTaskKvStateRegistry();
+	}
+
+	/**
+	 * This method is called by the task upon deployment to initialize the state backend for
+	 * data for a specific job. In addition to {@link #initializeForJob(Environment, String, TypeSerializer)},
+	 * it defines the key groups for which this backend holds the partitioned state.
+	 *
+	 * @param env The {@link Environment} of the task that instantiated the state backend
+	 * @param operatorIdentifier Unique identifier for naming states created by this backend
+	 * @param keySerializer The serializer for the keys of the partitioned state
+	 * @param numberOfKeyGroups The total number of key groups of the job
+	 * @param keyGroupRange The key groups that are assigned to this backend
+	 * @throws Exception Overwritten versions of {@link #initializeForJob(Environment, String, TypeSerializer)}
+	 *                   may throw exceptions, in which case the job that uses the state backend
+	 *                   is considered failed during deployment.
+	 */
+	public void initializeForJob(Environment env,
+		String operatorIdentifier,
+		TypeSerializer<?> keySerializer,
+		int numberOfKeyGroups,
+		KeyGroupRange keyGroupRange) throws Exception {
+
+		if (numberOfKeyGroups <= 0) {
+			throw new IllegalArgumentException("The number of key groups must be positive.");
+		}
+		if (keyGroupRange.getEndKeyGroup() >= numberOfKeyGroups) {
+			throw new IllegalArgumentException("The key group range " + keyGroupRange +
+				" exceeds the number of key groups " + numberOfKeyGroups + ".");
+		}
+
+		this.numberOfKeyGroups = numberOfKeyGroups;
+		this.keyGroupRange = keyGroupRange;
+
+		initializeForJob(env, operatorIdentifier, keySerializer);
 	}
 
 	/**
@@ -110,6 +176,22 @@ public abstract class AbstractStateBackend implements java.io.Serializable {
 	public abstract void close() throws Exception;
 
 	public void dispose() {
+		discardPartitionedStates();
+
+		currentKey = null;
+		numberOfKeyGroups = 0;
+		keyGroupRange = null;
+	}
+
+	/**
+	 * Disposes the key/value states that were handed out so far and drops them from the caches.
+	 * The next access to a state creates a new state object. Backends that replace their storage
+	 * when restoring call this first, so that no state object keeps using the replaced storage.
+	 */
+	protected void discardPartitionedStates() {
+		// queries must not find the states any more once they are disposed
+		unregisterQueryableStates();
+
 		lastName = null;
 		lastState = null;
 		if (keyValueStates != null) {
@@ -119,6 +201,26 @@ public abstract class AbstractStateBackend implements java.io.Serializable {
 		}
 		keyValueStates = null;
 		keyValueStatesByName = null;
+		uncheckedRestoredStates = null;
+	}
+
+	/**
+	 * Gets the total number of key groups of the job. If the backend was not initialized
+	 * with key groups, all state belongs to a single key group.
+	 *
+	 * @return The total number of key groups.
+	 */
+	public int getNumberOfKeyGroups() {
+		return numberOfKeyGroups > 0 ? numberOfKeyGroups : 1;
+	}
+
+	/**
+	 * Gets the key groups for which this backend holds the partitioned state.
+	 *
+	 * @return The key group range of this backend.
+	 */
+	public KeyGroupRange getKeyGroupRange() {
+		return keyGroupRange != null ? keyGroupRange : new KeyGroupRange(0, 0);
 	}
 	
 	// ------------------------------------------------------------------------
@@ -170,6 +272,49 @@ public abstract class AbstractStateBackend implements java.io.Serializable {
 	 */
 	protected abstract <N, T, ACC> FoldingState<T, ACC> createFoldingState(TypeSerializer<N> namespaceSerializer, FoldingStateDescriptor<T, ACC> stateDesc) throws Exception;
 
+	/**
+	 * Creates and returns a new {@link MapState}.
+	 *
+	 * @param namespaceSerializer TypeSerializer for the state namespace.
+	 * @param stateDesc The {@code StateDescriptor} that contains the name of the state.
+	 *
+	 * @param <N> The type of the namespace.
+	 * @param <UK> Type of the keys in the state
+	 * @param <UV> Type of the values in the state
+	 */
+	protected abstract <N, UK, UV> MapState<UK, UV> createMapState(TypeSerializer<N> namespaceSerializer, MapStateDescriptor<UK, UV> stateDesc) throws Exception;
+
+	/**
+	 * Creates and returns a new {@link AggregatingState}. The returned state must implement
+	 * {@link InternalAggregatingState}, so that the accumulators of several namespaces can be merged.
+	 *
+	 * @param namespaceSerializer TypeSerializer for the state namespace.
+	 * @param stateDesc The {@code StateDescriptor} that contains the name of the state.
+	 *
+	 * @param <N> The type of the namespace.
+	 * @param <IN> Type of the values aggregated into the state
+	 * @param <ACC> Type of the accumulator in the state
+	 * @param <OUT> Type of the result of the aggregation
+	 */
+	protected abstract <N, IN, ACC, OUT> AggregatingState<IN, OUT> createAggregatingState(TypeSerializer<N> namespaceSerializer, AggregatingStateDescriptor<IN, ACC, OUT> stateDesc) throws Exception;
+
+	/**
+	 * Returns the clock for the time-to-live of the partitioned state.
+	 */
+	public TtlTimeProvider getTtlTimeProvider() {
+		return ttlTimeProvider != null ? ttlTimeProvider : TtlTimeProvider.SYSTEM_CLOCK;
+	}
+
+	/**
+	 * Sets the clock for the time-to-live of the partitioned state. This must be called before
+	 * the partitioned state is created or restored. The system clock is used by default.
+	 *
+	 * @param ttlTimeProvider The clock for the time-to-live.
+	 */
+	public void setTtlTimeProvider(TtlTimeProvider ttlTimeProvider) {
+		this.ttlTimeProvider = requireNonNull(ttlTimeProvider);
+	}
+
 	/**
 	 * Sets the current key that is used for partitioned state.
 	 * @param currentKey The current key.
@@ -224,14 +369,81 @@ public abstract class AbstractStateBackend implements java.io.Serializable {
 
 		KvState<?, ?, ?, ?, ?> previous = keyValueStatesByName.get(stateDescriptor.getName());
 		if (previous != null) {
+			if (uncheckedRestoredStates != null && uncheckedRestoredStates.remove(stateDescriptor.getName())) {
+				KvState<?, ?, ?, ?, ?> migrated = migrateRestoredState(previous, namespaceSerializer, stateDescriptor);
+				if (migrated != previous) {
+					keyValueStatesByName.put(stateDescriptor.getName(), migrated);
+					keyValueStates = keyValueStatesByName.values().toArray(new KvState[keyValueStatesByName.size()]);
+					((KvState) migrated).setCurrentKey(currentKey);
+					previous = migrated;
+				}
+				registerQueryableState(stateDescriptor, previous);
+			}
+
 			lastState = previous;
 			lastState.setCurrentNamespace(namespace);
 			lastName = stateDescriptor.getName();
 			return (S) previous;
 		}
 
+		if (stateDescriptor.isTtlEnabled() && !(stateDescriptor instanceof ValueStateDescriptor)) {
+			throw new UnsupportedOperationException("The time-to-live is only supported for value state, " +
+				"but it is enabled for " + stateDescriptor + ".");
+		}
+
 		// create a new blank key/value state
-		S kvstate = stateDescriptor.bind(new StateBackend() {
+		S kvstate = createPartitionedState(namespaceSerializer, stateDescriptor);
+
+		keyValueStatesByName.put(stateDescriptor.getName(), (KvState) kvstate);
+		keyValueStates = keyValueStatesByName.values().toArray(new KvState[keyValueStatesByName.size()]);
+
+		lastName = stateDescriptor.getName();
+		lastState = (KvState<?, ?, ?, ?, ?>) kvstate;
+
+		((KvState) kvstate).setCurrentKey(currentKey);
+		((KvState) kvstate).setCurrentNamespace(namespace);
+
+		registerQueryableState(stateDescriptor, (KvState<?, ?, ?, ?, ?>) kvstate);
+
+		return kvstate;
+	}
+
+	/**
+	 * Registers the state for queries if its descriptor is queryable. Restored states are
+	 * registered when they are first accessed, because only the descriptor of the program
+	 * tells whether they are queryable.
+	 */
+	private void registerQueryableState(StateDescriptor<?, ?> stateDescriptor, KvState<?, ?, ?, ?, ?> kvState) {
+		if (!stateDescriptor.isQueryable() || kvStateRegistry == null) {
+			return;
+		}
+
+		String name = stateDescriptor.getQueryableStateName();
+		if (queryableStates == null) {
+			queryableStates = new HashMap<>();
+		} else if (queryableStates.containsKey(name)) {
+			throw new IllegalStateException("The state " + stateDescriptor.getName() +
+				" cannot be queried as " + name + ", because another state of the operator has this name.");
+		}
+
+		queryableStates.put(name, kvStateRegistry.registerKvState(getKeyGroupRange(), name, kvState));
+	}
+
+	private void unregisterQueryableStates() {
+		if (queryableStates != null) {
+			KeyGroupRange range = getKeyGroupRange();
+			for (Map.Entry<String, KvStateID> entry : queryableStates.entrySet()) {
+				kvStateRegistry.unregisterKvState(range, entry.getKey(), entry.getValue());
+			}
+			queryableStates = null;
+		}
+	}
+
+	/**
+	 * Creates a new blank key/value state for the given descriptor.
+	 */
+	private <N, S extends State> S createPartitionedState(final TypeSerializer<N> namespaceSerializer, StateDescriptor<S, ?> stateDescriptor) throws Exception {
+		return stateDescriptor.bind(new StateBackend() {
 			@Override
 			public <T> ValueState<T> createValueState(ValueStateDescriptor<T> stateDesc) throws Exception {
 				return AbstractStateBackend.this.createValueState(namespaceSerializer, stateDesc);
@@ -252,21 +464,96 @@ public abstract class AbstractStateBackend implements java.io.Serializable {
 				return AbstractStateBackend.this.createFoldingState(namespaceSerializer, stateDesc);
 			}
 
+			@Override
+			public <UK, UV> MapState<UK, UV> createMapState(MapStateDescriptor<UK, UV> stateDesc) throws Exception {
+				return AbstractStateBackend.this.createMapState(namespaceSerializer, stateDesc);
+			}
+
+			@Override
+			public <IN, ACC, OUT> AggregatingState<IN, OUT> createAggregatingState(AggregatingStateDescriptor<IN, ACC, OUT> stateDesc) throws Exception {
+				return AbstractStateBackend.this.createAggregatingState(namespaceSerializer, stateDesc);
+			}
+
 		});
+	}
 
-		keyValueStatesByName.put(stateDescriptor.getName(), (KvState) kvstate);
-		keyValueStates = keyValueStatesByName.values().toArray(new KvState[keyValueStatesByName.size()]);
+	/**
+	 * Checks whether a restored K/V state can be accessed with the given descriptor, which is the
+	 * first descriptor that accesses the state after the restore.
+	 *
+	 * <p>Heap based states hold the restored values as objects, which the serializer of the
+	 * snapshot has read. If the serializer of the descriptor requires a migration, the values
+	 * are moved to a new state with the serializer of the descriptor, which writes them into the
+	 * next checkpoints. Backends whose states are not heap based must override this method.
+	 *
+	 * @param restored The restored state.
+	 * @param namespaceSerializer The serializer for the namespaces of the state.
+	 * @param stateDescriptor The descriptor of the first access.
+	 * @return The state for the descriptor, which is the restored state unless it was migrated.
+	 * @throws StateMigrationException Thrown, if the state cannot be accessed with the descriptor.
+	 */
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	protected <N, S extends State> KvState<?, ?, ?, ?, ?> migrateRestoredState(
+			KvState<?, ?, ?, ?, ?> restored,
+			TypeSerializer<N> namespaceSerializer,
+			StateDescriptor<S, ?> stateDescriptor) throws Exception {
 
-		lastName = stateDescriptor.getName();
-		lastState = (KvState<?, ?, ?, ?, ?>) kvstate;
+		if (!(restored instanceof AbstractHeapState)) {
+			return restored;
+		}
 
-		((KvState) kvstate).setCurrentKey(currentKey);
-		((KvState) kvstate).setCurrentNamespace(namespace);
+		AbstractHeapState restoredState = (AbstractHeapState) restored;
+		CompatibilityResult<?> compatibility = checkStateCompatibility(restoredState.stateDesc, stateDescriptor);
+		if (!compatibility.isRequiresMigration()) {
+			return restored;
+		}
 
-		return kvstate;
+		AbstractHeapState migrated = (AbstractHeapState) createPartitionedState(namespaceSerializer, stateDescriptor);
+		migrated.mergeKeyGroupsFrom(restoredState);
+		restoredState.dispose();
+		return migrated;
 	}
 
-	@SuppressWarnings("unchecked,rawtypes")
+	/**
+	 * Checks whether the values of a state that were written with the given restored descriptor
+	 * can be read with the serializer of the given new descriptor. The check uses the
+	 * configuration snapshot of the serializer that the restored descriptor carries.
+	 *
+	 * @return The compatibility of the values, which holds a convert deserializer for the
+	 *         restored values if they have to be migrated.
+	 * @throws StateMigrationException Thrown, if the state has a different type, or the restored
+	 *                                 values cannot be read with the new serializer.
+	 */
+	protected static CompatibilityResult<?> checkStateCompatibility(
+			StateDescriptor<?, ?> restoredDescriptor,
+			StateDescriptor<?, ?> stateDescriptor) throws StateMigrationException {
+
+		if (restoredDescriptor.equals(stateDescriptor)) {
+			return CompatibilityResult.compatible();
+		}
+
+		if (restoredDescriptor.getClass() != stateDescriptor.getClass()) {
+			throw new StateMigrationException("The state " + stateDescriptor.getName() + " was written as " +
+				restoredDescriptor.getClass().getSimpleName() + " and cannot be accessed with a " +
+				stateDescriptor.getClass().getSimpleName() + ".");
+		}
+
+		TypeSerializerConfigSnapshot configSnapshot = restoredDescriptor.getSerializerConfigSnapshot();
+		if (configSnapshot == null) {
+			// the snapshot was written before the configuration snapshots of serializers were added
+			configSnapshot = restoredDescriptor.getSerializer().snapshotConfiguration();
+		}
+
+		CompatibilityResult<?> compatibility = stateDescriptor.getSerializer().ensureCompatibility(configSnapshot);
+		if (compatibility.isIncompatible()) {
+			throw new StateMigrationException("The serializer " + stateDescriptor.getSerializer() +
+				" of the state " + stateDescriptor.getName() + " cannot read the values that were written by " +
+				restoredDescriptor.getSerializer() + ".");
+		}
+		return compatibility;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
 	public <N, S extends MergingState<?, ?>> void mergePartitionedStates(final N target, Collection<N> sources, final TypeSerializer<N> namespaceSerializer, final StateDescriptor<S, ?> stateDescriptor) throws Exception {
 		if (stateDescriptor instanceof ReducingStateDescriptor) {
 			ReducingStateDescriptor reducingStateDescriptor = (ReducingStateDescriptor) stateDescriptor;
@@ -288,6 +575,26 @@ public abstract class AbstractStateBackend implements java.io.Serializable {
 			if (result != null) {
 				state.add(result);
 			}
+		} else if (stateDescriptor instanceof AggregatingStateDescriptor) {
+			AggregateFunction aggFn = ((AggregatingStateDescriptor) stateDescriptor).getAggregateFunction();
+			InternalAggregatingState state = (InternalAggregatingState) getPartitionedState(target, namespaceSerializer, stateDescriptor);
+			KvState kvState = (KvState) state;
+			Object result = null;
+			for (N source: sources) {
+				kvState.setCurrentNamespace(source);
+				Object sourceAccumulator = state.getAccumulator();
+				if (result == null) {
+					result = sourceAccumulator;
+				} else if (sourceAccumulator != null) {
+					result = aggFn.merge(result, sourceAccumulator);
+				}
+				state.clear();
+			}
+			kvState.setCurrentNamespace(target);
+			if (result != null) {
+				Object targetAccumulator = state.getAccumulator();
+				state.setAccumulator(targetAccumulator == null ? result : aggFn.merge(targetAccumulator, result));
+			}
 		} else if (stateDescriptor instanceof ListStateDescriptor) {
 			ListState<Object> state = (ListState) getPartitionedState(target, namespaceSerializer, stateDescriptor);
 			KvState kvState = (KvState) state;
@@ -353,11 +660,80 @@ public abstract class AbstractStateBackend implements java.io.Serializable {
 					userCodeClassLoader,
 					recoveryTimestamp);
 				keyValueStatesByName.put(state.getKey(), kvState);
+				addUncheckedRestoredState(state.getKey());
 			}
 			keyValueStates = keyValueStatesByName.values().toArray(new KvState[keyValueStatesByName.size()]);
 		}
 	}
 
+	/**
+	 * Injects the K/V state snapshots of several key group ranges. This is used when the
+	 * state is restored with a different parallelism than it was checkpointed with, in which
+	 * case the key groups of this backend may be spread over several snapshots. Each
+	 * snapshot only contributes the key groups that belong to this backend.
+	 *
+	 * @param keyGroupsStateSnapshots The Maps of snapshots, one per checkpointed key group range
+	 * @param recoveryTimestamp Global recovery timestamp
+	 */
+	@SuppressWarnings("unchecked,rawtypes")
+	public void injectKeyGroupsStateSnapshots(List<HashMap<String, KvStateSnapshot>> keyGroupsStateSnapshots, long recoveryTimestamp) throws Exception {
+		if (keyGroupsStateSnapshots.size() == 1) {
+			injectKeyValueStateSnapshots(keyGroupsStateSnapshots.get(0), recoveryTimestamp);
+			return;
+		}
+
+		if (keyValueStatesByName == null) {
+			keyValueStatesByName = new HashMap<>();
+		}
+
+		for (HashMap<String, KvStateSnapshot> snapshots : keyGroupsStateSnapshots) {
+			if (snapshots == null) {
+				continue;
+			}
+
+			for (Map.Entry<String, KvStateSnapshot> state : snapshots.entrySet()) {
+				KvState kvState = state.getValue().restoreState(this,
+					keySerializer,
+					userCodeClassLoader,
+					recoveryTimestamp);
+
+				KvState previous = keyValueStatesByName.get(state.getKey());
+				if (previous == null) {
+					keyValueStatesByName.put(state.getKey(), kvState);
+					addUncheckedRestoredState(state.getKey());
+				} else {
+					mergeKeyGroupsState(previous, kvState);
+				}
+			}
+		}
+		keyValueStates = keyValueStatesByName.values().toArray(new KvState[keyValueStatesByName.size()]);
+	}
+
+	private void addUncheckedRestoredState(String name) {
+		if (uncheckedRestoredStates == null) {
+			uncheckedRestoredStates = new HashSet<>();
+		}
+		uncheckedRestoredStates.add(name);
+	}
+
+	/**
+	 * Merges the key groups of a restored K/V state into a previously restored K/V state
+	 * of the same name. Backends whose K/V states are not heap based must override this
+	 * method or {@link #injectKeyGroupsStateSnapshots(List, long)}.
+	 *
+	 * @param target The previously restored state that receives the key groups.
+	 * @param source The restored state whose key groups are added.
+	 */
+	@SuppressWarnings("unchecked,rawtypes")
+	protected void mergeKeyGroupsState(KvState<?, ?, ?, ?, ?> target, KvState<?, ?, ?, ?, ?> source) throws Exception {
+		if (target instanceof AbstractHeapState && source instanceof AbstractHeapState) {
+			((AbstractHeapState) target).mergeKeyGroupsFrom((AbstractHeapState) source);
+		} else {
+			throw new UnsupportedOperationException("The state backend " + this + " cannot " +
+				"combine the state of several key group ranges.");
+		}
+	}
+
 	// ------------------------------------------------------------------------
 	//  storing state for a checkpoint
 	// ------------------------------------------------------------------------
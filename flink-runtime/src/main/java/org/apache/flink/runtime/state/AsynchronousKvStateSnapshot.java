@@ -41,6 +41,15 @@ public abstract class AsynchronousKvStateSnapshot<K, N, S extends State, SD exte
 	 */
 	public abstract KvStateSnapshot<K, N, S, SD, Backend> materialize() throws Exception;
 
+	/**
+	 * Releases the resources that are held until the state is materialized, for example a
+	 * snapshot of an in-memory state table. This is called by {@link #discardState()} if the
+	 * checkpoint is discarded before it is materialized. It may be called multiple times and
+	 * concurrently to {@link #materialize()}.
+	 */
+	protected void release() throws Exception {
+	}
+
 	@Override
 	public final KvState<K, N, S, SD, Backend> restoreState(
 		Backend stateBackend,
@@ -51,8 +60,8 @@ public abstract class AsynchronousKvStateSnapshot<K, N, S extends State, SD exte
 	}
 
 	@Override
-	public void discardState() throws Exception {
-		throw new RuntimeException("This should never be called and probably points to a bug.");
+	public final void discardState() throws Exception {
+		release();
 	}
 
 	@Override
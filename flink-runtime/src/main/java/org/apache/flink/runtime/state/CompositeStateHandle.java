@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import java.util.Collection;
+
+/**
+ * Interface for state handles and snapshots that reference {@link SharedStateHandle shared state}
+ * in addition to their private state.
+ *
+ * <p>Discarding such a handle only discards its private state. The shared state is registered
+ * with the {@link SharedStateRegistry} when the checkpoint is acknowledged and discarded by
+ * the registry once no checkpoint references it any more.
+ */
+public interface CompositeStateHandle {
+
+	/**
+	 * Returns the shared state handles referenced by this handle.
+	 *
+	 * @return The referenced shared state handles, never null.
+	 */
+	Collection<SharedStateHandle> getSharedStates();
+}
@@ -76,6 +76,12 @@ public class GenericFoldingState<K, N, T, ACC, Backend extends AbstractStateBack
 		return new Snapshot<>(wrappedSnapshot, foldFunction);
 	}
 
+	@Override
+	public byte[] getSerializedValue(byte[] serializedKeyAndNamespace) throws Exception {
+		// the wrapped state holds the accumulator in the same format
+		return wrappedState.getSerializedValue(serializedKeyAndNamespace);
+	}
+
 	@Override
 	public void dispose() {
 		wrappedState.dispose();
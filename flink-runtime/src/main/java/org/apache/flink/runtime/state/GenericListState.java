@@ -74,6 +74,12 @@ public class GenericListState<K, N, T, Backend extends AbstractStateBackend, W e
 		return new Snapshot<>(wrappedSnapshot);
 	}
 
+	@Override
+	public byte[] getSerializedValue(byte[] serializedKeyAndNamespace) throws Exception {
+		throw new UnsupportedOperationException("The generic list state cannot be queried, " +
+			"because the wrapped value state does not serialize the list in the format of queries.");
+	}
+
 	@Override
 	public void dispose() {
 		wrappedState.dispose();
@@ -75,6 +75,12 @@ public class GenericReducingState<K, N, T, Backend extends AbstractStateBackend,
 		return new Snapshot<>(wrappedSnapshot, reduceFunction);
 	}
 
+	@Override
+	public byte[] getSerializedValue(byte[] serializedKeyAndNamespace) throws Exception {
+		// the wrapped state holds the reduced value in the same format
+		return wrappedState.getSerializedValue(serializedKeyAndNamespace);
+	}
+
 	@Override
 	public void dispose() {
 		wrappedState.dispose();
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.api.common.state.AggregatingState;
+
+/**
+ * {@link AggregatingState} that gives access to the accumulator of the aggregation. This is
+ * used by the state backends to merge the accumulators of several namespaces, because the
+ * public interface only exposes the result of the aggregation.
+ *
+ * @param <IN> The type of the values that are aggregated into the state.
+ * @param <ACC> The type of the accumulator.
+ * @param <OUT> The type of the result of the aggregation.
+ */
+public interface InternalAggregatingState<IN, ACC, OUT> extends AggregatingState<IN, OUT> {
+
+	/**
+	 * Returns the accumulator for the current key and namespace, or {@code null} if nothing
+	 * has been aggregated yet.
+	 */
+	ACC getAccumulator() throws Exception;
+
+	/**
+	 * Replaces the accumulator for the current key and namespace.
+	 */
+	void setAccumulator(ACC accumulator) throws Exception;
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+
+/**
+ * A contiguous, inclusive range of key group indices. Every parallel instance of a keyed
+ * operator is responsible for exactly one key group range. The ranges of all parallel
+ * instances partition the key groups [0, numberOfKeyGroups).
+ */
+public class KeyGroupRange implements Iterable<Integer>, Serializable {
+
+	private static final long serialVersionUID = 4869121477592070607L;
+
+	/** The empty key group range */
+	public static final KeyGroupRange EMPTY_KEY_GROUP_RANGE = new KeyGroupRange();
+
+	private final int startKeyGroup;
+
+	private final int endKeyGroup;
+
+	/**
+	 * Empty key group range
+	 */
+	private KeyGroupRange() {
+		this.startKeyGroup = 0;
+		this.endKeyGroup = -1;
+	}
+
+	/**
+	 * Defines the range [startKeyGroup, endKeyGroup]
+	 *
+	 * @param startKeyGroup start of the range (inclusive)
+	 * @param endKeyGroup end of the range (inclusive)
+	 */
+	public KeyGroupRange(int startKeyGroup, int endKeyGroup) {
+		checkArgument(startKeyGroup >= 0, "Start of the key group range must not be negative.");
+		checkArgument(startKeyGroup <= endKeyGroup, "Start of the key group range must not be " +
+			"larger than its end.");
+
+		this.startKeyGroup = startKeyGroup;
+		this.endKeyGroup = endKeyGroup;
+	}
+
+	/**
+	 * Factory method that also handles creation of empty key groups.
+	 *
+	 * @param startKeyGroup start of the range (inclusive)
+	 * @param endKeyGroup end of the range (inclusive)
+	 * @return the key group range from start to end, or the empty range if start > end
+	 */
+	public static KeyGroupRange of(int startKeyGroup, int endKeyGroup) {
+		return startKeyGroup <= endKeyGroup ? new KeyGroupRange(startKeyGroup, endKeyGroup) : EMPTY_KEY_GROUP_RANGE;
+	}
+
+	/**
+	 * Checks whether the key group with the given index belongs to this range.
+	 *
+	 * @param keyGroup Key group to check for inclusion in this range.
+	 * @return True, if the key group is contained in the range.
+	 */
+	public boolean contains(int keyGroup) {
+		return keyGroup >= startKeyGroup && keyGroup <= endKeyGroup;
+	}
+
+	/**
+	 * Creates the intersection of this key group range with another.
+	 *
+	 * @param other The other key group range to intersect with.
+	 * @return The key group range that contains all key groups of both ranges. May be empty.
+	 */
+	public KeyGroupRange getIntersection(KeyGroupRange other) {
+		int start = Math.max(startKeyGroup, other.startKeyGroup);
+		int end = Math.min(endKeyGroup, other.endKeyGroup);
+		return of(start, end);
+	}
+
+	/**
+	 * @return The number of key groups in this range.
+	 */
+	public int getNumberOfKeyGroups() {
+		return 1 + endKeyGroup - startKeyGroup;
+	}
+
+	/**
+	 * @return The first key group in the range.
+	 */
+	public int getStartKeyGroup() {
+		return startKeyGroup;
+	}
+
+	/**
+	 * @return The last key group in the range.
+	 */
+	public int getEndKeyGroup() {
+		return endKeyGroup;
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+
+			private int next = startKeyGroup;
+
+			@Override
+			public boolean hasNext() {
+				return next <= endKeyGroup;
+			}
+
+			@Override
+			public Integer next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return next++;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Unsupported by this iterator!");
+			}
+		};
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof KeyGroupRange)) {
+			return false;
+		}
+
+		KeyGroupRange that = (KeyGroupRange) o;
+		return startKeyGroup == that.startKeyGroup && endKeyGroup == that.endKeyGroup;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * startKeyGroup + endKeyGroup;
+	}
+
+	@Override
+	public String toString() {
+		return "KeyGroupRange{" +
+			"startKeyGroup=" + startKeyGroup +
+			", endKeyGroup=" + endKeyGroup +
+			'}';
+	}
+}
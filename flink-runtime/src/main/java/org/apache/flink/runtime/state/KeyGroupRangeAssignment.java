@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.util.MathUtils;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+
+/**
+ * Utility methods that define how keys are assigned to key groups, and how key groups are
+ * assigned to the parallel instances of a keyed operator.
+ *
+ * <p>A key always belongs to the same key group, independent of the parallelism of the
+ * operator. Key groups are assigned to operator instances as contiguous ranges, so that
+ * rescaling an operator only changes the boundaries of these ranges.
+ */
+public final class KeyGroupRangeAssignment {
+
+	/** The upper bound for the number of key groups */
+	public static final int UPPER_BOUND_NUMBER_OF_KEY_GROUPS = 1 << 15;
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Assigns the given key to a key group index.
+	 *
+	 * @param key the key to assign
+	 * @param numberOfKeyGroups the total number of key groups
+	 * @return the key group to which the given key is assigned
+	 */
+	public static int assignToKeyGroup(Object key, int numberOfKeyGroups) {
+		return computeKeyGroupForKeyHash(key.hashCode(), numberOfKeyGroups);
+	}
+
+	/**
+	 * Assigns a key with the given hash code to a key group index. This allows to locate the
+	 * key group of a key without the key's class, for example in a client that queries state.
+	 *
+	 * @param keyHash the hash code of the key
+	 * @param numberOfKeyGroups the total number of key groups
+	 * @return the key group to which a key with the given hash code is assigned
+	 */
+	public static int computeKeyGroupForKeyHash(int keyHash, int numberOfKeyGroups) {
+		return MathUtils.murmurHash(keyHash) % numberOfKeyGroups;
+	}
+
+	/**
+	 * Computes the range of key groups that is assigned to the operator instance with the
+	 * given index.
+	 *
+	 * @param numberOfKeyGroups the total number of key groups
+	 * @param parallelism the parallelism of the operator
+	 * @param operatorIndex the index of the operator instance, in [0, parallelism)
+	 * @return the key group range assigned to the operator instance
+	 */
+	public static KeyGroupRange computeKeyGroupRangeForOperatorIndex(
+			int numberOfKeyGroups,
+			int parallelism,
+			int operatorIndex) {
+
+		checkArgument(parallelism > 0, "Parallelism must be positive.");
+		checkArgument(numberOfKeyGroups >= parallelism, "The number of key groups (" + numberOfKeyGroups +
+			") must not be smaller than the parallelism (" + parallelism + ").");
+		checkArgument(operatorIndex >= 0 && operatorIndex < parallelism, "Operator index " +
+			operatorIndex + " is out of bounds for parallelism " + parallelism + ".");
+
+		int start = (int) (((long) operatorIndex * numberOfKeyGroups + parallelism - 1) / parallelism);
+		int end = (int) (((long) (operatorIndex + 1) * numberOfKeyGroups + parallelism - 1) / parallelism) - 1;
+		return new KeyGroupRange(start, end);
+	}
+
+	/**
+	 * Computes the index of the operator instance to which the given key group is assigned.
+	 * This is the inverse of {@link #computeKeyGroupRangeForOperatorIndex(int, int, int)}.
+	 *
+	 * @param numberOfKeyGroups the total number of key groups
+	 * @param parallelism the parallelism of the operator
+	 * @param keyGroup the key group index
+	 * @return the index of the operator instance that is responsible for the key group
+	 */
+	public static int computeOperatorIndexForKeyGroup(int numberOfKeyGroups, int parallelism, int keyGroup) {
+		return (int) ((long) keyGroup * parallelism / numberOfKeyGroups);
+	}
+
+	// ------------------------------------------------------------------------
+
+	/** Do not instantiate */
+	private KeyGroupRangeAssignment() {
+		throw new AssertionError();
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The offsets of the key groups of a {@link KeyGroupRange} inside a snapshot. The offset of a
+ * key group is the position in the snapshot data at which the state of the key group starts.
+ * This allows restoring only a sub range of the key groups in a snapshot.
+ */
+public class KeyGroupRangeOffsets implements Serializable {
+
+	private static final long serialVersionUID = 6595415219136429696L;
+
+	/** the range of key groups */
+	private final KeyGroupRange keyGroupRange;
+
+	/** the aligned array of offsets for the key groups */
+	private final long[] offsets;
+
+	/**
+	 * Creates key group range offsets.
+	 *
+	 * @param keyGroupRange range of key groups
+	 * @param offsets offsets for the key groups, aligned with the key group range
+	 */
+	public KeyGroupRangeOffsets(KeyGroupRange keyGroupRange, long[] offsets) {
+		this.keyGroupRange = checkNotNull(keyGroupRange);
+		this.offsets = checkNotNull(offsets);
+		checkArgument(offsets.length == keyGroupRange.getNumberOfKeyGroups(),
+			"The number of offsets does not match the number of key groups.");
+	}
+
+	/**
+	 * Returns the offset of the given key group.
+	 *
+	 * @param keyGroup the key group
+	 * @return the offset at which the state of the key group starts
+	 */
+	public long getKeyGroupOffset(int keyGroup) {
+		return offsets[computeKeyGroupIndex(keyGroup)];
+	}
+
+	/**
+	 * @return The range of key groups that the offsets describe.
+	 */
+	public KeyGroupRange getKeyGroupRange() {
+		return keyGroupRange;
+	}
+
+	private int computeKeyGroupIndex(int keyGroup) {
+		int idx = keyGroup - keyGroupRange.getStartKeyGroup();
+		if (idx < 0 || idx >= offsets.length) {
+			throw new IllegalArgumentException("Key group " + keyGroup + " is not in " + keyGroupRange + ".");
+		}
+		return idx;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof KeyGroupRangeOffsets)) {
+			return false;
+		}
+
+		KeyGroupRangeOffsets that = (KeyGroupRangeOffsets) o;
+		return keyGroupRange.equals(that.keyGroupRange) && Arrays.equals(offsets, that.offsets);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * keyGroupRange.hashCode() + Arrays.hashCode(offsets);
+	}
+
+	@Override
+	public String toString() {
+		return "KeyGroupRangeOffsets{" +
+			"keyGroupRange=" + keyGroupRange +
+			", offsets=" + Arrays.toString(offsets) +
+			'}';
+	}
+}
@@ -20,6 +20,7 @@ package org.apache.flink.runtime.state;
 
 import org.apache.flink.api.common.state.State;
 import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.runtime.query.netty.message.KvStateRequestSerializer;
 
 /**
  * Key/Value state implementation for user-defined state. The state is backed by a state
@@ -51,6 +52,19 @@ public interface KvState<K, N, S extends State, SD extends StateDescriptor<S, ?>
 	 */
 	void setCurrentNamespace(N namespace);
 
+	/**
+	 * Returns the serialized value of the given key and namespace, for a query from outside the
+	 * job. This is called by the query threads of the TaskManager, concurrently to the task
+	 * that accesses the state, so the value may not reflect the latest updates of the task.
+	 *
+	 * @param serializedKeyAndNamespace The key and namespace, serialized as by
+	 *                                  {@link KvStateRequestSerializer#serializeKeyAndNamespace}.
+	 * @return The serialized value in the format of {@link KvStateRequestSerializer}, or null if
+	 *         the state holds no value for the key and namespace.
+	 * @throws Exception Exceptions during the lookup are forwarded to the querying client.
+	 */
+	byte[] getSerializedValue(byte[] serializedKeyAndNamespace) throws Exception;
+
 	/**
 	 * Creates a snapshot of this state.
 	 * 
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import java.io.InputStream;
+import java.io.Serializable;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * A stream state handle that can be referenced by several checkpoints, for example a file
+ * of an incremental snapshot that did not change between two checkpoints.
+ *
+ * <p>Shared state handles are identified by their registration key, which is assigned once when
+ * the state is written. The {@link SharedStateRegistry} counts the checkpoints referencing a
+ * shared state handle and discards it when the last of them is discarded.
+ */
+public class SharedStateHandle implements StreamStateHandle {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The handle to the actual state */
+	private final StreamStateHandle delegate;
+
+	/** The key under which the handle is registered with the shared state registry */
+	private final String registrationKey;
+
+	/** The ID of the checkpoint in which the state was written */
+	private final long checkpointId;
+
+	public SharedStateHandle(StreamStateHandle delegate, String registrationKey, long checkpointId) {
+		this.delegate = checkNotNull(delegate, "Delegate");
+		this.registrationKey = checkNotNull(registrationKey, "Registration key");
+		this.checkpointId = checkpointId;
+	}
+
+	public StreamStateHandle getDelegate() {
+		return delegate;
+	}
+
+	public String getRegistrationKey() {
+		return registrationKey;
+	}
+
+	public long getCheckpointId() {
+		return checkpointId;
+	}
+
+	@Override
+	public InputStream getState(ClassLoader userCodeClassLoader) throws Exception {
+		return delegate.getState(userCodeClassLoader);
+	}
+
+	@Override
+	public void discardState() throws Exception {
+		delegate.discardState();
+	}
+
+	@Override
+	public long getStateSize() throws Exception {
+		return delegate.getStateSize();
+	}
+
+	@Override
+	public <T extends Serializable> StateHandle<T> toSerializableHandle() {
+		return delegate.toSerializableHandle();
+	}
+
+	// ------------------------------------------------------------------------
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof SharedStateHandle &&
+			registrationKey.equals(((SharedStateHandle) obj).registrationKey);
+	}
+
+	@Override
+	public int hashCode() {
+		return registrationKey.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "SharedStateHandle(" + registrationKey + ", checkpoint " + checkpointId + ")";
+	}
+}
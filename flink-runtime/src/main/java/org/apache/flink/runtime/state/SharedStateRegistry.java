@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The shared state registry counts the checkpoints that reference a {@link SharedStateHandle}.
+ * A shared state handle is discarded when the last checkpoint referencing it is discarded.
+ *
+ * <p>The state of a checkpoint is registered when a task acknowledges the checkpoint and
+ * unregistered when the pending or completed checkpoint is discarded. Savepoints register their
+ * shared state, but never unregister it, so the state referenced by a savepoint is never
+ * discarded by the registry.
+ *
+ * <p>Shared state that was not registered with this registry, for example because it belongs to
+ * a checkpoint or savepoint which was restored after a master failure, is registered via
+ * {@link #registerAllRecovered(Collection)}. Such state is retained, because the registry
+ * cannot know which other checkpoints or savepoints still reference it.
+ */
+public class SharedStateRegistry {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SharedStateRegistry.class);
+
+	private final Object lock = new Object();
+
+	/** The registered shared state handles and their reference counts, by registration key */
+	private final Map<String, SharedStateEntry> registeredStates = new HashMap<>();
+
+	/**
+	 * Registers a reference of the given checkpoint to each of the given shared state handles.
+	 *
+	 * <p>Handles which were written in an earlier checkpoint must still be registered. If one of
+	 * them is unknown, it has already been discarded and cannot be referenced any more. In that
+	 * case, none of the handles is registered.
+	 *
+	 * @param sharedStates The shared state handles referenced by the checkpoint
+	 * @param checkpointId The ID of the referencing checkpoint
+	 * @throws IllegalStateException If a handle of an earlier checkpoint has already been discarded
+	 */
+	public void registerAll(Collection<SharedStateHandle> sharedStates, long checkpointId) {
+		synchronized (lock) {
+			for (SharedStateHandle sharedState : sharedStates) {
+				if (sharedState.getCheckpointId() < checkpointId &&
+						!registeredStates.containsKey(sharedState.getRegistrationKey())) {
+					throw new IllegalStateException("Checkpoint " + checkpointId + " references " +
+						sharedState + ", which has already been discarded.");
+				}
+			}
+
+			for (SharedStateHandle sharedState : sharedStates) {
+				SharedStateEntry entry = registeredStates.get(sharedState.getRegistrationKey());
+
+				if (entry == null) {
+					entry = new SharedStateEntry(sharedState, 0);
+					registeredStates.put(sharedState.getRegistrationKey(), entry);
+				}
+
+				entry.referenceCount++;
+			}
+		}
+	}
+
+	/**
+	 * Registers the shared state handles of a restored checkpoint or savepoint. Handles which
+	 * are not yet registered are retained for the lifetime of this registry.
+	 *
+	 * @param sharedStates The shared state handles referenced by the restored state
+	 */
+	public void registerAllRecovered(Collection<SharedStateHandle> sharedStates) {
+		synchronized (lock) {
+			for (SharedStateHandle sharedState : sharedStates) {
+				if (!registeredStates.containsKey(sharedState.getRegistrationKey())) {
+					// the additional reference is never released
+					registeredStates.put(sharedState.getRegistrationKey(), new SharedStateEntry(sharedState, 1));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Releases a reference to each of the given shared state handles. The handles which are not
+	 * referenced any more are discarded.
+	 *
+	 * @param sharedStates The shared state handles referenced by a discarded checkpoint
+	 */
+	public void unregisterAll(Collection<SharedStateHandle> sharedStates) {
+		List<SharedStateHandle> unreferencedStates = new ArrayList<>();
+
+		synchronized (lock) {
+			for (SharedStateHandle sharedState : sharedStates) {
+				SharedStateEntry entry = registeredStates.get(sharedState.getRegistrationKey());
+
+				if (entry == null) {
+					LOG.warn("Cannot unregister {}, because it is not registered.", sharedState);
+				} else if (--entry.referenceCount == 0) {
+					registeredStates.remove(sharedState.getRegistrationKey());
+					unreferencedStates.add(entry.sharedState);
+				}
+			}
+		}
+
+		// discard outside of the lock, this may involve slow file system operations
+		for (SharedStateHandle sharedState : unreferencedStates) {
+			try {
+				sharedState.discardState();
+			} catch (Exception e) {
+				LOG.warn("Failed to discard shared state " + sharedState + ".", e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of references to the shared state with the given registration key.
+	 *
+	 * @param registrationKey The registration key of the shared state
+	 * @return The number of references, 0 if the state is not registered
+	 */
+	public int getReferenceCount(String registrationKey) {
+		synchronized (lock) {
+			SharedStateEntry entry = registeredStates.get(registrationKey);
+			return entry != null ? entry.referenceCount : 0;
+		}
+	}
+
+	/**
+	 * Returns the shared state handles referenced by the given state handle or snapshot.
+	 *
+	 * @param state The state handle or snapshot, may be null
+	 * @return The referenced shared state handles, empty if the state is no {@link CompositeStateHandle}
+	 */
+	public static Collection<SharedStateHandle> getSharedStates(Object state) {
+		if (state instanceof CompositeStateHandle) {
+			return ((CompositeStateHandle) state).getSharedStates();
+		} else {
+			return Collections.emptyList();
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static final class SharedStateEntry {
+
+		private final SharedStateHandle sharedState;
+
+		private int referenceCount;
+
+		private SharedStateEntry(SharedStateHandle sharedState, int referenceCount) {
+			this.sharedState = sharedState;
+			this.referenceCount = referenceCount;
+		}
+	}
+}
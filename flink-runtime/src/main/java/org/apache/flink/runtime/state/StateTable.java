@@ -0,0 +1,529 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The heap data structure of a partitioned {@link KvState}. The table is a chained hash map
+ * from (key, namespace) to the state value, which supports copy-on-write snapshots.
+ *
+ * <p>A snapshot created via {@link #createSnapshot()} only copies the bucket array of the table,
+ * so its cost depends on the number of entries, but not on the size of the state. Afterwards, the
+ * entries and values that the snapshot references are never modified: entries are copied before
+ * they are modified, and values are copied with the state serializer before they are handed out,
+ * because the caller may modify them in place. Every entry and value is stamped with the version
+ * of the table in which it was created, so that it is copied at most once per snapshot. This
+ * allows the snapshot to be serialized asynchronously while the table is modified.
+ *
+ * <p>The table must only be accessed by a single thread. Only releasing a snapshot and the
+ * lookups of queries via {@link #getConcurrently(Object, Object)} may happen concurrently.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <SV> The type of the values in the state.
+ */
+public class StateTable<K, N, SV> {
+
+	/** The initial capacity of the table, must be a power of two */
+	private static final int MIN_CAPACITY = 128;
+
+	/** The maximum capacity of the table, must be a power of two */
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	/** The serializer to copy the state values with */
+	private final TypeSerializer<SV> stateSerializer;
+
+	/** The total number of key groups of the job */
+	private final int numberOfKeyGroups;
+
+	/** The key groups that this table holds state for */
+	private final KeyGroupRange keyGroupRange;
+
+	/** The buckets of the table, the length is always a power of two */
+	private StateTableEntry<K, N, SV>[] table;
+
+	/** The number of entries in the table */
+	private int size;
+
+	/** The number of entries at which the table is resized */
+	private int threshold;
+
+	/** The current version of the table, which is incremented for every snapshot */
+	private int stateVersion;
+
+	/** The versions of the snapshots that have not been released yet, also used as lock */
+	private final TreeSet<Integer> snapshotVersions = new TreeSet<>();
+
+	/**
+	 * The highest version of the snapshots that have not been released yet. Entries and values
+	 * with a lower version may be referenced by a snapshot and must not be modified.
+	 */
+	private volatile int highestRequiredSnapshotVersion;
+
+	/** The bucket at which the next incremental cleanup continues */
+	private int cleanupCursor;
+
+	/**
+	 * Creates a new empty state table for the given key groups.
+	 *
+	 * @param stateSerializer The serializer to copy the state values with.
+	 * @param numberOfKeyGroups The total number of key groups of the job.
+	 * @param keyGroupRange The key groups that this table holds state for.
+	 */
+	public StateTable(TypeSerializer<SV> stateSerializer, int numberOfKeyGroups, KeyGroupRange keyGroupRange) {
+		checkArgument(numberOfKeyGroups > 0, "The number of key groups must be positive.");
+		this.stateSerializer = checkNotNull(stateSerializer);
+		this.numberOfKeyGroups = numberOfKeyGroups;
+		this.keyGroupRange = checkNotNull(keyGroupRange);
+
+		this.table = makeTable(MIN_CAPACITY);
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns the state value of the given key and namespace. The returned value may be modified
+	 * in place, it is never shared with a snapshot.
+	 *
+	 * @param key The key.
+	 * @param namespace The namespace.
+	 * @return The state value, or {@code null} if there is no value for the key and namespace.
+	 */
+	public SV get(K key, N namespace) {
+		final int hash = computeHash(key, namespace);
+		final int requiredVersion = highestRequiredSnapshotVersion;
+		final StateTableEntry<K, N, SV>[] tab = table;
+		final int index = hash & (tab.length - 1);
+
+		for (StateTableEntry<K, N, SV> e = tab[index]; e != null; e = e.next) {
+			if (e.hash == hash && e.matches(key, namespace)) {
+				if (e.stateVersion < requiredVersion) {
+					// the value may be part of a snapshot, and the caller may modify it
+					if (e.entryVersion < requiredVersion) {
+						e = handleChainedEntryCopyOnWrite(tab, index, e, requiredVersion);
+					}
+					e.state = e.state != null ? stateSerializer.copy(e.state) : null;
+					e.stateVersion = stateVersion;
+				}
+				return e.state;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the state value of the given key and namespace for a reader in another thread than
+	 * the one that modifies the table. Unlike {@link #get(Object, Object)}, the lookup does not
+	 * modify the table. It may miss recent modifications, and the returned value may be modified
+	 * concurrently by the owning thread, so readers must expect inconsistent values.
+	 *
+	 * @param key The key.
+	 * @param namespace The namespace.
+	 * @return The state value, or {@code null} if there is no value for the key and namespace.
+	 */
+	public SV getConcurrently(K key, N namespace) {
+		final int hash = computeHash(key, namespace);
+		final StateTableEntry<K, N, SV>[] tab = table;
+
+		for (StateTableEntry<K, N, SV> e = tab[hash & (tab.length - 1)]; e != null; e = e.next) {
+			if (e.hash == hash && e.matches(key, namespace)) {
+				return e.state;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether the table holds a value for the given key and namespace.
+	 *
+	 * @param key The key.
+	 * @param namespace The namespace.
+	 * @return True, if the table holds a value for the key and namespace.
+	 */
+	public boolean containsKey(K key, N namespace) {
+		final int hash = computeHash(key, namespace);
+		final StateTableEntry<K, N, SV>[] tab = table;
+
+		for (StateTableEntry<K, N, SV> e = tab[hash & (tab.length - 1)]; e != null; e = e.next) {
+			if (e.hash == hash && e.matches(key, namespace)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sets the state value of the given key and namespace.
+	 *
+	 * @param key The key.
+	 * @param namespace The namespace.
+	 * @param value The new state value.
+	 */
+	public void put(K key, N namespace, SV value) {
+		final int hash = computeHash(key, namespace);
+		final int requiredVersion = highestRequiredSnapshotVersion;
+		StateTableEntry<K, N, SV>[] tab = table;
+		int index = hash & (tab.length - 1);
+
+		for (StateTableEntry<K, N, SV> e = tab[index]; e != null; e = e.next) {
+			if (e.hash == hash && e.matches(key, namespace)) {
+				if (e.entryVersion < requiredVersion) {
+					e = handleChainedEntryCopyOnWrite(tab, index, e, requiredVersion);
+				}
+				e.state = value;
+				e.stateVersion = stateVersion;
+				return;
+			}
+		}
+
+		if (size >= threshold) {
+			doubleCapacity(requiredVersion);
+			tab = table;
+			index = hash & (tab.length - 1);
+		}
+
+		// new entries are added at the head of the chain, the snapshots have their own buckets
+		tab[index] = new StateTableEntry<>(key, namespace, hash, value, tab[index], stateVersion);
+		size++;
+	}
+
+	/**
+	 * Removes the state value of the given key and namespace.
+	 *
+	 * @param key The key.
+	 * @param namespace The namespace.
+	 */
+	public void remove(K key, N namespace) {
+		final int hash = computeHash(key, namespace);
+		final int requiredVersion = highestRequiredSnapshotVersion;
+		final StateTableEntry<K, N, SV>[] tab = table;
+		final int index = hash & (tab.length - 1);
+
+		StateTableEntry<K, N, SV> prev = null;
+		for (StateTableEntry<K, N, SV> e = tab[index]; e != null; prev = e, e = e.next) {
+			if (e.hash == hash && e.matches(key, namespace)) {
+				if (prev == null) {
+					tab[index] = e.next;
+				} else {
+					if (prev.entryVersion < requiredVersion) {
+						prev = handleChainedEntryCopyOnWrite(tab, index, prev, requiredVersion);
+					}
+					prev.next = e.next;
+				}
+				size--;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Adds the key/value pairs of the given table that belong to this table's key group range.
+	 * Existing values are overwritten.
+	 *
+	 * @param other The table to take the key/value pairs from.
+	 */
+	public void putAll(StateTable<K, N, SV> other) {
+		checkArgument(numberOfKeyGroups == other.numberOfKeyGroups, "Cannot merge state tables " +
+			"with a different number of key groups (" + numberOfKeyGroups + " vs. " +
+			other.numberOfKeyGroups + ").");
+
+		for (StateTableEntry<K, N, SV> chain : other.table) {
+			for (StateTableEntry<K, N, SV> e = chain; e != null; e = e.next) {
+				int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(e.key, numberOfKeyGroups);
+				if (keyGroupRange.contains(keyGroup)) {
+					put(e.key, e.namespace, e.state);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the key/value pairs, whose values are rejected by the given filter, from the next
+	 * buckets of the table. Every call continues where the previous call stopped, so that
+	 * repeated calls eventually visit the whole table.
+	 *
+	 * @param numberOfBuckets The number of buckets to check.
+	 * @param filter The filter that decides which values to keep.
+	 * @return The number of removed key/value pairs.
+	 */
+	public int removeIncrementally(int numberOfBuckets, ValueFilter<SV> filter) {
+		final StateTableEntry<K, N, SV>[] tab = table;
+		final int numBuckets = Math.min(numberOfBuckets, tab.length);
+		int removed = 0;
+
+		for (int i = 0; i < numBuckets; i++) {
+			final int index = cleanupCursor & (tab.length - 1);
+			cleanupCursor = index + 1;
+
+			StateTableEntry<K, N, SV> e = tab[index];
+			while (e != null) {
+				// removing may copy the entries of the chain, so continue from the original successor
+				StateTableEntry<K, N, SV> next = e.next;
+				if (!filter.keep(e.state)) {
+					remove(e.key, e.namespace);
+					removed++;
+				}
+				e = next;
+			}
+		}
+
+		return removed;
+	}
+
+	/**
+	 * Returns the number of key/value pairs in the table, across all key groups and namespaces.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all key/value pairs. Snapshots that were created before are not affected.
+	 */
+	public void clear() {
+		table = makeTable(MIN_CAPACITY);
+		size = 0;
+	}
+
+	public int getNumberOfKeyGroups() {
+		return numberOfKeyGroups;
+	}
+
+	public KeyGroupRange getKeyGroupRange() {
+		return keyGroupRange;
+	}
+
+	/**
+	 * Checks that the given key group belongs to this table's key group range.
+	 *
+	 * @param keyGroup The key group of a key.
+	 * @throws IllegalStateException If the key group is not part of the range.
+	 */
+	public void checkKeyGroup(int keyGroup) {
+		if (!keyGroupRange.contains(keyGroup)) {
+			throw new IllegalStateException("Key group " + keyGroup + " is not in " + keyGroupRange +
+				". Unless you are using the low level state access directly, this is most likely " +
+				"caused by a key whose hashCode() is not deterministic across JVMs or by records " +
+				"that were not partitioned by the key of the state.");
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  Snapshots
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Creates a snapshot of the current contents of the table. The snapshot is not affected by
+	 * later modifications of the table. It must be released once it has been written, so that
+	 * the table stops copying the entries and values that the snapshot references.
+	 *
+	 * @return The snapshot of the table.
+	 */
+	public StateTableSnapshot<K, N, SV> createSnapshot() {
+		return createSnapshot(null);
+	}
+
+	/**
+	 * Creates a snapshot of the current contents of the table, which only contains the values
+	 * that pass the given filter. The filter is applied when the snapshot is written.
+	 *
+	 * @param filter The filter that decides which values to write, or null to write all values.
+	 * @return The snapshot of the table.
+	 * @see #createSnapshot()
+	 */
+	public StateTableSnapshot<K, N, SV> createSnapshot(ValueFilter<SV> filter) {
+		final int snapshotVersion;
+		synchronized (snapshotVersions) {
+			snapshotVersion = ++stateVersion;
+			snapshotVersions.add(snapshotVersion);
+			highestRequiredSnapshotVersion = snapshotVersion;
+		}
+
+		return new StateTableSnapshot<>(this, snapshotVersion, Arrays.copyOf(table, table.length), size, filter);
+	}
+
+	/**
+	 * Releases the snapshot of the given version. This may be called by any thread.
+	 *
+	 * @param snapshotVersion The version of the released snapshot.
+	 */
+	void releaseSnapshot(int snapshotVersion) {
+		synchronized (snapshotVersions) {
+			snapshotVersions.remove(snapshotVersion);
+			highestRequiredSnapshotVersion = snapshotVersions.isEmpty() ? 0 : snapshotVersions.last();
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Makes the entry {@code untilEntry} in the chain of the given bucket modifiable, by copying it
+	 * and all preceding entries which may be referenced by a snapshot.
+	 *
+	 * @return The modifiable entry that replaces {@code untilEntry} in the table.
+	 */
+	private StateTableEntry<K, N, SV> handleChainedEntryCopyOnWrite(
+			StateTableEntry<K, N, SV>[] tab,
+			int index,
+			StateTableEntry<K, N, SV> untilEntry,
+			int requiredVersion) {
+
+		StateTableEntry<K, N, SV> current = tab[index];
+		StateTableEntry<K, N, SV> copy;
+
+		if (current.entryVersion < requiredVersion) {
+			copy = new StateTableEntry<>(current, stateVersion);
+			tab[index] = copy;
+		} else {
+			copy = current;
+		}
+
+		while (current != untilEntry) {
+			current = current.next;
+
+			if (current.entryVersion < requiredVersion) {
+				copy.next = new StateTableEntry<>(current, stateVersion);
+				copy = copy.next;
+			} else {
+				copy = current;
+			}
+		}
+
+		return copy;
+	}
+
+	private void doubleCapacity(int requiredVersion) {
+		final StateTableEntry<K, N, SV>[] oldTab = table;
+
+		if (oldTab.length == MAX_CAPACITY) {
+			threshold = Integer.MAX_VALUE;
+			return;
+		}
+
+		final StateTableEntry<K, N, SV>[] newTab = makeTable(oldTab.length * 2);
+		final int mask = newTab.length - 1;
+
+		for (StateTableEntry<K, N, SV> chain : oldTab) {
+			StateTableEntry<K, N, SV> e = chain;
+			while (e != null) {
+				StateTableEntry<K, N, SV> next = e.next;
+
+				// the successor of an entry that a snapshot references must not change
+				StateTableEntry<K, N, SV> moved = e.entryVersion < requiredVersion ?
+					new StateTableEntry<>(e, stateVersion) : e;
+
+				int index = moved.hash & mask;
+				moved.next = newTab[index];
+				newTab[index] = moved;
+
+				e = next;
+			}
+		}
+
+		table = newTab;
+	}
+
+	@SuppressWarnings("unchecked")
+	private StateTableEntry<K, N, SV>[] makeTable(int capacity) {
+		threshold = (capacity >> 1) + (capacity >> 2); // 3/4 capacity
+		return (StateTableEntry<K, N, SV>[]) new StateTableEntry[capacity];
+	}
+
+	private static int computeHash(Object key, Object namespace) {
+		int h = 31 * (key != null ? key.hashCode() : 0) + (namespace != null ? namespace.hashCode() : 0);
+
+		// spread the bits, the key groups are already derived from the key's hash code
+		h ^= (h >>> 20) ^ (h >>> 12);
+		return h ^ (h >>> 7) ^ (h >>> 4);
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A filter for the values of a {@link StateTable}, which is used to drop key/value pairs
+	 * from the table and from its snapshots.
+	 *
+	 * @param <SV> The type of the values in the state.
+	 */
+	public interface ValueFilter<SV> {
+
+		/**
+		 * Checks whether the key/value pair with the given value should be kept. The value must
+		 * not be modified.
+		 */
+		boolean keep(SV value);
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * An entry of the {@link StateTable}, holding one key/value pair of a namespace.
+	 */
+	static final class StateTableEntry<K, N, SV> {
+
+		final K key;
+
+		final N namespace;
+
+		final int hash;
+
+		/** The next entry in the chain of the bucket */
+		StateTableEntry<K, N, SV> next;
+
+		SV state;
+
+		/** The version of the table in which the entry was created */
+		int entryVersion;
+
+		/** The version of the table in which the state value was set */
+		int stateVersion;
+
+		StateTableEntry(K key, N namespace, int hash, SV state, StateTableEntry<K, N, SV> next, int version) {
+			this.key = key;
+			this.namespace = namespace;
+			this.hash = hash;
+			this.state = state;
+			this.next = next;
+			this.entryVersion = version;
+			this.stateVersion = version;
+		}
+
+		StateTableEntry(StateTableEntry<K, N, SV> other, int entryVersion) {
+			this.key = other.key;
+			this.namespace = other.namespace;
+			this.hash = other.hash;
+			this.state = other.state;
+			this.next = other.next;
+			this.entryVersion = entryVersion;
+			this.stateVersion = other.stateVersion;
+		}
+
+		boolean matches(Object otherKey, Object otherNamespace) {
+			return (key == null ? otherKey == null : key.equals(otherKey)) &&
+				(namespace == null ? otherNamespace == null : namespace.equals(otherNamespace));
+		}
+	}
+}
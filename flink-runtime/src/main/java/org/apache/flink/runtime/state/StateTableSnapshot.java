@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.runtime.state.StateTable.StateTableEntry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A copy-on-write snapshot of a {@link StateTable}. The snapshot is created synchronously by
+ * {@link StateTable#createSnapshot()} and can be written by another thread while the table is
+ * modified.
+ *
+ * <p>The key groups are written in the format of the heap state snapshots: the number of
+ * namespaces, followed by every namespace with the number of its key/value pairs and the pairs.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <SV> The type of the values in the state.
+ */
+public class StateTableSnapshot<K, N, SV> {
+
+	/** The table that the snapshot was taken from */
+	private final StateTable<K, N, SV> owner;
+
+	/** The version of the table that the snapshot was taken of */
+	private final int snapshotVersion;
+
+	/** The buckets of the table at the time of the snapshot */
+	private final StateTableEntry<K, N, SV>[] snapshotData;
+
+	/** The number of entries in the snapshot */
+	private final int numberOfEntries;
+
+	/** The filter for the written values, null if all values are written */
+	private final StateTable.ValueFilter<SV> filter;
+
+	/** The entries of the snapshot by key group and namespace, created on first access */
+	private List<Map<N, List<StateTableEntry<K, N, SV>>>> keyGroupPartitions;
+
+	private volatile boolean released;
+
+	StateTableSnapshot(
+			StateTable<K, N, SV> owner,
+			int snapshotVersion,
+			StateTableEntry<K, N, SV>[] snapshotData,
+			int numberOfEntries,
+			StateTable.ValueFilter<SV> filter) {
+
+		this.owner = owner;
+		this.snapshotVersion = snapshotVersion;
+		this.snapshotData = snapshotData;
+		this.numberOfEntries = numberOfEntries;
+		this.filter = filter;
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns the number of key/value pairs in the snapshot, including the ones that are dropped
+	 * by the filter of the snapshot.
+	 */
+	public int size() {
+		return numberOfEntries;
+	}
+
+	/**
+	 * Writes the key/value pairs of the given key group.
+	 *
+	 * @param keyGroup The key group to write, must be part of the table's key group range.
+	 * @param keySerializer The serializer for the keys.
+	 * @param namespaceSerializer The serializer for the namespaces.
+	 * @param stateSerializer The serializer for the state values.
+	 * @param out The output view to write to.
+	 * @throws IOException Thrown, if the key group could not be written.
+	 */
+	public void writeKeyGroup(
+			int keyGroup,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			TypeSerializer<SV> stateSerializer,
+			DataOutputView out) throws IOException {
+
+		if (released) {
+			throw new IOException("The snapshot has been released.");
+		}
+
+		if (keyGroupPartitions == null) {
+			partitionByKeyGroup();
+		}
+
+		owner.checkKeyGroup(keyGroup);
+		Map<N, List<StateTableEntry<K, N, SV>>> keyGroupState =
+			keyGroupPartitions.get(keyGroup - owner.getKeyGroupRange().getStartKeyGroup());
+
+		if (keyGroupState == null) {
+			out.writeInt(0);
+			return;
+		}
+
+		out.writeInt(keyGroupState.size());
+		for (Map.Entry<N, List<StateTableEntry<K, N, SV>>> namespaceState : keyGroupState.entrySet()) {
+			namespaceSerializer.serialize(namespaceState.getKey(), out);
+			out.writeInt(namespaceState.getValue().size());
+			for (StateTableEntry<K, N, SV> entry : namespaceState.getValue()) {
+				keySerializer.serialize(entry.key, out);
+				stateSerializer.serialize(entry.state, out);
+			}
+		}
+	}
+
+	/**
+	 * Releases the snapshot, so that the table stops preserving the entries and values that the
+	 * snapshot references. The snapshot must not be written afterwards. Releasing a snapshot
+	 * multiple times has no effect. A snapshot may be released while it is written, if the
+	 * checkpoint is discarded, in which case the writing fails.
+	 */
+	public void release() {
+		synchronized (this) {
+			if (released) {
+				return;
+			}
+			released = true;
+		}
+		owner.releaseSnapshot(snapshotVersion);
+	}
+
+	// ------------------------------------------------------------------------
+
+	private void partitionByKeyGroup() {
+		final KeyGroupRange keyGroupRange = owner.getKeyGroupRange();
+		final int numberOfKeyGroups = owner.getNumberOfKeyGroups();
+
+		keyGroupPartitions = new ArrayList<>(keyGroupRange.getNumberOfKeyGroups());
+		for (int i = 0; i < keyGroupRange.getNumberOfKeyGroups(); i++) {
+			keyGroupPartitions.add(null);
+		}
+
+		for (StateTableEntry<K, N, SV> chain : snapshotData) {
+			for (StateTableEntry<K, N, SV> e = chain; e != null; e = e.next) {
+				if (filter != null && !filter.keep(e.state)) {
+					continue;
+				}
+
+				int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(e.key, numberOfKeyGroups);
+				owner.checkKeyGroup(keyGroup);
+				int index = keyGroup - keyGroupRange.getStartKeyGroup();
+
+				Map<N, List<StateTableEntry<K, N, SV>>> keyGroupState = keyGroupPartitions.get(index);
+				if (keyGroupState == null) {
+					keyGroupState = new HashMap<>();
+					keyGroupPartitions.set(index, keyGroupState);
+				}
+
+				List<StateTableEntry<K, N, SV>> namespaceState = keyGroupState.get(e.namespace);
+				if (namespaceState == null) {
+					namespaceState = new ArrayList<>();
+					keyGroupState.put(e.namespace, namespaceState);
+				}
+				namespaceState.add(e);
+			}
+		}
+	}
+}
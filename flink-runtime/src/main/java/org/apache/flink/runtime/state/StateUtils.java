@@ -20,6 +20,8 @@ package org.apache.flink.runtime.state;
 
 import org.apache.flink.runtime.jobgraph.tasks.StatefulTask;
 
+import java.util.List;
+
 /**
  * A collection of utility methods for dealing with operator state.
  */
@@ -38,19 +40,23 @@ public class StateUtils {
 	 *            The state carrier operator.
 	 * @param state
 	 *            The state handle.
+	 * @param keyGroupsStates
+	 *            The state handles of the key groups.
 	 * @param recoveryTimestamp
 	 *            Global recovery timestamp
 	 * @param <T>
 	 *            Type bound for the
 	 */
 	public static <T extends StateHandle<?>> void setOperatorState(StatefulTask<?> op,
-			StateHandle<?> state, long recoveryTimestamp) throws Exception {
+			StateHandle<?> state, List<? extends StateHandle<?>> keyGroupsStates, long recoveryTimestamp) throws Exception {
 		@SuppressWarnings("unchecked")
 		StatefulTask<T> typedOp = (StatefulTask<T>) op;
 		@SuppressWarnings("unchecked")
 		T typedHandle = (T) state;
+		@SuppressWarnings("unchecked")
+		List<T> typedKeyGroupsHandles = (List<T>) keyGroupsStates;
 
-		typedOp.setInitialState(typedHandle, recoveryTimestamp);
+		typedOp.setInitialState(typedHandle, typedKeyGroupsHandles, recoveryTimestamp);
 	}
 
 	// ------------------------------------------------------------------------
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.api.common.state.StateTtlConfig;
+
+/**
+ * A state value with time-to-live, together with the time of its last access.
+ *
+ * @param <V> The type of the value.
+ */
+public final class TtlValue<V> {
+
+	private final V value;
+
+	private final long lastAccessTimestamp;
+
+	public TtlValue(V value, long lastAccessTimestamp) {
+		this.value = value;
+		this.lastAccessTimestamp = lastAccessTimestamp;
+	}
+
+	public V getValue() {
+		return value;
+	}
+
+	public long getLastAccessTimestamp() {
+		return lastAccessTimestamp;
+	}
+
+	/**
+	 * Checks whether the value is expired at the given time.
+	 *
+	 * @param ttlConfig The time-to-live configuration of the state.
+	 * @param currentTimestamp The current time, in milliseconds.
+	 */
+	public boolean isExpired(StateTtlConfig ttlConfig, long currentTimestamp) {
+		return ttlConfig.isExpired(lastAccessTimestamp, currentTimestamp);
+	}
+
+	@Override
+	public String toString() {
+		return "TtlValue{" +
+				"value=" + value +
+				", lastAccessTimestamp=" + lastAccessTimestamp +
+				'}';
+	}
+}
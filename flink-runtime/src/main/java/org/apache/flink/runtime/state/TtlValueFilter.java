@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.api.common.state.StateTtlConfig;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Filter for the {@link StateTable} of a state with time-to-live, which drops the values that
+ * are expired at a given time.
+ *
+ * @param <V> The type of the value.
+ */
+public final class TtlValueFilter<V> implements StateTable.ValueFilter<TtlValue<V>> {
+
+	private final StateTtlConfig ttlConfig;
+
+	private final long currentTimestamp;
+
+	/**
+	 * Creates a filter for the values which are expired at the given time.
+	 *
+	 * @param ttlConfig The time-to-live configuration of the state.
+	 * @param currentTimestamp The time at which the values are checked, in milliseconds.
+	 */
+	public TtlValueFilter(StateTtlConfig ttlConfig, long currentTimestamp) {
+		this.ttlConfig = checkNotNull(ttlConfig);
+		this.currentTimestamp = currentTimestamp;
+	}
+
+	@Override
+	public boolean keep(TtlValue<V> value) {
+		return !value.isExpired(ttlConfig, currentTimestamp);
+	}
+}
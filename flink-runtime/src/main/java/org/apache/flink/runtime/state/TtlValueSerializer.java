@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+
+import java.io.IOException;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Serializer for {@link TtlValue}. The time of the last access is written first, so that
+ * expired values can be recognized in their serialized form, without deserializing the value.
+ *
+ * @param <V> The type of the value.
+ */
+public final class TtlValueSerializer<V> extends TypeSerializer<TtlValue<V>> {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The number of bytes of the last access timestamp, which precedes the serialized value */
+	public static final int TIMESTAMP_LENGTH = 8;
+
+	private final TypeSerializer<V> valueSerializer;
+
+	public TtlValueSerializer(TypeSerializer<V> valueSerializer) {
+		this.valueSerializer = checkNotNull(valueSerializer);
+	}
+
+	public TypeSerializer<V> getValueSerializer() {
+		return valueSerializer;
+	}
+
+	@Override
+	public boolean isImmutableType() {
+		return valueSerializer.isImmutableType();
+	}
+
+	@Override
+	public TypeSerializer<TtlValue<V>> duplicate() {
+		TypeSerializer<V> duplicateValue = valueSerializer.duplicate();
+		return duplicateValue == valueSerializer ? this : new TtlValueSerializer<>(duplicateValue);
+	}
+
+	@Override
+	public TtlValue<V> createInstance() {
+		return new TtlValue<>(valueSerializer.createInstance(), Long.MIN_VALUE);
+	}
+
+	@Override
+	public TtlValue<V> copy(TtlValue<V> from) {
+		return new TtlValue<>(valueSerializer.copy(from.getValue()), from.getLastAccessTimestamp());
+	}
+
+	@Override
+	public TtlValue<V> copy(TtlValue<V> from, TtlValue<V> reuse) {
+		return copy(from);
+	}
+
+	@Override
+	public int getLength() {
+		int valueLength = valueSerializer.getLength();
+		return valueLength < 0 ? -1 : TIMESTAMP_LENGTH + valueLength;
+	}
+
+	@Override
+	public void serialize(TtlValue<V> record, DataOutputView target) throws IOException {
+		target.writeLong(record.getLastAccessTimestamp());
+		valueSerializer.serialize(record.getValue(), target);
+	}
+
+	@Override
+	public TtlValue<V> deserialize(DataInputView source) throws IOException {
+		long lastAccessTimestamp = source.readLong();
+		return new TtlValue<>(valueSerializer.deserialize(source), lastAccessTimestamp);
+	}
+
+	@Override
+	public TtlValue<V> deserialize(TtlValue<V> reuse, DataInputView source) throws IOException {
+		return deserialize(source);
+	}
+
+	@Override
+	public void copy(DataInputView source, DataOutputView target) throws IOException {
+		target.writeLong(source.readLong());
+		valueSerializer.copy(source, target);
+	}
+
+	/**
+	 * Reads the time of the last access from a serialized {@link TtlValue}.
+	 *
+	 * @param serializedValue The serialized value.
+	 * @return The time of the last access of the value.
+	 */
+	public static long readLastAccessTimestamp(byte[] serializedValue) {
+		long timestamp = 0;
+		for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+			timestamp = (timestamp << 8) | (serializedValue[i] & 0xff);
+		}
+		return timestamp;
+	}
+
+	// --------------------------------------------------------------------
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj == this ||
+			(obj != null && obj.getClass() == getClass() &&
+				valueSerializer.equals(((TtlValueSerializer<?>) obj).valueSerializer));
+	}
+
+	@Override
+	public boolean canEqual(Object obj) {
+		return obj instanceof TtlValueSerializer;
+	}
+
+	@Override
+	public int hashCode() {
+		return valueSerializer.hashCode() * 31 + 7;
+	}
+}
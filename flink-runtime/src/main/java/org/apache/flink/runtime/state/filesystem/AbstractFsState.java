@@ -22,18 +22,24 @@ import org.apache.flink.api.common.state.ListState;
 import org.apache.flink.api.common.state.State;
 import org.apache.flink.api.common.state.StateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
-import org.apache.flink.core.fs.Path;
 import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
 import org.apache.flink.runtime.state.AbstractHeapState;
+import org.apache.flink.runtime.state.AsynchronousKvStateSnapshot;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
 import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.StateTable;
+import org.apache.flink.runtime.state.StateTableSnapshot;
+import org.apache.flink.runtime.state.StreamStateHandle;
 
 import java.io.DataOutputStream;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Base class for partitioned {@link ListState} implementations that are backed by a regular
  * heap hash map. The concrete implementations define how the state is checkpointed.
+ *
+ * <p>Snapshots are taken as copy-on-write snapshots of the {@link StateTable} and written to
+ * the file system asynchronously.
  * 
  * @param <K> The type of the key.
  * @param <N> The type of the namespace.
@@ -52,7 +58,8 @@ public abstract class AbstractFsState<K, N, SV, S extends State, SD extends Stat
 		TypeSerializer<N> namespaceSerializer,
 		TypeSerializer<SV> stateSerializer,
 		SD stateDesc) {
-		super(keySerializer, namespaceSerializer, stateSerializer, stateDesc);
+		super(keySerializer, namespaceSerializer, stateSerializer, stateDesc,
+			backend.getNumberOfKeyGroups(), backend.getKeyGroupRange());
 		this.backend = backend;
 	}
 
@@ -61,35 +68,70 @@ public abstract class AbstractFsState<K, N, SV, S extends State, SD extends Stat
 		TypeSerializer<N> namespaceSerializer,
 		TypeSerializer<SV> stateSerializer,
 		SD stateDesc,
-		HashMap<N, Map<K, SV>> state) {
+		StateTable<K, N, SV> state) {
 		super(keySerializer, namespaceSerializer, stateSerializer, stateDesc, state);
 		this.backend = backend;
 	}
 
-	public abstract KvStateSnapshot<K, N, S, SD, FsStateBackend> createHeapSnapshot(Path filePath);
+	public abstract KvStateSnapshot<K, N, S, SD, FsStateBackend> createHeapSnapshot(KeyGroupRangeOffsets keyGroupRangeOffsets, StreamStateHandle stateHandle);
 
 	@Override
 	public KvStateSnapshot<K, N, S, SD, FsStateBackend> snapshot(long checkpointId, long timestamp) throws Exception {
+		return new AsyncFsStateSnapshot(stateTable.createSnapshot(createSnapshotFilter()), checkpointId, timestamp);
+	}
+
+	/**
+	 * Writes a snapshot of the state table to the file system when the checkpoint is materialized.
+	 */
+	private class AsyncFsStateSnapshot extends AsynchronousKvStateSnapshot<K, N, S, SD, FsStateBackend> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient StateTableSnapshot<K, N, SV> tableSnapshot;
+
+		private final long checkpointId;
+
+		private final long timestamp;
+
+		// the serializers are not thread safe, so the asynchronous part gets its own copies
+		private final TypeSerializer<K> keySerializer = AbstractFsState.this.keySerializer.duplicate();
+		private final TypeSerializer<N> namespaceSerializer = AbstractFsState.this.namespaceSerializer.duplicate();
+		private final TypeSerializer<SV> stateSerializer = AbstractFsState.this.stateSerializer.duplicate();
 
-		try (FsStateBackend.FsCheckpointStateOutputStream out = backend.createCheckpointStateOutputStream(checkpointId, timestamp)) {
-
-			// serialize the state to the output stream
-			DataOutputViewStreamWrapper outView = new DataOutputViewStreamWrapper(new DataOutputStream(out));
-			outView.writeInt(state.size());
-			for (Map.Entry<N, Map<K, SV>> namespaceState: state.entrySet()) {
-				N namespace = namespaceState.getKey();
-				namespaceSerializer.serialize(namespace, outView);
-				outView.writeInt(namespaceState.getValue().size());
-				for (Map.Entry<K, SV> entry: namespaceState.getValue().entrySet()) {
-					keySerializer.serialize(entry.getKey(), outView);
-					stateSerializer.serialize(entry.getValue(), outView);
+		private AsyncFsStateSnapshot(StateTableSnapshot<K, N, SV> tableSnapshot, long checkpointId, long timestamp) {
+			this.tableSnapshot = tableSnapshot;
+			this.checkpointId = checkpointId;
+			this.timestamp = timestamp;
+		}
+
+		@Override
+		public KvStateSnapshot<K, N, S, SD, FsStateBackend> materialize() throws Exception {
+			try (FsStateBackend.FsCheckpointStateOutputStream out = backend.createMergingCheckpointStateOutputStream(checkpointId, timestamp)) {
+
+				// serialize the state to the output stream
+				DataOutputViewStreamWrapper outView = new DataOutputViewStreamWrapper(new DataOutputStream(out));
+
+				// the key groups are written one after the other, so that a restore can pick
+				// the ones it is responsible for by their offsets
+				KeyGroupRange keyGroupRange = stateTable.getKeyGroupRange();
+				long[] offsets = new long[keyGroupRange.getNumberOfKeyGroups()];
+
+				for (int keyGroup : keyGroupRange) {
+					offsets[keyGroup - keyGroupRange.getStartKeyGroup()] = out.getPos();
+					tableSnapshot.writeKeyGroup(keyGroup, keySerializer, namespaceSerializer, stateSerializer, outView);
 				}
+
+				// create a handle to the state. Flushing is left to the stream, which keeps
+				// small snapshots in memory rather than writing them to a file
+				return createHeapSnapshot(new KeyGroupRangeOffsets(keyGroupRange, offsets), out.closeAndGetHandle());
+			} finally {
+				release();
 			}
-			outView.flush();
+		}
 
-			// create a handle to the state
-//			return new FsHeapValueStateSnapshot<>(getKeySerializer(), getNamespaceSerializer(), stateDesc, out.closeAndGetPath());
-			return createHeapSnapshot(out.closeAndGetPath());
+		@Override
+		protected void release() {
+			tableSnapshot.release();
 		}
 	}
 }
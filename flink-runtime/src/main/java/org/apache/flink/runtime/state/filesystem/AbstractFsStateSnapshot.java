@@ -18,28 +18,39 @@
 
 package org.apache.flink.runtime.state.filesystem;
 
+import org.apache.flink.api.common.io.InputStreamFSInputWrapper;
 import org.apache.flink.api.common.state.State;
 import org.apache.flink.api.common.state.StateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.core.fs.FSDataInputStream;
-import org.apache.flink.core.fs.Path;
 import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.runtime.state.CompositeStateHandle;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
 import org.apache.flink.runtime.state.KvState;
 import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.SharedStateHandle;
+import org.apache.flink.runtime.state.SharedStateRegistry;
+import org.apache.flink.runtime.state.StateTable;
+import org.apache.flink.runtime.state.StreamStateHandle;
 
 import java.io.DataInputStream;
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.InputStream;
+import java.util.Collection;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
 
 /**
- * A snapshot of a heap key/value state stored in a file.
+ * A snapshot of a heap key/value state stored in a file. Small snapshots are stored directly
+ * in the state handle, or in a file shared with other states, depending on the thresholds
+ * of the {@link FsStateBackend}.
  * 
  * @param <K> The type of the key in the snapshot state.
  * @param <N> The type of the namespace in the snapshot state.
  * @param <SV> The type of the state value.
  */
-public abstract class AbstractFsStateSnapshot<K, N, SV, S extends State, SD extends StateDescriptor<S, ?>> extends AbstractFileStateHandle implements KvStateSnapshot<K, N, S, SD, FsStateBackend> {
+public abstract class AbstractFsStateSnapshot<K, N, SV, S extends State, SD extends StateDescriptor<S, ?>> implements KvStateSnapshot<K, N, S, SD, FsStateBackend>, CompositeStateHandle {
 
 	private static final long serialVersionUID = 1L;
 
@@ -55,6 +66,15 @@ public abstract class AbstractFsStateSnapshot<K, N, SV, S extends State, SD exte
 	/** StateDescriptor, for sanity checks */
 	protected final SD stateDesc;
 
+	/**
+	 * The offsets of the key groups in the snapshot file. This is null for snapshots
+	 * that were taken before the state was sharded by key group.
+	 */
+	private final KeyGroupRangeOffsets keyGroupRangeOffsets;
+
+	/** The handle to the snapshot data */
+	private final StreamStateHandle stateHandle;
+
 	/**
 	 * Creates a new state snapshot with data in the file system.
 	 *
@@ -62,22 +82,24 @@ public abstract class AbstractFsStateSnapshot<K, N, SV, S extends State, SD exte
 	 * @param namespaceSerializer The serializer for the namespace.
 	 * @param stateSerializer The serializer for the elements in the state HashMap
 	 * @param stateDesc The state identifier
-	 * @param filePath The path where the snapshot data is stored.
+	 * @param keyGroupRangeOffsets The offsets of the key groups in the snapshot file
+	 * @param stateHandle The handle to the snapshot data.
 	 */
 	public AbstractFsStateSnapshot(TypeSerializer<K> keySerializer,
 		TypeSerializer<N> namespaceSerializer,
 		TypeSerializer<SV> stateSerializer,
 		SD stateDesc,
-		Path filePath) {
-		super(filePath);
+		KeyGroupRangeOffsets keyGroupRangeOffsets,
+		StreamStateHandle stateHandle) {
+		this.stateHandle = checkNotNull(stateHandle);
 		this.stateDesc = stateDesc;
 		this.keySerializer = keySerializer;
 		this.stateSerializer = stateSerializer;
 		this.namespaceSerializer = namespaceSerializer;
-
+		this.keyGroupRangeOffsets = keyGroupRangeOffsets;
 	}
 
-	public abstract KvState<K, N, S, SD, FsStateBackend> createFsState(FsStateBackend backend, HashMap<N, Map<K, SV>> stateMap);
+	public abstract KvState<K, N, S, SD, FsStateBackend> createFsState(FsStateBackend backend, StateTable<K, N, SV> stateTable);
 
 	@Override
 	public KvState<K, N, S, SD, FsStateBackend> restoreState(
@@ -96,41 +118,97 @@ public abstract class AbstractFsStateSnapshot<K, N, SV, S extends State, SD exte
 		}
 
 		// state restore
-		try (FSDataInputStream inStream = stateBackend.getFileSystem().open(getFilePath())) {
+		StateTable<K, N, SV> stateTable = new StateTable<>(
+			stateSerializer,
+			stateBackend.getNumberOfKeyGroups(),
+			stateBackend.getKeyGroupRange());
+
+		try (InputStream stateStream = stateHandle.getState(classLoader)) {
+			// the key groups are read in the order of their offsets, so snapshots that are not
+			// stored in files only need to support seeking forward
+			FSDataInputStream inStream = stateStream instanceof FSDataInputStream ?
+				(FSDataInputStream) stateStream : new InputStreamFSInputWrapper(stateStream);
 			DataInputViewStreamWrapper inView = new DataInputViewStreamWrapper(new DataInputStream(inStream));
 
-
-			final int numKeys = inView.readInt();
-			HashMap<N, Map<K, SV>> stateMap = new HashMap<>(numKeys);
-
-			for (int i = 0; i < numKeys; i++) {
-				N namespace = namespaceSerializer.deserialize(inView);
-				final int numValues = inView.readInt();
-				Map<K, SV> namespaceMap = new HashMap<>(numValues);
-				stateMap.put(namespace, namespaceMap);
-				for (int j = 0; j < numValues; j++) {
-					K key = keySerializer.deserialize(inView);
-					SV value = stateSerializer.deserialize(inView);
-					namespaceMap.put(key, value);
+			if (keyGroupRangeOffsets != null) {
+				// only read the key groups that the restoring backend is responsible for
+				KeyGroupRange restoredKeyGroups = keyGroupRangeOffsets.getKeyGroupRange()
+					.getIntersection(stateTable.getKeyGroupRange());
+
+				for (int keyGroup : restoredKeyGroups) {
+					inStream.seek(keyGroupRangeOffsets.getKeyGroupOffset(keyGroup));
+
+					final int numKeys = inView.readInt();
+					if (numKeys == 0) {
+						continue;
+					}
+
+					for (int i = 0; i < numKeys; i++) {
+						N namespace = namespaceSerializer.deserialize(inView);
+						final int numValues = inView.readInt();
+						for (int j = 0; j < numValues; j++) {
+							K key = keySerializer.deserialize(inView);
+							SV value = stateSerializer.deserialize(inView);
+							stateTable.put(key, namespace, value);
+						}
+					}
+				}
+			} else {
+				// snapshot from before key groups, assign every key to its key group
+				final int numKeys = inView.readInt();
+
+				for (int i = 0; i < numKeys; i++) {
+					N namespace = namespaceSerializer.deserialize(inView);
+					final int numValues = inView.readInt();
+					for (int j = 0; j < numValues; j++) {
+						K key = keySerializer.deserialize(inView);
+						SV value = stateSerializer.deserialize(inView);
+
+						int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(key, stateTable.getNumberOfKeyGroups());
+						if (stateTable.getKeyGroupRange().contains(keyGroup)) {
+							stateTable.put(key, namespace, value);
+						}
+					}
 				}
 			}
 
-//			return new FsHeapValueState<>(stateBackend, keySerializer, namespaceSerializer, stateDesc, stateMap);
-			return createFsState(stateBackend, stateMap);
+			return createFsState(stateBackend, stateTable);
 		}
 		catch (Exception e) {
-			throw new Exception("Failed to restore state from file system", e);
+			throw new Exception("Failed to restore state from " + stateHandle, e);
 		}
 	}
 
 	/**
-	 * Returns the file size in bytes.
+	 * Gets the offsets of the key groups in this snapshot.
+	 *
+	 * @return The key group offsets, or null if the snapshot is not sharded by key group.
+	 */
+	public KeyGroupRangeOffsets getKeyGroupRangeOffsets() {
+		return keyGroupRangeOffsets;
+	}
+
+	/**
+	 * Gets the handle to the snapshot data.
 	 *
-	 * @return The file size in bytes.
-	 * @throws IOException Thrown if the file system cannot be accessed.
+	 * @return The handle to the snapshot data.
 	 */
+	public StreamStateHandle getStateHandle() {
+		return stateHandle;
+	}
+
+	@Override
+	public void discardState() throws Exception {
+		stateHandle.discardState();
+	}
+
+	@Override
+	public long getStateSize() throws Exception {
+		return stateHandle.getStateSize();
+	}
+
 	@Override
-	public long getStateSize() throws IOException {
-		return getFileSize();
+	public Collection<SharedStateHandle> getSharedStates() {
+		return SharedStateRegistry.getSharedStates(stateHandle);
 	}
 }
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.filesystem;
+
+import org.apache.flink.core.fs.FSDataOutputStream;
+import org.apache.flink.core.fs.FileSystem;
+import org.apache.flink.core.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The checkpoint file merger packs the small states of all tasks of a TaskManager into shared
+ * files, rather than writing one file per state. This keeps the number of files (and the load
+ * on the file system's name node) independent of the number of tasks.
+ *
+ * <p>There is one merger per checkpoint directory of a job in each TaskManager. It keeps one
+ * open file per checkpoint, to which the states are appended. Each state becomes a
+ * {@link FileSegmentStateHandle} pointing to its position in the file. The data is flushed after
+ * each state, so that it is readable before the file is closed. A file is closed once it reaches
+ * its maximum size, once the tasks write states of a later checkpoint, or once the last state
+ * backend releases the merger.
+ */
+public class CheckpointFileMerger {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CheckpointFileMerger.class);
+
+	/** The size (in bytes) above which a shared file is closed and a new one is started */
+	public static final long DEFAULT_MAX_FILE_SIZE = 32 * 1024 * 1024;
+
+	/** The mergers of this TaskManager, by the checkpoint directory of the job */
+	private static final Map<Path, CheckpointFileMerger> MERGERS = new HashMap<>();
+
+	// ------------------------------------------------------------------------
+
+	/** The checkpoint directory of the job, inside of which the checkpoints have their directories */
+	private final Path checkpointDirectory;
+
+	private final FileSystem fs;
+
+	private final long maxFileSize;
+
+	/** The currently open shared files, by checkpoint ID. Guarded by this merger */
+	private final Map<Long, SharedFile> openFiles = new HashMap<>();
+
+	/** The number of state backends using this merger. Guarded by the lock on the mergers */
+	private int numReferences;
+
+	/** Flag marking that the last reference has been released. Guarded by this merger */
+	private boolean released;
+
+	CheckpointFileMerger(Path checkpointDirectory, FileSystem fs, long maxFileSize) {
+		checkArgument(maxFileSize > 0, "The maximum file size must be positive.");
+
+		this.checkpointDirectory = checkNotNull(checkpointDirectory);
+		this.fs = checkNotNull(fs);
+		this.maxFileSize = maxFileSize;
+	}
+
+	/**
+	 * Gets the merger for the given checkpoint directory of a job, creating it if necessary.
+	 * Each call must be matched by a call to {@link #release()}.
+	 *
+	 * @param checkpointDirectory The checkpoint directory of the job
+	 * @param fs The file system of the checkpoint directory
+	 * @return The merger for the checkpoint directory
+	 */
+	public static CheckpointFileMerger acquire(Path checkpointDirectory, FileSystem fs) {
+		synchronized (MERGERS) {
+			CheckpointFileMerger merger = MERGERS.get(checkpointDirectory);
+			if (merger == null) {
+				merger = new CheckpointFileMerger(checkpointDirectory, fs, DEFAULT_MAX_FILE_SIZE);
+				MERGERS.put(checkpointDirectory, merger);
+			}
+			merger.numReferences++;
+			return merger;
+		}
+	}
+
+	/**
+	 * Releases a reference to this merger. When the last reference is released, the open
+	 * files are closed.
+	 */
+	public void release() {
+		boolean lastReference;
+		synchronized (MERGERS) {
+			lastReference = --numReferences == 0;
+			if (lastReference) {
+				MERGERS.remove(checkpointDirectory);
+			}
+		}
+
+		if (lastReference) {
+			synchronized (this) {
+				released = true;
+				closeFiles(Long.MAX_VALUE);
+			}
+		}
+	}
+
+	/**
+	 * Appends the given state to the shared file of the checkpoint.
+	 *
+	 * @param checkpointId The ID of the checkpoint that the state belongs to
+	 * @param checkpointPath The directory of the checkpoint
+	 * @param data The buffer holding the state
+	 * @param off The offset of the state in the buffer
+	 * @param len The length of the state
+	 * @return The handle to the segment of the shared file that holds the state
+	 * @throws IOException Thrown, if the state cannot be written
+	 */
+	public synchronized FileSegmentStateHandle write(
+			long checkpointId,
+			Path checkpointPath,
+			byte[] data,
+			int off,
+			int len) throws IOException {
+
+		if (released) {
+			throw new IOException("The checkpoint file merger has been released.");
+		}
+
+		// the tasks moved on to this checkpoint, so the files of earlier ones are complete
+		closeFiles(checkpointId);
+
+		SharedFile file = openFiles.get(checkpointId);
+		if (file == null) {
+			file = openFile(checkpointPath);
+			openFiles.put(checkpointId, file);
+		}
+
+		long startPosition = file.size;
+		try {
+			file.outStream.write(data, off, len);
+			file.outStream.flush();
+			file.size += len;
+		}
+		catch (IOException e) {
+			// the position in the file is unknown now, the next state goes into a new file
+			openFiles.remove(checkpointId);
+			closeFile(file);
+			throw e;
+		}
+
+		if (file.size >= maxFileSize) {
+			openFiles.remove(checkpointId);
+			closeFile(file);
+		}
+
+		return new FileSegmentStateHandle(file.path, startPosition, len, checkpointId);
+	}
+
+	/**
+	 * Gets the number of currently open shared files.
+	 */
+	public synchronized int getNumberOfOpenFiles() {
+		return openFiles.size();
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Closes the open files of all checkpoints before the given one.
+	 */
+	private void closeFiles(long checkpointId) {
+		List<SharedFile> filesToClose = new ArrayList<>();
+
+		Iterator<Map.Entry<Long, SharedFile>> iterator = openFiles.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Long, SharedFile> entry = iterator.next();
+			if (entry.getKey() < checkpointId) {
+				filesToClose.add(entry.getValue());
+				iterator.remove();
+			}
+		}
+
+		for (SharedFile file : filesToClose) {
+			closeFile(file);
+		}
+	}
+
+	private SharedFile openFile(Path checkpointPath) throws IOException {
+		// make sure the directory for that specific checkpoint exists
+		fs.mkdirs(checkpointPath);
+
+		Exception latestException = null;
+		for (int attempt = 0; attempt < 10; attempt++) {
+			try {
+				Path path = new Path(checkpointPath, "merged-" + UUID.randomUUID().toString());
+				return new SharedFile(path, fs.create(path, false));
+			}
+			catch (Exception e) {
+				latestException = e;
+			}
+		}
+
+		throw new IOException("Could not open shared file for checkpoint states", latestException);
+	}
+
+	private static void closeFile(SharedFile file) {
+		try {
+			file.outStream.close();
+		}
+		catch (Exception e) {
+			LOG.warn("Cannot close shared checkpoint file " + file.path, e);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static final class SharedFile {
+
+		private final Path path;
+
+		private final FSDataOutputStream outStream;
+
+		/** The number of bytes written to the file */
+		private long size;
+
+		private SharedFile(Path path, FSDataOutputStream outStream) {
+			this.path = path;
+			this.outStream = outStream;
+		}
+	}
+}
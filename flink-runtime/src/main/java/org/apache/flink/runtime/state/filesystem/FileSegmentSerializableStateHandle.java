@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.filesystem;
+
+import org.apache.flink.runtime.state.CompositeStateHandle;
+import org.apache.flink.runtime.state.SharedStateHandle;
+import org.apache.flink.runtime.state.StateHandle;
+import org.apache.flink.util.InstantiationUtil;
+
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Collection;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * A state handle that points to state stored via Java Serialization in a segment of a
+ * shared file.
+ *
+ * @param <T> The type of state pointed to by the state handle.
+ */
+public class FileSegmentSerializableStateHandle<T extends Serializable> implements StateHandle<T>, CompositeStateHandle {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The handle to the segment that holds the serialized state */
+	private final FileSegmentStateHandle segmentHandle;
+
+	public FileSegmentSerializableStateHandle(FileSegmentStateHandle segmentHandle) {
+		this.segmentHandle = checkNotNull(segmentHandle);
+	}
+
+	public FileSegmentStateHandle getSegmentHandle() {
+		return segmentHandle;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T getState(ClassLoader classLoader) throws Exception {
+		try (InputStream inStream = segmentHandle.getState(classLoader)) {
+			ObjectInputStream ois = new InstantiationUtil.ClassLoaderObjectInputStream(inStream, classLoader);
+			return (T) ois.readObject();
+		}
+	}
+
+	@Override
+	public void discardState() {
+		segmentHandle.discardState();
+	}
+
+	@Override
+	public long getStateSize() {
+		return segmentHandle.getStateSize();
+	}
+
+	@Override
+	public Collection<SharedStateHandle> getSharedStates() {
+		return segmentHandle.getSharedStates();
+	}
+
+	@Override
+	public String toString() {
+		return "FileSegmentSerializableStateHandle(" + segmentHandle + ")";
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.filesystem;
+
+import org.apache.flink.core.fs.FSDataInputStream;
+import org.apache.flink.core.fs.FileSystem;
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.runtime.state.CompositeStateHandle;
+import org.apache.flink.runtime.state.SharedStateHandle;
+import org.apache.flink.runtime.state.StateHandle;
+import org.apache.flink.runtime.state.StreamStateHandle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * A state handle that points to a segment of a file, which holds the small states of several
+ * tasks of a checkpoint (see {@link CheckpointFileMerger}).
+ *
+ * <p>The file is shared by all handles pointing into it, so discarding a segment does not
+ * touch the file. Instead, the file is referenced as {@link SharedStateHandle shared state}
+ * and discarded by the {@link org.apache.flink.runtime.state.SharedStateRegistry} once no
+ * checkpoint references any of its segments any more.
+ */
+public class FileSegmentStateHandle implements StreamStateHandle, CompositeStateHandle {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The path to the shared file */
+	private final Path filePath;
+
+	/** The position of the segment in the file */
+	private final long startPosition;
+
+	/** The length of the segment in bytes */
+	private final long length;
+
+	/** The ID of the checkpoint whose states the file holds */
+	private final long checkpointId;
+
+	/** Cached file system handle */
+	private transient FileSystem fs;
+
+	public FileSegmentStateHandle(Path filePath, long startPosition, long length, long checkpointId) {
+		checkArgument(startPosition >= 0, "The start position must not be negative.");
+		checkArgument(length >= 0, "The length must not be negative.");
+
+		this.filePath = checkNotNull(filePath);
+		this.startPosition = startPosition;
+		this.length = length;
+		this.checkpointId = checkpointId;
+	}
+
+	public Path getFilePath() {
+		return filePath;
+	}
+
+	public long getStartPosition() {
+		return startPosition;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	@Override
+	public InputStream getState(ClassLoader userCodeClassLoader) throws Exception {
+		FSDataInputStream inStream = getFileSystem().open(filePath);
+		inStream.seek(startPosition);
+		return new FileSegmentInputStream(inStream, startPosition, length);
+	}
+
+	/**
+	 * The shared file is discarded by the shared state registry, so this method does nothing.
+	 */
+	@Override
+	public void discardState() {}
+
+	@Override
+	public long getStateSize() {
+		return length;
+	}
+
+	@Override
+	public <T extends Serializable> StateHandle<T> toSerializableHandle() {
+		return new FileSegmentSerializableStateHandle<>(this);
+	}
+
+	@Override
+	public Collection<SharedStateHandle> getSharedStates() {
+		// all segments of a file share the registration key, so that the file is only
+		// discarded when the last of them is not referenced any more
+		return Collections.singletonList(
+			new SharedStateHandle(new FileStreamStateHandle(filePath), filePath.toString(), checkpointId));
+	}
+
+	private FileSystem getFileSystem() throws IOException {
+		if (fs == null) {
+			fs = FileSystem.get(filePath.toUri());
+		}
+		return fs;
+	}
+
+	@Override
+	public String toString() {
+		return "FileSegmentStateHandle(" + filePath + ", " + startPosition + ", " + length + ")";
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * An input stream that reads only the segment of the underlying file stream. Positions are
+	 * relative to the start of the segment.
+	 */
+	private static final class FileSegmentInputStream extends FSDataInputStream {
+
+		private final FSDataInputStream inStream;
+
+		private final long startPosition;
+
+		private final long length;
+
+		/** The position in the segment */
+		private long pos;
+
+		FileSegmentInputStream(FSDataInputStream inStream, long startPosition, long length) {
+			this.inStream = inStream;
+			this.startPosition = startPosition;
+			this.length = length;
+		}
+
+		@Override
+		public void seek(long desired) throws IOException {
+			if (desired < 0 || desired > length) {
+				throw new IOException("Cannot seek to " + desired + " in a segment of " + length + " bytes.");
+			}
+			inStream.seek(startPosition + desired);
+			pos = desired;
+		}
+
+		@Override
+		public long getPos() {
+			return pos;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (pos >= length) {
+				return -1;
+			}
+
+			int b = inStream.read();
+			if (b >= 0) {
+				pos++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (pos >= length) {
+				return -1;
+			}
+
+			int read = inStream.read(b, off, (int) Math.min(len, length - pos));
+			if (read > 0) {
+				pos += read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = Math.max(0L, Math.min(n, length - pos));
+			seek(pos + skipped);
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(Integer.MAX_VALUE, length - pos);
+		}
+
+		@Override
+		public void close() throws IOException {
+			inStream.close();
+		}
+	}
+}
@@ -22,13 +22,13 @@ import org.apache.flink.api.common.functions.FoldFunction;
 import org.apache.flink.api.common.state.FoldingState;
 import org.apache.flink.api.common.state.FoldingStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
-import org.apache.flink.core.fs.Path;
+import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
 import org.apache.flink.runtime.state.KvState;
 import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.StateTable;
+import org.apache.flink.runtime.state.StreamStateHandle;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Heap-backed partitioned {@link FoldingState} that is
@@ -72,27 +72,21 @@ public class FsFoldingState<K, N, T, ACC>
 	 * @param namespaceSerializer The serializer for the namespace.
 	 * @param stateDesc The state identifier for the state. This contains name
 *                           and can create a default state value.
-	 * @param state The map of key/value pairs to initialize the state with.
+	 * @param state The table of key/value pairs to initialize the state with.
 	 */
 	public FsFoldingState(FsStateBackend backend,
 		TypeSerializer<K> keySerializer,
 		TypeSerializer<N> namespaceSerializer,
 		FoldingStateDescriptor<T, ACC> stateDesc,
-		HashMap<N, Map<K, ACC>> state) {
+		StateTable<K, N, ACC> state) {
 		super(backend, keySerializer, namespaceSerializer, stateDesc.getSerializer(), stateDesc, state);
 		this.foldFunction = stateDesc.getFoldFunction();
 	}
 
 	@Override
 	public ACC get() {
-		if (currentNSState == null) {
-			currentNSState = state.get(currentNamespace);
-		}
-		if (currentNSState != null) {
-			ACC value = currentNSState.get(currentKey);
-			return value != null ? value : stateDesc.getDefaultValue();
-		}
-		return stateDesc.getDefaultValue();
+		ACC value = stateTable.get(currentKey, currentNamespace);
+		return value != null ? value : stateDesc.getDefaultValue();
 	}
 
 	@Override
@@ -101,18 +95,12 @@ public class FsFoldingState<K, N, T, ACC>
 			throw new RuntimeException("No key available.");
 		}
 
-		if (currentNSState == null) {
-			currentNSState = new HashMap<>();
-			state.put(currentNamespace, currentNSState);
-		}
-
-		ACC currentValue = currentNSState.get(currentKey);
+		ACC currentValue = stateTable.get(currentKey, currentNamespace);
 		try {
 			if (currentValue == null) {
-				currentNSState.put(currentKey, foldFunction.fold(stateDesc.getDefaultValue(), value));
+				stateTable.put(currentKey, currentNamespace, foldFunction.fold(stateDesc.getDefaultValue(), value));
 			} else {
-				currentNSState.put(currentKey, foldFunction.fold(currentValue, value));
-
+				stateTable.put(currentKey, currentNamespace, foldFunction.fold(currentValue, value));
 			}
 		} catch (Exception e) {
 			throw new RuntimeException("Could not add value to folding state.", e);
@@ -120,8 +108,8 @@ public class FsFoldingState<K, N, T, ACC>
 	}
 
 	@Override
-	public KvStateSnapshot<K, N, FoldingState<T, ACC>, FoldingStateDescriptor<T, ACC>, FsStateBackend> createHeapSnapshot(Path filePath) {
-		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, filePath);
+	public KvStateSnapshot<K, N, FoldingState<T, ACC>, FoldingStateDescriptor<T, ACC>, FsStateBackend> createHeapSnapshot(KeyGroupRangeOffsets keyGroupRangeOffsets, StreamStateHandle stateHandle) {
+		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, keyGroupRangeOffsets, stateHandle);
 	}
 
 
@@ -132,13 +120,14 @@ public class FsFoldingState<K, N, T, ACC>
 			TypeSerializer<N> namespaceSerializer,
 			TypeSerializer<ACC> stateSerializer,
 			FoldingStateDescriptor<T, ACC> stateDescs,
-			Path filePath) {
-			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, filePath);
+			KeyGroupRangeOffsets keyGroupRangeOffsets,
+			StreamStateHandle stateHandle) {
+			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, keyGroupRangeOffsets, stateHandle);
 		}
 
 		@Override
-		public KvState<K, N, FoldingState<T, ACC>, FoldingStateDescriptor<T, ACC>, FsStateBackend> createFsState(FsStateBackend backend, HashMap<N, Map<K, ACC>> stateMap) {
-			return new FsFoldingState<>(backend, keySerializer, namespaceSerializer, stateDesc, stateMap);
+		public KvState<K, N, FoldingState<T, ACC>, FoldingStateDescriptor<T, ACC>, FsStateBackend> createFsState(FsStateBackend backend, StateTable<K, N, ACC> stateTable) {
+			return new FsFoldingState<>(backend, keySerializer, namespaceSerializer, stateDesc, stateTable);
 		}
 	}
 
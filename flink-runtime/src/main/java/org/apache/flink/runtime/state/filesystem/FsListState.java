@@ -21,16 +21,16 @@ package org.apache.flink.runtime.state.filesystem;
 import org.apache.flink.api.common.state.ListStateDescriptor;
 import org.apache.flink.api.common.state.ListState;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
-import org.apache.flink.core.fs.Path;
 import org.apache.flink.runtime.state.ArrayListSerializer;
+import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
 import org.apache.flink.runtime.state.KvState;
 import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.StateTable;
+import org.apache.flink.runtime.state.StreamStateHandle;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Heap-backed partitioned {@link org.apache.flink.api.common.state.ListState} that is snapshotted
@@ -68,32 +68,26 @@ public class FsListState<K, N, V>
 	 * @param namespaceSerializer The serializer for the namespace.
 	 * @param stateDesc The state identifier for the state. This contains name
 	 *                           and can create a default state value.
-	 * @param state The map of key/value pairs to initialize the state with.
+	 * @param state The table of key/value pairs to initialize the state with.
 	 * @param backend The file system state backend backing snapshots of this state
 	 */
 	public FsListState(FsStateBackend backend,
 		TypeSerializer<K> keySerializer,
 		TypeSerializer<N> namespaceSerializer,
 		ListStateDescriptor<V> stateDesc,
-		HashMap<N, Map<K, ArrayList<V>>> state) {
+		StateTable<K, N, ArrayList<V>> state) {
 		super(backend, keySerializer, namespaceSerializer, new ArrayListSerializer<>(stateDesc.getSerializer()), stateDesc, state);
 	}
 
 
 	@Override
 	public Iterable<V> get() {
-		if (currentNSState == null) {
-			currentNSState = state.get(currentNamespace);
+		List<V> result = stateTable.get(currentKey, currentNamespace);
+		if (result == null) {
+			return Collections.emptyList();
+		} else {
+			return result;
 		}
-		if (currentNSState != null) {
-			List<V> result = currentNSState.get(currentKey);
-			if (result == null) {
-				return Collections.emptyList();
-			} else {
-				return result;
-			}
-		}
-		return Collections.emptyList();
 	}
 
 	@Override
@@ -102,23 +96,18 @@ public class FsListState<K, N, V>
 			throw new RuntimeException("No key available.");
 		}
 
-		if (currentNSState == null) {
-			currentNSState = new HashMap<>();
-			state.put(currentNamespace, currentNSState);
-		}
-
-
-		ArrayList<V> list = currentNSState.get(currentKey);
+		// the list returned by the state table can be modified in place
+		ArrayList<V> list = stateTable.get(currentKey, currentNamespace);
 		if (list == null) {
 			list = new ArrayList<>();
-			currentNSState.put(currentKey, list);
+			stateTable.put(currentKey, currentNamespace, list);
 		}
 		list.add(value);
 	}
 	
 	@Override
-	public KvStateSnapshot<K, N, ListState<V>, ListStateDescriptor<V>, FsStateBackend> createHeapSnapshot(Path filePath) {
-		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), new ArrayListSerializer<>(stateDesc.getSerializer()), stateDesc, filePath);
+	public KvStateSnapshot<K, N, ListState<V>, ListStateDescriptor<V>, FsStateBackend> createHeapSnapshot(KeyGroupRangeOffsets keyGroupRangeOffsets, StreamStateHandle stateHandle) {
+		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), new ArrayListSerializer<>(stateDesc.getSerializer()), stateDesc, keyGroupRangeOffsets, stateHandle);
 	}
 
 	public static class Snapshot<K, N, V> extends AbstractFsStateSnapshot<K, N, ArrayList<V>, ListState<V>, ListStateDescriptor<V>> {
@@ -128,13 +117,14 @@ public class FsListState<K, N, V>
 			TypeSerializer<N> namespaceSerializer,
 			TypeSerializer<ArrayList<V>> stateSerializer,
 			ListStateDescriptor<V> stateDescs,
-			Path filePath) {
-			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, filePath);
+			KeyGroupRangeOffsets keyGroupRangeOffsets,
+			StreamStateHandle stateHandle) {
+			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, keyGroupRangeOffsets, stateHandle);
 		}
 
 		@Override
-		public KvState<K, N, ListState<V>, ListStateDescriptor<V>, FsStateBackend> createFsState(FsStateBackend backend, HashMap<N, Map<K, ArrayList<V>>> stateMap) {
-			return new FsListState<>(backend, keySerializer, namespaceSerializer, stateDesc, stateMap);
+		public KvState<K, N, ListState<V>, ListStateDescriptor<V>, FsStateBackend> createFsState(FsStateBackend backend, StateTable<K, N, ArrayList<V>> stateTable) {
+			return new FsListState<>(backend, keySerializer, namespaceSerializer, stateDesc, stateTable);
 		}
 	}
 }
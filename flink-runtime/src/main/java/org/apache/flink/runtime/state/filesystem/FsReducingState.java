@@ -22,13 +22,13 @@ import org.apache.flink.api.common.functions.ReduceFunction;
 import org.apache.flink.api.common.state.ReducingState;
 import org.apache.flink.api.common.state.ReducingStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
-import org.apache.flink.core.fs.Path;
+import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
 import org.apache.flink.runtime.state.KvState;
 import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.StateTable;
+import org.apache.flink.runtime.state.StreamStateHandle;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Heap-backed partitioned {@link org.apache.flink.api.common.state.ReducingState} that is
@@ -71,13 +71,13 @@ public class FsReducingState<K, N, V>
 	 * @param namespaceSerializer The serializer for the namespace.
 	 * @param stateDesc The state identifier for the state. This contains name
 *                           and can create a default state value.
-	 * @param state The map of key/value pairs to initialize the state with.
+	 * @param state The table of key/value pairs to initialize the state with.
 	 */
 	public FsReducingState(FsStateBackend backend,
 		TypeSerializer<K> keySerializer,
 		TypeSerializer<N> namespaceSerializer,
 		ReducingStateDescriptor<V> stateDesc,
-		HashMap<N, Map<K, V>> state) {
+		StateTable<K, N, V> state) {
 		super(backend, keySerializer, namespaceSerializer, stateDesc.getSerializer(), stateDesc, state);
 		this.reduceFunction = stateDesc.getReduceFunction();
 	}
@@ -85,13 +85,7 @@ public class FsReducingState<K, N, V>
 
 	@Override
 	public V get() {
-		if (currentNSState == null) {
-			currentNSState = state.get(currentNamespace);
-		}
-		if (currentNSState != null) {
-			return currentNSState.get(currentKey);
-		}
-		return null;
+		return stateTable.get(currentKey, currentNamespace);
 	}
 
 	@Override
@@ -100,34 +94,20 @@ public class FsReducingState<K, N, V>
 			throw new RuntimeException("No key available.");
 		}
 
-		if (currentNSState == null) {
-			currentNSState = new HashMap<>();
-			state.put(currentNamespace, currentNSState);
-		}
-//		currentKeyState.merge(currentNamespace, value, new BiFunction<V, V, V>() {
-//			@Override
-//			public V apply(V v, V v2) {
-//				try {
-//					return reduceFunction.reduce(v, v2);
-//				} catch (Exception e) {
-//					return null;
-//				}
-//			}
-//		});
-		V currentValue = currentNSState.get(currentKey);
+		V currentValue = stateTable.get(currentKey, currentNamespace);
 		if (currentValue == null) {
-			currentNSState.put(currentKey, value);
+			stateTable.put(currentKey, currentNamespace, value);
 		} else {
 			try {
-				currentNSState.put(currentKey, reduceFunction.reduce(currentValue, value));
+				stateTable.put(currentKey, currentNamespace, reduceFunction.reduce(currentValue, value));
 			} catch (Exception e) {
 				throw new RuntimeException("Could not add value to reducing state.", e);
 			}
 		}
 	}
 	@Override
-	public KvStateSnapshot<K, N, ReducingState<V>, ReducingStateDescriptor<V>, FsStateBackend> createHeapSnapshot(Path filePath) {
-		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, filePath);
+	public KvStateSnapshot<K, N, ReducingState<V>, ReducingStateDescriptor<V>, FsStateBackend> createHeapSnapshot(KeyGroupRangeOffsets keyGroupRangeOffsets, StreamStateHandle stateHandle) {
+		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, keyGroupRangeOffsets, stateHandle);
 	}
 
 	public static class Snapshot<K, N, V> extends AbstractFsStateSnapshot<K, N, V, ReducingState<V>, ReducingStateDescriptor<V>> {
@@ -137,13 +117,14 @@ public class FsReducingState<K, N, V>
 			TypeSerializer<N> namespaceSerializer,
 			TypeSerializer<V> stateSerializer,
 			ReducingStateDescriptor<V> stateDescs,
-			Path filePath) {
-			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, filePath);
+			KeyGroupRangeOffsets keyGroupRangeOffsets,
+			StreamStateHandle stateHandle) {
+			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, keyGroupRangeOffsets, stateHandle);
 		}
 
 		@Override
-		public KvState<K, N, ReducingState<V>, ReducingStateDescriptor<V>, FsStateBackend> createFsState(FsStateBackend backend, HashMap<N, Map<K, V>> stateMap) {
-			return new FsReducingState<>(backend, keySerializer, namespaceSerializer, stateDesc, stateMap);
+		public KvState<K, N, ReducingState<V>, ReducingStateDescriptor<V>, FsStateBackend> createFsState(FsStateBackend backend, StateTable<K, N, V> stateTable) {
+			return new FsReducingState<>(backend, keySerializer, namespaceSerializer, stateDesc, stateTable);
 		}
 	}
 }
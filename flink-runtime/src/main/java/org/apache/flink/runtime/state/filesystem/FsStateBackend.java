@@ -18,10 +18,14 @@
 
 package org.apache.flink.runtime.state.filesystem;
 
+import org.apache.flink.api.common.state.AggregatingState;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
 import org.apache.flink.api.common.state.FoldingState;
 import org.apache.flink.api.common.state.FoldingStateDescriptor;
 import org.apache.flink.api.common.state.ListState;
 import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
 import org.apache.flink.api.common.state.ReducingState;
 import org.apache.flink.api.common.state.ReducingStateDescriptor;
 import org.apache.flink.api.common.state.ValueState;
@@ -68,6 +72,9 @@ public class FsStateBackend extends AbstractStateBackend {
 
 	/** Maximum size of state that is stored with the metadata, rather than in files */
 	public static final int MAX_FILE_STATE_THRESHOLD = 1024 * 1024;
+
+	/** By default, state is not merged into shared files */
+	public static final int DEFAULT_FILE_MERGING_THRESHOLD = 0;
 	
 	/** Default size for the write buffer */
 	private static final int DEFAULT_WRITE_BUFFER_SIZE = 4096;
@@ -79,6 +86,9 @@ public class FsStateBackend extends AbstractStateBackend {
 
 	/** State below this size will be stored as part of the metadata, rather than in files */
 	private final int fileStateThreshold;
+
+	/** State up to this size will be written to files shared with the other tasks of the TaskManager */
+	private final int fileMergingThreshold;
 	
 	/** The directory (job specific) into this initialized instance of the backend stores its data */
 	private transient Path checkpointDirectory;
@@ -86,6 +96,9 @@ public class FsStateBackend extends AbstractStateBackend {
 	/** Cached handle to the file system for file operations */
 	private transient FileSystem filesystem;
 
+	/** The merger for small states, acquired upon first use if file merging is enabled */
+	private transient CheckpointFileMerger fileMerger;
+
 
 	/**
 	 * Creates a new state backend that stores its checkpoint data in the file system and location
@@ -163,6 +176,31 @@ public class FsStateBackend extends AbstractStateBackend {
 	 * @throws IOException Thrown, if no file system can be found for the scheme in the URI.
 	 */
 	public FsStateBackend(URI checkpointDataUri, int fileStateSizeThreshold) throws IOException {
+		this(checkpointDataUri, fileStateSizeThreshold, DEFAULT_FILE_MERGING_THRESHOLD);
+	}
+
+	/**
+	 * Creates a new state backend that stores its checkpoint data in the file system and location
+	 * defined by the given URI.
+	 *
+	 * <p>State that is larger than the file state size threshold, but not larger than the file
+	 * merging threshold, is not written to a file of its own. Instead, the states of all tasks
+	 * on a TaskManager are appended to files shared between them, which reduces the number of
+	 * files created per checkpoint. A shared file is deleted once no retained checkpoint refers
+	 * to any of its states any more. This applies to the key/value state snapshots and to
+	 * {@link #checkpointStateSerializable(Serializable, long, long) serializable state}, whose
+	 * handles report the shared files to the checkpoint.
+	 *
+	 * @param checkpointDataUri The URI describing the filesystem (scheme and optionally authority),
+	 *                          and the path to the checkpoint data directory.
+	 * @param fileStateSizeThreshold State up to this size will be stored as part of the metadata,
+	 *                             rather than in files
+	 * @param fileMergingThreshold State up to this size will be written to shared files. Zero
+	 *                             disables the merging of state into shared files.
+	 *
+	 * @throws IOException Thrown, if no file system can be found for the scheme in the URI.
+	 */
+	public FsStateBackend(URI checkpointDataUri, int fileStateSizeThreshold, int fileMergingThreshold) throws IOException {
 		if (fileStateSizeThreshold < 0) {
 			throw new IllegalArgumentException("The threshold for file state size must be zero or larger.");
 		}
@@ -170,7 +208,16 @@ public class FsStateBackend extends AbstractStateBackend {
 			throw new IllegalArgumentException("The threshold for file state size cannot be larger than " +
 				MAX_FILE_STATE_THRESHOLD);
 		}
+		if (fileMergingThreshold != 0 && fileMergingThreshold < fileStateSizeThreshold) {
+			throw new IllegalArgumentException("The threshold for file merging must be zero (disabled) " +
+				"or not smaller than the threshold for file state size.");
+		}
+		if (fileMergingThreshold > MAX_FILE_STATE_THRESHOLD) {
+			throw new IllegalArgumentException("The threshold for file merging cannot be larger than " +
+				MAX_FILE_STATE_THRESHOLD);
+		}
 		this.fileStateThreshold = fileStateSizeThreshold;
+		this.fileMergingThreshold = fileMergingThreshold;
 		
 		this.basePath = validateAndNormalizeUri(checkpointDataUri);
 		this.filesystem = this.basePath.getFileSystem();
@@ -208,6 +255,17 @@ public class FsStateBackend extends AbstractStateBackend {
 		return fileStateThreshold;
 	}
 
+	/**
+	 * Gets the size (in bytes) up to which state is written to files shared between the tasks
+	 * of a TaskManager, rather than to a file of its own. Zero means that state is never
+	 * written to shared files.
+	 *
+	 * @return The threshold (in bytes) up to which state is written to shared files.
+	 */
+	public int getFileMergingThreshold() {
+		return fileMergingThreshold;
+	}
+
 	/**
 	 * Checks whether this state backend is initialized. Note that initialization does not carry
 	 * across serialization. After each serialization, the state backend needs to be initialized.
@@ -268,7 +326,14 @@ public class FsStateBackend extends AbstractStateBackend {
 	}
 
 	@Override
-	public void close() throws Exception {}
+	public void close() throws Exception {
+		synchronized (this) {
+			if (fileMerger != null) {
+				fileMerger.release();
+				fileMerger = null;
+			}
+		}
+	}
 
 	// ------------------------------------------------------------------------
 	//  state backend operations
@@ -276,6 +341,9 @@ public class FsStateBackend extends AbstractStateBackend {
 
 	@Override
 	public <N, V> ValueState<V> createValueState(TypeSerializer<N> namespaceSerializer, ValueStateDescriptor<V> stateDesc) throws Exception {
+		if (stateDesc.isTtlEnabled()) {
+			return new FsTtlValueState<>(this, keySerializer, namespaceSerializer, stateDesc);
+		}
 		return new FsValueState<>(this, keySerializer, namespaceSerializer, stateDesc);
 	}
 
@@ -295,17 +363,23 @@ public class FsStateBackend extends AbstractStateBackend {
 		return new FsFoldingState<>(this, keySerializer, namespaceSerializer, stateDesc);
 	}
 
+	@Override
+	public <N, UK, UV> MapState<UK, UV> createMapState(TypeSerializer<N> namespaceSerializer, MapStateDescriptor<UK, UV> stateDesc) throws Exception {
+		return new FsMapState<>(this, keySerializer, namespaceSerializer, stateDesc);
+	}
+
+	@Override
+	public <N, IN, ACC, OUT> AggregatingState<IN, OUT> createAggregatingState(TypeSerializer<N> namespaceSerializer, AggregatingStateDescriptor<IN, ACC, OUT> stateDesc) throws Exception {
+		return new FsAggregatingState<>(this, keySerializer, namespaceSerializer, stateDesc);
+	}
+
 	@Override
 	public <S extends Serializable> StateHandle<S> checkpointStateSerializable(
 			S state, long checkpointID, long timestamp) throws Exception
 	{
 		checkFileSystemInitialized();
 		
-		Path checkpointDir = createCheckpointDirPath(checkpointID);
-		int bufferSize = Math.max(DEFAULT_WRITE_BUFFER_SIZE, fileStateThreshold);
-
-		FsCheckpointStateOutputStream stream = 
-			new FsCheckpointStateOutputStream(checkpointDir, filesystem, bufferSize, fileStateThreshold);
+		FsCheckpointStateOutputStream stream = createMergingCheckpointStateOutputStream(checkpointID, timestamp);
 		
 		try (ObjectOutputStream os = new ObjectOutputStream(stream)) {
 			os.writeObject(state);
@@ -313,15 +387,48 @@ public class FsStateBackend extends AbstractStateBackend {
 		}
 	}
 
+	/**
+	 * Creates a stream whose state is never appended to a shared file, because the handles of
+	 * these streams may be kept anywhere in a snapshot, where the shared file is not reported
+	 * to the checkpoint.
+	 */
 	@Override
 	public FsCheckpointStateOutputStream createCheckpointStateOutputStream(long checkpointID, long timestamp) throws Exception {
 		checkFileSystemInitialized();
 
 		Path checkpointDir = createCheckpointDirPath(checkpointID);
 		int bufferSize = Math.max(DEFAULT_WRITE_BUFFER_SIZE, fileStateThreshold);
+
 		return new FsCheckpointStateOutputStream(checkpointDir, filesystem, bufferSize, fileStateThreshold);
 	}
 
+	/**
+	 * Creates a stream whose state is appended to a file shared with other tasks, if it is not
+	 * larger than the file merging threshold. The shared file is only deleted by the
+	 * {@link org.apache.flink.runtime.state.SharedStateRegistry}, so the caller must report the
+	 * shared states of the returned handle as part of its snapshot, see
+	 * {@link org.apache.flink.runtime.state.CompositeStateHandle}.
+	 *
+	 * @param checkpointID The ID of the checkpoint that the state belongs to.
+	 * @param timestamp The timestamp of the checkpoint.
+	 * @return The stream to write the state to.
+	 * @throws Exception Thrown, if the stream cannot be created.
+	 */
+	public FsCheckpointStateOutputStream createMergingCheckpointStateOutputStream(long checkpointID, long timestamp) throws Exception {
+		// checkpoint 0 is used by streams outside of checkpoints, which must have files of their own
+		if (fileMergingThreshold == 0 || checkpointID == 0) {
+			return createCheckpointStateOutputStream(checkpointID, timestamp);
+		}
+
+		checkFileSystemInitialized();
+
+		Path checkpointDir = createCheckpointDirPath(checkpointID);
+		int bufferSize = Math.max(DEFAULT_WRITE_BUFFER_SIZE, Math.max(fileStateThreshold, fileMergingThreshold));
+
+		return new FsCheckpointStateOutputStream(checkpointDir, filesystem, bufferSize, fileStateThreshold,
+			getFileMerger(), checkpointID, fileMergingThreshold);
+	}
+
 	// ------------------------------------------------------------------------
 	//  utilities
 	// ------------------------------------------------------------------------
@@ -332,6 +439,13 @@ public class FsStateBackend extends AbstractStateBackend {
 		}
 	}
 
+	private synchronized CheckpointFileMerger getFileMerger() {
+		if (fileMerger == null) {
+			fileMerger = CheckpointFileMerger.acquire(checkpointDirectory, filesystem);
+		}
+		return fileMerger;
+	}
+
 	private Path createCheckpointDirPath(long checkpointID) {
 		return new Path(checkpointDirectory, "chk-" + checkpointID);
 	}
@@ -403,7 +517,9 @@ public class FsStateBackend extends AbstractStateBackend {
 
 	/**
 	 * A CheckpointStateOutputStream that writes into a file and returns the path to that file upon
-	 * closing.
+	 * closing. Small states are kept in memory and returned as part of the state handle, and
+	 * states up to the merging threshold are appended to a file shared with other tasks, if a
+	 * {@link CheckpointFileMerger} is given.
 	 */
 	public static final class FsCheckpointStateOutputStream extends CheckpointStateOutputStream {
 
@@ -411,6 +527,9 @@ public class FsStateBackend extends AbstractStateBackend {
 
 		private int pos;
 
+		/** The number of bytes that have been written to the output stream already */
+		private long flushedBytes;
+
 		private FSDataOutputStream outStream;
 		
 		private final int localStateThreshold;
@@ -418,6 +537,13 @@ public class FsStateBackend extends AbstractStateBackend {
 		private final Path basePath;
 
 		private final FileSystem fs;
+
+		/** The merger for states up to the merging threshold, or null, if states are not merged */
+		private final CheckpointFileMerger fileMerger;
+
+		private final long checkpointId;
+
+		private final int mergingThreshold;
 		
 		private Path statePath;
 		
@@ -427,7 +553,15 @@ public class FsStateBackend extends AbstractStateBackend {
 					Path basePath, FileSystem fs,
 					int bufferSize, int localStateThreshold)
 		{
-			if (bufferSize < localStateThreshold) {
+			this(basePath, fs, bufferSize, localStateThreshold, null, 0L, 0);
+		}
+
+		public FsCheckpointStateOutputStream(
+					Path basePath, FileSystem fs,
+					int bufferSize, int localStateThreshold,
+					CheckpointFileMerger fileMerger, long checkpointId, int mergingThreshold)
+		{
+			if (bufferSize < localStateThreshold || bufferSize < mergingThreshold) {
 				throw new IllegalArgumentException();
 			}
 			
@@ -435,6 +569,9 @@ public class FsStateBackend extends AbstractStateBackend {
 			this.fs = fs;
 			this.writeBuffer = new byte[bufferSize];
 			this.localStateThreshold = localStateThreshold;
+			this.fileMerger = fileMerger;
+			this.checkpointId = checkpointId;
+			this.mergingThreshold = mergingThreshold;
 		}
 
 
@@ -471,9 +608,20 @@ public class FsStateBackend extends AbstractStateBackend {
 				flush();
 				// write the bytes directly
 				outStream.write(b, off, len);
+				flushedBytes += len;
 			}
 		}
 
+		/**
+		 * Gets the current position in the stream, i.e. the number of bytes that have been
+		 * written to the stream so far.
+		 *
+		 * @return The current position in the stream.
+		 */
+		public long getPos() {
+			return flushedBytes + pos;
+		}
+
 		@Override
 		public void flush() throws IOException {
 			if (!closed) {
@@ -502,6 +650,7 @@ public class FsStateBackend extends AbstractStateBackend {
 				// now flush
 				if (pos > 0) {
 					outStream.write(writeBuffer, 0, pos);
+					flushedBytes += pos;
 					pos = 0;
 				}
 			}
@@ -542,6 +691,10 @@ public class FsStateBackend extends AbstractStateBackend {
 						byte[] bytes = Arrays.copyOf(writeBuffer, pos);
 						return new ByteStreamStateHandle(bytes);
 					}
+					else if (outStream == null && fileMerger != null && pos <= mergingThreshold) {
+						closed = true;
+						return fileMerger.write(checkpointId, basePath, writeBuffer, 0, pos);
+					}
 					else {
 						flush();
 						outStream.close();
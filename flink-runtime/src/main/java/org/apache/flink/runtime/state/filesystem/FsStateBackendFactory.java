@@ -35,6 +35,10 @@ public class FsStateBackendFactory implements StateBackendFactory<FsStateBackend
 	/** The key under which the config stores the threshold for state to be store in memory,
 	 * rather than in files */
 	public static final String MEMORY_THRESHOLD_CONF_KEY = "state.backend.fs.memory-threshold";
+
+	/** The key under which the config stores the threshold for state to be stored in files
+	 * shared between the tasks of a TaskManager, rather than in files of its own */
+	public static final String FILE_MERGING_THRESHOLD_CONF_KEY = "state.backend.fs.file-merging-threshold";
 	
 	
 	@Override
@@ -42,6 +46,8 @@ public class FsStateBackendFactory implements StateBackendFactory<FsStateBackend
 		String checkpointDirURI = config.getString(CHECKPOINT_DIRECTORY_URI_CONF_KEY, null);
 		int memoryThreshold = config.getInteger(
 			MEMORY_THRESHOLD_CONF_KEY, FsStateBackend.DEFAULT_FILE_STATE_THRESHOLD);
+		int fileMergingThreshold = config.getInteger(
+			FILE_MERGING_THRESHOLD_CONF_KEY, FsStateBackend.DEFAULT_FILE_MERGING_THRESHOLD);
 		
 		if (checkpointDirURI == null) {
 			throw new IllegalConfigurationException(
@@ -51,7 +57,7 @@ public class FsStateBackendFactory implements StateBackendFactory<FsStateBackend
 		
 		try {
 			Path path = new Path(checkpointDirURI);
-			return new FsStateBackend(path.toUri(), memoryThreshold);
+			return new FsStateBackend(path.toUri(), memoryThreshold, fileMergingThreshold);
 		}
 		catch (IllegalArgumentException e) {
 			throw new Exception("Cannot initialize File System State Backend with URI '"
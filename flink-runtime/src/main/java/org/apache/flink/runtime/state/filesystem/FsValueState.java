@@ -21,12 +21,11 @@ package org.apache.flink.runtime.state.filesystem;
 import org.apache.flink.api.common.state.ValueState;
 import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
-import org.apache.flink.core.fs.Path;
+import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
 import org.apache.flink.runtime.state.KvState;
 import org.apache.flink.runtime.state.KvStateSnapshot;
-
-import java.util.HashMap;
-import java.util.Map;
+import org.apache.flink.runtime.state.StateTable;
+import org.apache.flink.runtime.state.StreamStateHandle;
 
 /**
  * Heap-backed partitioned {@link org.apache.flink.api.common.state.ValueState} that is snapshotted
@@ -65,27 +64,21 @@ public class FsValueState<K, N, V>
 	 * @param namespaceSerializer The serializer for the namespace.
 	 * @param stateDesc The state identifier for the state. This contains name
 	 *                           and can create a default state value.
-	 * @param state The map of key/value pairs to initialize the state with.
+	 * @param state The table of key/value pairs to initialize the state with.
 	 * @param backend The file system state backend backing snapshots of this state
 	 */
 	public FsValueState(FsStateBackend backend,
 		TypeSerializer<K> keySerializer,
 		TypeSerializer<N> namespaceSerializer,
 		ValueStateDescriptor<V> stateDesc,
-		HashMap<N, Map<K, V>> state) {
+		StateTable<K, N, V> state) {
 		super(backend, keySerializer, namespaceSerializer, stateDesc.getSerializer(), stateDesc, state);
 	}
 
 	@Override
 	public V value() {
-		if (currentNSState == null) {
-			currentNSState = state.get(currentNamespace);
-		}
-		if (currentNSState != null) {
-			V value = currentNSState.get(currentKey);
-			return value != null ? value : stateDesc.getDefaultValue();
-		}
-		return stateDesc.getDefaultValue();
+		V value = stateTable.get(currentKey, currentNamespace);
+		return value != null ? value : stateDesc.getDefaultValue();
 	}
 
 	@Override
@@ -99,17 +92,12 @@ public class FsValueState<K, N, V>
 			return;
 		}
 
-		if (currentNSState == null) {
-			currentNSState = new HashMap<>();
-			state.put(currentNamespace, currentNSState);
-		}
-
-		currentNSState.put(currentKey, value);
+		stateTable.put(currentKey, currentNamespace, value);
 	}
 
 	@Override
-	public KvStateSnapshot<K, N, ValueState<V>, ValueStateDescriptor<V>, FsStateBackend> createHeapSnapshot(Path filePath) {
-		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, filePath);
+	public KvStateSnapshot<K, N, ValueState<V>, ValueStateDescriptor<V>, FsStateBackend> createHeapSnapshot(KeyGroupRangeOffsets keyGroupRangeOffsets, StreamStateHandle stateHandle) {
+		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, keyGroupRangeOffsets, stateHandle);
 	}
 
 	public static class Snapshot<K, N, V> extends AbstractFsStateSnapshot<K, N, V, ValueState<V>, ValueStateDescriptor<V>> {
@@ -119,13 +107,14 @@ public class FsValueState<K, N, V>
 			TypeSerializer<N> namespaceSerializer,
 			TypeSerializer<V> stateSerializer,
 			ValueStateDescriptor<V> stateDescs,
-			Path filePath) {
-			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, filePath);
+			KeyGroupRangeOffsets keyGroupRangeOffsets,
+			StreamStateHandle stateHandle) {
+			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, keyGroupRangeOffsets, stateHandle);
 		}
 
 		@Override
-		public KvState<K, N, ValueState<V>, ValueStateDescriptor<V>, FsStateBackend> createFsState(FsStateBackend backend, HashMap<N, Map<K, V>> stateMap) {
-			return new FsValueState<>(backend, keySerializer, namespaceSerializer, stateDesc, stateMap);
+		public KvState<K, N, ValueState<V>, ValueStateDescriptor<V>, FsStateBackend> createFsState(FsStateBackend backend, StateTable<K, N, V> stateTable) {
+			return new FsValueState<>(backend, keySerializer, namespaceSerializer, stateDesc, stateTable);
 		}
 	}
 }
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.managed;
+
+import org.apache.flink.api.common.state.State;
+import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.runtime.state.AbstractStateBackend.CheckpointStateOutputView;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KvState;
+import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.StateHandle;
+import org.apache.flink.runtime.util.DataInputDeserializer;
+import org.apache.flink.runtime.util.DataOutputSerializer;
+import org.apache.flink.util.MathUtils;
+
+import java.io.IOException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Base class for {@link State} implementations that store their serialized key/value pairs in a
+ * {@link SegmentStateTable} of a {@link ManagedMemoryStateBackend}.
+ *
+ * <p>The key of an entry is the serialized key followed by the serialized namespace. Snapshots
+ * write the memory segments of the table as they are.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <S> The type of {@link State}.
+ * @param <SD> The type of {@link StateDescriptor}.
+ */
+public abstract class AbstractManagedState<K, N, S extends State, SD extends StateDescriptor<S, ?>>
+		implements KvState<K, N, S, SD, ManagedMemoryStateBackend>, State {
+
+	/** The backend that created this state */
+	protected final ManagedMemoryStateBackend backend;
+
+	/** The serializer for the keys */
+	protected final TypeSerializer<K> keySerializer;
+
+	/** The serializer for the namespace */
+	protected final TypeSerializer<N> namespaceSerializer;
+
+	/** This holds the name of the state and can create an initial default value for the state. */
+	protected final SD stateDesc;
+
+	/** The serialized key/value pairs of all key groups and namespaces of this state */
+	protected final SegmentStateTable table;
+
+	/** The current key, which the next value methods will refer to */
+	protected K currentKey;
+
+	/** The current namespace, which the access methods will refer to. */
+	protected N currentNamespace;
+
+	/** The serialized key and namespace of the current access */
+	private final DataOutputSerializer keyOut = new DataOutputSerializer(64);
+
+	/** The hash code of the serialized key and namespace of the current access */
+	private int keyHashCode;
+
+	/** Reusable buffer for serialized values */
+	protected final DataOutputSerializer valueOut = new DataOutputSerializer(64);
+
+	/** Reusable view for deserializing values */
+	private final DataInputDeserializer valueIn = new DataInputDeserializer();
+
+	protected AbstractManagedState(ManagedMemoryStateBackend backend,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			SD stateDesc,
+			SegmentStateTable table) {
+
+		this.backend = requireNonNull(backend);
+		this.keySerializer = requireNonNull(keySerializer);
+		this.namespaceSerializer = requireNonNull(namespaceSerializer);
+		this.stateDesc = requireNonNull(stateDesc);
+		this.table = requireNonNull(table);
+	}
+
+	// ------------------------------------------------------------------------
+
+	@Override
+	public void setCurrentKey(K currentKey) {
+		this.currentKey = currentKey;
+	}
+
+	@Override
+	public void setCurrentNamespace(N namespace) {
+		this.currentNamespace = namespace;
+	}
+
+	@Override
+	public void clear() {
+		try {
+			writeKeyAndNamespace();
+			table.remove(keyHashCode, keyOut.getByteArray(), keyOut.length());
+		} catch (IOException e) {
+			throw new RuntimeException("Error while removing entry from the managed memory state.", e);
+		}
+	}
+
+	/**
+	 * Returns the serialized value of the current key and namespace, or null if there is none.
+	 */
+	protected byte[] getValueBytes() throws IOException {
+		writeKeyAndNamespace();
+		return table.get(keyHashCode, keyOut.getByteArray(), keyOut.length());
+	}
+
+	/**
+	 * Returns the value of the current key and namespace, or null if there is none.
+	 */
+	protected <T> T getValue(TypeSerializer<T> serializer) throws IOException {
+		byte[] bytes = getValueBytes();
+		if (bytes == null) {
+			return null;
+		}
+
+		valueIn.setBuffer(bytes, 0, bytes.length);
+		return serializer.deserialize(valueIn);
+	}
+
+	/**
+	 * Replaces the value of the current key and namespace.
+	 */
+	protected <T> void putValue(T value, TypeSerializer<T> serializer) throws IOException {
+		valueOut.clear();
+		serializer.serialize(value, valueOut);
+
+		writeKeyAndNamespace();
+		table.put(keyHashCode, getCurrentKeyGroup(), keyOut.getByteArray(), keyOut.length(), valueOut.getByteArray(), valueOut.length());
+	}
+
+	/**
+	 * Appends the serialized value to the value of the current key and namespace.
+	 */
+	protected <T> void appendValue(T value, TypeSerializer<T> serializer) throws IOException {
+		valueOut.clear();
+		serializer.serialize(value, valueOut);
+
+		writeKeyAndNamespace();
+		table.append(keyHashCode, getCurrentKeyGroup(), keyOut.getByteArray(), keyOut.length(), valueOut.getByteArray(), valueOut.length());
+	}
+
+	private void writeKeyAndNamespace() throws IOException {
+		if (currentKey == null) {
+			throw new RuntimeException("No key available.");
+		}
+
+		keyOut.clear();
+		keySerializer.serialize(currentKey, keyOut);
+		namespaceSerializer.serialize(currentNamespace, keyOut);
+
+		final byte[] bytes = keyOut.getByteArray();
+		final int length = keyOut.length();
+		int hashCode = 1;
+		for (int i = 0; i < length; i++) {
+			hashCode = 31 * hashCode + bytes[i];
+		}
+		keyHashCode = MathUtils.jenkinsHash(hashCode);
+	}
+
+	private int getCurrentKeyGroup() {
+		return KeyGroupRangeAssignment.assignToKeyGroup(currentKey, backend.getNumberOfKeyGroups());
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns the number of key/value pairs of all key groups and namespaces of this state.
+	 */
+	public int size() {
+		return table.size();
+	}
+
+	SegmentStateTable getTable() {
+		return table;
+	}
+
+	@Override
+	public byte[] getSerializedValue(byte[] serializedKeyAndNamespace) throws Exception {
+		// the segments of the table are reorganized by the task without synchronization
+		throw new UnsupportedOperationException("The states of the " +
+			ManagedMemoryStateBackend.class.getSimpleName() + " cannot be queried.");
+	}
+
+	@Override
+	public KvStateSnapshot<K, N, S, SD, ManagedMemoryStateBackend> snapshot(long checkpointId, long timestamp) throws Exception {
+		CheckpointStateOutputView out = backend.createCheckpointStateOutputView(checkpointId, timestamp);
+		try {
+			table.writeSnapshot(out);
+		} catch (Exception e) {
+			out.close();
+			throw e;
+		}
+
+		StateHandle<DataInputView> handle = out.closeAndGetHandle();
+		return new ManagedStateSnapshot<>(keySerializer, namespaceSerializer, stateDesc, handle);
+	}
+
+	@Override
+	public void dispose() {
+		table.dispose();
+	}
+}
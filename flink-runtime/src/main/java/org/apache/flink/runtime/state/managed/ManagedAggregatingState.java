@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.managed;
+
+import org.apache.flink.api.common.functions.AggregateFunction;
+import org.apache.flink.api.common.state.AggregatingState;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.InternalAggregatingState;
+
+import java.io.IOException;
+
+/**
+ * {@link AggregatingState} implementation that stores the accumulators in the managed memory of
+ * a {@link ManagedMemoryStateBackend}.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <IN> The type of the values that are aggregated into the state.
+ * @param <ACC> The type of the accumulator.
+ * @param <OUT> The type of the result of the aggregation.
+ */
+public class ManagedAggregatingState<K, N, IN, ACC, OUT>
+	extends AbstractManagedState<K, N, AggregatingState<IN, OUT>, AggregatingStateDescriptor<IN, ACC, OUT>>
+	implements InternalAggregatingState<IN, ACC, OUT> {
+
+	/** Serializer for the accumulators */
+	private final TypeSerializer<ACC> accumulatorSerializer;
+
+	/** User-specified aggregate function */
+	private final AggregateFunction<IN, ACC, OUT> aggFunction;
+
+	public ManagedAggregatingState(ManagedMemoryStateBackend backend,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			AggregatingStateDescriptor<IN, ACC, OUT> stateDesc,
+			SegmentStateTable table) {
+		super(backend, keySerializer, namespaceSerializer, stateDesc, table);
+		this.accumulatorSerializer = stateDesc.getSerializer();
+		this.aggFunction = stateDesc.getAggregateFunction();
+	}
+
+	@Override
+	public OUT get() throws IOException {
+		ACC accumulator = getValue(accumulatorSerializer);
+		return accumulator == null ? null : aggFunction.getResult(accumulator);
+	}
+
+	@Override
+	public void add(IN value) throws IOException {
+		ACC accumulator = getValue(accumulatorSerializer);
+		if (accumulator == null) {
+			accumulator = aggFunction.createAccumulator();
+		}
+		putValue(aggFunction.add(value, accumulator), accumulatorSerializer);
+	}
+
+	@Override
+	public ACC getAccumulator() throws IOException {
+		return getValue(accumulatorSerializer);
+	}
+
+	@Override
+	public void setAccumulator(ACC accumulator) throws IOException {
+		putValue(accumulator, accumulatorSerializer);
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.managed;
+
+import org.apache.flink.api.common.functions.FoldFunction;
+import org.apache.flink.api.common.state.FoldingState;
+import org.apache.flink.api.common.state.FoldingStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+
+/**
+ * {@link FoldingState} implementation that stores state in the managed memory of a
+ * {@link ManagedMemoryStateBackend}.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <T> The type of the values that can be folded into the state.
+ * @param <ACC> The type of the value in the folding state.
+ */
+public class ManagedFoldingState<K, N, T, ACC>
+	extends AbstractManagedState<K, N, FoldingState<T, ACC>, FoldingStateDescriptor<T, ACC>>
+	implements FoldingState<T, ACC> {
+
+	/** Serializer for the values */
+	private final TypeSerializer<ACC> valueSerializer;
+
+	/** User-specified fold function */
+	private final FoldFunction<T, ACC> foldFunction;
+
+	public ManagedFoldingState(ManagedMemoryStateBackend backend,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			FoldingStateDescriptor<T, ACC> stateDesc,
+			SegmentStateTable table) {
+		super(backend, keySerializer, namespaceSerializer, stateDesc, table);
+		this.valueSerializer = stateDesc.getSerializer();
+		this.foldFunction = stateDesc.getFoldFunction();
+	}
+
+	@Override
+	public ACC get() throws Exception {
+		ACC value = getValue(valueSerializer);
+		return value != null ? value : stateDesc.getDefaultValue();
+	}
+
+	@Override
+	public void add(T value) throws Exception {
+		ACC currentValue = getValue(valueSerializer);
+		if (currentValue == null) {
+			currentValue = stateDesc.getDefaultValue();
+		}
+		putValue(foldFunction.fold(currentValue, value), valueSerializer);
+	}
+}
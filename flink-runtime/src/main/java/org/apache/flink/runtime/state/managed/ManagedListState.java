@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.managed;
+
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link ListState} implementation that stores state in the managed memory of a
+ * {@link ManagedMemoryStateBackend}.
+ *
+ * <p>The value of an entry is the sequence of the serialized elements. Adding an element appends
+ * its bytes to the value, without deserializing the previous elements.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <V> The type of the values in the list state.
+ */
+public class ManagedListState<K, N, V>
+	extends AbstractManagedState<K, N, ListState<V>, ListStateDescriptor<V>>
+	implements ListState<V> {
+
+	/** Serializer for the values */
+	private final TypeSerializer<V> valueSerializer;
+
+	public ManagedListState(ManagedMemoryStateBackend backend,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			ListStateDescriptor<V> stateDesc,
+			SegmentStateTable table) {
+		super(backend, keySerializer, namespaceSerializer, stateDesc, table);
+		this.valueSerializer = stateDesc.getSerializer();
+	}
+
+	@Override
+	public Iterable<V> get() throws IOException {
+		byte[] bytes = getValueBytes();
+		if (bytes == null) {
+			return Collections.emptyList();
+		}
+
+		ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
+		DataInputViewStreamWrapper in = new DataInputViewStreamWrapper(bais);
+
+		List<V> result = new ArrayList<>();
+		while (bais.available() > 0) {
+			result.add(valueSerializer.deserialize(in));
+		}
+		return result;
+	}
+
+	@Override
+	public void add(V value) throws IOException {
+		appendValue(value, valueSerializer);
+	}
+}
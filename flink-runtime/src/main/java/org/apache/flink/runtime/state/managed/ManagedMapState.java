@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.managed;
+
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * {@link MapState} implementation that stores state in the managed memory of a
+ * {@link ManagedMemoryStateBackend}.
+ *
+ * <p>The user map of a key and namespace is stored as a single serialized value. The iterables
+ * returned by this state are read-only views of the user map at the time of the call, only the
+ * iterator writes removals through to the state.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <UK> The type of the keys in the map state.
+ * @param <UV> The type of the values in the map state.
+ */
+public class ManagedMapState<K, N, UK, UV>
+	extends AbstractManagedState<K, N, MapState<UK, UV>, MapStateDescriptor<UK, UV>>
+	implements MapState<UK, UV> {
+
+	/** Serializer for the user maps */
+	private final TypeSerializer<Map<UK, UV>> mapSerializer;
+
+	public ManagedMapState(ManagedMemoryStateBackend backend,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			MapStateDescriptor<UK, UV> stateDesc,
+			SegmentStateTable table) {
+		super(backend, keySerializer, namespaceSerializer, stateDesc, table);
+		this.mapSerializer = stateDesc.getSerializer();
+	}
+
+	@Override
+	public UV get(UK userKey) throws IOException {
+		Map<UK, UV> userMap = getValue(mapSerializer);
+		return userMap == null ? null : userMap.get(userKey);
+	}
+
+	@Override
+	public void put(UK userKey, UV userValue) throws IOException {
+		Map<UK, UV> userMap = getOrCreateUserMap();
+		userMap.put(userKey, userValue);
+		putValue(userMap, mapSerializer);
+	}
+
+	@Override
+	public void putAll(Map<UK, UV> value) throws IOException {
+		Map<UK, UV> userMap = getOrCreateUserMap();
+		userMap.putAll(value);
+		putValue(userMap, mapSerializer);
+	}
+
+	@Override
+	public void remove(UK userKey) throws IOException {
+		Map<UK, UV> userMap = getValue(mapSerializer);
+		if (userMap == null || !userMap.containsKey(userKey)) {
+			return;
+		}
+
+		userMap.remove(userKey);
+		if (userMap.isEmpty()) {
+			clear();
+		} else {
+			putValue(userMap, mapSerializer);
+		}
+	}
+
+	@Override
+	public boolean contains(UK userKey) throws IOException {
+		Map<UK, UV> userMap = getValue(mapSerializer);
+		return userMap != null && userMap.containsKey(userKey);
+	}
+
+	@Override
+	public Iterable<Map.Entry<UK, UV>> entries() throws IOException {
+		return getUserMapView().entrySet();
+	}
+
+	@Override
+	public Iterable<UK> keys() throws IOException {
+		return getUserMapView().keySet();
+	}
+
+	@Override
+	public Iterable<UV> values() throws IOException {
+		return getUserMapView().values();
+	}
+
+	@Override
+	public Iterator<Map.Entry<UK, UV>> iterator() throws IOException {
+		final Iterator<Map.Entry<UK, UV>> entries = getUserMapView().entrySet().iterator();
+
+		return new Iterator<Map.Entry<UK, UV>>() {
+
+			private Map.Entry<UK, UV> current;
+
+			@Override
+			public boolean hasNext() {
+				return entries.hasNext();
+			}
+
+			@Override
+			public Map.Entry<UK, UV> next() {
+				current = entries.next();
+				return current;
+			}
+
+			@Override
+			public void remove() {
+				if (current == null) {
+					throw new IllegalStateException("The remove operation must be called after a valid next operation.");
+				}
+
+				try {
+					ManagedMapState.this.remove(current.getKey());
+				} catch (IOException e) {
+					throw new RuntimeException("Error while removing entry from the map state.", e);
+				}
+				current = null;
+			}
+		};
+	}
+
+	private Map<UK, UV> getOrCreateUserMap() throws IOException {
+		Map<UK, UV> userMap = getValue(mapSerializer);
+		return userMap != null ? userMap : new HashMap<UK, UV>();
+	}
+
+	private Map<UK, UV> getUserMapView() throws IOException {
+		Map<UK, UV> userMap = getValue(mapSerializer);
+		return userMap == null ? Collections.<UK, UV>emptyMap() : Collections.unmodifiableMap(userMap);
+	}
+}
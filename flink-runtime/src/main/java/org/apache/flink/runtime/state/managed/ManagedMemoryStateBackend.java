@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.managed;
+
+import org.apache.flink.api.common.state.AggregatingState;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
+import org.apache.flink.api.common.state.FoldingState;
+import org.apache.flink.api.common.state.FoldingStateDescriptor;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.ReducingState;
+import org.apache.flink.api.common.state.ReducingStateDescriptor;
+import org.apache.flink.api.common.state.State;
+import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.execution.Environment;
+import org.apache.flink.runtime.state.AbstractStateBackend;
+import org.apache.flink.runtime.state.KvState;
+import org.apache.flink.runtime.state.StateHandle;
+import org.apache.flink.runtime.state.StateMigrationException;
+import org.apache.flink.runtime.state.memory.MemoryStateBackend;
+
+import java.io.Serializable;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link AbstractStateBackend} that stores the partitioned state as serialized bytes in the
+ * managed memory of the task manager. The key/value pairs of every state are held in a
+ * {@link SegmentStateTable}, which allocates its memory segments from the {@link
+ * org.apache.flink.runtime.memory.MemoryManager} and spills the least recently used partitions
+ * to the temp directories of the {@link org.apache.flink.runtime.io.disk.iomanager.IOManager}
+ * when the memory of the backend is exhausted.
+ *
+ * <p>Compared to the heap backends, the state does not put objects on the heap that the garbage
+ * collector needs to trace, and compared to the RocksDB backend, accessing the state needs no
+ * native calls. Snapshots write the memory segments of the tables as they are, without
+ * serializing the individual key/value pairs. Snapshots are taken synchronously.
+ *
+ * <p>The checkpoint data and the non-partitioned state are stored by another state backend, by
+ * default the {@link MemoryStateBackend}.
+ */
+public class ManagedMemoryStateBackend extends AbstractStateBackend {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The default amount of managed memory for the partitioned state of an operator (64 MiBytes) */
+	public static final long DEFAULT_MEMORY_SIZE = 64 * 1024 * 1024;
+
+	/** The state backend that stores the checkpoint data and the non-partitioned state */
+	private final AbstractStateBackend checkpointStreamBackend;
+
+	/** The maximum amount of managed memory for the partitioned state of an operator */
+	private final long memorySize;
+
+	/** The memory of the partitioned state, created when the backend is initialized */
+	private transient StateMemoryPool memoryPool;
+
+	/**
+	 * Creates a new backend that stores its checkpoints in the memory of the job manager and
+	 * uses the default memory size.
+	 */
+	public ManagedMemoryStateBackend() {
+		this(new MemoryStateBackend());
+	}
+
+	/**
+	 * Creates a new backend that stores its checkpoints with the given state backend and uses
+	 * the default memory size.
+	 *
+	 * @param checkpointStreamBackend The backend that stores the checkpoint data.
+	 */
+	public ManagedMemoryStateBackend(AbstractStateBackend checkpointStreamBackend) {
+		this(checkpointStreamBackend, DEFAULT_MEMORY_SIZE);
+	}
+
+	/**
+	 * Creates a new backend that stores its checkpoints with the given state backend.
+	 *
+	 * @param checkpointStreamBackend The backend that stores the checkpoint data.
+	 * @param memorySize The maximum number of bytes of managed memory that the partitioned
+	 *                   state of an operator may occupy before partitions are spilled.
+	 */
+	public ManagedMemoryStateBackend(AbstractStateBackend checkpointStreamBackend, long memorySize) {
+		this.checkpointStreamBackend = requireNonNull(checkpointStreamBackend);
+		this.memorySize = memorySize;
+	}
+
+	// ------------------------------------------------------------------------
+	//  initialization and cleanup
+	// ------------------------------------------------------------------------
+
+	@Override
+	public void initializeForJob(Environment env,
+			String operatorIdentifier,
+			TypeSerializer<?> keySerializer) throws Exception {
+
+		super.initializeForJob(env, operatorIdentifier, keySerializer);
+		checkpointStreamBackend.initializeForJob(env, operatorIdentifier, keySerializer);
+
+		if (memoryPool != null) {
+			memoryPool.release();
+		}
+		memoryPool = new StateMemoryPool(env.getMemoryManager(), env.getIOManager(), memorySize);
+	}
+
+	@Override
+	public void disposeAllStateForCurrentJob() throws Exception {
+		checkpointStreamBackend.disposeAllStateForCurrentJob();
+	}
+
+	@Override
+	public void dispose() {
+		// disposing the states returns the memory segments of their tables to the pool
+		super.dispose();
+		checkpointStreamBackend.dispose();
+
+		if (memoryPool != null) {
+			memoryPool.release();
+			memoryPool = null;
+		}
+	}
+
+	@Override
+	public void close() throws Exception {
+		checkpointStreamBackend.close();
+	}
+
+	// ------------------------------------------------------------------------
+	//  State backend operations
+	// ------------------------------------------------------------------------
+
+	@Override
+	protected <N, T> ValueState<T> createValueState(TypeSerializer<N> namespaceSerializer, ValueStateDescriptor<T> stateDesc) throws Exception {
+		if (stateDesc.isTtlEnabled()) {
+			return new ManagedTtlValueState<>(this, keySerializer, namespaceSerializer, stateDesc, createStateTable());
+		}
+		return new ManagedValueState<>(this, keySerializer, namespaceSerializer, stateDesc, createStateTable());
+	}
+
+	@Override
+	protected <N, T> ListState<T> createListState(TypeSerializer<N> namespaceSerializer, ListStateDescriptor<T> stateDesc) throws Exception {
+		return new ManagedListState<>(this, keySerializer, namespaceSerializer, stateDesc, createStateTable());
+	}
+
+	@Override
+	protected <N, T> ReducingState<T> createReducingState(TypeSerializer<N> namespaceSerializer, ReducingStateDescriptor<T> stateDesc) throws Exception {
+		return new ManagedReducingState<>(this, keySerializer, namespaceSerializer, stateDesc, createStateTable());
+	}
+
+	@Override
+	protected <N, T, ACC> FoldingState<T, ACC> createFoldingState(TypeSerializer<N> namespaceSerializer, FoldingStateDescriptor<T, ACC> stateDesc) throws Exception {
+		return new ManagedFoldingState<>(this, keySerializer, namespaceSerializer, stateDesc, createStateTable());
+	}
+
+	@Override
+	protected <N, UK, UV> MapState<UK, UV> createMapState(TypeSerializer<N> namespaceSerializer, MapStateDescriptor<UK, UV> stateDesc) throws Exception {
+		return new ManagedMapState<>(this, keySerializer, namespaceSerializer, stateDesc, createStateTable());
+	}
+
+	@Override
+	protected <N, IN, ACC, OUT> AggregatingState<IN, OUT> createAggregatingState(TypeSerializer<N> namespaceSerializer, AggregatingStateDescriptor<IN, ACC, OUT> stateDesc) throws Exception {
+		return new ManagedAggregatingState<>(this, keySerializer, namespaceSerializer, stateDesc, createStateTable());
+	}
+
+	/**
+	 * Creates an empty table in the managed memory of this backend.
+	 */
+	SegmentStateTable createStateTable() {
+		if (memoryPool == null) {
+			throw new IllegalStateException("The state backend has not been initialized.");
+		}
+		return new SegmentStateTable(memoryPool);
+	}
+
+	/**
+	 * Creates the state of the given descriptor on top of a restored table.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	<K, N, S extends State, SD extends StateDescriptor<S, ?>> KvState<K, N, S, SD, ManagedMemoryStateBackend> createKvState(
+			TypeSerializer<N> namespaceSerializer,
+			SD stateDesc,
+			SegmentStateTable table) {
+
+		final TypeSerializer<K> keySerializer = (TypeSerializer<K>) this.keySerializer;
+		final AbstractManagedState state;
+
+		if (stateDesc instanceof ValueStateDescriptor) {
+			ValueStateDescriptor valueStateDesc = (ValueStateDescriptor) stateDesc;
+			state = valueStateDesc.isTtlEnabled()
+				? new ManagedTtlValueState(this, keySerializer, namespaceSerializer, valueStateDesc, table)
+				: new ManagedValueState(this, keySerializer, namespaceSerializer, valueStateDesc, table);
+		} else if (stateDesc instanceof ListStateDescriptor) {
+			state = new ManagedListState(this, keySerializer, namespaceSerializer, (ListStateDescriptor) stateDesc, table);
+		} else if (stateDesc instanceof ReducingStateDescriptor) {
+			state = new ManagedReducingState(this, keySerializer, namespaceSerializer, (ReducingStateDescriptor) stateDesc, table);
+		} else if (stateDesc instanceof FoldingStateDescriptor) {
+			state = new ManagedFoldingState(this, keySerializer, namespaceSerializer, (FoldingStateDescriptor) stateDesc, table);
+		} else if (stateDesc instanceof MapStateDescriptor) {
+			state = new ManagedMapState(this, keySerializer, namespaceSerializer, (MapStateDescriptor) stateDesc, table);
+		} else if (stateDesc instanceof AggregatingStateDescriptor) {
+			state = new ManagedAggregatingState(this, keySerializer, namespaceSerializer, (AggregatingStateDescriptor) stateDesc, table);
+		} else {
+			table.dispose();
+			throw new IllegalArgumentException("Unsupported state descriptor " + stateDesc);
+		}
+		return state;
+	}
+
+	@Override
+	protected void mergeKeyGroupsState(KvState<?, ?, ?, ?, ?> target, KvState<?, ?, ?, ?, ?> source) throws Exception {
+		if (target instanceof AbstractManagedState && source instanceof AbstractManagedState) {
+			((AbstractManagedState<?, ?, ?, ?>) target).getTable().addAll(((AbstractManagedState<?, ?, ?, ?>) source).getTable());
+		} else {
+			super.mergeKeyGroupsState(target, source);
+		}
+	}
+
+	/**
+	 * The states of this backend keep their values serialized in the managed memory, so they are
+	 * not migrated to a new serializer. A restored state can only be accessed with a serializer
+	 * that reads the restored values as they are.
+	 */
+	@Override
+	protected <N, S extends State> KvState<?, ?, ?, ?, ?> migrateRestoredState(
+			KvState<?, ?, ?, ?, ?> restored,
+			TypeSerializer<N> namespaceSerializer,
+			StateDescriptor<S, ?> stateDescriptor) throws Exception {
+
+		if (restored instanceof AbstractManagedState &&
+				checkStateCompatibility(((AbstractManagedState<?, ?, ?, ?>) restored).stateDesc, stateDescriptor).isRequiresMigration()) {
+			throw new StateMigrationException("The state " + stateDescriptor.getName() + " has to be migrated " +
+				"to the serializer " + stateDescriptor.getSerializer() + ", which the managed memory state " +
+				"backend does not support.");
+		}
+		return super.migrateRestoredState(restored, namespaceSerializer, stateDescriptor);
+	}
+
+	/**
+	 * Gets the memory of the partitioned state, or null if the backend is not initialized.
+	 */
+	public StateMemoryPool getMemoryPool() {
+		return memoryPool;
+	}
+
+	// ------------------------------------------------------------------------
+	//  Non-partitioned state
+	// ------------------------------------------------------------------------
+
+	@Override
+	public CheckpointStateOutputStream createCheckpointStateOutputStream(long checkpointID, long timestamp) throws Exception {
+		return checkpointStreamBackend.createCheckpointStateOutputStream(checkpointID, timestamp);
+	}
+
+	@Override
+	public <S extends Serializable> StateHandle<S> checkpointStateSerializable(S state, long checkpointID, long timestamp) throws Exception {
+		return checkpointStreamBackend.checkpointStateSerializable(state, checkpointID, timestamp);
+	}
+
+	// ------------------------------------------------------------------------
+	//  Utilities
+	// ------------------------------------------------------------------------
+
+	@Override
+	public String toString() {
+		return "ManagedMemoryStateBackend (data in managed memory / checkpoints with " + checkpointStreamBackend + ")";
+	}
+}
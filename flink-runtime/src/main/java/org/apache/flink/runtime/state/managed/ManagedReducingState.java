@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.managed;
+
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.state.ReducingState;
+import org.apache.flink.api.common.state.ReducingStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+
+/**
+ * {@link ReducingState} implementation that stores state in the managed memory of a
+ * {@link ManagedMemoryStateBackend}.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <V> The type of value that the state state stores.
+ */
+public class ManagedReducingState<K, N, V>
+	extends AbstractManagedState<K, N, ReducingState<V>, ReducingStateDescriptor<V>>
+	implements ReducingState<V> {
+
+	/** Serializer for the values */
+	private final TypeSerializer<V> valueSerializer;
+
+	/** User-specified reduce function */
+	private final ReduceFunction<V> reduceFunction;
+
+	public ManagedReducingState(ManagedMemoryStateBackend backend,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			ReducingStateDescriptor<V> stateDesc,
+			SegmentStateTable table) {
+		super(backend, keySerializer, namespaceSerializer, stateDesc, table);
+		this.valueSerializer = stateDesc.getSerializer();
+		this.reduceFunction = stateDesc.getReduceFunction();
+	}
+
+	@Override
+	public V get() throws Exception {
+		return getValue(valueSerializer);
+	}
+
+	@Override
+	public void add(V value) throws Exception {
+		V currentValue = getValue(valueSerializer);
+		putValue(currentValue == null ? value : reduceFunction.reduce(currentValue, value), valueSerializer);
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.managed;
+
+import org.apache.flink.api.common.state.State;
+import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.runtime.state.KvState;
+import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.StateHandle;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A snapshot of a {@link AbstractManagedState}, which holds the memory segments of its
+ * {@link SegmentStateTable} as they were written by {@link SegmentStateTable#writeSnapshot}.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <S> The type of {@link State}.
+ * @param <SD> The type of {@link StateDescriptor}.
+ */
+public class ManagedStateSnapshot<K, N, S extends State, SD extends StateDescriptor<S, ?>>
+		implements KvStateSnapshot<K, N, S, SD, ManagedMemoryStateBackend> {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Key Serializer */
+	private final TypeSerializer<K> keySerializer;
+
+	/** Namespace Serializer */
+	private final TypeSerializer<N> namespaceSerializer;
+
+	/** StateDescriptor, for sanity checks */
+	private final SD stateDesc;
+
+	/** The handle to the written table */
+	private final StateHandle<DataInputView> tableHandle;
+
+	public ManagedStateSnapshot(TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			SD stateDesc,
+			StateHandle<DataInputView> tableHandle) {
+
+		this.keySerializer = requireNonNull(keySerializer);
+		this.namespaceSerializer = requireNonNull(namespaceSerializer);
+		this.stateDesc = requireNonNull(stateDesc);
+		this.tableHandle = requireNonNull(tableHandle);
+	}
+
+	@Override
+	public KvState<K, N, S, SD, ManagedMemoryStateBackend> restoreState(
+			ManagedMemoryStateBackend stateBackend,
+			TypeSerializer<K> keySerializer,
+			ClassLoader classLoader,
+			long recoveryTimestamp) throws Exception {
+
+		// validity checks
+		if (!this.keySerializer.equals(keySerializer)) {
+			throw new IllegalArgumentException(
+				"Cannot restore the state from the snapshot with the given serializers. " +
+					"State (K/V) was serialized with " +
+					"(" + this.keySerializer + ") " +
+					"now is (" + keySerializer + ")");
+		}
+
+		SegmentStateTable table = stateBackend.createStateTable();
+		try {
+			table.readSnapshot(tableHandle.getState(classLoader), stateBackend.getKeyGroupRange());
+		} catch (Exception e) {
+			table.dispose();
+			throw new Exception("Failed to restore the managed memory state " + stateDesc.getName(), e);
+		}
+
+		return stateBackend.createKvState(namespaceSerializer, stateDesc, table);
+	}
+
+	@Override
+	public void discardState() throws Exception {
+		tableHandle.discardState();
+	}
+
+	@Override
+	public long getStateSize() throws Exception {
+		return tableHandle.getStateSize();
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.managed;
+
+import org.apache.flink.api.common.state.StateTtlConfig;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.TtlTimeProvider;
+import org.apache.flink.runtime.state.TtlValue;
+import org.apache.flink.runtime.state.TtlValueSerializer;
+
+import java.io.IOException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link ValueState} implementation with time-to-live that stores state in the managed memory
+ * of a {@link ManagedMemoryStateBackend}. Every value is stored together with the time of its
+ * last access, which precedes the serialized value.
+ *
+ * <p>Expired values are never returned and are removed when they are accessed.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <V> The type of the value.
+ */
+public class ManagedTtlValueState<K, N, V>
+	extends AbstractManagedState<K, N, ValueState<V>, ValueStateDescriptor<V>>
+	implements ValueState<V> {
+
+	/** Serializer for the values together with the time of their last access */
+	private final TtlValueSerializer<V> valueSerializer;
+
+	/** The time-to-live configuration of the state */
+	private final StateTtlConfig ttlConfig;
+
+	/** The clock for the time-to-live */
+	private final TtlTimeProvider timeProvider;
+
+	public ManagedTtlValueState(ManagedMemoryStateBackend backend,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			ValueStateDescriptor<V> stateDesc,
+			SegmentStateTable table) {
+		super(backend, keySerializer, namespaceSerializer, stateDesc, table);
+		this.valueSerializer = new TtlValueSerializer<>(stateDesc.getSerializer());
+		this.ttlConfig = requireNonNull(stateDesc.getTtlConfig());
+		this.timeProvider = backend.getTtlTimeProvider();
+	}
+
+	@Override
+	public V value() throws IOException {
+		final long now = timeProvider.currentTimestamp();
+
+		TtlValue<V> ttlValue = getValue(valueSerializer);
+		if (ttlValue == null) {
+			return stateDesc.getDefaultValue();
+		}
+
+		if (ttlValue.isExpired(ttlConfig, now)) {
+			clear();
+			return stateDesc.getDefaultValue();
+		}
+
+		if (ttlConfig.getUpdateType() == StateTtlConfig.UpdateType.OnReadAndWrite) {
+			// the value keeps its length, so it is updated in place
+			putValue(new TtlValue<>(ttlValue.getValue(), now), valueSerializer);
+		}
+		return ttlValue.getValue();
+	}
+
+	@Override
+	public void update(V value) throws IOException {
+		if (value == null) {
+			clear();
+			return;
+		}
+		putValue(new TtlValue<>(value, timeProvider.currentTimestamp()), valueSerializer);
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.managed;
+
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+
+import java.io.IOException;
+
+/**
+ * {@link ValueState} implementation that stores state in the managed memory of a
+ * {@link ManagedMemoryStateBackend}.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <V> The type of the value.
+ */
+public class ManagedValueState<K, N, V>
+	extends AbstractManagedState<K, N, ValueState<V>, ValueStateDescriptor<V>>
+	implements ValueState<V> {
+
+	/** Serializer for the values */
+	private final TypeSerializer<V> valueSerializer;
+
+	public ManagedValueState(ManagedMemoryStateBackend backend,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			ValueStateDescriptor<V> stateDesc,
+			SegmentStateTable table) {
+		super(backend, keySerializer, namespaceSerializer, stateDesc, table);
+		this.valueSerializer = stateDesc.getSerializer();
+	}
+
+	@Override
+	public V value() throws IOException {
+		V value = getValue(valueSerializer);
+		return value != null ? value : stateDesc.getDefaultValue();
+	}
+
+	@Override
+	public void update(V value) throws IOException {
+		if (value == null) {
+			clear();
+			return;
+		}
+		putValue(value, valueSerializer);
+	}
+}
@@ -0,0 +1,865 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.managed;
+
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.runtime.io.disk.iomanager.BlockChannelReader;
+import org.apache.flink.runtime.io.disk.iomanager.BlockChannelWriter;
+import org.apache.flink.runtime.io.disk.iomanager.FileIOChannel;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.state.KeyGroupRange;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A hash table for the serialized keys and values of a partitioned state, which stores its
+ * records in {@link MemorySegment}s of a {@link StateMemoryPool}.
+ *
+ * <p>Similar to the {@link org.apache.flink.runtime.operators.hash.CompactingHashTable}, the
+ * table is divided into partitions by the hash code of the keys. Every partition appends its
+ * records to its memory segments and links the records of a bucket through a pointer in the
+ * record header. Values of the same length are updated in place; other updates and removals
+ * leave the old record behind, which is reclaimed by compacting the partition in place. The
+ * heads of the bucket chains are kept in a primitive array per partition, which the garbage
+ * collector does not need to traverse.
+ *
+ * <p>When the memory pool runs out of memory, it compacts partitions or spills the least
+ * recently used partitions to files of the {@link IOManager}. Spilled partitions are read back
+ * when they are accessed again.
+ *
+ * <p>A record consists of a header, the key, and the value:
+ * <pre>
+ * +--------------+-----------+----------------+------------------+--------------------+-----+-------+
+ * | next pointer | hash code | key group      | key length       | value length       | key | value |
+ * | (8 bytes)    | (4 bytes) | (4 bytes, -1   | (4 bytes)        | (4 bytes)          |     |       |
+ * |              |           |  if removed)   |                  |                    |     |       |
+ * +--------------+-----------+----------------+------------------+--------------------+-----+-------+
+ * </pre>
+ * The header of a record never spans two memory segments. If the space left in a memory
+ * segment is too small for a header, the record starts in the next segment.
+ *
+ * <p>The table is not thread safe.
+ */
+public class SegmentStateTable {
+
+	/** The number of partitions of the table, a power of two */
+	static final int NUM_PARTITIONS = 16;
+
+	/** The number of bits of the hash code that select the partition */
+	private static final int NUM_PARTITION_BITS = 4;
+
+	private static final int NEXT_POINTER_OFFSET = 0;
+
+	private static final int HASH_CODE_OFFSET = 8;
+
+	private static final int KEY_GROUP_OFFSET = 12;
+
+	private static final int KEY_LENGTH_OFFSET = 16;
+
+	private static final int VALUE_LENGTH_OFFSET = 20;
+
+	/** The length of the record header */
+	static final int HEADER_LENGTH = 24;
+
+	/** The key group of records that have been removed or replaced */
+	private static final int REMOVED = -1;
+
+	/** The pointer that terminates a bucket chain */
+	private static final long NULL_POINTER = -1L;
+
+	/** The number of buckets of a partition when the first record is inserted */
+	private static final int INITIAL_NUM_BUCKETS = 64;
+
+	/** The average number of records per bucket at which the buckets are doubled */
+	private static final int MAX_RECORDS_PER_BUCKET = 2;
+
+	// ------------------------------------------------------------------------
+
+	/** The pool that provides the memory segments */
+	private final StateMemoryPool memoryPool;
+
+	/** The size of the memory segments, a power of two */
+	private final int segmentSize;
+
+	private final int segmentSizeBits;
+
+	private final int segmentSizeMask;
+
+	/** The partitions of the table */
+	final Partition[] partitions;
+
+	/** Scratch memory to copy bytes within and between memory segments */
+	private final byte[] copyBuffer = new byte[4096];
+
+	private boolean disposed;
+
+	public SegmentStateTable(StateMemoryPool memoryPool) {
+		this.memoryPool = memoryPool;
+		this.segmentSize = memoryPool.getSegmentSize();
+		this.segmentSizeBits = Integer.numberOfTrailingZeros(segmentSize);
+		this.segmentSizeMask = segmentSize - 1;
+
+		if (Integer.bitCount(segmentSize) != 1 || segmentSize < 2 * HEADER_LENGTH) {
+			throw new IllegalArgumentException("The segment size must be a power of two.");
+		}
+
+		this.partitions = new Partition[NUM_PARTITIONS];
+		for (int i = 0; i < NUM_PARTITIONS; i++) {
+			partitions[i] = new Partition();
+		}
+
+		memoryPool.register(this);
+	}
+
+	// ------------------------------------------------------------------------
+	//  Access
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns a copy of the value of the given key, or {@code null} if the table does not
+	 * contain the key.
+	 */
+	public byte[] get(int hashCode, byte[] key, int keyLength) throws IOException {
+		final Partition partition = pin(hashCode);
+		try {
+			long pointer = partition.find(hashCode, key, keyLength);
+			return pointer == NULL_POINTER ? null : partition.readValue(pointer);
+		} finally {
+			partition.pinned = false;
+		}
+	}
+
+	/**
+	 * Inserts the given value for the given key, replacing the previous value.
+	 */
+	public void put(int hashCode, int keyGroup, byte[] key, int keyLength, byte[] value, int valueLength) throws IOException {
+		final Partition partition = pin(hashCode);
+		try {
+			long pointer = partition.find(hashCode, key, keyLength);
+			if (pointer != NULL_POINTER && partition.getInt(pointer + VALUE_LENGTH_OFFSET) == valueLength) {
+				partition.write(pointer + HEADER_LENGTH + keyLength, value, 0, valueLength);
+			} else {
+				partition.reserve(HEADER_LENGTH + keyLength + valueLength);
+				long record = partition.append(hashCode, keyGroup, key, keyLength, NULL_POINTER, 0, value, valueLength);
+				partition.insert(record, hashCode, key, keyLength);
+			}
+		} finally {
+			partition.pinned = false;
+		}
+	}
+
+	/**
+	 * Appends the given bytes to the value of the given key, or inserts them as the value if the
+	 * table does not contain the key.
+	 */
+	public void append(int hashCode, int keyGroup, byte[] key, int keyLength, byte[] value, int valueLength) throws IOException {
+		final Partition partition = pin(hashCode);
+		try {
+			long pointer = partition.find(hashCode, key, keyLength);
+			int previousLength = pointer == NULL_POINTER ? 0 : partition.getInt(pointer + VALUE_LENGTH_OFFSET);
+
+			// reserving may compact the partition and move the previous value
+			partition.reserve(HEADER_LENGTH + keyLength + previousLength + valueLength);
+			pointer = partition.find(hashCode, key, keyLength);
+			long previousValue = pointer == NULL_POINTER ? NULL_POINTER : pointer + HEADER_LENGTH + keyLength;
+
+			long record = partition.append(hashCode, keyGroup, key, keyLength, previousValue, previousLength, value, valueLength);
+			partition.insert(record, hashCode, key, keyLength);
+		} finally {
+			partition.pinned = false;
+		}
+	}
+
+	/**
+	 * Removes the given key from the table.
+	 *
+	 * @return True, if the table contained the key.
+	 */
+	public boolean remove(int hashCode, byte[] key, int keyLength) throws IOException {
+		final Partition partition = pin(hashCode);
+		try {
+			return partition.remove(hashCode, key, keyLength);
+		} finally {
+			partition.pinned = false;
+		}
+	}
+
+	/**
+	 * Returns the number of key/value pairs in the table, including spilled partitions.
+	 */
+	public int size() {
+		int size = 0;
+		for (Partition partition : partitions) {
+			size += partition.numRecords;
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of memory segments that the table currently holds.
+	 */
+	public int getNumberOfSegments() {
+		int numSegments = 0;
+		for (Partition partition : partitions) {
+			numSegments += partition.segments.size();
+		}
+		return numSegments;
+	}
+
+	/**
+	 * Returns the number of partitions that are currently spilled.
+	 */
+	public int getNumberOfSpilledPartitions() {
+		int numSpilled = 0;
+		for (Partition partition : partitions) {
+			if (partition.spillChannel != null) {
+				numSpilled++;
+			}
+		}
+		return numSpilled;
+	}
+
+	/**
+	 * Returns the partition of the given hash code, reading it back if it has been spilled, and
+	 * protects it from being compacted or spilled until it is unpinned again.
+	 */
+	private Partition pin(int hashCode) throws IOException {
+		if (disposed) {
+			throw new IllegalStateException("The state table has been disposed.");
+		}
+
+		Partition partition = partitions[hashCode >>> (32 - NUM_PARTITION_BITS)];
+		partition.pinned = true;
+		partition.lastAccess = memoryPool.nextAccessCount();
+
+		if (partition.spillChannel != null) {
+			try {
+				partition.readBack();
+			} catch (IOException e) {
+				partition.pinned = false;
+				throw e;
+			}
+		}
+		return partition;
+	}
+
+	// ------------------------------------------------------------------------
+	//  Snapshots
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Writes the records of all partitions to the given output. The memory segments of the
+	 * partitions, and the blocks of the spilled partitions, are written as they are, without
+	 * deserializing the individual records. Partitions with many removed records are compacted
+	 * before.
+	 */
+	public void writeSnapshot(DataOutputView out) throws IOException {
+		out.writeInt(segmentSize);
+
+		MemorySegment readBuffer = null;
+
+		for (Partition partition : partitions) {
+			if (partition.spillChannel == null && partition.getGarbageBytes() > partition.appendOffset / 4) {
+				partition.compact();
+			}
+
+			out.writeLong(partition.appendOffset);
+
+			if (partition.spillChannel == null) {
+				long remaining = partition.appendOffset;
+				for (MemorySegment segment : partition.segments) {
+					int length = (int) Math.min(segmentSize, remaining);
+					segment.get(out, 0, length);
+					remaining -= length;
+				}
+			} else {
+				if (readBuffer == null) {
+					readBuffer = MemorySegmentFactory.allocateUnpooledSegment(segmentSize);
+				}
+
+				BlockChannelReader<MemorySegment> reader = memoryPool.getIOManager().createBlockChannelReader(partition.spillChannel);
+				try {
+					long remaining = partition.appendOffset;
+					for (int i = 0; i < partition.numSpilledSegments; i++) {
+						reader.readBlock(readBuffer);
+						MemorySegment segment = reader.getNextReturnedBlock();
+						int length = (int) Math.min(segmentSize, remaining);
+						segment.get(out, 0, length);
+						remaining -= length;
+					}
+				} finally {
+					reader.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Inserts the records of a snapshot, which was written by {@link #writeSnapshot(DataOutputView)},
+	 * into this table. Only the records of the given key groups are inserted.
+	 */
+	public void readSnapshot(DataInputView in, KeyGroupRange keyGroupRange) throws IOException {
+		final int snapshotSegmentSize = in.readInt();
+		final int snapshotSegmentSizeMask = snapshotSegmentSize - 1;
+
+		byte[] key = new byte[64];
+		byte[] value = new byte[64];
+
+		for (int p = 0; p < NUM_PARTITIONS; p++) {
+			final long numBytes = in.readLong();
+			long position = 0;
+
+			while (position < numBytes) {
+				// skip the end of the segment that was too small for the header
+				if ((position & snapshotSegmentSizeMask) > snapshotSegmentSize - HEADER_LENGTH) {
+					long next = (position | snapshotSegmentSizeMask) + 1;
+					in.skipBytesToRead((int) (next - position));
+					position = next;
+					continue;
+				}
+
+				in.readLong();
+				int hashCode = in.readInt();
+				int keyGroup = in.readInt();
+				int keyLength = in.readInt();
+				int valueLength = in.readInt();
+
+				if (key.length < keyLength) {
+					key = new byte[Math.max(keyLength, 2 * key.length)];
+				}
+				if (value.length < valueLength) {
+					value = new byte[Math.max(valueLength, 2 * value.length)];
+				}
+				in.readFully(key, 0, keyLength);
+				in.readFully(value, 0, valueLength);
+
+				if (keyGroup != REMOVED && keyGroupRange.contains(keyGroup)) {
+					put(hashCode, keyGroup, key, keyLength, value, valueLength);
+				}
+
+				position += HEADER_LENGTH + keyLength + valueLength;
+			}
+		}
+	}
+
+	/**
+	 * Inserts all records of the given table into this table and disposes the given table.
+	 */
+	public void addAll(SegmentStateTable other) throws IOException {
+		for (Partition partition : other.partitions) {
+			if (partition.numRecords == 0) {
+				continue;
+			}
+
+			partition.pinned = true;
+			if (partition.spillChannel != null) {
+				partition.readBack();
+			}
+
+			byte[] key = new byte[64];
+			byte[] value = new byte[64];
+
+			for (long pointer = 0; pointer < partition.appendOffset; pointer = partition.next(pointer)) {
+				int keyGroup = partition.getInt(pointer + KEY_GROUP_OFFSET);
+				if (keyGroup == REMOVED) {
+					continue;
+				}
+
+				int keyLength = partition.getInt(pointer + KEY_LENGTH_OFFSET);
+				int valueLength = partition.getInt(pointer + VALUE_LENGTH_OFFSET);
+				if (key.length < keyLength) {
+					key = new byte[keyLength];
+				}
+				if (value.length < valueLength) {
+					value = new byte[valueLength];
+				}
+				partition.read(pointer + HEADER_LENGTH, key, 0, keyLength);
+				partition.read(pointer + HEADER_LENGTH + keyLength, value, 0, valueLength);
+
+				put(partition.getInt(pointer + HASH_CODE_OFFSET), keyGroup, key, keyLength, value, valueLength);
+			}
+
+			// the records have been copied, free the memory for the next partition
+			partition.release();
+		}
+
+		other.dispose();
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Releases all memory segments and deletes the files of the spilled partitions.
+	 */
+	public void dispose() {
+		if (!disposed) {
+			disposed = true;
+			for (Partition partition : partitions) {
+				partition.release();
+			}
+			memoryPool.unregister(this);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A partition of the table, which holds its records in a sequence of memory segments.
+	 * Positions in the sequence are used as pointers to the records.
+	 */
+	final class Partition {
+
+		/** The memory segments that hold the records */
+		final ArrayList<MemorySegment> segments = new ArrayList<>();
+
+		/** The heads of the bucket chains, null if the partition is empty or spilled */
+		private long[] buckets;
+
+		/** The number of buckets, which is preserved while the partition is spilled */
+		private int numBuckets = INITIAL_NUM_BUCKETS;
+
+		/** The position at which the next record is appended */
+		long appendOffset;
+
+		/** The number of bytes of the records that have not been removed */
+		private long liveBytes;
+
+		/** The number of records that have not been removed */
+		int numRecords;
+
+		/** The access count of the memory pool when the partition was last accessed */
+		long lastAccess;
+
+		/** Whether the partition is currently accessed and may not be compacted or spilled */
+		boolean pinned;
+
+		/** The file that holds the partition, if it has been spilled */
+		FileIOChannel.ID spillChannel;
+
+		private int numSpilledSegments;
+
+		long getGarbageBytes() {
+			return appendOffset - liveBytes;
+		}
+
+		// --------------------------------------------------------------------
+		//  Hash index
+		// --------------------------------------------------------------------
+
+		long find(int hashCode, byte[] key, int keyLength) {
+			if (buckets == null) {
+				return NULL_POINTER;
+			}
+
+			long pointer = buckets[hashCode & (buckets.length - 1)];
+			while (pointer != NULL_POINTER) {
+				if (matches(pointer, hashCode, key, keyLength)) {
+					return pointer;
+				}
+				pointer = getLong(pointer + NEXT_POINTER_OFFSET);
+			}
+			return NULL_POINTER;
+		}
+
+		/**
+		 * Links the given new record into its bucket chain, replacing the previous record
+		 * of the same key.
+		 */
+		void insert(long record, int hashCode, byte[] key, int keyLength) {
+			if (buckets == null) {
+				buckets = new long[numBuckets];
+				Arrays.fill(buckets, NULL_POINTER);
+			}
+
+			final int bucket = hashCode & (buckets.length - 1);
+
+			long previous = NULL_POINTER;
+			long pointer = buckets[bucket];
+			while (pointer != NULL_POINTER) {
+				long next = getLong(pointer + NEXT_POINTER_OFFSET);
+				if (matches(pointer, hashCode, key, keyLength)) {
+					putLong(record + NEXT_POINTER_OFFSET, next);
+					link(bucket, previous, record);
+					markRemoved(pointer);
+					return;
+				}
+				previous = pointer;
+				pointer = next;
+			}
+
+			putLong(record + NEXT_POINTER_OFFSET, buckets[bucket]);
+			buckets[bucket] = record;
+			numRecords++;
+
+			if (numRecords > MAX_RECORDS_PER_BUCKET * buckets.length) {
+				numBuckets = 2 * buckets.length;
+				rebuildIndex();
+			}
+		}
+
+		boolean remove(int hashCode, byte[] key, int keyLength) {
+			if (buckets == null) {
+				return false;
+			}
+
+			final int bucket = hashCode & (buckets.length - 1);
+
+			long previous = NULL_POINTER;
+			long pointer = buckets[bucket];
+			while (pointer != NULL_POINTER) {
+				long next = getLong(pointer + NEXT_POINTER_OFFSET);
+				if (matches(pointer, hashCode, key, keyLength)) {
+					link(bucket, previous, next);
+					markRemoved(pointer);
+					numRecords--;
+
+					if (numRecords == 0) {
+						// give the memory back right away
+						release();
+					}
+					return true;
+				}
+				previous = pointer;
+				pointer = next;
+			}
+			return false;
+		}
+
+		private void link(int bucket, long previous, long pointer) {
+			if (previous == NULL_POINTER) {
+				buckets[bucket] = pointer;
+			} else {
+				putLong(previous + NEXT_POINTER_OFFSET, pointer);
+			}
+		}
+
+		private void markRemoved(long pointer) {
+			putInt(pointer + KEY_GROUP_OFFSET, REMOVED);
+			liveBytes -= recordLength(pointer);
+		}
+
+		private boolean matches(long pointer, int hashCode, byte[] key, int keyLength) {
+			if (getInt(pointer + HASH_CODE_OFFSET) != hashCode || getInt(pointer + KEY_LENGTH_OFFSET) != keyLength) {
+				return false;
+			}
+
+			long position = pointer + HEADER_LENGTH;
+			for (int i = 0; i < keyLength; i++, position++) {
+				if (segments.get((int) (position >>> segmentSizeBits)).get((int) (position & segmentSizeMask)) != key[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Links all records, which have not been removed, into a new hash index.
+		 */
+		private void rebuildIndex() {
+			buckets = new long[numBuckets];
+			Arrays.fill(buckets, NULL_POINTER);
+
+			for (long pointer = 0; pointer < appendOffset; pointer = next(pointer)) {
+				if (getInt(pointer + KEY_GROUP_OFFSET) != REMOVED) {
+					int bucket = getInt(pointer + HASH_CODE_OFFSET) & (numBuckets - 1);
+					putLong(pointer + NEXT_POINTER_OFFSET, buckets[bucket]);
+					buckets[bucket] = pointer;
+				}
+			}
+		}
+
+		// --------------------------------------------------------------------
+		//  Records
+		// --------------------------------------------------------------------
+
+		/**
+		 * Makes sure that the segments have room for a new record of the given length. If the
+		 * partition has to grow and holds enough removed records, it is compacted first, which
+		 * moves the records of the partition.
+		 */
+		void reserve(int recordLength) throws IOException {
+			long end = align(appendOffset) + recordLength;
+			if (end > ((long) segments.size() << segmentSizeBits) && getGarbageBytes() >= segmentSize) {
+				compact();
+				end = align(appendOffset) + recordLength;
+			}
+
+			while (((long) segments.size() << segmentSizeBits) < end) {
+				segments.add(memoryPool.nextSegment());
+			}
+		}
+
+		/**
+		 * Appends a new record. The value consists of the given number of bytes at the given
+		 * position in this partition, followed by the given bytes.
+		 *
+		 * @return The pointer to the new record.
+		 */
+		long append(int hashCode, int keyGroup, byte[] key, int keyLength,
+				long prefixPosition, int prefixLength, byte[] value, int valueLength) throws IOException {
+
+			final long record = align(appendOffset);
+			final int recordLength = HEADER_LENGTH + keyLength + prefixLength + valueLength;
+			final long end = record + recordLength;
+
+			// memory for the new record, segments are added before any field is modified
+			while (((long) segments.size() << segmentSizeBits) < end) {
+				segments.add(memoryPool.nextSegment());
+			}
+
+			putLong(record + NEXT_POINTER_OFFSET, NULL_POINTER);
+			putInt(record + HASH_CODE_OFFSET, hashCode);
+			putInt(record + KEY_GROUP_OFFSET, keyGroup);
+			putInt(record + KEY_LENGTH_OFFSET, keyLength);
+			putInt(record + VALUE_LENGTH_OFFSET, prefixLength + valueLength);
+
+			long position = record + HEADER_LENGTH;
+			write(position, key, 0, keyLength);
+			position += keyLength;
+			copy(prefixPosition, position, prefixLength);
+			position += prefixLength;
+			write(position, value, 0, valueLength);
+
+			appendOffset = end;
+			liveBytes += recordLength;
+			return record;
+		}
+
+		byte[] readValue(long pointer) {
+			int keyLength = getInt(pointer + KEY_LENGTH_OFFSET);
+			byte[] value = new byte[getInt(pointer + VALUE_LENGTH_OFFSET)];
+			read(pointer + HEADER_LENGTH + keyLength, value, 0, value.length);
+			return value;
+		}
+
+		private int recordLength(long pointer) {
+			return HEADER_LENGTH + getInt(pointer + KEY_LENGTH_OFFSET) + getInt(pointer + VALUE_LENGTH_OFFSET);
+		}
+
+		/**
+		 * Returns the pointer to the record that follows the given record in the segments.
+		 */
+		long next(long pointer) {
+			return align(pointer + recordLength(pointer));
+		}
+
+		/**
+		 * Moves the given position to the next segment, if the rest of the segment is too
+		 * small for a record header.
+		 */
+		private long align(long position) {
+			return (position & segmentSizeMask) > segmentSize - HEADER_LENGTH
+				? (position | segmentSizeMask) + 1
+				: position;
+		}
+
+		// --------------------------------------------------------------------
+		//  Compaction and spilling
+		// --------------------------------------------------------------------
+
+		/**
+		 * Moves all records, which have not been removed, to the front of the segments and
+		 * returns the segments that are no longer needed to the memory pool.
+		 *
+		 * @return The number of segments that were returned to the memory pool.
+		 */
+		int compact() {
+			long target = 0;
+			long source = 0;
+
+			while (source < appendOffset) {
+				long next = next(source);
+
+				if (getInt(source + KEY_GROUP_OFFSET) != REMOVED) {
+					target = align(target);
+					int length = recordLength(source);
+					if (target != source) {
+						// the target is never behind the source, so copying front to back is safe
+						copy(source, target, length);
+					}
+					target += length;
+				}
+				source = next;
+			}
+
+			appendOffset = target;
+
+			int numRequired = (int) ((target + segmentSizeMask) >>> segmentSizeBits);
+			int numReleased = 0;
+			while (segments.size() > numRequired) {
+				memoryPool.returnSegment(segments.remove(segments.size() - 1));
+				numReleased++;
+			}
+
+			rebuildIndex();
+
+			// the remaining alignment gaps cannot be reclaimed and do not count as garbage
+			liveBytes = appendOffset;
+			return numReleased;
+		}
+
+		/**
+		 * Writes the segments of the partition to a file and returns them to the memory pool.
+		 */
+		void spill(IOManager ioManager) throws IOException {
+			FileIOChannel.ID channel = ioManager.createChannel();
+			BlockChannelWriter<MemorySegment> writer = ioManager.createBlockChannelWriter(channel);
+
+			try {
+				for (MemorySegment segment : segments) {
+					writer.writeBlock(segment);
+				}
+				for (int i = 0; i < segments.size(); i++) {
+					memoryPool.returnSegment(writer.getNextReturnedBlock());
+				}
+			} finally {
+				writer.close();
+			}
+
+			spillChannel = channel;
+			numSpilledSegments = segments.size();
+			segments.clear();
+			buckets = null;
+		}
+
+		/**
+		 * Reads a spilled partition back into memory segments.
+		 */
+		void readBack() throws IOException {
+			ArrayList<MemorySegment> targetSegments = new ArrayList<>(numSpilledSegments);
+			try {
+				for (int i = 0; i < numSpilledSegments; i++) {
+					targetSegments.add(memoryPool.nextSegment());
+				}
+			} catch (IOException e) {
+				for (MemorySegment segment : targetSegments) {
+					memoryPool.returnSegment(segment);
+				}
+				throw e;
+			}
+
+			BlockChannelReader<MemorySegment> reader = memoryPool.getIOManager().createBlockChannelReader(spillChannel);
+			try {
+				for (MemorySegment segment : targetSegments) {
+					reader.readBlock(segment);
+				}
+				for (int i = 0; i < numSpilledSegments; i++) {
+					segments.add(reader.getNextReturnedBlock());
+				}
+			} catch (IOException e) {
+				reader.close();
+				for (MemorySegment segment : targetSegments) {
+					memoryPool.returnSegment(segment);
+				}
+				segments.clear();
+				throw e;
+			}
+
+			reader.closeAndDelete();
+
+			spillChannel = null;
+			numSpilledSegments = 0;
+			rebuildIndex();
+		}
+
+		/**
+		 * Returns all memory to the memory pool and deletes the spill file.
+		 */
+		void release() {
+			for (MemorySegment segment : segments) {
+				memoryPool.returnSegment(segment);
+			}
+			segments.clear();
+
+			if (spillChannel != null) {
+				try {
+					memoryPool.getIOManager().deleteChannel(spillChannel);
+				} catch (IOException ignored) {
+					// the file is removed with the temp directories of the I/O manager
+				}
+				spillChannel = null;
+				numSpilledSegments = 0;
+			}
+
+			buckets = null;
+			numBuckets = INITIAL_NUM_BUCKETS;
+			appendOffset = 0;
+			liveBytes = 0;
+			numRecords = 0;
+		}
+
+		// --------------------------------------------------------------------
+		//  Access to the segments
+		// --------------------------------------------------------------------
+
+		int getInt(long position) {
+			return segments.get((int) (position >>> segmentSizeBits)).getIntBigEndian((int) (position & segmentSizeMask));
+		}
+
+		private void putInt(long position, int value) {
+			segments.get((int) (position >>> segmentSizeBits)).putIntBigEndian((int) (position & segmentSizeMask), value);
+		}
+
+		private long getLong(long position) {
+			return segments.get((int) (position >>> segmentSizeBits)).getLongBigEndian((int) (position & segmentSizeMask));
+		}
+
+		private void putLong(long position, long value) {
+			segments.get((int) (position >>> segmentSizeBits)).putLongBigEndian((int) (position & segmentSizeMask), value);
+		}
+
+		void read(long position, byte[] target, int offset, int length) {
+			while (length > 0) {
+				int inSegment = (int) (position & segmentSizeMask);
+				int chunk = Math.min(length, segmentSize - inSegment);
+				segments.get((int) (position >>> segmentSizeBits)).get(inSegment, target, offset, chunk);
+				position += chunk;
+				offset += chunk;
+				length -= chunk;
+			}
+		}
+
+		void write(long position, byte[] source, int offset, int length) {
+			while (length > 0) {
+				int inSegment = (int) (position & segmentSizeMask);
+				int chunk = Math.min(length, segmentSize - inSegment);
+				segments.get((int) (position >>> segmentSizeBits)).put(inSegment, source, offset, chunk);
+				position += chunk;
+				offset += chunk;
+				length -= chunk;
+			}
+		}
+
+		private void copy(long source, long target, int length) {
+			while (length > 0) {
+				int chunk = Math.min(length, copyBuffer.length);
+				read(source, copyBuffer, 0, chunk);
+				write(target, copyBuffer, 0, chunk);
+				source += chunk;
+				target += chunk;
+				length -= chunk;
+			}
+		}
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.managed;
+
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.memory.MemoryAllocationException;
+import org.apache.flink.runtime.memory.MemoryManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The memory of the {@link SegmentStateTable}s of a {@link ManagedMemoryStateBackend}. The
+ * pool allocates memory segments from the {@link MemoryManager} of the task manager until its
+ * budget is exhausted. After that, it reclaims memory from the tables by compacting the partition
+ * with the most removed records, or by spilling the least recently used partition to a file of
+ * the {@link IOManager}.
+ *
+ * <p>Without a memory manager, the pool allocates unpooled memory segments, and without an I/O
+ * manager, it cannot spill partitions.
+ */
+public class StateMemoryPool {
+
+	private static final Logger LOG = LoggerFactory.getLogger(StateMemoryPool.class);
+
+	/** The number of pages that are allocated from the memory manager at once */
+	private static final int ALLOCATION_BATCH_SIZE = 8;
+
+	/** The memory manager to allocate the segments from, null to allocate unpooled segments */
+	private final MemoryManager memoryManager;
+
+	/** The I/O manager to spill partitions with, null if partitions cannot be spilled */
+	private final IOManager ioManager;
+
+	/** The size of the memory segments */
+	private final int segmentSize;
+
+	/** The maximum number of memory segments that the pool allocates */
+	private int maxNumSegments;
+
+	/** The number of memory segments that the pool has allocated */
+	private int numAllocatedSegments;
+
+	/** The allocated segments that are not used by a table */
+	private final ArrayList<MemorySegment> freeSegments = new ArrayList<>();
+
+	/** The tables that use the memory of this pool */
+	private final List<SegmentStateTable> tables = new ArrayList<>();
+
+	/** The count of accesses to the tables, to find the least recently used partition */
+	private long accessCount;
+
+	/** The number of partitions that have been spilled */
+	private long numSpilledPartitions;
+
+	/**
+	 * Creates a new memory pool.
+	 *
+	 * @param memoryManager The memory manager to allocate the segments from, or null to
+	 *                      allocate unpooled segments.
+	 * @param ioManager The I/O manager to spill partitions with, or null if partitions may not
+	 *                  be spilled.
+	 * @param memorySize The maximum number of bytes that the pool allocates.
+	 */
+	public StateMemoryPool(MemoryManager memoryManager, IOManager ioManager, long memorySize) {
+		this.memoryManager = memoryManager;
+		this.ioManager = ioManager;
+		this.segmentSize = memoryManager != null ? memoryManager.getPageSize() : MemoryManager.DEFAULT_PAGE_SIZE;
+		this.maxNumSegments = (int) Math.min(Integer.MAX_VALUE, memorySize / segmentSize);
+
+		if (maxNumSegments < 2 * SegmentStateTable.NUM_PARTITIONS) {
+			throw new IllegalArgumentException("The memory size of " + memorySize + " bytes is too small. " +
+				"The state needs at least " + 2 * SegmentStateTable.NUM_PARTITIONS + " pages of " + segmentSize + " bytes.");
+		}
+	}
+
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	public IOManager getIOManager() {
+		return ioManager;
+	}
+
+	/**
+	 * Returns the number of memory segments that have been allocated.
+	 */
+	public int getNumberOfAllocatedSegments() {
+		return numAllocatedSegments;
+	}
+
+	/**
+	 * Returns the number of allocated memory segments that are not used by a table.
+	 */
+	public int getNumberOfFreeSegments() {
+		return freeSegments.size();
+	}
+
+	/**
+	 * Returns the number of partitions that have been spilled since the pool was created.
+	 */
+	public long getNumberOfSpilledPartitions() {
+		return numSpilledPartitions;
+	}
+
+	void register(SegmentStateTable table) {
+		tables.add(table);
+	}
+
+	void unregister(SegmentStateTable table) {
+		tables.remove(table);
+	}
+
+	long nextAccessCount() {
+		return ++accessCount;
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns a free memory segment, reclaiming memory from the tables if the budget of the pool
+	 * is exhausted.
+	 *
+	 * @throws IOException Thrown, if no memory can be reclaimed or spilling fails.
+	 */
+	MemorySegment nextSegment() throws IOException {
+		while (true) {
+			if (!freeSegments.isEmpty()) {
+				return freeSegments.remove(freeSegments.size() - 1);
+			}
+
+			if (numAllocatedSegments < maxNumSegments) {
+				allocateSegments();
+				if (!freeSegments.isEmpty()) {
+					continue;
+				}
+			}
+
+			if (!reclaimMemory()) {
+				throw new IOException("The keyed state does not fit into its " + numAllocatedSegments +
+					" pages of managed memory, even after compacting and spilling all other partitions. " +
+					"Increase the memory size of the state backend.");
+			}
+		}
+	}
+
+	void returnSegment(MemorySegment segment) {
+		freeSegments.add(segment);
+	}
+
+	private void allocateSegments() {
+		int numSegments = Math.min(ALLOCATION_BATCH_SIZE, maxNumSegments - numAllocatedSegments);
+
+		if (memoryManager == null) {
+			for (int i = 0; i < numSegments; i++) {
+				freeSegments.add(MemorySegmentFactory.allocateUnpooledSegment(segmentSize, this));
+			}
+			numAllocatedSegments += numSegments;
+			return;
+		}
+
+		try {
+			memoryManager.allocatePages(this, freeSegments, numSegments);
+			numAllocatedSegments += numSegments;
+		} catch (MemoryAllocationException e) {
+			// the memory manager has less memory than configured, make do with what we have
+			LOG.info("The memory manager has no more pages for the keyed state. " +
+				"The keyed state is limited to {} pages.", numAllocatedSegments);
+			maxNumSegments = numAllocatedSegments;
+		}
+	}
+
+	/**
+	 * Frees memory segments by compacting the partition with the most removed records, or by
+	 * spilling the least recently used partition.
+	 *
+	 * @return True, if memory segments have been returned to the pool.
+	 */
+	private boolean reclaimMemory() throws IOException {
+		SegmentStateTable.Partition mostGarbage = null;
+		SegmentStateTable.Partition leastRecentlyUsed = null;
+
+		for (SegmentStateTable table : tables) {
+			for (SegmentStateTable.Partition partition : table.partitions) {
+				if (partition.pinned || partition.segments.isEmpty()) {
+					continue;
+				}
+
+				if (partition.getGarbageBytes() >= segmentSize &&
+						(mostGarbage == null || partition.getGarbageBytes() > mostGarbage.getGarbageBytes())) {
+					mostGarbage = partition;
+				}
+
+				if (leastRecentlyUsed == null || partition.lastAccess < leastRecentlyUsed.lastAccess) {
+					leastRecentlyUsed = partition;
+				}
+			}
+		}
+
+		if (mostGarbage != null && mostGarbage.compact() > 0) {
+			return true;
+		}
+
+		if (ioManager != null && leastRecentlyUsed != null) {
+			leastRecentlyUsed.spill(ioManager);
+			numSpilledPartitions++;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Releases all memory segments of the pool.
+	 */
+	public void release() {
+		freeSegments.clear();
+		numAllocatedSegments = 0;
+
+		if (memoryManager != null) {
+			memoryManager.releaseAll(this);
+		}
+	}
+}
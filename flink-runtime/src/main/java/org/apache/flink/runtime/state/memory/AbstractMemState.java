@@ -23,15 +23,20 @@ import org.apache.flink.api.common.state.State;
 import org.apache.flink.api.common.state.StateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.runtime.state.AbstractHeapState;
+import org.apache.flink.runtime.state.AsynchronousKvStateSnapshot;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
 import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.StateTable;
+import org.apache.flink.runtime.state.StateTableSnapshot;
 import org.apache.flink.runtime.util.DataOutputSerializer;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Base class for partitioned {@link ListState} implementations that are backed by a regular
  * heap hash map. The concrete implementations define how the state is checkpointed.
+ *
+ * <p>Snapshots are taken as copy-on-write snapshots of the {@link StateTable} and serialized
+ * asynchronously.
  * 
  * @param <K> The type of the key.
  * @param <N> The type of the namespace.
@@ -45,38 +50,71 @@ public abstract class AbstractMemState<K, N, SV, S extends State, SD extends Sta
 	public AbstractMemState(TypeSerializer<K> keySerializer,
 		TypeSerializer<N> namespaceSerializer,
 		TypeSerializer<SV> stateSerializer,
-		SD stateDesc) {
-		super(keySerializer, namespaceSerializer, stateSerializer, stateDesc);
+		SD stateDesc,
+		int numberOfKeyGroups,
+		KeyGroupRange keyGroupRange) {
+		super(keySerializer, namespaceSerializer, stateSerializer, stateDesc, numberOfKeyGroups, keyGroupRange);
 	}
 
 	public AbstractMemState(TypeSerializer<K> keySerializer,
 		TypeSerializer<N> namespaceSerializer,
 		TypeSerializer<SV> stateSerializer,
 		SD stateDesc,
-		HashMap<N, Map<K, SV>> state) {
+		StateTable<K, N, SV> state) {
 		super(keySerializer, namespaceSerializer, stateSerializer, stateDesc, state);
 	}
 
-	public abstract KvStateSnapshot<K, N, S, SD, MemoryStateBackend> createHeapSnapshot(byte[] bytes);
+	public abstract KvStateSnapshot<K, N, S, SD, MemoryStateBackend> createHeapSnapshot(KeyGroupRangeOffsets keyGroupRangeOffsets, byte[] bytes);
 
 	@Override
 	public KvStateSnapshot<K, N, S, SD, MemoryStateBackend> snapshot(long checkpointId, long timestamp) throws Exception {
+		return new AsyncMemStateSnapshot(stateTable.createSnapshot(createSnapshotFilter()));
+	}
 
-		DataOutputSerializer out = new DataOutputSerializer(Math.max(size() * 16, 16));
+	/**
+	 * Serializes a snapshot of the state table when the checkpoint is materialized.
+	 */
+	private class AsyncMemStateSnapshot extends AsynchronousKvStateSnapshot<K, N, S, SD, MemoryStateBackend> {
 
-		out.writeInt(state.size());
-		for (Map.Entry<N, Map<K, SV>> namespaceState: state.entrySet()) {
-			N namespace = namespaceState.getKey();
-			namespaceSerializer.serialize(namespace, out);
-			out.writeInt(namespaceState.getValue().size());
-			for (Map.Entry<K, SV> entry: namespaceState.getValue().entrySet()) {
-				keySerializer.serialize(entry.getKey(), out);
-				stateSerializer.serialize(entry.getValue(), out);
-			}
+		private static final long serialVersionUID = 1L;
+
+		private final transient StateTableSnapshot<K, N, SV> tableSnapshot;
+
+		// the serializers are not thread safe, so the asynchronous part gets its own copies
+		private final TypeSerializer<K> keySerializer = AbstractMemState.this.keySerializer.duplicate();
+		private final TypeSerializer<N> namespaceSerializer = AbstractMemState.this.namespaceSerializer.duplicate();
+		private final TypeSerializer<SV> stateSerializer = AbstractMemState.this.stateSerializer.duplicate();
+
+		private AsyncMemStateSnapshot(StateTableSnapshot<K, N, SV> tableSnapshot) {
+			this.tableSnapshot = tableSnapshot;
 		}
 
-		byte[] bytes = out.getCopyOfBuffer();
+		@Override
+		public KvStateSnapshot<K, N, S, SD, MemoryStateBackend> materialize() throws Exception {
+			try {
+				DataOutputSerializer out = new DataOutputSerializer(Math.max(tableSnapshot.size() * 16, 16));
 
-		return createHeapSnapshot(bytes);
+				// the key groups are written one after the other, so that a restore can pick
+				// the ones it is responsible for by their offsets
+				KeyGroupRange keyGroupRange = stateTable.getKeyGroupRange();
+				long[] offsets = new long[keyGroupRange.getNumberOfKeyGroups()];
+
+				for (int keyGroup : keyGroupRange) {
+					offsets[keyGroup - keyGroupRange.getStartKeyGroup()] = out.length();
+					tableSnapshot.writeKeyGroup(keyGroup, keySerializer, namespaceSerializer, stateSerializer, out);
+				}
+
+				byte[] bytes = out.getCopyOfBuffer();
+
+				return createHeapSnapshot(new KeyGroupRangeOffsets(keyGroupRange, offsets), bytes);
+			} finally {
+				release();
+			}
+		}
+
+		@Override
+		protected void release() {
+			tableSnapshot.release();
+		}
 	}
 }
@@ -21,13 +21,14 @@ package org.apache.flink.runtime.state.memory;
 import org.apache.flink.api.common.state.State;
 import org.apache.flink.api.common.state.StateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
 import org.apache.flink.runtime.state.KvState;
 import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.StateTable;
 import org.apache.flink.runtime.util.DataInputDeserializer;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * A snapshot of a {@link MemValueState} for a checkpoint. The data is stored in a heap byte
  * array, in serialized form.
@@ -52,6 +53,12 @@ public abstract class AbstractMemStateSnapshot<K, N, SV, S extends State, SD ext
 	/** StateDescriptor, for sanity checks */
 	protected final SD stateDesc;
 
+	/**
+	 * The offsets of the key groups in the serialized data. This is null for snapshots
+	 * that were taken before the state was sharded by key group.
+	 */
+	private final KeyGroupRangeOffsets keyGroupRangeOffsets;
+
 	/** The serialized data of the state key/value pairs */
 	private final byte[] data;
 
@@ -62,21 +69,24 @@ public abstract class AbstractMemStateSnapshot<K, N, SV, S extends State, SD ext
 	 * @param namespaceSerializer The serializer for the namespace.
 	 * @param stateSerializer The serializer for the elements in the state HashMap
 	 * @param stateDesc The state identifier
+	 * @param keyGroupRangeOffsets The offsets of the key groups in the serialized data
 	 * @param data The serialized data of the state key/value pairs
 	 */
 	public AbstractMemStateSnapshot(TypeSerializer<K> keySerializer,
 		TypeSerializer<N> namespaceSerializer,
 		TypeSerializer<SV> stateSerializer,
 		SD stateDesc,
+		KeyGroupRangeOffsets keyGroupRangeOffsets,
 		byte[] data) {
 		this.keySerializer = keySerializer;
 		this.namespaceSerializer = namespaceSerializer;
 		this.stateSerializer = stateSerializer;
 		this.stateDesc = stateDesc;
+		this.keyGroupRangeOffsets = keyGroupRangeOffsets;
 		this.data = data;
 	}
 
-	public abstract KvState<K, N, S, SD, MemoryStateBackend> createMemState(HashMap<N, Map<K, SV>> stateMap);
+	public abstract KvState<K, N, S, SD, MemoryStateBackend> createMemState(StateTable<K, N, SV> stateTable);
 
 	@Override
 	public KvState<K, N, S, SD, MemoryStateBackend> restoreState(
@@ -94,24 +104,66 @@ public abstract class AbstractMemStateSnapshot<K, N, SV, S extends State, SD ext
 		}
 		
 		// restore state
+		StateTable<K, N, SV> stateTable = new StateTable<>(
+			stateSerializer,
+			stateBackend.getNumberOfKeyGroups(),
+			stateBackend.getKeyGroupRange());
+
 		DataInputDeserializer inView = new DataInputDeserializer(data, 0, data.length);
 
-		final int numKeys = inView.readInt();
-		HashMap<N, Map<K, SV>> stateMap = new HashMap<>(numKeys);
-
-		for (int i = 0; i < numKeys; i++) {
-			N namespace = namespaceSerializer.deserialize(inView);
-			final int numValues = inView.readInt();
-			Map<K, SV> namespaceMap = new HashMap<>(numValues);
-			stateMap.put(namespace, namespaceMap);
-			for (int j = 0; j < numValues; j++) {
-				K key = keySerializer.deserialize(inView);
-				SV value = stateSerializer.deserialize(inView);
-				namespaceMap.put(key, value);
+		if (keyGroupRangeOffsets != null) {
+			// only read the key groups that the restoring backend is responsible for
+			KeyGroupRange restoredKeyGroups = keyGroupRangeOffsets.getKeyGroupRange()
+				.getIntersection(stateTable.getKeyGroupRange());
+
+			for (int keyGroup : restoredKeyGroups) {
+				int offset = (int) keyGroupRangeOffsets.getKeyGroupOffset(keyGroup);
+				inView.setBuffer(data, offset, data.length - offset);
+
+				final int numKeys = inView.readInt();
+				if (numKeys == 0) {
+					continue;
+				}
+
+				for (int i = 0; i < numKeys; i++) {
+					N namespace = namespaceSerializer.deserialize(inView);
+					final int numValues = inView.readInt();
+					for (int j = 0; j < numValues; j++) {
+						K key = keySerializer.deserialize(inView);
+						SV value = stateSerializer.deserialize(inView);
+						stateTable.put(key, namespace, value);
+					}
+				}
+			}
+		} else {
+			// snapshot from before key groups, assign every key to its key group
+			final int numKeys = inView.readInt();
+
+			for (int i = 0; i < numKeys; i++) {
+				N namespace = namespaceSerializer.deserialize(inView);
+				final int numValues = inView.readInt();
+				for (int j = 0; j < numValues; j++) {
+					K key = keySerializer.deserialize(inView);
+					SV value = stateSerializer.deserialize(inView);
+
+					int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(key, stateTable.getNumberOfKeyGroups());
+					if (stateTable.getKeyGroupRange().contains(keyGroup)) {
+						stateTable.put(key, namespace, value);
+					}
+				}
 			}
 		}
 
-		return createMemState(stateMap);
+		return createMemState(stateTable);
+	}
+
+	/**
+	 * Gets the offsets of the key groups in this snapshot.
+	 *
+	 * @return The key group offsets, or null if the snapshot is not sharded by key group.
+	 */
+	public KeyGroupRangeOffsets getKeyGroupRangeOffsets() {
+		return keyGroupRangeOffsets;
 	}
 
 	/**
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.flink.runtime.state.memory;
+
+import org.apache.flink.api.common.functions.AggregateFunction;
+import org.apache.flink.api.common.state.AggregatingState;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.InternalAggregatingState;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
+import org.apache.flink.runtime.state.KvState;
+import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.StateTable;
+
+/**
+ * Heap-backed partitioned {@link AggregatingState} that is
+ * snapshotted into a serialized memory copy.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <IN> The type of the values that are aggregated into the state.
+ * @param <ACC> The type of the accumulator in the state.
+ * @param <OUT> The type of the result of the aggregation.
+ */
+public class MemAggregatingState<K, N, IN, ACC, OUT>
+	extends AbstractMemState<K, N, ACC, AggregatingState<IN, OUT>, AggregatingStateDescriptor<IN, ACC, OUT>>
+	implements InternalAggregatingState<IN, ACC, OUT> {
+
+	private final AggregateFunction<IN, ACC, OUT> aggFunction;
+
+	public MemAggregatingState(TypeSerializer<K> keySerializer,
+		TypeSerializer<N> namespaceSerializer,
+		AggregatingStateDescriptor<IN, ACC, OUT> stateDesc,
+		int numberOfKeyGroups,
+		KeyGroupRange keyGroupRange) {
+		super(keySerializer, namespaceSerializer, stateDesc.getSerializer(), stateDesc, numberOfKeyGroups, keyGroupRange);
+		this.aggFunction = stateDesc.getAggregateFunction();
+	}
+
+	public MemAggregatingState(TypeSerializer<K> keySerializer,
+		TypeSerializer<N> namespaceSerializer,
+		AggregatingStateDescriptor<IN, ACC, OUT> stateDesc,
+		StateTable<K, N, ACC> state) {
+		super(keySerializer, namespaceSerializer, stateDesc.getSerializer(), stateDesc, state);
+		this.aggFunction = stateDesc.getAggregateFunction();
+	}
+
+	@Override
+	public OUT get() {
+		ACC accumulator = stateTable.get(currentKey, currentNamespace);
+		return accumulator == null ? null : aggFunction.getResult(accumulator);
+	}
+
+	@Override
+	public void add(IN value) {
+		if (currentKey == null) {
+			throw new RuntimeException("No key available.");
+		}
+
+		ACC accumulator = stateTable.get(currentKey, currentNamespace);
+		if (accumulator == null) {
+			accumulator = aggFunction.createAccumulator();
+		}
+		stateTable.put(currentKey, currentNamespace, aggFunction.add(value, accumulator));
+	}
+
+	@Override
+	public ACC getAccumulator() {
+		return stateTable.get(currentKey, currentNamespace);
+	}
+
+	@Override
+	public void setAccumulator(ACC accumulator) {
+		if (currentKey == null) {
+			throw new RuntimeException("No key available.");
+		}
+
+		stateTable.put(currentKey, currentNamespace, accumulator);
+	}
+
+	@Override
+	public KvStateSnapshot<K, N, AggregatingState<IN, OUT>, AggregatingStateDescriptor<IN, ACC, OUT>, MemoryStateBackend> createHeapSnapshot(KeyGroupRangeOffsets keyGroupRangeOffsets, byte[] bytes) {
+		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, keyGroupRangeOffsets, bytes);
+	}
+
+	public static class Snapshot<K, N, IN, ACC, OUT> extends AbstractMemStateSnapshot<K, N, ACC, AggregatingState<IN, OUT>, AggregatingStateDescriptor<IN, ACC, OUT>> {
+		private static final long serialVersionUID = 1L;
+
+		public Snapshot(TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			TypeSerializer<ACC> stateSerializer,
+			AggregatingStateDescriptor<IN, ACC, OUT> stateDescs, KeyGroupRangeOffsets keyGroupRangeOffsets, byte[] data) {
+			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, keyGroupRangeOffsets, data);
+		}
+
+		@Override
+		public KvState<K, N, AggregatingState<IN, OUT>, AggregatingStateDescriptor<IN, ACC, OUT>, MemoryStateBackend> createMemState(StateTable<K, N, ACC> stateTable) {
+			return new MemAggregatingState<>(keySerializer, namespaceSerializer, stateDesc, stateTable);
+		}
+	}
+}
@@ -22,12 +22,13 @@ import org.apache.flink.api.common.functions.FoldFunction;
 import org.apache.flink.api.common.state.FoldingState;
 import org.apache.flink.api.common.state.FoldingStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
 import org.apache.flink.runtime.state.KvState;
 import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.StateTable;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Heap-backed partitioned {@link FoldingState} that is
@@ -46,29 +47,25 @@ public class MemFoldingState<K, N, T, ACC>
 
 	public MemFoldingState(TypeSerializer<K> keySerializer,
 		TypeSerializer<N> namespaceSerializer,
-		FoldingStateDescriptor<T, ACC> stateDesc) {
-		super(keySerializer, namespaceSerializer, stateDesc.getSerializer(), stateDesc);
+		FoldingStateDescriptor<T, ACC> stateDesc,
+		int numberOfKeyGroups,
+		KeyGroupRange keyGroupRange) {
+		super(keySerializer, namespaceSerializer, stateDesc.getSerializer(), stateDesc, numberOfKeyGroups, keyGroupRange);
 		this.foldFunction = stateDesc.getFoldFunction();
 	}
 
 	public MemFoldingState(TypeSerializer<K> keySerializer,
 		TypeSerializer<N> namespaceSerializer,
 		FoldingStateDescriptor<T, ACC> stateDesc,
-		HashMap<N, Map<K, ACC>> state) {
+		StateTable<K, N, ACC> state) {
 		super(keySerializer, namespaceSerializer, stateDesc.getSerializer(), stateDesc, state);
 		this.foldFunction = stateDesc.getFoldFunction();
 	}
 
 	@Override
 	public ACC get() {
-		if (currentNSState == null) {
-			currentNSState = state.get(currentNamespace);
-		}
-		if (currentNSState != null) {
-			ACC value = currentNSState.get(currentKey);
-			return value != null ? value : stateDesc.getDefaultValue();
-		}
-		return stateDesc.getDefaultValue();
+		ACC value = stateTable.get(currentKey, currentNamespace);
+		return value != null ? value : stateDesc.getDefaultValue();
 	}
 
 	@Override
@@ -77,18 +74,12 @@ public class MemFoldingState<K, N, T, ACC>
 			throw new RuntimeException("No key available.");
 		}
 
-		if (currentNSState == null) {
-			currentNSState = new HashMap<>();
-			state.put(currentNamespace, currentNSState);
-		}
-
-		ACC currentValue = currentNSState.get(currentKey);
+		ACC currentValue = stateTable.get(currentKey, currentNamespace);
 		try {
 			if (currentValue == null) {
-				currentNSState.put(currentKey, foldFunction.fold(stateDesc.getDefaultValue(), value));
+				stateTable.put(currentKey, currentNamespace, foldFunction.fold(stateDesc.getDefaultValue(), value));
 			} else {
-					currentNSState.put(currentKey, foldFunction.fold(currentValue, value));
-
+				stateTable.put(currentKey, currentNamespace, foldFunction.fold(currentValue, value));
 			}
 		} catch (Exception e) {
 			throw new RuntimeException("Could not add value to folding state.", e);
@@ -96,8 +87,8 @@ public class MemFoldingState<K, N, T, ACC>
 	}
 
 	@Override
-	public KvStateSnapshot<K, N, FoldingState<T, ACC>, FoldingStateDescriptor<T, ACC>, MemoryStateBackend> createHeapSnapshot(byte[] bytes) {
-		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, bytes);
+	public KvStateSnapshot<K, N, FoldingState<T, ACC>, FoldingStateDescriptor<T, ACC>, MemoryStateBackend> createHeapSnapshot(KeyGroupRangeOffsets keyGroupRangeOffsets, byte[] bytes) {
+		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, keyGroupRangeOffsets, bytes);
 	}
 
 	public static class Snapshot<K, N, T, ACC> extends AbstractMemStateSnapshot<K, N, ACC, FoldingState<T, ACC>, FoldingStateDescriptor<T, ACC>> {
@@ -106,13 +97,13 @@ public class MemFoldingState<K, N, T, ACC>
 		public Snapshot(TypeSerializer<K> keySerializer,
 			TypeSerializer<N> namespaceSerializer,
 			TypeSerializer<ACC> stateSerializer,
-			FoldingStateDescriptor<T, ACC> stateDescs, byte[] data) {
-			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, data);
+			FoldingStateDescriptor<T, ACC> stateDescs, KeyGroupRangeOffsets keyGroupRangeOffsets, byte[] data) {
+			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, keyGroupRangeOffsets, data);
 		}
 
 		@Override
-		public KvState<K, N, FoldingState<T, ACC>, FoldingStateDescriptor<T, ACC>, MemoryStateBackend> createMemState(HashMap<N, Map<K, ACC>> stateMap) {
-			return new MemFoldingState<>(keySerializer, namespaceSerializer, stateDesc, stateMap);
+		public KvState<K, N, FoldingState<T, ACC>, FoldingStateDescriptor<T, ACC>, MemoryStateBackend> createMemState(StateTable<K, N, ACC> stateTable) {
+			return new MemFoldingState<>(keySerializer, namespaceSerializer, stateDesc, stateTable);
 		}
 	}
 }
@@ -22,14 +22,15 @@ import org.apache.flink.api.common.state.ListState;
 import org.apache.flink.api.common.state.ListStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.runtime.state.ArrayListSerializer;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
 import org.apache.flink.runtime.state.KvState;
 import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.StateTable;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Heap-backed partitioned {@link org.apache.flink.api.common.state.ListState} that is snapshotted
@@ -43,28 +44,22 @@ public class MemListState<K, N, V>
 	extends AbstractMemState<K, N, ArrayList<V>, ListState<V>, ListStateDescriptor<V>>
 	implements ListState<V> {
 
-	public MemListState(TypeSerializer<K> keySerializer, TypeSerializer<N> namespaceSerializer, ListStateDescriptor<V> stateDesc) {
-		super(keySerializer, namespaceSerializer, new ArrayListSerializer<>(stateDesc.getSerializer()), stateDesc);
+	public MemListState(TypeSerializer<K> keySerializer, TypeSerializer<N> namespaceSerializer, ListStateDescriptor<V> stateDesc, int numberOfKeyGroups, KeyGroupRange keyGroupRange) {
+		super(keySerializer, namespaceSerializer, new ArrayListSerializer<>(stateDesc.getSerializer()), stateDesc, numberOfKeyGroups, keyGroupRange);
 	}
 
-	public MemListState(TypeSerializer<K> keySerializer, TypeSerializer<N> namespaceSerializer, ListStateDescriptor<V> stateDesc, HashMap<N, Map<K, ArrayList<V>>> state) {
+	public MemListState(TypeSerializer<K> keySerializer, TypeSerializer<N> namespaceSerializer, ListStateDescriptor<V> stateDesc, StateTable<K, N, ArrayList<V>> state) {
 		super(keySerializer, namespaceSerializer, new ArrayListSerializer<>(stateDesc.getSerializer()), stateDesc, state);
 	}
 
 	@Override
 	public Iterable<V> get() {
-		if (currentNSState == null) {
-			currentNSState = state.get(currentNamespace);
+		List<V> result = stateTable.get(currentKey, currentNamespace);
+		if (result == null) {
+			return Collections.emptyList();
+		} else {
+			return result;
 		}
-		if (currentNSState != null) {
-			List<V> result = currentNSState.get(currentKey);
-			if (result == null) {
-				return Collections.emptyList();
-			} else {
-				return result;
-			}
-		}
-		return Collections.emptyList();
 	}
 
 	@Override
@@ -73,23 +68,18 @@ public class MemListState<K, N, V>
 			throw new RuntimeException("No key available.");
 		}
 
-		if (currentNSState == null) {
-			currentNSState = new HashMap<>();
-			state.put(currentNamespace, currentNSState);
-		}
-
-
-		ArrayList<V> list = currentNSState.get(currentKey);
+		// the list returned by the state table can be modified in place
+		ArrayList<V> list = stateTable.get(currentKey, currentNamespace);
 		if (list == null) {
 			list = new ArrayList<>();
-			currentNSState.put(currentKey, list);
+			stateTable.put(currentKey, currentNamespace, list);
 		}
 		list.add(value);
 	}
 
 	@Override
-	public KvStateSnapshot<K, N, ListState<V>, ListStateDescriptor<V>, MemoryStateBackend> createHeapSnapshot(byte[] bytes) {
-		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, bytes);
+	public KvStateSnapshot<K, N, ListState<V>, ListStateDescriptor<V>, MemoryStateBackend> createHeapSnapshot(KeyGroupRangeOffsets keyGroupRangeOffsets, byte[] bytes) {
+		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, keyGroupRangeOffsets, bytes);
 	}
 
 	public static class Snapshot<K, N, V> extends AbstractMemStateSnapshot<K, N, ArrayList<V>, ListState<V>, ListStateDescriptor<V>> {
@@ -98,13 +88,13 @@ public class MemListState<K, N, V>
 		public Snapshot(TypeSerializer<K> keySerializer,
 			TypeSerializer<N> namespaceSerializer,
 			TypeSerializer<ArrayList<V>> stateSerializer,
-			ListStateDescriptor<V> stateDescs, byte[] data) {
-			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, data);
+			ListStateDescriptor<V> stateDescs, KeyGroupRangeOffsets keyGroupRangeOffsets, byte[] data) {
+			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, keyGroupRangeOffsets, data);
 		}
 
 		@Override
-		public KvState<K, N, ListState<V>, ListStateDescriptor<V>, MemoryStateBackend> createMemState(HashMap<N, Map<K, ArrayList<V>>> stateMap) {
-			return new MemListState<>(keySerializer, namespaceSerializer, stateDesc, stateMap);
+		public KvState<K, N, ListState<V>, ListStateDescriptor<V>, MemoryStateBackend> createMemState(StateTable<K, N, ArrayList<V>> stateTable) {
+			return new MemListState<>(keySerializer, namespaceSerializer, stateDesc, stateTable);
 		}
 	}
 
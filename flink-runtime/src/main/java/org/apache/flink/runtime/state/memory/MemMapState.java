@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.memory;
+
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
+import org.apache.flink.runtime.state.KvState;
+import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.StateTable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Heap-backed partitioned {@link MapState} that is snapshotted into a serialized memory copy.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <UK> The type of the keys in the map state.
+ * @param <UV> The type of the values in the map state.
+ */
+public class MemMapState<K, N, UK, UV>
+	extends AbstractMemState<K, N, Map<UK, UV>, MapState<UK, UV>, MapStateDescriptor<UK, UV>>
+	implements MapState<UK, UV> {
+
+	public MemMapState(TypeSerializer<K> keySerializer,
+		TypeSerializer<N> namespaceSerializer,
+		MapStateDescriptor<UK, UV> stateDesc,
+		int numberOfKeyGroups,
+		KeyGroupRange keyGroupRange) {
+		super(keySerializer, namespaceSerializer, stateDesc.getSerializer(), stateDesc, numberOfKeyGroups, keyGroupRange);
+	}
+
+	public MemMapState(TypeSerializer<K> keySerializer,
+		TypeSerializer<N> namespaceSerializer,
+		MapStateDescriptor<UK, UV> stateDesc,
+		StateTable<K, N, Map<UK, UV>> state) {
+		super(keySerializer, namespaceSerializer, stateDesc.getSerializer(), stateDesc, state);
+	}
+
+	@Override
+	public UV get(UK userKey) {
+		Map<UK, UV> userMap = stateTable.get(currentKey, currentNamespace);
+		return userMap == null ? null : userMap.get(userKey);
+	}
+
+	@Override
+	public void put(UK userKey, UV userValue) {
+		getOrCreateUserMap().put(userKey, userValue);
+	}
+
+	@Override
+	public void putAll(Map<UK, UV> value) {
+		getOrCreateUserMap().putAll(value);
+	}
+
+	@Override
+	public void remove(UK userKey) {
+		Map<UK, UV> userMap = stateTable.get(currentKey, currentNamespace);
+		if (userMap == null) {
+			return;
+		}
+
+		userMap.remove(userKey);
+		if (userMap.isEmpty()) {
+			clear();
+		}
+	}
+
+	@Override
+	public boolean contains(UK userKey) {
+		Map<UK, UV> userMap = stateTable.get(currentKey, currentNamespace);
+		return userMap != null && userMap.containsKey(userKey);
+	}
+
+	@Override
+	public Iterable<Map.Entry<UK, UV>> entries() {
+		Map<UK, UV> userMap = stateTable.get(currentKey, currentNamespace);
+		return userMap == null ? Collections.<Map.Entry<UK, UV>>emptySet() : userMap.entrySet();
+	}
+
+	@Override
+	public Iterable<UK> keys() {
+		Map<UK, UV> userMap = stateTable.get(currentKey, currentNamespace);
+		return userMap == null ? Collections.<UK>emptySet() : userMap.keySet();
+	}
+
+	@Override
+	public Iterable<UV> values() {
+		Map<UK, UV> userMap = stateTable.get(currentKey, currentNamespace);
+		return userMap == null ? Collections.<UV>emptySet() : userMap.values();
+	}
+
+	@Override
+	public Iterator<Map.Entry<UK, UV>> iterator() {
+		return entries().iterator();
+	}
+
+	private Map<UK, UV> getOrCreateUserMap() {
+		if (currentKey == null) {
+			throw new RuntimeException("No key available.");
+		}
+
+		// the map returned by the state table can be modified in place
+		Map<UK, UV> userMap = stateTable.get(currentKey, currentNamespace);
+		if (userMap == null) {
+			userMap = new HashMap<>();
+			stateTable.put(currentKey, currentNamespace, userMap);
+		}
+		return userMap;
+	}
+
+	@Override
+	public KvStateSnapshot<K, N, MapState<UK, UV>, MapStateDescriptor<UK, UV>, MemoryStateBackend> createHeapSnapshot(KeyGroupRangeOffsets keyGroupRangeOffsets, byte[] bytes) {
+		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, keyGroupRangeOffsets, bytes);
+	}
+
+	public static class Snapshot<K, N, UK, UV> extends AbstractMemStateSnapshot<K, N, Map<UK, UV>, MapState<UK, UV>, MapStateDescriptor<UK, UV>> {
+		private static final long serialVersionUID = 1L;
+
+		public Snapshot(TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			TypeSerializer<Map<UK, UV>> stateSerializer,
+			MapStateDescriptor<UK, UV> stateDescs, KeyGroupRangeOffsets keyGroupRangeOffsets, byte[] data) {
+			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, keyGroupRangeOffsets, data);
+		}
+
+		@Override
+		public KvState<K, N, MapState<UK, UV>, MapStateDescriptor<UK, UV>, MemoryStateBackend> createMemState(StateTable<K, N, Map<UK, UV>> stateTable) {
+			return new MemMapState<>(keySerializer, namespaceSerializer, stateDesc, stateTable);
+		}
+	}
+}
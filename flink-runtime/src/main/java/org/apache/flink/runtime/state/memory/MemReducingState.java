@@ -22,12 +22,13 @@ import org.apache.flink.api.common.functions.ReduceFunction;
 import org.apache.flink.api.common.state.ReducingState;
 import org.apache.flink.api.common.state.ReducingStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
 import org.apache.flink.runtime.state.KvState;
 import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.StateTable;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Heap-backed partitioned {@link org.apache.flink.api.common.state.ReducingState} that is
@@ -45,28 +46,24 @@ public class MemReducingState<K, N, V>
 
 	public MemReducingState(TypeSerializer<K> keySerializer,
 		TypeSerializer<N> namespaceSerializer,
-		ReducingStateDescriptor<V> stateDesc) {
-		super(keySerializer, namespaceSerializer, stateDesc.getSerializer(), stateDesc);
+		ReducingStateDescriptor<V> stateDesc,
+		int numberOfKeyGroups,
+		KeyGroupRange keyGroupRange) {
+		super(keySerializer, namespaceSerializer, stateDesc.getSerializer(), stateDesc, numberOfKeyGroups, keyGroupRange);
 		this.reduceFunction = stateDesc.getReduceFunction();
 	}
 
 	public MemReducingState(TypeSerializer<K> keySerializer,
 		TypeSerializer<N> namespaceSerializer,
 		ReducingStateDescriptor<V> stateDesc,
-		HashMap<N, Map<K, V>> state) {
+		StateTable<K, N, V> state) {
 		super(keySerializer, namespaceSerializer, stateDesc.getSerializer(), stateDesc, state);
 		this.reduceFunction = stateDesc.getReduceFunction();
 	}
 
 	@Override
 	public V get() {
-		if (currentNSState == null) {
-			currentNSState = state.get(currentNamespace);
-		}
-		if (currentNSState != null) {
-			return currentNSState.get(currentKey);
-		}
-		return null;
+		return stateTable.get(currentKey, currentNamespace);
 	}
 
 	@Override
@@ -75,35 +72,20 @@ public class MemReducingState<K, N, V>
 			throw new RuntimeException("No key available.");
 		}
 
-		if (currentNSState == null) {
-			currentNSState = new HashMap<>();
-			state.put(currentNamespace, currentNSState);
-		}
-//		currentKeyState.merge(currentNamespace, value, new BiFunction<V, V, V>() {
-//			@Override
-//			public V apply(V v, V v2) {
-//				try {
-//					return reduceFunction.reduce(v, v2);
-//				} catch (Exception e) {
-//					return null;
-//				}
-//			}
-//		});
-		V currentValue = currentNSState.get(currentKey);
+		V currentValue = stateTable.get(currentKey, currentNamespace);
 		if (currentValue == null) {
-			currentNSState.put(currentKey, value);
+			stateTable.put(currentKey, currentNamespace, value);
 		} else {
 			try {
-				currentNSState.put(currentKey, reduceFunction.reduce(currentValue, value));
+				stateTable.put(currentKey, currentNamespace, reduceFunction.reduce(currentValue, value));
 			} catch (Exception e) {
 				throw new RuntimeException("Could not add value to reducing state.", e);
 			}
 		}
 	}
-
 	@Override
-	public KvStateSnapshot<K, N, ReducingState<V>, ReducingStateDescriptor<V>, MemoryStateBackend> createHeapSnapshot(byte[] bytes) {
-		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, bytes);
+	public KvStateSnapshot<K, N, ReducingState<V>, ReducingStateDescriptor<V>, MemoryStateBackend> createHeapSnapshot(KeyGroupRangeOffsets keyGroupRangeOffsets, byte[] bytes) {
+		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, keyGroupRangeOffsets, bytes);
 	}
 
 	public static class Snapshot<K, N, V> extends AbstractMemStateSnapshot<K, N, V, ReducingState<V>, ReducingStateDescriptor<V>> {
@@ -112,12 +94,12 @@ public class MemReducingState<K, N, V>
 		public Snapshot(TypeSerializer<K> keySerializer,
 			TypeSerializer<N> namespaceSerializer,
 			TypeSerializer<V> stateSerializer,
-			ReducingStateDescriptor<V> stateDescs, byte[] data) {
-			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, data);
+			ReducingStateDescriptor<V> stateDescs, KeyGroupRangeOffsets keyGroupRangeOffsets, byte[] data) {
+			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, keyGroupRangeOffsets, data);
 		}
 
 		@Override
-		public KvState<K, N, ReducingState<V>, ReducingStateDescriptor<V>, MemoryStateBackend> createMemState(HashMap<N, Map<K, V>> stateMap) {
-			return new MemReducingState<>(keySerializer, namespaceSerializer, stateDesc, stateMap);
+		public KvState<K, N, ReducingState<V>, ReducingStateDescriptor<V>, MemoryStateBackend> createMemState(StateTable<K, N, V> stateTable) {
+			return new MemReducingState<>(keySerializer, namespaceSerializer, stateDesc, stateTable);
 		}
 	}}
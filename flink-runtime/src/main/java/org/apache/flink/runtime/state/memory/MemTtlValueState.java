@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.flink.runtime.state.memory;
+
+import org.apache.flink.api.common.state.StateTtlConfig;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.query.netty.message.KvStateRequestSerializer;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
+import org.apache.flink.runtime.state.KvState;
+import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.StateTable;
+import org.apache.flink.runtime.state.TtlTimeProvider;
+import org.apache.flink.runtime.state.TtlValue;
+import org.apache.flink.runtime.state.TtlValueFilter;
+import org.apache.flink.runtime.state.TtlValueSerializer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Heap-backed key/value state with time-to-live that is snapshotted into a serialized memory
+ * copy. Every value is stored together with the time of its last access.
+ *
+ * <p>Expired values are never returned. They are removed when they are accessed, by the
+ * incremental cleanup that checks the next buckets of the table on every access, and they are
+ * not written to snapshots.
+ *
+ * @param <K> The type of the key.
+ * @param <N> The type of the namespace.
+ * @param <V> The type of the value.
+ */
+public class MemTtlValueState<K, N, V>
+	extends AbstractMemState<K, N, TtlValue<V>, ValueState<V>, ValueStateDescriptor<V>>
+	implements ValueState<V> {
+
+	/** The time-to-live configuration of the state */
+	private final StateTtlConfig ttlConfig;
+
+	/** The clock for the time-to-live */
+	private final TtlTimeProvider timeProvider;
+
+	public MemTtlValueState(TypeSerializer<K> keySerializer,
+		TypeSerializer<N> namespaceSerializer,
+		ValueStateDescriptor<V> stateDesc,
+		int numberOfKeyGroups,
+		KeyGroupRange keyGroupRange,
+		TtlTimeProvider timeProvider) {
+		super(keySerializer, namespaceSerializer, new TtlValueSerializer<>(stateDesc.getSerializer()), stateDesc, numberOfKeyGroups, keyGroupRange);
+		this.ttlConfig = requireNonNull(stateDesc.getTtlConfig());
+		this.timeProvider = requireNonNull(timeProvider);
+	}
+
+	public MemTtlValueState(TypeSerializer<K> keySerializer,
+		TypeSerializer<N> namespaceSerializer,
+		ValueStateDescriptor<V> stateDesc,
+		StateTable<K, N, TtlValue<V>> state,
+		TtlTimeProvider timeProvider) {
+		super(keySerializer, namespaceSerializer, new TtlValueSerializer<>(stateDesc.getSerializer()), stateDesc, state);
+		this.ttlConfig = requireNonNull(stateDesc.getTtlConfig());
+		this.timeProvider = requireNonNull(timeProvider);
+	}
+
+	@Override
+	public V value() {
+		final long now = timeProvider.currentTimestamp();
+		cleanupIncrementally(now);
+
+		TtlValue<V> ttlValue = stateTable.get(currentKey, currentNamespace);
+		if (ttlValue == null) {
+			return stateDesc.getDefaultValue();
+		}
+
+		if (ttlValue.isExpired(ttlConfig, now)) {
+			stateTable.remove(currentKey, currentNamespace);
+			return stateDesc.getDefaultValue();
+		}
+
+		if (ttlConfig.getUpdateType() == StateTtlConfig.UpdateType.OnReadAndWrite) {
+			stateTable.put(currentKey, currentNamespace, new TtlValue<>(ttlValue.getValue(), now));
+		}
+		return ttlValue.getValue();
+	}
+
+	@Override
+	public void update(V value) {
+		if (currentKey == null) {
+			throw new RuntimeException("No key available.");
+		}
+
+		final long now = timeProvider.currentTimestamp();
+		cleanupIncrementally(now);
+
+		if (value == null) {
+			clear();
+			return;
+		}
+
+		stateTable.put(currentKey, currentNamespace, new TtlValue<>(value, now));
+	}
+
+	private void cleanupIncrementally(long now) {
+		if (ttlConfig.getCleanupSize() > 0) {
+			stateTable.removeIncrementally(ttlConfig.getCleanupSize(), new TtlValueFilter<V>(ttlConfig, now));
+		}
+	}
+
+	@Override
+	protected byte[] serializeQueriedValue(TtlValue<V> ttlValue) throws Exception {
+		// queries do not count as accesses, so they neither remove nor refresh the value
+		if (ttlValue.isExpired(ttlConfig, timeProvider.currentTimestamp())) {
+			return null;
+		}
+		return KvStateRequestSerializer.serializeValue(ttlValue.getValue(), stateDesc.getSerializer());
+	}
+
+	@Override
+	protected StateTable.ValueFilter<TtlValue<V>> createSnapshotFilter() {
+		return new TtlValueFilter<>(ttlConfig, timeProvider.currentTimestamp());
+	}
+
+	@Override
+	public KvStateSnapshot<K, N, ValueState<V>, ValueStateDescriptor<V>, MemoryStateBackend> createHeapSnapshot(KeyGroupRangeOffsets keyGroupRangeOffsets, byte[] bytes) {
+		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, keyGroupRangeOffsets, bytes);
+	}
+
+	public static class Snapshot<K, N, V> extends AbstractMemStateSnapshot<K, N, TtlValue<V>, ValueState<V>, ValueStateDescriptor<V>> {
+		private static final long serialVersionUID = 1L;
+
+		/** The clock of the backend that restores the snapshot */
+		private transient TtlTimeProvider timeProvider;
+
+		public Snapshot(TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			TypeSerializer<TtlValue<V>> stateSerializer,
+			ValueStateDescriptor<V> stateDescs, KeyGroupRangeOffsets keyGroupRangeOffsets, byte[] data) {
+			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, keyGroupRangeOffsets, data);
+		}
+
+		@Override
+		public KvState<K, N, ValueState<V>, ValueStateDescriptor<V>, MemoryStateBackend> restoreState(
+			MemoryStateBackend stateBackend,
+			TypeSerializer<K> keySerializer,
+			ClassLoader classLoader, long recoveryTimestamp) throws Exception {
+
+			timeProvider = stateBackend.getTtlTimeProvider();
+			return super.restoreState(stateBackend, keySerializer, classLoader, recoveryTimestamp);
+		}
+
+		@Override
+		public KvState<K, N, ValueState<V>, ValueStateDescriptor<V>, MemoryStateBackend> createMemState(StateTable<K, N, TtlValue<V>> stateTable) {
+			return new MemTtlValueState<>(keySerializer, namespaceSerializer, stateDesc, stateTable, timeProvider);
+		}
+	}
+}
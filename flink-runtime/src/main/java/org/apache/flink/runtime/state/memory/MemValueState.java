@@ -21,11 +21,11 @@ package org.apache.flink.runtime.state.memory;
 import org.apache.flink.api.common.state.ValueState;
 import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
 import org.apache.flink.runtime.state.KvState;
 import org.apache.flink.runtime.state.KvStateSnapshot;
-
-import java.util.HashMap;
-import java.util.Map;
+import org.apache.flink.runtime.state.StateTable;
 
 /**
  * Heap-backed key/value state that is snapshotted into a serialized memory copy.
@@ -40,27 +40,23 @@ public class MemValueState<K, N, V>
 	
 	public MemValueState(TypeSerializer<K> keySerializer,
 		TypeSerializer<N> namespaceSerializer,
-		ValueStateDescriptor<V> stateDesc) {
-		super(keySerializer, namespaceSerializer, stateDesc.getSerializer(), stateDesc);
+		ValueStateDescriptor<V> stateDesc,
+		int numberOfKeyGroups,
+		KeyGroupRange keyGroupRange) {
+		super(keySerializer, namespaceSerializer, stateDesc.getSerializer(), stateDesc, numberOfKeyGroups, keyGroupRange);
 	}
 
 	public MemValueState(TypeSerializer<K> keySerializer,
 		TypeSerializer<N> namespaceSerializer,
 		ValueStateDescriptor<V> stateDesc,
-		HashMap<N, Map<K, V>> state) {
+		StateTable<K, N, V> state) {
 		super(keySerializer, namespaceSerializer, stateDesc.getSerializer(), stateDesc, state);
 	}
 
 	@Override
 	public V value() {
-		if (currentNSState == null) {
-			currentNSState = state.get(currentNamespace);
-		}
-		if (currentNSState != null) {
-			V value = currentNSState.get(currentKey);
-			return value != null ? value : stateDesc.getDefaultValue();
-		}
-		return stateDesc.getDefaultValue();
+		V value = stateTable.get(currentKey, currentNamespace);
+		return value != null ? value : stateDesc.getDefaultValue();
 	}
 
 	@Override
@@ -74,17 +70,12 @@ public class MemValueState<K, N, V>
 			return;
 		}
 
-		if (currentNSState == null) {
-			currentNSState = new HashMap<>();
-			state.put(currentNamespace, currentNSState);
-		}
-
-		currentNSState.put(currentKey, value);
+		stateTable.put(currentKey, currentNamespace, value);
 	}
 
 	@Override
-	public KvStateSnapshot<K, N, ValueState<V>, ValueStateDescriptor<V>, MemoryStateBackend> createHeapSnapshot(byte[] bytes) {
-		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, bytes);
+	public KvStateSnapshot<K, N, ValueState<V>, ValueStateDescriptor<V>, MemoryStateBackend> createHeapSnapshot(KeyGroupRangeOffsets keyGroupRangeOffsets, byte[] bytes) {
+		return new Snapshot<>(getKeySerializer(), getNamespaceSerializer(), stateSerializer, stateDesc, keyGroupRangeOffsets, bytes);
 	}
 
 	public static class Snapshot<K, N, V> extends AbstractMemStateSnapshot<K, N, V, ValueState<V>, ValueStateDescriptor<V>> {
@@ -93,13 +84,13 @@ public class MemValueState<K, N, V>
 		public Snapshot(TypeSerializer<K> keySerializer,
 			TypeSerializer<N> namespaceSerializer,
 			TypeSerializer<V> stateSerializer,
-			ValueStateDescriptor<V> stateDescs, byte[] data) {
-			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, data);
+			ValueStateDescriptor<V> stateDescs, KeyGroupRangeOffsets keyGroupRangeOffsets, byte[] data) {
+			super(keySerializer, namespaceSerializer, stateSerializer, stateDescs, keyGroupRangeOffsets, data);
 		}
 
 		@Override
-		public KvState<K, N, ValueState<V>, ValueStateDescriptor<V>, MemoryStateBackend> createMemState(HashMap<N, Map<K, V>> stateMap) {
-			return new MemValueState<>(keySerializer, namespaceSerializer, stateDesc, stateMap);
+		public KvState<K, N, ValueState<V>, ValueStateDescriptor<V>, MemoryStateBackend> createMemState(StateTable<K, N, V> stateTable) {
+			return new MemValueState<>(keySerializer, namespaceSerializer, stateDesc, stateTable);
 		}
 	}
 }
@@ -18,10 +18,14 @@
 
 package org.apache.flink.runtime.state.memory;
 
+import org.apache.flink.api.common.state.AggregatingState;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
 import org.apache.flink.api.common.state.FoldingState;
 import org.apache.flink.api.common.state.FoldingStateDescriptor;
 import org.apache.flink.api.common.state.ListState;
 import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
 import org.apache.flink.api.common.state.ReducingState;
 import org.apache.flink.api.common.state.ReducingStateDescriptor;
 import org.apache.flink.api.common.state.ValueState;
@@ -86,22 +90,35 @@ public class MemoryStateBackend extends AbstractStateBackend {
 
 	@Override
 	public <N, V> ValueState<V> createValueState(TypeSerializer<N> namespaceSerializer, ValueStateDescriptor<V> stateDesc) throws Exception {
-		return new MemValueState<>(keySerializer, namespaceSerializer, stateDesc);
+		if (stateDesc.isTtlEnabled()) {
+			return new MemTtlValueState<>(keySerializer, namespaceSerializer, stateDesc, getNumberOfKeyGroups(), getKeyGroupRange(), getTtlTimeProvider());
+		}
+		return new MemValueState<>(keySerializer, namespaceSerializer, stateDesc, getNumberOfKeyGroups(), getKeyGroupRange());
 	}
 
 	@Override
 	public <N, T> ListState<T> createListState(TypeSerializer<N> namespaceSerializer, ListStateDescriptor<T> stateDesc) throws Exception {
-		return new MemListState<>(keySerializer, namespaceSerializer, stateDesc);
+		return new MemListState<>(keySerializer, namespaceSerializer, stateDesc, getNumberOfKeyGroups(), getKeyGroupRange());
 	}
 
 	@Override
 	public <N, T> ReducingState<T> createReducingState(TypeSerializer<N> namespaceSerializer, ReducingStateDescriptor<T> stateDesc) throws Exception {
-		return new MemReducingState<>(keySerializer, namespaceSerializer, stateDesc);
+		return new MemReducingState<>(keySerializer, namespaceSerializer, stateDesc, getNumberOfKeyGroups(), getKeyGroupRange());
 	}
 
 	@Override
 	public <N, T, ACC> FoldingState<T, ACC> createFoldingState(TypeSerializer<N> namespaceSerializer, FoldingStateDescriptor<T, ACC> stateDesc) throws Exception {
-		return new MemFoldingState<>(keySerializer, namespaceSerializer, stateDesc);
+		return new MemFoldingState<>(keySerializer, namespaceSerializer, stateDesc, getNumberOfKeyGroups(), getKeyGroupRange());
+	}
+
+	@Override
+	public <N, UK, UV> MapState<UK, UV> createMapState(TypeSerializer<N> namespaceSerializer, MapStateDescriptor<UK, UV> stateDesc) throws Exception {
+		return new MemMapState<>(keySerializer, namespaceSerializer, stateDesc, getNumberOfKeyGroups(), getKeyGroupRange());
+	}
+
+	@Override
+	public <N, IN, ACC, OUT> AggregatingState<IN, OUT> createAggregatingState(TypeSerializer<N> namespaceSerializer, AggregatingStateDescriptor<IN, ACC, OUT> stateDesc) throws Exception {
+		return new MemAggregatingState<>(keySerializer, namespaceSerializer, stateDesc, getNumberOfKeyGroups(), getKeyGroupRange());
 	}
 
 	/**
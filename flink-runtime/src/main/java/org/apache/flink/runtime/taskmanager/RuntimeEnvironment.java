@@ -26,6 +26,7 @@ import org.apache.flink.core.fs.Path;
 import org.apache.flink.metrics.groups.TaskMetricGroup;
 import org.apache.flink.runtime.accumulators.AccumulatorRegistry;
 import org.apache.flink.runtime.broadcast.BroadcastVariableManager;
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
 import org.apache.flink.runtime.execution.Environment;
 import org.apache.flink.runtime.executiongraph.ExecutionAttemptID;
 import org.apache.flink.runtime.instance.ActorGateway;
@@ -36,6 +37,7 @@ import org.apache.flink.runtime.jobgraph.JobVertexID;
 import org.apache.flink.runtime.jobgraph.tasks.InputSplitProvider;
 import org.apache.flink.runtime.memory.MemoryManager;
 import org.apache.flink.runtime.messages.checkpoint.AcknowledgeCheckpoint;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.StateHandle;
 import org.apache.flink.util.SerializedValue;
 
@@ -75,6 +77,8 @@ public class RuntimeEnvironment implements Environment {
 
 	private final AccumulatorRegistry accumulatorRegistry;
 
+	private final TaskKvStateRegistry kvStateRegistry;
+
 	private final TaskManagerRuntimeInfo taskManagerInfo;
 	private final TaskMetricGroup metrics;
 
@@ -95,6 +99,7 @@ public class RuntimeEnvironment implements Environment {
 			IOManager ioManager,
 			BroadcastVariableManager bcVarManager,
 			AccumulatorRegistry accumulatorRegistry,
+			TaskKvStateRegistry kvStateRegistry,
 			InputSplitProvider splitProvider,
 			Map<String, Future<Path>> distCacheEntries,
 			ResultPartitionWriter[] writers,
@@ -116,6 +121,7 @@ public class RuntimeEnvironment implements Environment {
 		this.ioManager = checkNotNull(ioManager);
 		this.bcVarManager = checkNotNull(bcVarManager);
 		this.accumulatorRegistry = checkNotNull(accumulatorRegistry);
+		this.kvStateRegistry = kvStateRegistry;
 		this.splitProvider = checkNotNull(splitProvider);
 		this.distCacheEntries = checkNotNull(distCacheEntries);
 		this.writers = checkNotNull(writers);
@@ -198,6 +204,11 @@ public class RuntimeEnvironment implements Environment {
 		return accumulatorRegistry;
 	}
 
+	@Override
+	public TaskKvStateRegistry getTaskKvStateRegistry() {
+		return kvStateRegistry;
+	}
+
 	@Override
 	public InputSplitProvider getInputSplitProvider() {
 		return splitProvider;
@@ -235,34 +246,30 @@ public class RuntimeEnvironment implements Environment {
 
 	@Override
 	public void acknowledgeCheckpoint(long checkpointId, StateHandle<?> state) {
-		// try and create a serialized version of the state handle
-		SerializedValue<StateHandle<?>> serializedState;
-		long stateSize;
+		acknowledgeCheckpoint(checkpointId, state, null);
+	}
+
+	@Override
+	public void acknowledgeCheckpoint(long checkpointId, StateHandle<?> state, StateHandle<?> keyGroupsState) {
+		acknowledgeCheckpoint(checkpointId, state, keyGroupsState, null);
+	}
+
+	@Override
+	public void acknowledgeCheckpoint(
+			long checkpointId,
+			StateHandle<?> state,
+			StateHandle<?> keyGroupsState,
+			CheckpointMetrics checkpointMetrics) {
 
-		if (state == null) {
-			serializedState = null;
-			stateSize = 0;
-		} else {
-			try {
-				serializedState = new SerializedValue<StateHandle<?>>(state);
-			} catch (Exception e) {
-				throw new RuntimeException("Failed to serialize state handle during checkpoint confirmation", e);
-			}
-
-			try {
-				stateSize = state.getStateSize();
-			}
-			catch (Exception e) {
-				throw new RuntimeException("Failed to fetch state handle size", e);
-			}
-		}
-		
 		AcknowledgeCheckpoint message = new AcknowledgeCheckpoint(
 				jobId,
 				executionId,
 				checkpointId,
-				serializedState,
-				stateSize);
+				serializeStateHandle(state),
+				getStateSize(state),
+				serializeStateHandle(keyGroupsState),
+				getStateSize(keyGroupsState),
+				checkpointMetrics);
 
 		jobManager.tell(message);
 	}
@@ -271,4 +278,30 @@ public class RuntimeEnvironment implements Environment {
 	public void failExternally(Throwable cause) {
 		this.containingTask.failExternally(cause);
 	}
+
+	private static SerializedValue<StateHandle<?>> serializeStateHandle(StateHandle<?> state) {
+		if (state == null) {
+			return null;
+		}
+
+		// try and create a serialized version of the state handle
+		try {
+			return new SerializedValue<StateHandle<?>>(state);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to serialize state handle during checkpoint confirmation", e);
+		}
+	}
+
+	private static long getStateSize(StateHandle<?> state) {
+		if (state == null) {
+			return 0;
+		}
+
+		try {
+			return state.getStateSize();
+		}
+		catch (Exception e) {
+			throw new RuntimeException("Failed to fetch state handle size", e);
+		}
+	}
 }
@@ -57,6 +57,7 @@ import org.apache.flink.runtime.messages.TaskMessages.FailTask;
 import org.apache.flink.runtime.messages.TaskMessages.TaskInFinalState;
 import org.apache.flink.runtime.messages.TaskMessages.UpdateTaskExecutionState;
 import org.apache.flink.runtime.messages.checkpoint.DeclineCheckpoint;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.StateHandle;
 import org.apache.flink.runtime.state.StateUtils;
 import org.apache.flink.util.SerializedValue;
@@ -68,6 +69,7 @@ import scala.concurrent.duration.FiniteDuration;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -195,6 +197,9 @@ public class Task implements Runnable {
 	/** The registry of this task which enables live reporting of accumulators */
 	private final AccumulatorRegistry accumulatorRegistry;
 
+	/** The registry of the queryable states of this task, null if the TaskManager has none */
+	private final TaskKvStateRegistry kvStateRegistry;
+
 	/** The thread that executes the task */
 	private final Thread executingThread;
 
@@ -226,6 +231,10 @@ public class Task implements Runnable {
 	 * initialization, to be memory friendly */
 	private volatile SerializedValue<StateHandle<?>> operatorState;
 
+	/** The handles to the key group states that the operator was initialized with. Will be set to
+	 * null after the initialization, to be memory friendly */
+	private volatile List<SerializedValue<StateHandle<?>>> keyGroupsStates;
+
 	private volatile long recoveryTs;
 
 	/** Initialized from the Flink configuration. May also be set at the ExecutionConfig */
@@ -259,6 +268,7 @@ public class Task implements Runnable {
 		this.requiredClasspaths = checkNotNull(tdd.getRequiredClasspaths());
 		this.nameOfInvokableClass = checkNotNull(tdd.getInvokableClassName());
 		this.operatorState = tdd.getOperatorState();
+		this.keyGroupsStates = tdd.getKeyGroupsStates();
 		this.recoveryTs = tdd.getRecoveryTimestamp();
 		this.serializedExecutionConfig = checkNotNull(tdd.getSerializedExecutionConfig());
 
@@ -278,6 +288,7 @@ public class Task implements Runnable {
 		this.libraryCache = checkNotNull(libraryCache);
 		this.fileCache = checkNotNull(fileCache);
 		this.network = checkNotNull(networkEnvironment);
+		this.kvStateRegistry = networkEnvironment.createKvStateTaskRegistry(jobId, vertexId);
 		this.taskManagerConfig = checkNotNull(taskManagerConfig);
 
 		this.executionListenerActors = new CopyOnWriteArrayList<ActorGateway>();
@@ -525,7 +536,7 @@ public class Task implements Runnable {
 			Environment env = new RuntimeEnvironment(jobId, vertexId, executionId,
 					executionConfig, taskInfo, jobConfiguration, taskConfiguration,
 					userCodeClassLoader, memoryManager, ioManager,
-					broadcastVariableManager, accumulatorRegistry,
+					broadcastVariableManager, accumulatorRegistry, kvStateRegistry,
 					splitProvider, distributedCacheEntries,
 					writers, inputGates, jobManager, taskManagerConfig, metrics, this);
 
@@ -538,14 +549,24 @@ public class Task implements Runnable {
 
 			// get our private reference onto the stack (be safe against concurrent changes)
 			SerializedValue<StateHandle<?>> operatorState = this.operatorState;
+			List<SerializedValue<StateHandle<?>>> keyGroupsStates = this.keyGroupsStates;
 			long recoveryTs = this.recoveryTs;
 
-			if (operatorState != null) {
+			if (operatorState != null || (keyGroupsStates != null && !keyGroupsStates.isEmpty())) {
 				if (invokable instanceof StatefulTask) {
 					try {
-						StateHandle<?> state = operatorState.deserializeValue(userCodeClassLoader);
+						StateHandle<?> state = operatorState == null ?
+							null : operatorState.deserializeValue(userCodeClassLoader);
+
+						List<StateHandle<?>> keyGroupsStateHandles = new ArrayList<>();
+						if (keyGroupsStates != null) {
+							for (SerializedValue<StateHandle<?>> keyGroupsState : keyGroupsStates) {
+								keyGroupsStateHandles.add(keyGroupsState.deserializeValue(userCodeClassLoader));
+							}
+						}
+
 						StatefulTask<?> op = (StatefulTask<?>) invokable;
-						StateUtils.setOperatorState(op, state, recoveryTs);
+						StateUtils.setOperatorState(op, state, keyGroupsStateHandles, recoveryTs);
 					}
 					catch (Exception e) {
 						throw new RuntimeException("Failed to deserialize state handle and setup initial operator state.", e);
@@ -561,6 +582,8 @@ public class Task implements Runnable {
 			//noinspection UnusedAssignment
 			operatorState = null;
 			this.operatorState = null;
+			keyGroupsStates = null;
+			this.keyGroupsStates = null;
 
 			// ----------------------------------------------------------------
 			//  actual task core work
@@ -686,6 +709,11 @@ public class Task implements Runnable {
 				// free the network resources
 				network.unregisterTask(this);
 
+				// the states of the task cannot be queried any more
+				if (kvStateRegistry != null) {
+					kvStateRegistry.unregisterAll();
+				}
+
 				// free memory resources
 				if (invokable != null) {
 					memoryManager.releaseAll(invokable);
@@ -60,13 +60,15 @@ import org.apache.flink.runtime.messages.JobManagerMessages._
 import org.apache.flink.runtime.messages.Messages.{Disconnect, Acknowledge}
 import org.apache.flink.runtime.messages.RegistrationMessages._
 import org.apache.flink.runtime.messages.TaskManagerMessages.{Heartbeat, SendStackTrace}
-import org.apache.flink.runtime.messages.TaskMessages.{PartitionState, UpdateTaskExecutionState}
+import org.apache.flink.runtime.messages.TaskMessages.{PartitionState, ReleasePersistentResultPartitions, UpdateTaskExecutionState}
 import org.apache.flink.runtime.messages.accumulators.{AccumulatorMessage, AccumulatorResultStringsFound, AccumulatorResultsErroneous, AccumulatorResultsFound, RequestAccumulatorResults, RequestAccumulatorResultsStringified}
 import org.apache.flink.runtime.messages.checkpoint.{DeclineCheckpoint, AbstractCheckpointMessage, AcknowledgeCheckpoint}
 
 import org.apache.flink.runtime.messages.webmonitor.InfoMessage
 import org.apache.flink.runtime.messages.webmonitor._
 import org.apache.flink.runtime.process.ProcessReaper
+import org.apache.flink.runtime.query.KvStateMessage.{LookupKvStateLocation, NotifyKvStateRegistered, NotifyKvStateUnregistered}
+import org.apache.flink.runtime.query.{KvStateMessage, UnknownKvStateLocation}
 import org.apache.flink.runtime.security.SecurityUtils
 import org.apache.flink.runtime.security.SecurityUtils.FlinkSecuredRunner
 import org.apache.flink.runtime.taskmanager.TaskManager
@@ -928,6 +930,8 @@ class JobManager(
 
     case message: AccumulatorMessage => handleAccumulatorMessage(message)
 
+    case message: KvStateMessage => handleKvStateMessage(message)
+
     case message: InfoMessage => handleInfoRequestMessage(message, sender())
 
     case RequestStackTrace(instanceID) =>
@@ -1202,21 +1206,11 @@ class JobManager(
               new SimpleCheckpointStatsTracker(historySize, ackVertices)
             }
 
-          val jobParallelism = jobGraph.getSerializedExecutionConfig
-            .deserializeValue(userCodeLoader).getParallelism()
-
-          val parallelism = if (jobParallelism == ExecutionConfig.PARALLELISM_AUTO_MAX) {
-            numSlots
-          } else {
-            jobParallelism
-          }
-
           executionGraph.enableSnapshotCheckpointing(
             snapshotSettings.getCheckpointInterval,
             snapshotSettings.getCheckpointTimeout,
             snapshotSettings.getMinPauseBetweenCheckpoints,
             snapshotSettings.getMaxConcurrentCheckpoints,
-            parallelism,
             triggerVertices,
             ackVertices,
             confirmVertices,
@@ -1458,6 +1452,70 @@ class JobManager(
     }
   }
 
+  /**
+   * Handle messages that look up or report the locations of queryable states.
+   *
+   * @param message The queryable state message.
+   */
+  private def handleKvStateMessage(message: KvStateMessage): Unit = {
+    message match {
+      case msg: LookupKvStateLocation =>
+        currentJobs.get(msg.getJobId) match {
+          case Some((graph, _)) =>
+            val location = graph.getKvStateLocationRegistry.getKvStateLocation(
+              msg.getRegistrationName)
+
+            if (location != null) {
+              // the registry changes while the job runs, so the sender gets a copy
+              sender() ! decorateMessage(location.copy())
+            } else {
+              sender() ! decorateMessage(
+                Status.Failure(new UnknownKvStateLocation(msg.getRegistrationName)))
+            }
+
+          case None =>
+            sender() ! decorateMessage(Status.Failure(new IllegalStateException(
+              s"Job ${msg.getJobId} is not running.")))
+        }
+
+      case msg: NotifyKvStateRegistered =>
+        currentJobs.get(msg.getJobId) match {
+          case Some((graph, _)) =>
+            try {
+              graph.getKvStateLocationRegistry.notifyKvStateRegistered(
+                msg.getJobVertexId,
+                msg.getKeyGroupRange,
+                msg.getRegistrationName,
+                msg.getKvStateId,
+                msg.getKvStateServerAddress)
+            } catch {
+              case t: Throwable =>
+                log.error(s"Failed to register queryable state ${msg.getRegistrationName} " +
+                  s"of job ${msg.getJobId}.", t)
+            }
+
+          case None =>
+            log.debug(s"Received $msg for job ${msg.getJobId}, which is not running.")
+        }
+
+      case msg: NotifyKvStateUnregistered =>
+        currentJobs.get(msg.getJobId) match {
+          case Some((graph, _)) =>
+            graph.getKvStateLocationRegistry.notifyKvStateUnregistered(
+              msg.getJobVertexId,
+              msg.getKeyGroupRange,
+              msg.getRegistrationName,
+              msg.getKvStateId)
+
+          case None =>
+            log.debug(s"Received $msg for job ${msg.getJobId}, which is not running.")
+        }
+
+      case unknown =>
+        log.warn(s"Received unknown KvStateMessage: $unknown")
+    }
+  }
+
   /**
    * Dedicated handler for monitor info request messages.
    * 
@@ -1588,6 +1646,18 @@ class JobManager(
     // Don't remove the job yet...
     val futureOption = currentJobs.get(jobID) match {
       case Some((eg, _)) =>
+        // persistent results outlive the job's execution, but not the job itself
+        val hasPersistentResults = eg.getAllIntermediateResults.values().asScala.exists(
+          !_.getResultType.isReleasedOnConsumption)
+
+        if (hasPersistentResults) {
+          instanceManager.getAllRegisteredInstances.asScala.foreach {
+            _.getActorGateway().tell(
+              ReleasePersistentResultPartitions(jobID),
+              new AkkaActorGateway(self, leaderSessionID.orNull))
+          }
+        }
+
         val result = if (removeJobFromStateBackend) {
           val futureOption = Some(future {
             try {
@@ -18,6 +18,7 @@
 
 package org.apache.flink.runtime.messages
 
+import org.apache.flink.api.common.JobID
 import org.apache.flink.runtime.deployment.{InputChannelDeploymentDescriptor, TaskDeploymentDescriptor}
 import org.apache.flink.runtime.execution.ExecutionState
 import org.apache.flink.runtime.executiongraph.ExecutionAttemptID
@@ -139,6 +140,15 @@ object TaskMessages {
   case class FailIntermediateResultPartitions(executionID: ExecutionAttemptID)
     extends TaskMessage with RequiresLeaderSessionID
 
+  /**
+   * Releases all persistent intermediate result partitions of the job identified by
+   * [[jobID]] from the task manager. This is sent when the job is removed from the
+   * job manager.
+   *
+   * @param jobID The ID of the job, whose persistent partitions are released.
+   */
+  case class ReleasePersistentResultPartitions(jobID: JobID)
+    extends TaskMessage with RequiresLeaderSessionID
 
   // --------------------------------------------------------------------------
   //  Report Messages
@@ -21,6 +21,7 @@ package org.apache.flink.runtime.taskmanager
 import org.apache.flink.core.memory.MemoryType
 import org.apache.flink.runtime.io.disk.iomanager.IOManager.IOMode
 import org.apache.flink.runtime.io.network.netty.NettyConfig
+import org.apache.flink.runtime.query.KvStateServerConfig
 
 case class NetworkEnvironmentConfiguration(
   numNetworkBuffers: Int,
@@ -28,4 +29,6 @@ case class NetworkEnvironmentConfiguration(
   memoryType: MemoryType,
   ioMode: IOMode,
   nettyConfig: Option[NettyConfig] = None,
-  partitionRequestInitialAndMaxBackoff: (Integer, Integer) = (500, 3000))
+  partitionRequestInitialAndMaxBackoff: (Integer, Integer) = (500, 3000),
+  compressionEnabled: Boolean = false,
+  queryServerConfig: Option[KvStateServerConfig] = None)
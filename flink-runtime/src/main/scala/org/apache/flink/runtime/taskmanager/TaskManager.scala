@@ -66,6 +66,7 @@ import org.apache.flink.runtime.messages.TaskManagerMessages._
 import org.apache.flink.runtime.messages.TaskMessages._
 import org.apache.flink.runtime.messages.checkpoint.{AbstractCheckpointMessage, NotifyCheckpointComplete, TriggerCheckpoint}
 import org.apache.flink.runtime.process.ProcessReaper
+import org.apache.flink.runtime.query.KvStateServerConfig
 import org.apache.flink.runtime.security.SecurityUtils
 import org.apache.flink.runtime.security.SecurityUtils.FlinkSecuredRunner
 import org.apache.flink.runtime.util._
@@ -399,6 +400,18 @@ class TaskManager(
             }
           }
 
+        // discards the persistent intermediate result partitions of a removed job
+        case ReleasePersistentResultPartitions(jobID) =>
+          log.info(s"Discarding the persistent results of job $jobID")
+          if (network.isAssociated) {
+            try {
+              network.getPartitionManager.releasePersistentPartitions(jobID)
+            } catch {
+              case t: Throwable => killTaskManagerFatal(
+              "Fatal leak: Unable to release persistent intermediate result partition data", t)
+            }
+          }
+
         // notifies the TaskManager that the state of a task has changed.
         // the TaskManager informs the JobManager and cleans up in case the transition
         // was into a terminal state, or in case the JobManager cannot be informed of the
@@ -948,6 +961,8 @@ class TaskManager(
       new TaskManagerMetricGroup(metricsRegistry, this.runtimeInfo.getHostname, id.toString)
     
     TaskManager.instantiateStatusMetrics(taskManagerMetricGroup)
+    TaskManager.instantiateNetworkMetrics(
+      taskManagerMetricGroup.addGroup("Status").addGroup("Network"), network)
     
     // watch job manager to detect when it dies
     context.watch(jobManager)
@@ -2081,12 +2096,47 @@ object TaskManager {
 
     val ioMode : IOMode = if (syncOrAsync == "async") IOMode.ASYNC else IOMode.SYNC
 
+    // Compression of blocking intermediate results
+    val compressionEnabled = configuration.getBoolean(
+      ConfigConstants.TASK_MANAGER_NETWORK_COMPRESSION_ENABLED,
+      ConfigConstants.DEFAULT_TASK_MANAGER_NETWORK_COMPRESSION_ENABLED)
+
+    // Server for queries of the queryable states
+    val queryServerConfig = if (configuration.getBoolean(
+        ConfigConstants.QUERYABLE_STATE_SERVER_ENABLE,
+        ConfigConstants.DEFAULT_QUERYABLE_STATE_SERVER_ENABLE)) {
+
+      val queryServerPort = configuration.getInteger(
+        ConfigConstants.QUERYABLE_STATE_SERVER_PORT,
+        ConfigConstants.DEFAULT_QUERYABLE_STATE_SERVER_PORT)
+
+      val queryServerNetworkThreads = configuration.getInteger(
+        ConfigConstants.QUERYABLE_STATE_SERVER_NETWORK_THREADS,
+        ConfigConstants.DEFAULT_QUERYABLE_STATE_SERVER_NETWORK_THREADS)
+
+      val queryServerQueryThreads = configuration.getInteger(
+        ConfigConstants.QUERYABLE_STATE_SERVER_QUERY_THREADS,
+        ConfigConstants.DEFAULT_QUERYABLE_STATE_SERVER_QUERY_THREADS)
+
+      Some(
+        new KvStateServerConfig(
+          connectionInfo.address(),
+          queryServerPort,
+          if (queryServerNetworkThreads == 0) slots else queryServerNetworkThreads,
+          if (queryServerQueryThreads == 0) slots else queryServerQueryThreads)
+      )
+    } else {
+      None
+    }
+
     val networkConfig = NetworkEnvironmentConfiguration(
       numNetworkBuffers,
       pageSize,
       memType,
       ioMode,
-      nettyConfig)
+      nettyConfig,
+      compressionEnabled = compressionEnabled,
+      queryServerConfig = queryServerConfig)
 
     // ----> timeouts, library caching, profiling
 
@@ -2290,6 +2340,24 @@ object TaskManager {
     instantiateCPUMetrics(jvm.addGroup("CPU"))
   }
 
+  private def instantiateNetworkMetrics(
+      metrics: MetricGroup,
+      network: NetworkEnvironment)
+    : Unit = {
+    val statistics = network.getBufferCompressionStatistics
+    val compression = metrics.addGroup("Compression")
+
+    compression.gauge[Double, FlinkGauge[Double]]("CompressionRatio", new FlinkGauge[Double] {
+      override def getValue: Double = statistics.getCompressionRatio
+    })
+    compression.gauge[Long, FlinkGauge[Long]]("CompressionTime", new FlinkGauge[Long] {
+      override def getValue: Long = statistics.getCompressionTimeMillis
+    })
+    compression.gauge[Long, FlinkGauge[Long]]("DecompressionTime", new FlinkGauge[Long] {
+      override def getValue: Long = statistics.getDecompressionTimeMillis
+    })
+  }
+
   private def instantiateClassLoaderMetrics(metrics: MetricGroup) {
     val mxBean = ManagementFactory.getClassLoadingMXBean
 
@@ -30,14 +30,26 @@ import org.apache.flink.runtime.messages.checkpoint.AcknowledgeCheckpoint;
 import org.apache.flink.runtime.messages.checkpoint.DeclineCheckpoint;
 import org.apache.flink.runtime.messages.checkpoint.NotifyCheckpointComplete;
 import org.apache.flink.runtime.messages.checkpoint.TriggerCheckpoint;
+import org.apache.flink.runtime.state.CompositeStateHandle;
+import org.apache.flink.runtime.state.SharedStateHandle;
+import org.apache.flink.runtime.state.StateHandle;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.util.SerializedValue;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.io.InputStream;
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -83,7 +95,6 @@ public class CheckpointCoordinatorTest {
 				jid,
 				600000,
 				600000,
-				42,
 				new ExecutionVertex[] { triggerVertex1, triggerVertex2 },
 				new ExecutionVertex[] { ackVertex1, ackVertex2 },
 				new ExecutionVertex[] {},
@@ -134,7 +145,6 @@ public class CheckpointCoordinatorTest {
 				jid,
 				600000,
 				600000,
-				42,
 				new ExecutionVertex[] { triggerVertex1, triggerVertex2 },
 				new ExecutionVertex[] { ackVertex1, ackVertex2 },
 				new ExecutionVertex[] {},
@@ -183,7 +193,6 @@ public class CheckpointCoordinatorTest {
 				jid,
 				600000,
 				600000,
-				42,
 				new ExecutionVertex[] { triggerVertex1, triggerVertex2 },
 				new ExecutionVertex[] { ackVertex1, ackVertex2 },
 				new ExecutionVertex[] {},
@@ -233,7 +242,6 @@ public class CheckpointCoordinatorTest {
 				jid,
 				600000,
 				600000,
-				42,
 				new ExecutionVertex[] { vertex1, vertex2 },
 				new ExecutionVertex[] { vertex1, vertex2 },
 				new ExecutionVertex[] { vertex1, vertex2 },
@@ -356,7 +364,6 @@ public class CheckpointCoordinatorTest {
 				jid,
 				600000,
 				600000,
-				42,
 				new ExecutionVertex[] { vertex1, vertex2 },
 				new ExecutionVertex[] { vertex1, vertex2 },
 				new ExecutionVertex[] { vertex1, vertex2 },
@@ -475,7 +482,6 @@ public class CheckpointCoordinatorTest {
 				jid,
 				600000,
 				600000,
-				42,
 				new ExecutionVertex[] { vertex1, vertex2 },
 				new ExecutionVertex[] { vertex1, vertex2 },
 				new ExecutionVertex[] { vertex1, vertex2 },
@@ -592,6 +598,83 @@ public class CheckpointCoordinatorTest {
 		}
 	}
 
+	/**
+	 * Tests that the shared state of the checkpoints is discarded when the last completed
+	 * checkpoint referencing it is subsumed, and that a checkpoint referencing discarded
+	 * shared state is not completed.
+	 */
+	@Test
+	public void testSharedStateOfSubsumedCheckpoints() throws Exception {
+		final JobID jid = new JobID();
+		final ExecutionAttemptID attemptID = new ExecutionAttemptID();
+		ExecutionVertex vertex = mockExecutionVertex(attemptID);
+		when(vertex.getTotalNumberOfParallelSubtasks()).thenReturn(1);
+
+		CheckpointCoordinator coord = new CheckpointCoordinator(
+			jid,
+			600000,
+			600000,
+			new ExecutionVertex[] { vertex },
+			new ExecutionVertex[] { vertex },
+			new ExecutionVertex[] { vertex },
+			cl,
+			new StandaloneCheckpointIDCounter(),
+			new StandaloneCompletedCheckpointStore(1, cl),
+			RecoveryMode.STANDALONE);
+
+		TestSharedStateHandle.DISCARDED.clear();
+
+		SharedStateHandle stateA = new SharedStateHandle(new TestSharedStateHandle("A"), "A", 1L);
+		SharedStateHandle stateB = new SharedStateHandle(new TestSharedStateHandle("B"), "B", 2L);
+
+		// checkpoint 1 writes A
+		long checkpointId1 = triggerAndAcknowledge(coord, jid, attemptID, stateA);
+		assertEquals(1L, checkpointId1);
+		assertEquals(1, coord.getSharedStateRegistry().getReferenceCount("A"));
+
+		// checkpoint 2 references A and writes B, checkpoint 1 is subsumed
+		triggerAndAcknowledge(coord, jid, attemptID, stateA, stateB);
+		assertEquals(1, coord.getSharedStateRegistry().getReferenceCount("A"));
+		assertEquals(1, coord.getSharedStateRegistry().getReferenceCount("B"));
+		assertTrue(TestSharedStateHandle.DISCARDED.isEmpty());
+
+		// checkpoint 3 only references B, checkpoint 2 is subsumed
+		long checkpointId3 = triggerAndAcknowledge(coord, jid, attemptID, stateB);
+		assertEquals(0, coord.getSharedStateRegistry().getReferenceCount("A"));
+		assertEquals(Collections.singleton("A"), TestSharedStateHandle.DISCARDED);
+
+		// checkpoint 4 references the discarded A and must not complete. The newly written C
+		// is discarded with it, the B of checkpoint 3 is retained
+		SharedStateHandle stateC = new SharedStateHandle(new TestSharedStateHandle("C"), "C", 4L);
+		triggerAndAcknowledge(coord, jid, attemptID, stateA, stateB, stateC);
+		assertEquals(0, coord.getNumberOfPendingCheckpoints());
+		assertEquals(1, coord.getNumberOfRetainedSuccessfulCheckpoints());
+		assertEquals(checkpointId3, coord.getSuccessfulCheckpoints().get(0).getCheckpointID());
+		assertEquals(1, coord.getSharedStateRegistry().getReferenceCount("B"));
+		assertEquals(new HashSet<>(Arrays.asList("A", "C")), TestSharedStateHandle.DISCARDED);
+
+		coord.shutdown();
+
+		assertEquals(0, coord.getSharedStateRegistry().getReferenceCount("B"));
+		assertTrue(TestSharedStateHandle.DISCARDED.contains("B"));
+	}
+
+	private static long triggerAndAcknowledge(
+			CheckpointCoordinator coord,
+			JobID jid,
+			ExecutionAttemptID attemptID,
+			SharedStateHandle... sharedStates) throws Exception {
+
+		assertTrue(coord.triggerCheckpoint(System.currentTimeMillis()));
+		long checkpointId = coord.getPendingCheckpoints().keySet().iterator().next();
+
+		SerializedValue<StateHandle<?>> state = new SerializedValue<StateHandle<?>>(
+			new TestCompositeStateHandle(Arrays.asList(sharedStates)));
+		coord.receiveAcknowledgeMessage(new AcknowledgeCheckpoint(jid, attemptID, checkpointId, state, 0));
+
+		return checkpointId;
+	}
+
 	@Test
 	public void testMultipleConcurrentCheckpoints() {
 		try {
@@ -624,7 +707,6 @@ public class CheckpointCoordinatorTest {
 				jid,
 				600000,
 				600000,
-				42,
 				new ExecutionVertex[] { triggerVertex1, triggerVertex2 },
 				new ExecutionVertex[] { ackVertex1, ackVertex2, ackVertex3 },
 				new ExecutionVertex[] { commitVertex },
@@ -758,7 +840,6 @@ public class CheckpointCoordinatorTest {
 				jid,
 				600000,
 				600000,
-				42,
 				new ExecutionVertex[] { triggerVertex1, triggerVertex2 },
 				new ExecutionVertex[] { ackVertex1, ackVertex2, ackVertex3 },
 				new ExecutionVertex[] { commitVertex },
@@ -878,7 +959,6 @@ public class CheckpointCoordinatorTest {
 				jid,
 				600000,
 				200,
-				42,
 				new ExecutionVertex[] { triggerVertex },
 				new ExecutionVertex[] { ackVertex1, ackVertex2 },
 				new ExecutionVertex[] { commitVertex },
@@ -945,7 +1025,6 @@ public class CheckpointCoordinatorTest {
 				jid,
 				200000,
 				200000,
-				42,
 				new ExecutionVertex[] { triggerVertex },
 				new ExecutionVertex[] { ackVertex1, ackVertex2 },
 				new ExecutionVertex[] { commitVertex },
@@ -1023,7 +1102,6 @@ public class CheckpointCoordinatorTest {
 				jid,
 				10,		// periodic interval is 10 ms
 				200000,	// timeout is very long (200 s)
-				42,
 				new ExecutionVertex[] { triggerVertex },
 				new ExecutionVertex[] { ackVertex },
 				new ExecutionVertex[] { commitVertex },
@@ -1115,7 +1193,6 @@ public class CheckpointCoordinatorTest {
 				200000,	// timeout is very long (200 s)
 				500,	// 500ms delay between checkpoints
 				10,
-				42,
 				new ExecutionVertex[] { vertex1 },
 				new ExecutionVertex[] { vertex1 },
 				new ExecutionVertex[] { vertex1 },
@@ -1168,6 +1245,83 @@ public class CheckpointCoordinatorTest {
 		}		
 	}
 
+	/**
+	 * This test verifies that the minimum pause between checkpoints starts over when a
+	 * checkpoint completes, so that a slow checkpoint is not immediately followed by the next.
+	 */
+	@Test
+	public void testMinPauseAfterCompletedCheckpoint() {
+		try {
+			final JobID jid = new JobID();
+
+			final ExecutionAttemptID attemptID1 = new ExecutionAttemptID();
+			ExecutionVertex vertex1 = mockExecutionVertex(attemptID1);
+
+			final AtomicInteger numCalls = new AtomicInteger();
+
+			doAnswer(new Answer<Void>() {
+				@Override
+				public Void answer(InvocationOnMock invocation) throws Throwable {
+					if (invocation.getArguments()[0] instanceof TriggerCheckpoint) {
+						numCalls.incrementAndGet();
+					}
+					return null;
+				}
+			}).when(vertex1).sendMessageToCurrentExecution(any(Serializable.class), any(ExecutionAttemptID.class));
+
+			CheckpointCoordinator coord = new CheckpointCoordinator(
+				jid,
+				10,		// periodic interval is 10 ms
+				200000,	// timeout is very long (200 s)
+				500,	// 500ms delay between checkpoints
+				1,
+				new ExecutionVertex[] { vertex1 },
+				new ExecutionVertex[] { vertex1 },
+				new ExecutionVertex[] { vertex1 },
+				cl,
+				new StandaloneCheckpointIDCounter(),
+				new StandaloneCompletedCheckpointStore(2, cl),
+				RecoveryMode.STANDALONE,
+				new DisabledCheckpointStatsTracker());
+
+			coord.startCheckpointScheduler();
+
+			// wait until the first checkpoint was triggered
+			for (int x = 0; x < 20 && numCalls.get() == 0; x++) {
+				Thread.sleep(100);
+			}
+			assertEquals(1, numCalls.get());
+
+			// the checkpoint takes longer than the minimum pause
+			Thread.sleep(600);
+			assertEquals(1, numCalls.get());
+
+			long completionTime = System.currentTimeMillis();
+			coord.receiveAcknowledgeMessage(new AcknowledgeCheckpoint(jid, attemptID1, 1L));
+
+			// the next checkpoint waits for the minimum pause after the completion
+			Thread.sleep(200);
+			if (System.currentTimeMillis() - completionTime < 500) {
+				assertEquals(1, numCalls.get());
+			}
+
+			long timeout = System.currentTimeMillis() + 60000;
+			while (numCalls.get() < 2 && System.currentTimeMillis() < timeout) {
+				Thread.sleep(20);
+			}
+			assertEquals(2, numCalls.get());
+			assertTrue(System.currentTimeMillis() - completionTime >= 500);
+
+			coord.stopCheckpointScheduler();
+
+			coord.shutdown();
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
 	@Test
 	public void testMaxConcurrentAttempts1() {
 		testMaxConcurrentAttemps(1);
@@ -1212,7 +1366,6 @@ public class CheckpointCoordinatorTest {
 				200000,	// timeout is very long (200 s)
 				0L,		// no extra delay
 				maxConcurrentAttempts,
-				42,
 				new ExecutionVertex[] { triggerVertex },
 				new ExecutionVertex[] { ackVertex },
 				new ExecutionVertex[] { commitVertex }, cl, new StandaloneCheckpointIDCounter
@@ -1283,7 +1436,6 @@ public class CheckpointCoordinatorTest {
 				200000,	// timeout is very long (200 s)
 				0L,		// no extra delay
 				maxConcurrentAttempts, // max two concurrent checkpoints
-				42,
 				new ExecutionVertex[] { triggerVertex },
 				new ExecutionVertex[] { ackVertex },
 				new ExecutionVertex[] { commitVertex }, cl, new StandaloneCheckpointIDCounter
@@ -1363,7 +1515,6 @@ public class CheckpointCoordinatorTest {
 				200000,	// timeout is very long (200 s)
 				0L,		// no extra delay
 				2, // max two concurrent checkpoints
-				42,
 				new ExecutionVertex[] { triggerVertex },
 				new ExecutionVertex[] { ackVertex },
 				new ExecutionVertex[] { commitVertex }, cl, new StandaloneCheckpointIDCounter(),
@@ -1415,4 +1566,68 @@ public class CheckpointCoordinatorTest {
 
 		return vertex;
 	}
+
+	private static class TestSharedStateHandle implements StreamStateHandle {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The names of the discarded handles, shared by all deserialized copies */
+		static final Set<String> DISCARDED = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+		private final String name;
+
+		TestSharedStateHandle(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public InputStream getState(ClassLoader userCodeClassLoader) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void discardState() {
+			DISCARDED.add(name);
+		}
+
+		@Override
+		public long getStateSize() {
+			return 0;
+		}
+
+		@Override
+		public <T extends Serializable> StateHandle<T> toSerializableHandle() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private static class TestCompositeStateHandle implements StateHandle<Serializable>, CompositeStateHandle {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<SharedStateHandle> sharedStates;
+
+		TestCompositeStateHandle(List<SharedStateHandle> sharedStates) {
+			this.sharedStates = sharedStates;
+		}
+
+		@Override
+		public Serializable getState(ClassLoader userCodeClassLoader) {
+			return null;
+		}
+
+		@Override
+		public void discardState() {
+		}
+
+		@Override
+		public long getStateSize() {
+			return 0;
+		}
+
+		@Override
+		public Collection<SharedStateHandle> getSharedStates() {
+			return sharedStates;
+		}
+	}
 }
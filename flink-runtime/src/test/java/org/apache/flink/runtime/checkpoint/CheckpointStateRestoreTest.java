@@ -84,7 +84,6 @@ public class CheckpointStateRestoreTest {
 				jid,
 				200000L,
 				200000L,
-				42,
 				new ExecutionVertex[] { stateful1, stateful2, stateful3, stateless1, stateless2 },
 				new ExecutionVertex[] { stateful1, stateful2, stateful3, stateless1, stateless2 },
 				new ExecutionVertex[0],
@@ -161,7 +160,6 @@ public class CheckpointStateRestoreTest {
 				jid,
 				200000L,
 				200000L,
-				42,
 				new ExecutionVertex[] { stateful1, stateful2, stateful3, stateless1, stateless2 },
 				new ExecutionVertex[] { stateful1, stateful2, stateful3, stateless1, stateless2 },
 				new ExecutionVertex[0],
@@ -209,7 +207,6 @@ public class CheckpointStateRestoreTest {
 				new JobID(),
 				200000L,
 				200000L,
-				42,
 				new ExecutionVertex[] { mock(ExecutionVertex.class) },
 				new ExecutionVertex[] { mock(ExecutionVertex.class) },
 				new ExecutionVertex[0], cl,
@@ -255,6 +252,7 @@ public class CheckpointStateRestoreTest {
 	private ExecutionJobVertex mockExecutionJobVertex(JobVertexID id, ExecutionVertex[] vertices) {
 		ExecutionJobVertex vertex = mock(ExecutionJobVertex.class);
 		when(vertex.getParallelism()).thenReturn(vertices.length);
+		when(vertex.getNumberOfKeyGroups()).thenReturn(vertices.length);
 		when(vertex.getJobVertexId()).thenReturn(id);
 		when(vertex.getTaskVertices()).thenReturn(vertices);
 		return vertex;
@@ -814,7 +814,6 @@ public class SavepointCoordinatorTest extends TestLogger {
 				jobId,
 				checkpointTimeout,
 				checkpointTimeout,
-				42,
 				triggerVertices,
 				ackVertices,
 				commitVertices,
@@ -980,6 +979,7 @@ public class SavepointCoordinatorTest extends TestLogger {
 		when(jobVertex.getJobId()).thenReturn(jobId);
 		when(jobVertex.getJobVertexId()).thenReturn(jobVertexId);
 		when(jobVertex.getParallelism()).thenReturn(parallelism);
+		when(jobVertex.getNumberOfKeyGroups()).thenReturn(parallelism);
 
 		ExecutionVertex[] vertices = new ExecutionVertex[parallelism];
 
@@ -19,6 +19,7 @@
 package org.apache.flink.runtime.checkpoint.stats;
 
 import org.apache.flink.api.common.JobID;
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
 import org.apache.flink.runtime.checkpoint.CompletedCheckpoint;
 import org.apache.flink.runtime.checkpoint.SubtaskState;
 import org.apache.flink.runtime.executiongraph.ExecutionJobVertex;
@@ -43,6 +44,7 @@ import java.util.Set;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -148,6 +150,41 @@ public class SimpleCheckpointStatsTrackerTest {
 		assertTrue(cache.isEmpty());
 	}
 
+	@Test
+	public void testSubtaskCheckpointMetrics() throws Exception {
+		CompletedCheckpoint[] checkpoints = generateRandomCheckpoints(1);
+		CompletedCheckpoint checkpoint = checkpoints[0];
+		List<ExecutionJobVertex> tasksToWaitFor = createTasksToWaitFor(checkpoint);
+		CheckpointStatsTracker tracker = new SimpleCheckpointStatsTracker(10, tasksToWaitFor);
+
+		JobVertexID operatorId = checkpoint.getTaskStates().keySet().iterator().next();
+		int parallelism = checkpoint.getTaskStates().get(operatorId).getParallelism();
+
+		CheckpointMetrics[] metrics = new CheckpointMetrics[parallelism];
+		metrics[0] = new CheckpointMetrics()
+				.setAlignmentDurationNanos(5_000_000L)
+				.setBytesBufferedInAlignment(1024L)
+				.setSlowestChannel(3)
+				.setSyncDurationMillis(7L)
+				.setAsyncDurationMillis(11L);
+
+		Map<JobVertexID, CheckpointMetrics[]> taskMetrics = new HashMap<>();
+		taskMetrics.put(operatorId, metrics);
+		// metrics of vertices, which are not tracked, are ignored
+		taskMetrics.put(new JobVertexID(), new CheckpointMetrics[] { new CheckpointMetrics() });
+		checkpoint.setTaskMetrics(taskMetrics);
+
+		tracker.onCompletedCheckpoint(checkpoint);
+
+		OperatorCheckpointStats operatorStats = tracker.getOperatorStats(operatorId).get();
+		assertEquals(metrics[0], operatorStats.getSubTaskMetrics(0));
+		assertNull(operatorStats.getSubTaskMetrics(1));
+		assertNull(operatorStats.getSubTaskMetrics(parallelism));
+
+		// the state sizes and durations are not affected by the metrics
+		verifySubtaskStats(tracker, tasksToWaitFor, checkpoint);
+	}
+
 	// ------------------------------------------------------------------------
 
 	private static void verifyJobStats(
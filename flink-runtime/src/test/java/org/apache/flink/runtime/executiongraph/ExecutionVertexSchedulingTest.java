@@ -37,6 +37,8 @@ import org.junit.Test;
 
 import org.mockito.Matchers;
 
+import java.util.Collections;
+
 public class ExecutionVertexSchedulingTest {
 
 	@Test
@@ -130,4 +132,38 @@ public class ExecutionVertexSchedulingTest {
 			fail(e.getMessage());
 		}
 	}
+
+	@Test
+	public void testPreferPriorLocationWhenRestarted() {
+		try {
+			final ExecutionJobVertex ejv = getExecutionVertex(new JobVertexID());
+			final ExecutionVertex vertex = new ExecutionVertex(ejv, 0, new IntermediateResult[0],
+					AkkaUtils.getDefaultTimeout());
+
+			final Instance instance = getInstance(new ExecutionGraphTestUtils.SimpleActorGateway(TestingUtils.defaultExecutionContext()));
+			final SimpleSlot slot = instance.allocateSimpleSlot(ejv.getJobId());
+
+			Scheduler scheduler = mock(Scheduler.class);
+			when(scheduler.scheduleImmediately(Matchers.any(ScheduledUnit.class))).thenReturn(slot);
+
+			// without a prior execution, there is no preference
+			assertFalse(vertex.getPreferredLocations().iterator().hasNext());
+
+			vertex.scheduleForExecution(scheduler, false);
+			vertex.fail(new Exception("test failure"));
+			assertEquals(ExecutionState.FAILED, vertex.getExecutionState());
+
+			// the restarted vertex prefers the instance that may have its local state
+			vertex.resetForNewExecution();
+			assertEquals(Collections.singleton(instance), vertex.getPreferredLocations());
+
+			// unless the instance is gone
+			instance.markDead();
+			assertFalse(vertex.getPreferredLocations().iterator().hasNext());
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
 }
\ No newline at end of file
@@ -32,11 +32,13 @@ import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionType;
 import org.apache.flink.runtime.io.network.partition.consumer.SingleInputGate;
 import org.apache.flink.runtime.messages.JobManagerMessages.ScheduleOrUpdateConsumers;
+import org.apache.flink.runtime.query.KvStateServerConfig;
 import org.apache.flink.runtime.taskmanager.NetworkEnvironmentConfiguration;
 import org.apache.flink.runtime.taskmanager.Task;
 import org.apache.flink.runtime.testingUtils.TestingUtils;
 import org.apache.flink.util.NetUtils;
 import org.junit.Test;
+import scala.Option;
 import scala.Some;
 import scala.Tuple2;
 import scala.concurrent.duration.FiniteDuration;
@@ -80,7 +82,7 @@ public class NetworkEnvironmentTest {
 			NetworkEnvironmentConfiguration config = new NetworkEnvironmentConfiguration(
 					NUM_BUFFERS, BUFFER_SIZE, MemoryType.HEAP,
 					IOManager.IOMode.SYNC, new Some<>(nettyConf),
-					new Tuple2<>(0, 0));
+					new Tuple2<>(0, 0), false, Option.<KvStateServerConfig>empty());
 
 			NetworkEnvironment env = new NetworkEnvironment(
 				TestingUtils.defaultExecutionContext(),
@@ -173,7 +175,9 @@ public class NetworkEnvironmentTest {
 				MemoryType.HEAP,
 				IOManager.IOMode.SYNC,
 				Some.<NettyConfig>empty(),
-				new Tuple2<>(0, 0));
+				new Tuple2<>(0, 0),
+				false,
+				Option.<KvStateServerConfig>empty());
 
 		NetworkEnvironment env = new NetworkEnvironment(
 				TestingUtils.defaultExecutionContext(),
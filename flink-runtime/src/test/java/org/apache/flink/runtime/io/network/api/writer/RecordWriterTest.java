@@ -18,13 +18,20 @@
 
 package org.apache.flink.runtime.io.network.api.writer;
 
+import org.apache.flink.api.common.typeutils.base.array.IntPrimitiveArraySerializer;
 import org.apache.flink.core.memory.MemoryType;
+import org.apache.flink.runtime.io.network.api.serialization.AdaptiveSpanningRecordDeserializer;
+import org.apache.flink.runtime.io.network.api.serialization.ObjectBufferDeserializer;
+import org.apache.flink.runtime.io.network.api.serialization.RecordDeserializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
 import org.apache.flink.runtime.io.network.buffer.BufferPool;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
 import org.apache.flink.runtime.io.network.buffer.NetworkBufferPool;
+import org.apache.flink.runtime.io.network.buffer.ObjectBuffer;
 import org.apache.flink.runtime.io.network.util.TestBufferFactory;
 import org.apache.flink.runtime.io.network.util.TestTaskEvent;
+import org.apache.flink.runtime.plugable.NonReusingDeserializationDelegate;
+import org.apache.flink.runtime.plugable.SerializationDelegate;
 import org.apache.flink.types.IntValue;
 
 import org.junit.Assert;
@@ -37,6 +44,8 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -46,6 +55,8 @@ import java.util.concurrent.Future;
 import static org.apache.flink.util.Preconditions.checkNotNull;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
@@ -293,10 +304,214 @@ public class RecordWriterTest {
 		recordWriter.flush();
 	}
 
+	// ---------------------------------------------------------------------------------------------
+	// Broadcast tests
+	// ---------------------------------------------------------------------------------------------
+
+	/**
+	 * Tests that the records of a broadcast channel selector are serialized once and that all
+	 * channels get a reference to the same buffers.
+	 */
+	@Test
+	public void testBroadcastSerializesRecordsOnce() throws Exception {
+		final int numChannels = 4;
+
+		// Each buffer holds two records (length + int value)
+		BufferProvider bufferProvider = mock(BufferProvider.class);
+		when(bufferProvider.requestBufferBlocking()).thenAnswer(new Answer<Buffer>() {
+			@Override
+			public Buffer answer(InvocationOnMock invocation) throws Throwable {
+				return TestBufferFactory.createBuffer(16);
+			}
+		});
+
+		final List<List<Buffer>> writtenBuffers = new ArrayList<>();
+		for (int i = 0; i < numChannels; i++) {
+			writtenBuffers.add(new ArrayList<Buffer>());
+		}
+
+		ResultPartitionWriter partitionWriter = mock(ResultPartitionWriter.class);
+		when(partitionWriter.getBufferProvider()).thenReturn(bufferProvider);
+		when(partitionWriter.getNumberOfOutputChannels()).thenReturn(numChannels);
+
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				Buffer buffer = (Buffer) invocation.getArguments()[0];
+				int targetChannel = (Integer) invocation.getArguments()[1];
+				writtenBuffers.get(targetChannel).add(buffer);
+
+				return null;
+			}
+		}).when(partitionWriter).writeBuffer(any(Buffer.class), anyInt());
+
+		RecordWriter<IntValue> recordWriter = new RecordWriter<>(partitionWriter, new BroadcastChannelSelector());
+
+		for (int i = 0; i < 10; i++) {
+			recordWriter.emit(new IntValue(i));
+		}
+
+		// A partially filled buffer is written on flush
+		recordWriter.emit(new IntValue(10));
+		recordWriter.flush();
+
+		// 5 full buffers and the partially filled buffer
+		verify(bufferProvider, times(6)).requestBufferBlocking();
+
+		// The records can be read from every channel
+		AdaptiveSpanningRecordDeserializer<IntValue> deserializer = new AdaptiveSpanningRecordDeserializer<>();
+		IntValue value = new IntValue();
+		int expected = 0;
+
+		for (Buffer buffer : writtenBuffers.get(numChannels - 1)) {
+			deserializer.setNextMemorySegment(buffer.getMemorySegment(), buffer.getSize());
+
+			while (deserializer.getNextRecord(value).isFullRecord()) {
+				assertEquals(expected++, value.getValue());
+			}
+		}
+
+		assertEquals(11, expected);
+
+		for (int i = 0; i < 6; i++) {
+			Buffer buffer = writtenBuffers.get(0).get(i);
+
+			for (int channel = 0; channel < numChannels; channel++) {
+				assertEquals(6, writtenBuffers.get(channel).size());
+				assertSame(buffer, writtenBuffers.get(channel).get(i));
+			}
+
+			// The buffer is recycled after every channel released its reference
+			for (int channel = 0; channel < numChannels; channel++) {
+				assertFalse(buffer.isRecycled());
+				buffer.recycle();
+			}
+			assertTrue(buffer.isRecycled());
+		}
+
+		recordWriter.clearBuffers();
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	// Object handoff tests
+	// ---------------------------------------------------------------------------------------------
+
+	/**
+	 * Tests that records are handed off as copies in object buffers after the object handoff has
+	 * been enabled for a channel, and that the records serialized before go first.
+	 */
+	@Test
+	public void testObjectHandoff() throws Exception {
+		BufferProvider bufferProvider = mock(BufferProvider.class);
+		when(bufferProvider.requestBufferBlocking()).thenAnswer(new Answer<Buffer>() {
+			@Override
+			public Buffer answer(InvocationOnMock invocation) throws Throwable {
+				return TestBufferFactory.createBuffer(128);
+			}
+		});
+
+		final List<Buffer> writtenBuffers = new ArrayList<>();
+
+		ResultPartitionWriter partitionWriter = mock(ResultPartitionWriter.class);
+		when(partitionWriter.getBufferProvider()).thenReturn(bufferProvider);
+		when(partitionWriter.getNumberOfOutputChannels()).thenReturn(1);
+		when(partitionWriter.isObjectHandoffEnabled(0)).thenReturn(false);
+
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				writtenBuffers.add((Buffer) invocation.getArguments()[0]);
+				return null;
+			}
+		}).when(partitionWriter).writeBuffer(any(Buffer.class), anyInt());
+
+		RecordWriter<SerializationDelegate<int[]>> recordWriter = new RecordWriter<>(partitionWriter);
+		SerializationDelegate<int[]> delegate = new SerializationDelegate<>(IntPrimitiveArraySerializer.INSTANCE);
+
+		// The record is modified in place, so that the handed off records have to be copies
+		int[] record = new int[1];
+		delegate.setInstance(record);
+
+		recordWriter.emit(delegate);
+
+		when(partitionWriter.isObjectHandoffEnabled(0)).thenReturn(true);
+
+		int numRecords = RecordWriter.OBJECT_BUFFER_CAPACITY + 2;
+		for (int i = 1; i < numRecords; i++) {
+			record[0] = i;
+			recordWriter.emit(delegate);
+		}
+
+		// The full object buffer has been written, the partially filled one is written on flush
+		assertEquals(2, writtenBuffers.size());
+		recordWriter.flush();
+		assertEquals(3, writtenBuffers.size());
+
+		NonReusingDeserializationDelegate<int[]> target =
+				new NonReusingDeserializationDelegate<>(IntPrimitiveArraySerializer.INSTANCE);
+
+		// The serialized record
+		Buffer serialized = writtenBuffers.get(0);
+		assertFalse(serialized instanceof ObjectBuffer);
+
+		AdaptiveSpanningRecordDeserializer<NonReusingDeserializationDelegate<int[]>> deserializer =
+				new AdaptiveSpanningRecordDeserializer<>();
+		deserializer.setNextBuffer(serialized);
+
+		assertTrue(deserializer.getNextRecord(target).isFullRecord());
+		assertEquals(0, target.getInstance()[0]);
+		assertFalse(deserializer.hasUnfinishedData());
+
+		// The handed off records
+		ObjectBufferDeserializer<int[]> objectDeserializer = new ObjectBufferDeserializer<>();
+		int expected = 1;
+
+		for (Buffer buffer : writtenBuffers.subList(1, writtenBuffers.size())) {
+			assertTrue(buffer instanceof ObjectBuffer);
+			assertEquals(0, buffer.getSize());
+
+			objectDeserializer.setNextBuffer(buffer);
+
+			RecordDeserializer.DeserializationResult result;
+			do {
+				result = objectDeserializer.getNextRecord(target);
+
+				assertTrue(result.isFullRecord());
+				assertTrue(target.getInstance() != record);
+				assertEquals(expected++, target.getInstance()[0]);
+			}
+			while (!result.isBufferConsumed());
+
+			objectDeserializer.getCurrentBuffer().recycle();
+			assertTrue(buffer.isRecycled());
+		}
+
+		assertEquals(numRecords, expected);
+
+		recordWriter.clearBuffers();
+	}
+
 	// ---------------------------------------------------------------------------------------------
 	// Helpers
 	// ---------------------------------------------------------------------------------------------
 
+	private static class BroadcastChannelSelector implements ChannelSelector<IntValue> {
+
+		@Override
+		public int[] selectChannels(IntValue record, int numChannels) {
+			int[] channels = new int[numChannels];
+			for (int i = 0; i < numChannels; i++) {
+				channels[i] = i;
+			}
+			return channels;
+		}
+
+		@Override
+		public boolean isBroadcast() {
+			return true;
+		}
+	}
+
 	private BufferProvider createBufferProvider(Buffer... buffers)
 			throws IOException, InterruptedException {
 
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.buffer;
+
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+public class BufferCompressorTest {
+
+	private final BufferCompressionStatistics statistics = new BufferCompressionStatistics();
+
+	private final BufferCompressor compressor = new BufferCompressor(statistics);
+
+	private final BufferDecompressor decompressor = new BufferDecompressor(statistics);
+
+	@Test
+	public void testCompressAndDecompressInPlace() throws Exception {
+		Buffer buffer = createBuffer(1024);
+		for (int i = 0; i < 1024; i += 4) {
+			buffer.getMemorySegment().putInt(i, i % 16);
+		}
+
+		assertTrue(compressor.compress(buffer));
+		assertTrue(buffer.isCompressed());
+		assertTrue(buffer.getSize() < 1024);
+
+		// Compressing twice has no effect
+		int compressedSize = buffer.getSize();
+		assertTrue(compressor.compress(buffer));
+		assertEquals(compressedSize, buffer.getSize());
+
+		decompressor.decompress(buffer, buffer);
+
+		assertFalse(buffer.isCompressed());
+		assertEquals(1024, buffer.getSize());
+		for (int i = 0; i < 1024; i += 4) {
+			assertEquals(i % 16, buffer.getMemorySegment().getInt(i));
+		}
+
+		assertEquals(1024, statistics.getNumBytesBeforeCompression());
+		assertEquals(compressedSize, statistics.getNumBytesAfterCompression());
+		assertTrue(statistics.getCompressionRatio() > 1.0);
+	}
+
+	@Test
+	public void testDecompressIntoOtherBuffer() throws Exception {
+		Buffer source = createBuffer(1024);
+		Buffer target = createBuffer(1024);
+
+		assertTrue(compressor.compress(source));
+
+		decompressor.decompress(source, target);
+
+		assertTrue(source.isCompressed());
+		assertFalse(target.isCompressed());
+		assertEquals(1024, target.getSize());
+	}
+
+	@Test
+	public void testIncompressibleDataIsNotCompressed() {
+		Buffer buffer = createBuffer(1024);
+		byte[] data = new byte[1024];
+		new Random(42).nextBytes(data);
+		buffer.getMemorySegment().put(0, data);
+
+		assertFalse(compressor.compress(buffer));
+		assertFalse(buffer.isCompressed());
+		assertEquals(1024, buffer.getSize());
+		assertEquals(1.0, statistics.getCompressionRatio(), 0.0);
+	}
+
+	@Test
+	public void testSharedBufferIsOnlyCompressedOnce() {
+		Buffer buffer = createBuffer(1024);
+		byte[] data = new byte[1024];
+		new Random(42).nextBytes(data);
+		buffer.getMemorySegment().put(0, data);
+
+		// A broadcast buffer with incompressible data is handed to every subpartition
+		for (int i = 0; i < 4; i++) {
+			assertFalse(compressor.compress(buffer));
+		}
+
+		assertTrue(buffer.isCompressionAttempted());
+		assertEquals(1024, statistics.getNumBytesBeforeCompression());
+		assertEquals(1024, statistics.getNumBytesAfterCompression());
+	}
+
+	@Test
+	public void testEventsAreNotCompressed() {
+		Buffer event = createBuffer(1024);
+		event.tagAsEvent();
+
+		assertFalse(compressor.compress(event));
+		assertFalse(event.isCompressed());
+	}
+
+	@Test
+	public void testDecompressIntoTooSmallBuffer() throws Exception {
+		Buffer source = createBuffer(1024);
+		assertTrue(compressor.compress(source));
+
+		try {
+			decompressor.decompress(source, createBuffer(512));
+			fail("Did not throw expected exception");
+		}
+		catch (IOException expected) {
+		}
+	}
+
+	private static Buffer createBuffer(int size) {
+		MemorySegment segment = MemorySegmentFactory.allocateUnpooledSegment(size);
+		return new Buffer(segment, mock(BufferRecycler.class));
+	}
+}
@@ -19,13 +19,22 @@
 package org.apache.flink.runtime.io.network.netty;
 
 import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.flink.core.memory.MemorySegmentFactory;
 import org.apache.flink.runtime.execution.CancelTaskException;
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
+import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.FreeingBufferRecycler;
 import org.apache.flink.runtime.io.network.partition.ResultSubpartitionView;
 import org.apache.flink.runtime.io.network.partition.consumer.InputChannelID;
+import org.apache.flink.runtime.util.event.NotificationListener;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -42,7 +51,7 @@ public class PartitionRequestQueueTest {
 		when(view.getFailureCause()).thenReturn(new RuntimeException("Expected test exception"));
 
 		// Enqueue the erroneous view
-		queue.enqueue(view, new InputChannelID());
+		queue.enqueue(view, new InputChannelID(), 0);
 		ch.runPendingTasks();
 
 		// Read the enqueued msg
@@ -53,4 +62,70 @@ public class PartitionRequestQueueTest {
 		NettyMessage.ErrorResponse err = (NettyMessage.ErrorResponse) msg;
 		assertTrue(err.cause instanceof CancelTaskException);
 	}
+
+	/**
+	 * Tests that data buffers are only sent with credit of the receiver and that the queue
+	 * continues after the receiver announced new credit.
+	 */
+	@Test
+	public void testDataBuffersRequireCredit() throws Exception {
+		PartitionRequestQueue queue = new PartitionRequestQueue();
+
+		EmbeddedChannel ch = new EmbeddedChannel(queue);
+
+		ResultSubpartitionView view = mock(ResultSubpartitionView.class);
+		when(view.getNextBuffer()).thenReturn(createDataBuffer(), createDataBuffer(), null);
+		when(view.registerListener(any(NotificationListener.class))).thenReturn(true);
+
+		InputChannelID receiverId = new InputChannelID();
+
+		queue.enqueue(view, receiverId, 1);
+		ch.runPendingTasks();
+
+		assertBufferResponse(ch.readOutbound(), receiverId, 0);
+		assertNull(ch.readOutbound());
+
+		queue.addCredit(receiverId, 1);
+		ch.runPendingTasks();
+
+		assertBufferResponse(ch.readOutbound(), receiverId, 1);
+		assertNull(ch.readOutbound());
+	}
+
+	/**
+	 * Tests that events are sent to receivers without credit.
+	 */
+	@Test
+	public void testEventsDoNotRequireCredit() throws Exception {
+		PartitionRequestQueue queue = new PartitionRequestQueue();
+
+		EmbeddedChannel ch = new EmbeddedChannel(queue);
+
+		ResultSubpartitionView view = mock(ResultSubpartitionView.class);
+		when(view.getNextBuffer()).thenReturn(EventSerializer.toBuffer(new CheckpointBarrier(1L, 1L)), null);
+		when(view.registerListener(any(NotificationListener.class))).thenReturn(true);
+
+		InputChannelID receiverId = new InputChannelID();
+
+		queue.enqueue(view, receiverId, 0);
+		ch.runPendingTasks();
+
+		assertBufferResponse(ch.readOutbound(), receiverId, 0);
+		assertNull(ch.readOutbound());
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static Buffer createDataBuffer() {
+		return new Buffer(MemorySegmentFactory.allocateUnpooledSegment(32), FreeingBufferRecycler.INSTANCE);
+	}
+
+	private static void assertBufferResponse(Object msg, InputChannelID receiverId, int sequenceNumber) {
+		assertNotNull(msg);
+		assertEquals(NettyMessage.BufferResponse.class, msg.getClass());
+
+		NettyMessage.BufferResponse response = (NettyMessage.BufferResponse) msg;
+		assertEquals(receiverId, response.receiverId);
+		assertEquals(sequenceNumber, response.sequenceNumber);
+	}
 }
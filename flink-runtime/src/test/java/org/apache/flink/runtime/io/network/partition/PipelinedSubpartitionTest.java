@@ -20,6 +20,8 @@ package org.apache.flink.runtime.io.network.partition;
 
 import org.apache.flink.core.memory.MemorySegment;
 import org.apache.flink.runtime.event.AbstractEvent;
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
+import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
 import org.apache.flink.runtime.io.network.partition.consumer.BufferOrEvent;
@@ -37,6 +39,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import static org.apache.flink.runtime.io.network.util.TestBufferFactory.createBuffer;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -174,6 +177,35 @@ public class PipelinedSubpartitionTest extends SubpartitionTestBase {
 		assertEquals(1, listener.getNumberOfNotifications());
 	}
 
+	@Test
+	public void testPriorityEventOvertakesBuffers() throws Exception {
+		final PipelinedSubpartition subpartition = createSubpartition();
+
+		final Buffer first = createBuffer(4);
+		first.getMemorySegment().put(0, new byte[] { 1, 2, 3, 4 });
+		final Buffer second = createBuffer(2);
+		second.getMemorySegment().put(0, new byte[] { 5, 6 });
+
+		subpartition.add(first);
+		subpartition.add(second);
+
+		final Buffer event = EventSerializer.toBuffer(new CheckpointBarrier(1L, 1L));
+
+		// The data of the overtaken buffers is returned in order
+		assertArrayEquals(new byte[] { 1, 2, 3, 4, 5, 6 }, subpartition.addPriorityEvent(event));
+
+		// ...and the buffers are still sent after the event
+		ResultSubpartitionView view = subpartition.createReadView(null);
+		assertEquals(event, view.getNextBuffer());
+		assertEquals(first, view.getNextBuffer());
+		assertEquals(second, view.getNextBuffer());
+		assertNull(view.getNextBuffer());
+
+		// A finished subpartition does not accept priority events
+		subpartition.finish();
+		assertNull(subpartition.addPriorityEvent(EventSerializer.toBuffer(new CheckpointBarrier(2L, 2L))));
+	}
+
 	@Test
 	public void testConcurrentFastProduceAndFastConsume() throws Exception {
 		testProduceConsume(false, false);
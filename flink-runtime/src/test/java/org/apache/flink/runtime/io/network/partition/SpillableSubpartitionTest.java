@@ -22,6 +22,8 @@ import org.apache.flink.runtime.io.disk.iomanager.AsynchronousBufferFileWriter;
 import org.apache.flink.runtime.io.disk.iomanager.FileIOChannel;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
 import org.apache.flink.runtime.io.disk.iomanager.IOManagerAsync;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.util.TestBufferFactory;
 import org.apache.flink.runtime.io.network.util.TestInfiniteBufferProvider;
 import org.junit.AfterClass;
 import org.junit.Test;
@@ -35,7 +37,10 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import static org.apache.flink.runtime.io.disk.iomanager.IOManager.IOMode.SYNC;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
@@ -59,7 +64,7 @@ public class SpillableSubpartitionTest extends SubpartitionTestBase {
 
 	@Override
 	ResultSubpartition createSubpartition() {
-		return new SpillableSubpartition(0, mock(ResultPartition.class), ioManager, SYNC);
+		return new SpillableSubpartition(0, createParent(ResultPartitionType.BLOCKING), ioManager, SYNC);
 	}
 
 	/**
@@ -91,7 +96,7 @@ public class SpillableSubpartitionTest extends SubpartitionTestBase {
 
 		// The partition
 		final SpillableSubpartition partition = new SpillableSubpartition(
-				0, mock(ResultPartition.class), ioManager, SYNC);
+				0, createParent(ResultPartitionType.BLOCKING), ioManager, SYNC);
 
 		// Spill the partition initially (creates the spill writer)
 		partition.releaseMemory();
@@ -130,7 +135,7 @@ public class SpillableSubpartitionTest extends SubpartitionTestBase {
 	public void testReleasePartitionAndGetNext() throws Exception {
 		// Create partition and add some buffers
 		SpillableSubpartition partition = new SpillableSubpartition(
-				0, mock(ResultPartition.class), ioManager, SYNC);
+				0, createParent(ResultPartitionType.BLOCKING), ioManager, SYNC);
 
 		partition.finish();
 
@@ -147,4 +152,46 @@ public class SpillableSubpartitionTest extends SubpartitionTestBase {
 
 		assertNull(readView.getNextBuffer());
 	}
+
+	/**
+	 * Tests that subpartitions of persistent results are spilled when they are finished and can
+	 * be consumed multiple times.
+	 */
+	@Test
+	public void testConsumePersistentSubpartitionMultipleTimes() throws Exception {
+		ResultPartition parent = createParent(ResultPartitionType.BLOCKING_PERSISTENT);
+		SpillableSubpartition partition = new SpillableSubpartition(0, parent, ioManager, SYNC);
+
+		Buffer buffer = TestBufferFactory.createBuffer();
+		partition.add(buffer);
+		partition.finish();
+
+		// The in-memory buffer has been spilled and recycled
+		assertTrue(buffer.isRecycled());
+
+		for (int i = 0; i < 2; i++) {
+			ResultSubpartitionView readView = partition.createReadView(new TestInfiniteBufferProvider());
+
+			Buffer read = readView.getNextBuffer();
+			assertTrue(read.isBuffer());
+			assertEquals(TestBufferFactory.BUFFER_SIZE, read.getSize());
+			read.recycle();
+
+			Buffer event = readView.getNextBuffer();
+			assertFalse(event.isBuffer());
+			event.recycle();
+
+			readView.notifySubpartitionConsumed();
+			readView.releaseAllResources();
+		}
+
+		partition.release();
+		assertTrue(partition.isReleased());
+	}
+
+	private static ResultPartition createParent(ResultPartitionType partitionType) {
+		ResultPartition parent = mock(ResultPartition.class);
+		when(parent.getPartitionType()).thenReturn(partitionType);
+		return parent;
+	}
 }
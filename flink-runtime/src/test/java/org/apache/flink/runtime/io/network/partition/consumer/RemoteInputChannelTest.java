@@ -19,13 +19,21 @@
 package org.apache.flink.runtime.io.network.partition.consumer;
 
 import com.google.common.collect.Lists;
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.core.memory.MemoryType;
 import org.apache.flink.runtime.execution.CancelTaskException;
+import org.apache.flink.runtime.executiongraph.ExecutionAttemptID;
 import org.apache.flink.runtime.io.network.ConnectionID;
 import org.apache.flink.runtime.io.network.ConnectionManager;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferPool;
+import org.apache.flink.runtime.io.network.buffer.NetworkBufferPool;
 import org.apache.flink.runtime.io.network.netty.PartitionRequestClient;
+import org.apache.flink.runtime.io.network.netty.PartitionStateChecker;
 import org.apache.flink.runtime.io.network.partition.ProducerFailedException;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
 import org.apache.flink.runtime.io.network.util.TestBufferFactory;
+import org.apache.flink.runtime.jobgraph.IntermediateDataSetID;
 import org.apache.flink.runtime.operators.testutils.UnregisteredTaskMetricsGroup;
 import org.junit.Test;
 import scala.Tuple2;
@@ -38,6 +46,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
@@ -279,8 +288,183 @@ public class RemoteInputChannelTest {
 		ch.getNextBuffer();
 	}
 
+	/**
+	 * Tests that the channel reserves buffers of the input gate's buffer pool as credit, announces
+	 * them and reserves a recycled buffer of the pool for its exclusive buffer, if no buffer was
+	 * available before.
+	 */
+	@Test
+	public void testCreditBuffersAreReservedAndAnnounced() throws Exception {
+		final NetworkBufferPool networkBufferPool = new NetworkBufferPool(3, 128, MemoryType.HEAP);
+		final BufferPool bufferPool = networkBufferPool.createBufferPool(3, true);
+
+		try {
+			final SingleInputGate inputGate = mock(SingleInputGate.class);
+			when(inputGate.getBufferProvider()).thenReturn(bufferPool);
+			when(inputGate.tryReserveFloatingCreditBuffer(any(RemoteInputChannel.class))).thenReturn(true);
+
+			final PartitionRequestClient client = mock(PartitionRequestClient.class);
+			final RemoteInputChannel ch = createRemoteInputChannel(
+					inputGate, client, new Tuple2<Integer, Integer>(0, 0));
+
+			ch.requestSubpartition(0);
+
+			assertEquals(RemoteInputChannel.MAX_CREDIT, ch.getNumberOfCreditBuffers());
+			assertEquals(RemoteInputChannel.MAX_CREDIT, ch.getInitialCredit());
+			assertEquals(0, ch.getAndResetUnannouncedCredit());
+
+			// The taken buffer is replaced by the last buffer of the pool
+			Buffer first = ch.requestBuffer();
+			assertNotNull(first);
+			assertEquals(RemoteInputChannel.MAX_CREDIT, ch.getNumberOfCreditBuffers());
+			assertEquals(1, ch.getAndResetUnannouncedCredit());
+
+			// The pool has no buffers left, the channel does not wait for a floating buffer
+			Buffer second = ch.requestBuffer();
+			assertNotNull(second);
+			assertEquals(1, ch.getNumberOfCreditBuffers());
+			assertEquals(0, ch.getAndResetUnannouncedCredit());
+
+			// The channel waits for its exclusive buffer
+			Buffer third = ch.requestBuffer();
+			assertNotNull(third);
+			assertEquals(0, ch.getNumberOfCreditBuffers());
+
+			// The recycled buffer is reserved again
+			first.recycle();
+			assertEquals(1, ch.getNumberOfCreditBuffers());
+			assertEquals(1, ch.getAndResetUnannouncedCredit());
+
+			verify(client, times(RemoteInputChannel.MAX_CREDIT + 2)).notifyCreditAvailable(eq(ch));
+
+			// The reserved buffers are returned to the pool
+			second.recycle();
+			third.recycle();
+			ch.releaseAllResources();
+
+			assertEquals(0, ch.getNumberOfCreditBuffers());
+			assertEquals(3, bufferPool.getNumberOfAvailableMemorySegments());
+		}
+		finally {
+			bufferPool.lazyDestroy();
+			networkBufferPool.destroy();
+		}
+	}
+
+	/**
+	 * Tests that every channel of an input gate with more channels than spare buffers gets its
+	 * exclusive credit buffer, and that floating buffers are only granted from the spare buffers.
+	 */
+	@Test
+	public void testExclusiveCreditBufferForEachChannel() throws Exception {
+		final int numberOfChannels = 4;
+		final NetworkBufferPool networkBufferPool = new NetworkBufferPool(numberOfChannels + 1, 128, MemoryType.HEAP);
+		final BufferPool bufferPool = networkBufferPool.createBufferPool(numberOfChannels, false);
+
+		try {
+			final SingleInputGate inputGate = createSingleInputGate(numberOfChannels);
+			inputGate.setBufferPool(bufferPool);
+
+			// One buffer of the pool is spare
+			assertEquals(numberOfChannels + 1, bufferPool.getNumBuffers());
+
+			final RemoteInputChannel[] channels = new RemoteInputChannel[numberOfChannels];
+			for (int i = 0; i < numberOfChannels; i++) {
+				channels[i] = createRemoteInputChannel(inputGate);
+				channels[i].requestSubpartition(0);
+			}
+
+			// The first channel got the spare buffer, every other channel its exclusive buffer
+			assertEquals(RemoteInputChannel.MAX_CREDIT, channels[0].getNumberOfCreditBuffers());
+			for (int i = 1; i < numberOfChannels; i++) {
+				assertEquals(1, channels[i].getNumberOfCreditBuffers());
+			}
+			assertEquals(1, inputGate.getNumberOfFloatingCreditBuffers());
+
+			// Using the floating buffer gives it back to the spare buffers
+			Buffer buffer = channels[0].requestBuffer();
+			assertNotNull(buffer);
+			assertEquals(1, channels[0].getNumberOfCreditBuffers());
+			assertEquals(0, inputGate.getNumberOfFloatingCreditBuffers());
+
+			buffer.recycle();
+			for (RemoteInputChannel channel : channels) {
+				channel.releaseAllResources();
+			}
+
+			assertEquals(0, inputGate.getNumberOfFloatingCreditBuffers());
+			assertEquals(numberOfChannels + 1, bufferPool.getNumberOfAvailableMemorySegments());
+		}
+		finally {
+			bufferPool.lazyDestroy();
+			networkBufferPool.destroy();
+		}
+	}
+
+	/**
+	 * Tests that a channel waiting for its exclusive buffer revokes the floating buffers of other
+	 * channels, if the buffer pool has shrunk after they were reserved.
+	 */
+	@Test
+	public void testFloatingCreditBuffersAreRevokedWhenPoolShrinks() throws Exception {
+		final int numberOfChannels = 2;
+		final NetworkBufferPool networkBufferPool = new NetworkBufferPool(numberOfChannels + 1, 128, MemoryType.HEAP);
+		final BufferPool bufferPool = networkBufferPool.createBufferPool(numberOfChannels, false);
+
+		try {
+			final SingleInputGate inputGate = createSingleInputGate(numberOfChannels);
+			inputGate.setBufferPool(bufferPool);
+
+			final RemoteInputChannel first = createRemoteInputChannel(inputGate);
+			first.requestSubpartition(0);
+			assertEquals(RemoteInputChannel.MAX_CREDIT, first.getInitialCredit());
+
+			final RemoteInputChannel second = createRemoteInputChannel(inputGate);
+			second.requestSubpartition(0);
+			assertEquals(1, second.getInitialCredit());
+
+			// The spare buffer is taken from the pool
+			bufferPool.setNumBuffers(numberOfChannels);
+
+			// The second channel uses its exclusive buffer for received data
+			Buffer received = second.requestBuffer();
+			assertNotNull(received);
+
+			// The floating buffer of the first channel has been revoked and its credit is not
+			// announced again
+			assertEquals(1, first.getNumberOfCreditBuffers());
+			assertEquals(0, first.getAndResetUnannouncedCredit());
+			assertEquals(0, inputGate.getNumberOfFloatingCreditBuffers());
+			assertEquals(0, second.getNumberOfCreditBuffers());
+
+			// The consumed buffer becomes the exclusive buffer of the second channel
+			received.recycle();
+			assertEquals(1, second.getNumberOfCreditBuffers());
+			assertEquals(1, second.getAndResetUnannouncedCredit());
+
+			first.releaseAllResources();
+			second.releaseAllResources();
+		}
+		finally {
+			bufferPool.lazyDestroy();
+			networkBufferPool.destroy();
+		}
+	}
+
 	// ---------------------------------------------------------------------------------------------
 
+	private static SingleInputGate createSingleInputGate(int numberOfInputChannels) {
+		return new SingleInputGate(
+				"Test Task Name",
+				new JobID(),
+				new ExecutionAttemptID(),
+				new IntermediateDataSetID(),
+				0,
+				numberOfInputChannels,
+				mock(PartitionStateChecker.class),
+				new UnregisteredTaskMetricsGroup.DummyIOMetricGroup());
+	}
+
 	private RemoteInputChannel createRemoteInputChannel(SingleInputGate inputGate)
 			throws IOException, InterruptedException {
 
@@ -32,6 +32,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
 /**
@@ -179,6 +180,45 @@ public class MemoryManagerLazyAllocationTest {
 		}
 	}
 	
+	@Test
+	public void reserveMemory() {
+		try {
+			final Object reservationOwner = new Object();
+			final AbstractInvokable mockInvoke = new DummyInvokable();
+
+			// reserves the memory of half the pages, rounded up to the next page
+			this.memoryManager.reserveMemory(reservationOwner, (long) NUM_PAGES / 2 * PAGE_SIZE - 1);
+			assertFalse(this.memoryManager.verifyEmpty());
+
+			List<MemorySegment> segs = this.memoryManager.allocatePages(mockInvoke, NUM_PAGES - NUM_PAGES / 2);
+
+			try {
+				this.memoryManager.allocatePages(mockInvoke, 1);
+				Assert.fail("Expected MemoryAllocationException.");
+			} catch (MemoryAllocationException maex) {
+				// expected
+			}
+
+			try {
+				this.memoryManager.reserveMemory(reservationOwner, 1);
+				Assert.fail("Expected MemoryAllocationException.");
+			} catch (MemoryAllocationException maex) {
+				// expected
+			}
+
+			this.memoryManager.releaseReservedMemory(reservationOwner);
+			this.memoryManager.release(segs);
+
+			// all pages are available again
+			segs = this.memoryManager.allocatePages(mockInvoke, NUM_PAGES);
+			this.memoryManager.release(segs);
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+	
 	private boolean allMemorySegmentsValid(List<MemorySegment> memSegs) {
 		for (MemorySegment seg : memSegs) {
 			if (seg.isFreed()) {
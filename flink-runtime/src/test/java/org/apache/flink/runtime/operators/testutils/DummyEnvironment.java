@@ -26,6 +26,7 @@ import org.apache.flink.core.fs.Path;
 import org.apache.flink.metrics.groups.TaskMetricGroup;
 import org.apache.flink.runtime.accumulators.AccumulatorRegistry;
 import org.apache.flink.runtime.broadcast.BroadcastVariableManager;
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
 import org.apache.flink.runtime.execution.Environment;
 import org.apache.flink.runtime.executiongraph.ExecutionAttemptID;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
@@ -34,6 +35,7 @@ import org.apache.flink.runtime.io.network.partition.consumer.InputGate;
 import org.apache.flink.runtime.jobgraph.JobVertexID;
 import org.apache.flink.runtime.jobgraph.tasks.InputSplitProvider;
 import org.apache.flink.runtime.memory.MemoryManager;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.StateHandle;
 import org.apache.flink.runtime.taskmanager.TaskManagerRuntimeInfo;
 
@@ -133,12 +135,27 @@ public class DummyEnvironment implements Environment {
 		return null;
 	}
 
+	@Override
+	public TaskKvStateRegistry getTaskKvStateRegistry() {
+		return null;
+	}
+
 	@Override
 	public void acknowledgeCheckpoint(long checkpointId) {}
 
 	@Override
 	public void acknowledgeCheckpoint(long checkpointId, StateHandle<?> state) {}
 
+	@Override
+	public void acknowledgeCheckpoint(long checkpointId, StateHandle<?> state, StateHandle<?> keyGroupsState) {}
+
+	@Override
+	public void acknowledgeCheckpoint(
+			long checkpointId,
+			StateHandle<?> state,
+			StateHandle<?> keyGroupsState,
+			CheckpointMetrics checkpointMetrics) {}
+
 	@Override
 	public void failExternally(Throwable cause) {
 		throw new UnsupportedOperationException("DummyEnvironment does not support external task failure.");
@@ -27,6 +27,7 @@ import org.apache.flink.core.memory.MemorySegmentFactory;
 import org.apache.flink.metrics.groups.TaskMetricGroup;
 import org.apache.flink.runtime.accumulators.AccumulatorRegistry;
 import org.apache.flink.runtime.broadcast.BroadcastVariableManager;
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
 import org.apache.flink.runtime.execution.Environment;
 import org.apache.flink.runtime.executiongraph.ExecutionAttemptID;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
@@ -43,6 +44,7 @@ import org.apache.flink.api.common.JobID;
 import org.apache.flink.runtime.jobgraph.JobVertexID;
 import org.apache.flink.runtime.jobgraph.tasks.InputSplitProvider;
 import org.apache.flink.runtime.memory.MemoryManager;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.StateHandle;
 import org.apache.flink.runtime.taskmanager.TaskManagerRuntimeInfo;
 import org.apache.flink.types.Record;
@@ -280,6 +282,11 @@ public class MockEnvironment implements Environment {
 		return this.accumulatorRegistry;
 	}
 
+	@Override
+	public TaskKvStateRegistry getTaskKvStateRegistry() {
+		return null;
+	}
+
 	@Override
 	public void acknowledgeCheckpoint(long checkpointId) {
 		throw new UnsupportedOperationException();
@@ -290,6 +297,20 @@ public class MockEnvironment implements Environment {
 		throw new UnsupportedOperationException();
 	}
 
+	@Override
+	public void acknowledgeCheckpoint(long checkpointId, StateHandle<?> state, StateHandle<?> keyGroupsState) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void acknowledgeCheckpoint(
+			long checkpointId,
+			StateHandle<?> state,
+			StateHandle<?> keyGroupsState,
+			CheckpointMetrics checkpointMetrics) {
+		throw new UnsupportedOperationException();
+	}
+
 	@Override
 	public void failExternally(Throwable cause) {
 		throw new UnsupportedOperationException("MockEnvironment does not support external task failure.");
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.query.netty;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.api.common.typeutils.base.VoidSerializer;
+import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.operators.testutils.DummyEnvironment;
+import org.apache.flink.runtime.query.KvStateID;
+import org.apache.flink.runtime.query.KvStateRegistry;
+import org.apache.flink.runtime.query.KvStateServerAddress;
+import org.apache.flink.runtime.query.netty.message.KvStateRequestSerializer;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KvState;
+import org.apache.flink.runtime.state.memory.MemoryStateBackend;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scala.concurrent.Await;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.net.InetAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the queries of a {@link KvStateClient} to a {@link KvStateServer}.
+ */
+public class KvStateServerClientTest {
+
+	private static final FiniteDuration TIMEOUT = new FiniteDuration(30, TimeUnit.SECONDS);
+
+	private final KvStateRegistry registry = new KvStateRegistry();
+
+	private MemoryStateBackend backend;
+
+	private KvStateServer server;
+
+	private KvStateClient client;
+
+	@Before
+	public void setup() throws Exception {
+		backend = new MemoryStateBackend();
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		server = new KvStateServer(InetAddress.getLocalHost(), 0, 1, 1, registry);
+		server.start();
+
+		client = new KvStateClient(1);
+	}
+
+	@After
+	public void teardown() throws Exception {
+		client.shutDown();
+		server.shutDown();
+		backend.dispose();
+	}
+
+	@Test
+	public void testQueryValue() throws Exception {
+		KvStateID kvStateId = registerValueState();
+
+		byte[] result = Await.result(client.getKvState(server.getAddress(), kvStateId, serializeKey(1)), TIMEOUT);
+		assertEquals("one", KvStateRequestSerializer.deserializeValue(result, StringSerializer.INSTANCE));
+
+		// the connection is reused for the next queries
+		for (int i = 0; i < 10; i++) {
+			result = Await.result(client.getKvState(server.getAddress(), kvStateId, serializeKey(2)), TIMEOUT);
+			assertEquals("two", KvStateRequestSerializer.deserializeValue(result, StringSerializer.INSTANCE));
+		}
+		assertEquals(1, client.getNumberOfConnections());
+	}
+
+	@Test
+	public void testQueryUnknownKey() throws Exception {
+		KvStateID kvStateId = registerValueState();
+
+		try {
+			Await.result(client.getKvState(server.getAddress(), kvStateId, serializeKey(3)), TIMEOUT);
+			fail("The query of an unknown key should fail.");
+		} catch (UnknownKeyOrNamespace expected) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testQueryUnknownKvStateID() throws Exception {
+		try {
+			Await.result(client.getKvState(server.getAddress(), new KvStateID(), serializeKey(1)), TIMEOUT);
+			fail("The query of an unknown state should fail.");
+		} catch (UnknownKvStateID expected) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests that the queries of a shut down server fail and that the client drops its
+	 * connection, so that it connects again to a new server at the same address.
+	 */
+	@Test
+	public void testServerShutDown() throws Exception {
+		KvStateID kvStateId = registerValueState();
+		KvStateServerAddress serverAddress = server.getAddress();
+
+		Await.result(client.getKvState(serverAddress, kvStateId, serializeKey(1)), TIMEOUT);
+		server.shutDown();
+
+		try {
+			Await.result(client.getKvState(serverAddress, kvStateId, serializeKey(1)), TIMEOUT);
+			fail("The query of a shut down server should fail.");
+		} catch (Exception expected) {
+			// expected
+		}
+
+		server = new KvStateServer(serverAddress.getHost(), serverAddress.getPort(), 1, 1, registry);
+		server.start();
+
+		byte[] result;
+		try {
+			result = Await.result(client.getKvState(serverAddress, kvStateId, serializeKey(1)), TIMEOUT);
+		} catch (ClosedChannelException e) {
+			// the close of the old connection may not have been noticed yet, which the
+			// QueryableStateClient handles by retrying once as well
+			result = Await.result(client.getKvState(serverAddress, kvStateId, serializeKey(1)), TIMEOUT);
+		}
+		assertEquals("one", KvStateRequestSerializer.deserializeValue(result, StringSerializer.INSTANCE));
+		assertTrue(client.getNumberOfConnections() <= 1);
+	}
+
+	// ------------------------------------------------------------------------
+
+	private KvStateID registerValueState() throws Exception {
+		ValueStateDescriptor<String> kvId = new ValueStateDescriptor<>("id", String.class, null);
+		kvId.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		ValueState<String> state = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+		backend.setCurrentKey(1);
+		state.update("one");
+		backend.setCurrentKey(2);
+		state.update("two");
+
+		return registry.registerKvState(new JobID(), new JobVertexID(), new KeyGroupRange(0, 0), "id", (KvState<?, ?, ?, ?, ?>) state);
+	}
+
+	private static byte[] serializeKey(int key) throws Exception {
+		return KvStateRequestSerializer.serializeKeyAndNamespace(key, IntSerializer.INSTANCE, null, VoidSerializer.INSTANCE);
+	}
+}
@@ -19,11 +19,17 @@
 package org.apache.flink.runtime.state;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.VoidSerializer;
 import org.apache.flink.configuration.ConfigConstants;
 import org.apache.flink.core.fs.Path;
 import org.apache.flink.core.testutils.CommonTestUtils;
 import org.apache.flink.runtime.operators.testutils.DummyEnvironment;
+import org.apache.flink.runtime.state.filesystem.AbstractFsStateSnapshot;
+import org.apache.flink.runtime.state.filesystem.FileSegmentStateHandle;
 import org.apache.flink.runtime.state.filesystem.FileStreamStateHandle;
 import org.apache.flink.runtime.state.filesystem.FsStateBackend;
 import org.apache.flink.runtime.state.memory.ByteStreamStateHandle;
@@ -34,6 +40,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Random;
 import java.util.UUID;
 
@@ -54,19 +63,6 @@ public class FileStateBackendTest extends StateBackendTestBase<FsStateBackend> {
 		deleteDirectorySilently(stateDir);
 	}
 
-	// disable these because the verification does not work for this state backend
-	@Override
-	@Test
-	public void testValueStateRestoreWithWrongSerializers() {}
-
-	@Override
-	@Test
-	public void testListStateRestoreWithWrongSerializers() {}
-
-	@Override
-	@Test
-	public void testReducingStateRestoreWithWrongSerializers() {}
-
 	@Test
 	public void testSetupAndSerialization() {
 		File tempDir = new File(ConfigConstants.DEFAULT_TASK_MANAGER_TMP_PATH, UUID.randomUUID().toString());
@@ -233,10 +229,155 @@ public class FileStateBackendTest extends StateBackendTestBase<FsStateBackend> {
 		}
 	}
 
+	@Test
+	public void testMergedStateOutputStream() throws Exception {
+		File tempDir = new File(ConfigConstants.DEFAULT_TASK_MANAGER_TMP_PATH, UUID.randomUUID().toString());
+		try {
+			// state up to 15 bytes is kept in memory, state up to 1024 bytes goes to shared files
+			FsStateBackend backend1 = CommonTestUtils.createCopySerializable(new FsStateBackend(tempDir.toURI(), 15, 1024));
+			FsStateBackend backend2 = CommonTestUtils.createCopySerializable(new FsStateBackend(tempDir.toURI(), 15, 1024));
+
+			// both backends belong to the same job, as the tasks of a TaskManager would
+			DummyEnvironment env = new DummyEnvironment("test", 1, 0);
+			backend1.initializeForJob(env, "test-op-1", IntSerializer.INSTANCE);
+			backend2.initializeForJob(env, "test-op-2", IntSerializer.INSTANCE);
+
+			File checkpointDir = new File(backend1.getCheckpointDirectory().toUri().getPath());
+
+			byte[] state1 = new byte[1];
+			byte[] state2 = new byte[177];
+			byte[] state3 = new byte[1000];
+			byte[] state4 = new byte[4711];
+
+			Random rnd = new Random();
+			rnd.nextBytes(state1);
+			rnd.nextBytes(state2);
+			rnd.nextBytes(state3);
+			rnd.nextBytes(state4);
+
+			long checkpointId = 17L;
+
+			StreamStateHandle handle1 = writeState(backend1, checkpointId, state1);
+			StreamStateHandle handle2 = writeState(backend1, checkpointId, state2);
+			StreamStateHandle handle3 = writeState(backend2, checkpointId, state3);
+			StreamStateHandle handle4 = writeState(backend2, checkpointId, state4);
+
+			assertTrue(handle1 instanceof ByteStreamStateHandle);
+			assertTrue(handle2 instanceof FileSegmentStateHandle);
+			assertTrue(handle3 instanceof FileSegmentStateHandle);
+			assertTrue(handle4 instanceof FileStreamStateHandle);
+
+			// the small states of both backends share one file
+			FileSegmentStateHandle segment2 = (FileSegmentStateHandle) handle2;
+			FileSegmentStateHandle segment3 = (FileSegmentStateHandle) handle3;
+			assertEquals(segment2.getFilePath(), segment3.getFilePath());
+			assertEquals(0L, segment2.getStartPosition());
+			assertEquals(state2.length, segment3.getStartPosition());
+			assertEquals(state3.length, segment3.getStateSize());
+			assertEquals(2, new File(checkpointDir, "chk-" + checkpointId).list().length);
+
+			validateBytesInStream(handle1.getState(getClass().getClassLoader()), state1);
+			validateBytesInStream(handle2.getState(getClass().getClassLoader()), state2);
+			validateBytesInStream(handle3.getState(getClass().getClassLoader()), state3);
+			validateBytesInStream(handle4.getState(getClass().getClassLoader()), state4);
+
+			// streams, whose handles are not reported as shared state, are never merged
+			FsStateBackend.FsCheckpointStateOutputStream stream =
+					backend1.createCheckpointStateOutputStream(checkpointId, System.currentTimeMillis());
+			stream.write(state2);
+			StreamStateHandle unmergedHandle = stream.closeAndGetHandle();
+			assertTrue(unmergedHandle instanceof FileStreamStateHandle);
+			unmergedHandle.discardState();
+
+			backend1.close();
+			backend2.close();
+
+			// the shared file is discarded once no checkpoint references any of its segments
+			List<SharedStateHandle> sharedStates = new ArrayList<>();
+			sharedStates.addAll(segment2.getSharedStates());
+			sharedStates.addAll(segment3.getSharedStates());
+
+			SharedStateRegistry registry = new SharedStateRegistry();
+			registry.registerAll(sharedStates, checkpointId);
+
+			segment2.discardState();
+			segment3.discardState();
+			assertTrue(new File(segment2.getFilePath().toUri().getPath()).exists());
+
+			registry.unregisterAll(sharedStates);
+			ensureLocalFileDeleted(segment2.getFilePath());
+
+			handle4.discardState();
+			assertTrue(isDirectoryEmpty(checkpointDir));
+		}
+		finally {
+			deleteDirectorySilently(tempDir);
+		}
+	}
+
+	@Test
+	public void testSmallKeyValueStateSnapshots() throws Exception {
+		File tempDir = new File(ConfigConstants.DEFAULT_TASK_MANAGER_TMP_PATH, UUID.randomUUID().toString());
+		try {
+			// the default thresholds keep small state in memory
+			FsStateBackend inliningBackend = new FsStateBackend(tempDir.toURI());
+			StreamStateHandle inlinedHandle = snapshotAndRestoreValueState(inliningBackend);
+			assertTrue(inlinedHandle instanceof ByteStreamStateHandle);
+
+			// without in-memory state, small state goes to shared files
+			FsStateBackend mergingBackend = new FsStateBackend(tempDir.toURI(), 0, 1024);
+			StreamStateHandle mergedHandle = snapshotAndRestoreValueState(mergingBackend);
+			assertTrue(mergedHandle instanceof FileSegmentStateHandle);
+			mergingBackend.close();
+		}
+		finally {
+			deleteDirectorySilently(tempDir);
+		}
+	}
+
 	// ------------------------------------------------------------------------
 	//  Utilities
 	// ------------------------------------------------------------------------
 
+	private static StreamStateHandle writeState(FsStateBackend backend, long checkpointId, byte[] state) throws Exception {
+		FsStateBackend.FsCheckpointStateOutputStream stream =
+				backend.createMergingCheckpointStateOutputStream(checkpointId, System.currentTimeMillis());
+		stream.write(state);
+		return stream.closeAndGetHandle();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static StreamStateHandle snapshotAndRestoreValueState(FsStateBackend backend) throws Exception {
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		ValueStateDescriptor<String> kvId = new ValueStateDescriptor<>("id", String.class, null);
+		kvId.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		ValueState<String> state = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+		backend.setCurrentKey(1);
+		state.update("1");
+		backend.setCurrentKey(2);
+		state.update("2");
+
+		HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> snapshot = backend.snapshotPartitionedState(1L, 2L);
+		KvStateSnapshot<?, ?, ?, ?, ?> kvSnapshot = ((AsynchronousKvStateSnapshot<?, ?, ?, ?, ?>) snapshot.get("id")).materialize();
+		snapshot.put("id", kvSnapshot);
+
+		backend.dispose();
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+		backend.injectKeyValueStateSnapshots((HashMap) snapshot, 100);
+
+		ValueState<String> restored = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+		backend.setCurrentKey(1);
+		assertEquals("1", restored.value());
+		backend.setCurrentKey(2);
+		assertEquals("2", restored.value());
+
+		backend.dispose();
+
+		return ((AbstractFsStateSnapshot<?, ?, ?, ?, ?>) kvSnapshot).getStateHandle();
+	}
+
 	private static void ensureLocalFileDeleted(Path path) {
 		URI uri = path.toUri();
 		if ("file".equals(uri.getScheme())) {
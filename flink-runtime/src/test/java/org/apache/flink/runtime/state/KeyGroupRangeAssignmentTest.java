@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.util.MathUtils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class KeyGroupRangeAssignmentTest {
+
+	/**
+	 * Checks that the key group ranges of all operator instances are contiguous, disjoint and
+	 * cover all key groups, and that they agree with the operator index computed per key group.
+	 */
+	@Test
+	public void testKeyGroupRangesCoverAllKeyGroups() {
+		int[] numbersOfKeyGroups = {1, 7, 10, 128, 1000};
+
+		for (int numberOfKeyGroups : numbersOfKeyGroups) {
+			for (int parallelism = 1; parallelism <= numberOfKeyGroups && parallelism <= 130; parallelism++) {
+				int expectedStart = 0;
+
+				for (int operatorIndex = 0; operatorIndex < parallelism; operatorIndex++) {
+					KeyGroupRange range = KeyGroupRangeAssignment.computeKeyGroupRangeForOperatorIndex(
+						numberOfKeyGroups, parallelism, operatorIndex);
+
+					assertEquals(expectedStart, range.getStartKeyGroup());
+					assertTrue(range.getNumberOfKeyGroups() > 0);
+
+					for (int keyGroup : range) {
+						assertEquals(operatorIndex, KeyGroupRangeAssignment.computeOperatorIndexForKeyGroup(
+							numberOfKeyGroups, parallelism, keyGroup));
+					}
+
+					expectedStart = range.getEndKeyGroup() + 1;
+				}
+
+				assertEquals(numberOfKeyGroups, expectedStart);
+			}
+		}
+	}
+
+	/**
+	 * Checks that using one key group per operator instance routes keys exactly like the
+	 * plain hash partitioning did before key groups were introduced.
+	 */
+	@Test
+	public void testOneKeyGroupPerOperatorIsCompatibleWithHashPartitioning() {
+		int parallelism = 13;
+
+		for (int key = -1000; key < 1000; key++) {
+			int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(key, parallelism);
+			int operatorIndex = KeyGroupRangeAssignment.computeOperatorIndexForKeyGroup(parallelism, parallelism, keyGroup);
+
+			assertEquals(MathUtils.murmurHash(Integer.valueOf(key).hashCode()) % parallelism, operatorIndex);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFewerKeyGroupsThanParallelism() {
+		KeyGroupRangeAssignment.computeKeyGroupRangeForOperatorIndex(2, 3, 0);
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.runtime.state.managed.ManagedMemoryStateBackend;
+import org.apache.flink.runtime.state.memory.MemoryStateBackend;
+
+/**
+ * Tests for the {@link ManagedMemoryStateBackend}.
+ */
+public class ManagedMemoryStateBackendTest extends StateBackendTestBase<ManagedMemoryStateBackend> {
+
+	@Override
+	protected ManagedMemoryStateBackend getStateBackend() throws Exception {
+		return new ManagedMemoryStateBackend(new MemoryStateBackend(), 4 * 1024 * 1024);
+	}
+
+	@Override
+	protected void cleanup() throws Exception { }
+
+	@Override
+	protected boolean supportsStateMigration() {
+		return false;
+	}
+
+	@Override
+	protected boolean supportsQueries() {
+		return false;
+	}
+}
@@ -41,19 +41,6 @@ public class MemoryStateBackendTest extends StateBackendTestBase<MemoryStateBack
 	@Override
 	protected void cleanup() throws Exception { }
 
-	// disable these because the verification does not work for this state backend
-	@Override
-	@Test
-	public void testValueStateRestoreWithWrongSerializers() {}
-
-	@Override
-	@Test
-	public void testListStateRestoreWithWrongSerializers() {}
-
-	@Override
-	@Test
-	public void testReducingStateRestoreWithWrongSerializers() {}
-
 	@Test
 	public void testSerializableState() {
 		try {
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class SharedStateRegistryTest {
+
+	/**
+	 * Checks that a shared state handle is only discarded when the last checkpoint
+	 * referencing it is unregistered.
+	 */
+	@Test
+	public void testDiscardWhenNoLongerReferenced() throws Exception {
+		SharedStateRegistry registry = new SharedStateRegistry();
+
+		StreamStateHandle delegate1 = mock(StreamStateHandle.class);
+		StreamStateHandle delegate2 = mock(StreamStateHandle.class);
+		SharedStateHandle handle1 = new SharedStateHandle(delegate1, "1", 1L);
+		SharedStateHandle handle2 = new SharedStateHandle(delegate2, "2", 2L);
+
+		registry.registerAll(Collections.singletonList(handle1), 1L);
+		registry.registerAll(Arrays.asList(handle1, handle2), 2L);
+
+		assertEquals(2, registry.getReferenceCount("1"));
+		assertEquals(1, registry.getReferenceCount("2"));
+
+		// checkpoint 1 is subsumed
+		registry.unregisterAll(Collections.singletonList(handle1));
+
+		assertEquals(1, registry.getReferenceCount("1"));
+		verify(delegate1, never()).discardState();
+
+		// checkpoint 2 is subsumed
+		registry.unregisterAll(Arrays.asList(handle1, handle2));
+
+		assertEquals(0, registry.getReferenceCount("1"));
+		assertEquals(0, registry.getReferenceCount("2"));
+		verify(delegate1, times(1)).discardState();
+		verify(delegate2, times(1)).discardState();
+	}
+
+	/**
+	 * Checks that a checkpoint cannot reference shared state of an earlier checkpoint which
+	 * has already been discarded, and that nothing is registered in that case.
+	 */
+	@Test
+	public void testReferenceToDiscardedState() throws Exception {
+		SharedStateRegistry registry = new SharedStateRegistry();
+
+		SharedStateHandle handle1 = new SharedStateHandle(mock(StreamStateHandle.class), "1", 1L);
+		SharedStateHandle handle2 = new SharedStateHandle(mock(StreamStateHandle.class), "2", 2L);
+
+		registry.registerAll(Collections.singletonList(handle1), 1L);
+		registry.unregisterAll(Collections.singletonList(handle1));
+
+		try {
+			registry.registerAll(Arrays.asList(handle2, handle1), 2L);
+			fail("Did not detect the reference to discarded state");
+		} catch (IllegalStateException ignored) {
+			// expected
+		}
+
+		assertEquals(0, registry.getReferenceCount("2"));
+	}
+
+	/**
+	 * Checks that recovered shared state, whose other references are unknown, is never discarded.
+	 */
+	@Test
+	public void testRecoveredStateIsRetained() throws Exception {
+		SharedStateRegistry registry = new SharedStateRegistry();
+
+		StreamStateHandle delegate = mock(StreamStateHandle.class);
+		SharedStateHandle handle = new SharedStateHandle(delegate, "1", 1L);
+
+		registry.registerAllRecovered(Collections.singletonList(handle));
+
+		// a new checkpoint references the recovered state
+		registry.registerAll(Collections.singletonList(handle), 2L);
+		registry.unregisterAll(Collections.singletonList(handle));
+
+		assertEquals(1, registry.getReferenceCount("1"));
+		verify(delegate, never()).discardState();
+	}
+}
@@ -22,31 +22,58 @@ import com.google.common.base.Joiner;
 
 import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.api.common.functions.AggregateFunction;
 import org.apache.flink.api.common.functions.FoldFunction;
 import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.state.AggregatingState;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
 import org.apache.flink.api.common.state.FoldingState;
 import org.apache.flink.api.common.state.FoldingStateDescriptor;
 import org.apache.flink.api.common.state.ListState;
 import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
 import org.apache.flink.api.common.state.ReducingState;
 import org.apache.flink.api.common.state.ReducingStateDescriptor;
+import org.apache.flink.api.common.state.StateTtlConfig;
 import org.apache.flink.api.common.state.ValueState;
 import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.CompatibilityResult;
+import org.apache.flink.api.common.typeutils.DefaultTypeSerializerConfigSnapshot;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.TypeSerializerConfigSnapshot;
 import org.apache.flink.api.common.typeutils.base.FloatSerializer;
 import org.apache.flink.api.common.typeutils.base.IntSerializer;
 import org.apache.flink.api.common.typeutils.base.LongSerializer;
 import org.apache.flink.api.common.typeutils.base.StringSerializer;
 import org.apache.flink.api.common.typeutils.base.VoidSerializer;
+import org.apache.flink.api.common.typeutils.base.array.LongPrimitiveArraySerializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.runtime.jobgraph.JobVertexID;
 import org.apache.flink.runtime.operators.testutils.DummyEnvironment;
+import org.apache.flink.runtime.query.KvStateID;
+import org.apache.flink.runtime.query.KvStateRegistry;
+import org.apache.flink.runtime.query.KvStateRegistryListener;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.query.netty.message.KvStateRequestSerializer;
 import org.apache.flink.types.IntValue;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -72,6 +99,57 @@ public abstract class StateBackendTestBase<B extends AbstractStateBackend> {
 		cleanup();
 	}
 
+	/**
+	 * Tests that a snapshot which is discarded before it is materialized releases its resources,
+	 * also if it is discarded multiple times, and does not affect later snapshots.
+	 */
+	@Test
+	public void testDiscardUnmaterializedSnapshot() throws Exception {
+
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		ValueStateDescriptor<String> kvId = new ValueStateDescriptor<>("id", String.class, null);
+		kvId.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		ValueState<String> state = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+		backend.setCurrentKey(1);
+		state.update("1");
+
+		// the checkpoint is aborted before its asynchronous part runs
+		HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> snapshot1 = backend.snapshotPartitionedState(682375462378L, 2);
+
+		for (KvStateSnapshot<?, ?, ?, ?, ?> kvStateSnapshot : snapshot1.values()) {
+			kvStateSnapshot.discardState();
+			kvStateSnapshot.discardState();
+		}
+
+		backend.setCurrentKey(1);
+		state.update("u1");
+
+		HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> snapshot2 = backend.snapshotPartitionedState(682375462379L, 4);
+
+		for (String key: snapshot2.keySet()) {
+			if (snapshot2.get(key) instanceof AsynchronousKvStateSnapshot) {
+				snapshot2.put(key, ((AsynchronousKvStateSnapshot<?, ?, ?, ?, ?>) snapshot2.get(key)).materialize());
+			}
+		}
+
+		backend.dispose();
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		backend.injectKeyValueStateSnapshots((HashMap) snapshot2, 100);
+
+		for (String key: snapshot2.keySet()) {
+			snapshot2.get(key).discardState();
+		}
+
+		ValueState<String> restored = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+		backend.setCurrentKey(1);
+		assertEquals("u1", restored.value());
+	}
+
 	@Test
 	public void testValueState() throws Exception {
 
@@ -161,6 +239,100 @@ public abstract class StateBackendTestBase<B extends AbstractStateBackend> {
 		assertEquals("u3", restored2.value());
 	}
 
+	@Test
+	@SuppressWarnings("unchecked,rawtypes")
+	public void testValueStateTtl() throws Exception {
+		ManualTtlTimeProvider timeProvider = new ManualTtlTimeProvider();
+		backend.setTtlTimeProvider(timeProvider);
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		ValueStateDescriptor<String> kvId = new ValueStateDescriptor<>("id", String.class, null);
+		kvId.enableTimeToLive(StateTtlConfig.newBuilder(100, TimeUnit.MILLISECONDS)
+			.setUpdateType(StateTtlConfig.UpdateType.OnReadAndWrite)
+			.build());
+		kvId.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		ValueState<String> state = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+		timeProvider.time = 0;
+		backend.setCurrentKey(1);
+		state.update("1");
+
+		timeProvider.time = 50;
+		backend.setCurrentKey(2);
+		state.update("2");
+
+		// the first value expires, reading the second value renews it
+		timeProvider.time = 120;
+		backend.setCurrentKey(1);
+		assertNull(state.value());
+		backend.setCurrentKey(2);
+		assertEquals("2", state.value());
+
+		timeProvider.time = 200;
+		backend.setCurrentKey(2);
+		assertEquals("2", state.value());
+
+		// draw a snapshot
+		HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> snapshot1 = backend.snapshotPartitionedState(682375462378L, 2);
+
+		for (String key: snapshot1.keySet()) {
+			if (snapshot1.get(key) instanceof AsynchronousKvStateSnapshot) {
+				snapshot1.put(key, ((AsynchronousKvStateSnapshot<?, ?, ?, ?, ?>) snapshot1.get(key)).materialize());
+			}
+		}
+
+		timeProvider.time = 400;
+		backend.setCurrentKey(2);
+		assertNull(state.value());
+
+		backend.dispose();
+		backend.setTtlTimeProvider(timeProvider);
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		// the restored value keeps the time of its last access
+		timeProvider.time = 250;
+		backend.injectKeyValueStateSnapshots((HashMap) snapshot1, 100);
+
+		for (String key: snapshot1.keySet()) {
+			snapshot1.get(key).discardState();
+		}
+
+		ValueState<String> restored = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+		backend.setCurrentKey(1);
+		assertNull(restored.value());
+		backend.setCurrentKey(2);
+		assertEquals("2", restored.value());
+
+		timeProvider.time = 400;
+		assertNull(restored.value());
+
+		// values, which are updated, do not expire
+		backend.setCurrentKey(3);
+		restored.update("3");
+		timeProvider.time = 490;
+		restored.update("u3");
+		timeProvider.time = 580;
+		assertEquals("u3", restored.value());
+	}
+
+	@Test
+	public void testTtlRejectedForListState() throws Exception {
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		ListStateDescriptor<String> kvId = new ListStateDescriptor<>("id", String.class);
+		kvId.enableTimeToLive(StateTtlConfig.newBuilder(100, TimeUnit.MILLISECONDS).build());
+
+		try {
+			backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+			fail("Expected an UnsupportedOperationException");
+		}
+		catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
 	/**
 	 * This test verifies that passing {@code null} to {@link ValueState#update(Object)} acts
 	 * the same as {@link ValueState#clear()}.
@@ -422,6 +594,101 @@ public abstract class StateBackendTestBase<B extends AbstractStateBackend> {
 		}
 	}
 
+	@Test
+	@SuppressWarnings("unchecked,rawtypes")
+	public void testAggregatingState() {
+		try {
+			backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+			AggregatingStateDescriptor<Integer, long[], String> kvId = new AggregatingStateDescriptor<>("id",
+				new SumAndCount(),
+				LongPrimitiveArraySerializer.INSTANCE);
+
+			AggregatingState<Integer, String> state = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+			// some modifications to the state
+			backend.setCurrentKey(1);
+			assertEquals(null, state.get());
+			state.add(1);
+			backend.setCurrentKey(2);
+			assertEquals(null, state.get());
+			state.add(2);
+			backend.setCurrentKey(1);
+			assertEquals("1/1", state.get());
+
+			// draw a snapshot
+			HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> snapshot1 = backend.snapshotPartitionedState(682375462378L, 2);
+
+			for (String key: snapshot1.keySet()) {
+				if (snapshot1.get(key) instanceof AsynchronousKvStateSnapshot) {
+					snapshot1.put(key, ((AsynchronousKvStateSnapshot<?, ?, ?, ?, ?>) snapshot1.get(key)).materialize());
+				}
+			}
+
+			// make some more modifications
+			backend.setCurrentKey(1);
+			state.add(10);
+			backend.setCurrentKey(2);
+			state.add(20);
+			backend.setCurrentKey(3);
+			state.add(30);
+
+			// validate the original state
+			backend.setCurrentKey(1);
+			assertEquals("11/2", state.get());
+			backend.setCurrentKey(2);
+			assertEquals("22/2", state.get());
+			backend.setCurrentKey(3);
+			assertEquals("30/1", state.get());
+			state.clear();
+			assertEquals(null, state.get());
+
+			backend.dispose();
+
+			// restore the first snapshot and validate it
+			backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+			backend.injectKeyValueStateSnapshots((HashMap) snapshot1, 100);
+
+			for (String key: snapshot1.keySet()) {
+				snapshot1.get(key).discardState();
+			}
+
+			AggregatingState<Integer, String> restored = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+			backend.setCurrentKey(1);
+			assertEquals("1/1", restored.get());
+			backend.setCurrentKey(2);
+			assertEquals("2/1", restored.get());
+			backend.setCurrentKey(3);
+			assertEquals(null, restored.get());
+
+			// merge the accumulators of several namespaces
+			AggregatingStateDescriptor<Integer, long[], String> mergeId = new AggregatingStateDescriptor<>("merge",
+				new SumAndCount(),
+				LongPrimitiveArraySerializer.INSTANCE);
+
+			backend.setCurrentKey(1);
+			for (int namespace = 1; namespace <= 3; namespace++) {
+				AggregatingState<Integer, String> mergeState = backend.getPartitionedState(namespace, IntSerializer.INSTANCE, mergeId);
+				mergeState.add(namespace);
+				mergeState.add(namespace * 100);
+			}
+
+			List<Integer> sources = new ArrayList<>();
+			sources.add(2);
+			sources.add(3);
+			backend.mergePartitionedStates(1, sources, IntSerializer.INSTANCE, mergeId);
+
+			assertEquals("606/6", backend.getPartitionedState(1, IntSerializer.INSTANCE, mergeId).get());
+			assertEquals(null, backend.getPartitionedState(2, IntSerializer.INSTANCE, mergeId).get());
+			assertEquals(null, backend.getPartitionedState(3, IntSerializer.INSTANCE, mergeId).get());
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
 	@Test
 	@SuppressWarnings("unchecked,rawtypes")
 	public void testFoldingState() {
@@ -523,6 +790,148 @@ public abstract class StateBackendTestBase<B extends AbstractStateBackend> {
 		}
 	}
 
+	@Test
+	@SuppressWarnings("unchecked,rawtypes")
+	public void testMapState() {
+		try {
+			backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+			MapStateDescriptor<Integer, String> kvId = new MapStateDescriptor<>("id", Integer.class, String.class);
+			MapState<Integer, String> state = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+			// some modifications to the state
+			backend.setCurrentKey(1);
+			assertEquals(null, state.get(1));
+			assertFalse(state.contains(1));
+			assertEquals("{}", asSortedString(state));
+			state.put(1, "1");
+			backend.setCurrentKey(2);
+			assertEquals(null, state.get(2));
+			state.put(2, "2");
+			state.put(21, null);
+			backend.setCurrentKey(1);
+			assertTrue(state.contains(1));
+			assertEquals("1", state.get(1));
+			assertEquals("{1=1}", asSortedString(state));
+
+			// draw a snapshot
+			HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> snapshot1 = backend.snapshotPartitionedState(682375462378L, 2);
+
+			for (String key: snapshot1.keySet()) {
+				if (snapshot1.get(key) instanceof AsynchronousKvStateSnapshot) {
+					snapshot1.put(key, ((AsynchronousKvStateSnapshot<?, ?, ?, ?, ?>) snapshot1.get(key)).materialize());
+				}
+			}
+
+			// make some more modifications
+			backend.setCurrentKey(1);
+			state.put(1, "101");
+			backend.setCurrentKey(2);
+			state.remove(2);
+			state.put(102, "102");
+			backend.setCurrentKey(3);
+			HashMap<Integer, String> updates = new HashMap<>();
+			updates.put(103, "103");
+			updates.put(1031, "1031");
+			state.putAll(updates);
+
+			// draw another snapshot
+			HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> snapshot2 = backend.snapshotPartitionedState(682375462379L, 4);
+
+			for (String key: snapshot2.keySet()) {
+				if (snapshot2.get(key) instanceof AsynchronousKvStateSnapshot) {
+					snapshot2.put(key, ((AsynchronousKvStateSnapshot<?, ?, ?, ?, ?>) snapshot2.get(key)).materialize());
+				}
+			}
+
+			// validate the original state
+			backend.setCurrentKey(1);
+			assertEquals("{1=101}", asSortedString(state));
+			backend.setCurrentKey(2);
+			assertEquals("{21=null, 102=102}", asSortedString(state));
+			assertTrue(state.contains(21));
+			backend.setCurrentKey(3);
+			assertEquals("{103=103, 1031=1031}", asSortedString(state));
+
+			// iterate over many pairs and remove some of them while iterating
+			backend.setCurrentKey(4);
+			for (int i = 0; i < 1000; i++) {
+				state.put(i, String.valueOf(i));
+			}
+			Iterator<Map.Entry<Integer, String>> iterator = state.iterator();
+			int numPairs = 0;
+			while (iterator.hasNext()) {
+				Map.Entry<Integer, String> entry = iterator.next();
+				assertEquals(String.valueOf(entry.getKey()), entry.getValue());
+				if (entry.getKey() % 2 == 0) {
+					iterator.remove();
+				}
+				numPairs++;
+			}
+			assertEquals(1000, numPairs);
+
+			int numKeys = 0;
+			for (Integer key : state.keys()) {
+				assertTrue(key % 2 == 1);
+				numKeys++;
+			}
+			assertEquals(500, numKeys);
+
+			state.clear();
+			assertFalse(state.iterator().hasNext());
+			assertFalse(state.contains(1));
+
+			backend.dispose();
+
+			// restore the first snapshot and validate it
+			backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+			backend.injectKeyValueStateSnapshots((HashMap) snapshot1, 100);
+
+			for (String key: snapshot1.keySet()) {
+				snapshot1.get(key).discardState();
+			}
+
+			MapState<Integer, String> restored1 = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+			backend.setCurrentKey(1);
+			assertEquals("{1=1}", asSortedString(restored1));
+			backend.setCurrentKey(2);
+			assertEquals("{2=2, 21=null}", asSortedString(restored1));
+
+			backend.dispose();
+
+			// restore the second snapshot and validate it
+			backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+			backend.injectKeyValueStateSnapshots((HashMap) snapshot2, 100);
+
+			for (String key: snapshot2.keySet()) {
+				snapshot2.get(key).discardState();
+			}
+
+			MapState<Integer, String> restored2 = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+			backend.setCurrentKey(1);
+			assertEquals("{1=101}", asSortedString(restored2));
+			backend.setCurrentKey(2);
+			assertEquals("{21=null, 102=102}", asSortedString(restored2));
+			backend.setCurrentKey(3);
+			assertEquals("{103=103, 1031=1031}", asSortedString(restored2));
+			assertEquals("1031", restored2.get(1031));
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	private static String asSortedString(MapState<Integer, String> state) throws Exception {
+		TreeMap<Integer, String> sorted = new TreeMap<>();
+		for (Map.Entry<Integer, String> entry : state.entries()) {
+			sorted.put(entry.getKey(), entry.getValue());
+		}
+		return sorted.toString();
+	}
+
 	@Test
 	public void testValueStateRestoreWithWrongSerializers() {
 		try {
@@ -571,10 +980,7 @@ public abstract class StateBackendTestBase<B extends AbstractStateBackend> {
 				state.value();
 
 				fail("should recognize wrong serializers");
-			} catch (RuntimeException e) {
-				if (!e.getMessage().contains("Trying to access state using wrong StateDescriptor")) {
-					fail("wrong exception " + e);
-				}
+			} catch (StateMigrationException e) {
 				// expected
 			} catch (Exception e) {
 				fail("wrong exception " + e);
@@ -630,10 +1036,7 @@ public abstract class StateBackendTestBase<B extends AbstractStateBackend> {
 				state.get();
 
 				fail("should recognize wrong serializers");
-			} catch (RuntimeException e) {
-				if (!e.getMessage().contains("Trying to access state using wrong StateDescriptor")) {
-					fail("wrong exception " + e);
-				}
+			} catch (StateMigrationException e) {
 				// expected
 			} catch (Exception e) {
 				fail("wrong exception " + e);
@@ -692,10 +1095,7 @@ public abstract class StateBackendTestBase<B extends AbstractStateBackend> {
 				state.get();
 
 				fail("should recognize wrong serializers");
-			} catch (RuntimeException e) {
-				if (!e.getMessage().contains("Trying to access state using wrong StateDescriptor")) {
-					fail("wrong exception " + e);
-				}
+			} catch (StateMigrationException e) {
 				// expected
 			} catch (Exception e) {
 				fail("wrong exception " + e);
@@ -728,6 +1128,464 @@ public abstract class StateBackendTestBase<B extends AbstractStateBackend> {
 		assertFalse(default1 == default2);
 	}
 
+	/**
+	 * Whether the state backend can migrate the values of a restored state to a serializer
+	 * that reads them with a convert deserializer.
+	 */
+	protected boolean supportsStateMigration() {
+		return true;
+	}
+
+	/**
+	 * Tests that the values of restored states are migrated to serializers that read them with
+	 * a convert deserializer, also if a snapshot is taken before all values were accessed.
+	 */
+	@Test
+	@SuppressWarnings("unchecked,rawtypes")
+	public void testStateMigration() throws Exception {
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+
+		ValueStateDescriptor<Integer> valueId = new ValueStateDescriptor<>("value", IntSerializer.INSTANCE, null);
+		ListStateDescriptor<Integer> listId = new ListStateDescriptor<>("list", IntSerializer.INSTANCE);
+		MapStateDescriptor<Integer, Integer> mapId = new MapStateDescriptor<>("map", IntSerializer.INSTANCE, IntSerializer.INSTANCE);
+
+		ValueState<Integer> value = backend.getPartitionedState(null, VoidSerializer.INSTANCE, valueId);
+		ListState<Integer> list = backend.getPartitionedState(null, VoidSerializer.INSTANCE, listId);
+		MapState<Integer, Integer> map = backend.getPartitionedState(null, VoidSerializer.INSTANCE, mapId);
+
+		for (int key = 1; key <= 2; key++) {
+			backend.setCurrentKey(key);
+			value.update(key);
+			list.add(key);
+			list.add(key * 10);
+			map.put(key, key * 100);
+		}
+
+		HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> snapshot1 = backend.snapshotPartitionedState(682375462378L, 2);
+
+		for (String key: snapshot1.keySet()) {
+			if (snapshot1.get(key) instanceof AsynchronousKvStateSnapshot) {
+				snapshot1.put(key, ((AsynchronousKvStateSnapshot<?, ?, ?, ?, ?>) snapshot1.get(key)).materialize());
+			}
+		}
+
+		backend.dispose();
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+		backend.injectKeyValueStateSnapshots((HashMap) snapshot1, 100);
+
+		for (String key: snapshot1.keySet()) {
+			snapshot1.get(key).discardState();
+		}
+
+		ValueStateDescriptor<Integer> migratedValueId = new ValueStateDescriptor<>("value", new IntAsLongSerializer(), null);
+		ListStateDescriptor<Integer> migratedListId = new ListStateDescriptor<>("list", new IntAsLongSerializer());
+		MapStateDescriptor<Integer, Integer> migratedMapId = new MapStateDescriptor<>("map", IntSerializer.INSTANCE, new IntAsLongSerializer());
+
+		if (!supportsStateMigration()) {
+			try {
+				backend.getPartitionedState(null, VoidSerializer.INSTANCE, migratedValueId);
+				fail("The state backend should not migrate the state.");
+			} catch (StateMigrationException expected) {
+				// expected
+			}
+			return;
+		}
+
+		value = backend.getPartitionedState(null, VoidSerializer.INSTANCE, migratedValueId);
+		list = backend.getPartitionedState(null, VoidSerializer.INSTANCE, migratedListId);
+		map = backend.getPartitionedState(null, VoidSerializer.INSTANCE, migratedMapId);
+
+		// only the first key is accessed before the next snapshot
+		backend.setCurrentKey(1);
+		assertEquals(1, (int) value.value());
+		list.add(100);
+		assertEquals(Joiner.on(",").join(list.get()), "1,10,100");
+		assertEquals(100, (int) map.get(1));
+
+		backend.setCurrentKey(3);
+		value.update(3);
+		list.add(3);
+		map.put(3, 300);
+
+		HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> snapshot2 = backend.snapshotPartitionedState(682375462379L, 4);
+
+		for (String key: snapshot2.keySet()) {
+			if (snapshot2.get(key) instanceof AsynchronousKvStateSnapshot) {
+				snapshot2.put(key, ((AsynchronousKvStateSnapshot<?, ?, ?, ?, ?>) snapshot2.get(key)).materialize());
+			}
+		}
+
+		backend.dispose();
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op", IntSerializer.INSTANCE);
+		backend.injectKeyValueStateSnapshots((HashMap) snapshot2, 100);
+
+		for (String key: snapshot2.keySet()) {
+			snapshot2.get(key).discardState();
+		}
+
+		value = backend.getPartitionedState(null, VoidSerializer.INSTANCE, migratedValueId);
+		list = backend.getPartitionedState(null, VoidSerializer.INSTANCE, migratedListId);
+		map = backend.getPartitionedState(null, VoidSerializer.INSTANCE, migratedMapId);
+
+		backend.setCurrentKey(1);
+		assertEquals(1, (int) value.value());
+		assertEquals(Joiner.on(",").join(list.get()), "1,10,100");
+		assertEquals(100, (int) map.get(1));
+
+		backend.setCurrentKey(2);
+		assertEquals(2, (int) value.value());
+		list.add(2);
+		assertEquals(Joiner.on(",").join(list.get()), "2,20,2");
+		Map.Entry<Integer, Integer> entry = map.entries().iterator().next();
+		assertEquals(2, (int) entry.getKey());
+		assertEquals(200, (int) entry.getValue());
+
+		backend.setCurrentKey(3);
+		assertEquals(3, (int) value.value());
+		assertEquals(Joiner.on(",").join(list.get()), "3");
+		assertEquals(300, (int) map.get(3));
+	}
+
+	/**
+	 * Whether the state backend can restore a subset of the key groups of a snapshot and
+	 * combine the key groups of several snapshots.
+	 */
+	protected boolean supportsKeyGroupRescaling() {
+		return true;
+	}
+
+	@Test
+	@SuppressWarnings("unchecked,rawtypes")
+	public void testKeyGroupRescaling() throws Exception {
+		final int numberOfKeyGroups = 10;
+		final int numberOfKeys = 100;
+
+		ValueStateDescriptor<String> kvId = new ValueStateDescriptor<>("id", String.class, null);
+		kvId.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		// write the state with a parallelism of 2
+		List<HashMap<String, KvStateSnapshot>> snapshots = new ArrayList<>();
+
+		for (int subtask = 0; subtask < 2; subtask++) {
+			KeyGroupRange keyGroupRange = KeyGroupRangeAssignment.computeKeyGroupRangeForOperatorIndex(
+				numberOfKeyGroups, 2, subtask);
+
+			backend.initializeForJob(new DummyEnvironment("test", 2, subtask), "test_op",
+				IntSerializer.INSTANCE, numberOfKeyGroups, keyGroupRange);
+
+			ValueState<String> state = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+			for (int key = 0; key < numberOfKeys; key++) {
+				if (keyGroupRange.contains(KeyGroupRangeAssignment.assignToKeyGroup(key, numberOfKeyGroups))) {
+					backend.setCurrentKey(key);
+					state.update("v" + key);
+				}
+			}
+
+			HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> snapshot = backend.snapshotPartitionedState(42L, 4711L);
+
+			for (String key: snapshot.keySet()) {
+				if (snapshot.get(key) instanceof AsynchronousKvStateSnapshot) {
+					snapshot.put(key, ((AsynchronousKvStateSnapshot<?, ?, ?, ?, ?>) snapshot.get(key)).materialize());
+				}
+			}
+
+			snapshots.add((HashMap) snapshot);
+			backend.dispose();
+		}
+
+		if (!supportsKeyGroupRescaling()) {
+			backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op",
+				IntSerializer.INSTANCE, numberOfKeyGroups, new KeyGroupRange(0, numberOfKeyGroups - 1));
+
+			try {
+				backend.injectKeyGroupsStateSnapshots(snapshots, 100);
+				fail("The state backend should not restore several key group ranges.");
+			} catch (UnsupportedOperationException expected) {
+				// expected
+			}
+
+			discardSnapshots(snapshots);
+			return;
+		}
+
+		// scale out to a parallelism of 3, every subtask only gets its own key groups
+		for (int subtask = 0; subtask < 3; subtask++) {
+			KeyGroupRange keyGroupRange = KeyGroupRangeAssignment.computeKeyGroupRangeForOperatorIndex(
+				numberOfKeyGroups, 3, subtask);
+
+			backend.initializeForJob(new DummyEnvironment("test", 3, subtask), "test_op",
+				IntSerializer.INSTANCE, numberOfKeyGroups, keyGroupRange);
+			backend.injectKeyGroupsStateSnapshots(snapshots, 100);
+
+			ValueState<String> restored = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+			for (int key = 0; key < numberOfKeys; key++) {
+				if (keyGroupRange.contains(KeyGroupRangeAssignment.assignToKeyGroup(key, numberOfKeyGroups))) {
+					backend.setCurrentKey(key);
+					assertEquals("v" + key, restored.value());
+				}
+			}
+
+			backend.dispose();
+		}
+
+		// scale in to a parallelism of 1, the single subtask gets all key groups
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0), "test_op",
+			IntSerializer.INSTANCE, numberOfKeyGroups, new KeyGroupRange(0, numberOfKeyGroups - 1));
+		backend.injectKeyGroupsStateSnapshots(snapshots, 100);
+
+		ValueState<String> restored = backend.getPartitionedState(null, VoidSerializer.INSTANCE, kvId);
+
+		for (int key = 0; key < numberOfKeys; key++) {
+			backend.setCurrentKey(key);
+			assertEquals("v" + key, restored.value());
+		}
+
+		discardSnapshots(snapshots);
+	}
+
+	/**
+	 * Whether the states of the backend can be queried.
+	 */
+	protected boolean supportsQueries() {
+		return true;
+	}
+
+	/**
+	 * Tests that queryable states are registered for queries, that queries read the values of
+	 * the states in the format of the {@link KvStateRequestSerializer}, and that the states are
+	 * unregistered when the backend is disposed.
+	 */
+	@Test
+	public void testQueryableState() throws Exception {
+		final KvStateRegistry registry = new KvStateRegistry();
+		final Map<String, KvStateID> registeredIds = new HashMap<>();
+		registry.registerListener(new KvStateRegistryListener() {
+			@Override
+			public void notifyKvStateRegistered(JobID jobId, JobVertexID jobVertexId,
+					KeyGroupRange keyGroupRange, String registrationName, KvStateID kvStateId) {
+				registeredIds.put(registrationName, kvStateId);
+			}
+
+			@Override
+			public void notifyKvStateUnregistered(JobID jobId, JobVertexID jobVertexId,
+					KeyGroupRange keyGroupRange, String registrationName, KvStateID kvStateId) {
+				registeredIds.remove(registrationName);
+			}
+		});
+
+		final TaskKvStateRegistry taskRegistry = registry.createTaskRegistry(new JobID(), new JobVertexID());
+		backend.initializeForJob(new DummyEnvironment("test", 1, 0) {
+			@Override
+			public TaskKvStateRegistry getTaskKvStateRegistry() {
+				return taskRegistry;
+			}
+		}, "test_op", IntSerializer.INSTANCE);
+
+		ValueStateDescriptor<String> valueId = new ValueStateDescriptor<>("value", String.class, null);
+		valueId.setQueryable("queryable-value");
+		valueId.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		ListStateDescriptor<Integer> listId = new ListStateDescriptor<>("list", IntSerializer.INSTANCE);
+		listId.setQueryable("queryable-list");
+
+		MapStateDescriptor<Integer, String> mapId = new MapStateDescriptor<>("map", IntSerializer.INSTANCE, StringSerializer.INSTANCE);
+		mapId.setQueryable("queryable-map");
+
+		ValueStateDescriptor<String> notQueryableId = new ValueStateDescriptor<>("not-queryable", String.class, null);
+		notQueryableId.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		ValueState<String> valueState = backend.getPartitionedState(null, VoidSerializer.INSTANCE, valueId);
+		ListState<Integer> listState = backend.getPartitionedState(null, VoidSerializer.INSTANCE, listId);
+		MapState<Integer, String> mapState = backend.getPartitionedState(null, VoidSerializer.INSTANCE, mapId);
+		backend.getPartitionedState(null, VoidSerializer.INSTANCE, notQueryableId);
+
+		assertEquals(3, registeredIds.size());
+
+		backend.setCurrentKey(1);
+		valueState.update("one");
+		listState.add(11);
+		listState.add(12);
+		mapState.put(13, "thirteen");
+		mapState.put(14, null);
+
+		// queries see the writes that the backend committed, which a snapshot makes sure of
+		HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> snapshot = backend.snapshotPartitionedState(682375462378L, 2);
+		for (KvStateSnapshot<?, ?, ?, ?, ?> kvStateSnapshot : snapshot.values()) {
+			if (kvStateSnapshot instanceof AsynchronousKvStateSnapshot) {
+				kvStateSnapshot = ((AsynchronousKvStateSnapshot<?, ?, ?, ?, ?>) kvStateSnapshot).materialize();
+			}
+			kvStateSnapshot.discardState();
+		}
+
+		byte[] key1 = KvStateRequestSerializer.serializeKeyAndNamespace(1, IntSerializer.INSTANCE, null, VoidSerializer.INSTANCE);
+		byte[] key2 = KvStateRequestSerializer.serializeKeyAndNamespace(2, IntSerializer.INSTANCE, null, VoidSerializer.INSTANCE);
+
+		KvState<?, ?, ?, ?, ?> queriedValueState = registry.getKvState(registeredIds.get("queryable-value"));
+		KvState<?, ?, ?, ?, ?> queriedListState = registry.getKvState(registeredIds.get("queryable-list"));
+		KvState<?, ?, ?, ?, ?> queriedMapState = registry.getKvState(registeredIds.get("queryable-map"));
+
+		if (!supportsQueries()) {
+			try {
+				queriedValueState.getSerializedValue(key1);
+				fail("The states of the backend should not be queryable.");
+			} catch (UnsupportedOperationException expected) {
+				// expected
+			}
+		} else {
+			assertEquals("one", KvStateRequestSerializer.deserializeValue(
+				queriedValueState.getSerializedValue(key1), StringSerializer.INSTANCE));
+			assertEquals(Arrays.asList(11, 12), KvStateRequestSerializer.deserializeList(
+				queriedListState.getSerializedValue(key1), IntSerializer.INSTANCE));
+
+			Map<Integer, String> expectedMap = new HashMap<>();
+			expectedMap.put(13, "thirteen");
+			expectedMap.put(14, null);
+			assertEquals(expectedMap, KvStateRequestSerializer.deserializeMap(
+				queriedMapState.getSerializedValue(key1), IntSerializer.INSTANCE, StringSerializer.INSTANCE));
+
+			assertNull(queriedValueState.getSerializedValue(key2));
+			assertNull(queriedListState.getSerializedValue(key2));
+			assertNull(queriedMapState.getSerializedValue(key2));
+		}
+
+		KvStateID valueStateId = registeredIds.get("queryable-value");
+		backend.dispose();
+
+		assertTrue(registeredIds.isEmpty());
+		assertNull(registry.getKvState(valueStateId));
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static void discardSnapshots(List<HashMap<String, KvStateSnapshot>> snapshots) throws Exception {
+		for (HashMap<String, KvStateSnapshot> snapshot : snapshots) {
+			for (KvStateSnapshot kvStateSnapshot : snapshot.values()) {
+				kvStateSnapshot.discardState();
+			}
+		}
+	}
+
+	/**
+	 * Serializer for integers that writes them as longs. It reads the values of the
+	 * {@link IntSerializer} after a migration.
+	 */
+	private static final class IntAsLongSerializer extends TypeSerializer<Integer> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public boolean isImmutableType() {
+			return true;
+		}
+
+		@Override
+		public TypeSerializer<Integer> duplicate() {
+			return this;
+		}
+
+		@Override
+		public Integer createInstance() {
+			return 0;
+		}
+
+		@Override
+		public Integer copy(Integer from) {
+			return from;
+		}
+
+		@Override
+		public Integer copy(Integer from, Integer reuse) {
+			return from;
+		}
+
+		@Override
+		public int getLength() {
+			return 8;
+		}
+
+		@Override
+		public void serialize(Integer record, DataOutputView target) throws IOException {
+			target.writeLong(record);
+		}
+
+		@Override
+		public Integer deserialize(DataInputView source) throws IOException {
+			return (int) source.readLong();
+		}
+
+		@Override
+		public Integer deserialize(Integer reuse, DataInputView source) throws IOException {
+			return deserialize(source);
+		}
+
+		@Override
+		public void copy(DataInputView source, DataOutputView target) throws IOException {
+			target.writeLong(source.readLong());
+		}
+
+		@Override
+		public CompatibilityResult<Integer> ensureCompatibility(TypeSerializerConfigSnapshot configSnapshot) {
+			if (configSnapshot instanceof DefaultTypeSerializerConfigSnapshot &&
+					((DefaultTypeSerializerConfigSnapshot<?>) configSnapshot).getSerializer() instanceof IntSerializer) {
+				return CompatibilityResult.requiresMigration(IntSerializer.INSTANCE);
+			}
+			return super.ensureCompatibility(configSnapshot);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof IntAsLongSerializer;
+		}
+
+		@Override
+		public boolean canEqual(Object obj) {
+			return obj instanceof IntAsLongSerializer;
+		}
+
+		@Override
+		public int hashCode() {
+			return IntAsLongSerializer.class.hashCode();
+		}
+	}
+
+	private static class ManualTtlTimeProvider implements TtlTimeProvider {
+
+		long time;
+
+		@Override
+		public long currentTimestamp() {
+			return time;
+		}
+	}
+
+	private static class SumAndCount implements AggregateFunction<Integer, long[], String> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public long[] createAccumulator() {
+			return new long[2];
+		}
+
+		@Override
+		public long[] add(Integer value, long[] accumulator) {
+			accumulator[0] += value;
+			accumulator[1]++;
+			return accumulator;
+		}
+
+		@Override
+		public long[] merge(long[] a, long[] b) {
+			a[0] += b[0];
+			a[1] += b[1];
+			return a;
+		}
+
+		@Override
+		public String getResult(long[] accumulator) {
+			return accumulator[0] + "/" + accumulator[1];
+		}
+	}
+
 	private static class AppendingReduce implements ReduceFunction<String> {
 		@Override
 		public String reduce(String value1, String value2) throws Exception {
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.runtime.util.DataInputDeserializer;
+import org.apache.flink.runtime.util.DataOutputSerializer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the copy-on-write {@link StateTable}.
+ */
+public class StateTableTest {
+
+	private static final int NUMBER_OF_KEY_GROUPS = 16;
+
+	private static final TypeSerializer<ArrayList<Integer>> LIST_SERIALIZER =
+		new ArrayListSerializer<>(IntSerializer.INSTANCE);
+
+	@Test
+	public void testPutGetRemove() {
+		StateTable<Integer, String, ArrayList<Integer>> table = createTable();
+
+		for (int i = 0; i < 1000; i++) {
+			table.put(i, "a", list(i));
+			table.put(i, null, list(-i));
+		}
+
+		assertEquals(2000, table.size());
+
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(list(i), table.get(i, "a"));
+			assertEquals(list(-i), table.get(i, null));
+			assertTrue(table.containsKey(i, "a"));
+			assertFalse(table.containsKey(i, "b"));
+		}
+
+		for (int i = 0; i < 1000; i += 2) {
+			table.remove(i, "a");
+		}
+
+		assertEquals(1500, table.size());
+		assertNull(table.get(0, "a"));
+		assertEquals(list(1), table.get(1, "a"));
+		assertEquals(list(0), table.get(0, null));
+
+		table.clear();
+		assertEquals(0, table.size());
+		assertNull(table.get(1, "a"));
+	}
+
+	/**
+	 * Checks that a snapshot is not affected by modifications of the table, including values
+	 * that are modified in place, removed entries, and the resizing of the table.
+	 */
+	@Test
+	public void testSnapshotIsolation() throws Exception {
+		StateTable<Integer, String, ArrayList<Integer>> table = createTable();
+
+		Map<Integer, ArrayList<Integer>> expected = new HashMap<>();
+		for (int i = 0; i < 50; i++) {
+			table.put(i, "ns", list(i));
+			expected.put(i, list(i));
+		}
+
+		StateTableSnapshot<Integer, String, ArrayList<Integer>> snapshot = table.createSnapshot();
+
+		// modify values in place and remove entries
+		for (int i = 0; i < 50; i++) {
+			if (i % 3 == 0) {
+				table.remove(i, "ns");
+			} else {
+				table.get(i, "ns").add(-1);
+			}
+		}
+
+		// add enough entries to resize the table
+		for (int i = 50; i < 1000; i++) {
+			table.put(i, "ns", list(i));
+		}
+
+		assertEquals(expected, readSnapshot(snapshot));
+		snapshot.release();
+
+		assertNull(table.get(3, "ns"));
+		assertEquals(list(1, -1), table.get(1, "ns"));
+		assertEquals(list(999), table.get(999, "ns"));
+	}
+
+	/**
+	 * Checks that a value is copied at most once per snapshot, and no longer copied when all
+	 * snapshots have been released.
+	 */
+	@Test
+	public void testValuesAreCopiedOncePerSnapshot() throws Exception {
+		StateTable<Integer, String, ArrayList<Integer>> table = createTable();
+		table.put(1, "ns", list(1));
+
+		ArrayList<Integer> before = table.get(1, "ns");
+		assertSame(before, table.get(1, "ns"));
+
+		StateTableSnapshot<Integer, String, ArrayList<Integer>> snapshot = table.createSnapshot();
+
+		ArrayList<Integer> copy = table.get(1, "ns");
+		assertNotSame(before, copy);
+		assertSame(copy, table.get(1, "ns"));
+
+		snapshot.release();
+
+		assertSame(copy, table.get(1, "ns"));
+	}
+
+	/**
+	 * Checks that the incremental removal eventually visits all entries, also while a snapshot
+	 * shares the entries with the table.
+	 */
+	@Test
+	public void testRemoveIncrementally() throws Exception {
+		StateTable<Integer, String, ArrayList<Integer>> table = createTable();
+
+		Map<Integer, ArrayList<Integer>> expected = new HashMap<>();
+		for (int i = 0; i < 1000; i++) {
+			table.put(i, "ns", list(i));
+			expected.put(i, list(i));
+		}
+
+		StateTableSnapshot<Integer, String, ArrayList<Integer>> snapshot = table.createSnapshot();
+
+		int removed = 0;
+		for (int i = 0; i < 1000 && removed < 500; i++) {
+			removed += table.removeIncrementally(16, new OddValueFilter());
+		}
+
+		assertEquals(500, removed);
+		assertEquals(500, table.size());
+		assertNull(table.get(1, "ns"));
+		assertEquals(list(2), table.get(2, "ns"));
+
+		assertEquals(expected, readSnapshot(snapshot));
+		snapshot.release();
+	}
+
+	/**
+	 * Checks that a snapshot can be released multiple times and cannot be written afterwards.
+	 */
+	@Test
+	public void testReleasedSnapshotCannotBeWritten() throws Exception {
+		StateTable<Integer, String, ArrayList<Integer>> table = createTable();
+		table.put(1, "ns", list(1));
+
+		StateTableSnapshot<Integer, String, ArrayList<Integer>> snapshot = table.createSnapshot();
+		snapshot.release();
+		snapshot.release();
+
+		ArrayList<Integer> value = table.get(1, "ns");
+		assertSame(value, table.get(1, "ns"));
+
+		try {
+			readSnapshot(snapshot);
+			fail("Did not throw expected exception");
+		}
+		catch (IOException expected) {
+		}
+	}
+
+	@Test
+	public void testSnapshotFilter() throws Exception {
+		StateTable<Integer, String, ArrayList<Integer>> table = createTable();
+
+		Map<Integer, ArrayList<Integer>> expected = new HashMap<>();
+		for (int i = 0; i < 100; i++) {
+			table.put(i, "ns", list(i));
+			if (i % 2 == 0) {
+				expected.put(i, list(i));
+			}
+		}
+
+		StateTableSnapshot<Integer, String, ArrayList<Integer>> snapshot = table.createSnapshot(new OddValueFilter());
+
+		assertEquals(expected, readSnapshot(snapshot));
+		snapshot.release();
+
+		assertEquals(100, table.size());
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static StateTable<Integer, String, ArrayList<Integer>> createTable() {
+		return new StateTable<>(LIST_SERIALIZER, NUMBER_OF_KEY_GROUPS, new KeyGroupRange(0, NUMBER_OF_KEY_GROUPS - 1));
+	}
+
+	private static Map<Integer, ArrayList<Integer>> readSnapshot(
+			StateTableSnapshot<Integer, String, ArrayList<Integer>> snapshot) throws Exception {
+
+		Map<Integer, ArrayList<Integer>> result = new HashMap<>();
+
+		for (int keyGroup = 0; keyGroup < NUMBER_OF_KEY_GROUPS; keyGroup++) {
+			DataOutputSerializer out = new DataOutputSerializer(64);
+			snapshot.writeKeyGroup(keyGroup, IntSerializer.INSTANCE, StringSerializer.INSTANCE, LIST_SERIALIZER, out);
+
+			DataInputDeserializer in = new DataInputDeserializer(out.getByteArray(), 0, out.length());
+			int numNamespaces = in.readInt();
+			for (int i = 0; i < numNamespaces; i++) {
+				assertEquals("ns", StringSerializer.INSTANCE.deserialize(in));
+				int numValues = in.readInt();
+				for (int j = 0; j < numValues; j++) {
+					int key = IntSerializer.INSTANCE.deserialize(in);
+					assertEquals(keyGroup, KeyGroupRangeAssignment.assignToKeyGroup(key, NUMBER_OF_KEY_GROUPS));
+					result.put(key, LIST_SERIALIZER.deserialize(in));
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Rejects the lists that start with an odd number.
+	 */
+	private static class OddValueFilter implements StateTable.ValueFilter<ArrayList<Integer>> {
+
+		@Override
+		public boolean keep(ArrayList<Integer> value) {
+			return value.get(0) % 2 == 0;
+		}
+	}
+
+	private static ArrayList<Integer> list(Integer... values) {
+		ArrayList<Integer> list = new ArrayList<>();
+		for (Integer value : values) {
+			list.add(value);
+		}
+		return list;
+	}
+}
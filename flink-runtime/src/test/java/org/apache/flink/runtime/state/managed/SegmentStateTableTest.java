@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.managed;
+
+import org.apache.flink.core.memory.MemoryType;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.io.disk.iomanager.IOManagerAsync;
+import org.apache.flink.runtime.memory.MemoryManager;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.util.DataInputDeserializer;
+import org.apache.flink.runtime.util.DataOutputSerializer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the {@link SegmentStateTable} and its {@link StateMemoryPool}.
+ */
+public class SegmentStateTableTest {
+
+	private static final int PAGE_SIZE = 4096;
+
+	private static final int NUM_PAGES = 64;
+
+	private MemoryManager memoryManager;
+
+	private IOManager ioManager;
+
+	@Before
+	public void setup() {
+		memoryManager = new MemoryManager(NUM_PAGES * PAGE_SIZE, 1, PAGE_SIZE, MemoryType.HEAP, true);
+		ioManager = new IOManagerAsync();
+	}
+
+	@After
+	public void teardown() {
+		ioManager.shutdown();
+		assertTrue(memoryManager.verifyEmpty());
+		memoryManager.shutdown();
+	}
+
+	@Test
+	public void testPutGetRemove() throws Exception {
+		StateMemoryPool pool = new StateMemoryPool(memoryManager, ioManager, NUM_PAGES * PAGE_SIZE);
+		SegmentStateTable table = new SegmentStateTable(pool);
+
+		for (int i = 0; i < 1000; i++) {
+			put(table, i, value(i, 10));
+		}
+		assertEquals(1000, table.size());
+
+		for (int i = 0; i < 1000; i++) {
+			assertArrayEquals(value(i, 10), get(table, i));
+		}
+
+		// values of the same length are updated in place, others are appended
+		for (int i = 0; i < 1000; i++) {
+			put(table, i, value(-i, i % 2 == 0 ? 10 : 20));
+		}
+		assertEquals(1000, table.size());
+
+		for (int i = 0; i < 1000; i += 3) {
+			assertTrue(remove(table, i));
+		}
+		assertFalse(remove(table, 0));
+
+		for (int i = 0; i < 1000; i++) {
+			if (i % 3 == 0) {
+				assertNull(get(table, i));
+			} else {
+				assertArrayEquals(value(-i, i % 2 == 0 ? 10 : 20), get(table, i));
+			}
+		}
+
+		table.dispose();
+		pool.release();
+	}
+
+	@Test
+	public void testAppend() throws Exception {
+		StateMemoryPool pool = new StateMemoryPool(memoryManager, ioManager, NUM_PAGES * PAGE_SIZE);
+		SegmentStateTable table = new SegmentStateTable(pool);
+
+		byte[] key = key(42);
+		byte[] expected = new byte[0];
+
+		// the values grow beyond the size of a memory segment
+		for (int i = 0; i < 100; i++) {
+			byte[] value = value(i, 100);
+			table.append(hash(42), 0, key, key.length, value, value.length);
+
+			expected = Arrays.copyOf(expected, expected.length + value.length);
+			System.arraycopy(value, 0, expected, expected.length - value.length, value.length);
+		}
+
+		assertEquals(1, table.size());
+		assertArrayEquals(expected, get(table, 42));
+
+		table.dispose();
+		pool.release();
+	}
+
+	/**
+	 * Checks that the removed records are reclaimed by compaction when the memory runs out.
+	 */
+	@Test
+	public void testCompaction() throws Exception {
+		// no I/O manager, so the table can only compact
+		StateMemoryPool pool = new StateMemoryPool(memoryManager, null, NUM_PAGES * PAGE_SIZE);
+		SegmentStateTable table = new SegmentStateTable(pool);
+
+		// every round writes more than the memory of the pool
+		for (int round = 0; round < 5; round++) {
+			for (int i = 0; i < 500; i++) {
+				put(table, i, value(round * i, 100 + round));
+			}
+		}
+
+		assertEquals(500, table.size());
+		for (int i = 0; i < 500; i++) {
+			assertArrayEquals(value(4 * i, 104), get(table, i));
+		}
+
+		table.dispose();
+		assertEquals(pool.getNumberOfAllocatedSegments(), pool.getNumberOfFreeSegments());
+		pool.release();
+	}
+
+	@Test
+	public void testOutOfMemoryWithoutSpilling() throws Exception {
+		StateMemoryPool pool = new StateMemoryPool(memoryManager, null, NUM_PAGES * PAGE_SIZE);
+		SegmentStateTable table = new SegmentStateTable(pool);
+
+		try {
+			for (int i = 0; i < 10000; i++) {
+				put(table, i, value(i, 100));
+			}
+			fail("The table should run out of memory.");
+		} catch (IOException expected) {
+			// expected
+		}
+
+		table.dispose();
+		pool.release();
+	}
+
+	/**
+	 * Checks that partitions are spilled when the memory runs out and are read back on access.
+	 */
+	@Test
+	public void testSpilling() throws Exception {
+		StateMemoryPool pool = new StateMemoryPool(memoryManager, ioManager, NUM_PAGES * PAGE_SIZE);
+		SegmentStateTable table = new SegmentStateTable(pool);
+		SegmentStateTable other = new SegmentStateTable(pool);
+
+		final int numRecords = 5000;
+		for (int i = 0; i < numRecords; i++) {
+			put(table, i, value(i, 100));
+			put(other, i, value(-i, 10));
+		}
+
+		assertTrue(pool.getNumberOfSpilledPartitions() > 0);
+		assertTrue(pool.getNumberOfAllocatedSegments() <= NUM_PAGES);
+
+		for (int i = 0; i < numRecords; i++) {
+			assertArrayEquals(value(i, 100), get(table, i));
+			assertArrayEquals(value(-i, 10), get(other, i));
+		}
+
+		// snapshots contain the spilled partitions
+		DataOutputSerializer out = new DataOutputSerializer(1024);
+		table.writeSnapshot(out);
+
+		other.dispose();
+		table.dispose();
+		assertEquals(pool.getNumberOfAllocatedSegments(), pool.getNumberOfFreeSegments());
+
+		SegmentStateTable restored = new SegmentStateTable(pool);
+		restored.readSnapshot(new DataInputDeserializer(out.getByteArray(), 0, out.length()), new KeyGroupRange(0, 0));
+
+		assertEquals(numRecords, restored.size());
+		for (int i = 0; i < numRecords; i++) {
+			assertArrayEquals(value(i, 100), get(restored, i));
+		}
+
+		restored.dispose();
+		pool.release();
+	}
+
+	@Test
+	public void testSnapshotRestoresKeyGroups() throws Exception {
+		StateMemoryPool pool = new StateMemoryPool(memoryManager, ioManager, NUM_PAGES * PAGE_SIZE);
+		SegmentStateTable table = new SegmentStateTable(pool);
+
+		for (int i = 0; i < 100; i++) {
+			byte[] key = key(i);
+			byte[] value = value(i, 10);
+			table.put(hash(i), i % 4, key, key.length, value, value.length);
+		}
+		for (int i = 0; i < 100; i += 5) {
+			remove(table, i);
+		}
+
+		DataOutputSerializer out = new DataOutputSerializer(1024);
+		table.writeSnapshot(out);
+		table.dispose();
+
+		SegmentStateTable restored = new SegmentStateTable(pool);
+		restored.readSnapshot(new DataInputDeserializer(out.getByteArray(), 0, out.length()), new KeyGroupRange(1, 2));
+
+		for (int i = 0; i < 100; i++) {
+			if (i % 5 != 0 && (i % 4 == 1 || i % 4 == 2)) {
+				assertArrayEquals(value(i, 10), get(restored, i));
+			} else {
+				assertNull(get(restored, i));
+			}
+		}
+
+		restored.dispose();
+		pool.release();
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static void put(SegmentStateTable table, int k, byte[] value) throws IOException {
+		byte[] key = key(k);
+		table.put(hash(k), 0, key, key.length, value, value.length);
+	}
+
+	private static byte[] get(SegmentStateTable table, int k) throws IOException {
+		byte[] key = key(k);
+		return table.get(hash(k), key, key.length);
+	}
+
+	private static boolean remove(SegmentStateTable table, int k) throws IOException {
+		byte[] key = key(k);
+		return table.remove(hash(k), key, key.length);
+	}
+
+	private static byte[] key(int k) {
+		return new byte[] { (byte) (k >>> 24), (byte) (k >>> 16), (byte) (k >>> 8), (byte) k };
+	}
+
+	private static int hash(int k) {
+		return k * 0x9E3779B9;
+	}
+
+	private static byte[] value(int v, int length) {
+		byte[] value = new byte[length];
+		for (int i = 0; i < length; i++) {
+			value[i] = (byte) (v + i);
+		}
+		return value;
+	}
+}
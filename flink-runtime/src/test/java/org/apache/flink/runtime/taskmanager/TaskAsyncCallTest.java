@@ -51,6 +51,7 @@ import scala.concurrent.duration.FiniteDuration;
 import java.io.Serializable;
 import java.net.URL;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertFalse;
@@ -199,7 +200,7 @@ public class TaskAsyncCallTest {
 		}
 
 		@Override
-		public void setInitialState(StateHandle<Serializable> stateHandle, long ts) throws Exception {
+		public void setInitialState(StateHandle<Serializable> stateHandle, List<StateHandle<Serializable>> keyGroupsStateHandles, long ts) throws Exception {
 
 		}
 
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.datastream;
+
+import org.apache.flink.annotation.PublicEvolving;
+import org.apache.flink.api.common.functions.Function;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.java.Utils;
+import org.apache.flink.api.java.typeutils.TypeExtractor;
+import org.apache.flink.streaming.api.functions.async.AsyncFunction;
+import org.apache.flink.streaming.api.operators.async.AsyncWaitOperator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies an {@link AsyncFunction} to a {@link DataStream}. The function starts an
+ * asynchronous operation for each record, for example a request to an external system,
+ * and the task continues with the next records while the operations are in flight.
+ *
+ * <p>At most {@code capacity} records are in flight per parallel instance. The results are
+ * emitted either in the order of the input records ({@link #orderedWait}) or as soon as
+ * they are available ({@link #unorderedWait}). In both cases, the watermarks keep their
+ * position relative to the records.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * DataStream<String> input = ...;
+ * DataStream<Tuple2<String, String>> enriched =
+ *     AsyncDataStream.unorderedWait(input, new KeyValueLookupFunction(), 1000, TimeUnit.MILLISECONDS, 100);
+ * }</pre>
+ */
+@PublicEvolving
+public class AsyncDataStream {
+
+	/** The order in which the asynchronous operator emits its results */
+	public enum OutputMode {
+		/** The results are emitted in the order of the input records */
+		ORDERED,
+
+		/** The results are emitted as soon as they are available, between two watermarks */
+		UNORDERED
+	}
+
+	/** The default number of records in flight per parallel instance */
+	public static final int DEFAULT_QUEUE_CAPACITY = 100;
+
+	/**
+	 * Adds an asynchronous operator whose results are emitted as soon as they are available.
+	 * Records are not reordered across watermarks.
+	 *
+	 * @param in The input stream.
+	 * @param func The asynchronous function.
+	 * @param timeout The timeout of an asynchronous operation. Zero disables the timeout.
+	 * @param timeUnit The unit of the timeout.
+	 * @param capacity The maximum number of records in flight per parallel instance.
+	 * @param <IN> The type of the input records.
+	 * @param <OUT> The type of the output records.
+	 * @return The stream with the results of the asynchronous function.
+	 */
+	public static <IN, OUT> SingleOutputStreamOperator<OUT> unorderedWait(
+			DataStream<IN> in,
+			AsyncFunction<IN, OUT> func,
+			long timeout,
+			TimeUnit timeUnit,
+			int capacity) {
+		return addOperator(in, func, timeUnit.toMillis(timeout), capacity, OutputMode.UNORDERED);
+	}
+
+	/**
+	 * Adds an asynchronous operator whose results are emitted as soon as they are available,
+	 * with at most {@link #DEFAULT_QUEUE_CAPACITY} records in flight.
+	 *
+	 * @see #unorderedWait(DataStream, AsyncFunction, long, TimeUnit, int)
+	 */
+	public static <IN, OUT> SingleOutputStreamOperator<OUT> unorderedWait(
+			DataStream<IN> in,
+			AsyncFunction<IN, OUT> func,
+			long timeout,
+			TimeUnit timeUnit) {
+		return unorderedWait(in, func, timeout, timeUnit, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Adds an asynchronous operator whose results are emitted in the order of the input
+	 * records.
+	 *
+	 * @param in The input stream.
+	 * @param func The asynchronous function.
+	 * @param timeout The timeout of an asynchronous operation. Zero disables the timeout.
+	 * @param timeUnit The unit of the timeout.
+	 * @param capacity The maximum number of records in flight per parallel instance.
+	 * @param <IN> The type of the input records.
+	 * @param <OUT> The type of the output records.
+	 * @return The stream with the results of the asynchronous function.
+	 */
+	public static <IN, OUT> SingleOutputStreamOperator<OUT> orderedWait(
+			DataStream<IN> in,
+			AsyncFunction<IN, OUT> func,
+			long timeout,
+			TimeUnit timeUnit,
+			int capacity) {
+		return addOperator(in, func, timeUnit.toMillis(timeout), capacity, OutputMode.ORDERED);
+	}
+
+	/**
+	 * Adds an asynchronous operator whose results are emitted in the order of the input
+	 * records, with at most {@link #DEFAULT_QUEUE_CAPACITY} records in flight.
+	 *
+	 * @see #orderedWait(DataStream, AsyncFunction, long, TimeUnit, int)
+	 */
+	public static <IN, OUT> SingleOutputStreamOperator<OUT> orderedWait(
+			DataStream<IN> in,
+			AsyncFunction<IN, OUT> func,
+			long timeout,
+			TimeUnit timeUnit) {
+		return orderedWait(in, func, timeout, timeUnit, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	private static <IN, OUT> SingleOutputStreamOperator<OUT> addOperator(
+			DataStream<IN> in,
+			AsyncFunction<IN, OUT> func,
+			long timeout,
+			int capacity,
+			OutputMode mode) {
+
+		TypeInformation<OUT> outTypeInfo = TypeExtractor.getUnaryOperatorReturnType(
+				(Function) func, AsyncFunction.class, -1, 0, in.getType(),
+				Utils.getCallLocationName(), true);
+
+		AsyncWaitOperator<IN, OUT> operator = new AsyncWaitOperator<>(
+				in.getExecutionEnvironment().clean(func), timeout, capacity, mode);
+
+		return in.transform("async wait operator", outTypeInfo, operator);
+	}
+}
@@ -20,10 +20,12 @@ package org.apache.flink.streaming.api.datastream;
 
 import org.apache.flink.annotation.PublicEvolving;
 import org.apache.flink.annotation.Public;
+import org.apache.flink.api.common.functions.AggregateFunction;
 import org.apache.flink.api.common.functions.FoldFunction;
 import org.apache.flink.api.common.functions.Function;
 import org.apache.flink.api.common.functions.ReduceFunction;
 import org.apache.flink.api.common.functions.RichFunction;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
 import org.apache.flink.api.common.state.FoldingStateDescriptor;
 import org.apache.flink.api.common.state.ListStateDescriptor;
 import org.apache.flink.api.common.state.ReducingStateDescriptor;
@@ -35,17 +37,20 @@ import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
 import org.apache.flink.streaming.api.functions.aggregation.AggregationFunction;
 import org.apache.flink.streaming.api.functions.aggregation.ComparableAggregator;
 import org.apache.flink.streaming.api.functions.aggregation.SumAggregator;
+import org.apache.flink.streaming.api.functions.windowing.AggregateApplyWindowFunction;
 import org.apache.flink.streaming.api.functions.windowing.FoldApplyWindowFunction;
 import org.apache.flink.streaming.api.functions.windowing.PassThroughWindowFunction;
 import org.apache.flink.streaming.api.functions.windowing.ReduceApplyWindowFunction;
 import org.apache.flink.streaming.api.functions.windowing.WindowFunction;
 import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
 import org.apache.flink.streaming.api.windowing.assigners.MergingWindowAssigner;
+import org.apache.flink.streaming.api.windowing.assigners.SlidingEventTimeWindows;
 import org.apache.flink.streaming.api.windowing.assigners.SlidingProcessingTimeWindows;
 import org.apache.flink.streaming.api.windowing.assigners.TumblingProcessingTimeWindows;
 import org.apache.flink.streaming.api.windowing.assigners.WindowAssigner;
 import org.apache.flink.streaming.api.windowing.evictors.Evictor;
 import org.apache.flink.streaming.api.windowing.time.Time;
+import org.apache.flink.streaming.api.windowing.triggers.EventTimeTrigger;
 import org.apache.flink.streaming.api.windowing.triggers.ProcessingTimeTrigger;
 import org.apache.flink.streaming.api.windowing.triggers.Trigger;
 import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
@@ -53,6 +58,7 @@ import org.apache.flink.streaming.api.windowing.windows.Window;
 import org.apache.flink.streaming.runtime.operators.windowing.AccumulatingProcessingTimeWindowOperator;
 import org.apache.flink.streaming.runtime.operators.windowing.AggregatingProcessingTimeWindowOperator;
 import org.apache.flink.streaming.runtime.operators.windowing.EvictingWindowOperator;
+import org.apache.flink.streaming.runtime.operators.windowing.SlidingEventTimePaneWindowOperator;
 import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalIterableWindowFunction;
 import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalSingleValueWindowFunction;
 import org.apache.flink.streaming.runtime.operators.windowing.WindowOperator;
@@ -102,6 +108,9 @@ public class WindowedStream<T, K, W extends Window> {
 	/** The user-specified allowed lateness. */
 	private long allowedLateness = Long.MAX_VALUE;
 
+	/** Whether reduce functions pre-aggregate the elements in panes that the windows share. */
+	private boolean preAggregateInPanes;
+
 	@PublicEvolving
 	public WindowedStream(KeyedStream<T, K> input,
 			WindowAssigner<? super T, W> windowAssigner) {
@@ -159,6 +168,27 @@ public class WindowedStream<T, K, W extends Window> {
 		return this;
 	}
 
+	/**
+	 * Pre-aggregates the elements of a reduce function in panes that are shared by the
+	 * overlapping windows. Every element then updates the state of a single pane, instead of the
+	 * state of each window that it belongs to. This is only valid for
+	 * {@link SlidingEventTimeWindows} with the default {@code EventTimeTrigger} and without an
+	 * {@code Evictor}.
+	 *
+	 * <p>
+	 * Note: The state of the panes is not compatible with the state of the windows. A job can
+	 * therefore not switch to or from pre-aggregation in panes when it is restored from a
+	 * savepoint.
+	 */
+	@PublicEvolving
+	public WindowedStream<T, K, W> preAggregateInPanes() {
+		if (!(windowAssigner instanceof SlidingEventTimeWindows)) {
+			throw new UnsupportedOperationException("Only SlidingEventTimeWindows can be pre-aggregated in panes.");
+		}
+		this.preAggregateInPanes = true;
+		return this;
+	}
+
 
 	// ------------------------------------------------------------------------
 	//  Operations on the keyed windows
@@ -271,6 +301,9 @@ public class WindowedStream<T, K, W extends Window> {
 	 * @return The data stream that is the result of applying the window function to the window.
 	 */
 	public <R> SingleOutputStreamOperator<R> apply(WindowFunction<T, R, K, W> function, TypeInformation<R> resultType) {
+		if (preAggregateInPanes) {
+			throw new UnsupportedOperationException("Only a ReduceFunction can be pre-aggregated in panes.");
+		}
 
 		//clean the closure
 		function = input.getExecutionEnvironment().clean(function);
@@ -377,6 +410,11 @@ public class WindowedStream<T, K, W extends Window> {
 
 		OneInputStreamOperator<T, R> operator;
 
+		if (preAggregateInPanes && (evictor != null || !(trigger instanceof EventTimeTrigger))) {
+			throw new UnsupportedOperationException("Pre-aggregation in panes can not be used with an " +
+				"Evictor or a Trigger other than the EventTimeTrigger.");
+		}
+
 		if (evictor != null) {
 			ListStateDescriptor<StreamRecord<T>> stateDesc = new ListStateDescriptor<>("window-contents",
 				new StreamRecordSerializer<>(input.getType().createSerializer(getExecutionEnvironment().getConfig())));
@@ -394,6 +432,25 @@ public class WindowedStream<T, K, W extends Window> {
 					evictor,
 					allowedLateness);
 
+		} else if (preAggregateInPanes) {
+			ReducingStateDescriptor<T> stateDesc = new ReducingStateDescriptor<>("pane-contents",
+				reduceFunction,
+				input.getType().createSerializer(getExecutionEnvironment().getConfig()));
+
+			opName = "PaneWindow(" + windowAssigner + ", " + stateDesc + ", " + trigger + ", " + udfName + ")";
+
+			@SuppressWarnings("unchecked")
+			WindowFunction<T, R, K, TimeWindow> timeWindowFunction = (WindowFunction<T, R, K, TimeWindow>) function;
+
+			operator =
+				new SlidingEventTimePaneWindowOperator<>((SlidingEventTimeWindows) windowAssigner,
+					new TimeWindow.Serializer(),
+					keySel,
+					input.getKeyType().createSerializer(getExecutionEnvironment().getConfig()),
+					stateDesc,
+					new InternalSingleValueWindowFunction<>(timeWindowFunction),
+					allowedLateness);
+
 		} else {
 			ReducingStateDescriptor<T> stateDesc = new ReducingStateDescriptor<>("window-contents",
 				reduceFunction,
@@ -457,6 +514,10 @@ public class WindowedStream<T, K, W extends Window> {
 		if (windowAssigner instanceof MergingWindowAssigner) {
 			throw new UnsupportedOperationException("Fold cannot be used with a merging WindowAssigner.");
 		}
+		if (preAggregateInPanes) {
+			throw new UnsupportedOperationException("Fold cannot be pre-aggregated in panes, because " +
+				"fold results cannot be combined. Please use a ReduceFunction instead.");
+		}
 
 		//clean the closures
 		function = input.getExecutionEnvironment().clean(function);
@@ -508,6 +569,181 @@ public class WindowedStream<T, K, W extends Window> {
 		return input.transform(opName, resultType, operator);
 	}
 
+	/**
+	 * Applies the given aggregation function to each window. The aggregation function is called
+	 * for each evaluation of the window for each key individually. The output of the aggregation
+	 * function is interpreted as a regular non-windowed stream.
+	 *
+	 * <p>
+	 * Arriving data is incrementally aggregated into a single accumulator per key and window,
+	 * which is merged when windows are merged.
+	 *
+	 * @param function The aggregation function.
+	 * @return The data stream that is the result of applying the aggregation function to the window.
+	 *
+	 * @param <ACC> The type of the aggregation function's accumulator
+	 * @param <R> The type of the aggregation function's result
+	 */
+	@PublicEvolving
+	public <ACC, R> SingleOutputStreamOperator<R> aggregate(AggregateFunction<T, ACC, R> function) {
+		TypeInformation<ACC> accumulatorType = TypeExtractor.getAggregateFunctionAccumulatorType(
+				function, input.getType(), null, false);
+
+		TypeInformation<R> resultType = TypeExtractor.getAggregateFunctionReturnType(
+				function, input.getType(), null, false);
+
+		return aggregate(function, accumulatorType, resultType);
+	}
+
+	/**
+	 * Applies the given aggregation function to each window. The aggregation function is called
+	 * for each evaluation of the window for each key individually. The output of the aggregation
+	 * function is interpreted as a regular non-windowed stream.
+	 *
+	 * <p>
+	 * Arriving data is incrementally aggregated into a single accumulator per key and window,
+	 * which is merged when windows are merged.
+	 *
+	 * @param function The aggregation function.
+	 * @param accumulatorType Type information for the accumulator of the aggregation function
+	 * @param resultType Type information for the result type of the aggregation function
+	 * @return The data stream that is the result of applying the aggregation function to the window.
+	 *
+	 * @param <ACC> The type of the aggregation function's accumulator
+	 * @param <R> The type of the aggregation function's result
+	 */
+	@PublicEvolving
+	public <ACC, R> SingleOutputStreamOperator<R> aggregate(
+			AggregateFunction<T, ACC, R> function,
+			TypeInformation<ACC> accumulatorType,
+			TypeInformation<R> resultType) {
+
+		if (function instanceof RichFunction) {
+			throw new UnsupportedOperationException("AggregateFunction of aggregate can not be a RichFunction. " +
+				"Please use aggregate(AggregateFunction, WindowFunction) instead.");
+		}
+
+		return aggregate(function, new PassThroughWindowFunction<K, W, R>(), accumulatorType, resultType, resultType);
+	}
+
+	/**
+	 * Applies the given window function to each window. The window function is called for each
+	 * evaluation of the window for each key individually. The output of the window function is
+	 * interpreted as a regular non-windowed stream.
+	 *
+	 * <p>
+	 * Arriving data is incrementally aggregated using the given aggregation function. The window
+	 * function is called with the result of the aggregation function.
+	 *
+	 * @param aggFunction The aggregation function that is used for incremental aggregation.
+	 * @param windowFunction The window function.
+	 * @return The data stream that is the result of applying the window function to the window.
+	 *
+	 * @param <ACC> The type of the aggregation function's accumulator
+	 * @param <V> The type of the aggregation function's result
+	 * @param <R> The type of the window function's result
+	 */
+	@PublicEvolving
+	public <ACC, V, R> SingleOutputStreamOperator<R> aggregate(
+			AggregateFunction<T, ACC, V> aggFunction,
+			WindowFunction<V, R, K, W> windowFunction) {
+
+		TypeInformation<ACC> accumulatorType = TypeExtractor.getAggregateFunctionAccumulatorType(
+				aggFunction, input.getType(), null, false);
+
+		TypeInformation<V> aggResultType = TypeExtractor.getAggregateFunctionReturnType(
+				aggFunction, input.getType(), null, false);
+
+		TypeInformation<R> resultType = TypeExtractor.getUnaryOperatorReturnType(
+				windowFunction, WindowFunction.class, true, true, aggResultType, null, false);
+
+		return aggregate(aggFunction, windowFunction, accumulatorType, aggResultType, resultType);
+	}
+
+	/**
+	 * Applies the given window function to each window. The window function is called for each
+	 * evaluation of the window for each key individually. The output of the window function is
+	 * interpreted as a regular non-windowed stream.
+	 *
+	 * <p>
+	 * Arriving data is incrementally aggregated using the given aggregation function. The window
+	 * function is called with the result of the aggregation function.
+	 *
+	 * @param aggregateFunction The aggregation function that is used for incremental aggregation.
+	 * @param windowFunction The window function.
+	 * @param accumulatorType Type information for the accumulator of the aggregation function
+	 * @param aggregateResultType Type information for the result type of the aggregation function
+	 * @param resultType Type information for the result type of the window function
+	 * @return The data stream that is the result of applying the window function to the window.
+	 *
+	 * @param <ACC> The type of the aggregation function's accumulator
+	 * @param <V> The type of the aggregation function's result
+	 * @param <R> The type of the window function's result
+	 */
+	@PublicEvolving
+	public <ACC, V, R> SingleOutputStreamOperator<R> aggregate(
+			AggregateFunction<T, ACC, V> aggregateFunction,
+			WindowFunction<V, R, K, W> windowFunction,
+			TypeInformation<ACC> accumulatorType,
+			TypeInformation<V> aggregateResultType,
+			TypeInformation<R> resultType) {
+
+		if (aggregateFunction instanceof RichFunction) {
+			throw new UnsupportedOperationException("AggregateFunction of aggregate can not be a RichFunction.");
+		}
+		if (preAggregateInPanes) {
+			throw new UnsupportedOperationException("Only a ReduceFunction can be pre-aggregated in panes.");
+		}
+
+		//clean the closures
+		windowFunction = input.getExecutionEnvironment().clean(windowFunction);
+		aggregateFunction = input.getExecutionEnvironment().clean(aggregateFunction);
+
+		String callLocation = Utils.getCallLocationName();
+		String udfName = "WindowedStream." + callLocation;
+
+		String opName;
+		KeySelector<T, K> keySel = input.getKeySelector();
+
+		OneInputStreamOperator<T, R> operator;
+
+		if (evictor != null) {
+			// the evictor needs the elements, so they are buffered and aggregated when the window fires
+			ListStateDescriptor<StreamRecord<T>> stateDesc = new ListStateDescriptor<>("window-contents",
+				new StreamRecordSerializer<>(input.getType().createSerializer(getExecutionEnvironment().getConfig())));
+
+			opName = "TriggerWindow(" + windowAssigner + ", " + stateDesc + ", " + trigger + ", " + evictor + ", " + udfName + ")";
+
+			operator = new EvictingWindowOperator<>(windowAssigner,
+				windowAssigner.getWindowSerializer(getExecutionEnvironment().getConfig()),
+				keySel,
+				input.getKeyType().createSerializer(getExecutionEnvironment().getConfig()),
+				stateDesc,
+				new InternalIterableWindowFunction<>(new AggregateApplyWindowFunction<>(aggregateFunction, windowFunction)),
+				trigger,
+				evictor,
+				allowedLateness);
+
+		} else {
+			AggregatingStateDescriptor<T, ACC, V> stateDesc = new AggregatingStateDescriptor<>("window-contents",
+				aggregateFunction,
+				accumulatorType.createSerializer(getExecutionEnvironment().getConfig()));
+
+			opName = "TriggerWindow(" + windowAssigner + ", " + stateDesc + ", " + trigger + ", " + udfName + ")";
+
+			operator = new WindowOperator<>(windowAssigner,
+				windowAssigner.getWindowSerializer(getExecutionEnvironment().getConfig()),
+				keySel,
+				input.getKeyType().createSerializer(getExecutionEnvironment().getConfig()),
+				stateDesc,
+				new InternalSingleValueWindowFunction<>(windowFunction),
+				trigger,
+				allowedLateness);
+		}
+
+		return input.transform(opName, resultType, operator);
+	}
+
 	// ------------------------------------------------------------------------
 	//  Aggregations on the keyed windows
 	// ------------------------------------------------------------------------
@@ -64,6 +64,9 @@ public class CheckpointConfig implements java.io.Serializable {
 	/** Flag to force checkpointing in iterative jobs */
 	private boolean forceCheckpointing;
 
+	/** Flag to let the barriers of exactly-once checkpoints overtake the in-flight data */
+	private boolean unalignedCheckpoints;
+
 	// ------------------------------------------------------------------------
 
 	/**
@@ -93,6 +96,34 @@ public class CheckpointConfig implements java.io.Serializable {
 		this.checkpointingMode = requireNonNull(checkpointingMode);
 	}
 
+	/**
+	 * Checks whether exactly-once checkpoints are unaligned.
+	 *
+	 * @return True, if the checkpoints are unaligned, false otherwise.
+	 */
+	@PublicEvolving
+	public boolean isUnalignedCheckpoints() {
+		return unalignedCheckpoints;
+	}
+
+	/**
+	 * Sets whether exactly-once checkpoints are unaligned. The checkpoint barriers of unaligned
+	 * checkpoints overtake the buffers, which are queued in the outputs of the tasks, and the
+	 * tasks do not block the inputs, which already received the barrier. Instead, the overtaken
+	 * data and the data, which the tasks receive between the first and the last barrier of a
+	 * checkpoint, are part of the checkpoint and are processed again on recovery.
+	 *
+	 * <p>The time of unaligned checkpoints does not depend on backpressure, but the checkpoints
+	 * are larger. Unaligned checkpoints can only be restored with the same parallelism and
+	 * have no effect in at-least-once mode.
+	 *
+	 * @param unalignedCheckpoints The flag to enable unaligned checkpoints.
+	 */
+	@PublicEvolving
+	public void setUnalignedCheckpoints(boolean unalignedCheckpoints) {
+		this.unalignedCheckpoints = unalignedCheckpoints;
+	}
+
 	/**
 	 * Gets the interval in which checkpoints are periodically scheduled.
 	 * 
@@ -145,7 +176,9 @@ public class CheckpointConfig implements java.io.Serializable {
 	 * Gets the minimal pause between checkpointing attempts. This setting defines how soon the
 	 * checkpoint coordinator may trigger another checkpoint after it becomes possible to trigger
 	 * another checkpoint with respect to the maximum number of concurrent checkpoints
-	 * (see {@link #getMaxConcurrentCheckpoints()}).
+	 * (see {@link #getMaxConcurrentCheckpoints()}). The pause counts from the trigger of the latest checkpoint
+	 * and starts over when a checkpoint completes, so that slowly completing checkpoints do not
+	 * stack up.
 	 *
 	 * @return The minimal pause before the next checkpoint is triggered.
 	 */
@@ -157,7 +190,9 @@ public class CheckpointConfig implements java.io.Serializable {
 	 * Sets the minimal pause between checkpointing attempts. This setting defines how soon the
 	 * checkpoint coordinator may trigger another checkpoint after it becomes possible to trigger
 	 * another checkpoint with respect to the maximum number of concurrent checkpoints
-	 * (see {@link #setMaxConcurrentCheckpoints(int)}).
+	 * (see {@link #setMaxConcurrentCheckpoints(int)}). The pause counts from the trigger of the latest checkpoint
+	 * and starts over when a checkpoint completes, so that slowly completing checkpoints do not
+	 * stack up.
 	 * 
 	 * <p>If the maximum number of concurrent checkpoints is set to one, this setting makes effectively sure
 	 * that a minimum amount of time passes where no checkpoint is in progress at all.
@@ -188,6 +223,10 @@ public class CheckpointConfig implements java.io.Serializable {
 	 * value is <i>n</i>, then no checkpoints will be triggered while <i>n</i> checkpoint attempts are
 	 * currently in flight. For the next checkpoint to be triggered, one checkpoint attempt would need
 	 * to finish or expire.
+	 *
+	 * <p>The value also bounds the number of checkpoints whose state each task materializes
+	 * asynchronously at the same time. A task that takes further snapshots waits until one of
+	 * these materializations is done.
 	 * 
 	 * @param maxConcurrentCheckpoints The maximum number of concurrent checkpoint attempts.
 	 */
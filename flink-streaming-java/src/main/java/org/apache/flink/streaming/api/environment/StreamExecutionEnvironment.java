@@ -179,6 +179,36 @@ public abstract class StreamExecutionEnvironment {
 		return config.getParallelism();
 	}
 
+	/**
+	 * Sets the maximum degree of parallelism defined for the program. The
+	 * maximum parallelism determines the number of key groups into which the
+	 * keyed state is split, and thereby the upper bound for the parallelism
+	 * to which the program can be rescaled when it is restored from a
+	 * checkpoint or savepoint. The value must not change between the runs
+	 * of a program that share state.
+	 *
+	 * @param maxParallelism The maximum parallelism, must be at least one.
+	 */
+	@PublicEvolving
+	public StreamExecutionEnvironment setMaxParallelism(int maxParallelism) {
+		if (maxParallelism < 1) {
+			throw new IllegalArgumentException("maximum parallelism must be at least one.");
+		}
+		config.setMaxParallelism(maxParallelism);
+		return this;
+	}
+
+	/**
+	 * Gets the maximum degree of parallelism defined for the program.
+	 *
+	 * @return The maximum parallelism, or {@link ExecutionConfig#PARALLELISM_DEFAULT}
+	 * if it is derived from the parallelism of the program.
+	 */
+	@PublicEvolving
+	public int getMaxParallelism() {
+		return config.getMaxParallelism();
+	}
+
 	/**
 	 * Sets the maximum time frequency (milliseconds) for the flushing of the
 	 * output buffers. By default the output buffers flush frequently to provide
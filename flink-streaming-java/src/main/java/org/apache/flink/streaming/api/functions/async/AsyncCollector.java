@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.functions.async;
+
+import org.apache.flink.annotation.PublicEvolving;
+
+import java.util.Collection;
+
+/**
+ * The collector that an {@link AsyncFunction} passes the result of the asynchronous
+ * operation for an input element to. It may be called from any thread, but only once per
+ * input element. Later calls (for example after the operation timed out) are ignored.
+ *
+ * @param <OUT> The type of the output elements.
+ */
+@PublicEvolving
+public interface AsyncCollector<OUT> {
+
+	/**
+	 * Completes the operation with the given result elements. An empty collection
+	 * emits no elements for the input element.
+	 *
+	 * @param result The result elements.
+	 */
+	void collect(Collection<OUT> result);
+
+	/**
+	 * Completes the operation with an error, which fails the operator.
+	 *
+	 * @param error The error of the operation.
+	 */
+	void collect(Throwable error);
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.functions.async;
+
+import org.apache.flink.annotation.PublicEvolving;
+import org.apache.flink.api.common.functions.Function;
+
+import java.io.Serializable;
+
+/**
+ * A function to trigger asynchronous I/O operations, such as lookups in an external
+ * key/value store, for each input element.
+ *
+ * <p>For each input element, {@link #asyncInvoke(Object, AsyncCollector)} is called in the
+ * task thread. It should issue the request and return immediately, without waiting for the
+ * response. Once the response arrives (typically in a callback thread of the client), the
+ * function passes the result, or the error, to the given {@link AsyncCollector}. The
+ * operator keeps a bounded number of such requests in flight and emits their results in
+ * the order of the input, or as soon as they complete
+ * (see {@link org.apache.flink.streaming.api.datastream.AsyncDataStream}).
+ *
+ * <pre>{@code
+ * public class LookupFunction implements AsyncFunction<String, String> {
+ *
+ *     public void asyncInvoke(final String key, final AsyncCollector<String> collector) {
+ *         ListenableFuture<String> future = client.get(key);
+ *
+ *         Futures.addCallback(future, new FutureCallback<String>() {
+ *             public void onSuccess(String value) {
+ *                 collector.collect(Collections.singletonList(value));
+ *             }
+ *
+ *             public void onFailure(Throwable t) {
+ *                 collector.collect(t);
+ *             }
+ *         });
+ *     }
+ * }
+ * }</pre>
+ *
+ * @param <IN> The type of the input elements.
+ * @param <OUT> The type of the output elements.
+ */
+@PublicEvolving
+public interface AsyncFunction<IN, OUT> extends Function, Serializable {
+
+	/**
+	 * Triggers the asynchronous operation for the given input element.
+	 *
+	 * @param input The input element.
+	 * @param collector The collector to pass the result or the error to, once the operation completes.
+	 * @throws Exception Exceptions fail the operator, and thereby the task.
+	 */
+	void asyncInvoke(IN input, AsyncCollector<OUT> collector) throws Exception;
+}
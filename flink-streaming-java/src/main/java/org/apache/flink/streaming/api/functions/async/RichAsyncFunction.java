@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.functions.async;
+
+import org.apache.flink.annotation.PublicEvolving;
+import org.apache.flink.api.common.functions.AbstractRichFunction;
+
+/**
+ * Rich variant of the {@link AsyncFunction}. It has access to the runtime context and the
+ * life-cycle methods {@link #open(org.apache.flink.configuration.Configuration)} and
+ * {@link #close()}, which are the natural place to create and shut down the client of the
+ * external system.
+ *
+ * <p>The results are collected outside of the task thread, so the collector callbacks must
+ * not access the partitioned state of the runtime context.
+ *
+ * @param <IN> The type of the input elements.
+ * @param <OUT> The type of the output elements.
+ */
+@PublicEvolving
+public abstract class RichAsyncFunction<IN, OUT> extends AbstractRichFunction implements AsyncFunction<IN, OUT> {
+
+	private static final long serialVersionUID = 1L;
+}
@@ -71,10 +71,13 @@ public class StreamConfig implements Serializable {
 
 	private static final String CHECKPOINTING_ENABLED = "checkpointing";
 	private static final String CHECKPOINT_MODE = "checkpointMode";
+	private static final String UNALIGNED_CHECKPOINTS = "unalignedCheckpoints";
+	private static final String MAX_CONCURRENT_ASYNC_CHECKPOINTS = "maxConcurrentAsyncCheckpoints";
 	
 	private static final String STATE_BACKEND = "statebackend";
 	private static final String STATE_PARTITIONER = "statePartitioner";
 	private static final String STATE_KEY_SERIALIZER = "statekeyser";
+	private static final String NUMBER_OF_KEY_GROUPS = "numberOfKeyGroups";
 	
 	private static final String TIME_CHARACTERISTIC = "timechar";
 	
@@ -352,6 +355,22 @@ public class StreamConfig implements Serializable {
 			return DEFAULT_CHECKPOINTING_MODE; 
 		}
 	}
+
+	public void setUnalignedCheckpoints(boolean unalignedCheckpoints) {
+		config.setBoolean(UNALIGNED_CHECKPOINTS, unalignedCheckpoints);
+	}
+
+	public boolean isUnalignedCheckpoints() {
+		return config.getBoolean(UNALIGNED_CHECKPOINTS, false);
+	}
+
+	public void setMaxConcurrentAsyncCheckpoints(int maxConcurrentAsyncCheckpoints) {
+		config.setInteger(MAX_CONCURRENT_ASYNC_CHECKPOINTS, maxConcurrentAsyncCheckpoints);
+	}
+
+	public int getMaxConcurrentAsyncCheckpoints() {
+		return config.getInteger(MAX_CONCURRENT_ASYNC_CHECKPOINTS, 1);
+	}
 	
 
 	public void setOutEdgesInOrder(List<StreamEdge> outEdgeList) {
@@ -448,6 +467,18 @@ public class StreamConfig implements Serializable {
 			throw new StreamTaskException("Could not instantiate state key serializer from task config.", e);
 		}
 	}
+
+	public void setNumberOfKeyGroups(int numberOfKeyGroups) {
+		config.setInteger(NUMBER_OF_KEY_GROUPS, numberOfKeyGroups);
+	}
+
+	/**
+	 * Gets the number of key groups of the keyed state, or -1 if the task uses one key group
+	 * per parallel subtask.
+	 */
+	public int getNumberOfKeyGroups() {
+		return config.getInteger(NUMBER_OF_KEY_GROUPS, -1);
+	}
 	
 	// ------------------------------------------------------------------------
 	//  Miscellansous
@@ -40,6 +40,7 @@ import org.apache.flink.runtime.jobgraph.tasks.JobSnapshottingSettings;
 import org.apache.flink.runtime.jobmanager.scheduler.CoLocationGroup;
 import org.apache.flink.runtime.jobmanager.scheduler.SlotSharingGroup;
 import org.apache.flink.runtime.operators.util.TaskConfig;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 import org.apache.flink.streaming.api.CheckpointingMode;
 import org.apache.flink.streaming.api.environment.CheckpointConfig;
 import org.apache.flink.streaming.api.operators.AbstractUdfStreamOperator;
@@ -47,6 +48,7 @@ import org.apache.flink.streaming.api.operators.ChainingStrategy;
 import org.apache.flink.streaming.api.operators.StreamOperator;
 import org.apache.flink.streaming.api.transformations.StreamTransformation;
 import org.apache.flink.streaming.runtime.partitioner.ForwardPartitioner;
+import org.apache.flink.streaming.runtime.partitioner.HashPartitioner;
 import org.apache.flink.streaming.runtime.partitioner.RescalePartitioner;
 import org.apache.flink.streaming.runtime.partitioner.StreamPartitioner;
 import org.apache.flink.streaming.runtime.tasks.StreamIterationHead;
@@ -121,6 +123,9 @@ public class StreamingJobGraphGenerator {
 		// submission iff they didn't change.
 		Map<Integer, byte[]> hashes = traverseStreamGraphAndGenerateHashes();
 
+		// the key groups have to be known by the partitioners before the edges are serialized
+		configureKeyGroups();
+
 		setChaining(hashes);
 
 		setPhysicalEdges();
@@ -291,6 +296,12 @@ public class StreamingJobGraphGenerator {
 			jobVertex.setParallelism(parallelism);
 		}
 
+		int numberOfKeyGroups = streamGraph.getExecutionConfig().getMaxParallelism();
+
+		if (numberOfKeyGroups > 0) {
+			jobVertex.setNumberOfKeyGroups(numberOfKeyGroups);
+		}
+
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("Parallelism set: {} for {}", parallelism, streamNodeId);
 		}
@@ -330,6 +341,8 @@ public class StreamingJobGraphGenerator {
 		config.setCheckpointingEnabled(ceckpointCfg.isCheckpointingEnabled());
 		if (ceckpointCfg.isCheckpointingEnabled()) {
 			config.setCheckpointMode(ceckpointCfg.getCheckpointingMode());
+			config.setUnalignedCheckpoints(ceckpointCfg.isUnalignedCheckpoints());
+			config.setMaxConcurrentAsyncCheckpoints(ceckpointCfg.getMaxConcurrentCheckpoints());
 		}
 		else {
 			// the "at-least-once" input handler is slightly cheaper (in the absence of checkpoints),
@@ -339,6 +352,7 @@ public class StreamingJobGraphGenerator {
 		config.setStatePartitioner(0, vertex.getStatePartitioner1());
 		config.setStatePartitioner(1, vertex.getStatePartitioner2());
 		config.setStateKeySerializer(vertex.getStateKeySerializer());
+		config.setNumberOfKeyGroups(streamGraph.getExecutionConfig().getMaxParallelism());
 		
 		Class<? extends AbstractInvokable> vertexClass = vertex.getJobVertexClass();
 
@@ -413,6 +427,37 @@ public class StreamingJobGraphGenerator {
 				&& streamGraph.isChainingEnabled();
 	}
 
+	/**
+	 * Sets the number of key groups on all hash partitioned edges, if a maximum parallelism
+	 * has been configured. Otherwise, each keyed operator uses one key group per parallel
+	 * instance, which is what the hash partitioner does by default.
+	 */
+	private void configureKeyGroups() {
+		int numberOfKeyGroups = streamGraph.getExecutionConfig().getMaxParallelism();
+
+		if (numberOfKeyGroups <= 0) {
+			return;
+		}
+
+		if (numberOfKeyGroups > KeyGroupRangeAssignment.UPPER_BOUND_NUMBER_OF_KEY_GROUPS) {
+			throw new IllegalStateException("The maximum parallelism (" + numberOfKeyGroups +
+				") must not be larger than " + KeyGroupRangeAssignment.UPPER_BOUND_NUMBER_OF_KEY_GROUPS + '.');
+		}
+
+		for (StreamNode node : streamGraph.getStreamNodes()) {
+			if (node.getParallelism() > numberOfKeyGroups) {
+				throw new IllegalStateException("The parallelism (" + node.getParallelism() + ") of " +
+					node + " is larger than the maximum parallelism (" + numberOfKeyGroups + ").");
+			}
+
+			for (StreamEdge edge : node.getOutEdges()) {
+				if (edge.getPartitioner() instanceof HashPartitioner) {
+					((HashPartitioner<?>) edge.getPartitioner()).setNumberOfKeyGroups(numberOfKeyGroups);
+				}
+			}
+		}
+	}
+
 	private void setSlotSharing() {
 
 		Map<String, SlotSharingGroup> slotSharingGroups = new HashMap<>();
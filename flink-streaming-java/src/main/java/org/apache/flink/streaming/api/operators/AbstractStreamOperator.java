@@ -25,11 +25,14 @@ import org.apache.flink.api.common.state.StateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.common.typeutils.base.VoidSerializer;
 import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.core.memory.DataInputView;
 import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Gauge;
 import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.streaming.api.graph.StreamConfig;
 import org.apache.flink.runtime.state.KvStateSnapshot;
 import org.apache.flink.runtime.state.AbstractStateBackend;
+import org.apache.flink.runtime.state.StateHandle;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.operators.Triggerable;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
@@ -39,7 +42,11 @@ import org.apache.flink.streaming.runtime.tasks.StreamTaskState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ScheduledFuture;
 
 /**
@@ -94,6 +101,14 @@ public abstract class AbstractStreamOperator<OUT>
 	private AbstractStateBackend stateBackend = null;
 	protected MetricGroup metrics;
 
+	// ---------------- timers ------------------
+
+	/** The timer services of this operator, by name */
+	private transient Map<String, InternalTimerServiceImpl<?, ?>> timerServices;
+
+	/** The restored timers of timer services that were not requested yet, by name */
+	private transient Map<String, List<StateHandle<DataInputView>>> restoredTimerStates;
+
 	// ------------------------------------------------------------------------
 	//  Life Cycle
 	// ------------------------------------------------------------------------
@@ -161,6 +176,12 @@ public abstract class AbstractStreamOperator<OUT>
 	 */
 	@Override
 	public void dispose() {
+		if (timerServices != null) {
+			for (InternalTimerServiceImpl<?, ?> timerService : timerServices.values()) {
+				timerService.close();
+			}
+			timerServices = null;
+		}
 		if (stateBackend != null) {
 			try {
 				stateBackend.close();
@@ -187,8 +208,18 @@ public abstract class AbstractStreamOperator<OUT>
 			if (partitionedSnapshots != null) {
 				state.setKvStates(partitionedSnapshots);
 			}
-		}
 
+			if (timerServices != null) {
+				HashMap<String, StateHandle<DataInputView>> timerStates = new HashMap<>();
+				for (Map.Entry<String, InternalTimerServiceImpl<?, ?>> timerService : timerServices.entrySet()) {
+					AbstractStateBackend.CheckpointStateOutputView out =
+						stateBackend.createCheckpointStateOutputView(checkpointId, timestamp);
+					timerService.getValue().snapshotTimers(out);
+					timerStates.put(timerService.getKey(), out.closeAndGetHandle());
+				}
+				state.setTimerStates(timerStates);
+			}
+		}
 
 		return state;
 	}
@@ -201,6 +232,41 @@ public abstract class AbstractStreamOperator<OUT>
 		if (stateBackend != null) {
 			stateBackend.injectKeyValueStateSnapshots((HashMap)state.getKvStates(), recoveryTimestamp);
 		}
+		addRestoredTimerStates(state.getTimerStates());
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes,unchecked")
+	public void restoreKeyGroupsState(List<StreamTaskState> keyGroupsStates, long recoveryTimestamp) throws Exception {
+		// like the key/value state above, the key groups are restored lazily
+		List<HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>>> kvStates = new ArrayList<>();
+		for (StreamTaskState keyGroupsState : keyGroupsStates) {
+			if (keyGroupsState.getKvStates() != null) {
+				kvStates.add(keyGroupsState.getKvStates());
+			}
+			addRestoredTimerStates(keyGroupsState.getTimerStates());
+		}
+
+		if (stateBackend != null && !kvStates.isEmpty()) {
+			stateBackend.injectKeyGroupsStateSnapshots((List) kvStates, recoveryTimestamp);
+		}
+	}
+
+	private void addRestoredTimerStates(HashMap<String, StateHandle<DataInputView>> timerStates) {
+		// the timers are restored when the timer service is requested in open()
+		if (timerStates != null) {
+			if (restoredTimerStates == null) {
+				restoredTimerStates = new HashMap<>();
+			}
+			for (Map.Entry<String, StateHandle<DataInputView>> timerState : timerStates.entrySet()) {
+				List<StateHandle<DataInputView>> handles = restoredTimerStates.get(timerState.getKey());
+				if (handles == null) {
+					handles = new ArrayList<>();
+					restoredTimerStates.put(timerState.getKey(), handles);
+				}
+				handles.add(timerState.getValue());
+			}
+		}
 	}
 	
 	@Override
@@ -264,6 +330,111 @@ public abstract class AbstractStreamOperator<OUT>
 		return container.getCurrentProcessingTime();
 	}
 
+	/**
+	 * Returns the {@link InternalTimerService} of the given name, creating it on the first call.
+	 * The timers of the service are checkpointed with the keyed state of the operator and
+	 * restored when the service is created. The operator must be keyed, and the service should
+	 * be requested in {@link #open()}.
+	 *
+	 * <p>The timers are kept in the queues of the state backend, if it is an
+	 * {@link InternalTimerQueueFactory}, and on the JVM heap otherwise.
+	 *
+	 * @param name The name of the timer service, unique within the operator.
+	 * @param namespaceSerializer The serializer for the namespaces of the timers.
+	 * @param callback The callback that is invoked for the timers of the service.
+	 */
+	@SuppressWarnings("unchecked")
+	protected <K, N> InternalTimerService<N> getInternalTimerService(
+			String name,
+			TypeSerializer<N> namespaceSerializer,
+			InternalTimerCallback<K, N> callback) throws Exception {
+
+		if (timerServices == null) {
+			timerServices = new LinkedHashMap<>();
+			registerTimerMetrics();
+		}
+
+		InternalTimerServiceImpl<K, N> timerService = (InternalTimerServiceImpl<K, N>) timerServices.get(name);
+		if (timerService != null) {
+			return timerService;
+		}
+
+		TypeSerializer<K> keySerializer = config.getStateKeySerializer(getUserCodeClassloader());
+		if (keySerializer == null) {
+			throw new UnsupportedOperationException("Timers are only supported on keyed streams.");
+		}
+
+		AbstractStateBackend backend = getStateBackend();
+		int numberOfKeyGroups = backend.getNumberOfKeyGroups();
+
+		InternalTimerQueue<K, N> eventTimeTimers;
+		InternalTimerQueue<K, N> processingTimeTimers;
+		if (backend instanceof InternalTimerQueueFactory) {
+			InternalTimerQueueFactory factory = (InternalTimerQueueFactory) backend;
+			eventTimeTimers = factory.createTimerQueue(name + "-event-time",
+				keySerializer, namespaceSerializer, numberOfKeyGroups, backend.getKeyGroupRange());
+			processingTimeTimers = factory.createTimerQueue(name + "-processing-time",
+				keySerializer, namespaceSerializer, numberOfKeyGroups, backend.getKeyGroupRange());
+		} else {
+			eventTimeTimers = new HeapInternalTimerQueue<>(numberOfKeyGroups, backend.getKeyGroupRange());
+			processingTimeTimers = new HeapInternalTimerQueue<>(numberOfKeyGroups, backend.getKeyGroupRange());
+		}
+
+		timerService = new InternalTimerServiceImpl<>(this, keySerializer, namespaceSerializer,
+			backend.getKeyGroupRange(), callback, eventTimeTimers, processingTimeTimers);
+
+		if (restoredTimerStates != null) {
+			List<StateHandle<DataInputView>> handles = restoredTimerStates.remove(name);
+			if (handles != null) {
+				for (StateHandle<DataInputView> handle : handles) {
+					timerService.restoreTimers(handle.getState(getUserCodeClassloader()));
+				}
+			}
+		}
+
+		timerServices.put(name, timerService);
+		return timerService;
+	}
+
+	/**
+	 * Advances the watermark of all timer services of this operator, which fires their
+	 * event-time timers up to the watermark.
+	 */
+	protected void advanceWatermark(long watermark) throws Exception {
+		if (timerServices != null) {
+			for (InternalTimerServiceImpl<?, ?> timerService : timerServices.values()) {
+				timerService.advanceWatermark(watermark);
+			}
+		}
+	}
+
+	private void registerTimerMetrics() {
+		metrics.gauge("numEventTimeTimers", new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				long numTimers = 0;
+				if (timerServices != null) {
+					for (InternalTimerServiceImpl<?, ?> timerService : timerServices.values()) {
+						numTimers += timerService.numEventTimeTimers();
+					}
+				}
+				return numTimers;
+			}
+		});
+		metrics.gauge("numProcessingTimeTimers", new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				long numTimers = 0;
+				if (timerServices != null) {
+					for (InternalTimerServiceImpl<?, ?> timerService : timerServices.values()) {
+						numTimers += timerService.numProcessingTimeTimers();
+					}
+				}
+				return numTimers;
+			}
+		});
+	}
+
 	/**
 	 * Creates a partitioned state handle, using the state backend configured for this task.
 	 * 
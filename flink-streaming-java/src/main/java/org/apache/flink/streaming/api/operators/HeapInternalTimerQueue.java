@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * An {@link InternalTimerQueue} that keeps the timers on the JVM heap.
+ *
+ * <p>Every key group has its own {@link IndexedHeap} of timers and a hash map, which
+ * de-duplicates the timers and finds them for removal in constant time. A second heap orders
+ * the key groups by their earliest timer, so that the overall earliest timer is found in
+ * constant time as well.
+ *
+ * @param <K> Type of the key of the timers.
+ * @param <N> Type of the namespace of the timers.
+ */
+@Internal
+public class HeapInternalTimerQueue<K, N> implements InternalTimerQueue<K, N> {
+
+	private final int numberOfKeyGroups;
+
+	private final KeyGroupRange keyGroupRange;
+
+	/** The timers of each key group of the range, indexed by key group minus the start of the range */
+	private final KeyGroupTimers<K, N>[] timersByKeyGroup;
+
+	/** The key groups ordered by their earliest timer */
+	private final IndexedHeap<KeyGroupTimers<K, N>> keyGroupHeap;
+
+	private int size;
+
+	@SuppressWarnings("unchecked")
+	public HeapInternalTimerQueue(int numberOfKeyGroups, KeyGroupRange keyGroupRange) {
+		checkArgument(numberOfKeyGroups > 0, "The number of key groups must be positive.");
+		this.numberOfKeyGroups = numberOfKeyGroups;
+		this.keyGroupRange = checkNotNull(keyGroupRange);
+
+		this.timersByKeyGroup = new KeyGroupTimers[keyGroupRange.getNumberOfKeyGroups()];
+		this.keyGroupHeap = new IndexedHeap<>(new Comparator<KeyGroupTimers<K, N>>() {
+			@Override
+			public int compare(KeyGroupTimers<K, N> o1, KeyGroupTimers<K, N> o2) {
+				return Long.compare(o1.getEarliestTimestamp(), o2.getEarliestTimestamp());
+			}
+		});
+
+		for (int i = 0; i < timersByKeyGroup.length; i++) {
+			timersByKeyGroup[i] = new KeyGroupTimers<>();
+			keyGroupHeap.add(timersByKeyGroup[i]);
+		}
+	}
+
+	@Override
+	public boolean add(InternalTimer<K, N> timer) {
+		KeyGroupTimers<K, N> keyGroupTimers = getKeyGroupTimers(timer.getKey());
+		if (keyGroupTimers.timers.containsKey(timer)) {
+			return false;
+		}
+
+		InternalTimer<K, N> previousHead = keyGroupTimers.heap.peek();
+
+		keyGroupTimers.timers.put(timer, timer);
+		keyGroupTimers.heap.add(timer);
+		size++;
+
+		if (keyGroupTimers.heap.peek() != previousHead) {
+			keyGroupHeap.adjust(keyGroupTimers);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean remove(InternalTimer<K, N> timer) {
+		KeyGroupTimers<K, N> keyGroupTimers = getKeyGroupTimers(timer.getKey());
+
+		// the given timer is only equal to the contained one
+		InternalTimer<K, N> contained = keyGroupTimers.timers.remove(timer);
+		if (contained == null) {
+			return false;
+		}
+
+		boolean wasHead = keyGroupTimers.heap.peek() == contained;
+
+		keyGroupTimers.heap.remove(contained);
+		size--;
+
+		if (wasHead) {
+			keyGroupHeap.adjust(keyGroupTimers);
+		}
+		return true;
+	}
+
+	@Override
+	public InternalTimer<K, N> peek() {
+		KeyGroupTimers<K, N> earliest = keyGroupHeap.peek();
+		return earliest == null ? null : earliest.heap.peek();
+	}
+
+	@Override
+	public InternalTimer<K, N> poll() {
+		KeyGroupTimers<K, N> earliest = keyGroupHeap.peek();
+		if (earliest == null) {
+			return null;
+		}
+
+		InternalTimer<K, N> timer = earliest.heap.poll();
+		if (timer != null) {
+			earliest.timers.remove(timer);
+			size--;
+			keyGroupHeap.adjust(earliest);
+		}
+		return timer;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public List<InternalTimer<K, N>> getTimers(int keyGroup) {
+		checkArgument(keyGroupRange.contains(keyGroup), "Key group is not in the range of the queue.");
+		return new ArrayList<>(timersByKeyGroup[keyGroup - keyGroupRange.getStartKeyGroup()].timers.keySet());
+	}
+
+	@Override
+	public void close() {}
+
+	private KeyGroupTimers<K, N> getKeyGroupTimers(K key) {
+		int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(key, numberOfKeyGroups);
+		if (!keyGroupRange.contains(keyGroup)) {
+			throw new IllegalArgumentException("Key group " + keyGroup + " of key " + key +
+				" is not in the key group range " + keyGroupRange + " of the timer queue.");
+		}
+		return timersByKeyGroup[keyGroup - keyGroupRange.getStartKeyGroup()];
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The timers of a single key group.
+	 */
+	private static final class KeyGroupTimers<K, N> implements IndexedHeap.Element {
+
+		final IndexedHeap<InternalTimer<K, N>> heap = new IndexedHeap<>(new Comparator<InternalTimer<K, N>>() {
+			@Override
+			public int compare(InternalTimer<K, N> o1, InternalTimer<K, N> o2) {
+				return o1.compareTo(o2);
+			}
+		});
+
+		final HashMap<InternalTimer<K, N>, InternalTimer<K, N>> timers = new HashMap<>();
+
+		private int heapIndex = IndexedHeap.NOT_CONTAINED;
+
+		long getEarliestTimestamp() {
+			InternalTimer<K, N> head = heap.peek();
+			return head == null ? Long.MAX_VALUE : head.getTimestamp();
+		}
+
+		@Override
+		public int getHeapIndex() {
+			return heapIndex;
+		}
+
+		@Override
+		public void setHeapIndex(int heapIndex) {
+			this.heapIndex = heapIndex;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * A binary min-heap, whose elements know their position in the heap. Compared to a
+ * {@link java.util.PriorityQueue}, this allows to remove arbitrary elements and to restore the
+ * heap order after the priority of an element changed in logarithmic time.
+ *
+ * <p>An element can only be contained in one heap at a time.
+ *
+ * @param <T> Type of the elements in the heap.
+ */
+@Internal
+public final class IndexedHeap<T extends IndexedHeap.Element> {
+
+	/** The heap index of elements that are not contained in a heap */
+	public static final int NOT_CONTAINED = -1;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final Comparator<? super T> comparator;
+
+	private Object[] queue;
+
+	private int size;
+
+	public IndexedHeap(Comparator<? super T> comparator) {
+		this.comparator = checkNotNull(comparator);
+		this.queue = new Object[INITIAL_CAPACITY];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the smallest element without removing it, or null if the heap is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public T peek() {
+		return size == 0 ? null : (T) queue[0];
+	}
+
+	/**
+	 * Removes and returns the smallest element, or null if the heap is empty.
+	 */
+	public T poll() {
+		T head = peek();
+		if (head != null) {
+			removeAt(0);
+		}
+		return head;
+	}
+
+	/**
+	 * Adds the element, which must not be contained in any heap.
+	 */
+	public void add(T element) {
+		if (element.getHeapIndex() != NOT_CONTAINED) {
+			throw new IllegalArgumentException("The element is already contained in a heap.");
+		}
+		if (size == queue.length) {
+			queue = Arrays.copyOf(queue, size * 2);
+		}
+		siftUp(size++, element);
+	}
+
+	/**
+	 * Removes the element, which must be contained in this heap.
+	 */
+	public void remove(T element) {
+		int index = element.getHeapIndex();
+		if (index < 0 || index >= size || queue[index] != element) {
+			throw new IllegalArgumentException("The element is not contained in this heap.");
+		}
+		removeAt(index);
+	}
+
+	/**
+	 * Restores the heap order after the priority of the given element changed.
+	 */
+	public void adjust(T element) {
+		int index = element.getHeapIndex();
+		if (index < 0 || index >= size || queue[index] != element) {
+			throw new IllegalArgumentException("The element is not contained in this heap.");
+		}
+		siftUp(index, element);
+		if (element.getHeapIndex() == index) {
+			siftDown(index, element);
+		}
+	}
+
+	/**
+	 * Returns the element at the given position of the heap array.
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		}
+		return (T) queue[index];
+	}
+
+	@SuppressWarnings("unchecked")
+	private void removeAt(int index) {
+		T removed = (T) queue[index];
+		removed.setHeapIndex(NOT_CONTAINED);
+
+		int last = --size;
+		T moved = (T) queue[last];
+		queue[last] = null;
+
+		if (index != last) {
+			siftDown(index, moved);
+			if (moved.getHeapIndex() == index) {
+				siftUp(index, moved);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void siftUp(int index, T element) {
+		while (index > 0) {
+			int parentIndex = (index - 1) >>> 1;
+			T parent = (T) queue[parentIndex];
+			if (comparator.compare(element, parent) >= 0) {
+				break;
+			}
+			place(index, parent);
+			index = parentIndex;
+		}
+		place(index, element);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void siftDown(int index, T element) {
+		int half = size >>> 1;
+		while (index < half) {
+			int childIndex = 2 * index + 1;
+			T child = (T) queue[childIndex];
+			int rightIndex = childIndex + 1;
+			if (rightIndex < size && comparator.compare(child, (T) queue[rightIndex]) > 0) {
+				childIndex = rightIndex;
+				child = (T) queue[childIndex];
+			}
+			if (comparator.compare(element, child) <= 0) {
+				break;
+			}
+			place(index, child);
+			index = childIndex;
+		}
+		place(index, element);
+	}
+
+	private void place(int index, T element) {
+		queue[index] = element;
+		element.setHeapIndex(index);
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * An element of an {@link IndexedHeap}, which stores its position in the heap.
+	 */
+	public interface Element {
+
+		/** Returns the position in the heap, or {@link #NOT_CONTAINED} if not in a heap. */
+		int getHeapIndex();
+
+		/** Sets the position in the heap. Only called by the heap. */
+		void setHeapIndex(int heapIndex);
+	}
+}
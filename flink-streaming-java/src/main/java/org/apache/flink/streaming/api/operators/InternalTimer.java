@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+
+/**
+ * A timer of an {@link InternalTimerService}. A timer is identified by its timestamp, the key
+ * that was active when the timer was registered, and the namespace for which it was registered.
+ *
+ * @param <K> Type of the key of the timer.
+ * @param <N> Type of the namespace of the timer.
+ */
+@Internal
+public final class InternalTimer<K, N> implements Comparable<InternalTimer<K, N>>, IndexedHeap.Element {
+
+	private final long timestamp;
+
+	private final K key;
+
+	private final N namespace;
+
+	/** The position of the timer in the heap that holds it, or -1 if it is not in a heap */
+	private int heapIndex = IndexedHeap.NOT_CONTAINED;
+
+	public InternalTimer(long timestamp, K key, N namespace) {
+		this.timestamp = timestamp;
+		this.key = key;
+		this.namespace = namespace;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public K getKey() {
+		return key;
+	}
+
+	public N getNamespace() {
+		return namespace;
+	}
+
+	@Override
+	public int getHeapIndex() {
+		return heapIndex;
+	}
+
+	@Override
+	public void setHeapIndex(int heapIndex) {
+		this.heapIndex = heapIndex;
+	}
+
+	@Override
+	public int compareTo(InternalTimer<K, N> o) {
+		return Long.compare(this.timestamp, o.timestamp);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()){
+			return false;
+		}
+
+		InternalTimer<?, ?> timer = (InternalTimer<?, ?>) o;
+
+		return timestamp == timer.timestamp
+			&& key.equals(timer.key)
+			&& namespace.equals(timer.namespace);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = (int) (timestamp ^ (timestamp >>> 32));
+		result = 31 * result + key.hashCode();
+		result = 31 * result + namespace.hashCode();
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "Timer{" +
+			"timestamp=" + timestamp +
+			", key=" + key +
+			", namespace=" + namespace +
+			'}';
+	}
+}
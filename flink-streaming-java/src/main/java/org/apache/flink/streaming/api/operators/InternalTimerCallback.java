@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+
+/**
+ * Callback for the timers of an {@link InternalTimerService}. The key of the timer is set as the
+ * current key of the operator before the callback is invoked.
+ *
+ * @param <K> Type of the key of the timers.
+ * @param <N> Type of the namespace of the timers.
+ */
+@Internal
+public interface InternalTimerCallback<K, N> {
+
+	/**
+	 * Invoked when an event-time timer fires.
+	 */
+	void onEventTime(InternalTimer<K, N> timer) throws Exception;
+
+	/**
+	 * Invoked when a processing-time timer fires.
+	 */
+	void onProcessingTime(InternalTimer<K, N> timer) throws Exception;
+}
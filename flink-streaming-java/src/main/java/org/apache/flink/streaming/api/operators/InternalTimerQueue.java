@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+
+import java.util.List;
+
+/**
+ * A priority queue of {@link InternalTimer timers}, ordered by their timestamp. The queue holds
+ * every timer at most once. The timers are partitioned by the key group of their key, so that
+ * they can be checkpointed and restored per key group.
+ *
+ * @param <K> Type of the key of the timers.
+ * @param <N> Type of the namespace of the timers.
+ */
+@Internal
+public interface InternalTimerQueue<K, N> {
+
+	/**
+	 * Adds the timer to the queue, if the queue does not contain it yet.
+	 *
+	 * @return True, if the timer was added, false if the queue already contained it.
+	 */
+	boolean add(InternalTimer<K, N> timer) throws Exception;
+
+	/**
+	 * Removes the timer from the queue.
+	 *
+	 * @return True, if the queue contained the timer.
+	 */
+	boolean remove(InternalTimer<K, N> timer) throws Exception;
+
+	/**
+	 * Returns the timer with the smallest timestamp without removing it, or null if the queue
+	 * is empty.
+	 */
+	InternalTimer<K, N> peek() throws Exception;
+
+	/**
+	 * Removes and returns the timer with the smallest timestamp, or null if the queue is empty.
+	 */
+	InternalTimer<K, N> poll() throws Exception;
+
+	/**
+	 * Returns the number of timers in the queue.
+	 */
+	int size();
+
+	/**
+	 * Returns all timers of the given key group, in no particular order.
+	 */
+	List<InternalTimer<K, N>> getTimers(int keyGroup) throws Exception;
+
+	/**
+	 * Releases all resources of the queue. The queue cannot be used afterwards.
+	 */
+	void close();
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.KeyGroupRange;
+
+/**
+ * Factory for the {@link InternalTimerQueue queues} of the timer services of an operator. State
+ * backends implement this interface, if they want to keep the timers outside of the JVM heap.
+ * For all other state backends, the timers are kept in a {@link HeapInternalTimerQueue}.
+ */
+@Internal
+public interface InternalTimerQueueFactory {
+
+	/**
+	 * Creates a queue for the timers of the given name.
+	 *
+	 * @param name The unique name of the queue within the operator.
+	 * @param keySerializer The serializer for the keys of the timers.
+	 * @param namespaceSerializer The serializer for the namespaces of the timers.
+	 * @param numberOfKeyGroups The total number of key groups of the job.
+	 * @param keyGroupRange The key groups of the timers that the queue holds.
+	 */
+	<K, N> InternalTimerQueue<K, N> createTimerQueue(
+			String name,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			int numberOfKeyGroups,
+			KeyGroupRange keyGroupRange) throws Exception;
+}
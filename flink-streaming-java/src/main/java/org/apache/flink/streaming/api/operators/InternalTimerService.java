@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+
+/**
+ * Interface for working with time and timers. Timers are always registered for the key that is
+ * currently active in the operator and a namespace, for example a window. Registering the same
+ * timer (same timestamp, key and namespace) several times results in a single timer.
+ *
+ * @param <N> Type of the namespace to which timers are scoped.
+ */
+@Internal
+public interface InternalTimerService<N> {
+
+	/** Returns the current processing time. */
+	long currentProcessingTime();
+
+	/** Returns the current event-time watermark. */
+	long currentWatermark();
+
+	/**
+	 * Registers a timer to be fired when processing time passes the given time. The namespace
+	 * you pass here will be provided when the timer fires.
+	 */
+	void registerProcessingTimeTimer(N namespace, long time);
+
+	/**
+	 * Deletes the timer for the given key and namespace.
+	 */
+	void deleteProcessingTimeTimer(N namespace, long time);
+
+	/**
+	 * Registers a timer to be fired when the event time watermark passes the given time.
+	 * The namespace you pass here will be provided when the timer fires.
+	 */
+	void registerEventTimeTimer(N namespace, long time);
+
+	/**
+	 * Deletes the timer for the given key and namespace.
+	 */
+	void deleteEventTimeTimer(N namespace, long time);
+
+	/** Returns the number of registered processing time timers. */
+	int numProcessingTimeTimers();
+
+	/** Returns the number of registered event time timers. */
+	int numEventTimeTimers();
+}
@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.streaming.runtime.operators.Triggerable;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The {@link InternalTimerService} of an {@link AbstractStreamOperator}.
+ *
+ * <p>The event-time and processing-time timers are kept in two {@link InternalTimerQueue queues}.
+ * Only the earliest processing-time timer is scheduled with the task's timer service. When it
+ * fires, all due timers are fired and the next one is scheduled.
+ *
+ * <p>The timers are checkpointed per key group, so that they can be restored into operators
+ * with a different key group range.
+ *
+ * @param <K> Type of the keys of the operator.
+ * @param <N> Type of the namespace to which timers are scoped.
+ */
+@Internal
+public class InternalTimerServiceImpl<K, N> implements InternalTimerService<N>, Triggerable {
+
+	private final AbstractStreamOperator<?> operator;
+
+	private final TypeSerializer<K> keySerializer;
+
+	private final TypeSerializer<N> namespaceSerializer;
+
+	private final KeyGroupRange keyGroupRange;
+
+	private final InternalTimerCallback<K, N> callback;
+
+	private final InternalTimerQueue<K, N> eventTimeTimers;
+
+	private final InternalTimerQueue<K, N> processingTimeTimers;
+
+	/** The timestamp for which the processing-time trigger is scheduled, or Long.MAX_VALUE */
+	private long nextProcessingTime = Long.MAX_VALUE;
+
+	/** The future of the scheduled processing-time trigger, may be null */
+	private ScheduledFuture<?> nextProcessingTimeFuture;
+
+	private long currentWatermark = Long.MIN_VALUE;
+
+	public InternalTimerServiceImpl(
+			AbstractStreamOperator<?> operator,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			KeyGroupRange keyGroupRange,
+			InternalTimerCallback<K, N> callback,
+			InternalTimerQueue<K, N> eventTimeTimers,
+			InternalTimerQueue<K, N> processingTimeTimers) {
+
+		this.operator = checkNotNull(operator);
+		this.keySerializer = checkNotNull(keySerializer);
+		this.namespaceSerializer = checkNotNull(namespaceSerializer);
+		this.keyGroupRange = checkNotNull(keyGroupRange);
+		this.callback = checkNotNull(callback);
+		this.eventTimeTimers = checkNotNull(eventTimeTimers);
+		this.processingTimeTimers = checkNotNull(processingTimeTimers);
+	}
+
+	// ------------------------------------------------------------------------
+	//  Timer service
+	// ------------------------------------------------------------------------
+
+	@Override
+	public long currentProcessingTime() {
+		return operator.getCurrentProcessingTime();
+	}
+
+	@Override
+	public long currentWatermark() {
+		return currentWatermark;
+	}
+
+	@Override
+	public void registerProcessingTimeTimer(N namespace, long time) {
+		try {
+			if (processingTimeTimers.add(new InternalTimer<>(time, getCurrentKey(), namespace))) {
+				if (time < nextProcessingTime) {
+					scheduleProcessingTimeTrigger(time);
+				}
+			}
+		} catch (Exception e) {
+			throw new RuntimeException("Could not register processing time timer.", e);
+		}
+	}
+
+	@Override
+	public void deleteProcessingTimeTimer(N namespace, long time) {
+		// the scheduled trigger is kept, it fires nothing if the timer is gone
+		try {
+			processingTimeTimers.remove(new InternalTimer<>(time, getCurrentKey(), namespace));
+		} catch (Exception e) {
+			throw new RuntimeException("Could not delete processing time timer.", e);
+		}
+	}
+
+	@Override
+	public void registerEventTimeTimer(N namespace, long time) {
+		try {
+			eventTimeTimers.add(new InternalTimer<>(time, getCurrentKey(), namespace));
+		} catch (Exception e) {
+			throw new RuntimeException("Could not register event time timer.", e);
+		}
+	}
+
+	@Override
+	public void deleteEventTimeTimer(N namespace, long time) {
+		try {
+			eventTimeTimers.remove(new InternalTimer<>(time, getCurrentKey(), namespace));
+		} catch (Exception e) {
+			throw new RuntimeException("Could not delete event time timer.", e);
+		}
+	}
+
+	@Override
+	public int numProcessingTimeTimers() {
+		return processingTimeTimers.size();
+	}
+
+	@Override
+	public int numEventTimeTimers() {
+		return eventTimeTimers.size();
+	}
+
+	// ------------------------------------------------------------------------
+	//  Firing timers
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Fires all processing-time timers that are due and schedules the trigger for the next
+	 * timer. Also called for triggers that were rescheduled in the meantime, which only fire
+	 * timers that are due anyway.
+	 */
+	@Override
+	public void trigger(long time) throws Exception {
+		if (time >= nextProcessingTime) {
+			nextProcessingTime = Long.MAX_VALUE;
+			nextProcessingTimeFuture = null;
+		}
+
+		// timers that became due while the trigger was pending are fired right away,
+		// instead of scheduling another trigger for them
+		long now = Math.max(time, operator.getCurrentProcessingTime());
+
+		InternalTimer<K, N> timer;
+		while ((timer = processingTimeTimers.peek()) != null && timer.getTimestamp() <= now) {
+			processingTimeTimers.poll();
+			operator.setKeyContext(timer.getKey());
+			callback.onProcessingTime(timer);
+		}
+
+		if (timer != null && timer.getTimestamp() < nextProcessingTime) {
+			scheduleProcessingTimeTrigger(timer.getTimestamp());
+		}
+	}
+
+	/**
+	 * Advances the watermark and fires all event-time timers with a timestamp up to it.
+	 */
+	public void advanceWatermark(long time) throws Exception {
+		currentWatermark = time;
+
+		InternalTimer<K, N> timer;
+		while ((timer = eventTimeTimers.peek()) != null && timer.getTimestamp() <= time) {
+			eventTimeTimers.poll();
+			operator.setKeyContext(timer.getKey());
+			callback.onEventTime(timer);
+		}
+	}
+
+	private void scheduleProcessingTimeTrigger(long time) {
+		if (nextProcessingTimeFuture != null) {
+			nextProcessingTimeFuture.cancel(false);
+		}
+		nextProcessingTime = time;
+		nextProcessingTimeFuture = operator.registerTimer(time, this);
+	}
+
+	@SuppressWarnings("unchecked")
+	private K getCurrentKey() {
+		return (K) operator.getStateBackend().getCurrentKey();
+	}
+
+	/**
+	 * Cancels the scheduled processing-time trigger and releases the timer queues.
+	 */
+	public void close() {
+		if (nextProcessingTimeFuture != null) {
+			nextProcessingTimeFuture.cancel(false);
+			nextProcessingTimeFuture = null;
+		}
+		nextProcessingTime = Long.MAX_VALUE;
+
+		eventTimeTimers.close();
+		processingTimeTimers.close();
+	}
+
+	// ------------------------------------------------------------------------
+	//  Checkpointing
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Writes the timers of all key groups of this service, one key group after the other.
+	 */
+	public void snapshotTimers(DataOutputView out) throws Exception {
+		out.writeInt(keyGroupRange.getNumberOfKeyGroups());
+		for (int keyGroup : keyGroupRange) {
+			out.writeInt(keyGroup);
+			writeTimers(eventTimeTimers.getTimers(keyGroup), out);
+			writeTimers(processingTimeTimers.getTimers(keyGroup), out);
+		}
+	}
+
+	/**
+	 * Reads timers that were written by {@link #snapshotTimers(DataOutputView)}, possibly by
+	 * an operator with a different key group range. Only the timers of the key groups of this
+	 * service are restored.
+	 */
+	public void restoreTimers(DataInputView in) throws Exception {
+		int numKeyGroups = in.readInt();
+		for (int i = 0; i < numKeyGroups; i++) {
+			boolean restore = keyGroupRange.contains(in.readInt());
+			readTimers(in, restore ? eventTimeTimers : null);
+			readTimers(in, restore ? processingTimeTimers : null);
+		}
+
+		InternalTimer<K, N> head = processingTimeTimers.peek();
+		if (head != null && head.getTimestamp() < nextProcessingTime) {
+			scheduleProcessingTimeTrigger(head.getTimestamp());
+		}
+	}
+
+	private void writeTimers(List<InternalTimer<K, N>> timers, DataOutputView out) throws IOException {
+		out.writeInt(timers.size());
+		for (InternalTimer<K, N> timer : timers) {
+			out.writeLong(timer.getTimestamp());
+			keySerializer.serialize(timer.getKey(), out);
+			namespaceSerializer.serialize(timer.getNamespace(), out);
+		}
+	}
+
+	private void readTimers(DataInputView in, InternalTimerQueue<K, N> target) throws Exception {
+		int numTimers = in.readInt();
+		for (int i = 0; i < numTimers; i++) {
+			long timestamp = in.readLong();
+			K key = keySerializer.deserialize(in);
+			N namespace = namespaceSerializer.deserialize(in);
+			if (target != null) {
+				target.add(new InternalTimer<>(timestamp, key, namespace));
+			}
+		}
+	}
+}
@@ -18,6 +18,7 @@
 package org.apache.flink.streaming.api.operators;
 
 import java.io.Serializable;
+import java.util.List;
 
 import org.apache.flink.annotation.PublicEvolving;
 import org.apache.flink.metrics.MetricGroup;
@@ -123,6 +124,23 @@ public interface StreamOperator<OUT> extends Serializable {
 	 */
 	void restoreState(StreamTaskState state, long recoveryTimestamp) throws Exception;
 
+	/**
+	 * Restores the key/value state and the timers of the key groups that are assigned to this operator, if this
+	 * operator's execution is recovering from a checkpoint. If the parallelism of the operator
+	 * changed since the checkpoint, the key groups of this operator can be spread over the
+	 * snapshots of several operator instances of the previous execution.
+	 *
+	 * <p>This method is called after {@link #setup(StreamTask, StreamConfig, Output)}
+	 * and before {@link #open()}.
+	 *
+	 * @param keyGroupsStates The key/value state and timer snapshots, one per checkpointed key group range.
+	 * @param recoveryTimestamp Global recovery timestamp
+	 *
+	 * @throws Exception Exceptions during state restore should be forwarded, so that the system can
+	 *                   properly react to failed state restore and fail the execution attempt.
+	 */
+	void restoreKeyGroupsState(List<StreamTaskState> keyGroupsStates, long recoveryTimestamp) throws Exception;
+
 	/**
 	 * Called when the checkpoint with the given ID is completed and acknowledged on the JobManager.
 	 *
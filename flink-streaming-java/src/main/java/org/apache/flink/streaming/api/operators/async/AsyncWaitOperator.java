@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators.async;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.runtime.state.AbstractStateBackend;
+import org.apache.flink.runtime.state.StateHandle;
+import org.apache.flink.streaming.api.datastream.AsyncDataStream;
+import org.apache.flink.streaming.api.functions.async.AsyncFunction;
+import org.apache.flink.streaming.api.graph.StreamConfig;
+import org.apache.flink.streaming.api.operators.AbstractUdfStreamOperator;
+import org.apache.flink.streaming.api.operators.ChainingStrategy;
+import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
+import org.apache.flink.streaming.api.operators.Output;
+import org.apache.flink.streaming.api.operators.async.queue.OrderedStreamElementQueue;
+import org.apache.flink.streaming.api.operators.async.queue.StreamElementQueue;
+import org.apache.flink.streaming.api.operators.async.queue.StreamElementQueueEntry;
+import org.apache.flink.streaming.api.operators.async.queue.StreamRecordQueueEntry;
+import org.apache.flink.streaming.api.operators.async.queue.UnorderedStreamElementQueue;
+import org.apache.flink.streaming.api.operators.async.queue.WatermarkQueueEntry;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.operators.Triggerable;
+import org.apache.flink.streaming.runtime.streamrecord.MultiplexingStreamRecordSerializer;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.runtime.tasks.StreamTask;
+import org.apache.flink.streaming.runtime.tasks.StreamTaskState;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The operator for asynchronous I/O. For each input record, it calls the {@link AsyncFunction}
+ * and keeps the record in a bounded queue until the asynchronous operation completes. The
+ * results are emitted by an {@link Emitter} thread, either in the order of the input records
+ * or as soon as they complete. In both cases, watermarks keep their position relative to
+ * the records.
+ *
+ * <p>When the queue is full, the task thread waits on the checkpoint lock until the emitter
+ * has emitted an entry, which lets checkpoints proceed in the meantime. The records and
+ * watermarks in the queue are part of the operator state, and are processed again after a
+ * restore.
+ *
+ * @param <IN> The type of the input records.
+ * @param <OUT> The type of the output records.
+ */
+@Internal
+public class AsyncWaitOperator<IN, OUT>
+		extends AbstractUdfStreamOperator<OUT, AsyncFunction<IN, OUT>>
+		implements OneInputStreamOperator<IN, OUT> {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The maximum number of records and watermarks in flight */
+	private final int capacity;
+
+	/** The order in which the results are emitted */
+	private final AsyncDataStream.OutputMode outputMode;
+
+	/** The timeout (in milliseconds) for the asynchronous operations. Zero means no timeout */
+	private final long timeout;
+
+	// ---------------- runtime fields ------------------
+
+	private transient Object checkpointLock;
+
+	private transient StreamElementQueue queue;
+
+	/** The entry that the task thread waits to add to the full queue */
+	private transient StreamElementQueueEntry pendingEntry;
+
+	private transient MultiplexingStreamRecordSerializer<IN> inStreamElementSerializer;
+
+	private transient Emitter<OUT> emitter;
+
+	private transient Thread emitterThread;
+
+	/** The records and watermarks restored from a checkpoint, processed again in open() */
+	private transient List<StreamElement> restoredStreamElements;
+
+	public AsyncWaitOperator(
+			AsyncFunction<IN, OUT> asyncFunction,
+			long timeout,
+			int capacity,
+			AsyncDataStream.OutputMode outputMode) {
+		super(asyncFunction);
+
+		checkArgument(timeout >= 0, "The timeout must not be negative.");
+		checkArgument(capacity > 0, "The capacity must be larger than 0.");
+
+		this.timeout = timeout;
+		this.capacity = capacity;
+		this.outputMode = checkNotNull(outputMode);
+
+		this.chainingStrategy = ChainingStrategy.ALWAYS;
+	}
+
+	// ------------------------------------------------------------------------
+	//  operator life cycle
+	// ------------------------------------------------------------------------
+
+	@Override
+	public void setup(StreamTask<?, ?> containingTask, StreamConfig config, Output<StreamRecord<OUT>> output) {
+		super.setup(containingTask, config, output);
+
+		this.checkpointLock = containingTask.getCheckpointLock();
+
+		TypeSerializer<IN> inSerializer = config.getTypeSerializerIn1(getUserCodeClassloader());
+		this.inStreamElementSerializer = new MultiplexingStreamRecordSerializer<>(inSerializer);
+
+		switch (outputMode) {
+			case ORDERED:
+				this.queue = new OrderedStreamElementQueue(capacity);
+				break;
+			case UNORDERED:
+				this.queue = new UnorderedStreamElementQueue(capacity);
+				break;
+			default:
+				throw new IllegalStateException("Unknown output mode: " + outputMode);
+		}
+
+		this.emitter = new Emitter<>(checkpointLock, this.output, queue, this);
+	}
+
+	@Override
+	public void open() throws Exception {
+		super.open();
+
+		emitterThread = new Thread(emitter, "AsyncIO-Emitter-Thread (" + getContainingTask().getName() + ")");
+		emitterThread.setDaemon(true);
+		emitterThread.start();
+
+		// the elements that were in flight during the checkpoint are processed again
+		if (restoredStreamElements != null) {
+			for (StreamElement element : restoredStreamElements) {
+				if (element.isRecord()) {
+					processElement(element.<IN>asRecord());
+				}
+				else {
+					processWatermark(element.asWatermark());
+				}
+			}
+			restoredStreamElements = null;
+		}
+	}
+
+	@Override
+	public void processElement(StreamRecord<IN> element) throws Exception {
+		final StreamRecordQueueEntry<OUT> entry = new StreamRecordQueueEntry<>(element);
+
+		if (timeout > 0L) {
+			long timeoutTimestamp = getCurrentProcessingTime() + timeout;
+
+			entry.setTimeoutTimer(registerTimer(timeoutTimestamp, new Triggerable() {
+				@Override
+				public void trigger(long timestamp) throws Exception {
+					entry.collect(new TimeoutException("The asynchronous operation timed out."));
+				}
+			}));
+		}
+
+		addToQueue(entry);
+
+		userFunction.asyncInvoke(element.getValue(), entry);
+	}
+
+	@Override
+	public void processWatermark(Watermark mark) throws Exception {
+		addToQueue(new WatermarkQueueEntry(mark));
+	}
+
+	@Override
+	public void close() throws Exception {
+		try {
+			// the emitter notifies the checkpoint lock after each entry it emits
+			while (!queue.isEmpty()) {
+				checkpointLock.wait();
+			}
+		}
+		finally {
+			stopEmitter();
+		}
+
+		super.close();
+	}
+
+	@Override
+	public void dispose() {
+		stopEmitter();
+
+		if (emitterThread != null) {
+			try {
+				emitterThread.join();
+			}
+			catch (InterruptedException e) {
+				// restore the interruption flag and continue disposing
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		super.dispose();
+	}
+
+	// ------------------------------------------------------------------------
+	//  checkpointing and recovery
+	// ------------------------------------------------------------------------
+
+	@Override
+	public StreamTaskState snapshotOperatorState(long checkpointId, long timestamp) throws Exception {
+		StreamTaskState taskState = super.snapshotOperatorState(checkpointId, timestamp);
+
+		AbstractStateBackend.CheckpointStateOutputView out =
+			getStateBackend().createCheckpointStateOutputView(checkpointId, timestamp);
+
+		Collection<StreamElementQueueEntry> entries = queue.values();
+		out.writeInt(entries.size() + (pendingEntry != null ? 1 : 0));
+
+		for (StreamElementQueueEntry entry : entries) {
+			inStreamElementSerializer.serialize(entry.getStreamElement(), out);
+		}
+		if (pendingEntry != null) {
+			inStreamElementSerializer.serialize(pendingEntry.getStreamElement(), out);
+		}
+
+		taskState.setOperatorState(out.closeAndGetHandle());
+		return taskState;
+	}
+
+	@Override
+	public void restoreState(StreamTaskState state, long recoveryTimestamp) throws Exception {
+		super.restoreState(state, recoveryTimestamp);
+
+		@SuppressWarnings("unchecked")
+		StateHandle<DataInputView> stateHandle = (StateHandle<DataInputView>) state.getOperatorState();
+
+		if (stateHandle != null) {
+			DataInputView in = stateHandle.getState(getUserCodeClassloader());
+
+			int numElements = in.readInt();
+			restoredStreamElements = new ArrayList<>(numElements);
+			for (int i = 0; i < numElements; i++) {
+				restoredStreamElements.add(inStreamElementSerializer.deserialize(in));
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  utilities
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Fails the task that executes this operator. This may be called from any thread.
+	 *
+	 * @param cause The cause of the failure.
+	 */
+	public void failOperator(Throwable cause) {
+		getContainingTask().failExternally(cause);
+	}
+
+	/**
+	 * Adds the entry to the queue. If the queue is full, this waits on the checkpoint lock,
+	 * which the emitter notifies after emitting an entry. While waiting, the entry is part of
+	 * the checkpoints that are taken.
+	 */
+	private void addToQueue(StreamElementQueueEntry entry) throws InterruptedException {
+		pendingEntry = entry;
+
+		while (!queue.tryPut(entry)) {
+			checkpointLock.wait();
+		}
+
+		pendingEntry = null;
+	}
+
+	private void stopEmitter() {
+		if (emitter != null) {
+			emitter.stop();
+		}
+		if (emitterThread != null) {
+			emitterThread.interrupt();
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators.async;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.streaming.api.operators.Output;
+import org.apache.flink.streaming.api.operators.TimestampedCollector;
+import org.apache.flink.streaming.api.operators.async.queue.StreamElementQueue;
+import org.apache.flink.streaming.api.operators.async.queue.StreamElementQueueEntry;
+import org.apache.flink.streaming.api.operators.async.queue.StreamRecordQueueEntry;
+import org.apache.flink.streaming.api.operators.async.queue.WatermarkQueueEntry;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The emitter takes the completed entries from the {@link StreamElementQueue} and emits
+ * them. It runs in a thread of its own and emits under the checkpoint lock, so that an
+ * entry is either still in the queue or already emitted when a checkpoint is taken.
+ *
+ * @param <OUT> The type of the output elements.
+ */
+@Internal
+public class Emitter<OUT> implements Runnable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(Emitter.class);
+
+	private final Object checkpointLock;
+
+	private final Output<StreamRecord<OUT>> output;
+
+	private final StreamElementQueue queue;
+
+	private final AsyncWaitOperator<?, OUT> operator;
+
+	/** Collector for the results, which carry the timestamp of their input record */
+	private final TimestampedCollector<OUT> collector;
+
+	private volatile boolean running = true;
+
+	public Emitter(
+			Object checkpointLock,
+			Output<StreamRecord<OUT>> output,
+			StreamElementQueue queue,
+			AsyncWaitOperator<?, OUT> operator) {
+
+		this.checkpointLock = checkNotNull(checkpointLock);
+		this.output = checkNotNull(output);
+		this.queue = checkNotNull(queue);
+		this.operator = checkNotNull(operator);
+		this.collector = new TimestampedCollector<>(output);
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (running) {
+				StreamElementQueueEntry entry = queue.peekBlockingly();
+				emit(entry);
+			}
+		}
+		catch (InterruptedException e) {
+			if (running) {
+				operator.failOperator(e);
+			}
+			else {
+				LOG.debug("Emitter thread was interrupted while stopping.");
+			}
+		}
+		catch (Throwable t) {
+			operator.failOperator(new Exception("The emitter of the asynchronous operator failed.", t));
+		}
+	}
+
+	public void stop() {
+		running = false;
+	}
+
+	private void emit(StreamElementQueueEntry entry) {
+		synchronized (checkpointLock) {
+			if (entry.isWatermark()) {
+				output.emitWatermark(((WatermarkQueueEntry) entry).getWatermark());
+			}
+			else {
+				@SuppressWarnings("unchecked")
+				StreamRecordQueueEntry<OUT> recordEntry = (StreamRecordQueueEntry<OUT>) entry;
+
+				Throwable error = recordEntry.getError();
+				if (error != null) {
+					operator.failOperator(new Exception("An asynchronous operation failed.", error));
+				}
+				else {
+					emitResult(recordEntry);
+				}
+			}
+
+			queue.poll();
+
+			// the task thread may wait for space in the queue
+			checkpointLock.notifyAll();
+		}
+	}
+
+	private void emitResult(StreamRecordQueueEntry<OUT> recordEntry) {
+		collector.setTimestamp(recordEntry.getStreamRecord());
+
+		Collection<OUT> result = recordEntry.getResult();
+		for (OUT value : result) {
+			collector.collect(value);
+		}
+	}
+}
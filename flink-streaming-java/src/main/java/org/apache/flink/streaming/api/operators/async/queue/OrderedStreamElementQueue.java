@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators.async.queue;
+
+import org.apache.flink.annotation.Internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * A {@link StreamElementQueue} that emits the entries in the order in which they were
+ * added. An entry is only emitted once it is done and all entries before it have been
+ * emitted.
+ */
+@Internal
+public class OrderedStreamElementQueue extends StreamElementQueue {
+
+	/** The entries in the order in which they were added. Guarded by the lock */
+	private final ArrayDeque<StreamElementQueueEntry> queue;
+
+	public OrderedStreamElementQueue(int capacity) {
+		super(capacity);
+		this.queue = new ArrayDeque<>(capacity);
+	}
+
+	@Override
+	public Collection<StreamElementQueueEntry> values() {
+		lock.lock();
+		try {
+			return new ArrayList<>(queue);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return queue.size();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	protected void addEntry(StreamElementQueueEntry entry) {
+		queue.addLast(entry);
+	}
+
+	@Override
+	protected StreamElementQueueEntry peekCompleted() {
+		StreamElementQueueEntry head = queue.peekFirst();
+		return head != null && head.isDone() ? head : null;
+	}
+
+	@Override
+	protected StreamElementQueueEntry pollCompleted() {
+		return peekCompleted() != null ? queue.pollFirst() : null;
+	}
+
+	@Override
+	protected void entryCompleted(StreamElementQueueEntry entry) {
+		if (entry == queue.peekFirst()) {
+			hasCompletedEntries.signalAll();
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators.async.queue;
+
+import org.apache.flink.annotation.Internal;
+
+import java.util.Collection;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+
+/**
+ * A bounded queue of the stream elements whose asynchronous operations are in flight. The
+ * queue decides in which order the completed entries are emitted, see
+ * {@link OrderedStreamElementQueue} and {@link UnorderedStreamElementQueue}.
+ *
+ * <p>Entries are added by the task thread, completed by arbitrary threads, and taken by
+ * the emitter thread.
+ */
+@Internal
+public abstract class StreamElementQueue {
+
+	/** The maximum number of entries in the queue */
+	protected final int capacity;
+
+	/** Lock guarding the state of the queue */
+	protected final ReentrantLock lock = new ReentrantLock();
+
+	/** Condition signalled when an entry can be taken from the queue */
+	protected final Condition hasCompletedEntries = lock.newCondition();
+
+	protected StreamElementQueue(int capacity) {
+		checkArgument(capacity > 0, "The capacity must be larger than 0.");
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Adds the entry to the queue, if the queue is not full.
+	 *
+	 * @param entry The entry to add.
+	 * @return True, if the entry was added, false, if the queue is full.
+	 */
+	public boolean tryPut(StreamElementQueueEntry entry) {
+		lock.lock();
+		try {
+			if (size() >= capacity) {
+				return false;
+			}
+			addEntry(entry);
+		}
+		finally {
+			lock.unlock();
+		}
+
+		// if the entry is done already, this hands it to the emitting order right away
+		entry.setQueue(this);
+		return true;
+	}
+
+	/**
+	 * Waits until an entry can be emitted, and returns it without removing it.
+	 *
+	 * @return The entry to emit next.
+	 * @throws InterruptedException Thrown, if the thread is interrupted while waiting.
+	 */
+	public StreamElementQueueEntry peekBlockingly() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			StreamElementQueueEntry entry;
+			while ((entry = peekCompleted()) == null) {
+				hasCompletedEntries.await();
+			}
+			return entry;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the entry returned by {@link #peekBlockingly()}.
+	 *
+	 * @return The removed entry.
+	 */
+	public StreamElementQueueEntry poll() {
+		lock.lock();
+		try {
+			return pollCompleted();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the entries in the queue, in an order that respects the order of watermarks and
+	 * records.
+	 */
+	public abstract Collection<StreamElementQueueEntry> values();
+
+	public abstract int size();
+
+	public boolean isEmpty() {
+		lock.lock();
+		try {
+			return size() == 0;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	/** Adds the entry. Called while holding the lock */
+	protected abstract void addEntry(StreamElementQueueEntry entry);
+
+	/** Returns the entry to emit next, or null if there is none. Called while holding the lock */
+	protected abstract StreamElementQueueEntry peekCompleted();
+
+	/** Removes the entry to emit next. Called while holding the lock */
+	protected abstract StreamElementQueueEntry pollCompleted();
+
+	/** Handles the completion of the entry. Called while holding the lock */
+	protected abstract void entryCompleted(StreamElementQueueEntry entry);
+
+	/**
+	 * Called by the entries of this queue once they are done.
+	 */
+	void onComplete(StreamElementQueueEntry entry) {
+		lock.lock();
+		try {
+			entryCompleted(entry);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators.async.queue;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * An entry of the {@link StreamElementQueue}. It holds the stream element the entry was
+ * created for and tracks whether the entry is done, i.e., whether it can be emitted.
+ */
+@Internal
+public abstract class StreamElementQueueEntry {
+
+	private final StreamElement streamElement;
+
+	/** Flag marking that the entry is done. Guarded by this entry */
+	private boolean done;
+
+	/** The queue to notify when the entry is done. Guarded by this entry */
+	private StreamElementQueue queue;
+
+	protected StreamElementQueueEntry(StreamElement streamElement) {
+		this.streamElement = checkNotNull(streamElement);
+	}
+
+	public StreamElement getStreamElement() {
+		return streamElement;
+	}
+
+	public boolean isWatermark() {
+		return streamElement.isWatermark();
+	}
+
+	public synchronized boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Marks the entry as done and notifies the queue holding it.
+	 */
+	protected void markDone() {
+		StreamElementQueue queueToNotify;
+		synchronized (this) {
+			if (done) {
+				return;
+			}
+			done = true;
+			queueToNotify = queue;
+		}
+
+		if (queueToNotify != null) {
+			queueToNotify.onComplete(this);
+		}
+	}
+
+	/**
+	 * Sets the queue to notify once the entry is done. If the entry is already done, the
+	 * queue is notified right away.
+	 */
+	void setQueue(StreamElementQueue queue) {
+		boolean alreadyDone;
+		synchronized (this) {
+			this.queue = queue;
+			alreadyDone = done;
+		}
+
+		if (alreadyDone) {
+			queue.onComplete(this);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators.async.queue;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.streaming.api.functions.async.AsyncCollector;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ScheduledFuture;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The queue entry for a stream record. It is the {@link AsyncCollector} handed to the
+ * asynchronous function for the record, and is done once the function passes the result
+ * or an error to it.
+ *
+ * @param <OUT> The type of the result elements.
+ */
+@Internal
+public class StreamRecordQueueEntry<OUT> extends StreamElementQueueEntry implements AsyncCollector<OUT> {
+
+	/** The result elements. Guarded by this entry */
+	private Collection<OUT> result;
+
+	/** The error of the operation. Guarded by this entry */
+	private Throwable error;
+
+	/** Flag marking that the result or the error has been set. Guarded by this entry */
+	private boolean completed;
+
+	/** The timer that completes the entry with a timeout, if any */
+	private volatile ScheduledFuture<?> timeoutTimer;
+
+	public StreamRecordQueueEntry(StreamRecord<?> streamRecord) {
+		super(streamRecord);
+	}
+
+	public StreamRecord<?> getStreamRecord() {
+		return getStreamElement().asRecord();
+	}
+
+	public synchronized Collection<OUT> getResult() {
+		return result;
+	}
+
+	public synchronized Throwable getError() {
+		return error;
+	}
+
+	/**
+	 * Sets the timer that completes this entry with a timeout. The timer is cancelled once
+	 * the entry completes.
+	 */
+	public void setTimeoutTimer(ScheduledFuture<?> timeoutTimer) {
+		this.timeoutTimer = timeoutTimer;
+	}
+
+	@Override
+	public void collect(Collection<OUT> result) {
+		complete(result == null ? Collections.<OUT>emptyList() : result, null);
+	}
+
+	@Override
+	public void collect(Throwable error) {
+		complete(null, checkNotNull(error));
+	}
+
+	private void complete(Collection<OUT> result, Throwable error) {
+		synchronized (this) {
+			// only the first completion counts, for example if the operation timed out before
+			if (completed) {
+				return;
+			}
+			completed = true;
+			this.result = result;
+			this.error = error;
+		}
+
+		ScheduledFuture<?> timer = timeoutTimer;
+		if (timer != null) {
+			timer.cancel(false);
+		}
+
+		markDone();
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators.async.queue;
+
+import org.apache.flink.annotation.Internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link StreamElementQueue} that emits the records as soon as they are done, but keeps
+ * their order relative to the watermarks: a watermark is only emitted after all records
+ * before it, and records after a watermark are only emitted after the watermark.
+ *
+ * <p>The entries are grouped into segments that are separated by the watermarks. The done
+ * entries of the first segment are moved to the queue of completed entries. Once the first
+ * segment is empty, the next one becomes the first segment.
+ */
+@Internal
+public class UnorderedStreamElementQueue extends StreamElementQueue {
+
+	/** The segments after the first one. Guarded by the lock */
+	private final ArrayDeque<Set<StreamElementQueueEntry>> uncompletedSegments;
+
+	/** The entries that can be emitted, in emitting order. Guarded by the lock */
+	private final ArrayDeque<StreamElementQueueEntry> completedEntries;
+
+	/** The segment whose done entries can be emitted. Guarded by the lock */
+	private Set<StreamElementQueueEntry> firstSegment;
+
+	/** The segment that new records are added to. Guarded by the lock */
+	private Set<StreamElementQueueEntry> lastSegment;
+
+	/** The number of entries in the queue. Guarded by the lock */
+	private int numberOfEntries;
+
+	public UnorderedStreamElementQueue(int capacity) {
+		super(capacity);
+
+		this.uncompletedSegments = new ArrayDeque<>();
+		this.completedEntries = new ArrayDeque<>(capacity);
+		this.firstSegment = new HashSet<>(capacity);
+		this.lastSegment = firstSegment;
+	}
+
+	@Override
+	public Collection<StreamElementQueueEntry> values() {
+		lock.lock();
+		try {
+			List<StreamElementQueueEntry> values = new ArrayList<>(numberOfEntries);
+			values.addAll(completedEntries);
+			values.addAll(firstSegment);
+			for (Set<StreamElementQueueEntry> segment : uncompletedSegments) {
+				values.addAll(segment);
+			}
+			return values;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return numberOfEntries;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	protected void addEntry(StreamElementQueueEntry entry) {
+		if (entry.isWatermark()) {
+			// the watermark forms a segment of its own, followed by a new segment for the records
+			lastSegment = new HashSet<>(capacity);
+
+			if (firstSegment.isEmpty()) {
+				firstSegment.add(entry);
+			}
+			else {
+				Set<StreamElementQueueEntry> watermarkSegment = new HashSet<>(1);
+				watermarkSegment.add(entry);
+				uncompletedSegments.addLast(watermarkSegment);
+			}
+			uncompletedSegments.addLast(lastSegment);
+		}
+		else {
+			lastSegment.add(entry);
+		}
+
+		numberOfEntries++;
+	}
+
+	@Override
+	protected StreamElementQueueEntry peekCompleted() {
+		return completedEntries.peekFirst();
+	}
+
+	@Override
+	protected StreamElementQueueEntry pollCompleted() {
+		StreamElementQueueEntry entry = completedEntries.pollFirst();
+		if (entry != null) {
+			numberOfEntries--;
+		}
+		return entry;
+	}
+
+	@Override
+	protected void entryCompleted(StreamElementQueueEntry entry) {
+		// entries of later segments are moved once their segment becomes the first one
+		if (firstSegment.remove(entry)) {
+			completedEntries.addLast(entry);
+
+			while (firstSegment.isEmpty() && firstSegment != lastSegment) {
+				firstSegment = uncompletedSegments.pollFirst();
+
+				Iterator<StreamElementQueueEntry> iterator = firstSegment.iterator();
+				while (iterator.hasNext()) {
+					StreamElementQueueEntry segmentEntry = iterator.next();
+					if (segmentEntry.isDone()) {
+						completedEntries.addLast(segmentEntry);
+						iterator.remove();
+					}
+				}
+			}
+
+			hasCompletedEntries.signalAll();
+		}
+	}
+}
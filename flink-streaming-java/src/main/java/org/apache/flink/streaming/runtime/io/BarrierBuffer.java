@@ -79,6 +79,18 @@ public class BarrierBuffer implements CheckpointBarrierHandler {
 	/** Flag to indicate whether we have drawn all available input */
 	private boolean endOfStream;
 
+	/** The time (in nanoseconds) at which the first barrier of the current alignment arrived */
+	private long startOfAlignmentTimestamp;
+
+	/** The duration (in nanoseconds) of the latest completed alignment */
+	private long latestAlignmentDurationNanos;
+
+	/** The number of bytes spilled during the latest completed alignment */
+	private long latestBytesBufferedInAlignment;
+
+	/** The channel that delivered its barrier last in the latest completed alignment */
+	private int latestSlowestChannel = -1;
+
 	/**
 	 * 
 	 * @param inputGate The input gate to draw the buffers and events from.
@@ -174,6 +186,7 @@ public class BarrierBuffer implements CheckpointBarrierHandler {
 
 				releaseBlocks();
 				currentCheckpointId = barrierId;
+				startOfAlignmentTimestamp = System.nanoTime();
 				onBarrier(channelIndex);
 			}
 			else {
@@ -185,6 +198,7 @@ public class BarrierBuffer implements CheckpointBarrierHandler {
 		else if (barrierId > currentCheckpointId) {
 			// first barrier of a new checkpoint
 			currentCheckpointId = barrierId;
+			startOfAlignmentTimestamp = System.nanoTime();
 			onBarrier(channelIndex);
 		}
 		else {
@@ -199,6 +213,10 @@ public class BarrierBuffer implements CheckpointBarrierHandler {
 						receivedBarrier.getId(), receivedBarrier.getTimestamp());
 			}
 
+			latestAlignmentDurationNanos = System.nanoTime() - startOfAlignmentTimestamp;
+			latestBytesBufferedInAlignment = bufferSpiller.getBytesWritten();
+			latestSlowestChannel = channelIndex;
+
 			if (checkpointHandler != null) {
 				checkpointHandler.onEvent(receivedBarrier);
 			}
@@ -222,6 +240,21 @@ public class BarrierBuffer implements CheckpointBarrierHandler {
 		return currentBuffered == null;
 	}
 
+	@Override
+	public long getAlignmentDurationNanos() {
+		return latestAlignmentDurationNanos;
+	}
+
+	@Override
+	public long getBytesBufferedInAlignment() {
+		return latestBytesBufferedInAlignment;
+	}
+
+	@Override
+	public int getSlowestChannel() {
+		return latestSlowestChannel;
+	}
+
 	@Override
 	public void cleanup() throws IOException {
 		bufferSpiller.close();
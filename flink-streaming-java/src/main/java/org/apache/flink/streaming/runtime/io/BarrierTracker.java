@@ -61,6 +61,12 @@ public class BarrierTracker implements CheckpointBarrierHandler {
 	
 	/** The highest checkpoint ID encountered so far */
 	private long latestPendingCheckpointID = -1;
+
+	/** The time (in nanoseconds) between the first and the last barrier of the latest checkpoint */
+	private long latestAlignmentDurationNanos;
+
+	/** The channel that delivered the last barrier of the latest checkpoint */
+	private int latestSlowestChannel = -1;
 	
 	
 	public BarrierTracker(InputGate inputGate) {
@@ -80,7 +86,7 @@ public class BarrierTracker implements CheckpointBarrierHandler {
 				return next;
 			}
 			else {
-				processBarrier((CheckpointBarrier) next.getEvent());
+				processBarrier((CheckpointBarrier) next.getEvent(), next.getChannelIndex());
 			}
 		}
 	}
@@ -105,9 +111,28 @@ public class BarrierTracker implements CheckpointBarrierHandler {
 		return pendingCheckpoints.isEmpty();
 	}
 
-	private void processBarrier(CheckpointBarrier receivedBarrier) {
+	@Override
+	public long getAlignmentDurationNanos() {
+		return latestAlignmentDurationNanos;
+	}
+
+	@Override
+	public long getBytesBufferedInAlignment() {
+		// the tracker never buffers any data
+		return 0L;
+	}
+
+	@Override
+	public int getSlowestChannel() {
+		return latestSlowestChannel;
+	}
+
+	private void processBarrier(CheckpointBarrier receivedBarrier, int channelIndex) {
 		// fast path for single channel trackers
 		if (totalNumberOfInputChannels == 1) {
+			latestAlignmentDurationNanos = 0L;
+			latestSlowestChannel = channelIndex;
+
 			if (checkpointHandler != null) {
 				checkpointHandler.onEvent(receivedBarrier);
 			}
@@ -139,6 +164,9 @@ public class BarrierTracker implements CheckpointBarrierHandler {
 				for (int i = 0; i <= pos; i++) {
 					pendingCheckpoints.pollFirst();
 				}
+
+				latestAlignmentDurationNanos = System.nanoTime() - cbc.startTimestamp;
+				latestSlowestChannel = channelIndex;
 				
 				// notify the listener
 				if (checkpointHandler != null) {
@@ -173,10 +201,14 @@ public class BarrierTracker implements CheckpointBarrierHandler {
 		private final long checkpointId;
 		
 		private int barrierCount;
+
+		/** The time (in nanoseconds) at which the first barrier arrived */
+		private final long startTimestamp;
 		
 		private CheckpointBarrierCount(long checkpointId) {
 			this.checkpointId = checkpointId;
 			this.barrierCount = 1;
+			this.startTimestamp = System.nanoTime();
 		}
 
 		public int incrementBarrierCount() {
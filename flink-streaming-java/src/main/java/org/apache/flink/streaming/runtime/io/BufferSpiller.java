@@ -87,6 +87,9 @@ public class BufferSpiller {
 	
 	/** A flag to check whether the spiller has written since the last roll over */
 	private boolean hasWritten;
+
+	/** The number of bytes written since the last roll over */
+	private long bytesWritten;
 	
 	/**
 	 * Creates a new buffer spiller, spilling to one of the I/O manager's temp directories.
@@ -141,6 +144,8 @@ public class BufferSpiller {
 			headBuffer.put((byte) (boe.isBuffer() ? 0 : 1));
 			headBuffer.flip();
 			
+			bytesWritten += headBuffer.remaining() + contents.remaining();
+
 			sources[1] = contents;
 			currentChannel.write(sources);
 		}
@@ -207,9 +212,20 @@ public class BufferSpiller {
 		createSpillingChannel();
 		
 		hasWritten = false;
+		bytesWritten = 0;
 		return seq;
 	}
 
+	/**
+	 * Gets the number of bytes written since the last roll over, i.e. the number of bytes of
+	 * the sequence that is currently being spilled.
+	 *
+	 * @return The number of bytes written since the last roll over.
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
 	/**
 	 * Cleans up the current spilling channel and file.
 	 * 
@@ -64,4 +64,28 @@ public interface CheckpointBarrierHandler {
 	 * @return {@code True}, if no data is buffered internally, {@code false} otherwise.
 	 */
 	boolean isEmpty();
+
+	/**
+	 * Gets the time that the alignment of the barriers of the latest checkpoint took, i.e.
+	 * the time between the first and the last barrier of the checkpoint.
+	 *
+	 * @return The alignment duration in nanoseconds.
+	 */
+	long getAlignmentDurationNanos();
+
+	/**
+	 * Gets the number of bytes that were buffered while aligning the barriers of the latest
+	 * checkpoint.
+	 *
+	 * @return The number of buffered bytes.
+	 */
+	long getBytesBufferedInAlignment();
+
+	/**
+	 * Gets the index of the input channel that delivered the barrier of the latest checkpoint
+	 * last, which is the channel that held back the alignment the longest.
+	 *
+	 * @return The channel index, or -1 if no checkpoint has been triggered yet.
+	 */
+	int getSlowestChannel();
 }
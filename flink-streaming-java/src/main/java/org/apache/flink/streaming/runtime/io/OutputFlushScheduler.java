@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.annotation.Internal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduler for the output flushes of all {@link StreamRecordWriter} instances in the process.
+ *
+ * <p>Instead of a thread per writer that wakes up in fixed intervals, writers schedule a flush
+ * when they write the first record after their last flush. The flush is due when the buffer
+ * timeout has passed since then, so that writers without pending data are never flushed and
+ * data never lingers in the buffers for longer than the timeout.
+ *
+ * <p>The flushes are executed by a single daemon thread, which is shared by all tasks. A flush
+ * must therefore never block, for example on a writer that waits for a buffer.
+ */
+@Internal
+public final class OutputFlushScheduler {
+
+	private static final Logger LOG = LoggerFactory.getLogger(OutputFlushScheduler.class);
+
+	/** Singleton instance */
+	public static final OutputFlushScheduler INSTANCE = new OutputFlushScheduler();
+
+	/** The executor for the flushes, created on first use */
+	private ScheduledThreadPoolExecutor executor;
+
+	/** Cannot instantiate */
+	private OutputFlushScheduler() {}
+
+	/**
+	 * Schedules a flush to be executed after the given delay.
+	 *
+	 * @param flush The flush to execute.
+	 * @param delayMillis The delay after which the flush is due, in milliseconds.
+	 * @return The future of the scheduled flush, which can be used to cancel it.
+	 */
+	public ScheduledFuture<?> schedule(Runnable flush, long delayMillis) {
+		return getExecutor().schedule(flush, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private synchronized ScheduledThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			executor = new ScheduledThreadPoolExecutor(1, new FlusherThreadFactory());
+			executor.setRemoveOnCancelPolicy(true);
+			executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		}
+		return executor;
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static final class FlusherThreadFactory implements ThreadFactory {
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Output Flusher");
+			thread.setDaemon(true);
+			thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+				@Override
+				public void uncaughtException(Thread t, Throwable e) {
+					LOG.error("Uncaught exception in the output flusher thread.", e);
+				}
+			});
+			return thread;
+		}
+	}
+}
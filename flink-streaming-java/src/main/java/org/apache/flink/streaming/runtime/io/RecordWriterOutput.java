@@ -97,6 +97,21 @@ public class RecordWriterOutput<OUT> implements Output<StreamRecord<OUT>> {
 	public void broadcastEvent(AbstractEvent barrier) throws IOException, InterruptedException {
 		recordWriter.broadcastEvent(barrier);
 	}
+
+	/**
+	 * Broadcasts the event in front of the queued data and returns copies of the overtaken
+	 * data by channel.
+	 */
+	public byte[][] broadcastPriorityEvent(AbstractEvent event) throws IOException, InterruptedException {
+		return recordWriter.broadcastPriorityEvent(event);
+	}
+
+	/**
+	 * Writes the data, which {@link #broadcastPriorityEvent(AbstractEvent)} returned, again.
+	 */
+	public void replayChannelData(byte[][] channelData) throws IOException, InterruptedException {
+		recordWriter.replayChannelData(channelData);
+	}
 	
 	
 	public void flush() throws IOException {
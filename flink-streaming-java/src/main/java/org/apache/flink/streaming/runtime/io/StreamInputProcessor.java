@@ -19,9 +19,11 @@
 package org.apache.flink.streaming.runtime.io;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.MemorySegmentFactory;
 import org.apache.flink.metrics.Counter;
 import org.apache.flink.metrics.Gauge;
 import org.apache.flink.metrics.groups.IOMetricGroup;
@@ -29,12 +31,16 @@ import org.apache.flink.runtime.accumulators.AccumulatorRegistry;
 import org.apache.flink.runtime.event.AbstractEvent;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
 import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
+import org.apache.flink.runtime.io.network.api.serialization.ObjectBufferDeserializer;
 import org.apache.flink.runtime.io.network.api.serialization.RecordDeserializer;
 import org.apache.flink.runtime.io.network.api.serialization.RecordDeserializer.DeserializationResult;
 import org.apache.flink.runtime.io.network.api.serialization.SpillingAdaptiveSpanningRecordDeserializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.FreeingBufferRecycler;
+import org.apache.flink.runtime.io.network.buffer.ObjectBuffer;
 import org.apache.flink.runtime.io.network.partition.consumer.BufferOrEvent;
 import org.apache.flink.runtime.io.network.partition.consumer.InputGate;
+import org.apache.flink.runtime.io.network.partition.consumer.SingleInputGate;
 import org.apache.flink.runtime.plugable.DeserializationDelegate;
 import org.apache.flink.runtime.plugable.NonReusingDeserializationDelegate;
 import org.apache.flink.runtime.util.event.EventListener;
@@ -64,12 +70,18 @@ import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
 @Internal
 public class StreamInputProcessor<IN> {
 
-	private final RecordDeserializer<DeserializationDelegate<StreamElement>>[] recordDeserializers;
+	private final SpillingAdaptiveSpanningRecordDeserializer<DeserializationDelegate<StreamElement>>[] recordDeserializers;
 
 	private RecordDeserializer<DeserializationDelegate<StreamElement>> currentRecordDeserializer;
 
+	/** Deserializer for the records, which local producers hand off as objects */
+	private final ObjectBufferDeserializer<StreamElement> objectBufferDeserializer;
+
 	private final CheckpointBarrierHandler barrierHandler;
 
+	/** The in-flight data of an unaligned checkpoint, which is processed before the input of the gate */
+	private final ArrayDeque<BufferOrEvent> restoredInput = new ArrayDeque<>();
+
 	// We need to keep track of the channel from which a buffer came, so that we can
 	// appropriately map the watermarks to input channels
 	private int currentChannel = -1;
@@ -83,16 +95,46 @@ public class StreamInputProcessor<IN> {
 
 	private Counter numRecordsIn;
 
+	/**
+	 * Creates the input processor.
+	 *
+	 * @param channelStateListener The listener for the in-flight data of unaligned exactly-once
+	 *                             checkpoints, or null, if the checkpoints are aligned.
+	 */
 	@SuppressWarnings("unchecked")
 	public StreamInputProcessor(InputGate[] inputGates, TypeSerializer<IN> inputSerializer,
 								EventListener<CheckpointBarrier> checkpointListener,
 								CheckpointingMode checkpointMode,
+								UnalignedBarrierHandler.InputChannelStateListener channelStateListener,
 								IOManager ioManager,
 								boolean enableWatermarkMultiplexing) throws IOException {
 
 		InputGate inputGate = InputGateUtil.createInputGate(inputGates);
 
-		if (checkpointMode == CheckpointingMode.EXACTLY_ONCE) {
+		// Local producers may hand off their records as objects, as long as the buffers are
+		// never spilled. The barrier buffer only spills when aligning multiple channels, the
+		// in-flight data of unaligned checkpoints is always copied.
+		if (checkpointMode == CheckpointingMode.AT_LEAST_ONCE ||
+				(inputGate.getNumberOfInputChannels() == 1 && channelStateListener == null)) {
+			for (InputGate gate : inputGates) {
+				if (gate instanceof SingleInputGate) {
+					((SingleInputGate) gate).enableObjectHandoff();
+				}
+			}
+		}
+
+		// Initialize one deserializer per input channel
+		this.recordDeserializers = new SpillingAdaptiveSpanningRecordDeserializer[inputGate.getNumberOfInputChannels()];
+		
+		for (int i = 0; i < recordDeserializers.length; i++) {
+			recordDeserializers[i] = new SpillingAdaptiveSpanningRecordDeserializer<>(
+					ioManager.getSpillingDirectoriesPaths());
+		}
+
+		if (checkpointMode == CheckpointingMode.EXACTLY_ONCE && channelStateListener != null) {
+			this.barrierHandler = new UnalignedBarrierHandler(inputGate, recordDeserializers, channelStateListener);
+		}
+		else if (checkpointMode == CheckpointingMode.EXACTLY_ONCE) {
 			this.barrierHandler = new BarrierBuffer(inputGate, ioManager);
 		}
 		else if (checkpointMode == CheckpointingMode.AT_LEAST_ONCE) {
@@ -114,14 +156,8 @@ public class StreamInputProcessor<IN> {
 			this.deserializationDelegate = (NonReusingDeserializationDelegate<StreamElement>)
 					(NonReusingDeserializationDelegate<?>) new NonReusingDeserializationDelegate<StreamRecord<IN>>(ser);
 		}
-		
-		// Initialize one deserializer per input channel
-		this.recordDeserializers = new SpillingAdaptiveSpanningRecordDeserializer[inputGate.getNumberOfInputChannels()];
-		
-		for (int i = 0; i < recordDeserializers.length; i++) {
-			recordDeserializers[i] = new SpillingAdaptiveSpanningRecordDeserializer<>(
-					ioManager.getSpillingDirectoriesPaths());
-		}
+
+		this.objectBufferDeserializer = new ObjectBufferDeserializer<>();
 
 		watermarks = new long[inputGate.getNumberOfInputChannels()];
 		for (int i = 0; i < inputGate.getNumberOfInputChannels(); i++) {
@@ -180,12 +216,19 @@ public class StreamInputProcessor<IN> {
 				}
 			}
 
-			final BufferOrEvent bufferOrEvent = barrierHandler.getNextNonBlocked();
+			final BufferOrEvent bufferOrEvent = restoredInput.isEmpty() ?
+					barrierHandler.getNextNonBlocked() : restoredInput.poll();
 			if (bufferOrEvent != null) {
 				if (bufferOrEvent.isBuffer()) {
 					currentChannel = bufferOrEvent.getChannelIndex();
-					currentRecordDeserializer = recordDeserializers[currentChannel];
-					currentRecordDeserializer.setNextBuffer(bufferOrEvent.getBuffer());
+
+					Buffer buffer = bufferOrEvent.getBuffer();
+					if (buffer instanceof ObjectBuffer) {
+						currentRecordDeserializer = objectBufferDeserializer;
+					} else {
+						currentRecordDeserializer = recordDeserializers[currentChannel];
+					}
+					currentRecordDeserializer.setNextBuffer(buffer);
 				}
 				else {
 					// Event received
@@ -205,10 +248,32 @@ public class StreamInputProcessor<IN> {
 		}
 	}
 	
+	/**
+	 * Restores the in-flight input data of an unaligned checkpoint, which is processed before
+	 * the input of the gates.
+	 *
+	 * @param channelData The in-flight data by channel index, null for channels without data.
+	 */
+	public void restoreInputChannelState(byte[][] channelData) {
+		if (channelData.length != recordDeserializers.length) {
+			throw new IllegalStateException("The in-flight data of " + channelData.length + " channels cannot " +
+					"be restored to " + recordDeserializers.length + " channels.");
+		}
+
+		for (int i = 0; i < channelData.length; i++) {
+			if (channelData[i] != null && channelData[i].length > 0) {
+				Buffer buffer = new Buffer(MemorySegmentFactory.wrap(channelData[i]), FreeingBufferRecycler.INSTANCE);
+				restoredInput.add(new BufferOrEvent(buffer, i));
+			}
+		}
+	}
+
 	public void setReporter(AccumulatorRegistry.Reporter reporter) {
 		for (RecordDeserializer<?> deserializer : recordDeserializers) {
 			deserializer.setReporter(reporter);
 		}
+
+		objectBufferDeserializer.setReporter(reporter);
 	}
 
 	/**
@@ -225,6 +290,14 @@ public class StreamInputProcessor<IN> {
 		});
 	}
 	
+	/**
+	 * Gets the handler of the checkpoint barriers, which knows the alignment metrics of
+	 * the latest checkpoint.
+	 */
+	public CheckpointBarrierHandler getCheckpointBarrierHandler() {
+		return barrierHandler;
+	}
+
 	public void cleanup() throws IOException {
 		// clear the buffers first. this part should not ever fail
 		for (RecordDeserializer<?> deserializer : recordDeserializers) {
@@ -233,7 +306,17 @@ public class StreamInputProcessor<IN> {
 				buffer.recycle();
 			}
 		}
+
+		Buffer objectBuffer = objectBufferDeserializer.getCurrentBuffer();
+		if (objectBuffer != null && !objectBuffer.isRecycled()) {
+			objectBuffer.recycle();
+		}
 		
+		for (BufferOrEvent restored : restoredInput) {
+			restored.getBuffer().recycle();
+		}
+		restoredInput.clear();
+
 		// cleanup the barrier handler resources
 		barrierHandler.cleanup();
 	}
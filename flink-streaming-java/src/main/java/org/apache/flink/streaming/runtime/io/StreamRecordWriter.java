@@ -18,9 +18,13 @@
 package org.apache.flink.streaming.runtime.io;
 
 import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.core.io.IOReadableWritable;
+import org.apache.flink.runtime.event.AbstractEvent;
 import org.apache.flink.runtime.io.network.api.writer.ChannelSelector;
 import org.apache.flink.runtime.io.network.api.writer.RecordWriter;
 import org.apache.flink.runtime.io.network.api.writer.ResultPartitionWriter;
@@ -28,94 +32,176 @@ import org.apache.flink.runtime.io.network.api.writer.ResultPartitionWriter;
 import static org.apache.flink.util.Preconditions.checkArgument;
 
 /**
- * This record writer keeps data in buffers at most for a certain timeout. It spawns a separate thread
- * that flushes the outputs in a defined interval, to make sure data does not linger in the buffers for too long.
+ * This record writer keeps data in buffers at most for a certain timeout. When a record is written
+ * after the last flush, the writer schedules a flush with the {@link OutputFlushScheduler}, which
+ * is due after the timeout, to make sure data does not linger in the buffers for too long.
+ * Writers without pending data are not flushed.
+ *
+ * <p>The task thread holds the write lock while it writes to the serializers, which includes
+ * waiting for buffers under back pressure. A scheduled flush never waits for that lock, because
+ * the scheduler thread is shared by all writers. If the lock is held, the flush is scheduled
+ * again after the timeout.
  * 
  * @param <T> The type of elements written.
  */
 @Internal
 public class StreamRecordWriter<T extends IOReadableWritable> extends RecordWriter<T> {
 
-	/** Default name for teh output flush thread, if no name with a task reference is given */
-	private static final String DEFAULT_OUTPUT_FLUSH_THREAD_NAME = "OutputFlusher";
-	
-	
-	/** The thread that periodically flushes the output, to give an upper latency bound */
-	private final OutputFlusher outputFlusher;
+	/** The timeout after which pending data is flushed, or -1 if there is no timed flush */
+	private final long flushTimeout;
 	
 	/** Flag indicating whether the output should be flushed after every element */
 	private final boolean flushAlways;
 
-	/** The exception encountered in the flushing thread */
-	private Throwable flusherException;
+	/** Flag indicating whether a flush has been scheduled and not yet started */
+	private final AtomicBoolean isFlushScheduled = new AtomicBoolean();
+
+	/** The flush that is executed by the {@link OutputFlushScheduler} */
+	private final Runnable scheduledFlush = new ScheduledFlush();
+
+	/** Lock held while writing to the serializers, which the scheduled flush only tries to take */
+	private final ReentrantLock writeLock = new ReentrantLock();
+
+	/** Lock to make sure that no scheduled flush runs after the writer has been closed */
+	private final Object flushLock = new Object();
+
+	/** The future of the last scheduled flush */
+	private volatile ScheduledFuture<?> scheduledFlushFuture;
+
+	/** Flag indicating whether the writer has been closed, guarded by the flush lock */
+	private boolean closed;
+
+	/** The exception encountered in a scheduled flush */
+	private volatile Throwable flusherException;
 	
 	
 	
 	public StreamRecordWriter(ResultPartitionWriter writer, ChannelSelector<T> channelSelector, long timeout) {
-		this(writer, channelSelector, timeout, null);
-	}
-	
-	public StreamRecordWriter(ResultPartitionWriter writer, ChannelSelector<T> channelSelector,
-								long timeout, String taskName) {
-		
 		super(writer, channelSelector);
 		
 		checkArgument(timeout >= -1);
 		
-		if (timeout == -1) {
-			flushAlways = false;
-			outputFlusher = null;
-		}
-		else if (timeout == 0) {
-			flushAlways = true;
-			outputFlusher = null;
-		}
-		else {
-			flushAlways = false;
-			String threadName = taskName == null ?
-								DEFAULT_OUTPUT_FLUSH_THREAD_NAME : "Output Timeout Flusher - " + taskName;
-			
-			outputFlusher = new OutputFlusher(threadName, timeout);
-			outputFlusher.start();
-		}
+		this.flushAlways = timeout == 0;
+		this.flushTimeout = timeout > 0 ? timeout : -1;
 	}
 	
 	@Override
 	public void emit(T record) throws IOException, InterruptedException {
 		checkErroneous();
-		super.emit(record);
-		if (flushAlways) {
-			flush();
+		writeLock.lock();
+		try {
+			super.emit(record);
+			if (flushAlways) {
+				super.flush();
+			}
+		}
+		finally {
+			writeLock.unlock();
+		}
+		if (flushTimeout > 0) {
+			scheduleFlush();
 		}
 	}
 
 	@Override
 	public void broadcastEmit(T record) throws IOException, InterruptedException {
 		checkErroneous();
-		super.broadcastEmit(record);
-		if (flushAlways) {
-			flush();
+		writeLock.lock();
+		try {
+			super.broadcastEmit(record);
+			if (flushAlways) {
+				super.flush();
+			}
+		}
+		finally {
+			writeLock.unlock();
+		}
+		if (flushTimeout > 0) {
+			scheduleFlush();
+		}
+	}
+
+	@Override
+	public void broadcastEvent(AbstractEvent event) throws IOException, InterruptedException {
+		writeLock.lock();
+		try {
+			super.broadcastEvent(event);
+		}
+		finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public byte[][] broadcastPriorityEvent(AbstractEvent event) throws IOException, InterruptedException {
+		writeLock.lock();
+		try {
+			return super.broadcastPriorityEvent(event);
+		}
+		finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public void replayChannelData(byte[][] channelData) throws IOException, InterruptedException {
+		writeLock.lock();
+		try {
+			super.replayChannelData(channelData);
+		}
+		finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public void sendEndOfSuperstep() throws IOException, InterruptedException {
+		writeLock.lock();
+		try {
+			super.sendEndOfSuperstep();
+		}
+		finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writeLock.lock();
+		try {
+			super.flush();
+		}
+		finally {
+			writeLock.unlock();
 		}
 	}
 
 	/**
-	 * Closes the writer. This stops the flushing thread (if there is one).
+	 * Closes the writer. This cancels a scheduled flush and waits for a running flush to finish.
 	 */
 	public void close() {
-		// make sure we terminate the thread in any case
-		if (outputFlusher != null) {
-			outputFlusher.terminate();
-			try {
-				outputFlusher.join();
-			}
-			catch (InterruptedException e) {
-				// ignore on close
+		synchronized (flushLock) {
+			closed = true;
+
+			ScheduledFuture<?> future = scheduledFlushFuture;
+			if (future != null) {
+				future.cancel(false);
 			}
 		}
 	}
 
 	/**
-	 * Notifies the writer that the output flusher thread encountered an exception.
+	 * Schedules a flush, unless one has already been scheduled for the data written since the
+	 * last flush.
+	 */
+	private void scheduleFlush() {
+		if (!isFlushScheduled.get() && isFlushScheduled.compareAndSet(false, true)) {
+			scheduledFlushFuture = OutputFlushScheduler.INSTANCE.schedule(scheduledFlush, flushTimeout);
+		}
+	}
+
+	/**
+	 * Notifies the writer that a scheduled flush encountered an exception.
 	 * 
 	 * @param t The exception to report.
 	 */
@@ -134,50 +220,38 @@ public class StreamRecordWriter<T extends IOReadableWritable> extends RecordWrit
 	// ------------------------------------------------------------------------
 	
 	/**
-	 * A dedicated thread that periodically flushes the output buffers, to set upper latency bounds.
-	 * 
-	 * The thread is daemonic, because it is only a utility thread.
+	 * Flushes the output buffers in the thread of the {@link OutputFlushScheduler}. If the
+	 * task thread is writing, for example while it waits for a buffer, the flush is retried
+	 * after the timeout instead of blocking the scheduler thread.
 	 */
-	private class OutputFlusher extends Thread {
-		
-		private final long timeout;
-		
-		private volatile boolean running = true;
-
-		
-		OutputFlusher(String name, long timeout) {
-			super(name);
-			setDaemon(true);
-			this.timeout = timeout;
-		}
-		
-		public void terminate() {
-			running = false;
-			interrupt();
-		}
+	private class ScheduledFlush implements Runnable {
 
 		@Override
 		public void run() {
-			try {
-				while (running) {
-					try {
-						Thread.sleep(timeout);
-					}
-					catch (InterruptedException e) {
-						// propagate this if we are still running, because it should not happen
-						// in that case
-						if (running) {
-							throw new Exception(e);
-						}
-					}
-					
-					// any errors here should let the thread come to a halt and be
-					// recognized by the writer 
+			synchronized (flushLock) {
+				if (closed) {
+					return;
+				}
+
+				if (!writeLock.tryLock()) {
+					// the flush stays scheduled, so the task thread does not schedule another one
+					scheduledFlushFuture = OutputFlushScheduler.INSTANCE.schedule(this, flushTimeout);
+					return;
+				}
+
+				try {
+					// records written from now on need another flush
+					isFlushScheduled.set(false);
+
 					flush();
 				}
-			}
-			catch (Throwable t) {
-				notifyFlusherException(t);
+				catch (Throwable t) {
+					// any errors here should be recognized by the writer
+					notifyFlusherException(t);
+				}
+				finally {
+					writeLock.unlock();
+				}
 			}
 		}
 	}
@@ -20,6 +20,7 @@ package org.apache.flink.streaming.runtime.io;
 
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.MemorySegmentFactory;
 import org.apache.flink.metrics.Gauge;
 import org.apache.flink.metrics.groups.IOMetricGroup;
 import org.apache.flink.runtime.accumulators.AccumulatorRegistry;
@@ -30,6 +31,7 @@ import org.apache.flink.runtime.io.network.api.serialization.RecordDeserializer;
 import org.apache.flink.runtime.io.network.api.serialization.RecordDeserializer.DeserializationResult;
 import org.apache.flink.runtime.io.network.api.serialization.SpillingAdaptiveSpanningRecordDeserializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.FreeingBufferRecycler;
 import org.apache.flink.runtime.io.network.partition.consumer.BufferOrEvent;
 import org.apache.flink.runtime.io.network.partition.consumer.InputGate;
 import org.apache.flink.runtime.plugable.DeserializationDelegate;
@@ -45,6 +47,7 @@ import org.apache.flink.streaming.runtime.streamrecord.StreamRecordSerializer;
 import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collection;
 
@@ -66,7 +69,7 @@ import java.util.Collection;
 @Internal
 public class StreamTwoInputProcessor<IN1, IN2> {
 
-	private final RecordDeserializer<DeserializationDelegate<StreamElement>>[] recordDeserializers;
+	private final SpillingAdaptiveSpanningRecordDeserializer<DeserializationDelegate<StreamElement>>[] recordDeserializers;
 
 	private RecordDeserializer<DeserializationDelegate<StreamElement>> currentRecordDeserializer;
 
@@ -78,6 +81,9 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 
 	private final CheckpointBarrierHandler barrierHandler;
 
+	/** The in-flight data of an unaligned checkpoint, which is processed before the input of the gate */
+	private final ArrayDeque<BufferOrEvent> restoredInput = new ArrayDeque<>();
+
 	private final long[] watermarks1;
 	private long lastEmittedWatermark1;
 
@@ -89,6 +95,12 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 	private final DeserializationDelegate<StreamElement> deserializationDelegate1;
 	private final DeserializationDelegate<StreamElement> deserializationDelegate2;
 
+	/**
+	 * Creates the input processor.
+	 *
+	 * @param channelStateListener The listener for the in-flight data of unaligned exactly-once
+	 *                             checkpoints, or null, if the checkpoints are aligned.
+	 */
 	@SuppressWarnings({"unchecked", "rawtypes"})
 	public StreamTwoInputProcessor(
 			Collection<InputGate> inputGates1,
@@ -97,12 +109,24 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 			TypeSerializer<IN2> inputSerializer2,
 			EventListener<CheckpointBarrier> checkpointListener,
 			CheckpointingMode checkpointMode,
+			UnalignedBarrierHandler.InputChannelStateListener channelStateListener,
 			IOManager ioManager,
 			boolean enableWatermarkMultiplexing) throws IOException {
 		
 		final InputGate inputGate = InputGateUtil.createInputGate(inputGates1, inputGates2);
 
-		if (checkpointMode == CheckpointingMode.EXACTLY_ONCE) {
+		// Initialize one deserializer per input channel
+		this.recordDeserializers = new SpillingAdaptiveSpanningRecordDeserializer[inputGate.getNumberOfInputChannels()];
+		
+		for (int i = 0; i < recordDeserializers.length; i++) {
+			recordDeserializers[i] = new SpillingAdaptiveSpanningRecordDeserializer<>(
+					ioManager.getSpillingDirectoriesPaths());
+		}
+
+		if (checkpointMode == CheckpointingMode.EXACTLY_ONCE && channelStateListener != null) {
+			this.barrierHandler = new UnalignedBarrierHandler(inputGate, recordDeserializers, channelStateListener);
+		}
+		else if (checkpointMode == CheckpointingMode.EXACTLY_ONCE) {
 			this.barrierHandler = new BarrierBuffer(inputGate, ioManager);
 		}
 		else if (checkpointMode == CheckpointingMode.AT_LEAST_ONCE) {
@@ -136,14 +160,6 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 					(DeserializationDelegate<?>) new NonReusingDeserializationDelegate<StreamRecord<IN2>>(ser);
 		}
 
-		// Initialize one deserializer per input channel
-		this.recordDeserializers = new SpillingAdaptiveSpanningRecordDeserializer[inputGate.getNumberOfInputChannels()];
-		
-		for (int i = 0; i < recordDeserializers.length; i++) {
-			recordDeserializers[i] = new SpillingAdaptiveSpanningRecordDeserializer<>(
-					ioManager.getSpillingDirectoriesPaths());
-		}
-
 		// determine which unioned channels belong to input 1 and which belong to input 2
 		int numInputChannels1 = 0;
 		for (InputGate gate: inputGates1) {
@@ -215,7 +231,8 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 				}
 			}
 
-			final BufferOrEvent bufferOrEvent = barrierHandler.getNextNonBlocked();
+			final BufferOrEvent bufferOrEvent = restoredInput.isEmpty() ?
+					barrierHandler.getNextNonBlocked() : restoredInput.poll();
 			if (bufferOrEvent != null) {
 
 				if (bufferOrEvent.isBuffer()) {
@@ -276,6 +293,26 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 		}
 	}
 	
+	/**
+	 * Restores the in-flight input data of an unaligned checkpoint, which is processed before
+	 * the input of the gates.
+	 *
+	 * @param channelData The in-flight data by channel index, null for channels without data.
+	 */
+	public void restoreInputChannelState(byte[][] channelData) {
+		if (channelData.length != recordDeserializers.length) {
+			throw new IllegalStateException("The in-flight data of " + channelData.length + " channels cannot " +
+					"be restored to " + recordDeserializers.length + " channels.");
+		}
+
+		for (int i = 0; i < channelData.length; i++) {
+			if (channelData[i] != null && channelData[i].length > 0) {
+				Buffer buffer = new Buffer(MemorySegmentFactory.wrap(channelData[i]), FreeingBufferRecycler.INSTANCE);
+				restoredInput.add(new BufferOrEvent(buffer, i));
+			}
+		}
+	}
+
 	public void setReporter(AccumulatorRegistry.Reporter reporter) {
 		for (RecordDeserializer<?> deserializer : recordDeserializers) {
 			deserializer.setReporter(reporter);
@@ -296,6 +333,14 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 		});
 	}
 	
+	/**
+	 * Gets the handler of the checkpoint barriers, which knows the alignment metrics of
+	 * the latest checkpoint.
+	 */
+	public CheckpointBarrierHandler getCheckpointBarrierHandler() {
+		return barrierHandler;
+	}
+
 	public void cleanup() throws IOException {
 		// clear the buffers first. this part should not ever fail
 		for (RecordDeserializer<?> deserializer : recordDeserializers) {
@@ -305,6 +350,11 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 			}
 		}
 
+		for (BufferOrEvent restored : restoredInput) {
+			restored.getBuffer().recycle();
+		}
+		restoredInput.clear();
+
 		// cleanup the barrier handler resources
 		barrierHandler.cleanup();
 	}
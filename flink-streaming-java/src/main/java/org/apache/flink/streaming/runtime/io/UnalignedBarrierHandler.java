@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
+import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
+import org.apache.flink.runtime.io.network.api.serialization.SpillingAdaptiveSpanningRecordDeserializer;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.partition.consumer.BufferOrEvent;
+import org.apache.flink.runtime.io.network.partition.consumer.InputGate;
+import org.apache.flink.runtime.util.event.EventListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The unaligned barrier handler is a {@link CheckpointBarrierHandler} for unaligned exactly-once
+ * checkpoints. It triggers the checkpoint on the first barrier of a checkpoint and never blocks
+ * an input.
+ *
+ * <p>The data, which arrives on a channel after the checkpoint has been triggered and before
+ * the barrier of the channel, is processed right away, but is also recorded as part of the
+ * checkpoint, together with the partial records which the deserializers held when the checkpoint
+ * was triggered. Once all channels delivered their barrier (or have been closed), the recorded
+ * data is handed to the {@link InputChannelStateListener}.</p>
+ *
+ * <p>Since the upstream tasks write the barriers of unaligned checkpoints in front of their
+ * queued output data, the handler usually receives the barriers of all channels soon after the
+ * first one, regardless of backpressure.</p>
+ */
+@Internal
+public class UnalignedBarrierHandler implements CheckpointBarrierHandler {
+
+	private static final Logger LOG = LoggerFactory.getLogger(UnalignedBarrierHandler.class);
+
+	/** The gate that the handler draws its input from */
+	private final InputGate inputGate;
+
+	/** The total number of channels that this handler handles data from */
+	private final int totalNumberOfInputChannels;
+
+	/** The deserializers of the channels, whose partial records are part of a checkpoint */
+	private final SpillingAdaptiveSpanningRecordDeserializer<?>[] recordDeserializers;
+
+	/** The listener that receives the recorded data of the checkpoints */
+	private final InputChannelStateListener channelStateListener;
+
+	/** Handler that receives the checkpoint notifications */
+	private EventListener<CheckpointBarrier> checkpointHandler;
+
+	/** Flags that indicate whether a channel has been closed */
+	private final boolean[] closedChannels;
+
+	/** Flags that indicate whether the data of a channel is recorded for the pending checkpoint */
+	private final boolean[] recordedChannels;
+
+	/** The recorded data per channel of the pending checkpoint, null for channels without data */
+	private ByteArrayOutputStream[] recordedData;
+
+	/** The number of channels, whose data is recorded for the pending checkpoint */
+	private int numRecordedChannels;
+
+	/** The ID of the pending or last triggered checkpoint */
+	private long currentCheckpointId = -1L;
+
+	/** The time (in nanoseconds) at which the pending checkpoint was triggered */
+	private long startOfRecordingTimestamp;
+
+	/** The channel that most recently delivered a barrier of the pending checkpoint */
+	private int lastBarrierChannel = -1;
+
+	/** The time (in nanoseconds) from the first to the last barrier of the latest completed checkpoint */
+	private long latestAlignmentDurationNanos;
+
+	/** The number of bytes recorded for the latest completed checkpoint */
+	private long latestBytesBufferedInAlignment;
+
+	/** The channel that delivered its barrier last for the latest completed checkpoint */
+	private int latestSlowestChannel = -1;
+
+	/**
+	 * Creates a new unaligned barrier handler.
+	 *
+	 * @param inputGate The input gate to draw the buffers and events from.
+	 * @param recordDeserializers The deserializers of the channels of the input gate.
+	 * @param channelStateListener The listener that receives the recorded data of the checkpoints.
+	 */
+	public UnalignedBarrierHandler(
+			InputGate inputGate,
+			SpillingAdaptiveSpanningRecordDeserializer<?>[] recordDeserializers,
+			InputChannelStateListener channelStateListener) {
+
+		this.inputGate = checkNotNull(inputGate);
+		this.totalNumberOfInputChannels = inputGate.getNumberOfInputChannels();
+		this.recordDeserializers = checkNotNull(recordDeserializers);
+		this.channelStateListener = checkNotNull(channelStateListener);
+
+		checkArgument(recordDeserializers.length == totalNumberOfInputChannels,
+				"There must be one deserializer per input channel.");
+
+		this.closedChannels = new boolean[totalNumberOfInputChannels];
+		this.recordedChannels = new boolean[totalNumberOfInputChannels];
+	}
+
+	// ------------------------------------------------------------------------
+	//  Buffer and barrier handling
+	// ------------------------------------------------------------------------
+
+	@Override
+	public BufferOrEvent getNextNonBlocked() throws IOException, InterruptedException {
+		while (true) {
+			BufferOrEvent next = inputGate.getNextBufferOrEvent();
+
+			if (next == null) {
+				return null;
+			}
+
+			int channelIndex = next.getChannelIndex();
+
+			if (next.isBuffer()) {
+				if (recordedChannels[channelIndex]) {
+					record(channelIndex, next.getBuffer());
+				}
+				return next;
+			}
+			else if (next.getEvent().getClass() == CheckpointBarrier.class) {
+				processBarrier((CheckpointBarrier) next.getEvent(), channelIndex);
+			}
+			else {
+				if (next.getEvent().getClass() == EndOfPartitionEvent.class) {
+					closedChannels[channelIndex] = true;
+
+					// no barrier follows on a closed channel, so its data is complete
+					if (recordedChannels[channelIndex]) {
+						lastBarrierChannel = channelIndex;
+						stopRecording(channelIndex);
+					}
+				}
+				return next;
+			}
+		}
+	}
+
+	private void processBarrier(CheckpointBarrier receivedBarrier, int channelIndex) throws IOException {
+		final long barrierId = receivedBarrier.getId();
+
+		if (barrierId > currentCheckpointId) {
+			if (numRecordedChannels > 0) {
+				// we did not complete the current checkpoint
+				LOG.warn("Received checkpoint barrier for checkpoint {} before receiving all barriers of " +
+						"checkpoint {}. Skipping current checkpoint.", barrierId, currentCheckpointId);
+
+				abortPendingCheckpoint();
+			}
+
+			currentCheckpointId = barrierId;
+			triggerCheckpoint(receivedBarrier, channelIndex);
+		}
+		else if (barrierId == currentCheckpointId && recordedChannels[channelIndex]) {
+			// subsequent barrier of the pending checkpoint
+			lastBarrierChannel = channelIndex;
+			stopRecording(channelIndex);
+		}
+		// else: trailing barrier from a skipped checkpoint
+	}
+
+	private void triggerCheckpoint(CheckpointBarrier receivedBarrier, int channelIndex) throws IOException {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Received first barrier, triggering checkpoint {} at {}",
+					receivedBarrier.getId(), receivedBarrier.getTimestamp());
+		}
+
+		recordedData = new ByteArrayOutputStream[totalNumberOfInputChannels];
+		startOfRecordingTimestamp = System.nanoTime();
+		lastBarrierChannel = channelIndex;
+
+		// the partial records of all channels belong to the in-flight data of the checkpoint,
+		// the remainders of the records follow after the barriers
+		for (int i = 0; i < totalNumberOfInputChannels; i++) {
+			byte[] partialRecord = recordDeserializers[i].getUnconsumedData();
+			if (partialRecord.length > 0) {
+				getRecordedData(i).write(partialRecord);
+			}
+
+			if (i != channelIndex && !closedChannels[i]) {
+				recordedChannels[i] = true;
+				numRecordedChannels++;
+			}
+		}
+
+		if (checkpointHandler != null) {
+			checkpointHandler.onEvent(receivedBarrier);
+		}
+
+		if (numRecordedChannels == 0) {
+			completePendingCheckpoint();
+		}
+	}
+
+	private void record(int channelIndex, Buffer buffer) {
+		byte[] data = new byte[buffer.getSize()];
+		buffer.getMemorySegment().get(0, data, 0, data.length);
+		getRecordedData(channelIndex).write(data, 0, data.length);
+	}
+
+	private ByteArrayOutputStream getRecordedData(int channelIndex) {
+		if (recordedData[channelIndex] == null) {
+			recordedData[channelIndex] = new ByteArrayOutputStream();
+		}
+		return recordedData[channelIndex];
+	}
+
+	private void stopRecording(int channelIndex) {
+		recordedChannels[channelIndex] = false;
+		numRecordedChannels--;
+
+		if (numRecordedChannels == 0) {
+			completePendingCheckpoint();
+		}
+	}
+
+	private void completePendingCheckpoint() {
+		byte[][] channelData = new byte[totalNumberOfInputChannels][];
+		long recordedBytes = 0L;
+		for (int i = 0; i < totalNumberOfInputChannels; i++) {
+			if (recordedData[i] != null) {
+				channelData[i] = recordedData[i].toByteArray();
+				recordedBytes += channelData[i].length;
+			}
+		}
+		recordedData = null;
+
+		latestAlignmentDurationNanos = System.nanoTime() - startOfRecordingTimestamp;
+		latestBytesBufferedInAlignment = recordedBytes;
+		latestSlowestChannel = lastBarrierChannel;
+
+		channelStateListener.onInputChannelState(currentCheckpointId, channelData);
+	}
+
+	private void abortPendingCheckpoint() {
+		for (int i = 0; i < totalNumberOfInputChannels; i++) {
+			recordedChannels[i] = false;
+		}
+		numRecordedChannels = 0;
+		recordedData = null;
+
+		channelStateListener.onCheckpointAborted(currentCheckpointId);
+	}
+
+	@Override
+	public void registerCheckpointEventHandler(EventListener<CheckpointBarrier> checkpointHandler) {
+		if (this.checkpointHandler == null) {
+			this.checkpointHandler = checkpointHandler;
+		}
+		else {
+			throw new IllegalStateException("UnalignedBarrierHandler already has a registered checkpoint handler");
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		// data is recorded, but never held back
+		return true;
+	}
+
+	/**
+	 * Gets the time between the first and the last barrier of the latest completed checkpoint.
+	 * The inputs are not blocked during that time.
+	 */
+	@Override
+	public long getAlignmentDurationNanos() {
+		return latestAlignmentDurationNanos;
+	}
+
+	/**
+	 * Gets the number of bytes of in-flight data that were recorded for the latest completed
+	 * checkpoint.
+	 */
+	@Override
+	public long getBytesBufferedInAlignment() {
+		return latestBytesBufferedInAlignment;
+	}
+
+	@Override
+	public int getSlowestChannel() {
+		return latestSlowestChannel;
+	}
+
+	@Override
+	public void cleanup() throws IOException {
+		recordedData = null;
+	}
+
+	/**
+	 * Gets the ID of the pending, or last triggered, checkpoint.
+	 *
+	 * @return The ID of the pending or last triggered checkpoint.
+	 */
+	public long getCurrentCheckpointId() {
+		return currentCheckpointId;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("last checkpoint: %d, recorded channels: %d", currentCheckpointId, numRecordedChannels);
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The listener for the in-flight input data of unaligned checkpoints.
+	 */
+	public interface InputChannelStateListener {
+
+		/**
+		 * Called once the barriers of the checkpoint arrived on all channels.
+		 *
+		 * @param checkpointId The ID of the checkpoint.
+		 * @param channelData The in-flight data by channel index, null for channels without data.
+		 */
+		void onInputChannelState(long checkpointId, byte[][] channelData);
+
+		/**
+		 * Called if the barrier of a later checkpoint arrived before all barriers of the
+		 * checkpoint, which is skipped.
+		 *
+		 * @param checkpointId The ID of the skipped checkpoint.
+		 */
+		void onCheckpointAborted(long checkpointId);
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.state.ReducingState;
+import org.apache.flink.api.common.state.ReducingStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.streaming.api.operators.InternalTimer;
+import org.apache.flink.streaming.api.windowing.assigners.SlidingEventTimeWindows;
+import org.apache.flink.streaming.api.windowing.triggers.EventTimeTrigger;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalWindowFunction;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.util.Preconditions;
+
+/**
+ * A {@link WindowOperator} for {@link SlidingEventTimeWindows} with an {@link EventTimeTrigger},
+ * which pre-aggregates the elements in panes that are shared by the overlapping windows.
+ *
+ * <p>
+ * The time is sliced into panes of the size {@code gcd(size, slide)}. Every element is added
+ * to the state of exactly one pane, instead of the state of each of the {@code size / slide}
+ * windows that it belongs to. When a window fires, the values of its panes are reduced with the
+ * {@link ReduceFunction} of the {@link ReducingStateDescriptor}.
+ *
+ * <p>
+ * The firing behaviour matches the {@code WindowOperator} with an {@code EventTimeTrigger}:
+ * a window fires when the watermark passes its end. As the trigger purges the window when it
+ * fires, a late element that is within the allowed lateness fires all windows that contain it
+ * and that have already fired with only that element. To keep the number of timers low, a timer
+ * is only registered for the first window that contains a pane. When a window fires, it
+ * registers the timer of the following window, if that window shares a non-empty pane with it.
+ *
+ * <p>
+ * A pane is cleared when the last window that contains it is cleaned up, i.e. when the
+ * watermark passes the end of that window plus the allowed lateness.
+ *
+ * <p>
+ * The state of the panes is scoped by the pane windows, not by the windows of the assigner, so
+ * it is not compatible with the state of a {@code WindowOperator}.
+ *
+ * @param <K> The type of key returned by the {@code KeySelector}.
+ * @param <IN> The type of the incoming elements and of the reduced value of a pane and a window.
+ * @param <OUT> The type of elements emitted by the {@code InternalWindowFunction}.
+ */
+@Internal
+public class SlidingEventTimePaneWindowOperator<K, IN, OUT>
+	extends WindowOperator<K, IN, IN, OUT, TimeWindow> {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The size of the windows */
+	private final long size;
+
+	/** The slide of the windows */
+	private final long slide;
+
+	/** The size of the panes, which is the greatest common divisor of size and slide */
+	private final long paneSize;
+
+	/**
+	 * Creates a new {@code SlidingEventTimePaneWindowOperator}. The state descriptor is used for
+	 * the state of the panes.
+	 */
+	public SlidingEventTimePaneWindowOperator(SlidingEventTimeWindows windowAssigner,
+		TypeSerializer<TimeWindow> windowSerializer,
+		KeySelector<IN, K> keySelector,
+		TypeSerializer<K> keySerializer,
+		ReducingStateDescriptor<IN> paneStateDescriptor,
+		InternalWindowFunction<IN, OUT, K, TimeWindow> windowFunction,
+		long allowedLateness) {
+
+		super(windowAssigner,
+			windowSerializer,
+			keySelector,
+			keySerializer,
+			paneStateDescriptor,
+			windowFunction,
+			EventTimeTrigger.create(),
+			allowedLateness);
+
+		this.size = windowAssigner.getSize();
+		this.slide = windowAssigner.getSlide();
+		Preconditions.checkArgument(size > 0 && slide > 0, "The size and slide of the windows must be positive.");
+
+		this.paneSize = gcd(size, slide);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void processElement(StreamRecord<IN> element) throws Exception {
+		final long timestamp = element.getTimestamp();
+
+		if (timestamp == Long.MIN_VALUE) {
+			throw new RuntimeException("Record has Long.MIN_VALUE timestamp (= no timestamp marker). " +
+				"Is the time characteristic set to 'ProcessingTime', or did you forget to call " +
+				"'DataStream.assignTimestampsAndWatermarks(...)'?");
+		}
+
+		// the same windows as assigned by SlidingEventTimeWindows
+		final long lastStart = timestamp - timestamp % slide;
+		if (timestamp - lastStart >= size) {
+			// the element falls into the gap between two windows
+			return;
+		}
+		final long firstStart = lastStart - (size - 1 - (timestamp - lastStart)) / slide * slide;
+
+		// drop if all windows are already late, the last window is the latest to be cleaned up
+		final TimeWindow lastWindow = new TimeWindow(lastStart, lastStart + size);
+		if (isLate(lastWindow)) {
+			LOG.info("Dropped element " + element + " for window " + lastWindow + " due to lateness.");
+			return;
+		}
+
+		// the pane is only needed, if there is a window that contains it and has not fired yet
+		if (lastWindow.maxTimestamp() > currentWatermark) {
+			final long paneStart = timestamp - timestamp % paneSize;
+			ReducingState<IN> paneState = getPaneState(paneStart);
+			paneState.add(element.getValue());
+		}
+
+		context.key = (K) getStateBackend().getCurrentKey();
+
+		for (long start = firstStart; start <= lastStart; start += slide) {
+			TimeWindow window = new TimeWindow(start, start + size);
+
+			if (isLate(window)) {
+				continue;
+			}
+
+			if (window.maxTimestamp() <= currentWatermark) {
+				// the window has already fired and was purged, fire again with the late element
+				timestampedCollector.setAbsoluteTimestamp(window.maxTimestamp());
+				userFunction.apply(context.key, window, element.getValue(), timestampedCollector);
+			} else {
+				// the following windows are registered when this window fires
+				internalTimerService.registerEventTimeTimer(window, window.maxTimestamp());
+				break;
+			}
+		}
+	}
+
+	@Override
+	public void onEventTime(InternalTimer<K, TimeWindow> timer) throws Exception {
+		final TimeWindow window = timer.getNamespace();
+		final long time = timer.getTimestamp();
+
+		context.key = timer.getKey();
+		context.window = window;
+
+		if (time == window.maxTimestamp()) {
+			if (fire(window)) {
+				TimeWindow nextWindow = new TimeWindow(window.getStart() + slide, window.getEnd() + slide);
+				internalTimerService.registerEventTimeTimer(nextWindow, nextWindow.maxTimestamp());
+			}
+
+			if (!isCleanupTime(window, time)) {
+				registerCleanupTimer(window);
+			}
+		}
+
+		if (isCleanupTime(window, time)) {
+			// no later window contains the panes at the beginning of this window
+			long end = Math.min(window.getStart() + slide, window.getEnd());
+			for (long paneStart = window.getStart(); paneStart < end; paneStart += paneSize) {
+				getPaneState(paneStart).clear();
+			}
+		}
+	}
+
+	/**
+	 * Combines the panes of the given window and emits the result, if the window contains any
+	 * elements. The caller must ensure that the correct key is set in the state backend and the
+	 * context object.
+	 *
+	 * @return Whether the panes, which the window shares with the following window, contain any
+	 *         elements.
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean fire(TimeWindow window) throws Exception {
+		final long nextWindowStart = window.getStart() + slide;
+
+		final ReduceFunction<IN> reduceFunction = ((ReducingStateDescriptor<IN>) windowStateDescriptor).getReduceFunction();
+
+		IN reduced = null;
+		boolean nextWindowHasElements = false;
+
+		for (long paneStart = window.getStart(); paneStart < window.getEnd(); paneStart += paneSize) {
+			IN value = getPaneState(paneStart).get();
+
+			if (value == null) {
+				continue;
+			}
+
+			if (reduced == null) {
+				// the pane value must not be modified by the reduce function
+				reduced = inputSerializer.copy(value);
+			} else {
+				reduced = reduceFunction.reduce(reduced, value);
+			}
+			nextWindowHasElements |= paneStart >= nextWindowStart;
+		}
+
+		if (reduced != null) {
+			timestampedCollector.setAbsoluteTimestamp(window.maxTimestamp());
+			userFunction.apply(context.key, window, reduced, timestampedCollector);
+		}
+
+		return nextWindowHasElements;
+	}
+
+	@SuppressWarnings("unchecked")
+	private ReducingState<IN> getPaneState(long paneStart) throws Exception {
+		return (ReducingState<IN>) getPartitionedState(
+			new TimeWindow(paneStart, paneStart + paneSize), windowSerializer, windowStateDescriptor);
+	}
+
+	private static long gcd(long a, long b) {
+		return b == 0 ? a : gcd(b, a % b);
+	}
+
+	// ------------------------------------------------------------------------
+	// Getters for testing
+	// ------------------------------------------------------------------------
+
+	public long getPaneSize() {
+		return paneSize;
+	}
+}
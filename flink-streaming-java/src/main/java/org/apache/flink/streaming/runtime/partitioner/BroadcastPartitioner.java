@@ -50,6 +50,11 @@ public class BroadcastPartitioner<T> extends StreamPartitioner<T> {
 		}
 	}
 
+	@Override
+	public boolean isBroadcast() {
+		return true;
+	}
+
 	@Override
 	public StreamPartitioner<T> copy() {
 		return this;
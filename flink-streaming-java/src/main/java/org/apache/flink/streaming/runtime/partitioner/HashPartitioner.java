@@ -20,6 +20,7 @@ package org.apache.flink.streaming.runtime.partitioner;
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.api.java.functions.KeySelector;
 import org.apache.flink.runtime.plugable.SerializationDelegate;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 import org.apache.flink.util.MathUtils;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
 
@@ -27,6 +28,10 @@ import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
  * Partitioner selects the target channel based on the hash value of a key from a
  * {@link KeySelector}.
  *
+ * <p>If a number of key groups is configured, the key is first assigned to its key group and the
+ * key group is then mapped to the channel of the subtask that owns it. Otherwise the key hash is
+ * used directly, which is equivalent to using one key group per channel.
+ *
  * @param <T> Type of the elements in the Stream being partitioned
  */
 @Internal
@@ -36,10 +41,20 @@ public class HashPartitioner<T> extends StreamPartitioner<T> {
 	private int[] returnArray = new int[1];
 	KeySelector<T, ?> keySelector;
 
+	private int numberOfKeyGroups = -1;
+
 	public HashPartitioner(KeySelector<T, ?> keySelector) {
 		this.keySelector = keySelector;
 	}
 
+	public void setNumberOfKeyGroups(int numberOfKeyGroups) {
+		this.numberOfKeyGroups = numberOfKeyGroups;
+	}
+
+	public int getNumberOfKeyGroups() {
+		return numberOfKeyGroups;
+	}
+
 	@Override
 	public int[] selectChannels(SerializationDelegate<StreamRecord<T>> record,
 			int numberOfOutputChannels) {
@@ -49,7 +64,13 @@ public class HashPartitioner<T> extends StreamPartitioner<T> {
 		} catch (Exception e) {
 			throw new RuntimeException("Could not extract key from " + record.getInstance().getValue(), e);
 		}
-		returnArray[0] = MathUtils.murmurHash(key.hashCode()) % numberOfOutputChannels;
+		if (numberOfKeyGroups > 0) {
+			int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(key, numberOfKeyGroups);
+			returnArray[0] = KeyGroupRangeAssignment.computeOperatorIndexForKeyGroup(
+					numberOfKeyGroups, numberOfOutputChannels, keyGroup);
+		} else {
+			returnArray[0] = MathUtils.murmurHash(key.hashCode()) % numberOfOutputChannels;
+		}
 
 		return returnArray;
 	}
@@ -29,4 +29,9 @@ public abstract class StreamPartitioner<T> implements
 	private static final long serialVersionUID = 1L;
 
 	public abstract StreamPartitioner<T> copy();
+
+	@Override
+	public boolean isBroadcast() {
+		return false;
+	}
 }
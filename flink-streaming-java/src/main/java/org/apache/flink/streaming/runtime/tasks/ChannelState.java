@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.tasks;
+
+import org.apache.flink.annotation.Internal;
+
+import java.io.Serializable;
+
+/**
+ * The in-flight data of the channels of a task, which is part of an unaligned checkpoint.
+ *
+ * <p>The input data was received between the first and the last barrier of the checkpoint,
+ * the output data was overtaken by the barriers in the output queues of the task. On recovery,
+ * the input data is processed before any other input and the output data is sent before any
+ * other output, which requires the same parallelism as at the time of the checkpoint.
+ */
+@Internal
+public class ChannelState implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The input data by channel index of the task's input gates, null if there was none */
+	private final byte[][] inputChannelData;
+
+	/** The output data by output and channel index, null if there was none */
+	private final byte[][][] outputChannelData;
+
+	public ChannelState(byte[][] inputChannelData, byte[][][] outputChannelData) {
+		this.inputChannelData = inputChannelData;
+		this.outputChannelData = outputChannelData;
+	}
+
+	public byte[][] getInputChannelData() {
+		return inputChannelData;
+	}
+
+	public byte[][][] getOutputChannelData() {
+		return outputChannelData;
+	}
+
+	public boolean isEmpty() {
+		return getSize() == 0;
+	}
+
+	/**
+	 * Returns the number of bytes of the in-flight data.
+	 */
+	public long getSize() {
+		long size = getSize(inputChannelData);
+
+		if (outputChannelData != null) {
+			for (byte[][] channelData : outputChannelData) {
+				size += getSize(channelData);
+			}
+		}
+
+		return size;
+	}
+
+	private static long getSize(byte[][] channelData) {
+		long size = 0;
+
+		if (channelData != null) {
+			for (byte[] data : channelData) {
+				if (data != null) {
+					size += data.length;
+				}
+			}
+		}
+
+		return size;
+	}
+}
@@ -24,6 +24,7 @@ import org.apache.flink.runtime.accumulators.AccumulatorRegistry;
 import org.apache.flink.runtime.io.network.partition.consumer.InputGate;
 import org.apache.flink.streaming.api.graph.StreamConfig;
 import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
+import org.apache.flink.streaming.runtime.io.CheckpointBarrierHandler;
 import org.apache.flink.streaming.runtime.io.StreamInputProcessor;
 
 @Internal
@@ -45,6 +46,7 @@ public class OneInputStreamTask<IN, OUT> extends StreamTask<OUT, OneInputStreamO
 			inputProcessor = new StreamInputProcessor<IN>(inputGates, inSerializer,
 					getCheckpointBarrierListener(), 
 					configuration.getCheckpointMode(),
+					getInputChannelStateListener(),
 					getEnvironment().getIOManager(),
 					isSerializingTimestamps());
 
@@ -68,6 +70,20 @@ public class OneInputStreamTask<IN, OUT> extends StreamTask<OUT, OneInputStreamO
 		}
 	}
 
+	@Override
+	protected void restoreInputChannelState(byte[][] inputChannelData) throws Exception {
+		if (inputProcessor != null) {
+			inputProcessor.restoreInputChannelState(inputChannelData);
+		} else {
+			super.restoreInputChannelState(inputChannelData);
+		}
+	}
+
+	@Override
+	protected CheckpointBarrierHandler getCheckpointBarrierHandler() {
+		return inputProcessor != null ? inputProcessor.getCheckpointBarrierHandler() : null;
+	}
+
 	@Override
 	protected void cleanup() throws Exception {
 		inputProcessor.cleanup();
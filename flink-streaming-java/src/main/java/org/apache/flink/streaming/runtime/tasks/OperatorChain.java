@@ -135,6 +135,33 @@ public class OperatorChain<OUT> {
 		}
 	}
 	
+	/**
+	 * Broadcasts the barrier of an unaligned checkpoint in front of the data, which is queued in
+	 * the outputs, and returns copies of the overtaken data by output and channel.
+	 */
+	public byte[][][] broadcastPriorityCheckpointBarrier(long id, long timestamp) throws IOException, InterruptedException {
+		CheckpointBarrier barrier = new CheckpointBarrier(id, timestamp);
+		byte[][][] overtakenData = new byte[streamOutputs.length][][];
+		for (int i = 0; i < streamOutputs.length; i++) {
+			overtakenData[i] = streamOutputs[i].broadcastPriorityEvent(barrier);
+		}
+		return overtakenData;
+	}
+
+	/**
+	 * Writes the output data of an unaligned checkpoint to the outputs again. This must be
+	 * done before any records are emitted.
+	 */
+	public void replayOutputChannelData(byte[][][] outputChannelData) throws IOException, InterruptedException {
+		if (outputChannelData.length != streamOutputs.length) {
+			throw new IllegalStateException("The in-flight data of " + outputChannelData.length +
+					" outputs cannot be restored to " + streamOutputs.length + " outputs.");
+		}
+		for (int i = 0; i < streamOutputs.length; i++) {
+			streamOutputs[i].replayChannelData(outputChannelData[i]);
+		}
+	}
+
 	public RecordWriterOutput<?>[] getStreamOutputs() {
 		return streamOutputs;
 	}
@@ -18,12 +18,14 @@
 package org.apache.flink.streaming.runtime.tasks;
 
 import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.TaskInfo;
 import org.apache.flink.api.common.accumulators.Accumulator;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.configuration.ConfigConstants;
 import org.apache.flink.configuration.Configuration;
 import org.apache.flink.configuration.IllegalConfigurationException;
 import org.apache.flink.metrics.Gauge;
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
 import org.apache.flink.runtime.execution.CancelTaskException;
 import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
 import org.apache.flink.runtime.jobgraph.tasks.AbstractInvokable;
@@ -31,31 +33,42 @@ import org.apache.flink.runtime.jobgraph.tasks.StatefulTask;
 import org.apache.flink.runtime.state.AbstractStateBackend;
 import org.apache.flink.runtime.state.AsynchronousKvStateSnapshot;
 import org.apache.flink.runtime.state.AsynchronousStateHandle;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 import org.apache.flink.runtime.state.KvStateSnapshot;
 import org.apache.flink.runtime.state.StateBackendFactory;
+import org.apache.flink.runtime.state.StateHandle;
 import org.apache.flink.runtime.state.filesystem.FsStateBackend;
 import org.apache.flink.runtime.state.filesystem.FsStateBackendFactory;
 import org.apache.flink.runtime.state.memory.MemoryStateBackend;
 import org.apache.flink.runtime.taskmanager.DispatcherThreadFactory;
 import org.apache.flink.runtime.util.event.EventListener;
+import org.apache.flink.streaming.api.CheckpointingMode;
 import org.apache.flink.streaming.api.TimeCharacteristic;
 import org.apache.flink.streaming.api.graph.StreamConfig;
 import org.apache.flink.streaming.api.operators.Output;
 import org.apache.flink.streaming.api.operators.StreamOperator;
+import org.apache.flink.streaming.runtime.io.CheckpointBarrierHandler;
 import org.apache.flink.streaming.runtime.io.RecordWriterOutput;
+import org.apache.flink.streaming.runtime.io.UnalignedBarrierHandler;
 import org.apache.flink.streaming.runtime.operators.Triggerable;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Base class for all streaming tasks. A task is the unit of local processing that is deployed
@@ -103,6 +116,9 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 
 	/** The thread group that holds all trigger timer threads */
 	public static final ThreadGroup TRIGGER_THREAD_GROUP = new ThreadGroup("Triggers");
+
+	/** The thread group that holds all asynchronous checkpoint materialization threads */
+	public static final ThreadGroup ASYNC_CHECKPOINT_THREAD_GROUP = new ThreadGroup("Async Checkpoints");
 	
 	/** The logger used by the StreamTask and its subclasses */
 	protected static final Logger LOG = LoggerFactory.getLogger(StreamTask.class);
@@ -140,14 +156,22 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 	/** The state to be restored once the initialization is done */
 	private StreamTaskStateList lazyRestoreState;
 
+	/** The key/value states of the key groups assigned to this task, restored lazily like the state above */
+	private List<StreamTaskStateList> lazyRestoreKeyGroupsStates;
+
 	/**
 	 * This field is used to forward an exception that is caught in the timer thread or other
 	 * asynchronous Threads. Subclasses must ensure that exceptions stored here get thrown on the
 	 * actual execution Thread. */
 	private volatile AsynchronousException asyncException;
 
-	/** The currently active background materialization threads */
-	private final Set<Thread> asyncCheckpointThreads = Collections.synchronizedSet(new HashSet<Thread>());
+	/** The executor that materializes the asynchronous checkpoint states in the background.
+	 * Created lazily with the first asynchronous checkpoint. */
+	private ThreadPoolExecutor asyncCheckpointExecutor;
+
+	/** The permits for asynchronous checkpoints that may be materialized at the same time.
+	 * Further checkpoints wait for a permit, which back-pressures the task. */
+	private Semaphore asyncCheckpointPermits;
 	
 	/** Flag to mark the task "in operation", in which case check
 	 * needs to be initialized to true, so that early cancel() before invoke() behaves correctly */
@@ -160,6 +184,15 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 
 	private long lastCheckpointSize = 0;
 
+	/** The metrics of the latest acknowledged checkpoint, for the task's metric group */
+	private volatile CheckpointMetrics lastCheckpointMetrics = new CheckpointMetrics();
+
+	/** The unaligned checkpoints whose input channel state is still being recorded, guarded by the lock */
+	private final Map<Long, PendingUnalignedCheckpoint> pendingUnalignedCheckpoints = new HashMap<>();
+
+	/** The state backend that persists the channel state of unaligned checkpoints, created lazily */
+	private AbstractStateBackend channelStateBackend;
+
 	// ------------------------------------------------------------------------
 	//  Life cycle methods for specific implementations
 	// ------------------------------------------------------------------------
@@ -234,6 +267,34 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 				}
 			});
 
+			getEnvironment().getMetricGroup().gauge("lastCheckpointAlignmentDuration", new Gauge<Long>() {
+				@Override
+				public Long getValue() {
+					return StreamTask.this.lastCheckpointMetrics.getAlignmentDurationNanos() / 1_000_000;
+				}
+			});
+
+			getEnvironment().getMetricGroup().gauge("lastCheckpointBytesBufferedInAlignment", new Gauge<Long>() {
+				@Override
+				public Long getValue() {
+					return StreamTask.this.lastCheckpointMetrics.getBytesBufferedInAlignment();
+				}
+			});
+
+			getEnvironment().getMetricGroup().gauge("lastCheckpointSyncDuration", new Gauge<Long>() {
+				@Override
+				public Long getValue() {
+					return StreamTask.this.lastCheckpointMetrics.getSyncDurationMillis();
+				}
+			});
+
+			getEnvironment().getMetricGroup().gauge("lastCheckpointAsyncDuration", new Gauge<Long>() {
+				@Override
+				public Long getValue() {
+					return StreamTask.this.lastCheckpointMetrics.getAsyncDurationMillis();
+				}
+			});
+
 			// task specific initialization
 			init();
 			
@@ -273,6 +334,9 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 			// at the same time, this makes sure that during any "regular" exit where still
 			synchronized (lock) {
 				isRunning = false;
+
+				// the pending unaligned checkpoints will never complete
+				discardPendingUnalignedCheckpoints();
 				
 				// this is part of the main logic, so if this fails, the task is considered failed
 				closeAllOperators();
@@ -305,10 +369,9 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 			
 			// stop all asynchronous checkpoint threads
 			try {
-				for (Thread checkpointThread : asyncCheckpointThreads) {
-					checkpointThread.interrupt();
+				if (asyncCheckpointExecutor != null) {
+					asyncCheckpointExecutor.shutdownNow();
 				}
-				asyncCheckpointThreads.clear();
 			}
 			catch (Throwable t) {
 				// catch and log the exception to not replace the original exception
@@ -320,6 +383,17 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 				operatorChain.releaseOutputs();
 			}
 
+			if (channelStateBackend != null) {
+				try {
+					channelStateBackend.close();
+					channelStateBackend.dispose();
+				}
+				catch (Throwable t) {
+					// catch and log the exception to not replace the original exception
+					LOG.error("Could not close the channel state backend", t);
+				}
+			}
+
 			// we must! perform this cleanup
 			try {
 				cleanup();
@@ -329,8 +403,12 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 				LOG.error("Error during cleanup of stream task", t);
 			}
 			
-			// if the operators were not disposed before, do a hard dispose
+			// if the operators were not disposed before, do a hard dispose. The snapshots of
+			// pending checkpoints must be discarded before, while the state backends are open
 			if (!disposed) {
+				synchronized (lock) {
+					discardPendingUnalignedCheckpoints();
+				}
 				disposeAllOperators();
 			}
 		}
@@ -449,8 +527,8 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 			timerService.shutdownService();
 		}
 
-		for (Thread checkpointThread : asyncCheckpointThreads) {
-			checkpointThread.interrupt();
+		if (asyncCheckpointExecutor != null) {
+			asyncCheckpointExecutor.shutdownNow();
 		}
 	}
 
@@ -500,34 +578,79 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 	// ------------------------------------------------------------------------
 	
 	@Override
-	public void setInitialState(StreamTaskStateList initialState, long recoveryTimestamp) {
+	public void setInitialState(
+			StreamTaskStateList initialState,
+			List<StreamTaskStateList> keyGroupsStates,
+			long recoveryTimestamp) {
+
 		lazyRestoreState = initialState;
+		lazyRestoreKeyGroupsStates = keyGroupsStates;
 		this.recoveryTimestamp = recoveryTimestamp;
 	}
 	
 	private void restoreState() throws Exception {
-		if (lazyRestoreState != null) {
+		if (lazyRestoreState != null || (lazyRestoreKeyGroupsStates != null && !lazyRestoreKeyGroupsStates.isEmpty())) {
 			LOG.info("Restoring checkpointed state to task {}", getName());
 			
 			try {
 				final StreamOperator<?>[] allOperators = operatorChain.getAllOperators();
-				final StreamTaskState[] states = lazyRestoreState.getState(userClassLoader);
+				final StreamTaskState[] states = lazyRestoreState == null ?
+					new StreamTaskState[allOperators.length] : lazyRestoreState.getState(userClassLoader);
+				final ChannelState channelState = lazyRestoreState == null || lazyRestoreState.getChannelState() == null ?
+					null : lazyRestoreState.getChannelState().getState(userClassLoader);
+
+				final List<StreamTaskState[]> keyGroupsStates = new ArrayList<>();
+				if (lazyRestoreKeyGroupsStates != null) {
+					for (StreamTaskStateList keyGroupsState : lazyRestoreKeyGroupsStates) {
+						keyGroupsStates.add(keyGroupsState.getState(userClassLoader));
+					}
+				}
 				
 				// be GC friendly
 				lazyRestoreState = null;
+				lazyRestoreKeyGroupsStates = null;
 				
 				for (int i = 0; i < states.length; i++) {
 					StreamTaskState state = states[i];
 					StreamOperator<?> operator = allOperators[i];
+
+					if (operator == null) {
+						continue;
+					}
+
+					List<StreamTaskState> operatorKeyGroupsStates = new ArrayList<>();
+					for (StreamTaskState[] keyGroupsState : keyGroupsStates) {
+						if (keyGroupsState[i] != null && !keyGroupsState[i].isEmpty()) {
+							operatorKeyGroupsStates.add(keyGroupsState[i]);
+						}
+					}
 					
-					if (state != null && operator != null) {
+					if (state != null || !operatorKeyGroupsStates.isEmpty()) {
 						LOG.debug("Task {} in chain ({}) has checkpointed state", i, getName());
-						operator.restoreState(state, recoveryTimestamp);
+
+						if (state != null) {
+							operator.restoreState(state, recoveryTimestamp);
+						}
+						if (!operatorKeyGroupsStates.isEmpty()) {
+							operator.restoreKeyGroupsState(operatorKeyGroupsStates, recoveryTimestamp);
+						}
 					}
-					else if (operator != null) {
+					else {
 						LOG.debug("Task {} in chain ({}) does not have checkpointed state", i, getName());
 					}
 				}
+
+				// the in-flight data of an unaligned checkpoint goes in front of all new data
+				if (channelState != null) {
+					LOG.debug("Restoring {} bytes of in-flight data to task {}", channelState.getSize(), getName());
+
+					if (channelState.getOutputChannelData() != null) {
+						operatorChain.replayOutputChannelData(channelState.getOutputChannelData());
+					}
+					if (channelState.getInputChannelData() != null) {
+						restoreInputChannelState(channelState.getInputChannelData());
+					}
+				}
 			}
 			catch (Exception e) {
 				throw new Exception("Could not restore checkpointed state to operators and functions", e);
@@ -535,10 +658,25 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 		}
 	}
 
+	/**
+	 * Restores the input data of an unaligned checkpoint. The data of each input channel
+	 * must be processed before any data that is received on the channel.
+	 *
+	 * @param inputChannelData The data by channel index of the task's input gates.
+	 */
+	protected void restoreInputChannelState(byte[][] inputChannelData) throws Exception {
+		for (byte[] channelData : inputChannelData) {
+			if (channelData != null && channelData.length > 0) {
+				throw new IllegalStateException("Task " + getName() + " cannot restore in-flight input data.");
+			}
+		}
+	}
+
 	@Override
 	public boolean triggerCheckpoint(long checkpointId, long timestamp) throws Exception {
 		try {
-			return performCheckpoint(checkpointId, timestamp);
+			// the task has no inputs, so there is no in-flight input data to wait for
+			return performCheckpoint(checkpointId, timestamp, false);
 		}
 		catch (Exception e) {
 			// propagate exceptions only if the task is still in "running" state
@@ -551,20 +689,52 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 	}
 
 	protected boolean performCheckpoint(final long checkpointId, final long timestamp) throws Exception {
+		return performCheckpoint(checkpointId, timestamp, false);
+	}
+
+	/**
+	 * Draws a checkpoint of the task.
+	 *
+	 * @param checkpointId The ID of the checkpoint.
+	 * @param timestamp The timestamp of the checkpoint.
+	 * @param onBarrier True, if the checkpoint was triggered by the barriers of the task's inputs,
+	 *                  false if it was triggered by the checkpoint coordinator.
+	 */
+	private boolean performCheckpoint(
+			final long checkpointId,
+			final long timestamp,
+			final boolean onBarrier) throws Exception {
+
 		LOG.debug("Starting checkpoint {} on task {}", checkpointId, getName());
 		
 		synchronized (lock) {
 			if (isRunning) {
+				final long syncStartNanos = System.nanoTime();
+				final CheckpointMetrics checkpointMetrics = new CheckpointMetrics();
+
+				// the alignment of unaligned checkpoints only ends after the snapshot
+				if (onBarrier && !isUnalignedCheckpointing()) {
+					collectAlignmentMetrics(checkpointMetrics);
+				}
 
 				// Since both state checkpointing and downstream barrier emission occurs in this
 				// lock scope, they are an atomic operation regardless of the order in which they occur.
 				// Given this, we immediately emit the checkpoint barriers, so the downstream operators
 				// can start their checkpoint work as soon as possible
-				operatorChain.broadcastCheckpointBarrier(checkpointId, timestamp);
+				final byte[][][] outputChannelData;
+				if (isUnalignedCheckpointing()) {
+					// the barriers overtake the queued output, which becomes part of the checkpoint
+					outputChannelData = operatorChain.broadcastPriorityCheckpointBarrier(checkpointId, timestamp);
+				} else {
+					operatorChain.broadcastCheckpointBarrier(checkpointId, timestamp);
+					outputChannelData = null;
+				}
 				
-				// now draw the state snapshot
+				// now draw the state snapshot. the key/value state and the timers are acknowledged
+				// separately from the operator state, because they are redistributed by key group on restore
 				final StreamOperator<?>[] allOperators = operatorChain.getAllOperators();
 				final StreamTaskState[] states = new StreamTaskState[allOperators.length];
+				final StreamTaskState[] keyGroupsStates = new StreamTaskState[allOperators.length];
 
 				boolean hasAsyncStates = false;
 
@@ -586,6 +756,17 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 							}
 						}
 
+						StreamTaskState keyGroupsState = new StreamTaskState();
+						if (state.getKvStates() != null && !state.getKvStates().isEmpty()) {
+							keyGroupsState.setKvStates(state.getKvStates());
+						}
+						if (state.getTimerStates() != null && !state.getTimerStates().isEmpty()) {
+							keyGroupsState.setTimerStates(state.getTimerStates());
+						}
+						keyGroupsStates[i] = keyGroupsState.isEmpty() ? null : keyGroupsState;
+						state.setKvStates(null);
+						state.setTimerStates(null);
+
 						states[i] = state.isEmpty() ? null : state;
 					}
 				}
@@ -596,65 +777,17 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 					throw new CancelTaskException();
 				}
 
-				StreamTaskStateList allStates = new StreamTaskStateList(states);
+				checkpointMetrics.setSyncDurationMillis((System.nanoTime() - syncStartNanos) / 1_000_000);
 
-				if (allStates.isEmpty()) {
-					getEnvironment().acknowledgeCheckpoint(checkpointId);
-				} else if (!hasAsyncStates) {
-					this.lastCheckpointSize = allStates.getStateSize();
-					getEnvironment().acknowledgeCheckpoint(checkpointId, allStates);
+				if (onBarrier && isUnalignedCheckpointing()) {
+					// the checkpoint is acknowledged once the barrier arrived on all input channels
+					pendingUnalignedCheckpoints.put(checkpointId, new PendingUnalignedCheckpoint(
+						timestamp, states, keyGroupsStates, hasAsyncStates, outputChannelData, checkpointMetrics));
 				} else {
-					// start a Thread that does the asynchronous materialization and
-					// then sends the checkpoint acknowledge
-
-					String threadName = "Materialize checkpoint state " + checkpointId + " - " + getName();
-					Thread checkpointThread = new Thread(threadName) {
-						@Override
-						public void run() {
-							try {
-								for (StreamTaskState state : states) {
-									if (state != null) {
-										if (state.getFunctionState() instanceof AsynchronousStateHandle) {
-											AsynchronousStateHandle<Serializable> asyncState = (AsynchronousStateHandle<Serializable>) state.getFunctionState();
-											state.setFunctionState(asyncState.materialize());
-										}
-										if (state.getOperatorState() instanceof AsynchronousStateHandle) {
-											AsynchronousStateHandle<?> asyncState = (AsynchronousStateHandle<?>) state.getOperatorState();
-											state.setOperatorState(asyncState.materialize());
-										}
-										if (state.getKvStates() != null) {
-											Set<String> keys = state.getKvStates().keySet();
-											HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> kvStates = state.getKvStates();
-											for (String key: keys) {
-												if (kvStates.get(key) instanceof AsynchronousKvStateSnapshot) {
-													AsynchronousKvStateSnapshot<?, ?, ?, ?, ?> asyncHandle = (AsynchronousKvStateSnapshot<?, ?, ?, ?, ?>) kvStates.get(key);
-													kvStates.put(key, asyncHandle.materialize());
-												}
-											}
-										}
-
-									}
-								}
-								StreamTaskStateList allStates = new StreamTaskStateList(states);
-								StreamTask.this.lastCheckpointSize = allStates.getStateSize();
-								getEnvironment().acknowledgeCheckpoint(checkpointId, allStates);
-								LOG.debug("Finished asynchronous checkpoints for checkpoint {} on task {}", checkpointId, getName());
-							}
-							catch (Exception e) {
-								if (isRunning()) {
-									LOG.error("Caught exception while materializing asynchronous checkpoints.", e);
-								}
-								if (asyncException == null) {
-									asyncException = new AsynchronousException(e);
-								}
-							}
-							asyncCheckpointThreads.remove(this);
-						}
-					};
-
-					asyncCheckpointThreads.add(checkpointThread);
-					checkpointThread.setDaemon(true);
-					checkpointThread.start();
+					ChannelState channelState = outputChannelData == null ?
+						null : new ChannelState(null, outputChannelData);
+					completeCheckpoint(
+						checkpointId, timestamp, states, keyGroupsStates, hasAsyncStates, channelState, checkpointMetrics);
 				}
 				return true;
 			} else {
@@ -662,7 +795,219 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 			}
 		}
 	}
+
+	/**
+	 * Completes the unaligned checkpoint with the given ID, once the input channel state has
+	 * been recorded.
+	 */
+	private void completeUnalignedCheckpoint(long checkpointId, byte[][] inputChannelData) throws Exception {
+		synchronized (lock) {
+			PendingUnalignedCheckpoint pending = pendingUnalignedCheckpoints.remove(checkpointId);
+
+			if (pending == null) {
+				LOG.debug("Ignoring input channel state of unknown checkpoint {} on task {}", checkpointId, getName());
+			} else if (!isRunning) {
+				pending.discardState();
+			} else {
+				collectAlignmentMetrics(pending.checkpointMetrics);
+
+				completeCheckpoint(
+					checkpointId,
+					pending.timestamp,
+					pending.states,
+					pending.keyGroupsStates,
+					pending.hasAsyncStates,
+					new ChannelState(inputChannelData, pending.outputChannelData),
+					pending.checkpointMetrics);
+			}
+		}
+	}
+
+	/**
+	 * Discards the snapshots of the unaligned checkpoints which still wait for their input
+	 * channel state. This must be called under the checkpoint lock, before the operators and
+	 * their state backends are disposed.
+	 */
+	private void discardPendingUnalignedCheckpoints() {
+		for (PendingUnalignedCheckpoint pending : pendingUnalignedCheckpoints.values()) {
+			pending.discardState();
+		}
+		pendingUnalignedCheckpoints.clear();
+	}
+
+	private void completeCheckpoint(
+			final long checkpointId,
+			final long timestamp,
+			final StreamTaskState[] states,
+			final StreamTaskState[] keyGroupsStates,
+			final boolean hasAsyncStates,
+			final ChannelState channelState,
+			final CheckpointMetrics checkpointMetrics) throws Exception {
+
+		final StateHandle<ChannelState> channelStateHandle = channelState == null || channelState.isEmpty() ?
+			null : checkpointChannelState(channelState, checkpointId, timestamp);
+
+		StreamTaskStateList allStates = new StreamTaskStateList(states, channelStateHandle);
+		StreamTaskStateList allKeyGroupsStates = new StreamTaskStateList(keyGroupsStates);
+
+		if (!hasAsyncStates || (allStates.isEmpty() && allKeyGroupsStates.isEmpty())) {
+			acknowledgeCheckpoint(checkpointId, allStates, allKeyGroupsStates, checkpointMetrics);
+		} else {
+			// let the background executor do the asynchronous materialization and
+			// then send the checkpoint acknowledge. if too many checkpoints are still
+			// materializing, we wait here and thereby back-pressure the task
+
+			final Semaphore permits = getAsyncCheckpointPermits();
+			permits.acquire();
+
+			Runnable materialization = new Runnable() {
+				@Override
+				public void run() {
+					try {
+						final long asyncStartNanos = System.nanoTime();
+
+						materializeAsynchronousStates(states);
+						materializeAsynchronousStates(keyGroupsStates);
+
+						checkpointMetrics.setAsyncDurationMillis((System.nanoTime() - asyncStartNanos) / 1_000_000);
+
+						acknowledgeCheckpoint(
+							checkpointId,
+							new StreamTaskStateList(states, channelStateHandle),
+							new StreamTaskStateList(keyGroupsStates),
+							checkpointMetrics);
+						LOG.debug("Finished asynchronous checkpoints for checkpoint {} on task {}", checkpointId, getName());
+					}
+					catch (Exception e) {
+						if (isRunning()) {
+							LOG.error("Caught exception while materializing asynchronous checkpoints.", e);
+						}
+						if (asyncException == null) {
+							asyncException = new AsynchronousException(e);
+						}
+					}
+					finally {
+						permits.release();
+					}
+				}
+			};
+
+			try {
+				getAsyncCheckpointExecutor().execute(materialization);
+			}
+			catch (RejectedExecutionException e) {
+				permits.release();
+				throw e;
+			}
+		}
+	}
+
+	private Semaphore getAsyncCheckpointPermits() {
+		if (asyncCheckpointPermits == null) {
+			asyncCheckpointPermits = new Semaphore(configuration.getMaxConcurrentAsyncCheckpoints());
+		}
+		return asyncCheckpointPermits;
+	}
+
+	private ThreadPoolExecutor getAsyncCheckpointExecutor() {
+		if (asyncCheckpointExecutor == null) {
+			int numThreads = configuration.getMaxConcurrentAsyncCheckpoints();
+
+			// the permits bound the number of queued materializations, the idle threads go away
+			asyncCheckpointExecutor = new ThreadPoolExecutor(
+				numThreads, numThreads, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(),
+				new DispatcherThreadFactory(ASYNC_CHECKPOINT_THREAD_GROUP, "Materialize checkpoint state - " + getName()));
+			asyncCheckpointExecutor.allowCoreThreadTimeOut(true);
+		}
+		return asyncCheckpointExecutor;
+	}
+
+	private StateHandle<ChannelState> checkpointChannelState(
+			ChannelState channelState,
+			long checkpointId,
+			long timestamp) throws Exception {
+
+		if (channelStateBackend == null) {
+			channelStateBackend = createStateBackend(
+				"ChannelState_" + configuration.getVertexID() + "_" + getEnvironment().getTaskInfo().getIndexOfThisSubtask(),
+				null);
+		}
+		return channelStateBackend.checkpointStateSerializable(channelState, checkpointId, timestamp);
+	}
+
+	private boolean isUnalignedCheckpointing() {
+		return configuration.isUnalignedCheckpoints() &&
+			configuration.getCheckpointMode() == CheckpointingMode.EXACTLY_ONCE;
+	}
 	
+	private void acknowledgeCheckpoint(
+			long checkpointId,
+			StreamTaskStateList allStates,
+			StreamTaskStateList allKeyGroupsStates,
+			CheckpointMetrics checkpointMetrics) throws Exception {
+
+		this.lastCheckpointSize = allStates.getStateSize() + allKeyGroupsStates.getStateSize();
+		this.lastCheckpointMetrics = checkpointMetrics;
+
+		getEnvironment().acknowledgeCheckpoint(
+			checkpointId,
+			allStates.isEmpty() ? null : allStates,
+			allKeyGroupsStates.isEmpty() ? null : allKeyGroupsStates,
+			checkpointMetrics);
+	}
+
+	/**
+	 * Adds the metrics of the latest barrier alignment of the task's inputs to the given
+	 * checkpoint metrics.
+	 */
+	private void collectAlignmentMetrics(CheckpointMetrics checkpointMetrics) {
+		CheckpointBarrierHandler barrierHandler = getCheckpointBarrierHandler();
+
+		if (barrierHandler != null) {
+			checkpointMetrics
+				.setAlignmentDurationNanos(barrierHandler.getAlignmentDurationNanos())
+				.setBytesBufferedInAlignment(barrierHandler.getBytesBufferedInAlignment())
+				.setSlowestChannel(barrierHandler.getSlowestChannel());
+		}
+	}
+
+	/**
+	 * Gets the handler of the checkpoint barriers of the task's inputs, which knows how long
+	 * the alignment of the barriers took.
+	 *
+	 * @return The barrier handler, or null if the task has no inputs.
+	 */
+	protected CheckpointBarrierHandler getCheckpointBarrierHandler() {
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void materializeAsynchronousStates(StreamTaskState[] states) throws Exception {
+		for (StreamTaskState state : states) {
+			if (state != null) {
+				if (state.getFunctionState() instanceof AsynchronousStateHandle) {
+					AsynchronousStateHandle<Serializable> asyncState = (AsynchronousStateHandle<Serializable>) state.getFunctionState();
+					state.setFunctionState(asyncState.materialize());
+				}
+				if (state.getOperatorState() instanceof AsynchronousStateHandle) {
+					AsynchronousStateHandle<?> asyncState = (AsynchronousStateHandle<?>) state.getOperatorState();
+					state.setOperatorState(asyncState.materialize());
+				}
+				if (state.getKvStates() != null) {
+					Set<String> keys = state.getKvStates().keySet();
+					HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> kvStates = state.getKvStates();
+					for (String key: keys) {
+						if (kvStates.get(key) instanceof AsynchronousKvStateSnapshot) {
+							AsynchronousKvStateSnapshot<?, ?, ?, ?, ?> asyncHandle = (AsynchronousKvStateSnapshot<?, ?, ?, ?, ?>) kvStates.get(key);
+							kvStates.put(key, asyncHandle.materialize());
+						}
+					}
+				}
+			}
+		}
+	}
+
 	@Override
 	public void notifyCheckpointComplete(long checkpointId) throws Exception {
 		synchronized (lock) {
@@ -733,7 +1078,19 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 					}
 			}
 		}
-		stateBackend.initializeForJob(getEnvironment(), operatorIdentifier, keySerializer);
+		TaskInfo taskInfo = getEnvironment().getTaskInfo();
+		int parallelism = taskInfo.getNumberOfParallelSubtasks();
+		int numberOfKeyGroups = configuration.getNumberOfKeyGroups();
+		if (numberOfKeyGroups <= 0) {
+			numberOfKeyGroups = parallelism;
+		}
+
+		KeyGroupRange keyGroupRange = KeyGroupRangeAssignment.computeKeyGroupRangeForOperatorIndex(
+			numberOfKeyGroups,
+			parallelism,
+			taskInfo.getIndexOfThisSubtask());
+
+		stateBackend.initializeForJob(getEnvironment(), operatorIdentifier, keySerializer, numberOfKeyGroups, keyGroupRange);
 		return stateBackend;
 
 	}
@@ -776,7 +1133,7 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 			@Override
 			public void onEvent(CheckpointBarrier barrier) {
 				try {
-					performCheckpoint(barrier.getId(), barrier.getTimestamp());
+					performCheckpoint(barrier.getId(), barrier.getTimestamp(), true);
 				}
 				catch (CancelTaskException e) {
 					throw e;
@@ -788,8 +1145,103 @@ public abstract class StreamTask<OUT, Operator extends StreamOperator<OUT>>
 		};
 	}
 	
+	/**
+	 * Returns the listener that receives the input channel state of unaligned checkpoints from
+	 * the input processors, or null if the task does not draw unaligned checkpoints.
+	 */
+	protected final UnalignedBarrierHandler.InputChannelStateListener getInputChannelStateListener() {
+		if (!isUnalignedCheckpointing()) {
+			return null;
+		}
+
+		return new UnalignedBarrierHandler.InputChannelStateListener() {
+			@Override
+			public void onInputChannelState(long checkpointId, byte[][] channelData) {
+				try {
+					completeUnalignedCheckpoint(checkpointId, channelData);
+				}
+				catch (CancelTaskException e) {
+					throw e;
+				}
+				catch (Exception e) {
+					throw new RuntimeException("Error completing unaligned checkpoint " + checkpointId, e);
+				}
+			}
+
+			@Override
+			public void onCheckpointAborted(long checkpointId) {
+				synchronized (lock) {
+					PendingUnalignedCheckpoint pending = pendingUnalignedCheckpoints.remove(checkpointId);
+					if (pending != null) {
+						LOG.info("Unaligned checkpoint {} on task {} was aborted", checkpointId, getName());
+						pending.discardState();
+					}
+				}
+			}
+		};
+	}
+	
 	// ------------------------------------------------------------------------
 
+	/**
+	 * The snapshot of an unaligned checkpoint that waits for its input channel state.
+	 */
+	private static final class PendingUnalignedCheckpoint {
+
+		private final long timestamp;
+		private final StreamTaskState[] states;
+		private final StreamTaskState[] keyGroupsStates;
+		private final boolean hasAsyncStates;
+		private final byte[][][] outputChannelData;
+		private final CheckpointMetrics checkpointMetrics;
+
+		PendingUnalignedCheckpoint(
+				long timestamp,
+				StreamTaskState[] states,
+				StreamTaskState[] keyGroupsStates,
+				boolean hasAsyncStates,
+				byte[][][] outputChannelData,
+				CheckpointMetrics checkpointMetrics) {
+
+			this.timestamp = timestamp;
+			this.states = states;
+			this.keyGroupsStates = keyGroupsStates;
+			this.hasAsyncStates = hasAsyncStates;
+			this.outputChannelData = outputChannelData;
+			this.checkpointMetrics = checkpointMetrics;
+		}
+
+		/**
+		 * Discards the state handles and releases the key/value state snapshots of the
+		 * checkpoint, which is not acknowledged.
+		 */
+		void discardState() {
+			discardStates(states);
+			discardStates(keyGroupsStates);
+		}
+
+		private static void discardStates(StreamTaskState[] states) {
+			for (StreamTaskState state : states) {
+				if (state != null) {
+					// asynchronous operator state is only written when it is materialized
+					if (state.getOperatorState() instanceof AsynchronousStateHandle) {
+						state.setOperatorState(null);
+					}
+					if (state.getFunctionState() instanceof AsynchronousStateHandle) {
+						state.setFunctionState(null);
+					}
+
+					try {
+						state.discardState();
+					}
+					catch (Exception e) {
+						LOG.warn("Failed to discard the state of an unaligned checkpoint.", e);
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * Internal task that is invoked by the timer service and triggers the target.
 	 */
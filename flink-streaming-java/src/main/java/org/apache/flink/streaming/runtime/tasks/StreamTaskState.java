@@ -19,6 +19,7 @@
 package org.apache.flink.streaming.runtime.tasks;
 
 import org.apache.flink.annotation.Internal;
+import org.apache.flink.core.memory.DataInputView;
 import org.apache.flink.runtime.state.StateHandle;
 import org.apache.flink.runtime.state.KvStateSnapshot;
 
@@ -29,11 +30,12 @@ import java.util.Iterator;
 
 /**
  * The state checkpointed by a {@link org.apache.flink.streaming.api.operators.AbstractStreamOperator}.
- * This state consists of any combination of those three:
+ * This state consists of any combination of those four:
  * <ul>
  *     <li>The state of the stream operator, if it implements the Checkpointed interface.</li>
  *     <li>The state of the user function, if it implements the Checkpointed interface.</li>
  *     <li>The key/value state of the operator, if it executes on a KeyedDataStream.</li>
+ *     <li>The timers of the operator's timer services, written per key group.</li>
  * </ul>
  */
 @Internal
@@ -47,6 +49,8 @@ public class StreamTaskState implements Serializable {
 
 	private HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> kvStates;
 
+	private HashMap<String, StateHandle<DataInputView>> timerStates;
+
 	// ------------------------------------------------------------------------
 
 	public StateHandle<?> getOperatorState() {
@@ -73,6 +77,14 @@ public class StreamTaskState implements Serializable {
 		this.kvStates = kvStates;
 	}
 
+	public HashMap<String, StateHandle<DataInputView>> getTimerStates() {
+		return timerStates;
+	}
+
+	public void setTimerStates(HashMap<String, StateHandle<DataInputView>> timerStates) {
+		this.timerStates = timerStates;
+	}
+
 	// ------------------------------------------------------------------------
 
 	/**
@@ -82,7 +94,7 @@ public class StreamTaskState implements Serializable {
 	 * @return True, if all state is null, false if at least one state is not null.
 	 */
 	public boolean isEmpty() {
-		return operatorState == null & functionState == null & kvStates == null;
+		return operatorState == null & functionState == null & kvStates == null & timerStates == null;
 	}
 
 	/**
@@ -95,6 +107,7 @@ public class StreamTaskState implements Serializable {
 		StateHandle<?> operatorState = this.operatorState;
 		StateHandle<?> functionState = this.functionState;
 		HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> kvStates = this.kvStates;
+		HashMap<String, StateHandle<DataInputView>> timerStates = this.timerStates;
 		
 		if (operatorState != null) {
 			operatorState.discardState();
@@ -117,9 +130,15 @@ public class StreamTaskState implements Serializable {
 				}
 			}
 		}
+		if (timerStates != null) {
+			for (StateHandle<DataInputView> timerState : timerStates.values()) {
+				timerState.discardState();
+			}
+		}
 
 		this.operatorState = null;
 		this.functionState = null;
 		this.kvStates = null;
+		this.timerStates = null;
 	}
 }
@@ -19,27 +19,48 @@
 package org.apache.flink.streaming.runtime.tasks;
 
 import org.apache.flink.annotation.Internal;
+import org.apache.flink.runtime.state.CompositeStateHandle;
 import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.SharedStateHandle;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.runtime.state.StateHandle;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * List of task states for a chain of streaming tasks.
  */
 @Internal
-public class StreamTaskStateList implements StateHandle<StreamTaskState[]> {
+public class StreamTaskStateList implements StateHandle<StreamTaskState[]>, CompositeStateHandle {
 
 	private static final long serialVersionUID = 1L;
 
 	/** The states for all operator */
 	private final StreamTaskState[] states;
 
+	/** The in-flight data of an unaligned checkpoint, null if there was none */
+	private final StateHandle<ChannelState> channelState;
+
 	public StreamTaskStateList(StreamTaskState[] states) throws Exception {
+		this(states, null);
+	}
+
+	public StreamTaskStateList(StreamTaskState[] states, StateHandle<ChannelState> channelState) throws Exception {
 		this.states = states;
+		this.channelState = channelState;
+	}
+
+	public StateHandle<ChannelState> getChannelState() {
+		return channelState;
 	}
 
 	public boolean isEmpty() {
+		if (channelState != null) {
+			return false;
+		}
 		for (StreamTaskState state : states) {
 			if (state != null) {
 				return false;
@@ -60,6 +81,40 @@ public class StreamTaskStateList implements StateHandle<StreamTaskState[]> {
 				state.discardState();
 			}
 		}
+
+		if (channelState != null) {
+			channelState.discardState();
+		}
+	}
+
+	@Override
+	public Collection<SharedStateHandle> getSharedStates() {
+		List<SharedStateHandle> sharedStates = new ArrayList<>();
+
+		if (states != null) {
+			for (StreamTaskState state : states) {
+				if (state != null) {
+					sharedStates.addAll(SharedStateRegistry.getSharedStates(state.getOperatorState()));
+					sharedStates.addAll(SharedStateRegistry.getSharedStates(state.getFunctionState()));
+
+					if (state.getKvStates() != null) {
+						for (KvStateSnapshot<?, ?, ?, ?, ?> kvState : state.getKvStates().values()) {
+							sharedStates.addAll(SharedStateRegistry.getSharedStates(kvState));
+						}
+					}
+
+					if (state.getTimerStates() != null) {
+						for (StateHandle<?> timerState : state.getTimerStates().values()) {
+							sharedStates.addAll(SharedStateRegistry.getSharedStates(timerState));
+						}
+					}
+				}
+			}
+		}
+
+		sharedStates.addAll(SharedStateRegistry.getSharedStates(channelState));
+
+		return sharedStates;
 	}
 
 	@Override
@@ -88,10 +143,20 @@ public class StreamTaskStateList implements StateHandle<StreamTaskState[]> {
 							}
 						}
 					}
+
+					if (state.getTimerStates() != null) {
+						for (StateHandle<?> timerState : state.getTimerStates().values()) {
+							sumStateSize += timerState.getStateSize();
+						}
+					}
 				}
 			}
 		}
 
+		if (channelState != null) {
+			sumStateSize += channelState.getStateSize();
+		}
+
 		// State size as sum of all state sizes
 		return sumStateSize;
 	}
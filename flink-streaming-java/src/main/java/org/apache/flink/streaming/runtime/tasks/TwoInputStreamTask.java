@@ -27,6 +27,7 @@ import org.apache.flink.runtime.io.network.partition.consumer.InputGate;
 import org.apache.flink.streaming.api.graph.StreamConfig;
 import org.apache.flink.streaming.api.graph.StreamEdge;
 import org.apache.flink.streaming.api.operators.TwoInputStreamOperator;
+import org.apache.flink.streaming.runtime.io.CheckpointBarrierHandler;
 import org.apache.flink.streaming.runtime.io.StreamTwoInputProcessor;
 
 @Internal
@@ -70,6 +71,7 @@ public class TwoInputStreamTask<IN1, IN2, OUT> extends StreamTask<OUT, TwoInputS
 				inputDeserializer1, inputDeserializer2,
 				getCheckpointBarrierListener(),
 				configuration.getCheckpointMode(),
+				getInputChannelStateListener(),
 				getEnvironment().getIOManager(),
 				isSerializingTimestamps());
 
@@ -92,6 +94,16 @@ public class TwoInputStreamTask<IN1, IN2, OUT> extends StreamTask<OUT, TwoInputS
 		}
 	}
 
+	@Override
+	protected void restoreInputChannelState(byte[][] inputChannelData) throws Exception {
+		inputProcessor.restoreInputChannelState(inputChannelData);
+	}
+
+	@Override
+	protected CheckpointBarrierHandler getCheckpointBarrierHandler() {
+		return inputProcessor.getCheckpointBarrierHandler();
+	}
+
 	@Override
 	protected void cleanup() throws Exception {
 		inputProcessor.cleanup();
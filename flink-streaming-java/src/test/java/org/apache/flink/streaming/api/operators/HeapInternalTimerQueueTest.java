@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link HeapInternalTimerQueue}.
+ */
+public class HeapInternalTimerQueueTest {
+
+	private static final int NUM_KEY_GROUPS = 32;
+
+	@Test
+	public void testTimersAreDeduplicated() {
+		HeapInternalTimerQueue<Integer, String> queue = new HeapInternalTimerQueue<>(NUM_KEY_GROUPS, allKeyGroups());
+
+		assertTrue(queue.add(new InternalTimer<>(10L, 1, "a")));
+		assertFalse(queue.add(new InternalTimer<>(10L, 1, "a")));
+		assertTrue(queue.add(new InternalTimer<>(10L, 1, "b")));
+		assertTrue(queue.add(new InternalTimer<>(10L, 2, "a")));
+		assertTrue(queue.add(new InternalTimer<>(11L, 1, "a")));
+
+		assertEquals(4, queue.size());
+	}
+
+	@Test
+	public void testRemove() {
+		HeapInternalTimerQueue<Integer, String> queue = new HeapInternalTimerQueue<>(NUM_KEY_GROUPS, allKeyGroups());
+
+		queue.add(new InternalTimer<>(10L, 1, "a"));
+		queue.add(new InternalTimer<>(20L, 1, "a"));
+		queue.add(new InternalTimer<>(30L, 2, "a"));
+
+		// removing the head of a key group must update the order of the key groups
+		assertTrue(queue.remove(new InternalTimer<>(10L, 1, "a")));
+		assertFalse(queue.remove(new InternalTimer<>(10L, 1, "a")));
+		assertEquals(2, queue.size());
+
+		assertEquals(new InternalTimer<>(20L, 1, "a"), queue.poll());
+		assertEquals(new InternalTimer<>(30L, 2, "a"), queue.poll());
+		assertNull(queue.poll());
+		assertNull(queue.peek());
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void testTimersArePolledInTimestampOrder() {
+		HeapInternalTimerQueue<Integer, Integer> queue = new HeapInternalTimerQueue<>(NUM_KEY_GROUPS, allKeyGroups());
+		PriorityQueue<InternalTimer<Integer, Integer>> expected = new PriorityQueue<>();
+		Set<InternalTimer<Integer, Integer>> contained = new HashSet<>();
+
+		Random random = new Random(42);
+		for (int i = 0; i < 10000; i++) {
+			InternalTimer<Integer, Integer> timer = new InternalTimer<>(random.nextInt(1000), random.nextInt(100), random.nextInt(3));
+
+			if (random.nextInt(4) == 0) {
+				assertEquals(contained.remove(timer), queue.remove(timer));
+				expected.remove(timer);
+			} else if (contained.add(timer)) {
+				assertTrue(queue.add(timer));
+				expected.add(timer);
+			} else {
+				assertFalse(queue.add(new InternalTimer<>(timer.getTimestamp(), timer.getKey(), timer.getNamespace())));
+			}
+		}
+
+		assertEquals(expected.size(), queue.size());
+
+		long lastTimestamp = Long.MIN_VALUE;
+		while (!expected.isEmpty()) {
+			InternalTimer<Integer, Integer> timer = queue.poll();
+			assertEquals(expected.poll().getTimestamp(), timer.getTimestamp());
+			assertTrue(contained.remove(timer));
+			assertTrue(timer.getTimestamp() >= lastTimestamp);
+			lastTimestamp = timer.getTimestamp();
+		}
+
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void testTimersAreGroupedByKeyGroup() {
+		KeyGroupRange keyGroupRange = new KeyGroupRange(8, 15);
+		HeapInternalTimerQueue<Integer, String> queue = new HeapInternalTimerQueue<>(NUM_KEY_GROUPS, keyGroupRange);
+
+		int numTimers = 0;
+		for (int key = 0; key < 1000; key++) {
+			int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(key, NUM_KEY_GROUPS);
+			if (keyGroupRange.contains(keyGroup)) {
+				queue.add(new InternalTimer<>(key, key, "a"));
+				numTimers++;
+			} else {
+				try {
+					queue.add(new InternalTimer<>(key, key, "a"));
+					fail("Timer of a key group outside of the range was accepted.");
+				} catch (IllegalArgumentException ignored) {
+					// expected
+				}
+			}
+		}
+
+		int numTimersOfKeyGroups = 0;
+		for (int keyGroup : keyGroupRange) {
+			List<InternalTimer<Integer, String>> timers = queue.getTimers(keyGroup);
+			for (InternalTimer<Integer, String> timer : timers) {
+				assertEquals(keyGroup, KeyGroupRangeAssignment.assignToKeyGroup(timer.getKey(), NUM_KEY_GROUPS));
+			}
+			numTimersOfKeyGroups += timers.size();
+		}
+
+		assertEquals(numTimers, numTimersOfKeyGroups);
+		assertEquals(numTimers, queue.size());
+	}
+
+	private static KeyGroupRange allKeyGroups() {
+		return new KeyGroupRange(0, NUM_KEY_GROUPS - 1);
+	}
+}
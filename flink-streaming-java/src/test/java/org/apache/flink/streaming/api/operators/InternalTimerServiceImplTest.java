@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.runtime.state.AbstractStateBackend;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.util.DataInputDeserializer;
+import org.apache.flink.runtime.util.DataOutputSerializer;
+import org.apache.flink.streaming.runtime.operators.Triggerable;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link InternalTimerServiceImpl}.
+ */
+public class InternalTimerServiceImplTest {
+
+	private static final int NUM_KEY_GROUPS = 16;
+
+	@Test
+	public void testOnlyEarliestProcessingTimeTimerIsScheduled() throws Exception {
+		AbstractStreamOperator<?> operator = mockOperator();
+		RecordingCallback callback = new RecordingCallback();
+		InternalTimerServiceImpl<Integer, String> timerService =
+			createTimerService(operator, new KeyGroupRange(0, NUM_KEY_GROUPS - 1), callback);
+
+		setCurrentKey(operator, 1);
+		timerService.registerProcessingTimeTimer("a", 20);
+		timerService.registerProcessingTimeTimer("a", 30);
+		timerService.registerProcessingTimeTimer("a", 10);
+		timerService.registerProcessingTimeTimer("b", 10);
+
+		verify(operator, times(1)).registerTimer(eq(20L), any(Triggerable.class));
+		verify(operator, times(1)).registerTimer(eq(10L), any(Triggerable.class));
+		verify(operator, never()).registerTimer(eq(30L), any(Triggerable.class));
+
+		timerService.trigger(10);
+
+		assertEquals(2, callback.processingTimeTimers.size());
+		assertEquals(10, callback.processingTimeTimers.get(0).getTimestamp());
+		assertEquals(10, callback.processingTimeTimers.get(1).getTimestamp());
+
+		// the next timer is scheduled after the due ones fired
+		verify(operator, times(2)).registerTimer(eq(20L), any(Triggerable.class));
+
+		// a trigger for a timer that was superseded fires only due timers
+		timerService.trigger(15);
+		assertEquals(2, callback.processingTimeTimers.size());
+		assertEquals(2, timerService.numProcessingTimeTimers());
+	}
+
+	@Test
+	public void testEventTimeTimersFireWithWatermark() throws Exception {
+		AbstractStreamOperator<?> operator = mockOperator();
+		RecordingCallback callback = new RecordingCallback();
+		InternalTimerServiceImpl<Integer, String> timerService =
+			createTimerService(operator, new KeyGroupRange(0, NUM_KEY_GROUPS - 1), callback);
+
+		setCurrentKey(operator, 1);
+		timerService.registerEventTimeTimer("a", 20);
+		timerService.registerEventTimeTimer("a", 10);
+		setCurrentKey(operator, 2);
+		timerService.registerEventTimeTimer("a", 10);
+		timerService.deleteEventTimeTimer("a", 10);
+
+		timerService.advanceWatermark(15);
+
+		assertEquals(15, timerService.currentWatermark());
+		assertEquals(1, callback.eventTimeTimers.size());
+		assertEquals(new InternalTimer<>(10L, 1, "a"), callback.eventTimeTimers.get(0));
+		verify(operator).setKeyContext(1);
+
+		timerService.advanceWatermark(20);
+		assertEquals(2, callback.eventTimeTimers.size());
+		assertEquals(0, timerService.numEventTimeTimers());
+	}
+
+	@Test
+	public void testSnapshotAndRestoreWithDifferentKeyGroupRanges() throws Exception {
+		AbstractStreamOperator<?> operator = mockOperator();
+		InternalTimerServiceImpl<Integer, String> timerService =
+			createTimerService(operator, new KeyGroupRange(0, NUM_KEY_GROUPS - 1), new RecordingCallback());
+
+		for (int key = 0; key < 100; key++) {
+			setCurrentKey(operator, key);
+			timerService.registerEventTimeTimer("event", key);
+			timerService.registerProcessingTimeTimer("processing", key);
+		}
+
+		DataOutputSerializer out = new DataOutputSerializer(1024);
+		timerService.snapshotTimers(out);
+		byte[] snapshot = out.getCopyOfBuffer();
+
+		KeyGroupRange first = new KeyGroupRange(0, NUM_KEY_GROUPS / 2 - 1);
+		KeyGroupRange second = new KeyGroupRange(NUM_KEY_GROUPS / 2, NUM_KEY_GROUPS - 1);
+
+		RecordingCallback firstCallback = new RecordingCallback();
+		RecordingCallback secondCallback = new RecordingCallback();
+		AbstractStreamOperator<?> firstOperator = mockOperator();
+		AbstractStreamOperator<?> secondOperator = mockOperator();
+		InternalTimerServiceImpl<Integer, String> firstTimerService = createTimerService(firstOperator, first, firstCallback);
+		InternalTimerServiceImpl<Integer, String> secondTimerService = createTimerService(secondOperator, second, secondCallback);
+
+		firstTimerService.restoreTimers(new DataInputDeserializer(snapshot, 0, snapshot.length));
+		secondTimerService.restoreTimers(new DataInputDeserializer(snapshot, 0, snapshot.length));
+
+		assertEquals(100, firstTimerService.numEventTimeTimers() + secondTimerService.numEventTimeTimers());
+		assertEquals(100, firstTimerService.numProcessingTimeTimers() + secondTimerService.numProcessingTimeTimers());
+
+		firstTimerService.advanceWatermark(Long.MAX_VALUE);
+		secondTimerService.advanceWatermark(Long.MAX_VALUE);
+
+		for (InternalTimer<Integer, String> timer : firstCallback.eventTimeTimers) {
+			assertTrue(first.contains(KeyGroupRangeAssignment.assignToKeyGroup(timer.getKey(), NUM_KEY_GROUPS)));
+			assertEquals("event", timer.getNamespace());
+			assertEquals((long) timer.getKey(), timer.getTimestamp());
+		}
+		for (InternalTimer<Integer, String> timer : secondCallback.eventTimeTimers) {
+			assertTrue(second.contains(KeyGroupRangeAssignment.assignToKeyGroup(timer.getKey(), NUM_KEY_GROUPS)));
+		}
+
+		// only the earliest restored processing-time timer is scheduled
+		verify(firstOperator, times(1)).registerTimer(anyLong(), any(Triggerable.class));
+		verify(secondOperator, times(1)).registerTimer(anyLong(), any(Triggerable.class));
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static InternalTimerServiceImpl<Integer, String> createTimerService(
+			AbstractStreamOperator<?> operator,
+			KeyGroupRange keyGroupRange,
+			InternalTimerCallback<Integer, String> callback) {
+
+		return new InternalTimerServiceImpl<>(operator, IntSerializer.INSTANCE, StringSerializer.INSTANCE,
+			keyGroupRange, callback,
+			new HeapInternalTimerQueue<Integer, String>(NUM_KEY_GROUPS, keyGroupRange),
+			new HeapInternalTimerQueue<Integer, String>(NUM_KEY_GROUPS, keyGroupRange));
+	}
+
+	private static AbstractStreamOperator<?> mockOperator() {
+		AbstractStreamOperator<?> operator = mock(AbstractStreamOperator.class);
+		AbstractStateBackend backend = mock(AbstractStateBackend.class);
+		when(operator.getStateBackend()).thenReturn(backend);
+		return operator;
+	}
+
+	private static void setCurrentKey(AbstractStreamOperator<?> operator, int key) {
+		AbstractStateBackend backend = operator.getStateBackend();
+		when(backend.getCurrentKey()).thenReturn(key);
+	}
+
+	private static final class RecordingCallback implements InternalTimerCallback<Integer, String> {
+
+		final List<InternalTimer<Integer, String>> eventTimeTimers = new ArrayList<>();
+
+		final List<InternalTimer<Integer, String>> processingTimeTimers = new ArrayList<>();
+
+		@Override
+		public void onEventTime(InternalTimer<Integer, String> timer) {
+			eventTimeTimers.add(timer);
+		}
+
+		@Override
+		public void onProcessingTime(InternalTimer<Integer, String> timer) {
+			processingTimeTimers.add(timer);
+		}
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators.async;
+
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.streaming.api.datastream.AsyncDataStream;
+import org.apache.flink.streaming.api.functions.async.AsyncCollector;
+import org.apache.flink.streaming.api.functions.async.AsyncFunction;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.runtime.tasks.StreamTaskState;
+import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.TestHarnessUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link AsyncWaitOperator}.
+ */
+public class AsyncWaitOperatorTest {
+
+	@Test
+	public void testOrderedWait() throws Exception {
+		AsyncWaitOperator<Integer, Integer> operator = new AsyncWaitOperator<>(
+				new DelayingAsyncFunction(), 0L, 2, AsyncDataStream.OutputMode.ORDERED);
+
+		OneInputStreamOperatorTestHarness<Integer, Integer> testHarness = createTestHarness(operator);
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+
+		testHarness.open();
+
+		synchronized (testHarness.getCheckpointLock()) {
+			for (int i = 1; i <= 10; i++) {
+				testHarness.processElement(new StreamRecord<>(i, i));
+				expectedOutput.add(new StreamRecord<>(2 * i, i));
+
+				if (i % 3 == 0) {
+					testHarness.processWatermark(new Watermark(i));
+					expectedOutput.add(new Watermark(i));
+				}
+			}
+
+			testHarness.close();
+		}
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+	}
+
+	@Test
+	public void testUnorderedWait() throws Exception {
+		AsyncWaitOperator<Integer, Integer> operator = new AsyncWaitOperator<>(
+				new DelayingAsyncFunction(), 0L, 4, AsyncDataStream.OutputMode.UNORDERED);
+
+		OneInputStreamOperatorTestHarness<Integer, Integer> testHarness = createTestHarness(operator);
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+
+		testHarness.open();
+
+		synchronized (testHarness.getCheckpointLock()) {
+			for (int i = 1; i <= 10; i++) {
+				testHarness.processElement(new StreamRecord<>(i, i));
+				expectedOutput.add(new StreamRecord<>(2 * i, i));
+
+				if (i % 3 == 0) {
+					testHarness.processWatermark(new Watermark(i));
+					expectedOutput.add(new Watermark(i));
+				}
+			}
+
+			testHarness.close();
+		}
+
+		// the records must not overtake the watermarks, in either direction
+		long currentWatermark = Long.MIN_VALUE;
+		for (Object element : testHarness.getOutput()) {
+			if (element instanceof Watermark) {
+				currentWatermark = ((Watermark) element).getTimestamp();
+			}
+			else {
+				long timestamp = ((StreamRecord<?>) element).getTimestamp();
+				assertTrue("Record " + element + " was emitted after watermark " + currentWatermark,
+						timestamp > currentWatermark);
+			}
+		}
+
+		TestHarnessUtil.assertOutputEqualsSorted("Output was not correct.",
+				expectedOutput, testHarness.getOutput(), new StreamRecordComparator());
+	}
+
+	@Test
+	public void testStateSnapshotAndRestore() throws Exception {
+		ManualAsyncFunction function = new ManualAsyncFunction();
+
+		AsyncWaitOperator<Integer, Integer> operator = new AsyncWaitOperator<>(
+				function, 0L, 4, AsyncDataStream.OutputMode.ORDERED);
+
+		OneInputStreamOperatorTestHarness<Integer, Integer> testHarness = createTestHarness(operator);
+
+		testHarness.open();
+
+		StreamTaskState snapshot;
+		synchronized (testHarness.getCheckpointLock()) {
+			testHarness.processElement(new StreamRecord<>(1, 1));
+			testHarness.processElement(new StreamRecord<>(2, 2));
+			testHarness.processWatermark(new Watermark(2));
+			testHarness.processElement(new StreamRecord<>(3, 3));
+
+			// only the first record completes before the checkpoint
+			function.complete(0);
+		}
+
+		waitForOutputSize(testHarness, 1);
+
+		synchronized (testHarness.getCheckpointLock()) {
+			snapshot = testHarness.snapshot(1L, 1L);
+		}
+
+		// the task fails without completing the other records
+		operator.dispose();
+
+		AsyncWaitOperator<Integer, Integer> restoredOperator = new AsyncWaitOperator<>(
+				new DelayingAsyncFunction(), 0L, 4, AsyncDataStream.OutputMode.ORDERED);
+
+		OneInputStreamOperatorTestHarness<Integer, Integer> restoredTestHarness = createTestHarness(restoredOperator);
+
+		restoredTestHarness.setup();
+		restoredTestHarness.restore(snapshot, 2L);
+
+		synchronized (restoredTestHarness.getCheckpointLock()) {
+			restoredTestHarness.open();
+			restoredTestHarness.processElement(new StreamRecord<>(4, 4));
+			restoredTestHarness.close();
+		}
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new StreamRecord<>(4, 2));
+		expectedOutput.add(new Watermark(2));
+		expectedOutput.add(new StreamRecord<>(6, 3));
+		expectedOutput.add(new StreamRecord<>(8, 4));
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, restoredTestHarness.getOutput());
+		assertEquals(1, testHarness.getOutput().size());
+	}
+
+	// ------------------------------------------------------------------------
+	//  utilities
+	// ------------------------------------------------------------------------
+
+	private static OneInputStreamOperatorTestHarness<Integer, Integer> createTestHarness(
+			AsyncWaitOperator<Integer, Integer> operator) {
+
+		OneInputStreamOperatorTestHarness<Integer, Integer> testHarness =
+				new OneInputStreamOperatorTestHarness<>(operator);
+		testHarness.getStreamConfig().setTypeSerializerIn1(IntSerializer.INSTANCE);
+		return testHarness;
+	}
+
+	private static void waitForOutputSize(OneInputStreamOperatorTestHarness<?, ?> testHarness, int size)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000L;
+		while (testHarness.getOutput().size() < size) {
+			assertTrue("Timed out waiting for the output.", System.currentTimeMillis() < deadline);
+			Thread.sleep(10L);
+		}
+	}
+
+	/**
+	 * Doubles the input in another thread. Larger inputs complete faster, so that the results
+	 * complete out of order.
+	 */
+	private static class DelayingAsyncFunction implements AsyncFunction<Integer, Integer> {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(8);
+
+		@Override
+		public void asyncInvoke(final Integer input, final AsyncCollector<Integer> collector) throws Exception {
+			EXECUTOR.submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						TimeUnit.MILLISECONDS.sleep(Math.max(0, 50 - 5 * input));
+					}
+					catch (InterruptedException e) {
+						collector.collect(e);
+						return;
+					}
+					collector.collect(Collections.singletonList(2 * input));
+				}
+			});
+		}
+	}
+
+	/**
+	 * Keeps the collectors, so that the test completes the operations.
+	 */
+	private static class ManualAsyncFunction implements AsyncFunction<Integer, Integer> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<Integer> inputs = new ArrayList<>();
+
+		private final List<AsyncCollector<Integer>> collectors = new ArrayList<>();
+
+		@Override
+		public void asyncInvoke(Integer input, AsyncCollector<Integer> collector) throws Exception {
+			inputs.add(input);
+			collectors.add(collector);
+		}
+
+		void complete(int index) {
+			collectors.get(index).collect(Collections.singletonList(2 * inputs.get(index)));
+		}
+	}
+
+	private static class StreamRecordComparator implements Comparator<Object> {
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public int compare(Object o1, Object o2) {
+			StreamRecord<Integer> sr0 = (StreamRecord<Integer>) o1;
+			StreamRecord<Integer> sr1 = (StreamRecord<Integer>) o2;
+			return Long.compare(sr0.getTimestamp(), sr1.getTimestamp());
+		}
+	}
+}
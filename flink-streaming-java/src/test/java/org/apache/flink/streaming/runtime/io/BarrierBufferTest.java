@@ -295,6 +295,69 @@ public class BarrierBufferTest {
 		}
 	}
 
+	/**
+	 * Validates that the buffer reports the bytes it buffered and the channel that
+	 * delivered its barrier last for the latest completed alignment.
+	 */
+	@Test
+	public void testAlignmentMetrics() {
+		try {
+			BufferOrEvent[] sequence = {
+					// checkpoint with data blocked on channel 0, channel 1 is the slowest
+					createBuffer(0), createBarrier(1, 0),
+					createBuffer(0), createBuffer(0), createBuffer(2),
+					createBarrier(1, 2), createBuffer(1), createBarrier(1, 1),
+
+					// checkpoint without blocked data, channel 2 is the slowest
+					createBarrier(2, 0), createBarrier(2, 1), createBarrier(2, 2),
+
+					createEndOfPartition(0), createEndOfPartition(1), createEndOfPartition(2)
+			};
+
+			MockInputGate gate = new MockInputGate(PAGE_SIZE, 3, Arrays.asList(sequence));
+			BarrierBuffer buffer = new BarrierBuffer(gate, IO_MANAGER);
+
+			ValidatingCheckpointHandler handler = new ValidatingCheckpointHandler();
+			buffer.registerCheckpointEventHandler(handler);
+			handler.setNextExpectedCheckpointId(1L);
+
+			assertEquals(0L, buffer.getBytesBufferedInAlignment());
+			assertEquals(-1, buffer.getSlowestChannel());
+
+			check(sequence[0], buffer.getNextNonBlocked());
+			check(sequence[4], buffer.getNextNonBlocked());
+			check(sequence[6], buffer.getNextNonBlocked());
+
+			// checkpoint 1 done, returning buffered data
+			check(sequence[2], buffer.getNextNonBlocked());
+			assertEquals(2L, handler.getNextExpectedCheckpointId());
+			assertEquals(1, buffer.getSlowestChannel());
+			assertTrue(buffer.getBytesBufferedInAlignment() >=
+					sequence[2].getBuffer().getSize() + sequence[3].getBuffer().getSize());
+			assertTrue(buffer.getAlignmentDurationNanos() >= 0L);
+
+			check(sequence[3], buffer.getNextNonBlocked());
+
+			// checkpoint 2 barriers come together
+			check(sequence[11], buffer.getNextNonBlocked());
+			assertEquals(3L, handler.getNextExpectedCheckpointId());
+			assertEquals(2, buffer.getSlowestChannel());
+			assertEquals(0L, buffer.getBytesBufferedInAlignment());
+
+			check(sequence[12], buffer.getNextNonBlocked());
+			check(sequence[13], buffer.getNextNonBlocked());
+			assertNull(buffer.getNextNonBlocked());
+
+			buffer.cleanup();
+
+			checkNoTempFilesRemain();
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
 	@Test
 	public void testMultiChannelTrailingBlockedData() {
 		try {
@@ -37,6 +37,8 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -50,7 +52,7 @@ import static org.mockito.Mockito.*;
 public class StreamRecordWriterTest {
 
 	/**
-	 * Verifies that exceptions during flush from the output flush thread are
+	 * Verifies that exceptions during scheduled flushes are
 	 * recognized in the writer.
 	 */
 	@Test
@@ -89,6 +91,113 @@ public class StreamRecordWriterTest {
 		}
 	}
 	
+	/**
+	 * Verifies that a flush is scheduled when records are written, and that writers without
+	 * pending data are not flushed.
+	 */
+	@Test
+	public void testFlushOnlyWithPendingData() throws Exception {
+		CountingWriter<LongValue> testWriter = new CountingWriter<>(getMockWriter(5),
+				new RoundRobinChannelSelector<LongValue>(), 5);
+
+		try {
+			// no data, no flush
+			Thread.sleep(50);
+			assertEquals(0, testWriter.numFlushes);
+
+			testWriter.emit(new LongValue(1L));
+
+			long deadline = System.currentTimeMillis() + 20000; // in max 20 seconds (conservative)
+			while (testWriter.numFlushes == 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(1);
+			}
+			assertEquals(1, testWriter.numFlushes);
+
+			// the flushed writer has no pending data
+			Thread.sleep(50);
+			assertEquals(1, testWriter.numFlushes);
+		}
+		finally {
+			testWriter.close();
+		}
+	}
+
+	/**
+	 * Verifies that a writer, which waits for a buffer, does not hold up the scheduled flushes
+	 * of the other writers.
+	 */
+	@Test
+	public void testBackPressuredWriterDoesNotBlockOtherFlushes() throws Exception {
+		// the first buffer holds one record, further requests wait until the test ends
+		final CountDownLatch bufferRequested = new CountDownLatch(1);
+		final CountDownLatch releaseBuffers = new CountDownLatch(1);
+
+		BufferProvider blockingProvider = mock(BufferProvider.class);
+		when(blockingProvider.requestBufferBlocking()).thenAnswer(new Answer<Buffer>() {
+			private int numRequests;
+
+			@Override
+			public Buffer answer(InvocationOnMock invocation) throws InterruptedException {
+				if (numRequests++ > 0) {
+					bufferRequested.countDown();
+					releaseBuffers.await();
+				}
+				return new Buffer(
+						MemorySegmentFactory.allocateUnpooledSegment(16),
+						FreeingBufferRecycler.INSTANCE);
+			}
+		});
+
+		ResultPartitionWriter blockingPartitionWriter = mock(ResultPartitionWriter.class);
+		when(blockingPartitionWriter.getBufferProvider()).thenReturn(blockingProvider);
+		when(blockingPartitionWriter.getNumberOfOutputChannels()).thenReturn(1);
+
+		final StreamRecordWriter<LongValue> blockingWriter = new StreamRecordWriter<>(
+				blockingPartitionWriter, new RoundRobinChannelSelector<LongValue>(), 20);
+		CountingWriter<LongValue> testWriter = new CountingWriter<>(getMockWriter(1),
+				new RoundRobinChannelSelector<LongValue>(), 5);
+
+		final AtomicReference<Throwable> error = new AtomicReference<>();
+		Thread taskThread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					// the first record schedules a flush, the second one waits for a buffer
+					blockingWriter.emit(new LongValue(1L));
+					blockingWriter.emit(new LongValue(2L));
+				}
+				catch (Throwable t) {
+					error.set(t);
+				}
+			}
+		};
+
+		try {
+			taskThread.start();
+			bufferRequested.await();
+
+			// the flush of the blocked writer is due in the meantime
+			Thread.sleep(50);
+
+			testWriter.emit(new LongValue(1L));
+
+			long deadline = System.currentTimeMillis() + 20000; // in max 20 seconds (conservative)
+			while (testWriter.numFlushes == 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(1);
+			}
+			assertEquals(1, testWriter.numFlushes);
+		}
+		finally {
+			releaseBuffers.countDown();
+			taskThread.join();
+
+			blockingWriter.close();
+			testWriter.close();
+		}
+
+		assertNull(error.get());
+	}
+
 	private static ResultPartitionWriter getMockWriter(int numPartitions) throws Exception {
 		BufferProvider mockProvider = mock(BufferProvider.class);
 		when(mockProvider.requestBufferBlocking()).thenAnswer(new Answer<Buffer>() {
@@ -128,4 +237,19 @@ public class StreamRecordWriterTest {
 			super.flush();
 		}
 	}
+
+	private static class CountingWriter<T extends IOReadableWritable> extends StreamRecordWriter<T> {
+
+		private volatile int numFlushes;
+
+		private CountingWriter(ResultPartitionWriter writer, ChannelSelector<T> channelSelector, long timeout) {
+			super(writer, channelSelector, timeout);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			numFlushes++;
+			super.flush();
+		}
+	}
 }
@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
+import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
+import org.apache.flink.runtime.io.network.api.serialization.SpillingAdaptiveSpanningRecordDeserializer;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.FreeingBufferRecycler;
+import org.apache.flink.runtime.io.network.partition.consumer.BufferOrEvent;
+import org.apache.flink.runtime.util.event.EventListener;
+import org.apache.flink.types.IntValue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the behavior of the {@link UnalignedBarrierHandler}.
+ */
+public class UnalignedBarrierHandlerTest {
+
+	private static final int PAGE_SIZE = 512;
+
+	/**
+	 * Validates that the checkpoint of a single channel is triggered and completed on the
+	 * barrier, without any recorded data.
+	 */
+	@Test
+	public void testSingleChannelWithBarriers() throws Exception {
+		BufferOrEvent[] sequence = {
+				createBuffer(0, 1, 2), createBarrier(1, 0),
+				createBuffer(0, 3), createBarrier(2, 0),
+				createEndOfPartition(0)
+		};
+
+		RecordingListener listener = new RecordingListener();
+		UnalignedBarrierHandler handler = createHandler(1, sequence, listener);
+
+		assertEquals(sequence[0], handler.getNextNonBlocked());
+		assertEquals(sequence[2], handler.getNextNonBlocked());
+		assertEquals(Arrays.asList(1L), listener.triggeredCheckpoints);
+		assertEquals(Arrays.asList(1L), listener.completedCheckpoints);
+		assertArrayEquals(new byte[1][], listener.channelData.get(0));
+
+		assertEquals(sequence[4], handler.getNextNonBlocked());
+		assertEquals(Arrays.asList(1L, 2L), listener.completedCheckpoints);
+
+		assertNull(handler.getNextNonBlocked());
+		assertTrue(handler.isEmpty());
+		handler.cleanup();
+	}
+
+	/**
+	 * Validates that no channel is blocked and that the data of the channels, which have not
+	 * delivered the barrier yet, is recorded until their barrier arrives.
+	 */
+	@Test
+	public void testMultiChannelRecordsDataUntilBarriers() throws Exception {
+		BufferOrEvent[] sequence = {
+				createBuffer(0, 1), createBarrier(1, 0),
+				createBuffer(1, 2, 3), createBuffer(0, 4), createBuffer(2, 5),
+				createBarrier(1, 1),
+				createBuffer(1, 6), createBuffer(2, 7, 8),
+				createBarrier(1, 2),
+				createBuffer(2, 9), createEndOfPartition(0), createEndOfPartition(1), createEndOfPartition(2)
+		};
+
+		RecordingListener listener = new RecordingListener();
+		UnalignedBarrierHandler handler = createHandler(3, sequence, listener);
+
+		assertEquals(sequence[0], handler.getNextNonBlocked());
+		assertEquals(sequence[2], handler.getNextNonBlocked());
+		assertEquals(Arrays.asList(1L), listener.triggeredCheckpoints);
+		assertEquals(sequence[3], handler.getNextNonBlocked());
+		assertEquals(sequence[4], handler.getNextNonBlocked());
+		assertEquals(sequence[6], handler.getNextNonBlocked());
+		assertEquals(sequence[7], handler.getNextNonBlocked());
+		assertTrue(listener.completedCheckpoints.isEmpty());
+
+		assertEquals(sequence[9], handler.getNextNonBlocked());
+		assertEquals(Arrays.asList(1L), listener.completedCheckpoints);
+		assertArrayEquals(
+				new byte[][] { null, new byte[] { 2, 3 }, new byte[] { 5, 7, 8 } },
+				listener.channelData.get(0));
+		assertEquals(5L, handler.getBytesBufferedInAlignment());
+		assertEquals(2, handler.getSlowestChannel());
+		assertTrue(handler.getAlignmentDurationNanos() >= 0L);
+
+		for (int i = 10; i < sequence.length; i++) {
+			assertEquals(sequence[i], handler.getNextNonBlocked());
+		}
+		assertNull(handler.getNextNonBlocked());
+		handler.cleanup();
+	}
+
+	/**
+	 * Validates that a channel, which is closed before its barrier arrives, no longer holds
+	 * back the completion of the checkpoint, and that closed channels are not waited for.
+	 */
+	@Test
+	public void testClosedChannels() throws Exception {
+		BufferOrEvent[] sequence = {
+				createEndOfPartition(2),
+				createBarrier(1, 0), createBuffer(1, 1), createEndOfPartition(1),
+				createBarrier(2, 0), createEndOfPartition(0)
+		};
+
+		RecordingListener listener = new RecordingListener();
+		UnalignedBarrierHandler handler = createHandler(3, sequence, listener);
+
+		assertEquals(sequence[0], handler.getNextNonBlocked());
+		assertEquals(sequence[2], handler.getNextNonBlocked());
+		assertTrue(listener.completedCheckpoints.isEmpty());
+
+		assertEquals(sequence[3], handler.getNextNonBlocked());
+		assertEquals(Arrays.asList(1L), listener.completedCheckpoints);
+		assertArrayEquals(new byte[][] { null, new byte[] { 1 }, null }, listener.channelData.get(0));
+
+		assertEquals(sequence[5], handler.getNextNonBlocked());
+		assertEquals(Arrays.asList(1L, 2L), listener.completedCheckpoints);
+		assertArrayEquals(new byte[3][], listener.channelData.get(1));
+
+		assertNull(handler.getNextNonBlocked());
+		handler.cleanup();
+	}
+
+	/**
+	 * Validates that the barrier of a later checkpoint aborts the pending checkpoint and that
+	 * trailing barriers of the aborted checkpoint are ignored.
+	 */
+	@Test
+	public void testSkippingCheckpoints() throws Exception {
+		BufferOrEvent[] sequence = {
+				createBarrier(1, 0), createBuffer(1, 1),
+				createBarrier(2, 0), createBuffer(1, 2),
+				createBarrier(1, 1), createBuffer(1, 3), createBarrier(2, 1),
+				createEndOfPartition(0), createEndOfPartition(1)
+		};
+
+		RecordingListener listener = new RecordingListener();
+		UnalignedBarrierHandler handler = createHandler(2, sequence, listener);
+
+		assertEquals(sequence[1], handler.getNextNonBlocked());
+		assertEquals(sequence[3], handler.getNextNonBlocked());
+		assertEquals(Arrays.asList(1L, 2L), listener.triggeredCheckpoints);
+		assertEquals(Arrays.asList(1L), listener.abortedCheckpoints);
+
+		assertEquals(sequence[5], handler.getNextNonBlocked());
+		assertEquals(sequence[7], handler.getNextNonBlocked());
+		assertEquals(Arrays.asList(2L), listener.completedCheckpoints);
+		assertArrayEquals(new byte[][] { null, new byte[] { 2, 3 } }, listener.channelData.get(0));
+		assertEquals(2L, handler.getCurrentCheckpointId());
+
+		assertEquals(sequence[8], handler.getNextNonBlocked());
+		assertNull(handler.getNextNonBlocked());
+		handler.cleanup();
+	}
+
+	/**
+	 * Validates that the partial records in the deserializers are part of the recorded data.
+	 */
+	@Test
+	public void testPartialRecordsAreRecorded() throws Exception {
+		BufferOrEvent[] sequence = {
+				createBarrier(1, 0), createBuffer(1, 3), createBarrier(1, 1),
+				createEndOfPartition(0), createEndOfPartition(1)
+		};
+
+		@SuppressWarnings("unchecked")
+		SpillingAdaptiveSpanningRecordDeserializer<IntValue>[] deserializers = new SpillingAdaptiveSpanningRecordDeserializer[] {
+				new SpillingAdaptiveSpanningRecordDeserializer<IntValue>(new String[0]),
+				new SpillingAdaptiveSpanningRecordDeserializer<IntValue>(new String[0])
+		};
+
+		// the length of a four byte record and its first two bytes
+		deserializers[1].setNextBuffer(createBuffer(1, 0, 0, 0, 4, 1, 2).getBuffer());
+		assertEquals(
+				SpillingAdaptiveSpanningRecordDeserializer.DeserializationResult.PARTIAL_RECORD,
+				deserializers[1].getNextRecord(new IntValue()));
+
+		RecordingListener listener = new RecordingListener();
+		UnalignedBarrierHandler handler = new UnalignedBarrierHandler(
+				new MockInputGate(PAGE_SIZE, 2, Arrays.asList(sequence)), deserializers, listener);
+		handler.registerCheckpointEventHandler(listener);
+
+		assertEquals(sequence[1], handler.getNextNonBlocked());
+		assertEquals(sequence[3], handler.getNextNonBlocked());
+		assertEquals(Arrays.asList(1L), listener.completedCheckpoints);
+		assertArrayEquals(new byte[][] { null, new byte[] { 0, 0, 0, 4, 1, 2, 3 } }, listener.channelData.get(0));
+
+		handler.cleanup();
+	}
+
+	// ------------------------------------------------------------------------
+	//  Utils
+	// ------------------------------------------------------------------------
+
+	private static UnalignedBarrierHandler createHandler(
+			int numChannels,
+			BufferOrEvent[] sequence,
+			RecordingListener listener) {
+
+		SpillingAdaptiveSpanningRecordDeserializer<?>[] deserializers = new SpillingAdaptiveSpanningRecordDeserializer<?>[numChannels];
+		for (int i = 0; i < numChannels; i++) {
+			deserializers[i] = new SpillingAdaptiveSpanningRecordDeserializer<IntValue>(new String[0]);
+		}
+
+		MockInputGate gate = new MockInputGate(PAGE_SIZE, numChannels, Arrays.asList(sequence));
+		UnalignedBarrierHandler handler = new UnalignedBarrierHandler(gate, deserializers, listener);
+		handler.registerCheckpointEventHandler(listener);
+		return handler;
+	}
+
+	private static BufferOrEvent createBarrier(long id, int channel) {
+		return new BufferOrEvent(new CheckpointBarrier(id, System.currentTimeMillis()), channel);
+	}
+
+	private static BufferOrEvent createBuffer(int channel, int... data) {
+		MemorySegment segment = MemorySegmentFactory.allocateUnpooledSegment(PAGE_SIZE);
+		for (int i = 0; i < data.length; i++) {
+			segment.put(i, (byte) data[i]);
+		}
+
+		Buffer buf = new Buffer(segment, FreeingBufferRecycler.INSTANCE);
+		buf.setSize(data.length);
+		return new BufferOrEvent(buf, channel);
+	}
+
+	private static BufferOrEvent createEndOfPartition(int channel) {
+		return new BufferOrEvent(EndOfPartitionEvent.INSTANCE, channel);
+	}
+
+	private static class RecordingListener
+			implements EventListener<CheckpointBarrier>, UnalignedBarrierHandler.InputChannelStateListener {
+
+		private final List<Long> triggeredCheckpoints = new ArrayList<>();
+		private final List<Long> completedCheckpoints = new ArrayList<>();
+		private final List<Long> abortedCheckpoints = new ArrayList<>();
+		private final List<byte[][]> channelData = new ArrayList<>();
+
+		@Override
+		public void onEvent(CheckpointBarrier barrier) {
+			triggeredCheckpoints.add(barrier.getId());
+		}
+
+		@Override
+		public void onInputChannelState(long checkpointId, byte[][] channelData) {
+			completedCheckpoints.add(checkpointId);
+			this.channelData.add(channelData);
+		}
+
+		@Override
+		public void onCheckpointAborted(long checkpointId) {
+			abortedCheckpoints.add(checkpointId);
+		}
+	}
+}
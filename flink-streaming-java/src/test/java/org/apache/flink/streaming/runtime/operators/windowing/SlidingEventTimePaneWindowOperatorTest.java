@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.ReducingStateDescriptor;
+import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.api.java.typeutils.TypeInfoParser;
+import org.apache.flink.streaming.api.functions.windowing.PassThroughWindowFunction;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.api.windowing.assigners.SlidingEventTimeWindows;
+import org.apache.flink.streaming.api.windowing.time.Time;
+import org.apache.flink.streaming.api.windowing.triggers.EventTimeTrigger;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalSingleValueWindowFunction;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the {@link SlidingEventTimePaneWindowOperator}, which must produce the same results
+ * as a {@link WindowOperator} with an {@link EventTimeTrigger}.
+ */
+public class SlidingEventTimePaneWindowOperatorTest {
+
+	private static final TypeInformation<Tuple2<String, Integer>> INPUT_TYPE = TypeInfoParser.parse("Tuple2<String, Integer>");
+
+	@Test
+	public void testPaneSize() {
+		assertEquals(1000, createReducingPaneOperator(3000, 1000, 0).getPaneSize());
+		assertEquals(100, createReducingPaneOperator(1000, 300, 0).getPaneSize());
+		assertEquals(500, createReducingPaneOperator(1000, 1500, 0).getPaneSize());
+	}
+
+	@Test
+	public void testLateElementFiresPurgedWindows() throws Exception {
+		OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
+			createTestHarness(createReducingPaneOperator(3000, 1000, 1000));
+
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key", 1), 500));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key", 2), 1500));
+		testHarness.processWatermark(new Watermark(2999));
+
+		// window [0, 3000) fires
+		List<String> expected = new ArrayList<>();
+		expected.add("(key,1)@999");
+		expected.add("(key,3)@1999");
+		expected.add("(key,3)@2999");
+		expected.add("W@2999");
+		assertEquals(expected, toStrings(testHarness));
+
+		// the late element is within the allowed lateness of [0, 3000), which was purged when it fired
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key", 4), 2500));
+		expected.add("(key,4)@2999");
+		assertEquals(expected, toStrings(testHarness));
+
+		// window [0, 3000) is cleaned up, the element only belongs to [1000, 4000) and [2000, 5000)
+		testHarness.processWatermark(new Watermark(3999));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key", 8), 2000));
+		expected.add("(key,6)@3999");
+		expected.add("W@3999");
+		expected.add("(key,8)@3999");
+		assertEquals(expected, toStrings(testHarness));
+
+		// elements for windows that are all cleaned up are dropped
+		testHarness.processWatermark(new Watermark(11000));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key", 16), 7000));
+		expected.add("(key,12)@4999");
+		expected.add("W@11000");
+		assertEquals(expected, toStrings(testHarness));
+
+		testHarness.close();
+	}
+
+	@Test
+	public void testReduceMatchesWindowOperator() throws Exception {
+		testMatchesWindowOperator(3000, 1000, 0);
+		testMatchesWindowOperator(1000, 300, 500);
+		testMatchesWindowOperator(1000, 1500, 200);
+	}
+
+	private void testMatchesWindowOperator(long size, long slide, long allowedLateness) throws Exception {
+		final long seed = new Random().nextLong();
+		final Random rnd = new Random(seed);
+
+		OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> paneHarness =
+			createTestHarness(createReducingPaneOperator(size, slide, allowedLateness));
+		OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> windowHarness =
+			createTestHarness(createWindowOperator(size, slide, allowedLateness));
+
+		long watermark = 0;
+		for (int i = 0; i < 2000; i++) {
+			if (rnd.nextInt(20) == 0) {
+				watermark += rnd.nextInt(1000);
+				paneHarness.processWatermark(new Watermark(watermark));
+				windowHarness.processWatermark(new Watermark(watermark));
+
+				assertEquals("Seed: " + seed, toSortedStrings(windowHarness), toSortedStrings(paneHarness));
+			} else {
+				StreamRecord<Tuple2<String, Integer>> element = new StreamRecord<>(
+					new Tuple2<>("key" + rnd.nextInt(3), rnd.nextInt(100)),
+					Math.max(0, watermark + rnd.nextInt(4000) - 2000));
+				paneHarness.processElement(element);
+				windowHarness.processElement(element);
+			}
+		}
+
+		paneHarness.processWatermark(new Watermark(Long.MAX_VALUE));
+		windowHarness.processWatermark(new Watermark(Long.MAX_VALUE));
+		assertEquals("Seed: " + seed, toSortedStrings(windowHarness), toSortedStrings(paneHarness));
+
+		paneHarness.close();
+		windowHarness.close();
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static SlidingEventTimePaneWindowOperator<String, Tuple2<String, Integer>, Tuple2<String, Integer>> createReducingPaneOperator(
+			long size, long slide, long allowedLateness) {
+
+		return new SlidingEventTimePaneWindowOperator<>(
+			SlidingEventTimeWindows.of(Time.milliseconds(size), Time.milliseconds(slide)),
+			new TimeWindow.Serializer(),
+			new TupleKeySelector(),
+			BasicTypeInfo.STRING_TYPE_INFO.createSerializer(new ExecutionConfig()),
+			createReducingStateDescriptor(),
+			new InternalSingleValueWindowFunction<>(new PassThroughWindowFunction<String, TimeWindow, Tuple2<String, Integer>>()),
+			allowedLateness);
+	}
+
+	private static WindowOperator<String, Tuple2<String, Integer>, Tuple2<String, Integer>, Tuple2<String, Integer>, TimeWindow> createWindowOperator(
+			long size, long slide, long allowedLateness) {
+
+		return new WindowOperator<>(
+			SlidingEventTimeWindows.of(Time.milliseconds(size), Time.milliseconds(slide)),
+			new TimeWindow.Serializer(),
+			new TupleKeySelector(),
+			BasicTypeInfo.STRING_TYPE_INFO.createSerializer(new ExecutionConfig()),
+			createReducingStateDescriptor(),
+			new InternalSingleValueWindowFunction<>(new PassThroughWindowFunction<String, TimeWindow, Tuple2<String, Integer>>()),
+			EventTimeTrigger.create(),
+			allowedLateness);
+	}
+
+	private static ReducingStateDescriptor<Tuple2<String, Integer>> createReducingStateDescriptor() {
+		return new ReducingStateDescriptor<>("window-contents",
+			new WindowOperatorTest.SumReducer(),
+			INPUT_TYPE.createSerializer(new ExecutionConfig()));
+	}
+
+	private static OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> createTestHarness(
+			WindowOperator<String, Tuple2<String, Integer>, ?, Tuple2<String, Integer>, TimeWindow> operator) throws Exception {
+
+		operator.setInputType(INPUT_TYPE, new ExecutionConfig());
+
+		OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
+			new OneInputStreamOperatorTestHarness<>(operator);
+
+		testHarness.configureForKeyedStream(new TupleKeySelector(), BasicTypeInfo.STRING_TYPE_INFO);
+
+		testHarness.setup();
+		testHarness.open();
+
+		return testHarness;
+	}
+
+	private static List<String> toStrings(OneInputStreamOperatorTestHarness<?, ?> testHarness) {
+		List<String> result = new ArrayList<>();
+		for (Object element : testHarness.getOutput()) {
+			if (element instanceof Watermark) {
+				result.add("W@" + ((Watermark) element).getTimestamp());
+			} else {
+				StreamRecord<?> record = (StreamRecord<?>) element;
+				result.add(record.getValue() + "@" + record.getTimestamp());
+			}
+		}
+		return result;
+	}
+
+	private static List<String> toSortedStrings(OneInputStreamOperatorTestHarness<?, ?> testHarness) {
+		List<String> result = toStrings(testHarness);
+		Collections.sort(result);
+		return result;
+	}
+
+	private static class TupleKeySelector implements KeySelector<Tuple2<String, Integer>, String> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public String getKey(Tuple2<String, Integer> value) throws Exception {
+			return value.f0;
+		}
+	}
+}
@@ -19,7 +19,9 @@ package org.apache.flink.streaming.runtime.operators.windowing;
 
 import com.google.common.collect.Iterables;
 import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.functions.AggregateFunction;
 import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
 import org.apache.flink.api.common.state.ListStateDescriptor;
 import org.apache.flink.api.common.state.ReducingStateDescriptor;
 import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
@@ -189,6 +191,44 @@ public class WindowOperatorTest {
 		testHarness.close();
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSlidingEventTimeWindowsPaneReduce() throws Exception {
+		closeCalled.set(0);
+
+		final int WINDOW_SIZE = 3;
+		final int WINDOW_SLIDE = 1;
+
+		TypeInformation<Tuple2<String, Integer>> inputType = TypeInfoParser.parse("Tuple2<String, Integer>");
+
+		ReducingStateDescriptor<Tuple2<String, Integer>> stateDesc = new ReducingStateDescriptor<>("pane-contents",
+				new SumReducer(),
+				inputType.createSerializer(new ExecutionConfig()));
+
+		SlidingEventTimePaneWindowOperator<String, Tuple2<String, Integer>, Tuple2<String, Integer>> operator = new SlidingEventTimePaneWindowOperator<>(
+				SlidingEventTimeWindows.of(Time.of(WINDOW_SIZE, TimeUnit.SECONDS), Time.of(WINDOW_SLIDE, TimeUnit.SECONDS)),
+				new TimeWindow.Serializer(),
+				new TupleKeySelector(),
+				BasicTypeInfo.STRING_TYPE_INFO.createSerializer(new ExecutionConfig()),
+				stateDesc,
+				new InternalSingleValueWindowFunction<>(new PassThroughWindowFunction<String, TimeWindow, Tuple2<String, Integer>>()),
+				0);
+
+		operator.setInputType(inputType, new ExecutionConfig());
+
+		OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
+				new OneInputStreamOperatorTestHarness<>(operator);
+
+		testHarness.configureForKeyedStream(new TupleKeySelector(), BasicTypeInfo.STRING_TYPE_INFO);
+
+		testHarness.setup();
+		testHarness.open();
+
+		testSlidingEventTimeWindows(testHarness);
+
+		testHarness.close();
+	}
+
 	@Test
 	@SuppressWarnings("unchecked")
 	public void testSlidingEventTimeWindowsApply() throws Exception {
@@ -518,6 +558,71 @@ public class WindowOperatorTest {
 		testHarness.close();
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAggregateSessionWindows() throws Exception {
+		closeCalled.set(0);
+
+		final int SESSION_SIZE = 3;
+
+		AggregatingStateDescriptor<Tuple2<String, Integer>, Integer, Integer> stateDesc = new AggregatingStateDescriptor<>(
+				"window-contents", new SumAggregator(), BasicTypeInfo.INT_TYPE_INFO.createSerializer(new ExecutionConfig()));
+
+		WindowOperator<String, Tuple2<String, Integer>, Integer, Tuple3<String, Long, Long>, TimeWindow> operator = new WindowOperator<>(
+				EventTimeSessionWindows.withGap(Time.seconds(SESSION_SIZE)),
+				new TimeWindow.Serializer(),
+				new TupleKeySelector(),
+				BasicTypeInfo.STRING_TYPE_INFO.createSerializer(new ExecutionConfig()),
+				stateDesc,
+				new InternalSingleValueWindowFunction<>(new AggregatedSessionWindowFunction()),
+				EventTimeTrigger.create(),
+				0);
+
+		operator.setInputType(TypeInfoParser.<Tuple2<String, Integer>>parse("Tuple2<String, Integer>"), new ExecutionConfig());
+
+		OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple3<String, Long, Long>> testHarness =
+				new OneInputStreamOperatorTestHarness<>(operator);
+
+		testHarness.configureForKeyedStream(new TupleKeySelector(), BasicTypeInfo.STRING_TYPE_INFO);
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+
+		testHarness.open();
+
+		// add elements out-of-order
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 1), 0));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 3), 2500));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 2), 1000));
+
+		// do a snapshot, close and restore again
+		StreamTaskState snapshot = testHarness.snapshot(0L, 0L);
+		testHarness.close();
+		testHarness.setup();
+		testHarness.restore(snapshot, 10L);
+		testHarness.open();
+
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key1", 1), 10));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key1", 2), 1000));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key1", 3), 2500));
+
+		// the last element connects the two sessions of key2, so their accumulators are merged
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 4), 5501));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 5), 6000));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 5), 6000));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 6), 6050));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 10), 4000));
+
+		testHarness.processWatermark(new Watermark(12000));
+
+		expectedOutput.add(new StreamRecord<>(new Tuple3<>("key1-6", 10L, 5500L), 5499));
+		expectedOutput.add(new StreamRecord<>(new Tuple3<>("key2-36", 0L, 9050L), 9049));
+		expectedOutput.add(new Watermark(12000));
+
+		TestHarnessUtil.assertOutputEqualsSorted("Output was not correct.", expectedOutput, testHarness.getOutput(), new Tuple3ResultSortComparator());
+
+		testHarness.close();
+	}
+
 	/**
 	 * This tests whether merging works correctly with the CountTrigger.
 	 * @throws Exception
@@ -881,28 +986,29 @@ public class WindowOperatorTest {
 				0);
 
 
+		TestTimeServiceProvider testTimeProvider = new TestTimeServiceProvider();
+
 		OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
-				new OneInputStreamOperatorTestHarness<>(operator);
+				new OneInputStreamOperatorTestHarness<>(operator, new ExecutionConfig(), testTimeProvider);
 
 		testHarness.configureForKeyedStream(new TupleKeySelector(), BasicTypeInfo.STRING_TYPE_INFO);
 
 		operator.setInputType(inputType, new ExecutionConfig());
 		testHarness.open();
 
-		WindowOperator.Timer<String, TimeWindow> timer1 = new WindowOperator.Timer<>(1L, "key1", new TimeWindow(1L, 2L));
-		WindowOperator.Timer<String, TimeWindow> timer2 = new WindowOperator.Timer<>(3L, "key1", new TimeWindow(1L, 2L));
-		WindowOperator.Timer<String, TimeWindow> timer3 = new WindowOperator.Timer<>(2L, "key1", new TimeWindow(1L, 2L));
-		operator.processingTimeTimers.add(timer1);
-		operator.processingTimeTimers.add(timer2);
-		operator.processingTimeTimers.add(timer3);
-		operator.processingTimeTimersQueue.add(timer1);
-		operator.processingTimeTimersQueue.add(timer2);
-		operator.processingTimeTimersQueue.add(timer3);
+		operator.setKeyContext("key1");
+		operator.internalTimerService.registerProcessingTimeTimer(new TimeWindow(1L, 2L), 1L);
+		operator.internalTimerService.registerProcessingTimeTimer(new TimeWindow(1L, 2L), 3L);
+		operator.internalTimerService.registerProcessingTimeTimer(new TimeWindow(1L, 2L), 2L);
+		// registering the same timer again has no effect
+		operator.internalTimerService.registerProcessingTimeTimer(new TimeWindow(1L, 2L), 2L);
+		operator.internalTimerService.registerEventTimeTimer(new TimeWindow(1L, 2L), 5L);
 
-		operator.processingTimeTimerTimestamps.add(1L, 10);
-		operator.processingTimeTimerTimestamps.add(2L, 5);
-		operator.processingTimeTimerTimestamps.add(3L, 1);
+		operator.setKeyContext("key2");
+		operator.internalTimerService.registerEventTimeTimer(new TimeWindow(1L, 2L), 5L);
 
+		assertEquals(3, operator.internalTimerService.numProcessingTimeTimers());
+		assertEquals(2, operator.internalTimerService.numEventTimeTimers());
 
 		StreamTaskState snapshot = testHarness.snapshot(0, 0);
 
@@ -917,7 +1023,7 @@ public class WindowOperatorTest {
 				0);
 
 		OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> otherTestHarness =
-				new OneInputStreamOperatorTestHarness<>(otherOperator);
+				new OneInputStreamOperatorTestHarness<>(otherOperator, new ExecutionConfig(), testTimeProvider);
 
 		otherTestHarness.configureForKeyedStream(new TupleKeySelector(), BasicTypeInfo.STRING_TYPE_INFO);
 		otherOperator.setInputType(inputType, new ExecutionConfig());
@@ -926,9 +1032,15 @@ public class WindowOperatorTest {
 		otherTestHarness.restore(snapshot, 0);
 		otherTestHarness.open();
 
-		Assert.assertEquals(operator.processingTimeTimers, otherOperator.processingTimeTimers);
-		Assert.assertArrayEquals(operator.processingTimeTimersQueue.toArray(), otherOperator.processingTimeTimersQueue.toArray());
-		Assert.assertEquals(operator.processingTimeTimerTimestamps, otherOperator.processingTimeTimerTimestamps);
+		assertEquals(3, otherOperator.internalTimerService.numProcessingTimeTimers());
+		assertEquals(2, otherOperator.internalTimerService.numEventTimeTimers());
+
+		// the restored timers fire for the right keys and windows
+		otherTestHarness.processWatermark(new Watermark(5));
+		assertEquals(0, otherOperator.internalTimerService.numEventTimeTimers());
+
+		testTimeProvider.setCurrentTime(3);
+		assertEquals(0, otherOperator.internalTimerService.numProcessingTimeTimers());
 	}
 
 	@Test
@@ -2077,6 +2189,44 @@ public class WindowOperatorTest {
 		}
 	}
 
+	public static class SumAggregator implements AggregateFunction<Tuple2<String, Integer>, Integer, Integer> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Integer createAccumulator() {
+			return 0;
+		}
+
+		@Override
+		public Integer add(Tuple2<String, Integer> value, Integer accumulator) {
+			return accumulator + value.f1;
+		}
+
+		@Override
+		public Integer merge(Integer a, Integer b) {
+			return a + b;
+		}
+
+		@Override
+		public Integer getResult(Integer accumulator) {
+			return accumulator;
+		}
+	}
+
+	public static class AggregatedSessionWindowFunction implements WindowFunction<Integer, Tuple3<String, Long, Long>, String, TimeWindow> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void apply(String key,
+				TimeWindow window,
+				Iterable<Integer> values,
+				Collector<Tuple3<String, Long, Long>> out) throws Exception {
+			for (Integer val: values) {
+				out.collect(new Tuple3<>(key + "-" + val, window.getStart(), window.getEnd()));
+			}
+		}
+	}
+
 	public static class ReducedSessionWindowFunction implements WindowFunction<Tuple2<String, Integer>, Tuple3<String, Long, Long>, String, TimeWindow> {
 		private static final long serialVersionUID = 1L;
 
@@ -17,13 +17,16 @@
  */
 package org.apache.flink.streaming.runtime.operators.windowing;
 
+import org.apache.flink.api.common.functions.AggregateFunction;
 import org.apache.flink.api.common.functions.FoldFunction;
 import org.apache.flink.api.common.functions.ReduceFunction;
 import org.apache.flink.api.common.functions.RichReduceFunction;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
 import org.apache.flink.api.common.state.ListStateDescriptor;
 import org.apache.flink.api.common.state.ReducingStateDescriptor;
 import org.apache.flink.api.java.functions.KeySelector;
 import org.apache.flink.api.java.tuple.Tuple;
+import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.streaming.api.TimeCharacteristic;
 import org.apache.flink.streaming.api.datastream.DataStream;
@@ -104,6 +107,7 @@ public class WindowTranslationTest extends StreamingMultipleProgramsTestBase {
 		OneInputTransformation<Tuple2<String, Integer>, Tuple2<String, Integer>> transform1 = (OneInputTransformation<Tuple2<String, Integer>, Tuple2<String, Integer>>) window1.getTransformation();
 		OneInputStreamOperator<Tuple2<String, Integer>, Tuple2<String, Integer>> operator1 = transform1.getOperator();
 		Assert.assertTrue(operator1 instanceof WindowOperator);
+		Assert.assertFalse(operator1 instanceof SlidingEventTimePaneWindowOperator);
 		WindowOperator winOperator1 = (WindowOperator) operator1;
 		Assert.assertTrue(winOperator1.getTrigger() instanceof EventTimeTrigger);
 		Assert.assertTrue(winOperator1.getWindowAssigner() instanceof SlidingEventTimeWindows);
@@ -132,6 +136,68 @@ public class WindowTranslationTest extends StreamingMultipleProgramsTestBase {
 		Assert.assertTrue(winOperator2.getStateDescriptor() instanceof ListStateDescriptor);
 	}
 
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void testPreAggregateInPanes() throws Exception {
+		StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+		env.setStreamTimeCharacteristic(TimeCharacteristic.EventTime);
+
+		DataStream<Tuple2<String, Integer>> source = env.fromElements(Tuple2.of("hello", 1), Tuple2.of("hello", 2));
+
+		DataStream<Tuple2<String, Integer>> window1 = source
+				.keyBy(0)
+				.window(SlidingEventTimeWindows.of(Time.of(1, TimeUnit.SECONDS), Time.of(100, TimeUnit.MILLISECONDS)))
+				.preAggregateInPanes()
+				.reduce(new DummyReducer());
+
+		OneInputTransformation<Tuple2<String, Integer>, Tuple2<String, Integer>> transform1 = (OneInputTransformation<Tuple2<String, Integer>, Tuple2<String, Integer>>) window1.getTransformation();
+		OneInputStreamOperator<Tuple2<String, Integer>, Tuple2<String, Integer>> operator1 = transform1.getOperator();
+		Assert.assertTrue(operator1 instanceof SlidingEventTimePaneWindowOperator);
+		WindowOperator winOperator1 = (WindowOperator) operator1;
+		Assert.assertTrue(winOperator1.getTrigger() instanceof EventTimeTrigger);
+		Assert.assertTrue(winOperator1.getStateDescriptor() instanceof ReducingStateDescriptor);
+
+		try {
+			source
+				.keyBy(0)
+				.window(SlidingEventTimeWindows.of(Time.of(1, TimeUnit.SECONDS), Time.of(100, TimeUnit.MILLISECONDS)))
+				.preAggregateInPanes()
+				.fold(0, new FoldFunction<Tuple2<String, Integer>, Integer>() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public Integer fold(Integer accumulator, Tuple2<String, Integer> value) throws Exception {
+						return accumulator + value.f1;
+					}
+				});
+			fail("Fold cannot be pre-aggregated in panes.");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+
+		try {
+			source
+				.keyBy(0)
+				.window(SlidingEventTimeWindows.of(Time.of(1, TimeUnit.SECONDS), Time.of(100, TimeUnit.MILLISECONDS)))
+				.preAggregateInPanes()
+				.trigger(CountTrigger.of(100))
+				.reduce(new DummyReducer());
+			fail("Pre-aggregation in panes requires the EventTimeTrigger.");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+
+		try {
+			source
+				.keyBy(0)
+				.window(TumblingEventTimeWindows.of(Time.of(1, TimeUnit.SECONDS)))
+				.preAggregateInPanes();
+			fail("Pre-aggregation in panes requires SlidingEventTimeWindows.");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
 	@Test
 	@SuppressWarnings("rawtypes")
 	public void testNonEvicting() throws Exception {
@@ -233,6 +299,50 @@ public class WindowTranslationTest extends StreamingMultipleProgramsTestBase {
 		Assert.assertTrue(winOperator2.getStateDescriptor() instanceof ListStateDescriptor);
 	}
 
+	/**
+	 * These tests ensure that aggregate keeps a single accumulator per window, unless the
+	 * elements are needed by an evictor.
+	 */
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void testAggregate() throws Exception {
+		StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+		env.setStreamTimeCharacteristic(TimeCharacteristic.IngestionTime);
+
+		DataStream<Tuple2<String, Integer>> source = env.fromElements(Tuple2.of("hello", 1), Tuple2.of("hello", 2));
+
+		DummyAggregator aggregator = new DummyAggregator();
+
+		DataStream<Integer> window1 = source
+				.keyBy(0)
+				.window(EventTimeSessionWindows.withGap(Time.seconds(5)))
+				.aggregate(aggregator);
+
+		Assert.assertEquals(BasicTypeInfo.INT_TYPE_INFO, window1.getType());
+
+		OneInputTransformation<Tuple2<String, Integer>, Integer> transform1 = (OneInputTransformation<Tuple2<String, Integer>, Integer>) window1.getTransformation();
+		OneInputStreamOperator<Tuple2<String, Integer>, Integer> operator1 = transform1.getOperator();
+		Assert.assertTrue(operator1 instanceof WindowOperator);
+		WindowOperator winOperator1 = (WindowOperator) operator1;
+		Assert.assertTrue(winOperator1.getTrigger() instanceof EventTimeTrigger);
+		Assert.assertTrue(winOperator1.getWindowAssigner() instanceof EventTimeSessionWindows);
+		Assert.assertTrue(winOperator1.getStateDescriptor() instanceof AggregatingStateDescriptor);
+
+		DataStream<Integer> window2 = source
+				.keyBy(0)
+				.window(TumblingEventTimeWindows.of(Time.of(1, TimeUnit.SECONDS)))
+				.evictor(CountEvictor.of(13))
+				.aggregate(aggregator);
+
+		OneInputTransformation<Tuple2<String, Integer>, Integer> transform2 = (OneInputTransformation<Tuple2<String, Integer>, Integer>) window2.getTransformation();
+		OneInputStreamOperator<Tuple2<String, Integer>, Integer> operator2 = transform2.getOperator();
+		Assert.assertTrue(operator2 instanceof EvictingWindowOperator);
+		EvictingWindowOperator winOperator2 = (EvictingWindowOperator) operator2;
+		Assert.assertTrue(winOperator2.getWindowAssigner() instanceof TumblingEventTimeWindows);
+		Assert.assertTrue(winOperator2.getEvictor() instanceof CountEvictor);
+		Assert.assertTrue(winOperator2.getStateDescriptor() instanceof ListStateDescriptor);
+	}
+
 	@Test
 	public void testSessionWithFold() throws Exception {
 		// verify that fold does not work with merging windows
@@ -335,4 +445,28 @@ public class WindowTranslationTest extends StreamingMultipleProgramsTestBase {
 			return value1;
 		}
 	}
+
+	public static class DummyAggregator implements AggregateFunction<Tuple2<String, Integer>, Long, Integer> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Long createAccumulator() {
+			return 0L;
+		}
+
+		@Override
+		public Long add(Tuple2<String, Integer> value, Long accumulator) {
+			return accumulator;
+		}
+
+		@Override
+		public Long merge(Long a, Long b) {
+			return a;
+		}
+
+		@Override
+		public Integer getResult(Long accumulator) {
+			return accumulator.intValue();
+		}
+	}
 }
@@ -20,11 +20,21 @@ package org.apache.flink.streaming.runtime.tasks;
 
 import org.apache.flink.api.common.functions.MapFunction;
 import org.apache.flink.api.common.functions.RichMapFunction;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.api.java.functions.KeySelector;
 import org.apache.flink.configuration.Configuration;
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
 import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
 import org.apache.flink.runtime.io.network.api.writer.ResultPartitionWriter;
+import org.apache.flink.runtime.state.AsynchronousKvStateSnapshot;
+import org.apache.flink.runtime.state.KvStateSnapshot;
+import org.apache.flink.runtime.state.memory.MemoryStateBackend;
 import org.apache.flink.streaming.api.graph.StreamConfig;
+import org.apache.flink.streaming.api.operators.AbstractStreamOperator;
+import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
 import org.apache.flink.streaming.api.operators.StreamMap;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
@@ -36,7 +46,12 @@ import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
@@ -221,6 +236,13 @@ public class OneInputStreamTaskTest {
 		testHarness.waitForTaskCompletion();
 
 		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		// the acknowledgement carries the metrics of the alignment
+		CheckpointMetrics checkpointMetrics = testHarness.mockEnv.getLastCheckpointMetrics();
+		Assert.assertNotNull(checkpointMetrics);
+		Assert.assertTrue(checkpointMetrics.getBytesBufferedInAlignment() > 0L);
+		Assert.assertTrue(checkpointMetrics.getAlignmentDurationNanos() > 0L);
+		Assert.assertTrue(checkpointMetrics.getSlowestChannel() >= 0);
 	}
 
 	/**
@@ -293,6 +315,165 @@ public class OneInputStreamTaskTest {
 		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
 	}
 
+	/**
+	 * This test verifies that with unaligned checkpoints, the first checkpoint barrier is
+	 * forwarded right away and that no input is blocked until the barriers of all inputs arrive.
+	 */
+	@Test
+	public void testUnalignedCheckpointBarriers() throws Exception {
+		final OneInputStreamTask<String, String> mapTask = new OneInputStreamTask<String, String>();
+		final OneInputStreamTaskTestHarness<String, String> testHarness = new OneInputStreamTaskTestHarness<String, String>(mapTask, 2, 2, BasicTypeInfo.STRING_TYPE_INFO, BasicTypeInfo.STRING_TYPE_INFO);
+
+		StreamConfig streamConfig = testHarness.getStreamConfig();
+		StreamMap<String, String> mapOperator = new StreamMap<String, String>(new IdentityMap());
+		streamConfig.setStreamOperator(mapOperator);
+		streamConfig.setUnalignedCheckpoints(true);
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<Object>();
+		long initialTime = 0L;
+
+		testHarness.invoke();
+		testHarness.waitForTaskRunning();
+
+		// the first barrier triggers the checkpoint, which forwards the barrier right away
+		testHarness.processEvent(new CheckpointBarrier(0, 0), 0, 0);
+		expectedOutput.add(new CheckpointBarrier(0, 0));
+
+		testHarness.waitForInputProcessing();
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		// the input that already delivered the barrier is not blocked
+		testHarness.processElement(new StreamRecord<String>("Hello-0-0", initialTime), 0, 0);
+		testHarness.processElement(new StreamRecord<String>("Ciao-0-0", initialTime), 0, 0);
+		expectedOutput.add(new StreamRecord<String>("Hello-0-0", initialTime));
+		expectedOutput.add(new StreamRecord<String>("Ciao-0-0", initialTime));
+
+		testHarness.waitForInputProcessing();
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		// these elements are part of the in-flight data of the checkpoint, and are processed as well
+		testHarness.processElement(new StreamRecord<String>("Hello-1-1", initialTime), 1, 1);
+		testHarness.processElement(new StreamRecord<String>("Ciao-1-1", initialTime), 1, 1);
+		expectedOutput.add(new StreamRecord<String>("Hello-1-1", initialTime));
+		expectedOutput.add(new StreamRecord<String>("Ciao-1-1", initialTime));
+
+		testHarness.processEvent(new CheckpointBarrier(0, 0), 0, 1);
+		testHarness.processEvent(new CheckpointBarrier(0, 0), 1, 0);
+		testHarness.processEvent(new CheckpointBarrier(0, 0), 1, 1);
+
+		testHarness.waitForInputProcessing();
+
+		testHarness.endInput();
+
+		testHarness.waitForTaskCompletion();
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+	}
+
+	/**
+	 * This test verifies that the key/value state snapshots of an unaligned checkpoint, which is
+	 * aborted before the barriers of all inputs arrived, are released, and that the snapshots of
+	 * a checkpoint, which is still pending when the task ends, are released as well.
+	 */
+	@Test
+	public void testAbortPendingUnalignedCheckpoint() throws Exception {
+		final OneInputStreamTask<String, String> mapTask = new OneInputStreamTask<String, String>();
+		final OneInputStreamTaskTestHarness<String, String> testHarness = new OneInputStreamTaskTestHarness<String, String>(mapTask, 1, 2, BasicTypeInfo.STRING_TYPE_INFO, BasicTypeInfo.STRING_TYPE_INFO);
+		testHarness.configureForKeyedStream(new IdentityKeySelector(), BasicTypeInfo.STRING_TYPE_INFO);
+
+		StreamConfig streamConfig = testHarness.getStreamConfig();
+		streamConfig.setStreamOperator(new CountingStateOperator());
+		streamConfig.setStateBackend(new SnapshotRecordingMemoryStateBackend());
+		streamConfig.setUnalignedCheckpoints(true);
+
+		SnapshotRecordingMemoryStateBackend.SNAPSHOTS.clear();
+
+		testHarness.invoke();
+		testHarness.waitForTaskRunning();
+
+		testHarness.processElement(new StreamRecord<String>("Hello", 0L), 0, 0);
+		testHarness.processElement(new StreamRecord<String>("Ciao", 0L), 0, 1);
+
+		// checkpoint 1 waits for the barrier of channel 1, until the barrier of checkpoint 2 aborts it
+		testHarness.processEvent(new CheckpointBarrier(1, 1), 0, 0);
+		testHarness.processEvent(new CheckpointBarrier(2, 2), 0, 0);
+
+		testHarness.waitForInputProcessing();
+
+		assertSnapshotsReleased(1L);
+
+		testHarness.endInput();
+		testHarness.waitForTaskCompletion();
+
+		assertSnapshotsReleased(2L);
+	}
+
+	private static void assertSnapshotsReleased(long checkpointId) throws Exception {
+		List<KvStateSnapshot<?, ?, ?, ?, ?>> snapshots = SnapshotRecordingMemoryStateBackend.SNAPSHOTS.get(checkpointId);
+		Assert.assertNotNull(snapshots);
+		Assert.assertFalse(snapshots.isEmpty());
+
+		for (KvStateSnapshot<?, ?, ?, ?, ?> snapshot : snapshots) {
+			try {
+				((AsynchronousKvStateSnapshot<?, ?, ?, ?, ?>) snapshot).materialize();
+				Assert.fail("The snapshot of checkpoint " + checkpointId + " was not released.");
+			}
+			catch (IOException expected) {
+			}
+		}
+	}
+
+	/**
+	 * Memory state backend which records the key/value state snapshots of every checkpoint.
+	 */
+	private static class SnapshotRecordingMemoryStateBackend extends MemoryStateBackend {
+		private static final long serialVersionUID = 1L;
+
+		static final Map<Long, List<KvStateSnapshot<?, ?, ?, ?, ?>>> SNAPSHOTS =
+			new ConcurrentHashMap<Long, List<KvStateSnapshot<?, ?, ?, ?, ?>>>();
+
+		@Override
+		public HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> snapshotPartitionedState(long checkpointId, long timestamp) throws Exception {
+			HashMap<String, KvStateSnapshot<?, ?, ?, ?, ?>> snapshots = super.snapshotPartitionedState(checkpointId, timestamp);
+			if (snapshots != null) {
+				SNAPSHOTS.put(checkpointId, new ArrayList<KvStateSnapshot<?, ?, ?, ?, ?>>(snapshots.values()));
+			}
+			return snapshots;
+		}
+	}
+
+	/**
+	 * Counts the elements per key in a value state.
+	 */
+	private static class CountingStateOperator extends AbstractStreamOperator<String>
+			implements OneInputStreamOperator<String, String> {
+		private static final long serialVersionUID = 1L;
+
+		private final ValueStateDescriptor<Long> countDescriptor =
+			new ValueStateDescriptor<Long>("count", LongSerializer.INSTANCE, 0L);
+
+		@Override
+		public void processElement(StreamRecord<String> element) throws Exception {
+			ValueState<Long> count = getPartitionedState(countDescriptor);
+			count.update(count.value() + 1);
+			output.collect(element);
+		}
+
+		@Override
+		public void processWatermark(Watermark mark) throws Exception {
+			output.emitWatermark(mark);
+		}
+	}
+
+	private static class IdentityKeySelector implements KeySelector<String, String> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public String getKey(String value) throws Exception {
+			return value;
+		}
+	}
+
 	// This must only be used in one test, otherwise the static fields will be changed
 	// by several tests concurrently
 	private static class TestOpenCloseMapFunction extends RichMapFunction<String, String> {
@@ -28,6 +28,7 @@ import org.apache.flink.core.memory.MemorySegmentFactory;
 import org.apache.flink.metrics.groups.TaskMetricGroup;
 import org.apache.flink.runtime.accumulators.AccumulatorRegistry;
 import org.apache.flink.runtime.broadcast.BroadcastVariableManager;
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
 import org.apache.flink.runtime.event.AbstractEvent;
 import org.apache.flink.runtime.execution.Environment;
 import org.apache.flink.runtime.executiongraph.ExecutionAttemptID;
@@ -47,6 +48,7 @@ import org.apache.flink.runtime.operators.testutils.UnregisteredTaskMetricsGroup
 import org.apache.flink.runtime.operators.testutils.MockInputSplitProvider;
 import org.apache.flink.runtime.plugable.DeserializationDelegate;
 import org.apache.flink.runtime.plugable.NonReusingDeserializationDelegate;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.StateHandle;
 import org.apache.flink.runtime.taskmanager.TaskManagerRuntimeInfo;
 
@@ -95,6 +97,8 @@ public class StreamMockEnvironment implements Environment {
 
 	private final ExecutionConfig executionConfig;
 
+	private volatile CheckpointMetrics lastCheckpointMetrics;
+
 	public StreamMockEnvironment(Configuration jobConfig, Configuration taskConfig, ExecutionConfig executionConfig,
 									long memorySize, MockInputSplitProvider inputSplitProvider, int bufferSize) {
 		this.taskInfo = new TaskInfo("", 0, 1, 0);
@@ -193,6 +197,18 @@ public class StreamMockEnvironment implements Environment {
 				}
 			}).when(mockWriter).writeEventToAllChannels(any(AbstractEvent.class));
 
+			// Buffers are consumed right away, so priority events never overtake any data
+			doAnswer(new Answer<byte[]>() {
+
+				@Override
+				public byte[] answer(InvocationOnMock invocationOnMock) throws Throwable {
+					AbstractEvent event = (AbstractEvent) invocationOnMock.getArguments()[0];
+
+					outputList.add(event);
+					return new byte[0];
+				}
+			}).when(mockWriter).writePriorityEvent(any(AbstractEvent.class), anyInt());
+
 			outputs.add(mockWriter);
 		}
 		catch (Throwable t) {
@@ -293,6 +309,11 @@ public class StreamMockEnvironment implements Environment {
 		return accumulatorRegistry;
 	}
 
+	@Override
+	public TaskKvStateRegistry getTaskKvStateRegistry() {
+		return null;
+	}
+
 	@Override
 	public void acknowledgeCheckpoint(long checkpointId) {
 	}
@@ -301,6 +322,31 @@ public class StreamMockEnvironment implements Environment {
 	public void acknowledgeCheckpoint(long checkpointId, StateHandle<?> state) {
 	}
 
+	@Override
+	public void acknowledgeCheckpoint(long checkpointId, StateHandle<?> state, StateHandle<?> keyGroupsState) {
+	}
+
+	@Override
+	public void acknowledgeCheckpoint(
+			long checkpointId,
+			StateHandle<?> state,
+			StateHandle<?> keyGroupsState,
+			CheckpointMetrics checkpointMetrics) {
+
+		this.lastCheckpointMetrics = checkpointMetrics;
+
+		// dispatch to the variants, which tests override to intercept the acknowledgements
+		if (state == null && keyGroupsState == null) {
+			acknowledgeCheckpoint(checkpointId);
+		} else {
+			acknowledgeCheckpoint(checkpointId, state, keyGroupsState);
+		}
+	}
+
+	public CheckpointMetrics getLastCheckpointMetrics() {
+		return lastCheckpointMetrics;
+	}
+
 	@Override
 	public void failExternally(Throwable cause) {
 		throw new UnsupportedOperationException("StreamMockEnvironment does not support external task failure.");
@@ -38,6 +38,8 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.lang.reflect.Field;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -90,8 +92,8 @@ public class StreamTaskAsyncCheckpointTest {
 			}
 
 			@Override
-			public void acknowledgeCheckpoint(long checkpointId, StateHandle<?> state) {
-				super.acknowledgeCheckpoint(checkpointId, state);
+			public void acknowledgeCheckpoint(long checkpointId, StateHandle<?> state, StateHandle<?> keyGroupsState) {
+				super.acknowledgeCheckpoint(checkpointId, state, keyGroupsState);
 
 				// block on the latch, to verify that triggerCheckpoint returns below,
 				// even though the async checkpoint would not finish
@@ -143,6 +145,103 @@ public class StreamTaskAsyncCheckpointTest {
 	}
 
 
+	/**
+	 * This ensures that no more than the configured number of asynchronous checkpoints are
+	 * materialized at the same time, and that further checkpoints wait for them.
+	 */
+	@Test
+	public void testBoundedConcurrentAsyncCheckpoints() throws Exception {
+		final OneShotLatch delayCheckpointLatch = new OneShotLatch();
+		final CountDownLatch blockedCheckpointsLatch = new CountDownLatch(2);
+		final CountDownLatch allCheckpointsLatch = new CountDownLatch(3);
+		final AtomicInteger numMaterializing = new AtomicInteger();
+		final AtomicInteger maxMaterializing = new AtomicInteger();
+
+		final OneInputStreamTask<String, String> task = new OneInputStreamTask<>();
+
+		final OneInputStreamTaskTestHarness<String, String> testHarness = new OneInputStreamTaskTestHarness<>(task, BasicTypeInfo.STRING_TYPE_INFO, BasicTypeInfo.STRING_TYPE_INFO);
+
+		StreamConfig streamConfig = testHarness.getStreamConfig();
+
+		streamConfig.setStreamOperator(new AsyncCheckpointOperator());
+		streamConfig.setMaxConcurrentAsyncCheckpoints(2);
+
+		StreamMockEnvironment mockEnv = new StreamMockEnvironment(
+			testHarness.jobConfig,
+			testHarness.taskConfig,
+			testHarness.memorySize,
+			new MockInputSplitProvider(),
+			testHarness.bufferSize) {
+
+			@Override
+			public ExecutionConfig getExecutionConfig() {
+				return testHarness.executionConfig;
+			}
+
+			@Override
+			public void acknowledgeCheckpoint(long checkpointId, StateHandle<?> state, StateHandle<?> keyGroupsState) {
+				super.acknowledgeCheckpoint(checkpointId, state, keyGroupsState);
+
+				int materializing = numMaterializing.incrementAndGet();
+				if (materializing > maxMaterializing.get()) {
+					maxMaterializing.set(materializing);
+				}
+				blockedCheckpointsLatch.countDown();
+
+				// keep the materialization threads busy
+				try {
+					delayCheckpointLatch.await();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+
+				numMaterializing.decrementAndGet();
+				allCheckpointsLatch.countDown();
+			}
+		};
+
+		testHarness.invoke(mockEnv);
+
+		// wait for the task to be running
+		for (Field field: StreamTask.class.getDeclaredFields()) {
+			if (field.getName().equals("isRunning")) {
+				field.setAccessible(true);
+				while (!field.getBoolean(task)) {
+					Thread.sleep(10);
+				}
+
+			}
+		}
+
+		task.triggerCheckpoint(1, 1);
+		task.triggerCheckpoint(2, 2);
+		blockedCheckpointsLatch.await();
+
+		// the third checkpoint has to wait until one of the others is materialized
+		Thread thirdCheckpoint = new Thread() {
+			@Override
+			public void run() {
+				try {
+					task.triggerCheckpoint(3, 3);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		thirdCheckpoint.start();
+		thirdCheckpoint.join(200);
+		assertTrue(thirdCheckpoint.isAlive());
+
+		delayCheckpointLatch.trigger();
+
+		thirdCheckpoint.join();
+		allCheckpointsLatch.await();
+		assertEquals(2, maxMaterializing.get());
+
+		testHarness.endInput();
+		testHarness.waitForTaskCompletion();
+	}
+
 	// ------------------------------------------------------------------------
 
 	public static class AsyncCheckpointOperator
@@ -31,6 +31,8 @@ import org.apache.flink.streaming.api.graph.StreamConfig;
 import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
 import org.apache.flink.streaming.api.operators.Output;
 import org.apache.flink.runtime.state.AbstractStateBackend;
+import org.apache.flink.runtime.state.AsynchronousKvStateSnapshot;
+import org.apache.flink.runtime.state.KvStateSnapshot;
 import org.apache.flink.runtime.state.memory.MemoryStateBackend;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.operators.Triggerable;
@@ -43,6 +45,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 
@@ -147,6 +150,10 @@ public class OneInputStreamOperatorTestHarness<IN, OUT> {
 		return mockTask.getCheckpointLock();
 	}
 
+	public StreamConfig getStreamConfig() {
+		return config;
+	}
+
 	public <K> void configureForKeyedStream(KeySelector<IN, K> keySelector, TypeInformation<K> keyType) {
 		ClosureCleaner.clean(keySelector, false);
 		config.setStatePartitioner(0, keySelector);
@@ -187,7 +194,18 @@ public class OneInputStreamOperatorTestHarness<IN, OUT> {
 	 * Calls {@link org.apache.flink.streaming.api.operators.StreamOperator#snapshotOperatorState(long, long)} ()}
 	 */
 	public StreamTaskState snapshot(long checkpointId, long timestamp) throws Exception {
-		return operator.snapshotOperatorState(checkpointId, timestamp);
+		StreamTaskState state = operator.snapshotOperatorState(checkpointId, timestamp);
+
+		// materialize the asynchronous key/value state snapshots, like the stream task does
+		if (state.getKvStates() != null) {
+			for (Map.Entry<String, KvStateSnapshot<?, ?, ?, ?, ?>> kvState : state.getKvStates().entrySet()) {
+				if (kvState.getValue() instanceof AsynchronousKvStateSnapshot) {
+					kvState.setValue(((AsynchronousKvStateSnapshot<?, ?, ?, ?, ?>) kvState.getValue()).materialize());
+				}
+			}
+		}
+
+		return state;
 	}
 
 	/**
@@ -64,6 +64,22 @@ class StreamExecutionEnvironment(javaEnv: JavaEnv) {
    */
   def getParallelism = javaEnv.getParallelism
 
+  /**
+   * Sets the maximum degree of parallelism defined for the program. The maximum parallelism
+   * determines the number of key groups of the keyed state and thereby the upper bound for
+   * the parallelism to which the program can be rescaled.
+   */
+  @PublicEvolving
+  def setMaxParallelism(maxParallelism: Int): Unit = {
+    javaEnv.setMaxParallelism(maxParallelism)
+  }
+
+  /**
+   * Returns the maximum degree of parallelism defined for the program.
+   */
+  @PublicEvolving
+  def getMaxParallelism = javaEnv.getMaxParallelism
+
   /**
    * Sets the maximum time frequency (milliseconds) for the flushing of the
    * output buffers. By default the output buffers flush frequently to provide
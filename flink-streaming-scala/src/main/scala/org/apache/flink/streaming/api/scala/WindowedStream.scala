@@ -94,6 +94,22 @@ class WindowedStream[T, K, W <: Window](javaStream: JavaWStream[T, K, W]) {
     this
   }
 
+  /**
+   * Pre-aggregates the elements of a reduce function in panes that are shared by the
+   * overlapping windows. This is only valid for
+   * [[org.apache.flink.streaming.api.windowing.assigners.SlidingEventTimeWindows]] with the
+   * default trigger and without an [[Evictor]].
+   *
+   * Note: The state of the panes is not compatible with the state of the windows. A job can
+   * therefore not switch to or from pre-aggregation in panes when it is restored from a
+   * savepoint.
+   */
+  @PublicEvolving
+  def preAggregateInPanes(): WindowedStream[T, K, W] = {
+    javaStream.preAggregateInPanes()
+    this
+  }
+
   // ------------------------------------------------------------------------
   //  Operations on the keyed windows
   // ------------------------------------------------------------------------